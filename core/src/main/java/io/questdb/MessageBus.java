@@ -39,8 +39,32 @@ public interface MessageBus extends Closeable {
         Misc.free(getTableWriterEventQueue());
     }
 
+    MPSequence getColumnSyncPubSeq();
+
+    RingQueue<ColumnSyncTask> getColumnSyncQueue();
+
+    MCSequence getColumnSyncSubSeq();
+
     CairoConfiguration getConfiguration();
 
+    MPSequence getGroupCommitPubSeq();
+
+    RingQueue<GroupCommitTask> getGroupCommitQueue();
+
+    MCSequence getGroupCommitSubSeq();
+
+    MPSequence getHashJoinBuildPubSeq();
+
+    RingQueue<HashJoinBuildTask> getHashJoinBuildQueue();
+
+    MCSequence getHashJoinBuildSubSeq();
+
+    MPSequence getLatestByScanPubSeq();
+
+    RingQueue<LatestByScanTask> getLatestByScanQueue();
+
+    MCSequence getLatestByScanSubSeq();
+
     Sequence getIndexerPubSequence();
 
     RingQueue<ColumnIndexerTask> getIndexerQueue();
@@ -89,6 +113,18 @@ public interface MessageBus extends Closeable {
 
     MCSequence getO3PurgeSubSeq();
 
+    MPSequence getPageFrameFilterPubSeq();
+
+    RingQueue<PageFrameFilterTask> getPageFrameFilterQueue();
+
+    MCSequence getPageFrameFilterSubSeq();
+
+    MPSequence getPageFrameGroupByPubSeq();
+
+    RingQueue<PageFrameGroupByTask> getPageFrameGroupByQueue();
+
+    MCSequence getPageFrameGroupBySubSeq();
+
     MPSequence getTableWriterCommandPubSeq();
 
     RingQueue<TableWriterTask> getTableWriterCommandQueue();
@@ -101,6 +137,12 @@ public interface MessageBus extends Closeable {
 
     FanOut getTableWriterEventFanOut();
 
+    MPSequence getTextImportPubSeq();
+
+    RingQueue<TextImportTask> getTextImportQueue();
+
+    MCSequence getTextImportSubSeq();
+
     Sequence getVectorAggregatePubSeq();
 
     RingQueue<VectorAggregateTask> getVectorAggregateQueue();
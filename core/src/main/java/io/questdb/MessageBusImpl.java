@@ -64,6 +64,34 @@ public class MessageBusImpl implements MessageBus {
     private final MPSequence o3CopyPubSeq;
     private final MCSequence o3CopySubSeq;
 
+    private final RingQueue<PageFrameFilterTask> pageFrameFilterQueue;
+    private final MPSequence pageFrameFilterPubSeq;
+    private final MCSequence pageFrameFilterSubSeq;
+
+    private final RingQueue<PageFrameGroupByTask> pageFrameGroupByQueue;
+    private final MPSequence pageFrameGroupByPubSeq;
+    private final MCSequence pageFrameGroupBySubSeq;
+
+    private final RingQueue<ColumnSyncTask> columnSyncQueue;
+    private final MPSequence columnSyncPubSeq;
+    private final MCSequence columnSyncSubSeq;
+
+    private final RingQueue<GroupCommitTask> groupCommitQueue;
+    private final MPSequence groupCommitPubSeq;
+    private final MCSequence groupCommitSubSeq;
+
+    private final RingQueue<HashJoinBuildTask> hashJoinBuildQueue;
+    private final MPSequence hashJoinBuildPubSeq;
+    private final MCSequence hashJoinBuildSubSeq;
+
+    private final RingQueue<TextImportTask> textImportQueue;
+    private final MPSequence textImportPubSeq;
+    private final MCSequence textImportSubSeq;
+
+    private final RingQueue<LatestByScanTask> latestByScanQueue;
+    private final MPSequence latestByScanPubSeq;
+    private final MCSequence latestByScanSubSeq;
+
     private final RingQueue<LatestByTask> latestByQueue;
     private final MPSequence latestByPubSeq;
     private final MCSequence latestBySubSeq;
@@ -119,6 +147,41 @@ public class MessageBusImpl implements MessageBus {
         this.o3PurgeSubSeq = new MCSequence(this.o3PurgeQueue.getCycle());
         this.o3PurgePubSeq.then(this.o3PurgeSubSeq).then(this.o3PurgePubSeq);
 
+        this.pageFrameFilterQueue = new RingQueue<>(PageFrameFilterTask::new, configuration.getPageFrameFilterQueueCapacity());
+        this.pageFrameFilterPubSeq = new MPSequence(pageFrameFilterQueue.getCycle());
+        this.pageFrameFilterSubSeq = new MCSequence(pageFrameFilterQueue.getCycle());
+        pageFrameFilterPubSeq.then(pageFrameFilterSubSeq).then(pageFrameFilterPubSeq);
+
+        this.pageFrameGroupByQueue = new RingQueue<>(PageFrameGroupByTask::new, configuration.getPageFrameGroupByQueueCapacity());
+        this.pageFrameGroupByPubSeq = new MPSequence(pageFrameGroupByQueue.getCycle());
+        this.pageFrameGroupBySubSeq = new MCSequence(pageFrameGroupByQueue.getCycle());
+        pageFrameGroupByPubSeq.then(pageFrameGroupBySubSeq).then(pageFrameGroupByPubSeq);
+
+        this.columnSyncQueue = new RingQueue<>(ColumnSyncTask::new, configuration.getColumnSyncQueueCapacity());
+        this.columnSyncPubSeq = new MPSequence(columnSyncQueue.getCycle());
+        this.columnSyncSubSeq = new MCSequence(columnSyncQueue.getCycle());
+        columnSyncPubSeq.then(columnSyncSubSeq).then(columnSyncPubSeq);
+
+        this.groupCommitQueue = new RingQueue<>(GroupCommitTask::new, configuration.getGroupCommitQueueCapacity());
+        this.groupCommitPubSeq = new MPSequence(groupCommitQueue.getCycle());
+        this.groupCommitSubSeq = new MCSequence(groupCommitQueue.getCycle());
+        groupCommitPubSeq.then(groupCommitSubSeq).then(groupCommitPubSeq);
+
+        this.hashJoinBuildQueue = new RingQueue<>(HashJoinBuildTask::new, configuration.getHashJoinBuildQueueCapacity());
+        this.hashJoinBuildPubSeq = new MPSequence(hashJoinBuildQueue.getCycle());
+        this.hashJoinBuildSubSeq = new MCSequence(hashJoinBuildQueue.getCycle());
+        hashJoinBuildPubSeq.then(hashJoinBuildSubSeq).then(hashJoinBuildPubSeq);
+
+        this.textImportQueue = new RingQueue<>(TextImportTask::new, configuration.getSqlCopyQueueCapacity());
+        this.textImportPubSeq = new MPSequence(textImportQueue.getCycle());
+        this.textImportSubSeq = new MCSequence(textImportQueue.getCycle());
+        textImportPubSeq.then(textImportSubSeq).then(textImportPubSeq);
+
+        this.latestByScanQueue = new RingQueue<>(LatestByScanTask::new, configuration.getLatestByScanQueueCapacity());
+        this.latestByScanPubSeq = new MPSequence(latestByScanQueue.getCycle());
+        this.latestByScanSubSeq = new MCSequence(latestByScanQueue.getCycle());
+        latestByScanPubSeq.then(latestByScanSubSeq).then(latestByScanPubSeq);
+
         this.latestByQueue = new RingQueue<>(LatestByTask::new, configuration.getLatestByQueueCapacity());
         this.latestByPubSeq = new MPSequence(latestByQueue.getCycle());
         this.latestBySubSeq = new MCSequence(latestByQueue.getCycle());
@@ -147,11 +210,71 @@ public class MessageBusImpl implements MessageBus {
         this.tableWriterEventPubSeq.then(this.tableWriterEventSubSeq).then(this.tableWriterEventPubSeq);
     }
 
+    @Override
+    public MPSequence getColumnSyncPubSeq() {
+        return columnSyncPubSeq;
+    }
+
+    @Override
+    public RingQueue<ColumnSyncTask> getColumnSyncQueue() {
+        return columnSyncQueue;
+    }
+
+    @Override
+    public MCSequence getColumnSyncSubSeq() {
+        return columnSyncSubSeq;
+    }
+
     @Override
     public CairoConfiguration getConfiguration() {
         return configuration;
     }
 
+    @Override
+    public MPSequence getGroupCommitPubSeq() {
+        return groupCommitPubSeq;
+    }
+
+    @Override
+    public RingQueue<GroupCommitTask> getGroupCommitQueue() {
+        return groupCommitQueue;
+    }
+
+    @Override
+    public MCSequence getGroupCommitSubSeq() {
+        return groupCommitSubSeq;
+    }
+
+    @Override
+    public MPSequence getHashJoinBuildPubSeq() {
+        return hashJoinBuildPubSeq;
+    }
+
+    @Override
+    public RingQueue<HashJoinBuildTask> getHashJoinBuildQueue() {
+        return hashJoinBuildQueue;
+    }
+
+    @Override
+    public MCSequence getHashJoinBuildSubSeq() {
+        return hashJoinBuildSubSeq;
+    }
+
+    @Override
+    public MPSequence getLatestByScanPubSeq() {
+        return latestByScanPubSeq;
+    }
+
+    @Override
+    public RingQueue<LatestByScanTask> getLatestByScanQueue() {
+        return latestByScanQueue;
+    }
+
+    @Override
+    public MCSequence getLatestByScanSubSeq() {
+        return latestByScanSubSeq;
+    }
+
     @Override
     public Sequence getIndexerPubSequence() {
         return indexerPubSeq;
@@ -272,6 +395,36 @@ public class MessageBusImpl implements MessageBus {
         return o3PurgeSubSeq;
     }
 
+    @Override
+    public MPSequence getPageFrameFilterPubSeq() {
+        return pageFrameFilterPubSeq;
+    }
+
+    @Override
+    public RingQueue<PageFrameFilterTask> getPageFrameFilterQueue() {
+        return pageFrameFilterQueue;
+    }
+
+    @Override
+    public MCSequence getPageFrameFilterSubSeq() {
+        return pageFrameFilterSubSeq;
+    }
+
+    @Override
+    public MPSequence getPageFrameGroupByPubSeq() {
+        return pageFrameGroupByPubSeq;
+    }
+
+    @Override
+    public RingQueue<PageFrameGroupByTask> getPageFrameGroupByQueue() {
+        return pageFrameGroupByQueue;
+    }
+
+    @Override
+    public MCSequence getPageFrameGroupBySubSeq() {
+        return pageFrameGroupBySubSeq;
+    }
+
     @Override
     public MPSequence getTableWriterCommandPubSeq() {
         return tableWriterCommandPubSeq;
@@ -302,6 +455,21 @@ public class MessageBusImpl implements MessageBus {
         return tableWriterEventSubSeq;
     }
 
+    @Override
+    public MPSequence getTextImportPubSeq() {
+        return textImportPubSeq;
+    }
+
+    @Override
+    public RingQueue<TextImportTask> getTextImportQueue() {
+        return textImportQueue;
+    }
+
+    @Override
+    public MCSequence getTextImportSubSeq() {
+        return textImportSubSeq;
+    }
+
     @Override
     public Sequence getVectorAggregatePubSeq() {
         return vectorAggregatePubSeq;
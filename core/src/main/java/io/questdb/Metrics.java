@@ -25,6 +25,8 @@
 package io.questdb;
 
 import io.questdb.cutlass.http.processors.JsonQueryMetrics;
+import io.questdb.cutlass.line.tcp.LineTcpMetrics;
+import io.questdb.griffin.QueryFactoryCache;
 import io.questdb.metrics.MetricsRegistry;
 import io.questdb.metrics.MetricsRegistryImpl;
 import io.questdb.metrics.NullMetricsRegistry;
@@ -36,11 +38,13 @@ import io.questdb.std.str.CharSink;
 public class Metrics implements Scrapable {
     private final boolean enabled;
     private final JsonQueryMetrics jsonQuery;
+    private final LineTcpMetrics lineTcp;
     private final MetricsRegistry metricsRegistry;
 
     Metrics(boolean enabled, MetricsRegistry metricsRegistry) {
         this.enabled = enabled;
         this.jsonQuery = new JsonQueryMetrics(metricsRegistry);
+        this.lineTcp = new LineTcpMetrics(metricsRegistry);
         createMemoryGauges(metricsRegistry);
         this.metricsRegistry = metricsRegistry;
     }
@@ -55,6 +59,13 @@ public class Metrics implements Scrapable {
         metricsRegistry.newVirtualGauge("memory_malloc_count", Unsafe::getMallocCount);
     }
 
+    public void addQueryFactoryCacheGauges(QueryFactoryCache cache) {
+        metricsRegistry.newVirtualGauge("query_factory_cache_hits", cache::getHitCount);
+        metricsRegistry.newVirtualGauge("query_factory_cache_misses", cache::getMissCount);
+        metricsRegistry.newVirtualGauge("query_factory_cache_evictions", cache::getEvictionCount);
+        metricsRegistry.newVirtualGauge("query_factory_cache_size", cache::size);
+    }
+
     public static Metrics enabled() {
         return new Metrics(true, new MetricsRegistryImpl());
     }
@@ -71,6 +82,10 @@ public class Metrics implements Scrapable {
         return jsonQuery;
     }
 
+    public LineTcpMetrics lineTcp() {
+        return lineTcp;
+    }
+
     @Override
     public void scrapeIntoPrometheus(CharSink sink) {
         metricsRegistry.scrapeIntoPrometheus(sink);
@@ -72,6 +72,9 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final JsonQueryProcessorConfiguration jsonQueryProcessorConfiguration = new PropJsonQueryProcessorConfiguration();
     private final TelemetryConfiguration telemetryConfiguration = new PropTelemetryConfiguration();
     private final int commitMode;
+    private final boolean groupCommitEnabled;
+    private final int groupCommitQueueCapacity;
+    private final long groupCommitWindowUs;
     private final boolean httpServerEnabled;
     private final int createAsSelectRetryCount;
     private final CharSequence defaultMapType;
@@ -95,6 +98,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int sqlCopyModelPoolCapacity;
     private final double sqlCompactMapLoadFactor;
     private final int sqlExpressionPoolCapacity;
+    private final int sqlFactoryCacheCapacity;
     private final double sqlFastMapLoadFactor;
     private final int sqlJoinContextPoolCapacity;
     private final int sqlLexerPoolCapacity;
@@ -103,6 +107,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int sqlMapMaxPages;
     private final int sqlMapMaxResizes;
     private final int sqlModelPoolCapacity;
+    private final int sqlPageFrameMaxRows;
     private final long sqlSortKeyPageSize;
     private final int sqlSortKeyMaxPages;
     private final long sqlSortLightValuePageSize;
@@ -114,8 +119,19 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int sqlHashJoinLightValueMaxPages;
     private final int sqlSortValuePageSize;
     private final int sqlSortValueMaxPages;
+    private final String sqlSpillRoot;
+    private final long sqlSpillMemoryBudget;
     private final long workStealTimeoutNanos;
     private final boolean parallelIndexingEnabled;
+    private final boolean sqlParallelFilterEnabled;
+    private final boolean sqlParallelGroupByEnabled;
+    private final boolean sqlParallelHashJoinEnabled;
+    private final boolean sqlParallelLatestByEnabled;
+    private final boolean walEnabled;
+    private final long walSegmentRolloverSize;
+    private final boolean zoneMapEnabled;
+    private final long zoneMapBlockRowCount;
+    private final boolean sqlCompiledFilterEnabled;
     private final int sqlJoinMetadataPageSize;
     private final int sqlJoinMetadataMaxResizes;
     private final int lineUdpCommitRate;
@@ -139,6 +155,10 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final boolean lineUdpUnicast;
     private final boolean lineUdpOwnThread;
     private final int sqlCopyBufferSize;
+    private final long sqlCopyMinChunkSize;
+    private final long decompressedPageCacheSize;
+    private final int sqlCopyQueueCapacity;
+    private final boolean sqlParallelCopyEnabled;
     private final long writerDataAppendPageSize;
     private final long writerMiscAppendPageSize;
     private final int sqlAnalyticColumnPoolCapacity;
@@ -190,6 +210,9 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int rerunMaxProcessingQueueSize;
     private final BuildInformation buildInformation;
     private final int columnIndexerQueueCapacity;
+    private final int columnSyncQueueCapacity;
+    private final boolean parallelColumnSyncEnabled;
+    private final int parallelColumnSyncThreshold;
     private final int vectorAggregateQueueCapacity;
     private final int o3CallbackQueueCapacity;
     private final int o3PartitionQueueCapacity;
@@ -213,6 +236,10 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int circuitBreakerBufferSize;
     private final long circuitBreakerMaxTime;
     private final int latestByQueueCapacity;
+    private final int pageFrameFilterQueueCapacity;
+    private final int pageFrameGroupByQueueCapacity;
+    private final int hashJoinBuildQueueCapacity;
+    private final int latestByScanQueueCapacity;
     private final int sampleByIndexSearchPageSize;
     private final int binaryEncodingMaxLength;
     private final long writerDataIndexKeyAppendPageSize;
@@ -281,6 +308,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private int pgNetSndBufSize;
     private int pgCharacterStoreCapacity;
     private int pgBinaryParamsCapacity;
+    private boolean pgBinaryResultFormatPreferred;
     private int pgCharacterStorePoolCapacity;
     private int pgConnectionPoolInitialCapacity;
     private String pgPassword;
@@ -333,6 +361,8 @@ public class PropServerConfiguration implements ServerConfiguration {
     private int lineTcpNUpdatesPerLoadRebalance;
     private double lineTcpMaxLoadRatio;
     private long lineTcpMaintenanceInterval;
+    private boolean lineTcpCommitLagAdaptive;
+    private long lineTcpCommitVisibilitySla;
     private String lineTcpAuthDbPath;
     private int lineDefaultPartitionBy;
     private int lineTcpAggressiveReadRetryCount;
@@ -537,6 +567,7 @@ public class PropServerConfiguration implements ServerConfiguration {
                 this.pgNetSndBufSize = getIntSize(properties, env, "pg.net.send.buf.size", -1);
                 this.pgCharacterStoreCapacity = getInt(properties, env, "pg.character.store.capacity", 4096);
                 this.pgBinaryParamsCapacity = getInt(properties, env, "pg.binary.param.count.capacity", 2);
+                this.pgBinaryResultFormatPreferred = getBoolean(properties, env, "pg.binary.result.format.preferred", false);
                 this.pgCharacterStorePoolCapacity = getInt(properties, env, "pg.character.store.pool.capacity", 64);
                 this.pgConnectionPoolInitialCapacity = getInt(properties, env, "pg.connection.pool.capacity", 64);
                 this.pgPassword = getString(properties, env, "pg.password", "quest");
@@ -569,6 +600,9 @@ public class PropServerConfiguration implements ServerConfiguration {
             }
 
             this.commitMode = getCommitMode(properties, env, "cairo.commit.mode");
+            this.groupCommitEnabled = getBoolean(properties, env, "cairo.group.commit.enabled", false);
+            this.groupCommitQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.group.commit.queue.capacity", 256));
+            this.groupCommitWindowUs = getLong(properties, env, "cairo.group.commit.window", 0);
             this.createAsSelectRetryCount = getInt(properties, env, "cairo.create.as.select.retry.count", 5);
             this.defaultMapType = getString(properties, env, "cairo.default.map.type", "fast");
             this.defaultSymbolCacheFlag = getBoolean(properties, env, "cairo.default.symbol.cache.flag", true);
@@ -589,6 +623,7 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlColumnPoolCapacity = getInt(properties, env, "cairo.column.pool.capacity", 4096);
             this.sqlCompactMapLoadFactor = getDouble(properties, env, "cairo.compact.map.load.factor", 0.7);
             this.sqlExpressionPoolCapacity = getInt(properties, env, "cairo.expression.pool.capacity", 8192);
+            this.sqlFactoryCacheCapacity = getInt(properties, env, "cairo.sql.factory.cache.capacity", 256);
             this.sqlFastMapLoadFactor = getDouble(properties, env, "cairo.fast.map.load.factor", 0.5);
             this.sqlJoinContextPoolCapacity = getInt(properties, env, "cairo.sql.join.context.pool.capacity", 64);
             this.sqlLexerPoolCapacity = getInt(properties, env, "cairo.lexer.pool.capacity", 2048);
@@ -597,6 +632,7 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlMapMaxPages = getIntSize(properties, env, "cairo.sql.map.max.pages", Integer.MAX_VALUE);
             this.sqlMapMaxResizes = getIntSize(properties, env, "cairo.sql.map.max.resizes", Integer.MAX_VALUE);
             this.sqlModelPoolCapacity = getInt(properties, env, "cairo.model.pool.capacity", 1024);
+            this.sqlPageFrameMaxRows = getInt(properties, env, "cairo.sql.page.frame.max.rows", 1_000_000);
             this.sqlSortKeyPageSize = getLongSize(properties, env, "cairo.sql.sort.key.page.size", 4 * 1024 * 1024);
             this.sqlSortKeyMaxPages = getIntSize(properties, env, "cairo.sql.sort.key.max.pages", Integer.MAX_VALUE);
             this.sqlSortLightValuePageSize = getLongSize(properties, env, "cairo.sql.sort.light.value.page.size", 8 * 1048576);
@@ -608,8 +644,21 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlHashJoinLightValueMaxPages = getIntSize(properties, env, "cairo.sql.hash.join.light.value.max.pages", Integer.MAX_VALUE);
             this.sqlSortValuePageSize = getIntSize(properties, env, "cairo.sql.sort.value.page.size", 16777216);
             this.sqlSortValueMaxPages = getIntSize(properties, env, "cairo.sql.sort.value.max.pages", Integer.MAX_VALUE);
+            this.sqlSpillRoot = getString(properties, env, "cairo.sql.spill.root", null);
+            this.sqlSpillMemoryBudget = getLongSize(properties, env, "cairo.sql.spill.memory.budget", 256 * 1024 * 1024);
             this.workStealTimeoutNanos = getLong(properties, env, "cairo.work.steal.timeout.nanos", 10_000);
             this.parallelIndexingEnabled = getBoolean(properties, env, "cairo.parallel.indexing.enabled", true);
+            this.parallelColumnSyncEnabled = getBoolean(properties, env, "cairo.parallel.column.sync.enabled", true);
+            this.parallelColumnSyncThreshold = getInt(properties, env, "cairo.parallel.column.sync.threshold", 32);
+            this.sqlParallelFilterEnabled = getBoolean(properties, env, "cairo.sql.parallel.filter.enabled", true);
+            this.sqlParallelGroupByEnabled = getBoolean(properties, env, "cairo.sql.parallel.groupby.enabled", true);
+            this.sqlParallelHashJoinEnabled = getBoolean(properties, env, "cairo.sql.parallel.hash.join.enabled", true);
+            this.sqlParallelLatestByEnabled = getBoolean(properties, env, "cairo.sql.parallel.latest.by.enabled", true);
+            this.walEnabled = getBoolean(properties, env, "cairo.wal.enabled", false);
+            this.walSegmentRolloverSize = getLongSize(properties, env, "cairo.wal.segment.rollover.size", 16 * 1024 * 1024);
+            this.zoneMapEnabled = getBoolean(properties, env, "cairo.zone.map.enabled", true);
+            this.zoneMapBlockRowCount = Math.max(1, getLong(properties, env, "cairo.zone.map.block.row.count", 64 * 1024));
+            this.sqlCompiledFilterEnabled = getBoolean(properties, env, "cairo.sql.compiled.filter.enabled", true);
             this.sqlJoinMetadataPageSize = getIntSize(properties, env, "cairo.sql.join.metadata.page.size", 16384);
             this.sqlJoinMetadataMaxResizes = getIntSize(properties, env, "cairo.sql.join.metadata.max.resizes", Integer.MAX_VALUE);
             this.sqlAnalyticColumnPoolCapacity = getInt(properties, env, "cairo.sql.analytic.column.pool.capacity", 64);
@@ -620,6 +669,10 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlInsertModelPoolCapacity = getInt(properties, env, "cairo.sql.insert.model.pool.capacity", 64);
             this.sqlCopyModelPoolCapacity = getInt(properties, env, "cairo.sql.copy.model.pool.capacity", 32);
             this.sqlCopyBufferSize = getIntSize(properties, env, "cairo.sql.copy.buffer.size", 2 * 1024 * 1024);
+            this.sqlParallelCopyEnabled = getBoolean(properties, env, "cairo.sql.parallel.copy.enabled", true);
+            this.sqlCopyQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.sql.copy.queue.capacity", 32));
+            this.sqlCopyMinChunkSize = getLongSize(properties, env, "cairo.sql.copy.min.chunk.size", 64 * 1024 * 1024);
+            this.decompressedPageCacheSize = getLongSize(properties, env, "cairo.decompressed.page.cache.size", 64 * 1024 * 1024);
 
             this.writerDataIndexKeyAppendPageSize = Files.ceilPageSize(getLongSize(properties, env, "cairo.writer.data.index.key.append.page.size", 512 * 1024));
             this.writerDataIndexValueAppendPageSize = Files.ceilPageSize(getLongSize(properties, env, "cairo.writer.data.index.value.append.page.size", 16 * 1024 * 1024));
@@ -660,6 +713,7 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.backupMkdirMode = getInt(properties, env, "cairo.sql.backup.mkdir.mode", 509);
             this.tableBlockWriterQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.table.block.writer.queue.capacity", 256));
             this.columnIndexerQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.column.indexer.queue.capacity", 64));
+            this.columnSyncQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.column.sync.queue.capacity", 64));
             this.vectorAggregateQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.vector.aggregate.queue.capacity", 128));
             this.o3CallbackQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.o3.callback.queue.capacity", 128));
             this.o3PartitionQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.o3.partition.queue.capacity", 128));
@@ -680,6 +734,10 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlAnalyticTreeKeyMaxPages = Numbers.ceilPow2(getInt(properties, env, "cairo.sql.analytic.tree.max.pages", Integer.MAX_VALUE));
             this.sqlTxnScoreboardEntryCount = Numbers.ceilPow2(getInt(properties, env, "cairo.o3.txn.scoreboard.entry.count", 16384));
             this.latestByQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.latestby.queue.capacity", 32));
+            this.pageFrameFilterQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.page.frame.filter.queue.capacity", 64));
+            this.pageFrameGroupByQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.page.frame.groupby.queue.capacity", 64));
+            this.hashJoinBuildQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.hash.join.build.queue.capacity", 64));
+            this.latestByScanQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.latest.by.scan.queue.capacity", 64));
             this.telemetryEnabled = getBoolean(properties, env, "telemetry.enabled", true);
             this.telemetryDisableCompletely = getBoolean(properties, env, "telemetry.disable.completely", false);
             this.telemetryQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "telemetry.queue.capacity", 512));
@@ -750,6 +808,8 @@ public class PropServerConfiguration implements ServerConfiguration {
                 this.lineTcpNUpdatesPerLoadRebalance = getInt(properties, env, "line.tcp.n.updates.per.load.balance", 10_000_000);
                 this.lineTcpMaxLoadRatio = getDouble(properties, env, "line.tcp.max.load.ratio", 1.9);
                 this.lineTcpMaintenanceInterval = getInt(properties, env, "line.tcp.maintenance.job.interval", 30_000);
+                this.lineTcpCommitLagAdaptive = getBoolean(properties, env, "line.tcp.commit.lag.adaptive", false);
+                this.lineTcpCommitVisibilitySla = getLong(properties, env, "line.tcp.commit.visibility.sla", 10_000);
                 this.lineTcpAuthDbPath = getString(properties, env, "line.tcp.auth.db.path", null);
                 String defaultPartitionByProperty = getString(properties, env, "line.tcp.default.partition.by", "DAY");
                 this.lineDefaultPartitionBy = PartitionBy.fromString(defaultPartitionByProperty);
@@ -1550,6 +1610,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlColumnCastModelPoolCapacity;
         }
 
+        @Override
+        public int getColumnSyncQueueCapacity() {
+            return columnSyncQueueCapacity;
+        }
+
         @Override
         public int getColumnIndexerQueueCapacity() {
             return columnIndexerQueueCapacity;
@@ -1610,6 +1675,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return dbDirectory;
         }
 
+        @Override
+        public long getDecompressedPageCacheSize() {
+            return decompressedPageCacheSize;
+        }
+
         @Override
         public DateLocale getDefaultDateLocale() {
             return locale;
@@ -1660,6 +1730,16 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlGroupByPoolCapacity;
         }
 
+        @Override
+        public int getGroupCommitQueueCapacity() {
+            return groupCommitQueueCapacity;
+        }
+
+        @Override
+        public long getGroupCommitWindowUs() {
+            return groupCommitWindowUs;
+        }
+
         @Override
         public long getIdleCheckInterval() {
             return idleCheckInterval;
@@ -1765,6 +1845,31 @@ public class PropServerConfiguration implements ServerConfiguration {
             return o3PurgeQueueCapacity;
         }
 
+        @Override
+        public int getPageFrameFilterQueueCapacity() {
+            return pageFrameFilterQueueCapacity;
+        }
+
+        @Override
+        public int getPageFrameGroupByQueueCapacity() {
+            return pageFrameGroupByQueueCapacity;
+        }
+
+        @Override
+        public int getHashJoinBuildQueueCapacity() {
+            return hashJoinBuildQueueCapacity;
+        }
+
+        @Override
+        public int getLatestByScanQueueCapacity() {
+            return latestByScanQueueCapacity;
+        }
+
+        @Override
+        public int getParallelColumnSyncThreshold() {
+            return parallelColumnSyncThreshold;
+        }
+
         @Override
         public int getParallelIndexThreshold() {
             return parallelIndexThreshold;
@@ -1850,6 +1955,16 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlCopyBufferSize;
         }
 
+        @Override
+        public long getSqlCopyMinChunkSize() {
+            return sqlCopyMinChunkSize;
+        }
+
+        @Override
+        public int getSqlCopyQueueCapacity() {
+            return sqlCopyQueueCapacity;
+        }
+
         @Override
         public int getSqlDistinctTimestampKeyCapacity() {
             return sqlDistinctTimestampKeyCapacity;
@@ -1865,6 +1980,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlExpressionPoolCapacity;
         }
 
+        @Override
+        public int getSqlFactoryCacheCapacity() {
+            return sqlFactoryCacheCapacity;
+        }
+
         @Override
         public double getSqlFastMapLoadFactor() {
             return sqlFastMapLoadFactor;
@@ -1930,6 +2050,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlModelPoolCapacity;
         }
 
+        @Override
+        public int getSqlPageFrameMaxRows() {
+            return sqlPageFrameMaxRows;
+        }
+
         @Override
         public int getSqlSortKeyMaxPages() {
             return sqlSortKeyMaxPages;
@@ -1960,6 +2085,16 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlSortValueMaxPages;
         }
 
+        @Override
+        public long getSqlSpillMemoryBudget() {
+            return sqlSpillMemoryBudget;
+        }
+
+        @Override
+        public CharSequence getSqlSpillRoot() {
+            return sqlSpillRoot;
+        }
+
         @Override
         public long getWriterAsyncCommandBusyWaitTimeout() {
             return writerAsyncCommandBusyWaitTimeout;
@@ -2029,15 +2164,75 @@ public class PropServerConfiguration implements ServerConfiguration {
             return workStealTimeoutNanos;
         }
 
+        @Override
+        public boolean isGroupCommitEnabled() {
+            return groupCommitEnabled;
+        }
+
         @Override
         public boolean isO3QuickSortEnabled() {
             return o3QuickSortEnabled;
         }
 
+        @Override
+        public boolean isParallelColumnSyncEnabled() {
+            return parallelColumnSyncEnabled;
+        }
+
         @Override
         public boolean isParallelIndexingEnabled() {
             return parallelIndexingEnabled;
         }
+
+        @Override
+        public boolean isSqlCompiledFilterEnabled() {
+            return sqlCompiledFilterEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelFilterEnabled() {
+            return sqlParallelFilterEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelGroupByEnabled() {
+            return sqlParallelGroupByEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelCopyEnabled() {
+            return sqlParallelCopyEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelHashJoinEnabled() {
+            return sqlParallelHashJoinEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelLatestByEnabled() {
+            return sqlParallelLatestByEnabled;
+        }
+
+        @Override
+        public long getWalSegmentRolloverSize() {
+            return walSegmentRolloverSize;
+        }
+
+        @Override
+        public boolean isWalEnabled() {
+            return walEnabled;
+        }
+
+        @Override
+        public long getZoneMapBlockRowCount() {
+            return zoneMapBlockRowCount;
+        }
+
+        @Override
+        public boolean isZoneMapEnabled() {
+            return zoneMapEnabled;
+        }
     }
 
     private class PropLineUdpReceiverConfiguration implements LineUdpReceiverConfiguration {
@@ -2311,6 +2506,16 @@ public class PropServerConfiguration implements ServerConfiguration {
             return lineTcpMaintenanceInterval;
         }
 
+        @Override
+        public long getCommitVisibilitySla() {
+            return lineTcpCommitVisibilitySla;
+        }
+
+        @Override
+        public boolean isCommitLagAdaptive() {
+            return lineTcpCommitLagAdaptive;
+        }
+
         @Override
         public double getMaxLoadRatio() {
             return lineTcpMaxLoadRatio;
@@ -2723,6 +2928,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return pgWorkerSleepThreshold;
         }
 
+        @Override
+        public boolean isBinaryResultFormatPreferred() {
+            return pgBinaryResultFormatPreferred;
+        }
+
         @Override
         public boolean isEnabled() {
             return pgEnabled;
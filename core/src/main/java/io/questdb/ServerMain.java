@@ -25,6 +25,7 @@
 package io.questdb;
 
 import io.questdb.cairo.*;
+import io.questdb.cairo.wal.WalApplyJob;
 import io.questdb.cutlass.http.HttpServer;
 import io.questdb.cutlass.json.JsonException;
 import io.questdb.cutlass.line.tcp.LineTcpReceiver;
@@ -154,6 +155,12 @@ public class ServerMain {
         workerPool.assign(new O3CopyJob(cairoEngine.getMessageBus()));
         workerPool.assign(new O3PurgeDiscoveryJob(cairoEngine.getMessageBus(), workerPool.getWorkerCount()));
         workerPool.assign(new O3PurgeJob(cairoEngine.getMessageBus()));
+        if (configuration.getCairoConfiguration().isGroupCommitEnabled()) {
+            workerPool.assign(new GroupCommitJob(cairoEngine.getMessageBus()));
+        }
+        final WalApplyJob walApplyJob = new WalApplyJob(cairoEngine);
+        workerPool.assign(walApplyJob);
+        instancesToClean.add(walApplyJob);
         O3Utils.initBuf(workerPool.getWorkerCount() + 1);
 
         Metrics metrics;
@@ -162,6 +169,7 @@ public class ServerMain {
         } else {
             metrics = Metrics.disabled();
         }
+        metrics.addQueryFactoryCacheGauges(cairoEngine.getQueryFactoryCache());
 
         try {
             initQuestDb(workerPool, cairoEngine, log);
@@ -200,7 +208,8 @@ public class ServerMain {
                     configuration.getLineTcpReceiverConfiguration(),
                     workerPool,
                     log,
-                    cairoEngine
+                    cairoEngine,
+                    metrics
             ));
 
             startQuestDb(workerPool, cairoEngine, log);
@@ -65,6 +65,8 @@ public interface CairoConfiguration {
 
     int getColumnIndexerQueueCapacity();
 
+    int getColumnSyncQueueCapacity();
+
     /**
      * Default commit lag in microseconds for new tables. This value
      * can be overridden with 'create table' statement.
@@ -93,6 +95,14 @@ public interface CairoConfiguration {
 
     CharSequence getDbDirectory(); // env['cairo.root'], defaults to db
 
+    /**
+     * Capacity of per-reader cache of inflated blocks of compressed partitions. Blocks that are
+     * being read are kept in memory even when the cache is full.
+     *
+     * @return cache size in bytes
+     */
+    long getDecompressedPageCacheSize();
+
     DateLocale getDefaultDateLocale();
 
     CharSequence getDefaultMapType();
@@ -113,6 +123,15 @@ public interface CairoConfiguration {
 
     int getGroupByPoolCapacity();
 
+    int getGroupCommitQueueCapacity();
+
+    /**
+     * Time the group commit flusher waits for more writers to join the batch.
+     *
+     * @return wait time in microseconds, 0 flushes whatever is pending without waiting
+     */
+    long getGroupCommitWindowUs();
+
     long getIdleCheckInterval();
 
     long getInactiveReaderTTL();
@@ -160,6 +179,21 @@ public interface CairoConfiguration {
 
     int getO3PurgeQueueCapacity();
 
+    int getPageFrameFilterQueueCapacity();
+
+    int getPageFrameGroupByQueueCapacity();
+
+    int getHashJoinBuildQueueCapacity();
+
+    int getLatestByScanQueueCapacity();
+
+    /**
+     * Column files are synced on the worker pool when commit syncs at least this many files.
+     *
+     * @return minimum number of files to sync in parallel
+     */
+    int getParallelColumnSyncThreshold();
+
     int getParallelIndexThreshold();
 
     default Rnd getRandom() {
@@ -207,12 +241,21 @@ public interface CairoConfiguration {
 
     int getSqlCopyBufferSize();
 
+    long getSqlCopyMinChunkSize();
+
+    int getSqlCopyQueueCapacity();
+
     int getSqlDistinctTimestampKeyCapacity();
 
     double getSqlDistinctTimestampLoadFactor();
 
     int getSqlExpressionPoolCapacity();
 
+    /**
+     * @return maximum number of idle compiled select factories kept by engine-wide query cache, 0 disables the cache
+     */
+    int getSqlFactoryCacheCapacity();
+
     double getSqlFastMapLoadFactor();
 
     int getSqlHashJoinLightValueMaxPages();
@@ -248,6 +291,8 @@ public interface CairoConfiguration {
 
     int getSqlModelPoolCapacity();
 
+    int getSqlPageFrameMaxRows();
+
     int getSqlSortKeyMaxPages();
 
     long getSqlSortKeyPageSize();
@@ -260,6 +305,17 @@ public interface CairoConfiguration {
 
     int getSqlSortValuePageSize();
 
+    /**
+     * Native memory a single sort, join or group by buffer may take before it moves to a temporary
+     * file under {@link #getSqlSpillRoot()}. Applies to each buffer separately, not to the query as a whole.
+     *
+     * @return memory budget in bytes
+     */
+    long getSqlSpillMemoryBudget();
+
+    // null disables spilling
+    CharSequence getSqlSpillRoot();
+
     int getTableBlockWriterQueueCapacity();
 
     TelemetryConfiguration getTelemetryConfiguration();
@@ -282,7 +338,45 @@ public interface CairoConfiguration {
 
     int getWriterTickRowsCountMod();
 
+    /**
+     * In {@link CommitMode#SYNC} writers that commit at the same time have their files synced
+     * in a batch by a single flusher. Disabled by default, batching pays off only when many
+     * tables commit in sync mode at the same time.
+     *
+     * @return true when group commit is enabled
+     */
+    boolean isGroupCommitEnabled();
+
     boolean isO3QuickSortEnabled();
 
+    boolean isParallelColumnSyncEnabled();
+
     boolean isParallelIndexingEnabled();
+
+    boolean isSqlCompiledFilterEnabled();
+
+    boolean isSqlParallelCopyEnabled();
+
+    boolean isSqlParallelFilterEnabled();
+
+    boolean isSqlParallelGroupByEnabled();
+
+    boolean isSqlParallelHashJoinEnabled();
+
+    boolean isSqlParallelLatestByEnabled();
+
+    long getWalSegmentRolloverSize();
+
+    boolean isWalEnabled();
+
+    long getZoneMapBlockRowCount();
+
+    /**
+     * Zone maps keep min, max and null count of numeric columns per partition and per block of rows.
+     * Writer builds them for partitions it no longer appends to, queries use them to skip data
+     * that cannot match the filter.
+     *
+     * @return true when writer builds zone maps
+     */
+    boolean isZoneMapEnabled();
 }
@@ -29,11 +29,14 @@ import io.questdb.MessageBusImpl;
 import io.questdb.cairo.mig.EngineMigration;
 import io.questdb.cairo.pool.PoolListener;
 import io.questdb.cairo.pool.ReaderPool;
+import io.questdb.cairo.pool.WalWriterPool;
 import io.questdb.cairo.pool.WriterPool;
 import io.questdb.cairo.pool.WriterSource;
 import io.questdb.cairo.sql.ReaderOutOfDateException;
 import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.cairo.wal.WalWriter;
 import io.questdb.griffin.AlterStatement;
+import io.questdb.griffin.QueryFactoryCache;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.log.LogRecord;
@@ -55,6 +58,7 @@ public class CairoEngine implements Closeable, WriterSource {
     private static final Log LOG = LogFactory.getLog(CairoEngine.class);
     private final WriterPool writerPool;
     private final ReaderPool readerPool;
+    private final WalWriterPool walWriterPool;
     private final CairoConfiguration configuration;
     private final EngineMaintenanceJob engineMaintenanceJob;
     private final MessageBus messageBus;
@@ -65,6 +69,9 @@ public class CairoEngine implements Closeable, WriterSource {
     private final MCSequence tableWriterCmdSubSeq;
     private final long tableIdMemSize;
     private final AtomicLong alterCommandCommandCorrelationId = new AtomicLong();
+    // tables with WAL segments that might have rows to apply
+    private final ConcurrentHashMap.KeySetView<Boolean> walPendingTables = ConcurrentHashMap.newKeySet();
+    private final QueryFactoryCache queryFactoryCache;
     private long tableIdFd = -1;
     private long tableIdMem = 0;
 
@@ -73,7 +80,9 @@ public class CairoEngine implements Closeable, WriterSource {
         this.messageBus = new MessageBusImpl(configuration);
         this.writerPool = new WriterPool(configuration, messageBus);
         this.readerPool = new ReaderPool(configuration);
+        this.walWriterPool = new WalWriterPool(configuration, this);
         this.engineMaintenanceJob = new EngineMaintenanceJob(configuration);
+        this.queryFactoryCache = new QueryFactoryCache(configuration.getSqlFactoryCacheCapacity());
         if (configuration.getTelemetryConfiguration().getEnabled()) {
             this.telemetryQueue = new RingQueue<>(TelemetryTask::new, configuration.getTelemetryConfiguration().getQueueCapacity());
             this.telemetryPubSeq = new MPSequence(telemetryQueue.getCycle());
@@ -99,6 +108,8 @@ public class CairoEngine implements Closeable, WriterSource {
     }
 
     public boolean clear() {
+        queryFactoryCache.clear();
+        walWriterPool.releaseAll();
         boolean b1 = readerPool.releaseAll();
         boolean b2 = writerPool.releaseAll();
         return b1 & b2;
@@ -106,6 +117,8 @@ public class CairoEngine implements Closeable, WriterSource {
 
     @Override
     public void close() {
+        Misc.free(queryFactoryCache);
+        Misc.free(walWriterPool);
         Misc.free(writerPool);
         Misc.free(readerPool);
         freeTableId();
@@ -156,6 +169,15 @@ public class CairoEngine implements Closeable, WriterSource {
         );
     }
 
+    public void drainWalPendingTables(ObjList<CharSequence> sink) {
+        if (!walPendingTables.isEmpty()) {
+            for (CharSequence tableName : walPendingTables) {
+                walPendingTables.remove(tableName);
+                sink.add(tableName);
+            }
+        }
+    }
+
     public void freeTableId() {
         if (tableIdMem != 0) {
             configuration.getFilesFacade().munmap(tableIdMem, tableIdMemSize, MemoryTag.MMAP_DEFAULT);
@@ -211,6 +233,10 @@ public class CairoEngine implements Closeable, WriterSource {
         return this.writerPool.getPoolListener();
     }
 
+    public QueryFactoryCache getQueryFactoryCache() {
+        return queryFactoryCache;
+    }
+
     public void setPoolListener(PoolListener poolListener) {
         this.writerPool.setPoolListener(poolListener);
         this.readerPool.setPoolListener(poolListener);
@@ -272,6 +298,27 @@ public class CairoEngine implements Closeable, WriterSource {
     }
 
     @Override
+    public TableWriterAPI getTableWriterAPI(
+            CairoSecurityContext securityContext,
+            CharSequence tableName,
+            CharSequence lockReason
+    ) {
+        if (configuration.isWalEnabled()) {
+            return getWalWriter(securityContext, tableName);
+        }
+        return getWriter(securityContext, tableName, lockReason);
+    }
+
+    public WalWriter getWalWriter(
+            CairoSecurityContext securityContext,
+            CharSequence tableName
+    ) {
+        securityContext.checkWritePermission();
+        try (TableReader reader = readerPool.get(tableName)) {
+            return walWriterPool.get(reader);
+        }
+    }
+
     public TableWriter getWriter(
             CairoSecurityContext securityContext,
             CharSequence tableName,
@@ -289,6 +336,8 @@ public class CairoEngine implements Closeable, WriterSource {
         assert null != lockReason;
         securityContext.checkWritePermission();
 
+        // idle WAL writers hold files under the table directory
+        walWriterPool.release(tableName);
         CharSequence lockedReason = writerPool.lock(tableName, lockReason);
         if (lockedReason == OWNERSHIP_REASON_NONE) {
             boolean locked = readerPool.lock(tableName);
@@ -323,6 +372,10 @@ public class CairoEngine implements Closeable, WriterSource {
         }
     }
 
+    public void notifyWalCommit(CharSequence tableName) {
+        walPendingTables.add(Chars.toString(tableName));
+    }
+
     public long publishTableWriterCommand(AlterStatement alterTableStatement) {
         CharSequence tableName = alterTableStatement.getTableName();
         final MPSequence commandPubSeq = messageBus.getTableWriterCommandPubSeq();
@@ -360,8 +413,13 @@ public class CairoEngine implements Closeable, WriterSource {
         writerPool.releaseAll();
     }
 
+    public void releaseAllWalWriters() {
+        walWriterPool.releaseAll();
+    }
+
     public boolean releaseInactive() {
-        boolean useful = writerPool.releaseInactive();
+        boolean useful = walWriterPool.releaseInactive();
+        useful |= writerPool.releaseInactive();
         useful |= readerPool.releaseInactive();
         return useful;
     }
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.api.MemoryMA;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+
+/**
+ * Sync of a single column file. Entry is run either by {@link ColumnSyncJob} or by the thread that
+ * published it, whichever locks the entry first.
+ */
+public class ColumnSyncEntry extends AbstractParallelEntry {
+    private MemoryMA memory;
+    private boolean async;
+
+    @Override
+    protected void execute(int workerId) {
+        memory.sync(async);
+    }
+
+    @Override
+    protected CairoException putFailure(CairoException e) {
+        return e.put("column sync failed [fd=").put(memory.getFd());
+    }
+
+    ColumnSyncEntry of(int sequence, MemoryMA memory, boolean async) {
+        this.memory = memory;
+        this.async = async;
+        // entry becomes available for locking only after it is fully initialised
+        of(sequence);
+        return this;
+    }
+
+    void clear() {
+        memory = null;
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.vm.api.MemoryMA;
+import io.questdb.griffin.SqlExecutionCircuitBreaker;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.RingQueue;
+import io.questdb.std.ObjList;
+import io.questdb.tasks.ColumnSyncTask;
+
+/**
+ * Syncs column files at commit. When there are enough files they are synced by the worker pool,
+ * calling thread syncs files from the end of the list while workers take them from the front,
+ * so that the sync completes when no worker picks up the work.
+ */
+public class ColumnSyncer {
+    private final ObjList<ColumnSyncEntry> entries = new ObjList<>();
+    private final RingQueue<ColumnSyncTask> queue;
+    private final MPSequence pubSeq;
+    private final boolean parallelSyncEnabled;
+    private final int parallelSyncThreshold;
+    private int size;
+    private int sequence;
+
+    public ColumnSyncer(CairoConfiguration configuration, MessageBus messageBus) {
+        this.queue = messageBus.getColumnSyncQueue();
+        this.pubSeq = messageBus.getColumnSyncPubSeq();
+        this.parallelSyncEnabled = configuration.isParallelColumnSyncEnabled();
+        this.parallelSyncThreshold = configuration.getParallelColumnSyncThreshold();
+    }
+
+    public void add(MemoryMA memory, boolean async) {
+        if (size == entries.size()) {
+            entries.add(new ColumnSyncEntry());
+        }
+        entries.getQuick(size++).of(sequence++, memory, async);
+    }
+
+    public void sync() {
+        final int n = size;
+        if (n == 0) {
+            return;
+        }
+
+        try {
+            if (parallelSyncEnabled && n >= parallelSyncThreshold) {
+                // the last entry is always synced by this thread
+                for (int i = 0; i < n - 1; i++) {
+                    long cursor;
+                    do {
+                        cursor = pubSeq.next();
+                    } while (cursor == -2);
+
+                    if (cursor < 0) {
+                        // queue is full, remaining entries are synced below
+                        break;
+                    }
+                    queue.get(cursor).entry = entries.getQuick(i);
+                    pubSeq.done(cursor);
+                }
+            }
+            AbstractParallelEntry.runAll(entries, n, SqlExecutionCircuitBreaker.NOOP_CIRCUIT_BREAKER);
+        } finally {
+            for (int i = 0; i < n; i++) {
+                entries.getQuick(i).clear();
+            }
+            size = 0;
+        }
+    }
+}
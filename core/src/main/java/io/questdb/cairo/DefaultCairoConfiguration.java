@@ -93,6 +93,16 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024 * 1024;
     }
 
+    @Override
+    public long getSqlCopyMinChunkSize() {
+        return 64 * 1024 * 1024;
+    }
+
+    @Override
+    public int getSqlCopyQueueCapacity() {
+        return 32;
+    }
+
     @Override
     public int getCopyPoolCapacity() {
         return 16;
@@ -178,6 +188,31 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 509;
     }
 
+    @Override
+    public int getPageFrameFilterQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public int getPageFrameGroupByQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public int getHashJoinBuildQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public int getLatestByScanQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public int getParallelColumnSyncThreshold() {
+        return 32;
+    }
+
     @Override
     public int getParallelIndexThreshold() {
         return 100000;
@@ -260,6 +295,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 8192;
     }
 
+    @Override
+    public int getSqlFactoryCacheCapacity() {
+        return 256;
+    }
+
     @Override
     public double getSqlFastMapLoadFactor() {
         return 0.5;
@@ -310,6 +350,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getSqlPageFrameMaxRows() {
+        return 1_000_000;
+    }
+
     @Override
     public long getSqlSortKeyPageSize() {
         return 4 * Numbers.SIZE_1MB;
@@ -390,6 +435,16 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return Numbers.SIZE_1MB * 16;
     }
 
+    @Override
+    public long getSqlSpillMemoryBudget() {
+        return 256 * Numbers.SIZE_1MB;
+    }
+
+    @Override
+    public CharSequence getSqlSpillRoot() {
+        return null;
+    }
+
     @Override
     public int getSqlSortValueMaxPages() {
         return 1024;
@@ -425,11 +480,66 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024 - 1;
     }
 
+    @Override
+    public boolean isParallelColumnSyncEnabled() {
+        return true;
+    }
+
     @Override
     public boolean isParallelIndexingEnabled() {
         return true;
     }
 
+    @Override
+    public boolean isSqlCompiledFilterEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelCopyEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelFilterEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelGroupByEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelHashJoinEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelLatestByEnabled() {
+        return true;
+    }
+
+    @Override
+    public long getWalSegmentRolloverSize() {
+        return 16 * 1024 * 1024;
+    }
+
+    @Override
+    public boolean isWalEnabled() {
+        return false;
+    }
+
+    @Override
+    public long getZoneMapBlockRowCount() {
+        return 64 * 1024;
+    }
+
+    @Override
+    public boolean isZoneMapEnabled() {
+        return true;
+    }
+
     @Override
     public int getSqlJoinMetadataPageSize() {
         return 16 * 1024;
@@ -485,6 +595,16 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getGroupCommitQueueCapacity() {
+        return 256;
+    }
+
+    @Override
+    public long getGroupCommitWindowUs() {
+        return 0;
+    }
+
     @Override
     public int getMaxSymbolNotEqualsCount() {
         return 100;
@@ -520,6 +640,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 4;
     }
 
+    @Override
+    public int getColumnSyncQueueCapacity() {
+        return 64;
+    }
+
     @Override
     public int getColumnIndexerQueueCapacity() {
         return 1024;
@@ -570,6 +695,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return databaseIdLo;
     }
 
+    @Override
+    public long getDecompressedPageCacheSize() {
+        return 64 * 1024 * 1024;
+    }
+
     @Override
     public int getTxnScoreboardEntryCount() {
         return 8192;
@@ -585,6 +715,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 0;
     }
 
+    @Override
+    public boolean isGroupCommitEnabled() {
+        return false;
+    }
+
     @Override
     public boolean isO3QuickSortEnabled() {
         return false;
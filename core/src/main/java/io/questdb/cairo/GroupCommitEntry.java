@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.api.MemoryMA;
+import io.questdb.std.Mutable;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Files of a single commit which have to be synced before the commit can proceed. Entry is owned by
+ * {@link TableWriter}, the writer blocks until one of the flushers syncs the files and marks the entry done.
+ * Flusher accesses writer's memory only while the writer is waiting. Failure to sync is copied to
+ * every entry of the batch, entries are marked done either way.
+ */
+public class GroupCommitEntry implements Mutable {
+    private final ObjList<MemoryMA> memories = new ObjList<>();
+    // CairoException instances are thread-local, flusher copies the message
+    private final StringSink errorMessage = new StringSink();
+    private int errorErrno;
+    private boolean failed;
+    private volatile boolean done;
+
+    public void add(MemoryMA memory) {
+        memories.add(memory);
+    }
+
+    @Override
+    public void clear() {
+        memories.clear();
+        failed = false;
+        errorMessage.clear();
+        done = false;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public int size() {
+        return memories.size();
+    }
+
+    public void sync(ColumnSyncer syncer) {
+        try {
+            collect(syncer);
+            syncer.sync();
+        } catch (Throwable e) {
+            fail(e);
+        } finally {
+            markDone();
+        }
+    }
+
+    public void throwIfFailed() {
+        if (failed) {
+            throw CairoException.instance(errorErrno).put(errorMessage);
+        }
+    }
+
+    void collect(ColumnSyncer syncer) {
+        for (int i = 0, n = memories.size(); i < n; i++) {
+            syncer.add(memories.getQuick(i), false);
+        }
+    }
+
+    void fail(Throwable e) {
+        if (e instanceof CairoException) {
+            errorErrno = ((CairoException) e).getErrno();
+            errorMessage.put(((CairoException) e).getFlyweightMessage());
+        } else {
+            errorErrno = 0;
+            errorMessage.put("could not sync commit [error=").put(e.toString()).put(']');
+        }
+        // published to the writer by volatile write in markDone()
+        failed = true;
+    }
+
+    void markDone() {
+        done = true;
+    }
+}
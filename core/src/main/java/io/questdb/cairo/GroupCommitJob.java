@@ -0,0 +1,128 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.MessageBus;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.MCSequence;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.SynchronizedJob;
+import io.questdb.std.ObjList;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
+import io.questdb.tasks.GroupCommitTask;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Syncs files of commits made in {@link CommitMode#SYNC} by all writers. Writers publish their
+ * {@link GroupCommitEntry} and wait for it to be synced, commits arriving while a batch is synced
+ * accumulate in the queue and are flushed together by the next batch.
+ * <p>
+ * Writers waiting for their entry flush pending batches too, hence commits make progress when
+ * this job is not running.
+ */
+public class GroupCommitJob extends SynchronizedJob {
+    private static final Log LOG = LogFactory.getLog(GroupCommitJob.class);
+    private final RingQueue<GroupCommitTask> queue;
+    private final MCSequence subSeq;
+    private final MicrosecondClock clock;
+    private final long windowUs;
+    private final ObjList<GroupCommitEntry> batch = new ObjList<>();
+    private final ColumnSyncer columnSyncer;
+
+    public GroupCommitJob(MessageBus messageBus) {
+        final CairoConfiguration configuration = messageBus.getConfiguration();
+        this.queue = messageBus.getGroupCommitQueue();
+        this.subSeq = messageBus.getGroupCommitSubSeq();
+        this.clock = configuration.getMicrosecondClock();
+        this.windowUs = configuration.getGroupCommitWindowUs();
+        this.columnSyncer = new ColumnSyncer(configuration, messageBus);
+    }
+
+    /**
+     * Takes all pending entries off the queue and syncs them.
+     *
+     * @param queue    group commit queue
+     * @param subSeq   consumer sequence of the queue
+     * @param batch    reusable list for entries of the batch
+     * @param syncer   syncer owned by the calling thread, files of all entries are synced at once
+     * @param clock    clock to measure the window
+     * @param windowUs time to wait for more entries after the first one is taken, 0 not to wait
+     * @return true when at least one entry was synced, failure to sync is handed to the entries
+     */
+    public static boolean flush(
+            RingQueue<GroupCommitTask> queue,
+            MCSequence subSeq,
+            ObjList<GroupCommitEntry> batch,
+            ColumnSyncer syncer,
+            MicrosecondClock clock,
+            long windowUs
+    ) {
+        batch.clear();
+        long deadline = Long.MAX_VALUE;
+        while (true) {
+            final long cursor = subSeq.next();
+            if (cursor > -1) {
+                batch.add(queue.get(cursor).entry);
+                subSeq.done(cursor);
+                if (windowUs > 0 && batch.size() == 1) {
+                    deadline = clock.getTicks() + windowUs;
+                }
+            } else if (cursor == -1) {
+                if (batch.size() == 0 || windowUs == 0 || clock.getTicks() >= deadline) {
+                    break;
+                }
+                LockSupport.parkNanos(1);
+            }
+        }
+
+        final int n = batch.size();
+        try {
+            for (int i = 0; i < n; i++) {
+                batch.getQuick(i).collect(syncer);
+            }
+            syncer.sync();
+        } catch (Throwable e) {
+            LOG.error().$("could not sync group commit [entries=").$(n).$(", error=").$(e).$(']').$();
+            // files of the batch are synced together, none of the commits can be trusted
+            for (int i = 0; i < n; i++) {
+                batch.getQuick(i).fail(e);
+            }
+        } finally {
+            // writers may reuse their entries as soon as they are done
+            for (int i = 0; i < n; i++) {
+                batch.getQuick(i).markDone();
+            }
+            batch.clear();
+        }
+        return n > 0;
+    }
+
+    @Override
+    protected boolean runSerially() {
+        return flush(queue, subSeq, batch, columnSyncer, clock, windowUs);
+    }
+}
@@ -0,0 +1,592 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.cairo.vm.api.MemoryCMARW;
+import io.questdb.cairo.vm.api.MemoryR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+import static io.questdb.cairo.TableUtils.*;
+import static io.questdb.cairo.TableWriter.getPrimaryColumnIndex;
+import static io.questdb.cairo.TableWriter.getSecondaryColumnIndex;
+
+/**
+ * Collapses rows of O3 commit that share designated timestamp and dedup key values. Within the
+ * commit the row written last survives. When commit collides with rows already in a partition the
+ * partition is rewritten into a new version without the superseded rows.
+ */
+final class O3Deduplicator implements Closeable {
+    private static final Log LOG = LogFactory.getLog(O3Deduplicator.class);
+    private static final int SRC_DATA = 0;
+    private static final int SRC_O3 = 1;
+    private static final int NULL_BUF_ENTRY_SIZE = 32;
+    private final CairoConfiguration configuration;
+    private final FilesFacade ff;
+    private final Path path;
+    private final Path dstPath;
+    private final int rootLen;
+    private final IntList keyColumns = new IntList();
+    private final IntList keyColumnShl = new IntList();
+    private final LongList keyColumnTops = new LongList();
+    private final LongList keyColumnAddrs = new LongList();
+    private final LongList groupRows = new LongList();
+    private final LongList dropRows = new LongList();
+    private final LongList runs = new LongList();
+    // fd, address and size triplets of files mapped for reading
+    private final LongList mappedFiles = new LongList();
+    private final MemoryCMARW dstFixMem = Vm.getCMARWInstance();
+    private final MemoryCMARW dstVarMem = Vm.getCMARWInstance();
+    private final BitmapIndexWriter indexWriter = new BitmapIndexWriter();
+    private long nullBuf;
+    private long nullBufSize;
+    private long tempBuf8;
+
+    O3Deduplicator(CairoConfiguration configuration, Path tablePath) {
+        this.configuration = configuration;
+        this.ff = configuration.getFilesFacade();
+        this.path = new Path().of(tablePath);
+        this.dstPath = new Path().of(tablePath);
+        this.rootLen = path.length();
+        this.tempBuf8 = Unsafe.malloc(Long.BYTES, MemoryTag.NATIVE_DEFAULT);
+    }
+
+    @Override
+    public void close() {
+        unmapAll();
+        Misc.free(dstFixMem);
+        Misc.free(dstVarMem);
+        Misc.free(indexWriter);
+        Misc.free(path);
+        Misc.free(dstPath);
+        if (nullBuf != 0) {
+            Unsafe.free(nullBuf, nullBufSize, MemoryTag.NATIVE_DEFAULT);
+            nullBuf = 0;
+            nullBufSize = 0;
+        }
+        if (tempBuf8 != 0) {
+            Unsafe.free(tempBuf8, Long.BYTES, MemoryTag.NATIVE_DEFAULT);
+            tempBuf8 = 0;
+        }
+    }
+
+    /**
+     * Removes superseded rows from sorted O3 timestamp index. Rows that were moved from the last partition
+     * into O3 memory are older than the rest of O3 rows, even though they are stored after them.
+     *
+     * @param sortedTimestampsAddr timestamp index sorted by timestamp, pairs of timestamp and row number
+     * @param rowCount             number of entries in the index
+     * @param movedRowLo           row number of the first row moved from the last partition
+     * @param o3Columns            O3 column memory, not yet reshuffled
+     * @return number of entries left in the index
+     */
+    long dedupO3(long sortedTimestampsAddr, long rowCount, long movedRowLo, ObjList<? extends MemoryCARW> o3Columns) {
+        long w = 0;
+        for (long r = 0; r < rowCount; ) {
+            final long ts = TableWriter.getTimestampIndexValue(sortedTimestampsAddr, r);
+            long e = r + 1;
+            while (e < rowCount && TableWriter.getTimestampIndexValue(sortedTimestampsAddr, e) == ts) {
+                e++;
+            }
+
+            if (e - r == 1) {
+                copyIndexEntry(sortedTimestampsAddr, r, w++);
+            } else {
+                // groups of equal timestamps are expected to be small
+                groupRows.clear();
+                for (long i = r; i < e; i++) {
+                    final long rowI = getIndexRow(sortedTimestampsAddr, i);
+                    final long rankI = rank(rowI, movedRowLo, rowCount);
+                    boolean superseded = false;
+                    for (long j = r; j < e; j++) {
+                        final long rowJ = getIndexRow(sortedTimestampsAddr, j);
+                        if (rank(rowJ, movedRowLo, rowCount) > rankI && o3KeysEqual(o3Columns, rowI, rowJ)) {
+                            superseded = true;
+                            break;
+                        }
+                    }
+                    if (!superseded) {
+                        groupRows.add(rowI);
+                    }
+                }
+
+                for (int i = 0, n = groupRows.size(); i < n; i++) {
+                    final long p = sortedTimestampsAddr + w++ * 16;
+                    Unsafe.getUnsafe().putLong(p, ts);
+                    Unsafe.getUnsafe().putLong(p + Long.BYTES, groupRows.getQuick(i));
+                }
+            }
+            r = e;
+        }
+        return w;
+    }
+
+    /**
+     * Finds partition rows that have the same timestamp and key values as O3 rows. O3 columns must be
+     * sorted at this point.
+     *
+     * @return number of partition rows superseded by O3 rows
+     */
+    long findDuplicates(
+            RecordMetadata metadata,
+            int partitionBy,
+            long partitionTimestamp,
+            long srcNameTxn,
+            long srcDataMax,
+            LongList lastPartitionColumnTops,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi,
+            ObjList<? extends MemoryCARW> o3Columns
+    ) {
+        dropRows.clear();
+        if (srcDataMax < 1) {
+            return 0;
+        }
+
+        final int plen = setPartitionPath(partitionBy, partitionTimestamp, srcNameTxn);
+        try {
+            final long tsAddr = map(dFile(path.trimTo(plen), metadata.getColumnName(metadata.getTimestampIndex())), srcDataMax * Long.BYTES);
+            final long dataTsLo = Unsafe.getUnsafe().getLong(tsAddr);
+            final long dataTsHi = Unsafe.getUnsafe().getLong(tsAddr + (srcDataMax - 1) * Long.BYTES);
+            if (TableWriter.getTimestampIndexValue(sortedTimestampsAddr, srcOooHi) < dataTsLo
+                    || TableWriter.getTimestampIndexValue(sortedTimestampsAddr, srcOooLo) > dataTsHi) {
+                return 0;
+            }
+
+            keyColumnTops.clear();
+            keyColumnAddrs.clear();
+            for (int i = 0, n = keyColumns.size(); i < n; i++) {
+                final int columnIndex = keyColumns.getQuick(i);
+                final CharSequence name = metadata.getColumnName(columnIndex);
+                final long top = getColumnTop(name, columnIndex, plen, srcDataMax, lastPartitionColumnTops);
+                keyColumnTops.add(top);
+                keyColumnAddrs.add(map(dFile(path.trimTo(plen), name), (srcDataMax - top) << ColumnType.pow2SizeOf(metadata.getColumnType(columnIndex))));
+            }
+
+            for (long k = srcOooLo; k <= srcOooHi; k++) {
+                final long ts = TableWriter.getTimestampIndexValue(sortedTimestampsAddr, k);
+                if (ts < dataTsLo) {
+                    continue;
+                }
+                if (ts > dataTsHi) {
+                    break;
+                }
+                for (long d = lowerBound(tsAddr, srcDataMax, ts); d < srcDataMax && Unsafe.getUnsafe().getLong(tsAddr + d * Long.BYTES) == ts; d++) {
+                    if (dataKeysEqual(o3Columns, d, k)) {
+                        dropRows.add(d);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            unmapAll();
+            path.trimTo(rootLen);
+        }
+        dropRows.sort();
+        return dropRows.size();
+    }
+
+    void of(RecordMetadata metadata, MemoryR metaMem) {
+        keyColumns.clear();
+        keyColumnShl.clear();
+        final int timestampIndex = metadata.getTimestampIndex();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (i != timestampIndex && isDedupKey(metaMem, i)) {
+                keyColumns.add(i);
+                keyColumnShl.add(ColumnType.pow2SizeOf(metadata.getColumnType(i)));
+            }
+        }
+
+        final long size = (long) keyColumns.size() * NULL_BUF_ENTRY_SIZE;
+        if (size > nullBufSize) {
+            nullBuf = Unsafe.realloc(nullBuf, nullBufSize, size, MemoryTag.NATIVE_DEFAULT);
+            nullBufSize = size;
+        }
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            O3OpenColumnJob.setNull(metadata.getColumnType(keyColumns.getQuick(i)), nullBuf + (long) i * NULL_BUF_ENTRY_SIZE, 1);
+        }
+    }
+
+    /**
+     * Writes new version of partition, which consists of partition rows, except those found by
+     * {@link #findDuplicates}, merged with O3 rows. Rows that are still in the partition keep their
+     * column tops, new version has no column tops.
+     *
+     * @return row count of the new partition version
+     */
+    long rewritePartition(
+            RecordMetadata metadata,
+            int partitionBy,
+            long partitionTimestamp,
+            long srcNameTxn,
+            long srcDataMax,
+            LongList lastPartitionColumnTops,
+            long txn,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi,
+            ObjList<? extends MemoryCARW> o3Columns
+    ) {
+        final int timestampIndex = metadata.getTimestampIndex();
+        final int plen = setPartitionPath(partitionBy, partitionTimestamp, srcNameTxn);
+        try {
+            final long tsAddr = map(dFile(path.trimTo(plen), metadata.getColumnName(timestampIndex)), srcDataMax * Long.BYTES);
+            final long rowCount = buildRuns(tsAddr, srcDataMax, sortedTimestampsAddr, srcOooLo, srcOooHi);
+
+            setPathForPartition(dstPath.trimTo(rootLen), partitionBy, partitionTimestamp, false);
+            txnPartition(dstPath, txn);
+            final int dplen = dstPath.length();
+            createDirsOrFail(ff, dstPath.slash$(), configuration.getMkDirMode());
+
+            LOG.info().$("dedup partition rewrite [path=").$(dstPath.trimTo(dplen))
+                    .$(", srcDataMax=").$(srcDataMax)
+                    .$(", dropped=").$(dropRows.size())
+                    .$(", o3=").$(srcOooHi - srcOooLo + 1)
+                    .$(", rowCount=").$(rowCount)
+                    .I$();
+
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                final int columnType = metadata.getColumnType(i);
+                if (columnType < 0) {
+                    // deleted column
+                    continue;
+                }
+                final CharSequence name = metadata.getColumnName(i);
+                if (i == timestampIndex) {
+                    copyTimestampColumn(tsAddr, sortedTimestampsAddr, dplen, name);
+                    continue;
+                }
+
+                final long top = getColumnTop(name, i, plen, srcDataMax, lastPartitionColumnTops);
+                if (ColumnType.isVariableLength(columnType)) {
+                    final long srcFixSize = srcDataMax > top ? (srcDataMax - top + 1) * Long.BYTES : 0;
+                    final long srcFixAddr = map(iFile(path.trimTo(plen), name), srcFixSize);
+                    final long srcVarSize = srcFixAddr != 0 ? Unsafe.getUnsafe().getLong(srcFixAddr + srcFixSize - Long.BYTES) : 0;
+                    final long srcVarAddr = map(dFile(path.trimTo(plen), name), srcVarSize);
+                    copyVarColumn(
+                            columnType,
+                            srcFixAddr,
+                            srcVarAddr,
+                            top,
+                            o3Columns.getQuick(getSecondaryColumnIndex(i)),
+                            o3Columns.getQuick(getPrimaryColumnIndex(i)),
+                            dplen,
+                            name
+                    );
+                } else {
+                    final int shl = ColumnType.pow2SizeOf(columnType);
+                    final long srcFixAddr = map(dFile(path.trimTo(plen), name), (srcDataMax - top) << shl);
+                    dstFixMem.of(ff, dFile(dstPath.trimTo(dplen), name), configuration.getDataAppendPageSize(), -1, MemoryTag.MMAP_O3);
+                    try {
+                        copyFixColumn(columnType, shl, srcFixAddr, top, o3Columns.getQuick(getPrimaryColumnIndex(i)));
+                        if (metadata.isColumnIndexed(i)) {
+                            buildIndex(dplen, name, rowCount, metadata.getIndexValueBlockCapacity(i));
+                        }
+                    } finally {
+                        dstFixMem.close(true);
+                    }
+                }
+            }
+            return rowCount;
+        } finally {
+            unmapAll();
+            path.trimTo(rootLen);
+        }
+    }
+
+    private static long getIndexRow(long sortedTimestampsAddr, long i) {
+        return Unsafe.getUnsafe().getLong(sortedTimestampsAddr + i * 16 + Long.BYTES);
+    }
+
+    private static void copyIndexEntry(long sortedTimestampsAddr, long from, long to) {
+        if (from != to) {
+            final long src = sortedTimestampsAddr + from * 16;
+            final long dst = sortedTimestampsAddr + to * 16;
+            Unsafe.getUnsafe().putLong(dst, Unsafe.getUnsafe().getLong(src));
+            Unsafe.getUnsafe().putLong(dst + Long.BYTES, Unsafe.getUnsafe().getLong(src + Long.BYTES));
+        }
+    }
+
+    private static long rank(long row, long movedRowLo, long rowCount) {
+        // rows moved from the last partition were written before the rest of O3 rows
+        return row < movedRowLo ? row + rowCount : row;
+    }
+
+    private static boolean valuesEqual(long a, long b, int shl) {
+        switch (shl) {
+            case 0:
+                return Unsafe.getUnsafe().getByte(a) == Unsafe.getUnsafe().getByte(b);
+            case 1:
+                return Unsafe.getUnsafe().getShort(a) == Unsafe.getUnsafe().getShort(b);
+            case 2:
+                return Unsafe.getUnsafe().getInt(a) == Unsafe.getUnsafe().getInt(b);
+            case 3:
+                return Unsafe.getUnsafe().getLong(a) == Unsafe.getUnsafe().getLong(b);
+            default:
+                for (long i = 0, n = 1L << shl; i < n; i += Long.BYTES) {
+                    if (Unsafe.getUnsafe().getLong(a + i) != Unsafe.getUnsafe().getLong(b + i)) {
+                        return false;
+                    }
+                }
+                return true;
+        }
+    }
+
+    private static long lowerBound(long addr, long count, long value) {
+        long lo = 0;
+        long hi = count;
+        while (lo < hi) {
+            final long mid = (lo + hi) >>> 1;
+            if (Unsafe.getUnsafe().getLong(addr + mid * Long.BYTES) < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void addRunRow(int source, long row) {
+        final int n = runs.size();
+        if (n > 0 && runs.getQuick(n - 3) == source && runs.getQuick(n - 1) == row - 1) {
+            runs.setQuick(n - 1, row);
+        } else {
+            runs.add(source);
+            runs.add(row);
+            runs.add(row);
+        }
+    }
+
+    private void buildIndex(int dplen, CharSequence name, long rowCount, int indexBlockCapacity) {
+        final long keyFd = openRW(ff, BitmapIndexUtils.keyFileName(dstPath.trimTo(dplen), name), LOG);
+        final long valueFd;
+        try {
+            valueFd = openRW(ff, BitmapIndexUtils.valueFileName(dstPath.trimTo(dplen), name), LOG);
+        } catch (Throwable e) {
+            ff.close(keyFd);
+            throw e;
+        }
+        try {
+            indexWriter.of(configuration, keyFd, valueFd, true, indexBlockCapacity);
+            for (long r = 0; r < rowCount; r++) {
+                indexWriter.add(toIndexKey(Unsafe.getUnsafe().getInt(dstFixMem.addressOf(r * Integer.BYTES))), r);
+            }
+            indexWriter.setMaxValue(rowCount - 1);
+        } finally {
+            Misc.free(indexWriter);
+        }
+    }
+
+    private long buildRuns(long tsAddr, long srcDataMax, long sortedTimestampsAddr, long srcOooLo, long srcOooHi) {
+        runs.clear();
+        long rowCount = 0;
+        long d = 0;
+        long k = srcOooLo;
+        int drop = 0;
+        final int dropCount = dropRows.size();
+        while (d < srcDataMax || k <= srcOooHi) {
+            if (drop < dropCount && dropRows.getQuick(drop) == d) {
+                d++;
+                drop++;
+                continue;
+            }
+            if (k > srcOooHi || (d < srcDataMax && Unsafe.getUnsafe().getLong(tsAddr + d * Long.BYTES) <= TableWriter.getTimestampIndexValue(sortedTimestampsAddr, k))) {
+                addRunRow(SRC_DATA, d++);
+            } else {
+                addRunRow(SRC_O3, k++);
+            }
+            rowCount++;
+        }
+        return rowCount;
+    }
+
+    private void copyFixColumn(int columnType, int shl, long srcFixAddr, long top, MemoryCARW o3Mem) {
+        for (int r = 0, n = runs.size(); r < n; r += 3) {
+            final long lo = runs.getQuick(r + 1);
+            final long hi = runs.getQuick(r + 2);
+            if (runs.getQuick(r) == SRC_O3) {
+                dstFixMem.putBlockOfBytes(o3Mem.addressOf(lo << shl), (hi - lo + 1) << shl);
+            } else {
+                final long nullHi = Math.min(hi, top - 1);
+                if (lo <= nullHi) {
+                    final long count = nullHi - lo + 1;
+                    O3OpenColumnJob.setNull(columnType, dstFixMem.appendAddressFor(count << shl), count);
+                }
+                final long from = Math.max(lo, top);
+                if (from <= hi) {
+                    dstFixMem.putBlockOfBytes(srcFixAddr + ((from - top) << shl), (hi - from + 1) << shl);
+                }
+            }
+        }
+    }
+
+    private void copyTimestampColumn(long tsAddr, long sortedTimestampsAddr, int dplen, CharSequence name) {
+        dstFixMem.of(ff, dFile(dstPath.trimTo(dplen), name), configuration.getDataAppendPageSize(), -1, MemoryTag.MMAP_O3);
+        try {
+            for (int r = 0, n = runs.size(); r < n; r += 3) {
+                final long lo = runs.getQuick(r + 1);
+                final long hi = runs.getQuick(r + 2);
+                if (runs.getQuick(r) == SRC_O3) {
+                    for (long k = lo; k <= hi; k++) {
+                        dstFixMem.putLong(TableWriter.getTimestampIndexValue(sortedTimestampsAddr, k));
+                    }
+                } else {
+                    dstFixMem.putBlockOfBytes(tsAddr + lo * Long.BYTES, (hi - lo + 1) * Long.BYTES);
+                }
+            }
+        } finally {
+            dstFixMem.close(true);
+        }
+    }
+
+    private void copyVarColumn(
+            int columnType,
+            long srcFixAddr,
+            long srcVarAddr,
+            long top,
+            MemoryCARW o3FixMem,
+            MemoryCARW o3VarMem,
+            int dplen,
+            CharSequence name
+    ) {
+        dstFixMem.of(ff, iFile(dstPath.trimTo(dplen), name), configuration.getDataAppendPageSize(), -1, MemoryTag.MMAP_O3);
+        try {
+            dstVarMem.of(ff, dFile(dstPath.trimTo(dplen), name), configuration.getDataAppendPageSize(), -1, MemoryTag.MMAP_O3);
+            try {
+                for (int r = 0, n = runs.size(); r < n; r += 3) {
+                    final long lo = runs.getQuick(r + 1);
+                    final long hi = runs.getQuick(r + 2);
+                    if (runs.getQuick(r) == SRC_O3) {
+                        copyVarRows(o3FixMem.addressOf(0), o3VarMem.addressOf(0), lo, hi);
+                    } else {
+                        for (long row = lo, nullHi = Math.min(hi, top - 1); row <= nullHi; row++) {
+                            dstFixMem.putLong(dstVarMem.getAppendOffset());
+                            if (ColumnType.isString(columnType)) {
+                                dstVarMem.putInt(NULL_LEN);
+                            } else {
+                                dstVarMem.putLong(NULL_LEN);
+                            }
+                        }
+                        final long from = Math.max(lo, top);
+                        if (from <= hi) {
+                            copyVarRows(srcFixAddr, srcVarAddr, from - top, hi - top);
+                        }
+                    }
+                }
+                dstFixMem.putLong(dstVarMem.getAppendOffset());
+            } finally {
+                dstVarMem.close(true);
+            }
+        } finally {
+            dstFixMem.close(true);
+        }
+    }
+
+    private void copyVarRows(long srcFixAddr, long srcVarAddr, long lo, long hi) {
+        final long srcLo = Unsafe.getUnsafe().getLong(srcFixAddr + lo * Long.BYTES);
+        final long srcHi = Unsafe.getUnsafe().getLong(srcFixAddr + (hi + 1) * Long.BYTES);
+        final long shift = dstVarMem.getAppendOffset() - srcLo;
+        for (long row = lo; row <= hi; row++) {
+            dstFixMem.putLong(Unsafe.getUnsafe().getLong(srcFixAddr + row * Long.BYTES) + shift);
+        }
+        dstVarMem.putBlockOfBytes(srcVarAddr + srcLo, srcHi - srcLo);
+    }
+
+    private boolean dataKeysEqual(ObjList<? extends MemoryCARW> o3Columns, long dataRow, long o3Row) {
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            final int columnIndex = keyColumns.getQuick(i);
+            final int shl = keyColumnShl.getQuick(i);
+            final long top = keyColumnTops.getQuick(i);
+            final long dataAddr = dataRow < top
+                    ? nullBuf + (long) i * NULL_BUF_ENTRY_SIZE
+                    : keyColumnAddrs.getQuick(i) + ((dataRow - top) << shl);
+            final long o3Addr = o3Columns.getQuick(getPrimaryColumnIndex(columnIndex)).addressOf(o3Row << shl);
+            if (!valuesEqual(dataAddr, o3Addr, shl)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getColumnTop(CharSequence name, int columnIndex, int plen, long srcDataMax, LongList lastPartitionColumnTops) {
+        final long top = lastPartitionColumnTops != null
+                ? lastPartitionColumnTops.getQuick(columnIndex)
+                : readColumnTop(ff, path.trimTo(plen), name, plen, tempBuf8, true);
+        return Math.min(top, srcDataMax);
+    }
+
+    private long map(LPSZ name, long size) {
+        if (size < 1) {
+            return 0;
+        }
+        final long fd = openRO(ff, name, LOG);
+        final long addr;
+        try {
+            addr = mapRO(ff, fd, size, MemoryTag.MMAP_O3);
+        } catch (Throwable e) {
+            ff.close(fd);
+            throw e;
+        }
+        mappedFiles.add(fd);
+        mappedFiles.add(addr);
+        mappedFiles.add(size);
+        return addr;
+    }
+
+    private boolean o3KeysEqual(ObjList<? extends MemoryCARW> o3Columns, long rowA, long rowB) {
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            final int columnIndex = keyColumns.getQuick(i);
+            final MemoryCARW mem = o3Columns.getQuick(getPrimaryColumnIndex(columnIndex));
+            final int shl = keyColumnShl.getQuick(i);
+            if (!valuesEqual(mem.addressOf(rowA << shl), mem.addressOf(rowB << shl), shl)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int setPartitionPath(int partitionBy, long partitionTimestamp, long nameTxn) {
+        setPathForPartition(path.trimTo(rootLen), partitionBy, partitionTimestamp, false);
+        txnPartitionConditionally(path, nameTxn);
+        return path.length();
+    }
+
+    private void unmapAll() {
+        for (int i = 0, n = mappedFiles.size(); i < n; i += 3) {
+            ff.munmap(mappedFiles.getQuick(i + 1), mappedFiles.getQuick(i + 2), MemoryTag.MMAP_O3);
+            ff.close(mappedFiles.getQuick(i));
+        }
+        mappedFiles.clear();
+    }
+}
@@ -0,0 +1,538 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Rewrites partition column files in compressed form and back. Each compressed file starts with a
+ * header of raw data size, codec and block count followed by independently deflated blocks and ends
+ * with block table. The table has (raw offset, file offset) pair for every block and one more pair for
+ * end of data, which lets readers inflate any single block without touching the rest of the file.
+ * Blocks of var-length data files start at value boundaries, so that no value spans two blocks.
+ * <p>
+ * Before deflate 64-bit values are optionally transformed to make them more compressible: timestamps,
+ * longs and var-length column offsets are delta encoded and doubles are XOR-ed with the previous value.
+ * Encoding starts over in every block.
+ * <p>
+ * Partition is marked as compressed by {@link TableUtils#COMPRESSED_PARTITION_FILE_NAME} file, which is
+ * created after all column files are written. Index, zone map and column top files are copied as is.
+ */
+public class PartitionCompressor implements Closeable {
+    public static final int CODEC_DEFLATE = 0;
+    public static final int CODEC_DELTA = 1;
+    public static final int CODEC_XOR = 2;
+    public static final int HEADER_SIZE = 16;
+    public static final int BLOCK_ENTRY_SIZE = 2 * Long.BYTES;
+    private static final Log LOG = LogFactory.getLog(PartitionCompressor.class);
+    private static final long CHUNK_SIZE = 1024 * 1024;
+    private static final int OUT_BUF_SIZE = 64 * 1024;
+    private final FilesFacade ff;
+    private final LongList blocks = new LongList();
+    private final int mkDirMode;
+    private long z_streamp;
+    private long chunkBuf;
+    private long outBuf;
+
+    public PartitionCompressor(CairoConfiguration configuration) {
+        this.ff = configuration.getFilesFacade();
+        this.mkDirMode = configuration.getMkDirMode();
+    }
+
+    public static int codecOf(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.LONG:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.DATE:
+                return CODEC_DELTA;
+            case ColumnType.DOUBLE:
+                return CODEC_XOR;
+            default:
+                return CODEC_DEFLATE;
+        }
+    }
+
+    /**
+     * Returns address of block table of mapped compressed column file after validating the header.
+     *
+     * @param address address of mapped file
+     * @param len     file length
+     * @param path    file path for error messages
+     * @return address of block table
+     */
+    public static long blockTableAddress(long address, long len, CharSequence path) {
+        if (len < HEADER_SIZE + BLOCK_ENTRY_SIZE) {
+            throw CairoException.instance(0).put("compressed column file is too small [file=").put(path).put(", size=").put(len).put(']');
+        }
+        final int blockCount = Unsafe.getUnsafe().getInt(address + 12);
+        final long table = len - (blockCount + 1L) * BLOCK_ENTRY_SIZE;
+        if (blockCount < 0 || table < HEADER_SIZE || Unsafe.getUnsafe().getLong(address + table + blockCount * (long) BLOCK_ENTRY_SIZE) != Unsafe.getUnsafe().getLong(address)) {
+            throw CairoException.instance(0).put("corrupt compressed column file [file=").put(path).put(", blockCount=").put(blockCount).put(']');
+        }
+        return address + table;
+    }
+
+    /**
+     * Inflates compressed column file into memory.
+     *
+     * @param ff   files facade
+     * @param path compressed column file
+     * @param dst  address of memory of at least size bytes
+     * @param size number of bytes to decompress
+     */
+    public static void decompress(FilesFacade ff, LPSZ path, long dst, long size) {
+        final long fd = TableUtils.openRO(ff, path, LOG);
+        final long len = ff.length(fd);
+        long addr = 0;
+        long z = 0;
+        try {
+            if (len < HEADER_SIZE) {
+                throw CairoException.instance(0).put("compressed column file is too small [file=").put(path).put(", size=").put(len).put(']');
+            }
+            addr = TableUtils.mapRO(ff, fd, len, MemoryTag.MMAP_DEFAULT);
+            final long rawSize = Unsafe.getUnsafe().getLong(addr);
+            final int codec = Unsafe.getUnsafe().getInt(addr + 8);
+            if (rawSize < size) {
+                throw CairoException.instance(0).put("compressed column file is too short [file=").put(path)
+                        .put(", expected=").put(size)
+                        .put(", actual=").put(rawSize)
+                        .put(']');
+            }
+            if (size == 0) {
+                return;
+            }
+
+            final long table = blockTableAddress(addr, len, path);
+            z = Zip.inflateInit(true);
+            if (z < 0) {
+                z = 0;
+                throw CairoException.instance(0).put("could not initialise inflate [file=").put(path).put(']');
+            }
+
+            for (long entry = table; Unsafe.getUnsafe().getLong(entry) < size; entry += BLOCK_ENTRY_SIZE) {
+                final long rawLo = Unsafe.getUnsafe().getLong(entry);
+                final long fileLo = Unsafe.getUnsafe().getLong(entry + Long.BYTES);
+                final long rawHi = Unsafe.getUnsafe().getLong(entry + BLOCK_ENTRY_SIZE);
+                final long fileHi = Unsafe.getUnsafe().getLong(entry + BLOCK_ENTRY_SIZE + Long.BYTES);
+                inflateBlock(z, addr + fileLo, fileHi - fileLo, dst + rawLo, rawHi - rawLo, codec, path);
+            }
+        } finally {
+            if (z != 0) {
+                Zip.inflateEnd(z);
+            }
+            if (addr != 0) {
+                ff.munmap(addr, len, MemoryTag.MMAP_DEFAULT);
+            }
+            ff.close(fd);
+        }
+    }
+
+    /**
+     * Inflates and decodes single block of compressed column file.
+     *
+     * @param z     inflate stream, it is reset before use
+     * @param src   address of deflated block
+     * @param len   length of deflated block
+     * @param dst   address of memory of at least size bytes
+     * @param size  raw size of the block
+     * @param codec codec from file header
+     * @param path  file path for error messages
+     */
+    public static void inflateBlock(long z, long src, long len, long dst, long size, int codec, CharSequence path) {
+        Zip.inflateReset(z);
+        long in = src;
+        long inRemaining = len;
+        long out = 0;
+        while (out < size) {
+            if (Zip.availIn(z) == 0 && inRemaining > 0) {
+                final int n = (int) Math.min(inRemaining, Integer.MAX_VALUE);
+                Zip.setInput(z, in, n);
+                in += n;
+                inRemaining -= n;
+            }
+            final int n = Zip.inflate(z, dst + out, (int) Math.min(size - out, Integer.MAX_VALUE), false);
+            if (n < 0 || (n == 0 && inRemaining == 0)) {
+                throw CairoException.instance(0).put("could not inflate [file=").put(path).put(", ret=").put(n).put(']');
+            }
+            out += n;
+        }
+        decode(codec, dst, size);
+    }
+
+    public static boolean isCompressed(FilesFacade ff, Path partitionPath) {
+        final int plen = partitionPath.length();
+        try {
+            return ff.exists(partitionPath.concat(TableUtils.COMPRESSED_PARTITION_FILE_NAME).$());
+        } finally {
+            partitionPath.trimTo(plen);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (z_streamp != 0) {
+            Zip.deflateEnd(z_streamp);
+            z_streamp = 0;
+        }
+        if (chunkBuf != 0) {
+            Unsafe.free(chunkBuf, CHUNK_SIZE, MemoryTag.NATIVE_DEFAULT);
+            chunkBuf = 0;
+        }
+        if (outBuf != 0) {
+            Unsafe.free(outBuf, OUT_BUF_SIZE, MemoryTag.NATIVE_DEFAULT);
+            outBuf = 0;
+        }
+    }
+
+    /**
+     * Copies partition from srcPath directory to dstPath directory compressing or decompressing column files.
+     * Both paths have to point to partition directories. Target directory is created.
+     *
+     * @param srcPath           source partition directory
+     * @param dstPath           target partition directory
+     * @param metadata          table metadata
+     * @param partitionRowCount number of rows in the partition
+     * @param compress          true to compress, false to decompress
+     * @param sync              true to fsync written files
+     * @param tempBuf8          8 byte scratch buffer
+     */
+    public void rewrite(
+            Path srcPath,
+            Path dstPath,
+            RecordMetadata metadata,
+            long partitionRowCount,
+            boolean compress,
+            boolean sync,
+            long tempBuf8
+    ) {
+        final int srcLen = srcPath.length();
+        final int dstLen = dstPath.length();
+        try {
+            if (ff.mkdirs(dstPath.slash$(), mkDirMode) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not create directory [path=").put(dstPath).put(']');
+            }
+            dstPath.trimTo(dstLen);
+
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                final CharSequence name = metadata.getColumnName(i);
+                final int columnType = metadata.getColumnType(i);
+                if (columnType < 0 || !ff.exists(TableUtils.dFile(srcPath.trimTo(srcLen), name))) {
+                    // column is deleted or added after this partition was written
+                    continue;
+                }
+
+                final long columnTop = TableUtils.readColumnTop(ff, srcPath.trimTo(srcLen), name, srcLen, tempBuf8, true);
+                if (columnTop > 0) {
+                    copy(TableUtils.topFile(srcPath.trimTo(srcLen), name), TableUtils.topFile(dstPath.trimTo(dstLen), name));
+                }
+                final long rowCount = partitionRowCount - columnTop;
+
+                if (ColumnType.isVariableLength(columnType)) {
+                    final long indexSize = rowCount * Long.BYTES + Long.BYTES;
+                    final LPSZ srcIndex = TableUtils.iFile(srcPath.trimTo(srcLen), name);
+                    final LPSZ dstIndex = TableUtils.iFile(dstPath.trimTo(dstLen), name);
+                    rewriteFile(srcIndex, dstIndex, indexSize, CODEC_DELTA, compress, sync, 0, 0);
+                    // offsets are read from the raw copy of the index
+                    final LPSZ rawIndex = compress ? srcIndex : dstIndex;
+                    final long dataSize = readLong(rawIndex, rowCount * Long.BYTES, tempBuf8);
+                    if (compress && dataSize > 0) {
+                        // data blocks are cut at value boundaries taken from the index
+                        final long indexFd = TableUtils.openRO(ff, rawIndex, LOG);
+                        try {
+                            final long indexAddr = TableUtils.mapRO(ff, indexFd, indexSize, MemoryTag.MMAP_TABLE_WRITER);
+                            try {
+                                rewriteFile(
+                                        TableUtils.dFile(srcPath.trimTo(srcLen), name),
+                                        TableUtils.dFile(dstPath.trimTo(dstLen), name),
+                                        dataSize,
+                                        CODEC_DEFLATE,
+                                        true,
+                                        sync,
+                                        indexAddr,
+                                        rowCount
+                                );
+                            } finally {
+                                ff.munmap(indexAddr, indexSize, MemoryTag.MMAP_TABLE_WRITER);
+                            }
+                        } finally {
+                            ff.close(indexFd);
+                        }
+                    } else {
+                        rewriteFile(
+                                TableUtils.dFile(srcPath.trimTo(srcLen), name),
+                                TableUtils.dFile(dstPath.trimTo(dstLen), name),
+                                dataSize,
+                                CODEC_DEFLATE,
+                                compress,
+                                sync,
+                                0,
+                                0
+                        );
+                    }
+                } else {
+                    rewriteFile(
+                            TableUtils.dFile(srcPath.trimTo(srcLen), name),
+                            TableUtils.dFile(dstPath.trimTo(dstLen), name),
+                            rowCount << ColumnType.pow2SizeOf(columnType),
+                            codecOf(columnType),
+                            compress,
+                            sync,
+                            0,
+                            0
+                    );
+                }
+
+                // zone maps cannot be rebuilt from compressed data, they are kept as they are
+                if (ff.exists(TableUtils.zoneMapFile(srcPath.trimTo(srcLen), name))) {
+                    copy(TableUtils.zoneMapFile(srcPath.trimTo(srcLen), name), TableUtils.zoneMapFile(dstPath.trimTo(dstLen), name));
+                }
+
+                if (metadata.isColumnIndexed(i) && ff.exists(BitmapIndexUtils.keyFileName(srcPath.trimTo(srcLen), name))) {
+                    copy(BitmapIndexUtils.keyFileName(srcPath.trimTo(srcLen), name), BitmapIndexUtils.keyFileName(dstPath.trimTo(dstLen), name));
+                    copy(BitmapIndexUtils.valueFileName(srcPath.trimTo(srcLen), name), BitmapIndexUtils.valueFileName(dstPath.trimTo(dstLen), name));
+                }
+            }
+
+            if (compress && !ff.touch(dstPath.trimTo(dstLen).concat(TableUtils.COMPRESSED_PARTITION_FILE_NAME).$())) {
+                throw CairoException.instance(ff.errno()).put("could not create file [path=").put(dstPath).put(']');
+            }
+        } finally {
+            srcPath.trimTo(srcLen);
+            dstPath.trimTo(dstLen);
+        }
+    }
+
+    private static void decode(int codec, long address, long size) {
+        final long hi = address + (size & ~7L);
+        switch (codec) {
+            case CODEC_DELTA: {
+                long prev = 0;
+                for (long p = address; p < hi; p += Long.BYTES) {
+                    prev += Unsafe.getUnsafe().getLong(p);
+                    Unsafe.getUnsafe().putLong(p, prev);
+                }
+                break;
+            }
+            case CODEC_XOR: {
+                long prev = 0;
+                for (long p = address; p < hi; p += Long.BYTES) {
+                    prev ^= Unsafe.getUnsafe().getLong(p);
+                    Unsafe.getUnsafe().putLong(p, prev);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private static long encode(int codec, long src, long dst, long len, long prev) {
+        for (long i = 0; i < len; i += Long.BYTES) {
+            final long value = Unsafe.getUnsafe().getLong(src + i);
+            Unsafe.getUnsafe().putLong(dst + i, codec == CODEC_DELTA ? value - prev : value ^ prev);
+            prev = value;
+        }
+        return prev;
+    }
+
+    /**
+     * Finds start of the first var-length value at or after the given offset.
+     *
+     * @param indexAddr  address of raw var-length column index
+     * @param valueCount number of values in the column
+     * @param offset     nominal block end
+     * @param size       size of the data file
+     * @return offset of value start or size when there is no value starting at or after offset
+     */
+    private static long nextValueOffset(long indexAddr, long valueCount, long offset, long size) {
+        if (offset >= size) {
+            return size;
+        }
+        long lo = 0;
+        long hi = valueCount - 1;
+        while (lo < hi) {
+            final long mid = (lo + hi) >>> 1;
+            if (Unsafe.getUnsafe().getLong(indexAddr + mid * Long.BYTES) < offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        final long value = valueCount > 0 ? Unsafe.getUnsafe().getLong(indexAddr + lo * Long.BYTES) : size;
+        return value < offset ? size : Math.min(value, size);
+    }
+
+    private void compressFile(long srcAddr, long dstFd, long size, int codec, LPSZ dst, long indexAddr, long valueCount) {
+        if (z_streamp == 0) {
+            z_streamp = Zip.deflateInit();
+            if (z_streamp < 0) {
+                z_streamp = 0;
+                throw CairoException.instance(0).put("could not initialise deflate");
+            }
+            chunkBuf = Unsafe.malloc(CHUNK_SIZE, MemoryTag.NATIVE_DEFAULT);
+            outBuf = Unsafe.malloc(OUT_BUF_SIZE, MemoryTag.NATIVE_DEFAULT);
+        }
+
+        // values can be transformed only when file is made of whole 64-bit values
+        final int fileCodec = (size & 7) == 0 ? codec : CODEC_DEFLATE;
+        long offset = HEADER_SIZE;
+        blocks.clear();
+        for (long lo = 0; lo < size; ) {
+            final long hi = indexAddr != 0 ? nextValueOffset(indexAddr, valueCount, lo + CHUNK_SIZE, size) : Math.min(lo + CHUNK_SIZE, size);
+            blocks.add(lo);
+            blocks.add(offset);
+            Zip.deflateReset(z_streamp);
+            long prev = 0;
+            for (long p = lo; p < hi; p += CHUNK_SIZE) {
+                final long len = Math.min(CHUNK_SIZE, hi - p);
+                final long in;
+                if (fileCodec == CODEC_DEFLATE) {
+                    in = srcAddr + p;
+                } else {
+                    prev = encode(fileCodec, srcAddr + p, chunkBuf, len, prev);
+                    in = chunkBuf;
+                }
+                Zip.setInput(z_streamp, in, (int) len);
+                offset = deflate(dstFd, offset, false, dst);
+            }
+            offset = deflate(dstFd, offset, true, dst);
+            lo = hi;
+        }
+        blocks.add(size);
+        blocks.add(offset);
+
+        // block table goes after the blocks, its size is not known upfront for var-length data
+        final int entriesPerBuf = OUT_BUF_SIZE / Long.BYTES;
+        for (int i = 0, n = blocks.size(); i < n; i += entriesPerBuf) {
+            final int count = Math.min(entriesPerBuf, n - i);
+            for (int j = 0; j < count; j++) {
+                Unsafe.getUnsafe().putLong(outBuf + (long) j * Long.BYTES, blocks.getQuick(i + j));
+            }
+            write(dstFd, outBuf, (long) count * Long.BYTES, offset, dst);
+            offset += (long) count * Long.BYTES;
+        }
+
+        Unsafe.getUnsafe().putLong(outBuf, size);
+        Unsafe.getUnsafe().putInt(outBuf + 8, fileCodec);
+        Unsafe.getUnsafe().putInt(outBuf + 12, blocks.size() / 2 - 1);
+        write(dstFd, outBuf, HEADER_SIZE, 0, dst);
+        ff.truncate(dstFd, offset);
+    }
+
+    private void copy(LPSZ src, LPSZ dst) {
+        if (ff.copy(src, dst) < 0) {
+            throw CairoException.instance(ff.errno()).put("could not copy [from=").put(src).put(", to=").put(dst).put(']');
+        }
+    }
+
+    private long deflate(long fd, long offset, boolean finish, LPSZ dst) {
+        int ret;
+        int availOut;
+        do {
+            ret = Zip.deflate(z_streamp, outBuf, OUT_BUF_SIZE, finish);
+            if (ret < 0 && ret != Zip.Z_BUF_ERROR) {
+                throw CairoException.instance(0).put("could not deflate [file=").put(dst).put(", ret=").put(ret).put(']');
+            }
+            availOut = Zip.availOut(z_streamp);
+            final int len = OUT_BUF_SIZE - availOut;
+            if (len > 0) {
+                write(fd, outBuf, len, offset, dst);
+                offset += len;
+            }
+        } while (availOut == 0 || (finish && ret != Zip.Z_STREAM_END));
+        return offset;
+    }
+
+    private long readLong(LPSZ path, long offset, long tempBuf8) {
+        final long fd = TableUtils.openRO(ff, path, LOG);
+        try {
+            if (ff.read(fd, tempBuf8, Long.BYTES, offset) != Long.BYTES) {
+                throw CairoException.instance(ff.errno()).put("could not read [file=").put(path).put(", offset=").put(offset).put(']');
+            }
+            return Unsafe.getUnsafe().getLong(tempBuf8);
+        } finally {
+            ff.close(fd);
+        }
+    }
+
+    private void rewriteFile(LPSZ src, LPSZ dst, long size, int codec, boolean compress, boolean sync, long indexAddr, long valueCount) {
+        if (!compress) {
+            // src and dst are backed by different paths, decompress straight into mapped target file
+            final long dstFd = TableUtils.openRW(ff, dst, LOG);
+            long dstAddr = 0;
+            try {
+                if (size > 0) {
+                    TableUtils.allocateDiskSpace(ff, dstFd, size);
+                    dstAddr = TableUtils.mapRW(ff, dstFd, size, MemoryTag.MMAP_TABLE_WRITER);
+                    decompress(ff, src, dstAddr, size);
+                    if (sync) {
+                        ff.msync(dstAddr, size, false);
+                    }
+                }
+            } finally {
+                if (dstAddr != 0) {
+                    ff.munmap(dstAddr, size, MemoryTag.MMAP_TABLE_WRITER);
+                }
+                ff.close(dstFd);
+            }
+            return;
+        }
+
+        final long srcFd = TableUtils.openRO(ff, src, LOG);
+        long srcAddr = 0;
+        long dstFd = -1;
+        try {
+            if (size > 0) {
+                srcAddr = TableUtils.mapRO(ff, srcFd, size, MemoryTag.MMAP_TABLE_WRITER);
+            }
+            dstFd = TableUtils.openRW(ff, dst, LOG);
+            compressFile(srcAddr, dstFd, size, codec, dst, indexAddr, valueCount);
+            if (sync) {
+                ff.fsync(dstFd);
+            }
+        } finally {
+            if (srcAddr != 0) {
+                ff.munmap(srcAddr, size, MemoryTag.MMAP_TABLE_WRITER);
+            }
+            if (dstFd != -1) {
+                ff.close(dstFd);
+            }
+            ff.close(srcFd);
+        }
+    }
+
+    private void write(long fd, long address, long len, long offset, LPSZ path) {
+        if (ff.write(fd, address, len, offset) != len) {
+            throw CairoException.instance(ff.errno()).put("could not write [file=").put(path).put(", offset=").put(offset).put(']');
+        }
+    }
+}
@@ -49,7 +49,19 @@ public class RecordChain implements Closeable, RecordCursor, Mutable, RecordSink
     private RecordCursor symbolTableResolver;
 
     public RecordChain(@Transient ColumnTypes columnTypes, RecordSink recordSink, long pageSize, int maxPages) {
-        this.mem = Vm.getARWInstance(pageSize, maxPages, MemoryTag.NATIVE_RECORD_CHAIN);
+        this(columnTypes, recordSink, pageSize, maxPages, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    public RecordChain(
+            @Transient ColumnTypes columnTypes,
+            RecordSink recordSink,
+            long pageSize,
+            int maxPages,
+            FilesFacade ff,
+            CharSequence spillRoot,
+            long spillMemoryBudget
+    ) {
+        this.mem = Vm.getSpillARWInstance(ff, spillRoot, spillMemoryBudget, pageSize, maxPages, MemoryTag.NATIVE_RECORD_CHAIN);
         this.recordSink = recordSink;
         int count = columnTypes.getColumnCount();
         long varOffset = 0L;
@@ -30,4 +30,5 @@ public final class StatusCode {
     public final static int TABLE_HAS_SYMBOLS = 2;
     public final static int CANNOT_ATTACH_MISSING_PARTITION = 4;
     public final static int PARTITION_ALREADY_ATTACHED = 5;
+    public final static int PARTITION_COMPRESSED = 6;
 }
@@ -26,7 +26,9 @@ package io.questdb.cairo;
 
 import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.cairo.vm.DecompressedPageCache;
 import io.questdb.cairo.vm.MemoryCMRImpl;
+import io.questdb.cairo.vm.MemoryCZRImpl;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryMR;
 import io.questdb.cairo.vm.api.MemoryR;
@@ -64,6 +66,7 @@ public class TableReader implements Closeable, SymbolTableSource {
     private final TxReader txFile;
     private final MemoryMR todoMem = Vm.getMRInstance();
     private final TxnScoreboard txnScoreboard;
+    private final DecompressedPageCache pageCache;
     private int partitionCount;
     private LongList columnTops;
     private ObjList<MemoryMR> columns;
@@ -79,6 +82,7 @@ public class TableReader implements Closeable, SymbolTableSource {
         this.configuration = configuration;
         this.ff = configuration.getFilesFacade();
         this.tableName = Chars.toString(tableName);
+        this.pageCache = new DecompressedPageCache(configuration.getDecompressedPageCacheSize());
         this.path = new Path();
         this.path.of(configuration.getRoot()).concat(this.tableName);
         this.rootLen = path.length();
@@ -165,6 +169,7 @@ public class TableReader implements Closeable, SymbolTableSource {
             Misc.free(txFile);
             Misc.free(todoMem);
             freeColumns();
+            Misc.free(pageCache);
             freeTempMem();
             Misc.free(txnScoreboard);
             Misc.free(path);
@@ -312,6 +317,8 @@ public class TableReader implements Closeable, SymbolTableSource {
         if (active) {
             active = false;
             txnScoreboard.releaseTxn(txn);
+            // nothing reads reader memory while it is in the pool
+            pageCache.clear();
         }
     }
 
@@ -369,6 +376,34 @@ public class TableReader implements Closeable, SymbolTableSource {
         return openPartition0(partitionIndex);
     }
 
+    /**
+     * Opens zone map of a column in open partition. Zone map is not available for the partition
+     * writer appends to and for partitions that changed since their zone maps were written.
+     *
+     * @param partitionIndex index of open partition
+     * @param columnIndex    index of the column
+     * @param zoneMapReader  reader to open
+     * @return true when zone map is open
+     */
+    public boolean openZoneMap(int partitionIndex, int columnIndex, ZoneMapReader zoneMapReader) {
+        final long partitionSize = getPartitionRowCount(partitionIndex);
+        if (partitionSize < 1) {
+            return false;
+        }
+        try {
+            final Path path = pathGenPartitioned(partitionIndex);
+            TableUtils.txnPartitionConditionally(path, openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_NAME_TXN));
+            return zoneMapReader.of(
+                    ff,
+                    TableUtils.zoneMapFile(path, metadata.getColumnName(columnIndex)),
+                    partitionSize,
+                    metadata.getColumnType(columnIndex)
+            );
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
     public void reconcileOpenPartitionsFrom(int partitionIndex) {
         int txPartitionCount = txFile.getPartitionCount();
         int txPartitionIndex = partitionIndex;
@@ -655,7 +690,9 @@ public class TableReader implements Closeable, SymbolTableSource {
             final int base = partitionIndex << columnBits;
             final int oldBase = partitionIndex << columnCountBits;
             try {
-                final Path path = pathGenPartitioned(partitionIndex).$();
+                final Path path = pathGenPartitioned(partitionIndex);
+                TableUtils.txnPartitionConditionally(path, openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_NAME_TXN));
+                path.$();
                 long partitionRowCount = openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_SIZE);
                 for (int i = 0; i < columnCount; i++) {
                     final int copyFrom = Unsafe.getUnsafe().getInt(pIndexBase + i * 8L) - 1;
@@ -811,12 +848,20 @@ public class TableReader implements Closeable, SymbolTableSource {
             ObjList<MemoryMR> columns,
             int primaryIndex,
             MemoryMR mem,
-            long columnSize
+            long columnSize,
+            boolean compressed
     ) {
-        if (mem != null && mem != NullColumn.INSTANCE) {
+        // compressed partitions are read through decompressed page cache, the instance has to match the partition kind
+        if (mem != null && mem != NullColumn.INSTANCE && (mem instanceof MemoryCZRImpl) == compressed) {
             mem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_READER);
         } else {
-            mem = Vm.getMRInstance(ff, path, columnSize, MemoryTag.MMAP_TABLE_READER);
+            Misc.free(mem);
+            if (compressed) {
+                mem = new MemoryCZRImpl(pageCache);
+                mem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_READER);
+            } else {
+                mem = Vm.getMRInstance(ff, path, columnSize, MemoryTag.MMAP_TABLE_READER);
+            }
             columns.setQuick(primaryIndex, mem);
         }
         return mem;
@@ -1043,18 +1088,19 @@ public class TableReader implements Closeable, SymbolTableSource {
             // column file. This makes it necessary to check for .d file existence
             if (partitionRowCount > 0 && ff.exists(TableUtils.dFile(path.trimTo(plen), name))) {
                 final int columnType = metadata.getColumnType(columnIndex);
+                final boolean compressed = PartitionCompressor.isCompressed(ff, path.trimTo(plen));
 
                 if (ColumnType.isVariableLength(columnType)) {
                     long columnSize = columnRowCount * 8L + 8L;
                     TableUtils.iFile(path.trimTo(plen), name);
-                    mem2 = openOrCreateMemory(path, columns, secondaryIndex, mem2, columnSize);
+                    mem2 = openOrCreateMemory(path, columns, secondaryIndex, mem2, columnSize, compressed);
                     columnSize = mem2.getLong(columnRowCount * 8L);
                     TableUtils.dFile(path.trimTo(plen), name);
-                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize);
+                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize, compressed);
                 } else {
                     long columnSize = columnRowCount << ColumnType.pow2SizeOf(columnType);
                     TableUtils.dFile(path.trimTo(plen), name);
-                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize);
+                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize, compressed);
                     Misc.free(columns.getAndSetQuick(secondaryIndex, null));
                 }
 
@@ -1219,7 +1265,9 @@ public class TableReader implements Closeable, SymbolTableSource {
         for (int partitionIndex = 0; partitionIndex < partitionCount; partitionIndex++) {
             int base = getColumnBase(partitionIndex);
             try {
-                final Path path = pathGenPartitioned(partitionIndex).$();
+                final Path path = pathGenPartitioned(partitionIndex);
+                TableUtils.txnPartitionConditionally(path, openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_NAME_TXN));
+                path.$();
                 final long partitionRowCount = openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_SIZE);
 
                 Vect.memset(pState, columnCount, 0);
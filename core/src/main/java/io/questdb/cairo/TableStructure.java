@@ -39,6 +39,14 @@ public interface TableStructure {
 
     boolean isSequential(int columnIndex);
 
+    /**
+     * Columns flagged as dedup keys, together with designated timestamp, identify a row. When such keys are
+     * present rows with matching keys replace each other on commit, last writer wins.
+     */
+    default boolean isDedupKey(int columnIndex) {
+        return false;
+    }
+
     int getPartitionBy();
 
     boolean getSymbolCacheFlag(int columnIndex);
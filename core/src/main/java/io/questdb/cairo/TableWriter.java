@@ -28,7 +28,9 @@ import io.questdb.MessageBus;
 import io.questdb.MessageBusImpl;
 import io.questdb.cairo.sql.RecordMetadata;
 import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.vm.DecompressedPageCache;
 import io.questdb.cairo.vm.MemoryFCRImpl;
+import io.questdb.cairo.vm.MemoryCZRImpl;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.*;
 import io.questdb.griffin.AlterStatement;
@@ -48,15 +50,15 @@ import io.questdb.tasks.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.Closeable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.LongConsumer;
 
 import static io.questdb.cairo.StatusCode.*;
 import static io.questdb.cairo.TableUtils.*;
 
-public class TableWriter implements Closeable {
+public class TableWriter implements TableWriterAPI {
     public static final int TIMESTAMP_MERGE_ENTRY_BYTES = Long.BYTES * 2;
     public static final int O3_BLOCK_NONE = -1;
     public static final int O3_BLOCK_O3 = 1;
@@ -111,6 +113,10 @@ public class TableWriter implements Closeable {
     private final PartitionBy.PartitionFloorMethod partitionFloorMethod;
     private final PartitionBy.PartitionCeilMethod partitionCeilMethod;
     private final int defaultCommitMode;
+    private final boolean groupCommitEnabled;
+    private final GroupCommitEntry groupCommitEntry = new GroupCommitEntry();
+    private final ObjList<GroupCommitEntry> groupCommitBatch = new ObjList<>();
+    private final ColumnSyncer columnSyncer;
     private final int o3ColumnMemorySize;
     private final ObjList<Runnable> nullSetters;
     private final ObjList<Runnable> o3NullSetters;
@@ -137,8 +143,15 @@ public class TableWriter implements Closeable {
     private final MPSequence o3PartitionUpdatePubSeq;
     private final SCSequence o3PartitionUpdateSubSeq;
     private final boolean o3QuickSortEnabled;
+    private final O3Deduplicator o3Deduplicator;
     private final LongConsumer appendTimestampSetter;
     private final MemoryMR indexMem = Vm.getMRInstance();
+    private final PartitionCompressor partitionCompressor;
+    private final boolean zoneMapEnabled;
+    private final ZoneMapWriter zoneMapWriter;
+    // timestamps of partitions writer no longer appends to and whose zone maps are to be written on commit
+    private final LongList zoneMapPartitions = new LongList();
+    private long zoneMapActivePartitionTimestamp = Long.MIN_VALUE;
     private final MemoryFR slaveMetaMem = new MemoryFCRImpl();
     private final SCSequence commandSubSeq;
     private final LongIntHashMap replPartitionHash = new LongIntHashMap();
@@ -171,6 +184,10 @@ public class TableWriter implements Closeable {
     private LifecycleManager lifecycleManager;
     private String designatedTimestampColumnName;
     private long o3RowCount;
+    // max timestamp seen since the writer switched to O3 and the deepest O3 row behind it
+    private long o3DepthTimestampHi = Long.MIN_VALUE;
+    private long o3Depth;
+    private long lastO3Depth;
     private final O3ColumnUpdateMethod o3MoveUncommittedRef = this::o3MoveUncommitted0;
     private long lastPartitionTimestamp;
     private boolean o3InError = false;
@@ -216,7 +233,12 @@ public class TableWriter implements Closeable {
         } else {
             this.messageBus = messageBus;
         }
+        this.columnSyncer = new ColumnSyncer(configuration, this.messageBus);
+        this.partitionCompressor = new PartitionCompressor(configuration);
+        this.zoneMapEnabled = configuration.isZoneMapEnabled();
+        this.zoneMapWriter = new ZoneMapWriter(configuration);
         this.defaultCommitMode = configuration.getCommitMode();
+        this.groupCommitEnabled = configuration.isGroupCommitEnabled();
         this.lifecycleManager = lifecycleManager;
         this.parallelIndexerEnabled = configuration.isParallelIndexingEnabled();
         this.ff = configuration.getFilesFacade();
@@ -265,6 +287,11 @@ public class TableWriter implements Closeable {
             openMetaFile(ff, path, rootLen, metaMem);
             this.metadata = new TableWriterMetadata(ff, metaMem);
             this.partitionBy = metaMem.getInt(META_OFFSET_PARTITION_BY);
+            if (metadata.getTimestampIndex() > -1 && TableUtils.isDedupKey(metaMem, metadata.getTimestampIndex())) {
+                this.o3Deduplicator = new O3Deduplicator(configuration, path);
+            } else {
+                this.o3Deduplicator = null;
+            }
             this.txWriter = new TxWriter(ff, path, partitionBy);
             this.txnScoreboard = new TxnScoreboard(ff, path.trimTo(rootLen), configuration.getTxnScoreboardEntryCount());
             path.trimTo(rootLen);
@@ -310,6 +337,9 @@ public class TableWriter implements Closeable {
             configureTimestampSetter();
             this.appendTimestampSetter = timestampSetter;
             configureAppendPosition();
+            if (PartitionBy.isPartitioned(partitionBy) && txWriter.getMaxTimestamp() != Long.MIN_VALUE) {
+                this.zoneMapActivePartitionTimestamp = getPartitionLo(txWriter.getMaxTimestamp());
+            }
             purgeUnusedPartitions();
             clearTodoLog();
         } catch (Throwable e) {
@@ -330,6 +360,7 @@ public class TableWriter implements Closeable {
         return Unsafe.getUnsafe().getLong(timestampIndex + indexRow * 16);
     }
 
+    @Override
     public void addColumn(CharSequence name, int type) {
         addColumn(name, type, configuration.getDefaultSymbolCapacity(), configuration.getDefaultSymbolCacheFlag(), false, 0, false);
     }
@@ -563,6 +594,19 @@ public class TableWriter implements Closeable {
     }
 
     public int attachPartition(long timestamp) {
+        return attachPartition(timestamp, false);
+    }
+
+    /**
+     * Attaches partition, which is either in place or in the ".detached" directory.
+     *
+     * @param timestamp     timestamp of the partition
+     * @param symbolsMapped true when keys of symbol columns in the partition were resolved against symbol
+     *                      tables of this writer, e.g. by parallel text import. Partitions of tables with
+     *                      symbols cannot be attached otherwise.
+     * @return status code, {@link StatusCode#OK} when partition is attached
+     */
+    public int attachPartition(long timestamp, boolean symbolsMapped) {
         // Partitioned table must have a timestamp
         // SQL compiler will check that table is partitioned
         assert metadata.getTimestampIndex() > -1;
@@ -573,7 +617,7 @@ public class TableWriter implements Closeable {
             return PARTITION_ALREADY_ATTACHED;
         }
 
-        if (metadata.getSymbolMapCount() > 0) {
+        if (!symbolsMapped && metadata.getSymbolMapCount() > 0) {
             LOG.error().$("attaching partitions on table with symbols not yet supported [table=").$(tableName)
                     .$(",partition=").$ts(timestamp).I$();
             return TABLE_HAS_SYMBOLS;
@@ -598,6 +642,11 @@ public class TableWriter implements Closeable {
             }
 
             if (ff.exists(path.$())) {
+                if (PartitionCompressor.isCompressed(ff, path.chop$())) {
+                    LOG.error().$("cannot attach compressed partition [path=").$(path).$(']').$();
+                    return PARTITION_COMPRESSED;
+                }
+
                 // find out lo, hi ranges of partition attached as well as size
                 final long partitionSize = readPartitionSizeMinMax(ff, path, timestampCol, tempMem16b, timestamp);
                 if (partitionSize > 0) {
@@ -669,6 +718,7 @@ public class TableWriter implements Closeable {
         txWriter.bumpStructureVersion(this.denseSymbolMapWriters);
     }
 
+    @Override
     public long getUncommittedRowCount() {
         return (masterRef - committedMasterRef) >> 1;
     }
@@ -680,6 +730,7 @@ public class TableWriter implements Closeable {
         }
     }
 
+    @Override
     public void commit() {
         commit(defaultCommitMode);
     }
@@ -688,6 +739,31 @@ public class TableWriter implements Closeable {
         commit(commitMode, 0);
     }
 
+    /**
+     * Commits pending rows together with the sequence of WAL apply record that lists them. The sequence
+     * is committed even when there are no rows, e.g. when the record only skips or forgets segments.
+     *
+     * @param walSeq sequence of WAL apply record, it has to be durable before this call
+     */
+    public void commitWal(long walSeq) {
+        final boolean hasRows = inTransaction();
+        txWriter.setWalSeq(walSeq);
+        try {
+            commit();
+            if (txWriter.getCommittedWalSeq() != walSeq) {
+                if (hasRows) {
+                    throw CairoException.instance(0).put("could not commit WAL rows [table=").put(tableName).put(']');
+                }
+                checkDistressed();
+                txWriter.commit(defaultCommitMode, denseSymbolMapWriters);
+            }
+        } catch (Throwable e) {
+            // other commits must not point _txn at a record that was not committed
+            txWriter.setWalSeq(txWriter.getCommittedWalSeq());
+            throw e;
+        }
+    }
+
     public void commitWithLag() {
         commit(defaultCommitMode, metadata.getCommitLag());
     }
@@ -700,6 +776,10 @@ public class TableWriter implements Closeable {
         commit(commitMode, metadata.getCommitLag());
     }
 
+    public void commitWithLag(int commitMode, long lagMicros) {
+        commit(commitMode, lagMicros);
+    }
+
     public int getColumnIndex(CharSequence name) {
         int index = metadata.getColumnIndexQuiet(name);
         if (index > -1) {
@@ -720,10 +800,21 @@ public class TableWriter implements Closeable {
         return txWriter.getMaxTimestamp();
     }
 
+    @Override
     public TableWriterMetadata getMetadata() {
         return metadata;
     }
 
+    /**
+     * O3 depth of the rows committed by the last commit, e.g. the largest distance in microseconds
+     * between a row and the max timestamp appended before it. Zero when all rows were in order.
+     *
+     * @return O3 depth in microseconds
+     */
+    public long getO3Depth() {
+        return lastO3Depth;
+    }
+
     public long getO3RowCount() {
         return hasO3() ? getO3RowCount0() : 0;
     }
@@ -750,6 +841,7 @@ public class TableWriter implements Closeable {
         return txWriter.unsafeGetRawMemory();
     }
 
+    @Override
     public long getStructureVersion() {
         return txWriter.getStructureVersion();
     }
@@ -758,6 +850,7 @@ public class TableWriter implements Closeable {
         return symbolMapWriters.getQuick(columnIndex).put(symValue);
     }
 
+    @Override
     public String getTableName() {
         return tableName;
     }
@@ -770,14 +863,23 @@ public class TableWriter implements Closeable {
         return txnScoreboard;
     }
 
+    public long getWalSeq() {
+        return txWriter.getCommittedWalSeq();
+    }
+
     public boolean inTransaction() {
         return txWriter != null && (txWriter.inTransaction() || hasO3());
     }
 
+    public boolean isDedupKey(int columnIndex) {
+        return TableUtils.isDedupKey(metaMem, columnIndex);
+    }
+
     public boolean isOpen() {
         return tempMem16b != 0;
     }
 
+    @Override
     public Row newRow(long timestamp) {
 
         switch (rowActon) {
@@ -797,8 +899,12 @@ public class TableWriter implements Closeable {
 
             default: // switch partition
                 bumpMasterRef();
-                if (timestamp > partitionTimestampHi || timestamp < txWriter.getMaxTimestamp()) {
-                    if (timestamp < txWriter.getMaxTimestamp()) {
+                final long maxTimestamp = txWriter.getMaxTimestamp();
+                // rows of tables with dedup keys that land on the max timestamp may replace
+                // existing rows, they have to go through O3
+                final boolean o3 = timestamp < maxTimestamp || (timestamp == maxTimestamp && o3Deduplicator != null);
+                if (timestamp > partitionTimestampHi || o3) {
+                    if (o3) {
                         return newRowO3(timestamp);
                     }
 
@@ -826,6 +932,7 @@ public class TableWriter implements Closeable {
                 break;
             case ROW_ACTION_O3:
                 bumpMasterRef();
+                o3TrackDepth(timestamp);
                 o3TimestampSetter(timestamp);
                 return row;
         }
@@ -833,6 +940,7 @@ public class TableWriter implements Closeable {
         return row;
     }
 
+    @Override
     public Row newRow() {
         return newRow(0L);
     }
@@ -920,6 +1028,21 @@ public class TableWriter implements Closeable {
         LOG.info().$("REMOVED column '").utf8(name).$("' from ").$(path).$();
     }
 
+    /**
+     * Rewrites partition with compressed column files. Compressed partition is read-only, readers
+     * decompress its columns when they open the partition. Active partition cannot be compressed.
+     *
+     * @param timestamp timestamp within the partition
+     * @return false when partition cannot be compressed
+     */
+    public boolean compressPartition(long timestamp) {
+        return rewritePartition(timestamp, true);
+    }
+
+    public boolean decompressPartition(long timestamp) {
+        return rewritePartition(timestamp, false);
+    }
+
     public boolean removePartition(long timestamp) {
         long minTimestamp = txWriter.getMinTimestamp();
         long maxTimestamp = txWriter.getMaxTimestamp();
@@ -1312,6 +1435,7 @@ public class TableWriter implements Closeable {
         }
     }
 
+    @Override
     public void rollback() {
         checkDistressed();
         if (o3InError || inTransaction()) {
@@ -1842,6 +1966,9 @@ public class TableWriter implements Closeable {
 
         checkDistressed();
 
+        lastO3Depth = o3Depth;
+        o3Depth = 0;
+
         if (o3InError) {
             rollback();
             return;
@@ -1864,11 +1991,20 @@ public class TableWriter implements Closeable {
             }
 
             updateIndexes();
-            txWriter.commit(commitMode, this.denseSymbolMapWriters);
+            if (commitMode == CommitMode.SYNC && groupCommitEnabled) {
+                // _txn is synced only after columns are durable, as it is done by txWriter
+                txWriter.commit(CommitMode.NOSYNC, this.denseSymbolMapWriters);
+                groupCommitEntry.clear();
+                groupCommitEntry.add(txWriter.getTxMem());
+                groupSync();
+            } else {
+                txWriter.commit(commitMode, this.denseSymbolMapWriters);
+            }
 
             // Bookmark masterRef to track how many rows is in uncommitted state
             this.committedMasterRef = masterRef;
             o3ProcessPartitionRemoveCandidates();
+            updateZoneMaps();
         }
     }
 
@@ -2055,6 +2191,9 @@ public class TableWriter implements Closeable {
                     if (isSequential(metaMem, i)) {
                         flags |= META_FLAG_BIT_SEQUENTIAL;
                     }
+                    if (TableUtils.isDedupKey(metaMem, i)) {
+                        flags |= META_FLAG_BIT_DEDUP_KEY;
+                    }
                     ddlMem.putLong(flags);
                     ddlMem.putInt(indexValueBlockSize);
                     ddlMem.putLong(getColumnHash(metaMem, i));
@@ -2186,6 +2325,9 @@ public class TableWriter implements Closeable {
             Misc.free(txnScoreboard);
             Misc.free(path);
             Misc.free(o3TimestampMemCpy);
+            Misc.free(o3Deduplicator);
+            Misc.free(partitionCompressor);
+            Misc.free(zoneMapWriter);
             final FanOut commandFanOut = messageBus.getTableWriterCommandFanOut();
             if (commandFanOut != null) {
                 commandFanOut.remove(commandSubSeq);
@@ -2334,7 +2476,7 @@ public class TableWriter implements Closeable {
         return columns.getQuick(getSecondaryColumnIndex(column));
     }
 
-    SymbolMapWriter getSymbolMapWriter(int columnIndex) {
+    public SymbolMapWriter getSymbolMapWriter(int columnIndex) {
         return symbolMapWriters.getQuick(columnIndex);
     }
 
@@ -2347,7 +2489,11 @@ public class TableWriter implements Closeable {
         if (ts > Numbers.LONG_NaN) {
             final long maxTimestamp = partitionFloorMethod.floor(ts);
             long timestamp = txWriter.getMinTimestamp();
-            try (final MemoryMR roMem = indexMem) {
+            try (
+                    final MemoryMR roMem = indexMem;
+                    final DecompressedPageCache pageCache = new DecompressedPageCache(configuration.getDecompressedPageCacheSize());
+                    final MemoryMR compressedMem = new MemoryCZRImpl(pageCache)
+            ) {
 
                 while (timestamp < maxTimestamp) {
 
@@ -2373,11 +2519,11 @@ public class TableWriter implements Closeable {
                             final long columnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), columnName, plen, tempMem16b, true);
 
                             if (partitionSize > columnTop) {
-                                TableUtils.dFile(path.trimTo(plen), columnName);
                                 final long columnSize = (partitionSize - columnTop) << ColumnType.pow2SizeOf(ColumnType.INT);
-                                roMem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_WRITER);
+                                final MemoryMR columnMem = PartitionCompressor.isCompressed(ff, path.trimTo(plen)) ? compressedMem : roMem;
+                                columnMem.of(ff, TableUtils.dFile(path.trimTo(plen), columnName), columnSize, columnSize, MemoryTag.MMAP_TABLE_WRITER);
                                 indexer.configureWriter(configuration, path.trimTo(plen), columnName, columnTop);
-                                indexer.index(roMem, columnTop, partitionSize);
+                                indexer.index(columnMem, columnTop, partitionSize);
                             }
                         }
                     }
@@ -2429,6 +2575,8 @@ public class TableWriter implements Closeable {
         o3InError = false;
         o3MasterRef = masterRef;
         rowActon = ROW_ACTION_O3;
+        o3DepthTimestampHi = Math.max(o3DepthTimestampHi, txWriter.getMaxTimestamp());
+        o3TrackDepth(timestamp);
         o3TimestampSetter(timestamp);
         return row;
     }
@@ -2460,6 +2608,7 @@ public class TableWriter implements Closeable {
         // will have to switch partition internally
         long partitionTimestampHiLimit = partitionCeilMethod.ceil(partitionTimestampHi) - 1;
         try {
+            final long movedRowLo = o3RowCount;
             o3RowCount += o3MoveUncommitted(timestampIndex);
             final long transientRowCount = txWriter.transientRowCount;
 
@@ -2480,6 +2629,11 @@ public class TableWriter implements Closeable {
                 Vect.quickSortLongIndexAscInPlace(sortedTimestampsAddr, o3RowCount);
             }
 
+            if (o3Deduplicator != null) {
+                o3Deduplicator.of(metadata, metaMem);
+                o3RowCount = o3Deduplicator.dedupO3(sortedTimestampsAddr, o3RowCount, movedRowLo, o3Columns);
+            }
+
             // we have three frames:
             // partition logical "lo" and "hi" - absolute bounds (partitionLo, partitionHi)
             // partition actual data "lo" and "hi" (dataLo, dataHi)
@@ -2553,6 +2707,7 @@ public class TableWriter implements Closeable {
 
             // we could have moved the "srcOooMax" and hence we re-read the max timestamp
             o3TimestampMax = getTimestampIndexValue(sortedTimestampsAddr, srcOooMax - 1);
+            o3CheckCompressedPartitions(o3TimestampMin, o3TimestampMax);
             // move uncommitted is liable to change max timestamp
             // however we need to identify last partition before max timestamp skips to NULL for example
             final long maxTimestamp = txWriter.getMaxTimestamp();
@@ -2617,8 +2772,26 @@ public class TableWriter implements Closeable {
                             srcNameTxn = -1;
                         }
 
+                        final long dedupRowCount;
+                        if (o3Deduplicator != null) {
+                            dedupRowCount = o3Deduplicator.findDuplicates(
+                                    metadata,
+                                    partitionBy,
+                                    partitionTimestamp,
+                                    srcNameTxn,
+                                    srcDataMax,
+                                    last ? columnTops : null,
+                                    sortedTimestampsAddr,
+                                    srcOooLo,
+                                    srcOooHi,
+                                    o3Columns
+                            );
+                        } else {
+                            dedupRowCount = 0;
+                        }
+
                         final boolean append = last && (srcDataMax == 0 || o3Timestamp >= maxTimestamp);
-                        final long partitionSize = srcDataMax + srcOooHi - srcOooLo + 1;
+                        final long partitionSize = srcDataMax - dedupRowCount + srcOooHi - srcOooLo + 1;
 
                         LOG.debug().
                                 $("o3 partition task [table=").$(tableName)
@@ -2635,6 +2808,7 @@ public class TableWriter implements Closeable {
                                 .$(", last=").$(last)
                                 .$(", partitionSize=").$(partitionSize)
                                 .$(", append=").$(append)
+                                .$(", dedupRowCount=").$(dedupRowCount)
                                 .$(", memUsed=").$(Unsafe.getMemUsed())
                                 .I$();
 
@@ -2651,6 +2825,23 @@ public class TableWriter implements Closeable {
                         }
 
                         pCount++;
+                        if (dedupRowCount > 0) {
+                            o3DedupPartition(
+                                    o3TimestampMin,
+                                    o3TimestampMax,
+                                    sortedTimestampsAddr,
+                                    srcOooLo,
+                                    srcOooHi,
+                                    srcOooMax,
+                                    partitionTimestamp,
+                                    last,
+                                    srcDataMax,
+                                    srcNameTxn,
+                                    dedupRowCount
+                            );
+                            continue;
+                        }
+
                         o3PartitionUpdRemaining.incrementAndGet();
                         final O3Basket o3Basket = o3BasketPool.next();
                         o3Basket.ensureCapacity(columnCount, indexCount);
@@ -2837,6 +3028,47 @@ public class TableWriter implements Closeable {
         return false;
     }
 
+    private void o3DedupPartition(
+            long o3TimestampMin,
+            long o3TimestampMax,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi,
+            long srcOooMax,
+            long partitionTimestamp,
+            boolean last,
+            long srcDataMax,
+            long srcNameTxn,
+            long dedupRowCount
+    ) {
+        // partition rows are replaced by O3 rows, the merge is done synchronously
+        // into new partition version, which replaces existing one on commit
+        o3Deduplicator.rewritePartition(
+                metadata,
+                partitionBy,
+                partitionTimestamp,
+                srcNameTxn,
+                srcDataMax,
+                last ? columnTops : null,
+                getTxn(),
+                sortedTimestampsAddr,
+                srcOooLo,
+                srcOooHi,
+                o3Columns
+        );
+        o3PartitionUpdRemaining.incrementAndGet();
+        o3PartitionUpdateSynchronized(
+                o3TimestampMin,
+                o3TimestampMax,
+                partitionTimestamp,
+                srcOooLo,
+                srcOooHi,
+                true,
+                srcOooMax,
+                srcDataMax - dedupRowCount
+        );
+    }
+
     private void o3CommitPartitionAsync(
             AtomicInteger columnCounter,
             long maxTimestamp,
@@ -3287,6 +3519,10 @@ public class TableWriter implements Closeable {
                 .$(", partitionSize=").$(partitionSize)
                 .I$();
 
+        if (zoneMapEnabled && partitionTimestamp != lastPartitionTimestamp) {
+            zoneMapPartitions.add(partitionTimestamp);
+        }
+
         if (partitionMutates) {
             final long srcDataTxn = txWriter.getPartitionNameTxnByIndex(partitionIndex);
             LOG.info()
@@ -3327,6 +3563,31 @@ public class TableWriter implements Closeable {
         );
     }
 
+    private void o3CheckCompressedPartitions(long o3TimestampMin, long o3TimestampMax) {
+        // last partition is never compressed
+        final long partitionTimestampLo = partitionFloorMethod.floor(o3TimestampMin);
+        for (int i = 0, n = txWriter.getPartitionCount() - 1; i < n; i++) {
+            final long partitionTimestamp = txWriter.getPartitionTimestamp(i);
+            if (partitionTimestamp > o3TimestampMax) {
+                break;
+            }
+            if (partitionTimestamp >= partitionTimestampLo) {
+                try {
+                    setPathForPartition(other, partitionBy, partitionTimestamp, false);
+                    TableUtils.txnPartitionConditionally(other, txWriter.getPartitionNameTxn(i));
+                    if (PartitionCompressor.isCompressed(ff, other)) {
+                        o3InError = true;
+                        throw CairoException.instance(0).put("cannot insert into compressed partition, decompress it first [path=")
+                                .put(other)
+                                .put(']');
+                    }
+                } finally {
+                    other.trimTo(rootLen);
+                }
+            }
+        }
+    }
+
     private void o3ProcessPartitionRemoveCandidates() {
         try {
             final int n = o3PartitionRemoveCandidates.size();
@@ -3700,6 +3961,14 @@ public class TableWriter implements Closeable {
         indexMem.putLong(dataSize);
     }
 
+    private void o3TrackDepth(long timestamp) {
+        if (timestamp > o3DepthTimestampHi) {
+            o3DepthTimestampHi = timestamp;
+        } else if (o3DepthTimestampHi - timestamp > o3Depth) {
+            o3Depth = o3DepthTimestampHi - timestamp;
+        }
+    }
+
     private void o3TimestampSetter(long timestamp) {
         o3TimestampMem.putLong128(timestamp, getO3RowCount0());
     }
@@ -3984,6 +4253,7 @@ public class TableWriter implements Closeable {
                     removeLambda.remove(ff, dFile(path, columnName));
                     removeLambda.remove(ff, iFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, topFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, zoneMapFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName));
                 }
@@ -4088,7 +4358,7 @@ public class TableWriter implements Closeable {
     }
 
     private void removePartitionDirectories0(long pUtf8NameZ, int type) {
-        if (Files.isDir(pUtf8NameZ, type)) {
+        if (Files.isDir(pUtf8NameZ, type, fileNameSink) && !Chars.equals(fileNameSink, WAL_DIR_NAME)) {
             path.trimTo(rootLen);
             path.concat(pUtf8NameZ).$();
             int errno;
@@ -4106,6 +4376,10 @@ public class TableWriter implements Closeable {
                 // They are probably about to be attached.
                 return;
             }
+            if (Chars.equals(fileNameSink, WAL_DIR_NAME)) {
+                // write-ahead log is not a partition
+                return;
+            }
             try {
                 long txn = 0;
                 int txnSep = Chars.indexOf(fileNameSink, '.');
@@ -4210,6 +4484,7 @@ public class TableWriter implements Closeable {
                     renameFileOrLog(ff, dFile(path.trimTo(plen), columnName), dFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, iFile(path.trimTo(plen), columnName), iFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, topFile(path.trimTo(plen), columnName), topFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, zoneMapFile(path.trimTo(plen), columnName), zoneMapFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName), BitmapIndexUtils.keyFileName(other.trimTo(plen), newName));
                     renameFileOrLog(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName), BitmapIndexUtils.valueFileName(other.trimTo(plen), newName));
                 }
@@ -4475,6 +4750,76 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private boolean rewritePartition(long timestamp, boolean compress) {
+        checkDistressed();
+        if (!PartitionBy.isPartitioned(partitionBy)) {
+            return false;
+        }
+
+        timestamp = getPartitionLo(timestamp);
+        if (timestamp == getPartitionLo(txWriter.getMaxTimestamp())) {
+            LOG.error()
+                    .$("cannot rewrite active partition [table=").$(tableName)
+                    .$(", ts=").$ts(timestamp)
+                    .$(", compress=").$(compress)
+                    .I$();
+            return false;
+        }
+
+        final int partitionIndex = txWriter.findAttachedPartitionIndexByLoTimestamp(timestamp);
+        if (partitionIndex < 0) {
+            LOG.error().$("partition is not attached [table=").$(tableName).$(", ts=").$ts(timestamp).I$();
+            return false;
+        }
+
+        if (inTransaction()) {
+            commit();
+        }
+
+        final long srcNameTxn = txWriter.getPartitionNameTxnByIndex(partitionIndex);
+        final long partitionSize = txWriter.getPartitionSizeByPartitionTimestamp(timestamp);
+        try {
+            setPathForPartition(path, partitionBy, timestamp, false);
+            TableUtils.txnPartitionConditionally(path, srcNameTxn);
+            if (PartitionCompressor.isCompressed(ff, path) == compress) {
+                LOG.info().$("partition is already ").$(compress ? "compressed" : "decompressed").$(" [path=").$(path).I$();
+                return true;
+            }
+
+            // new copy of the partition gets new name, readers switch to it when they reload
+            setPathForPartition(other, partitionBy, timestamp, false);
+            TableUtils.txnPartition(other, txWriter.getTxn());
+            try {
+                partitionCompressor.rewrite(
+                        path,
+                        other,
+                        metadata,
+                        partitionSize,
+                        compress,
+                        defaultCommitMode != CommitMode.NOSYNC,
+                        tempMem16b
+                );
+            } catch (Throwable e) {
+                LOG.error().$("could not rewrite partition [path=").$(other).$(", error=").$(e).I$();
+                ff.rmdir(other.slash$());
+                throw e;
+            }
+
+            txWriter.updatePartitionSizeByIndexAndTxn(partitionIndex, partitionSize);
+            txWriter.bumpPartitionTableVersion();
+            txWriter.commit(defaultCommitMode, denseSymbolMapWriters);
+            LOG.info().$(compress ? "compressed" : "decompressed").$(" partition [path=").$(other).I$();
+        } finally {
+            path.trimTo(rootLen);
+            other.trimTo(rootLen);
+        }
+
+        o3PartitionRemoveCandidates.clear();
+        o3PartitionRemoveCandidates.add(timestamp, srcNameTxn);
+        o3ProcessPartitionRemoveCandidates();
+        return true;
+    }
+
     private void rowAppend(ObjList<Runnable> activeNullSetters) {
         if ((masterRef & 1) != 0) {
             for (int i = 0; i < columnCount; i++) {
@@ -4673,20 +5018,74 @@ public class TableWriter implements Closeable {
         // added so far. Index writers will start point to different
         // files after switch.
         updateIndexes();
+        if (zoneMapEnabled && txWriter.getMaxTimestamp() != Long.MIN_VALUE) {
+            zoneMapPartitions.add(getPartitionLo(txWriter.getMaxTimestamp()));
+        }
         txWriter.switchPartitions(timestamp);
         openPartition(timestamp);
         setAppendPosition(0, false);
     }
 
+    private void groupSync() {
+        final MPSequence pubSeq = messageBus.getGroupCommitPubSeq();
+        long cursor;
+        do {
+            cursor = pubSeq.next();
+        } while (cursor == -2);
+
+        if (cursor == -1) {
+            // queue is full, sync on this thread
+            groupCommitEntry.sync(columnSyncer);
+        } else {
+            messageBus.getGroupCommitQueue().get(cursor).entry = groupCommitEntry;
+            pubSeq.done(cursor);
+
+            // flush pending commits, including commits of other writers, until our own entry is synced
+            while (!groupCommitEntry.isDone()) {
+                if (!GroupCommitJob.flush(
+                        messageBus.getGroupCommitQueue(),
+                        messageBus.getGroupCommitSubSeq(),
+                        groupCommitBatch,
+                        columnSyncer,
+                        configuration.getMicrosecondClock(),
+                        0
+                )) {
+                    LockSupport.parkNanos(1);
+                }
+            }
+        }
+
+        if (groupCommitEntry.isFailed()) {
+            // files may not be durable while _txn could already be, writer cannot carry on
+            LOG.critical().$("group commit failed [table=").$(tableName).I$();
+            distressed = true;
+            groupCommitEntry.throwIfFailed();
+        }
+    }
+
     private void syncColumns(int commitMode) {
+        if (commitMode == CommitMode.SYNC && groupCommitEnabled) {
+            groupCommitEntry.clear();
+            for (int i = 0; i < columnCount; i++) {
+                groupCommitEntry.add(columns.getQuick(i * 2));
+                final MemoryMAR m2 = columns.getQuick(i * 2 + 1);
+                if (m2 != null) {
+                    groupCommitEntry.add(m2);
+                }
+            }
+            groupSync();
+            return;
+        }
+
         final boolean async = commitMode == CommitMode.ASYNC;
         for (int i = 0; i < columnCount; i++) {
-            columns.getQuick(i * 2).sync(async);
+            columnSyncer.add(columns.getQuick(i * 2), async);
             final MemoryMAR m2 = columns.getQuick(i * 2 + 1);
             if (m2 != null) {
-                m2.sync(false);
+                columnSyncer.add(m2, false);
             }
         }
+        columnSyncer.sync();
     }
 
     private void throwDistressException(Throwable cause) {
@@ -4818,6 +5217,52 @@ public class TableWriter implements Closeable {
         this.timestampSetter.accept(timestamp);
     }
 
+    private void updateZoneMaps() {
+        if (!zoneMapEnabled || !PartitionBy.isPartitioned(partitionBy) || txWriter.getMaxTimestamp() == Long.MIN_VALUE) {
+            zoneMapPartitions.clear();
+            return;
+        }
+
+        // O3 can move max timestamp to a new partition without writer switching partitions
+        final long activePartitionTimestamp = getPartitionLo(txWriter.getMaxTimestamp());
+        if (activePartitionTimestamp != zoneMapActivePartitionTimestamp) {
+            if (zoneMapActivePartitionTimestamp != Long.MIN_VALUE) {
+                zoneMapPartitions.add(zoneMapActivePartitionTimestamp);
+            }
+            zoneMapActivePartitionTimestamp = activePartitionTimestamp;
+        }
+
+        final int n = zoneMapPartitions.size();
+        if (n == 0) {
+            return;
+        }
+        zoneMapPartitions.sort();
+        long prevTimestamp = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            final long partitionTimestamp = zoneMapPartitions.getQuick(i);
+            if (partitionTimestamp == prevTimestamp || partitionTimestamp == activePartitionTimestamp) {
+                continue;
+            }
+            prevTimestamp = partitionTimestamp;
+            final int partitionIndex = txWriter.findAttachedPartitionIndexByLoTimestamp(partitionTimestamp);
+            if (partitionIndex < 0) {
+                // partition has been dropped
+                continue;
+            }
+            try {
+                writeZoneMaps(partitionTimestamp, partitionIndex);
+            } catch (CairoException e) {
+                // zone maps are optional, queries scan the partition when they are missing
+                LOG.error().$("could not write zone maps [table=").$(tableName)
+                        .$(", ts=").$ts(partitionTimestamp)
+                        .$(", errno=").$(e.getErrno())
+                        .$(", error=").$(e.getFlyweightMessage())
+                        .I$();
+            }
+        }
+        zoneMapPartitions.clear();
+    }
+
     private void validateSwapMeta(CharSequence columnName) {
         try {
             try {
@@ -4837,6 +5282,35 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void writeZoneMaps(long partitionTimestamp, int partitionIndex) {
+        final long partitionSize = txWriter.getPartitionSizeByPartitionTimestamp(partitionTimestamp);
+        if (partitionSize < 1) {
+            return;
+        }
+        try {
+            setPathForPartition(other, partitionBy, partitionTimestamp, false);
+            TableUtils.txnPartitionConditionally(other, txWriter.getPartitionNameTxnByIndex(partitionIndex));
+            // compressed partition keeps zone maps it had when it was compressed
+            if (PartitionCompressor.isCompressed(ff, other)) {
+                return;
+            }
+            final int plen = other.length();
+            for (int i = 0; i < columnCount; i++) {
+                final int columnType = metadata.getColumnType(i);
+                if (columnType > 0 && ZoneMapReader.isSupported(columnType)) {
+                    final CharSequence columnName = metadata.getColumnName(i);
+                    if (ff.exists(dFile(other.trimTo(plen), columnName))) {
+                        final long columnTop = TableUtils.readColumnTop(ff, other.trimTo(plen), columnName, plen, tempMem16b, true);
+                        zoneMapWriter.write(other.trimTo(plen), columnName, columnType, partitionSize, columnTop);
+                    }
+                }
+            }
+            LOG.debug().$("wrote zone maps [path=").$(other.trimTo(plen)).$(", rowCount=").$(partitionSize).I$();
+        } finally {
+            other.trimTo(rootLen);
+        }
+    }
+
     private void writeColumnEntry(int i) {
         ddlMem.putInt(getColumnType(metaMem, i));
         long flags = 0;
@@ -4847,6 +5321,10 @@ public class TableWriter implements Closeable {
         if (isSequential(metaMem, i)) {
             flags |= META_FLAG_BIT_SEQUENTIAL;
         }
+
+        if (TableUtils.isDedupKey(metaMem, i)) {
+            flags |= META_FLAG_BIT_DEDUP_KEY;
+        }
         ddlMem.putLong(flags);
         ddlMem.putInt(getIndexBlockCapacity(metaMem, i));
         ddlMem.putLong(getColumnHash(metaMem, i));
@@ -27,6 +27,7 @@ package io.questdb.cairo;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryCMARW;
 import io.questdb.cairo.vm.api.MemoryCMR;
+import io.questdb.cairo.vm.api.MemoryMA;
 import io.questdb.std.*;
 import io.questdb.std.str.Path;
 
@@ -41,6 +42,7 @@ public final class TxWriter extends TxReader implements Closeable, SymbolValueCo
     private long prevMaxTimestamp;
     private long prevMinTimestamp;
     private MemoryCMARW txMem;
+    private long walSeq;
 
     public TxWriter(FilesFacade ff, @Transient Path path, int partitionBy) {
         super(ff, path, partitionBy);
@@ -130,6 +132,7 @@ public final class TxWriter extends TxReader implements Closeable, SymbolValueCo
     @Override
     void unsafeLoadAll() {
         super.unsafeLoadAll();
+        this.walSeq = txMem.getLong(TX_OFFSET_WAL_SEQ);
         this.prevTransientRowCount = this.transientRowCount;
         this.prevMaxTimestamp = maxTimestamp;
         this.prevMinTimestamp = minTimestamp;
@@ -157,6 +160,7 @@ public final class TxWriter extends TxReader implements Closeable, SymbolValueCo
         txMem.putLong(TX_OFFSET_MIN_TIMESTAMP, minTimestamp);
         txMem.putLong(TX_OFFSET_MAX_TIMESTAMP, maxTimestamp);
         txMem.putLong(TX_OFFSET_PARTITION_TABLE_VERSION, this.partitionTableVersion);
+        txMem.putLong(TX_OFFSET_WAL_SEQ, walSeq);
         // store symbol counts
         storeSymbolCounts(symbolCountProviders);
 
@@ -189,6 +193,10 @@ public final class TxWriter extends TxReader implements Closeable, SymbolValueCo
         }
     }
 
+    MemoryMA getTxMem() {
+        return txMem;
+    }
+
     public int getAppendedPartitionCount() {
         return txPartitionCount;
     }
@@ -260,6 +268,10 @@ public final class TxWriter extends TxReader implements Closeable, SymbolValueCo
         }
     }
 
+    public void setWalSeq(long walSeq) {
+        this.walSeq = walSeq;
+    }
+
     public void switchPartitions(long timestamp) {
         fixedRowCount += transientRowCount;
         prevTransientRowCount = transientRowCount;
@@ -320,6 +332,10 @@ public final class TxWriter extends TxReader implements Closeable, SymbolValueCo
         return txMem.getLong(TX_OFFSET_TRANSIENT_ROW_COUNT);
     }
 
+    long getCommittedWalSeq() {
+        return txMem.getLong(TX_OFFSET_WAL_SEQ);
+    }
+
     private int insertPartitionSizeByTimestamp(int index, long partitionTimestamp, long partitionSize) {
         int size = attachedPartitions.size();
         attachedPartitions.setPos(size + LONGS_PER_TX_ATTACHED_PARTITION);
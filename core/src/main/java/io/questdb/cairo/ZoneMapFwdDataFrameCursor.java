@@ -0,0 +1,361 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.StaticSymbolTable;
+import io.questdb.std.Misc;
+import io.questdb.std.Numbers;
+import io.questdb.std.ObjList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Narrows data frames of forward cursor down to row blocks, which zone maps cannot rule out.
+ * Every predicate is "column op constant" conjunct of the filter. Frame is dropped when any of
+ * the predicates cannot match partition entry, the rest of the frame is split on block boundaries
+ * and only runs of blocks all predicates can match are returned. Filter itself is applied to the
+ * returned frames as usual.
+ */
+public class ZoneMapFwdDataFrameCursor implements DataFrameCursor {
+    public static final int OP_EQ = 0;
+    public static final int OP_NE = 1;
+    public static final int OP_LT = 2;
+    public static final int OP_LE = 3;
+    public static final int OP_GT = 4;
+    public static final int OP_GE = 5;
+    // same tolerance double equality function uses
+    private static final double EPSILON = 0.0000000001;
+    private final ZoneMapFrame frame = new ZoneMapFrame();
+    private final ObjList<Predicate> predicates = new ObjList<>();
+    private final ObjList<ZoneMapReader> zoneMaps = new ObjList<>();
+    private DataFrameCursor base;
+    private DataFrame baseFrame;
+    private long blockRowCount;
+    private long nextRow;
+    private long rowHi;
+
+    public void addPredicate(int columnIndex, int op, Function value) {
+        Predicate predicate = new Predicate();
+        predicate.columnIndex = columnIndex;
+        predicate.op = op;
+        predicate.value = value;
+        predicates.add(predicate);
+        zoneMaps.add(new ZoneMapReader());
+    }
+
+    @Override
+    public void close() {
+        closeZoneMaps();
+        base = Misc.free(base);
+        baseFrame = null;
+    }
+
+    public void freePredicates() {
+        closeZoneMaps();
+        for (int i = 0, n = predicates.size(); i < n; i++) {
+            Misc.free(predicates.getQuick(i).value);
+        }
+        predicates.clear();
+        zoneMaps.clear();
+    }
+
+    @Override
+    public StaticSymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public TableReader getTableReader() {
+        return base.getTableReader();
+    }
+
+    @Override
+    public @Nullable DataFrame next() {
+        while (true) {
+            if (baseFrame == null) {
+                baseFrame = base.next();
+                if (baseFrame == null) {
+                    return null;
+                }
+                if (!openZoneMaps(baseFrame.getPartitionIndex())) {
+                    // nothing to prune with, hand the frame over as is
+                    DataFrame result = baseFrame;
+                    baseFrame = null;
+                    return result;
+                }
+                if (!partitionMayMatch()) {
+                    baseFrame = null;
+                    continue;
+                }
+                nextRow = baseFrame.getRowLo();
+                rowHi = baseFrame.getRowHi();
+            }
+
+            // skip blocks that cannot match
+            long lo = nextRow;
+            while (lo < rowHi && !mayMatch(lo, blockHi(lo))) {
+                lo = blockHi(lo);
+            }
+            if (lo == rowHi) {
+                baseFrame = null;
+                continue;
+            }
+
+            // extend frame over blocks that can match
+            long hi = blockHi(lo);
+            while (hi < rowHi && mayMatch(hi, blockHi(hi))) {
+                hi = blockHi(hi);
+            }
+            nextRow = hi;
+            frame.of(baseFrame, lo, hi);
+            if (hi == rowHi) {
+                baseFrame = null;
+            }
+            return frame;
+        }
+    }
+
+    public void of(DataFrameCursor base) {
+        this.base = base;
+        this.baseFrame = null;
+        final TableReaderMetadata metadata = base.getTableReader().getMetadata();
+        for (int i = 0, n = predicates.size(); i < n; i++) {
+            final Predicate predicate = predicates.getQuick(i);
+            predicate.resolve(metadata.getColumnType(predicate.columnIndex));
+        }
+    }
+
+    @Override
+    public boolean reload() {
+        baseFrame = null;
+        return base.reload();
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public void toTop() {
+        baseFrame = null;
+        base.toTop();
+    }
+
+    private static boolean mayMatch(ZoneMapReader zoneMap, long entry, Predicate predicate) {
+        if (predicate.longCompare) {
+            final long value = predicate.longValue;
+            final long min = zoneMap.getMinLong(entry);
+            final long max = zoneMap.getMaxLong(entry);
+            switch (predicate.op) {
+                case OP_EQ:
+                    return value >= min && value <= max;
+                case OP_NE:
+                    return min != max || min != value;
+                case OP_LT:
+                    return min < value;
+                case OP_LE:
+                    return min <= value;
+                case OP_GT:
+                    return max > value;
+                default:
+                    return max >= value;
+            }
+        }
+
+        final double min;
+        final double max;
+        final long nullCount;
+        if (predicate.floatingColumn) {
+            nullCount = zoneMap.getNullCount(entry);
+            if (nullCount == zoneMap.getRowCount(entry)) {
+                // NaN is only ever not equal to a value
+                return predicate.op == OP_NE;
+            }
+            min = zoneMap.getMinDouble(entry);
+            max = zoneMap.getMaxDouble(entry);
+        } else {
+            nullCount = 0;
+            min = zoneMap.getMinLong(entry);
+            max = zoneMap.getMaxLong(entry);
+        }
+
+        final double value = predicate.doubleValue;
+        final double tolerance = predicate.tolerance;
+        switch (predicate.op) {
+            case OP_EQ:
+                return value >= min - tolerance && value <= max + tolerance;
+            case OP_NE:
+                return nullCount > 0 || min != max || Math.abs(min - value) >= tolerance;
+            case OP_LT:
+                return min < value + tolerance;
+            case OP_LE:
+                return min <= value + tolerance;
+            case OP_GT:
+                return max > value - tolerance;
+            default:
+                return max >= value - tolerance;
+        }
+    }
+
+    private long blockHi(long row) {
+        return Math.min(rowHi, (row / blockRowCount + 1) * blockRowCount);
+    }
+
+    private void closeZoneMaps() {
+        for (int i = 0, n = zoneMaps.size(); i < n; i++) {
+            zoneMaps.getQuick(i).close();
+        }
+    }
+
+    /**
+     * @return true when all rows in [rowLo, rowHi) can match all the predicates
+     */
+    private boolean mayMatch(long rowLo, long rowHi) {
+        for (int i = 0, n = predicates.size(); i < n; i++) {
+            final Predicate predicate = predicates.getQuick(i);
+            if (predicate.ignored) {
+                continue;
+            }
+            final ZoneMapReader zoneMap = zoneMaps.getQuick(i);
+            if (zoneMap.getRowCount() == 0) {
+                continue;
+            }
+            // zone maps of different columns may have been written with different block sizes
+            final long blockRowCount = zoneMap.getBlockRowCount();
+            boolean match = false;
+            for (long block = rowLo / blockRowCount, last = (rowHi - 1) / blockRowCount; block <= last; block++) {
+                if (mayMatch(zoneMap, block + 1, predicate)) {
+                    match = true;
+                    break;
+                }
+            }
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean partitionMayMatch() {
+        for (int i = 0, n = predicates.size(); i < n; i++) {
+            final ZoneMapReader zoneMap = zoneMaps.getQuick(i);
+            if (zoneMap.getRowCount() > 0 && !mayMatch(zoneMap, ZoneMapReader.PARTITION_ENTRY, predicates.getQuick(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean openZoneMaps(int partitionIndex) {
+        final TableReader reader = base.getTableReader();
+        boolean opened = false;
+        blockRowCount = Long.MAX_VALUE;
+        for (int i = 0, n = predicates.size(); i < n; i++) {
+            final Predicate predicate = predicates.getQuick(i);
+            final ZoneMapReader zoneMap = zoneMaps.getQuick(i);
+            if (!predicate.ignored && reader.openZoneMap(partitionIndex, predicate.columnIndex, zoneMap)) {
+                blockRowCount = Math.min(blockRowCount, zoneMap.getBlockRowCount());
+                opened = true;
+            } else {
+                zoneMap.close();
+            }
+        }
+        return opened;
+    }
+
+    private static class Predicate {
+        int columnIndex;
+        int op;
+        Function value;
+        boolean floatingColumn;
+        boolean longCompare;
+        long longValue;
+        double doubleValue;
+        double tolerance;
+        // null constant matches nothing, filter will deal with it
+        boolean ignored;
+
+        void resolve(int columnType) {
+            final int valueType = ColumnType.tagOf(value.getType());
+            switch (valueType) {
+                case ColumnType.INT:
+                    longValue = value.getInt(null);
+                    ignored = longValue == Numbers.INT_NaN;
+                    doubleValue = longValue;
+                    break;
+                case ColumnType.LONG:
+                    longValue = value.getLong(null);
+                    ignored = longValue == Numbers.LONG_NaN;
+                    doubleValue = longValue;
+                    break;
+                default:
+                    doubleValue = value.getDouble(null);
+                    ignored = Double.isNaN(doubleValue) || Double.isInfinite(doubleValue);
+                    break;
+            }
+
+            final int columnTag = ColumnType.tagOf(columnType);
+            floatingColumn = columnTag == ColumnType.FLOAT || columnTag == ColumnType.DOUBLE;
+            longCompare = !floatingColumn && (valueType == ColumnType.INT || valueType == ColumnType.LONG);
+            // float values may end up compared as floats rather than doubles
+            tolerance = columnTag == ColumnType.FLOAT ? Math.max(EPSILON, 2 * Math.ulp((float) doubleValue)) : EPSILON;
+        }
+    }
+
+    private static class ZoneMapFrame implements DataFrame {
+        private DataFrame base;
+        private long rowLo;
+        private long rowHi;
+
+        @Override
+        public BitmapIndexReader getBitmapIndexReader(int columnIndex, int direction) {
+            return base.getBitmapIndexReader(columnIndex, direction);
+        }
+
+        @Override
+        public int getPartitionIndex() {
+            return base.getPartitionIndex();
+        }
+
+        @Override
+        public long getRowHi() {
+            return rowHi;
+        }
+
+        @Override
+        public long getRowLo() {
+            return rowLo;
+        }
+
+        void of(DataFrame base, long rowLo, long rowHi) {
+            this.base = base;
+            this.rowLo = rowLo;
+            this.rowHi = rowHi;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.cairo.sql.DataFrameCursorFactory;
+import io.questdb.cairo.sql.Function;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.CharSink;
+
+public class ZoneMapFwdDataFrameCursorFactory implements DataFrameCursorFactory {
+    private final DataFrameCursorFactory base;
+    private final ZoneMapFwdDataFrameCursor cursor = new ZoneMapFwdDataFrameCursor();
+    private final ObjList<Function> values = new ObjList<>();
+
+    public ZoneMapFwdDataFrameCursorFactory(DataFrameCursorFactory base) {
+        this.base = base;
+    }
+
+    /**
+     * @param columnIndex reader index of the column
+     * @param op          one of ZoneMapFwdDataFrameCursor.OP_* constants, column being left operand
+     * @param value       constant or bind variable function of INT, LONG, FLOAT or DOUBLE type
+     */
+    public void addPredicate(int columnIndex, int op, Function value) {
+        cursor.addPredicate(columnIndex, op, value);
+        values.add(value);
+    }
+
+    @Override
+    public void close() {
+        freePredicates();
+        Misc.free(base);
+    }
+
+    public void freePredicates() {
+        cursor.freePredicates();
+        values.clear();
+    }
+
+    @Override
+    public DataFrameCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        final DataFrameCursor baseCursor = base.getCursor(executionContext);
+        try {
+            Function.init(values, baseCursor, executionContext);
+        } catch (Throwable e) {
+            baseCursor.close();
+            throw e;
+        }
+        cursor.of(baseCursor);
+        return cursor;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put("{\"name\":\"ZoneMapFwdDataFrameCursorFactory\", \"base\":");
+        base.toSink(sink);
+        sink.put('}');
+    }
+}
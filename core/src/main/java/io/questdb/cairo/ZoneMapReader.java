@@ -0,0 +1,164 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.str.LPSZ;
+
+import java.io.Closeable;
+
+/**
+ * Reads zone map of a column in a partition. Zone map is made of partition wide entry followed by
+ * an entry per block of rows, each entry holds min and max values and null count of the rows it covers.
+ * <p>
+ * Integer columns keep min and max of raw values, null value included, as this is what comparison
+ * functions see. Float and double columns keep min and max of non-NaN values as double bits.
+ * Entry that covers only NaN values has null count equal to its row count.
+ */
+public class ZoneMapReader implements Closeable {
+    public static final int PARTITION_ENTRY = 0;
+    static final int HEADER_OFFSET_ROW_COUNT = 0;
+    static final int HEADER_OFFSET_BLOCK_ROW_COUNT = 8;
+    static final int HEADER_OFFSET_BLOCK_COUNT = 16;
+    static final int HEADER_OFFSET_COLUMN_TYPE = 24;
+    static final int HEADER_SIZE = 32;
+    static final int ENTRY_OFFSET_MIN = 0;
+    static final int ENTRY_OFFSET_MAX = 8;
+    static final int ENTRY_OFFSET_NULL_COUNT = 16;
+    static final int ENTRY_SIZE = 24;
+    private final MemoryMR mem = Vm.getMRInstance();
+    private long rowCount;
+    private long blockRowCount;
+    private long blockCount;
+
+    public static boolean isSupported(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        mem.close();
+        rowCount = 0;
+        blockCount = 0;
+    }
+
+    public long getBlockCount() {
+        return blockCount;
+    }
+
+    public long getBlockRowCount() {
+        return blockRowCount;
+    }
+
+    /**
+     * @param entry {@link #PARTITION_ENTRY} or 1-based block number
+     * @return min value as double, for float and double columns only
+     */
+    public double getMinDouble(long entry) {
+        return Double.longBitsToDouble(getMinLong(entry));
+    }
+
+    public long getMinLong(long entry) {
+        return mem.getLong(HEADER_SIZE + entry * ENTRY_SIZE + ENTRY_OFFSET_MIN);
+    }
+
+    public double getMaxDouble(long entry) {
+        return Double.longBitsToDouble(getMaxLong(entry));
+    }
+
+    public long getMaxLong(long entry) {
+        return mem.getLong(HEADER_SIZE + entry * ENTRY_SIZE + ENTRY_OFFSET_MAX);
+    }
+
+    public long getNullCount(long entry) {
+        return mem.getLong(HEADER_SIZE + entry * ENTRY_SIZE + ENTRY_OFFSET_NULL_COUNT);
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param entry {@link #PARTITION_ENTRY} or 1-based block number
+     * @return number of rows covered by the entry
+     */
+    public long getRowCount(long entry) {
+        if (entry == PARTITION_ENTRY) {
+            return rowCount;
+        }
+        return Math.min(blockRowCount, rowCount - (entry - 1) * blockRowCount);
+    }
+
+    /**
+     * Opens zone map file. Zone map that does not cover exactly given number of rows
+     * or has been written for another column type is stale and is not opened.
+     *
+     * @param ff         files facade
+     * @param name       zone map file name
+     * @param rowCount   number of rows in the partition
+     * @param columnType type of the column
+     * @return true when zone map is open and can be used
+     */
+    public boolean of(FilesFacade ff, LPSZ name, long rowCount, int columnType) {
+        close();
+        if (!ff.exists(name)) {
+            return false;
+        }
+        final long fileSize = ff.length(name);
+        if (fileSize < HEADER_SIZE + ENTRY_SIZE) {
+            return false;
+        }
+        mem.of(ff, name, fileSize, fileSize, MemoryTag.MMAP_TABLE_READER);
+        final long blockRowCount = mem.getLong(HEADER_OFFSET_BLOCK_ROW_COUNT);
+        final long blockCount = mem.getLong(HEADER_OFFSET_BLOCK_COUNT);
+        if (mem.getLong(HEADER_OFFSET_ROW_COUNT) != rowCount
+                || mem.getInt(HEADER_OFFSET_COLUMN_TYPE) != columnType
+                || blockRowCount < 1
+                || blockCount != (rowCount + blockRowCount - 1) / blockRowCount
+                || fileSize != HEADER_SIZE + (blockCount + 1) * ENTRY_SIZE) {
+            mem.close();
+            return false;
+        }
+        this.rowCount = rowCount;
+        this.blockRowCount = blockRowCount;
+        this.blockCount = blockCount;
+        return true;
+    }
+}
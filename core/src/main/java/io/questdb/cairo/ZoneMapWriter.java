@@ -0,0 +1,310 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+import static io.questdb.cairo.ZoneMapReader.*;
+
+/**
+ * Computes zone map of a column from its data file and writes it next to the column.
+ * File is written under temporary name and renamed, so that readers never see partially written zone map.
+ */
+public class ZoneMapWriter implements Closeable {
+    private static final Log LOG = LogFactory.getLog(ZoneMapWriter.class);
+    private final FilesFacade ff;
+    private final long blockRowCount;
+    private final Path other = new Path();
+    private long buf;
+    private long bufSize;
+
+    public ZoneMapWriter(CairoConfiguration configuration) {
+        this.ff = configuration.getFilesFacade();
+        this.blockRowCount = configuration.getZoneMapBlockRowCount();
+    }
+
+    @Override
+    public void close() {
+        if (buf != 0) {
+            Unsafe.free(buf, bufSize, MemoryTag.NATIVE_DEFAULT);
+            buf = 0;
+            bufSize = 0;
+        }
+        Misc.free(other);
+    }
+
+    /**
+     * Writes zone map of the column.
+     *
+     * @param path       partition directory, path is left unchanged
+     * @param columnName column name
+     * @param columnType column type, has to be {@link ZoneMapReader#isSupported(int) supported}
+     * @param rowCount   number of rows in the partition
+     * @param columnTop  number of leading rows column does not have data for
+     */
+    public void write(Path path, CharSequence columnName, int columnType, long rowCount, long columnTop) {
+        assert ZoneMapReader.isSupported(columnType);
+        final int plen = path.length();
+        final long blockCount = (rowCount + blockRowCount - 1) / blockRowCount;
+        final long size = HEADER_SIZE + (blockCount + 1) * ENTRY_SIZE;
+        final int shl = ColumnType.pow2SizeOf(columnType);
+        final long dataSize = (rowCount - columnTop) << shl;
+        long fd = -1;
+        long addr = 0;
+        try {
+            if (dataSize > 0) {
+                fd = TableUtils.openRO(ff, TableUtils.dFile(path, columnName), LOG);
+                addr = TableUtils.mapRO(ff, fd, dataSize, MemoryTag.MMAP_TABLE_WRITER);
+            }
+
+            ensureCapacity(size);
+            Unsafe.getUnsafe().putLong(buf + HEADER_OFFSET_ROW_COUNT, rowCount);
+            Unsafe.getUnsafe().putLong(buf + HEADER_OFFSET_BLOCK_ROW_COUNT, blockRowCount);
+            Unsafe.getUnsafe().putLong(buf + HEADER_OFFSET_BLOCK_COUNT, blockCount);
+            Unsafe.getUnsafe().putInt(buf + HEADER_OFFSET_COLUMN_TYPE, columnType);
+            Unsafe.getUnsafe().putInt(buf + HEADER_OFFSET_COLUMN_TYPE + 4, 0);
+
+            // data address is shifted down by column top, rows below the top are never read from it
+            final long dataAddr = addr - (columnTop << shl);
+            final boolean floating = isFloating(columnType);
+            final long partitionEntry = buf + HEADER_SIZE;
+            initEntry(partitionEntry, floating);
+            for (long block = 0; block < blockCount; block++) {
+                final long entry = partitionEntry + (block + 1) * ENTRY_SIZE;
+                final long lo = block * blockRowCount;
+                final long hi = Math.min(lo + blockRowCount, rowCount);
+                initEntry(entry, floating);
+                if (lo < columnTop) {
+                    updateEntryWithTop(entry, columnType, Math.min(hi, columnTop) - lo);
+                }
+                if (hi > columnTop) {
+                    updateEntry(entry, columnType, dataAddr, Math.max(lo, columnTop), hi);
+                }
+                mergeEntry(partitionEntry, entry, floating);
+            }
+        } finally {
+            if (addr != 0) {
+                ff.munmap(addr, dataSize, MemoryTag.MMAP_TABLE_WRITER);
+            }
+            if (fd != -1) {
+                ff.close(fd);
+            }
+            path.trimTo(plen);
+        }
+
+        try {
+            writeFile(other.of(path).concat(columnName).put(TableUtils.FILE_SUFFIX_ZM).put(".tmp").$(), size);
+            final LPSZ name = TableUtils.zoneMapFile(path, columnName);
+            if (ff.exists(name) && !ff.remove(name)) {
+                throw CairoException.instance(ff.errno()).put("could not remove [file=").put(name).put(']');
+            }
+            if (!ff.rename(other, name)) {
+                throw CairoException.instance(ff.errno()).put("could not rename [from=").put(other).put(", to=").put(name).put(']');
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    private static boolean isFloating(int columnType) {
+        final int tag = ColumnType.tagOf(columnType);
+        return tag == ColumnType.FLOAT || tag == ColumnType.DOUBLE;
+    }
+
+    private static void initEntry(long entry, boolean floating) {
+        if (floating) {
+            Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MIN, Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+            Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MAX, Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+        } else {
+            Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MIN, Long.MAX_VALUE);
+            Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MAX, Long.MIN_VALUE);
+        }
+        Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_NULL_COUNT, 0);
+    }
+
+    private static void mergeEntry(long dst, long src, boolean floating) {
+        if (floating) {
+            putMinMax(
+                    dst,
+                    Double.longBitsToDouble(Unsafe.getUnsafe().getLong(src + ENTRY_OFFSET_MIN)),
+                    Double.longBitsToDouble(Unsafe.getUnsafe().getLong(src + ENTRY_OFFSET_MAX)),
+                    Unsafe.getUnsafe().getLong(src + ENTRY_OFFSET_NULL_COUNT)
+            );
+        } else {
+            putMinMax(
+                    dst,
+                    Unsafe.getUnsafe().getLong(src + ENTRY_OFFSET_MIN),
+                    Unsafe.getUnsafe().getLong(src + ENTRY_OFFSET_MAX),
+                    Unsafe.getUnsafe().getLong(src + ENTRY_OFFSET_NULL_COUNT)
+            );
+        }
+    }
+
+    private static void putMinMax(long entry, long min, long max, long nullCount) {
+        Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MIN, Math.min(min, Unsafe.getUnsafe().getLong(entry + ENTRY_OFFSET_MIN)));
+        Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MAX, Math.max(max, Unsafe.getUnsafe().getLong(entry + ENTRY_OFFSET_MAX)));
+        Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_NULL_COUNT, nullCount + Unsafe.getUnsafe().getLong(entry + ENTRY_OFFSET_NULL_COUNT));
+    }
+
+    private static void putMinMax(long entry, double min, double max, long nullCount) {
+        final double entryMin = Double.longBitsToDouble(Unsafe.getUnsafe().getLong(entry + ENTRY_OFFSET_MIN));
+        final double entryMax = Double.longBitsToDouble(Unsafe.getUnsafe().getLong(entry + ENTRY_OFFSET_MAX));
+        Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MIN, Double.doubleToLongBits(Math.min(min, entryMin)));
+        Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_MAX, Double.doubleToLongBits(Math.max(max, entryMax)));
+        Unsafe.getUnsafe().putLong(entry + ENTRY_OFFSET_NULL_COUNT, nullCount + Unsafe.getUnsafe().getLong(entry + ENTRY_OFFSET_NULL_COUNT));
+    }
+
+    private static void updateEntry(long entry, int columnType, long dataAddr, long lo, long hi) {
+        long nullCount = 0;
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BYTE: {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long p = dataAddr + lo, lim = dataAddr + hi; p < lim; p++) {
+                    final long v = Unsafe.getUnsafe().getByte(p);
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                putMinMax(entry, min, max, 0);
+                break;
+            }
+            case ColumnType.SHORT: {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long p = dataAddr + (lo << 1), lim = dataAddr + (hi << 1); p < lim; p += Short.BYTES) {
+                    final long v = Unsafe.getUnsafe().getShort(p);
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                putMinMax(entry, min, max, 0);
+                break;
+            }
+            case ColumnType.INT: {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long p = dataAddr + (lo << 2), lim = dataAddr + (hi << 2); p < lim; p += Integer.BYTES) {
+                    final int v = Unsafe.getUnsafe().getInt(p);
+                    if (v == Numbers.INT_NaN) {
+                        nullCount++;
+                    }
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                putMinMax(entry, min, max, nullCount);
+                break;
+            }
+            case ColumnType.FLOAT: {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (long p = dataAddr + (lo << 2), lim = dataAddr + (hi << 2); p < lim; p += Float.BYTES) {
+                    final float v = Unsafe.getUnsafe().getFloat(p);
+                    if (v != v) {
+                        nullCount++;
+                    } else {
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+                putMinMax(entry, min, max, nullCount);
+                break;
+            }
+            case ColumnType.DOUBLE: {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (long p = dataAddr + (lo << 3), lim = dataAddr + (hi << 3); p < lim; p += Double.BYTES) {
+                    final double v = Unsafe.getUnsafe().getDouble(p);
+                    if (v != v) {
+                        nullCount++;
+                    } else {
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+                putMinMax(entry, min, max, nullCount);
+                break;
+            }
+            default: {
+                // LONG, DATE and TIMESTAMP
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long p = dataAddr + (lo << 3), lim = dataAddr + (hi << 3); p < lim; p += Long.BYTES) {
+                    final long v = Unsafe.getUnsafe().getLong(p);
+                    if (v == Numbers.LONG_NaN) {
+                        nullCount++;
+                    }
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                putMinMax(entry, min, max, nullCount);
+                break;
+            }
+        }
+    }
+
+    private static void updateEntryWithTop(long entry, int columnType, long count) {
+        // rows below column top read as null, which is zero for byte and short columns
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+                putMinMax(entry, 0L, 0L, 0);
+                break;
+            case ColumnType.INT:
+                putMinMax(entry, Numbers.INT_NaN, Numbers.INT_NaN, count);
+                break;
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                putMinMax(entry, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, count);
+                break;
+            default:
+                putMinMax(entry, Numbers.LONG_NaN, Numbers.LONG_NaN, count);
+                break;
+        }
+    }
+
+    private void ensureCapacity(long size) {
+        if (size > bufSize) {
+            buf = Unsafe.realloc(buf, bufSize, size, MemoryTag.NATIVE_DEFAULT);
+            bufSize = size;
+        }
+    }
+
+    private void writeFile(LPSZ name, long size) {
+        final long fd = TableUtils.openRW(ff, name, LOG);
+        try {
+            if (ff.write(fd, buf, size, 0) != size) {
+                throw CairoException.instance(ff.errno()).put("could not write [file=").put(name).put(']');
+            }
+            ff.truncate(fd, size);
+        } finally {
+            ff.close(fd);
+        }
+    }
+}
@@ -138,12 +138,32 @@ public class CompactMap implements Map {
     private long size;
 
     public CompactMap(int pageSize, @Transient ColumnTypes keyTypes, @Transient ColumnTypes valueTypes, long keyCapacity, double loadFactor, int maxResizes, int maxPages) {
-        this(pageSize, keyTypes, valueTypes, keyCapacity, loadFactor, DEFAULT_HASH, maxResizes, maxPages);
+        this(pageSize, keyTypes, valueTypes, keyCapacity, loadFactor, DEFAULT_HASH, maxResizes, maxPages, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    public CompactMap(int pageSize, @Transient ColumnTypes keyTypes, @Transient ColumnTypes valueTypes, long keyCapacity, double loadFactor, int maxResizes, int maxPages, FilesFacade ff, CharSequence spillRoot, long spillMemoryBudget) {
+        this(pageSize, keyTypes, valueTypes, keyCapacity, loadFactor, DEFAULT_HASH, maxResizes, maxPages, ff, spillRoot, spillMemoryBudget);
     }
 
     CompactMap(int pageSize, @Transient ColumnTypes keyTypes, @Transient ColumnTypes valueTypes, long keyCapacity, double loadFactor, HashFunction hashFunction, int maxResizes, int maxPages) {
-        this.entries = Vm.getARWInstance(pageSize, maxPages, MemoryTag.NATIVE_COMPACT_MAP);
-        this.entrySlots = Vm.getARWInstance(pageSize, maxPages, MemoryTag.NATIVE_COMPACT_MAP);
+        this(pageSize, keyTypes, valueTypes, keyCapacity, loadFactor, hashFunction, maxResizes, maxPages, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    CompactMap(
+            int pageSize,
+            @Transient ColumnTypes keyTypes,
+            @Transient ColumnTypes valueTypes,
+            long keyCapacity,
+            double loadFactor,
+            HashFunction hashFunction,
+            int maxResizes,
+            int maxPages,
+            FilesFacade ff,
+            CharSequence spillRoot,
+            long spillMemoryBudget
+    ) {
+        this.entries = Vm.getSpillARWInstance(ff, spillRoot, spillMemoryBudget, pageSize, maxPages, MemoryTag.NATIVE_COMPACT_MAP);
+        this.entrySlots = Vm.getSpillARWInstance(ff, spillRoot, spillMemoryBudget, pageSize, maxPages, MemoryTag.NATIVE_COMPACT_MAP);
         try {
             this.loadFactor = loadFactor;
             this.columnOffsets = new long[keyTypes.getColumnCount() + valueTypes.getColumnCount()];
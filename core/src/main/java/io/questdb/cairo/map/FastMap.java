@@ -27,6 +27,7 @@ package io.questdb.cairo.map;
 import io.questdb.cairo.*;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.vm.SpillAllocator;
 import io.questdb.griffin.engine.LimitOverflowException;
 import io.questdb.std.*;
 import org.jetbrains.annotations.NotNull;
@@ -45,6 +46,7 @@ public class FastMap implements Map {
     private final FastMapRecord record;
     private final int valueColumnCount;
     private final HashFunction hashFunction;
+    private final SpillAllocator allocator;
     private long capacity;
     private final int keyBlockOffset;
     private final int keyDataOffset;
@@ -78,6 +80,19 @@ public class FastMap implements Map {
         this(pageSize, keyTypes, valueTypes, keyCapacity, loadFactor, DEFAULT_HASH, maxResizes);
     }
 
+    public FastMap(int pageSize,
+                   @Transient @NotNull ColumnTypes keyTypes,
+                   @Transient @Nullable ColumnTypes valueTypes,
+                   int keyCapacity,
+                   double loadFactor,
+                   int maxResizes,
+                   FilesFacade ff,
+                   CharSequence spillRoot,
+                   long spillMemoryBudget
+    ) {
+        this(pageSize, keyTypes, valueTypes, keyCapacity, loadFactor, DEFAULT_HASH, maxResizes, ff, spillRoot, spillMemoryBudget);
+    }
+
     FastMap(int pageSize,
             @Transient ColumnTypes keyTypes,
             @Transient ColumnTypes valueTypes,
@@ -86,12 +101,28 @@ public class FastMap implements Map {
             HashFunction hashFunction,
             int maxResizes
 
+    ) {
+        this(pageSize, keyTypes, valueTypes, keyCapacity, loadFactor, hashFunction, maxResizes, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    FastMap(int pageSize,
+            @Transient ColumnTypes keyTypes,
+            @Transient ColumnTypes valueTypes,
+            int keyCapacity,
+            double loadFactor,
+            HashFunction hashFunction,
+            int maxResizes,
+            FilesFacade ff,
+            CharSequence spillRoot,
+            long spillMemoryBudget
     ) {
         assert pageSize > 3;
         assert loadFactor > 0 && loadFactor < 1d;
 
         this.loadFactor = loadFactor;
-        this.kStart = kPos = Unsafe.malloc(this.capacity = pageSize, MemoryTag.NATIVE_FAST_MAP);
+        // key memory is a single region, it moves to disk as a whole once it outgrows the budget
+        this.allocator = new SpillAllocator(ff, spillRoot, spillMemoryBudget, MemoryTag.NATIVE_FAST_MAP);
+        this.kStart = kPos = allocator.malloc(this.capacity = pageSize);
         this.kLimit = kStart + pageSize;
 
         this.keyCapacity = (int) (keyCapacity / loadFactor);
@@ -217,9 +248,10 @@ public class FastMap implements Map {
     public final void close() {
         offsets = Misc.free(offsets);
         if (kStart != 0) {
-            Unsafe.free(kStart, capacity, MemoryTag.NATIVE_FAST_MAP);
+            allocator.free(kStart, capacity);
             kStart = 0;
         }
+        Misc.free(allocator);
     }
 
     @Override
@@ -253,7 +285,7 @@ public class FastMap implements Map {
     }
 
     @Override
-    public MapKey withKey() {
+    public Key withKey() {
         return key.init();
     }
 
@@ -324,7 +356,7 @@ public class FastMap implements Map {
             if (kCapacity < target) {
                 kCapacity = Numbers.ceilPow2(target);
             }
-            long kAddress = Unsafe.realloc(this.kStart, this.capacity, kCapacity, MemoryTag.NATIVE_FAST_MAP);
+            long kAddress = allocator.realloc(this.kStart, this.capacity, kCapacity);
 
             this.capacity = kCapacity;
             long d = kAddress - this.kStart;
@@ -450,6 +482,17 @@ public class FastMap implements Map {
             sink.copy(record, this);
         }
 
+        /**
+         * Hash of the key, as computed by the hash function of this map. Key must be fully
+         * written, after which it can still be used to create or find value.
+         *
+         * @return hash of key bytes
+         */
+        public int hash() {
+            commit();
+            return hashFunction.hash(startAddress + keyDataOffset, len - keyDataOffset);
+        }
+
         public Key init() {
             startAddress = kPos;
             appendAddress = kPos + keyDataOffset;
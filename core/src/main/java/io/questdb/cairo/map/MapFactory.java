@@ -46,7 +46,11 @@ public class MapFactory {
                     valueTypes,
                     configuration.getSqlMapKeyCapacity(),
                     configuration.getSqlFastMapLoadFactor(),
-                    configuration.getSqlMapMaxResizes());
+                    configuration.getSqlMapMaxResizes(),
+                    configuration.getFilesFacade(),
+                    configuration.getSqlSpillRoot(),
+                    configuration.getSqlSpillMemoryBudget()
+            );
         }
 
         if (Chars.equalsLowerCaseAscii(mapType, "compact")) {
@@ -57,7 +61,10 @@ public class MapFactory {
                     configuration.getSqlMapKeyCapacity(),
                     configuration.getSqlCompactMapLoadFactor(),
                     configuration.getSqlMapMaxResizes(),
-                    configuration.getSqlMapMaxPages()
+                    configuration.getSqlMapMaxPages(),
+                    configuration.getFilesFacade(),
+                    configuration.getSqlSpillRoot(),
+                    configuration.getSqlSpillMemoryBudget()
             );
         }
         throw CairoException.instance(0).put("unknown map type: ").put(mapType);
@@ -71,9 +78,14 @@ public class MapFactory {
             return new FastMap(
                     configuration.getSqlMapPageSize(),
                     keyTypes,
+                    null,
                     configuration.getSqlMapKeyCapacity(),
                     configuration.getSqlFastMapLoadFactor(),
-                    configuration.getSqlMapMaxResizes());
+                    configuration.getSqlMapMaxResizes(),
+                    configuration.getFilesFacade(),
+                    configuration.getSqlSpillRoot(),
+                    configuration.getSqlSpillMemoryBudget()
+            );
         }
 
         if (Chars.equalsLowerCaseAscii(mapType, "compact")) {
@@ -84,7 +96,10 @@ public class MapFactory {
                     configuration.getSqlMapKeyCapacity(),
                     configuration.getSqlCompactMapLoadFactor(),
                     configuration.getSqlMapMaxResizes(),
-                    configuration.getSqlMapMaxPages()
+                    configuration.getSqlMapMaxPages(),
+                    configuration.getFilesFacade(),
+                    configuration.getSqlSpillRoot(),
+                    configuration.getSqlSpillMemoryBudget()
             );
         }
         throw CairoException.instance(0).put("unknown map type: ").put(mapType);
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.pool;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultLifecycleManager;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.pool.ex.PoolClosedException;
+import io.questdb.cairo.wal.WalWriter;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.ConcurrentHashMap;
+import io.questdb.std.LongList;
+import io.questdb.std.ObjList;
+
+/**
+ * Keeps released {@link WalWriter} instances open, so that connections writing to the same table
+ * over and over do not allocate a new WAL directory every time. Unlike {@link WriterPool} any number
+ * of writers can be handed out for the same table, this pool only holds the idle ones. Idle writers
+ * are handed out last-in-first-out, a thread that releases a writer and asks for it again gets the
+ * same WAL back. Writers created against an older table structure are closed instead of reused.
+ * <p>
+ * Writers are returned to the pool via the usual writer.close() call, uncommitted rows are rolled
+ * back at that point. Idle writers keep their current segment open until they expire.
+ */
+public class WalWriterPool extends AbstractPool {
+    private static final Log LOG = LogFactory.getLog(WalWriterPool.class);
+    private final ConcurrentHashMap<Entry> entries = new ConcurrentHashMap<>();
+    private final CairoEngine engine;
+
+    public WalWriterPool(CairoConfiguration configuration, CairoEngine engine) {
+        super(configuration, configuration.getInactiveWriterTTL());
+        this.engine = engine;
+    }
+
+    public WalWriter get(TableReader reader) {
+        checkClosed();
+        final String tableName = reader.getTableName();
+        Entry e = entries.get(tableName);
+        if (e == null) {
+            e = new Entry();
+            final Entry other = entries.putIfAbsent(tableName, e);
+            if (other != null) {
+                e = other;
+            }
+        }
+
+        synchronized (e) {
+            for (int i = e.writers.size() - 1; i > -1; i--) {
+                final WalWriter writer = e.writers.getQuick(i);
+                e.writers.remove(i);
+                e.releaseTimes.removeIndex(i);
+                if (writer.getStructureVersion() == reader.getVersion()) {
+                    return writer;
+                }
+                // table structure changed since the writer was created
+                closeWriter(writer);
+            }
+        }
+
+        final WalWriter writer = new WalWriter(getConfiguration(), engine, tableName, reader.getMetadata(), reader.getVersion());
+        final Entry entry = e;
+        writer.setLifecycleManager(() -> !returnToPool(entry, writer));
+        return writer;
+    }
+
+    /**
+     * Closes idle writers of the table, called before the table is locked for drop or rename.
+     *
+     * @param tableName name of the table
+     */
+    public void release(CharSequence tableName) {
+        final Entry e = entries.get(tableName);
+        if (e != null) {
+            releaseWriters(e, Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    protected boolean releaseAll(long deadline) {
+        boolean removed = false;
+        for (Entry e : entries.values()) {
+            removed |= releaseWriters(e, deadline);
+        }
+        return removed;
+    }
+
+    private void checkClosed() {
+        if (isClosed()) {
+            LOG.info().$("is closed").$();
+            throw PoolClosedException.INSTANCE;
+        }
+    }
+
+    private static void closeWriter(WalWriter writer) {
+        writer.setLifecycleManager(DefaultLifecycleManager.INSTANCE);
+        writer.close();
+    }
+
+    private boolean releaseWriters(Entry e, long deadline) {
+        boolean removed = false;
+        synchronized (e) {
+            for (int i = e.writers.size() - 1; i > -1; i--) {
+                if (deadline > e.releaseTimes.getQuick(i)) {
+                    final WalWriter writer = e.writers.getQuick(i);
+                    e.writers.remove(i);
+                    e.releaseTimes.removeIndex(i);
+                    LOG.info().$("closed [table=`").utf8(writer.getTableName()).$("`, walId=").$(writer.getWalId()).$(']').$();
+                    closeWriter(writer);
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private boolean returnToPool(Entry e, WalWriter writer) {
+        if (isClosed()) {
+            return false;
+        }
+        synchronized (e) {
+            if (isClosed()) {
+                // pool was closed while we were waiting, idle writers are already gone
+                return false;
+            }
+            e.writers.add(writer);
+            e.releaseTimes.add(clock.getTicks());
+        }
+        return true;
+    }
+
+    private static class Entry {
+        private final ObjList<WalWriter> writers = new ObjList<>();
+        private final LongList releaseTimes = new LongList();
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Size-capped cache of inflated blocks of compressed column files. Cache is shared by compressed
+ * columns of one table reader and, as the reader, is not thread-safe. When resident size goes over
+ * capacity the oldest blocks are freed, except for blocks pinned by their columns: the two most recently
+ * read blocks of each column and whole columns handed out as contiguous pages. Pinned blocks are freed
+ * when the cache is cleared, which reader does when it is returned to the pool.
+ */
+public class DecompressedPageCache implements Closeable, Mutable {
+    private final long capacity;
+    private final ObjList<MemoryCZRImpl> owners = new ObjList<>();
+    private final IntList blocks = new IntList();
+    private final LongList sizes = new LongList();
+    private long residentSize;
+    private long z_streamp;
+
+    public DecompressedPageCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0, n = owners.size(); i < n; i++) {
+            owners.getQuick(i).freeBlock(blocks.getQuick(i), sizes.getQuick(i));
+        }
+        owners.clear();
+        blocks.clear();
+        sizes.clear();
+        residentSize = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (z_streamp != 0) {
+            Zip.inflateEnd(z_streamp);
+            z_streamp = 0;
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getResidentSize() {
+        return residentSize;
+    }
+
+    private void evict() {
+        if (residentSize <= capacity) {
+            return;
+        }
+        int j = 0;
+        for (int i = 0, n = owners.size(); i < n; i++) {
+            final MemoryCZRImpl owner = owners.getQuick(i);
+            final int block = blocks.getQuick(i);
+            final long size = sizes.getQuick(i);
+            if (residentSize > capacity && !owner.isPinned(block)) {
+                owner.freeBlock(block, size);
+                residentSize -= size;
+            } else {
+                if (i != j) {
+                    owners.setQuick(j, owner);
+                    blocks.setQuick(j, block);
+                    sizes.setQuick(j, size);
+                }
+                j++;
+            }
+        }
+        owners.setPos(j);
+        blocks.setPos(j);
+        sizes.setPos(j);
+    }
+
+    void add(MemoryCZRImpl owner, int block, long size) {
+        owners.add(owner);
+        blocks.add(block);
+        sizes.add(size);
+        residentSize += size;
+        evict();
+    }
+
+    long getInflater() {
+        if (z_streamp == 0) {
+            final long z = Zip.inflateInit(true);
+            if (z < 0) {
+                throw CairoException.instance(0).put("could not initialise inflate");
+            }
+            z_streamp = z;
+        }
+        return z_streamp;
+    }
+
+    void remove(MemoryCZRImpl owner) {
+        int j = 0;
+        for (int i = 0, n = owners.size(); i < n; i++) {
+            final MemoryCZRImpl o = owners.getQuick(i);
+            final int block = blocks.getQuick(i);
+            final long size = sizes.getQuick(i);
+            if (o == owner) {
+                owner.freeBlock(block, size);
+                residentSize -= size;
+            } else {
+                if (i != j) {
+                    owners.setQuick(j, o);
+                    blocks.setQuick(j, block);
+                    sizes.setQuick(j, size);
+                }
+                j++;
+            }
+        }
+        owners.setPos(j);
+        blocks.setPos(j);
+        sizes.setPos(j);
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.vm;
+
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Misc;
+
+/**
+ * A version of {@link MemoryCARWImpl} that moves its contents to a memory-mapped temporary file once
+ * the region outgrows the memory budget. The region stays contiguous, so addresses handed out before
+ * the move become invalid in the same way they do after a regular realloc. Page limit does not apply,
+ * spilled memory is bounded by the disk. The temporary file is removed when memory is cleared or closed.
+ */
+public class MemoryCARWSpillImpl extends MemoryCARWImpl {
+    private final SpillAllocator allocator;
+
+    public MemoryCARWSpillImpl(FilesFacade ff, CharSequence spillRoot, long memoryBudget, long pageSize, int memoryTag) {
+        super(pageSize, Integer.MAX_VALUE, memoryTag);
+        this.allocator = new SpillAllocator(ff, spillRoot, memoryBudget, memoryTag);
+    }
+
+    @Override
+    public void clear() {
+        if (pageAddress != 0) {
+            final long address = pageAddress;
+            final long size = lim - pageAddress;
+            handleMemoryReleased();
+            allocator.free(address, size);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        Misc.free(allocator);
+    }
+
+    public boolean isSpilled() {
+        return allocator.isSpilled();
+    }
+
+    @Override
+    protected long reallocateMemory(long currentBaseAddress, long currentSize, long newSize) {
+        return allocator.realloc(currentBaseAddress, currentSize, newSize);
+    }
+}
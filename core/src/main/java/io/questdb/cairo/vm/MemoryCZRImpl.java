@@ -0,0 +1,351 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.PartitionCompressor;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.vm.api.MemoryCMR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.LPSZ;
+
+/**
+ * Read-only memory backed by compressed column file. Opening the memory maps compressed file and
+ * reads its block table only. Blocks are inflated on first access into native memory, which is
+ * owned by {@link DecompressedPageCache} shared by columns of the reader. The cache frees blocks
+ * once its capacity is exceeded and the blocks are inflated again when they are read next time.
+ * <p>
+ * Values returned by reference, such as strings and binaries, point into inflated block. They remain
+ * valid as long as block is pinned, which is the case for the two most recently read blocks of the column.
+ * <p>
+ * Page frames need the column as a single page. {@link #getPageAddress(int)} inflates the whole column,
+ * and the column stays resident until the cache is cleared or the memory is closed.
+ */
+public class MemoryCZRImpl extends AbstractMemoryCR implements MemoryCMR {
+    private static final Log LOG = LogFactory.getLog(MemoryCZRImpl.class);
+    private static final int WHOLE_COLUMN = -1;
+    private final LongList blockAddresses = new LongList();
+    private final DecompressedPageCache cache;
+    private long blockAddress;
+    private int blockCount;
+    private long blockHi;
+    private long blockLo;
+    private long blockTable;
+    private int codec;
+    private long fileAddress;
+    private long fileSize;
+    private int lastBlock = -1;
+    private String name;
+    private boolean open;
+    private int prevBlock = -1;
+
+    public MemoryCZRImpl(DecompressedPageCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public long addressOf(long offset) {
+        assert offset <= size : "offset=" + offset + ", size=" + size;
+        if (pageAddress != 0) {
+            return pageAddress + offset;
+        }
+        if (offset >= blockLo && offset < blockHi) {
+            return blockAddress + offset - blockLo;
+        }
+        return blockCount > 0 ? addressOf0(offset) : 0;
+    }
+
+    @Override
+    public void close() {
+        cache.remove(this);
+        if (fileAddress != 0) {
+            ff.munmap(fileAddress, fileSize, MemoryTag.MMAP_TABLE_READER);
+            fileAddress = 0;
+        }
+        fileSize = 0;
+        blockAddresses.clear();
+        blockCount = 0;
+        blockTable = 0;
+        resetBlock();
+        lastBlock = -1;
+        prevBlock = -1;
+        size = 0;
+        grownLength = 0;
+        open = false;
+    }
+
+    @Override
+    public void extend(long newSize) {
+        if (newSize > size) {
+            throw CairoException.instance(0).put("compressed column cannot grow [size=").put(size).put(", newSize=").put(newSize).put(']');
+        }
+        grownLength = Math.max(newSize, grownLength);
+    }
+
+    @Override
+    public byte getByte(long offset) {
+        return Unsafe.getUnsafe().getByte(addressOf(offset));
+    }
+
+    @Override
+    public char getChar(long offset) {
+        return Unsafe.getUnsafe().getChar(addressOf(offset));
+    }
+
+    @Override
+    public double getDouble(long offset) {
+        return Unsafe.getUnsafe().getDouble(addressOf(offset));
+    }
+
+    @Override
+    public float getFloat(long offset) {
+        return Unsafe.getUnsafe().getFloat(addressOf(offset));
+    }
+
+    @Override
+    public int getInt(long offset) {
+        return Unsafe.getUnsafe().getInt(addressOf(offset));
+    }
+
+    @Override
+    public long getLong(long offset) {
+        return Unsafe.getUnsafe().getLong(addressOf(offset));
+    }
+
+    @Override
+    public void getLong256(long offset, CharSink sink) {
+        // offset past the value may belong to the next block, value itself never spans blocks
+        final long addr = addressOf(offset);
+        Numbers.appendLong256(
+                Unsafe.getUnsafe().getLong(addr),
+                Unsafe.getUnsafe().getLong(addr + Long.BYTES),
+                Unsafe.getUnsafe().getLong(addr + Long.BYTES * 2),
+                Unsafe.getUnsafe().getLong(addr + Long.BYTES * 3),
+                sink
+        );
+    }
+
+    @Override
+    public void getLong256(long offset, Long256Acceptor sink) {
+        final long addr = addressOf(offset);
+        sink.setAll(
+                Unsafe.getUnsafe().getLong(addr),
+                Unsafe.getUnsafe().getLong(addr + Long.BYTES),
+                Unsafe.getUnsafe().getLong(addr + Long.BYTES * 2),
+                Unsafe.getUnsafe().getLong(addr + Long.BYTES * 3)
+        );
+    }
+
+    @Override
+    public long getPageAddress(int pageIndex) {
+        if (pageAddress == 0 && size > 0) {
+            inflateColumn();
+        }
+        return pageAddress;
+    }
+
+    @Override
+    public int getPageCount() {
+        return size > 0 ? 1 : 0;
+    }
+
+    @Override
+    public short getShort(long offset) {
+        return Unsafe.getUnsafe().getShort(addressOf(offset));
+    }
+
+    @Override
+    public boolean isDeleted() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void of(FilesFacade ff, LPSZ name, long extendSegmentSize, long size, int memoryTag) {
+        close();
+        this.ff = ff;
+        if (size > 0) {
+            final long fd = TableUtils.openRO(ff, name, LOG);
+            try {
+                fileSize = ff.length(fd);
+                if (fileSize < PartitionCompressor.HEADER_SIZE) {
+                    throw CairoException.instance(0).put("compressed column file is too small [file=").put(name).put(", size=").put(fileSize).put(']');
+                }
+                fileAddress = TableUtils.mapRO(ff, fd, fileSize, MemoryTag.MMAP_TABLE_READER);
+                final long rawSize = Unsafe.getUnsafe().getLong(fileAddress);
+                if (rawSize < size) {
+                    throw CairoException.instance(0).put("compressed column file is too short [file=").put(name)
+                            .put(", expected=").put(size)
+                            .put(", actual=").put(rawSize)
+                            .put(']');
+                }
+                codec = Unsafe.getUnsafe().getInt(fileAddress + 8);
+                blockCount = Unsafe.getUnsafe().getInt(fileAddress + 12);
+                blockTable = PartitionCompressor.blockTableAddress(fileAddress, fileSize, name);
+                blockAddresses.setAll(blockCount, 0);
+                this.size = size;
+                this.name = Chars.toString(name);
+            } catch (Throwable e) {
+                close();
+                throw e;
+            } finally {
+                ff.close(fd);
+            }
+        }
+        this.open = true;
+        LOG.debug().$("open ").$(name).$(" [size=").$(size).$(", blocks=").$(blockCount).$(']').$();
+    }
+
+    private long addressOf0(long offset) {
+        // the last block that starts at or before offset, end of column belongs to the last block
+        int lo = 0;
+        int hi = blockCount - 1;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (rawOffset(mid) <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        loadBlock(lo);
+        return blockAddress + offset - blockLo;
+    }
+
+    private long fileOffset(int block) {
+        return Unsafe.getUnsafe().getLong(blockTable + (long) block * PartitionCompressor.BLOCK_ENTRY_SIZE + Long.BYTES);
+    }
+
+    private void inflate(int block, long dst) {
+        final long fileLo = fileOffset(block);
+        PartitionCompressor.inflateBlock(
+                cache.getInflater(),
+                fileAddress + fileLo,
+                fileOffset(block + 1) - fileLo,
+                dst,
+                rawOffset(block + 1) - rawOffset(block),
+                codec,
+                name
+        );
+    }
+
+    private void inflateColumn() {
+        final long address = Unsafe.malloc(size, MemoryTag.NATIVE_DECOMPRESSED_COLUMN);
+        try {
+            for (int i = 0; i < blockCount; i++) {
+                final long rawLo = rawOffset(i);
+                if (rawLo >= size) {
+                    break;
+                }
+                final long len = Math.min(rawOffset(i + 1), size) - rawLo;
+                final long blockAddress = blockAddresses.getQuick(i);
+                if (blockAddress != 0) {
+                    Vect.memcpy(address + rawLo, blockAddress, len);
+                } else if (rawOffset(i + 1) <= size) {
+                    inflate(i, address + rawLo);
+                } else {
+                    // raw file may be longer than the memory, the last block is inflated into a temporary buffer
+                    loadBlock(i);
+                    Vect.memcpy(address + rawLo, this.blockAddress, len);
+                }
+            }
+        } catch (Throwable e) {
+            Unsafe.free(address, size, MemoryTag.NATIVE_DECOMPRESSED_COLUMN);
+            throw e;
+        }
+        pageAddress = address;
+        cache.add(this, WHOLE_COLUMN, size);
+        LOG.debug().$("inflated column ").$(name).$(" [size=").$(size).$(']').$();
+    }
+
+    private void loadBlock(int block) {
+        long address = blockAddresses.getQuick(block);
+        final long rawLo = rawOffset(block);
+        final long rawHi = rawOffset(block + 1);
+        if (address == 0) {
+            final long len = rawHi - rawLo;
+            address = Unsafe.malloc(len, MemoryTag.NATIVE_DECOMPRESSED_COLUMN);
+            try {
+                inflate(block, address);
+            } catch (Throwable e) {
+                Unsafe.free(address, len, MemoryTag.NATIVE_DECOMPRESSED_COLUMN);
+                throw e;
+            }
+            blockAddresses.setQuick(block, address);
+            pin(block, address, rawLo, rawHi);
+            cache.add(this, block, len);
+        } else {
+            pin(block, address, rawLo, rawHi);
+        }
+    }
+
+    private void pin(int block, long address, long rawLo, long rawHi) {
+        if (block != lastBlock) {
+            prevBlock = lastBlock;
+            lastBlock = block;
+        }
+        blockAddress = address;
+        blockLo = rawLo;
+        blockHi = rawHi;
+    }
+
+    private long rawOffset(int block) {
+        return Unsafe.getUnsafe().getLong(blockTable + (long) block * PartitionCompressor.BLOCK_ENTRY_SIZE);
+    }
+
+    private void resetBlock() {
+        blockAddress = 0;
+        blockLo = 0;
+        blockHi = 0;
+    }
+
+    void freeBlock(int block, long len) {
+        if (block == WHOLE_COLUMN) {
+            Unsafe.free(pageAddress, len, MemoryTag.NATIVE_DECOMPRESSED_COLUMN);
+            pageAddress = 0;
+            return;
+        }
+        Unsafe.free(blockAddresses.getQuick(block), len, MemoryTag.NATIVE_DECOMPRESSED_COLUMN);
+        blockAddresses.setQuick(block, 0);
+        if (block == lastBlock) {
+            lastBlock = -1;
+            resetBlock();
+        }
+        if (block == prevBlock) {
+            prevBlock = -1;
+        }
+    }
+
+    boolean isPinned(int block) {
+        return block == WHOLE_COLUMN || block == lastBlock || block == prevBlock;
+    }
+}
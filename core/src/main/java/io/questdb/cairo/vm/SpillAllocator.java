@@ -0,0 +1,128 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.TableUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates a single contiguous region on the native heap until it grows past the memory budget. From then on the
+ * region lives in a memory-mapped temporary file under the spill root and grows via mremap. Freeing a spilled region
+ * removes the file, the next allocation starts on the heap again. Without a spill root this is a plain
+ * {@link Unsafe} allocator.
+ */
+public class SpillAllocator implements Closeable {
+    private static final Log LOG = LogFactory.getLog(SpillAllocator.class);
+    private static final AtomicLong FILE_ID = new AtomicLong();
+    private final FilesFacade ff;
+    private final CharSequence spillRoot;
+    private final long memoryBudget;
+    private final int memoryTag;
+    private Path path;
+    private long spillFd = -1;
+
+    public SpillAllocator(FilesFacade ff, CharSequence spillRoot, long memoryBudget, int memoryTag) {
+        this.ff = ff;
+        this.spillRoot = spillRoot;
+        this.memoryBudget = memoryBudget;
+        this.memoryTag = memoryTag;
+    }
+
+    public static Path nextSpillFile(Path path, CharSequence spillRoot) {
+        return path.of(spillRoot).concat("spill-").put(FILE_ID.incrementAndGet()).put('-').put(Os.currentTimeMicros()).put(".tmp").$();
+    }
+
+    @Override
+    public void close() {
+        path = Misc.free(path);
+    }
+
+    public void free(long address, long size) {
+        if (spillFd == -1) {
+            Unsafe.free(address, size, memoryTag);
+            return;
+        }
+
+        try {
+            ff.munmap(address, size, MemoryTag.MMAP_DEFAULT);
+        } finally {
+            ff.close(spillFd);
+            spillFd = -1;
+            if (!ff.remove(path)) {
+                LOG.error().$("could not remove spill file [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+        }
+    }
+
+    public boolean isSpilled() {
+        return spillFd != -1;
+    }
+
+    public long malloc(long size) {
+        return realloc(0, 0, size);
+    }
+
+    public long realloc(long address, long currentSize, long newSize) {
+        if (spillFd != -1) {
+            TableUtils.allocateDiskSpace(ff, spillFd, newSize);
+            return TableUtils.mremap(ff, spillFd, address, currentSize, newSize, Files.MAP_RW, MemoryTag.MMAP_DEFAULT);
+        }
+
+        if (spillRoot == null || newSize <= memoryBudget) {
+            if (address != 0) {
+                return Unsafe.realloc(address, currentSize, newSize, memoryTag);
+            }
+            return Unsafe.malloc(newSize, memoryTag);
+        }
+
+        if (path == null) {
+            path = new Path();
+        }
+        nextSpillFile(path, spillRoot);
+        final long fd = TableUtils.openRW(ff, path, LOG);
+        final long spillAddress;
+        try {
+            spillAddress = TableUtils.mapRW(ff, fd, newSize, MemoryTag.MMAP_DEFAULT);
+        } catch (Throwable e) {
+            ff.close(fd);
+            ff.remove(path);
+            throw e;
+        }
+        spillFd = fd;
+        LOG.info().$("spilling to disk [path=").$(path).$(", size=").$(newSize).$(", budget=").$(memoryBudget).$(']').$();
+        if (address != 0) {
+            Vect.memcpy(spillAddress, address, Math.min(currentSize, newSize));
+            Unsafe.free(address, currentSize, memoryTag);
+        }
+        return spillAddress;
+    }
+}
@@ -68,6 +68,13 @@ public class Vm {
         return new MemoryCARWImpl(pageSize, maxPages, memoryTag);
     }
 
+    public static MemoryARW getSpillARWInstance(FilesFacade ff, CharSequence spillRoot, long memoryBudget, long pageSize, int maxPages, int memoryTag) {
+        if (spillRoot == null) {
+            return getARWInstance(pageSize, maxPages, memoryTag);
+        }
+        return new MemoryCARWSpillImpl(ff, spillRoot, memoryBudget, pageSize, memoryTag);
+    }
+
     public static MemoryCARW getCARWInstance(long pageSize, int maxPages, int memoryTag) {
         return new MemoryCARWImpl(pageSize, maxPages, memoryTag);
     }
@@ -0,0 +1,660 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.wal;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCMARW;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.SynchronizedJob;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+import static io.questdb.cairo.TableUtils.WAL_DIR_NAME;
+import static io.questdb.cairo.wal.WalWriter.*;
+
+/**
+ * Merges committed {@link WalWriter} segments into the table. Rows from all WAL directories of
+ * a table are replayed through a single {@link TableWriter} transaction, rows that are out of order
+ * go through the usual O3 commit.
+ * <p>
+ * Applied offsets of segments are kept in "table/wal/_applied.0" and "table/wal/_applied.1". Before
+ * the table commit the job writes and syncs the next record into the slot that is not in use, the
+ * table commit then stores sequence of that record in "_txn". The record is valid only when its
+ * sequence matches the one in "_txn", a crash at any point leaves the table and the applied offsets
+ * in agreement and rows are never applied twice. Segments are removed only once a record that marks
+ * them as applied is committed. A closed WAL directory is renamed to "_closed" marker first and
+ * removed once the committed record no longer lists it, its id cannot be claimed by another writer
+ * before then.
+ * <p>
+ * Tables that failed to apply are queued again. Errors with errno, such as full disk, are retried
+ * as they are. After any other error the table is applied one segment per transaction to find
+ * the segment at fault. A segment that keeps failing is copied to "table/wal/quarantine/" as
+ * "walId.segmentId.appliedOffset" and skipped, so that rows of other segments are not held back.
+ * Segments logged against a column that has since changed type fail the same way.
+ */
+public class WalApplyJob extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(WalApplyJob.class);
+    private static final String LOCK_REASON = "walApply";
+    static final String APPLIED_FILE_NAME = "_applied";
+    static final String CLOSED_FILE_NAME = "_closed";
+    static final String QUARANTINE_DIR_NAME = "quarantine";
+    static final int MAX_APPLY_ATTEMPTS = 3;
+    private final CairoEngine engine;
+    private final FilesFacade ff;
+    private final CharSequence root;
+    private final Path path = new Path();
+    private final Path other = new Path();
+    private final StringSink nameSink = new StringSink();
+    private final MemoryCMARW segmentMem = Vm.getCMARWInstance();
+    private final MemoryCMARW recordMem = Vm.getCMARWInstance();
+    private final ObjList<CharSequence> tableNames = new ObjList<>();
+    private final IntList walIds = new IntList();
+    // segment column index -> table column index, -1 for columns that no longer exist
+    private final IntList columnIndexes = new IntList();
+    private final IntList columnTypes = new IntList();
+    // walId, segmentId, committed offset, status
+    private final LongList progress = new LongList();
+    // walId, segmentId, applied offset
+    private final LongList appliedOffsets = new LongList();
+    // WAL directories to remove once the record no longer lists them
+    private final IntList closedWalIds = new IntList();
+    // table name -> number of consecutive failed attempts to apply it
+    private final CharSequenceIntHashMap failedAttempts = new CharSequenceIntHashMap();
+    private int minSegmentId;
+    private long pendingRowCount;
+    private long appliedRowCount;
+    private long walSeq;
+    // applied offsets differ from the committed record other than by pending rows
+    private boolean recordChanged;
+    // segment being applied, -1 when failure cannot be attributed to a segment
+    private int failedWalId;
+    private int failedSegmentId;
+
+    public WalApplyJob(CairoEngine engine) {
+        this.engine = engine;
+        this.ff = engine.getConfiguration().getFilesFacade();
+        this.root = engine.getConfiguration().getRoot();
+        // pick up segments left behind by previous run
+        ff.iterateDir(path.of(root).$(), (pUtf8NameZ, type) -> {
+            if (Files.isDir(pUtf8NameZ, type, nameSink)) {
+                if (ff.exists(path.of(root).concat(nameSink).concat(WAL_DIR_NAME).$())) {
+                    engine.notifyWalCommit(nameSink);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        Misc.free(path);
+        Misc.free(other);
+        segmentMem.close(false);
+        recordMem.close(false);
+    }
+
+    @Override
+    protected boolean runSerially() {
+        tableNames.clear();
+        engine.drainWalPendingTables(tableNames);
+        boolean useful = false;
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            useful |= applyTable(tableNames.getQuick(i));
+        }
+        return useful;
+    }
+
+    private long applySegment(TableWriter writer, long lo, long hi) {
+        mapColumns(writer);
+        long rowCount = 0;
+        long offset = lo;
+        while (offset < hi) {
+            final long rowHi = offset + segmentMem.getInt(offset);
+            final TableWriter.Row row = writer.newRow(segmentMem.getLong(offset + Integer.BYTES));
+            try {
+                long p = offset + ROW_HEADER_SIZE;
+                while (p < rowHi) {
+                    final int columnIndex = segmentMem.getInt(p);
+                    p = putValue(row, columnIndexes.getQuick(columnIndex), columnTypes.getQuick(columnIndex), p + Integer.BYTES);
+                }
+                row.append();
+            } catch (Throwable e) {
+                row.cancel();
+                throw e;
+            }
+            offset = rowHi;
+            rowCount++;
+        }
+        return rowCount;
+    }
+
+    private boolean applyTable(CharSequence tableName) {
+        appliedRowCount = 0;
+        failedWalId = -1;
+        failedSegmentId = -1;
+        final int attempts = Math.max(failedAttempts.get(tableName), 0);
+        try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, tableName, LOCK_REASON)) {
+            try {
+                final boolean useful = applyWals(writer, attempts > 0);
+                failedAttempts.remove(tableName);
+                return useful;
+            } catch (CairoException e) {
+                writer.rollback();
+                LOG.error().$("could not apply WAL [table=`").utf8(tableName)
+                        .$("`, walId=").$(failedWalId)
+                        .$(", segmentId=").$(failedSegmentId)
+                        .$(", attempt=").$(attempts + 1)
+                        .$(", errno=").$(e.getErrno())
+                        .$(", error=").$(e.getFlyweightMessage()).$(']').$();
+                onApplyFailure(writer, e.getErrno(), attempts);
+            } catch (Throwable e) {
+                writer.rollback();
+                throw e;
+            }
+        } catch (EntryUnavailableException e) {
+            // table is busy, try again on the next run
+            engine.notifyWalCommit(tableName);
+        } catch (CairoException e) {
+            LOG.error().$("could not apply WAL [table=`").utf8(tableName)
+                    .$("`, errno=").$(e.getErrno())
+                    .$(", error=").$(e.getFlyweightMessage()).$(']').$();
+            engine.notifyWalCommit(tableName);
+        }
+        return appliedRowCount > 0;
+    }
+
+    private long applyWal(TableWriter writer, int walId, int walDirLen, boolean isolate) {
+        final int firstSegmentId = findMinSegmentId(walDirLen, walId);
+        if (firstSegmentId == Integer.MAX_VALUE) {
+            // nothing is left of a closed WAL but the marker, forget it before removing the directory
+            if (ff.exists(path.trimTo(walDirLen).slash().put(walId).concat(CLOSED_FILE_NAME).$())) {
+                recordChanged |= removeAppliedOffsets(walId);
+                closedWalIds.add(walId);
+            }
+            return 0;
+        }
+
+        long rowCount = 0;
+        for (int segmentId = firstSegmentId; segmentId < Integer.MAX_VALUE; segmentId++) {
+            path.trimTo(walDirLen).slash().put(walId).slash().put(segmentId).$();
+            if (!mapSegment()) {
+                break;
+            }
+            try {
+                // status is read first, rolled or closed segment will not see more commits
+                final long status = segmentMem.getLong(SEGMENT_OFFSET_STATUS);
+                Unsafe.getUnsafe().loadFence();
+                final long committed = segmentMem.getLong(SEGMENT_OFFSET_COMMITTED);
+                if (committed == 0) {
+                    // writer has not finished the header yet
+                    break;
+                }
+                if (committed > segmentMem.size()) {
+                    // file grew after we mapped it
+                    segmentMem.close(false);
+                    if (!mapSegment()) {
+                        break;
+                    }
+                }
+                final long applied = getAppliedOffset(walId, segmentId, segmentMem.getLong(SEGMENT_OFFSET_ROWS));
+                if (applied < committed) {
+                    failedWalId = walId;
+                    failedSegmentId = segmentId;
+                    rowCount += applySegment(writer, applied, committed);
+                }
+                progress.add(walId, segmentId, committed, status);
+                if (status != SEGMENT_STATUS_ROLLED) {
+                    break;
+                }
+            } finally {
+                segmentMem.close(false);
+            }
+            if (isolate) {
+                pendingRowCount += rowCount;
+                rowCount = 0;
+                commit(writer, walDirLen);
+            }
+        }
+        if (isolate) {
+            pendingRowCount += rowCount;
+            rowCount = 0;
+            commit(writer, walDirLen);
+        }
+        return rowCount;
+    }
+
+    private boolean applyWals(TableWriter writer, boolean isolate) {
+        pendingRowCount = 0;
+        progress.clear();
+        closedWalIds.clear();
+        recordChanged = false;
+        path.of(root).concat(writer.getTableName()).concat(WAL_DIR_NAME);
+        final int walDirLen = path.length();
+        if (!ff.exists(path.$())) {
+            return false;
+        }
+        readRecord(writer, walDirLen);
+
+        walIds.clear();
+        ff.iterateDir(path.trimTo(walDirLen).$(), (pUtf8NameZ, type) -> {
+            if (Files.isDir(pUtf8NameZ, type, nameSink)) {
+                try {
+                    walIds.add(Numbers.parseInt(nameSink));
+                } catch (NumericException ignore) {
+                }
+            }
+        });
+
+        for (int i = 0, n = walIds.size(); i < n; i++) {
+            pendingRowCount += applyWal(writer, walIds.getQuick(i), walDirLen, isolate);
+        }
+        // failure past this point is not down to a single segment
+        failedWalId = -1;
+        failedSegmentId = -1;
+        commit(writer, walDirLen);
+        if (recordChanged) {
+            // closed segments are forgotten by the record before their directories go
+            commit(writer, walDirLen);
+        }
+        removeClosedWals(walDirLen);
+        return appliedRowCount > 0;
+    }
+
+    private void commit(TableWriter writer, int walDirLen) {
+        if (pendingRowCount > 0 || recordChanged) {
+            for (int i = 0, n = progress.size(); i < n; i += 4) {
+                setAppliedOffset((int) progress.getQuick(i), (int) progress.getQuick(i + 1), progress.getQuick(i + 2));
+            }
+            commitRecord(writer, walDirLen);
+            if (pendingRowCount > 0) {
+                LOG.info().$("applied WAL [table=`").utf8(writer.getTableName()).$("`, rows=").$(pendingRowCount).$(']').$();
+            }
+            appliedRowCount += pendingRowCount;
+            pendingRowCount = 0;
+        }
+        failedWalId = -1;
+        failedSegmentId = -1;
+
+        // every segment in progress is now applied up to its committed offset by the record in _txn
+        for (int i = 0, n = progress.size(); i < n; i += 4) {
+            final int walId = (int) progress.getQuick(i);
+            final int segmentId = (int) progress.getQuick(i + 1);
+            final long status = progress.getQuick(i + 3);
+            if (status == SEGMENT_STATUS_OPEN) {
+                continue;
+            }
+            if (status == SEGMENT_STATUS_ROLLED) {
+                // segment ids are not reused within directory, stale offset is dropped with the next record
+                if (ff.remove(path.trimTo(walDirLen).slash().put(walId).slash().put(segmentId).$())) {
+                    removeAppliedOffset(walId, segmentId);
+                } else {
+                    LOG.error().$("could not remove WAL segment [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                }
+            } else if (findMinSegmentId(walDirLen, walId) == segmentId) {
+                // closed segment is the last one left, none of the offsets of this WAL are needed
+                path.trimTo(walDirLen).slash().put(walId).slash().put(segmentId).$();
+                if (ff.rename(path, other.of(path).trimTo(walDirLen).slash().put(walId).concat(CLOSED_FILE_NAME).$())) {
+                    removeAppliedOffsets(walId);
+                    recordChanged = true;
+                    closedWalIds.add(walId);
+                } else {
+                    LOG.error().$("could not close WAL [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                }
+            }
+        }
+        progress.clear();
+    }
+
+    private void commitRecord(TableWriter writer, int walDirLen) {
+        final long seq = walSeq + 1;
+        path.trimTo(walDirLen).concat(APPLIED_FILE_NAME).put('.').put(seq & 1).$();
+        recordMem.of(ff, path, ff.getPageSize(), 0, MemoryTag.MMAP_DEFAULT);
+        try {
+            recordMem.putLong(seq);
+            recordMem.putInt(appliedOffsets.size() / 3);
+            for (int i = 0, n = appliedOffsets.size(); i < n; i += 3) {
+                recordMem.putInt((int) appliedOffsets.getQuick(i));
+                recordMem.putInt((int) appliedOffsets.getQuick(i + 1));
+                recordMem.putLong(appliedOffsets.getQuick(i + 2));
+            }
+            // record has to be durable before _txn points at it, whatever the commit mode
+            if (ff.fsync(recordMem.getFd()) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not sync WAL apply record [path=").put(path).put(']');
+            }
+        } finally {
+            recordMem.close(true);
+        }
+        writer.commitWal(seq);
+        walSeq = seq;
+        recordChanged = false;
+    }
+
+    private long getAppliedOffset(int walId, int segmentId, long defaultOffset) {
+        for (int i = 0, n = appliedOffsets.size(); i < n; i += 3) {
+            if (appliedOffsets.getQuick(i) == walId && appliedOffsets.getQuick(i + 1) == segmentId) {
+                return appliedOffsets.getQuick(i + 2);
+            }
+        }
+        return defaultOffset;
+    }
+
+    private int findMinSegmentId(int walDirLen, int walId) {
+        path.trimTo(walDirLen).slash().put(walId).$();
+        minSegmentId = Integer.MAX_VALUE;
+        ff.iterateDir(path, (pUtf8NameZ, type) -> {
+            if (type == Files.DT_FILE) {
+                nameSink.clear();
+                Chars.utf8DecodeZ(pUtf8NameZ, nameSink);
+                try {
+                    minSegmentId = Math.min(minSegmentId, Numbers.parseInt(nameSink));
+                } catch (NumericException ignore) {
+                }
+            }
+        });
+        return minSegmentId;
+    }
+
+    private boolean hasAppliedOffsets(int walId) {
+        for (int i = 0, n = appliedOffsets.size(); i < n; i += 3) {
+            if (appliedOffsets.getQuick(i) == walId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mapSegment() {
+        if (!ff.exists(path)) {
+            return false;
+        }
+        final long len = ff.length(path);
+        if (len < SEGMENT_OFFSET_COLUMN_COUNT) {
+            // file is being created
+            return false;
+        }
+        segmentMem.of(ff, path, ff.getPageSize(), len, MemoryTag.MMAP_DEFAULT);
+        return true;
+    }
+
+    private void mapColumns(TableWriter writer) {
+        final TableWriterMetadata metadata = writer.getMetadata();
+        columnIndexes.clear();
+        columnTypes.clear();
+        long p = SEGMENT_OFFSET_COLUMN_COUNT;
+        final int columnCount = segmentMem.getInt(p);
+        p += Integer.BYTES;
+        for (int i = 0; i < columnCount; i++) {
+            final int type = segmentMem.getInt(p);
+            final CharSequence name = segmentMem.getStr(p + Integer.BYTES);
+            p += Integer.BYTES + Vm.getStorageLength(name);
+            final int columnIndex = metadata.getColumnIndexQuiet(name);
+            if (columnIndex > -1 && metadata.getColumnType(columnIndex) != type) {
+                // values cannot be stored as they are, the segment fails and is quarantined eventually
+                throw CairoException.instance(0).put("WAL column type does not match table [table=").put(writer.getTableName())
+                        .put(", column=").put(name)
+                        .put(", walType=").put(ColumnType.nameOf(type))
+                        .put(", tableType=").put(ColumnType.nameOf(metadata.getColumnType(columnIndex)))
+                        .put(']');
+            }
+            if (columnIndex < 0) {
+                LOG.info().$("skipping values of dropped column [table=`").utf8(writer.getTableName())
+                        .$("`, walId=").$(failedWalId)
+                        .$(", segmentId=").$(failedSegmentId)
+                        .$(", column=").utf8(name).$(']').$();
+            }
+            columnIndexes.add(columnIndex);
+            columnTypes.add(type);
+        }
+    }
+
+    private void onApplyFailure(TableWriter writer, int errno, int attempts) {
+        final String tableName = writer.getTableName();
+        if (errno != 0) {
+            // environment error, e.g. disk full, the same rows are likely to apply later
+            engine.notifyWalCommit(tableName);
+            return;
+        }
+        if (attempts + 1 >= MAX_APPLY_ATTEMPTS && failedWalId > -1) {
+            quarantineSegment(writer, failedWalId, failedSegmentId);
+            failedAttempts.remove(tableName);
+        } else {
+            failedAttempts.put(tableName, attempts + 1);
+        }
+        engine.notifyWalCommit(tableName);
+    }
+
+    private long putValue(TableWriter.Row row, int columnIndex, int type, long p) {
+        final boolean put = columnIndex > -1;
+        switch (ColumnType.tagOf(type)) {
+            case ColumnType.BOOLEAN:
+                if (put) {
+                    row.putBool(columnIndex, segmentMem.getBool(p));
+                }
+                return p + 1;
+            case ColumnType.BYTE:
+            case ColumnType.GEOBYTE:
+                if (put) {
+                    row.putByte(columnIndex, segmentMem.getByte(p));
+                }
+                return p + 1;
+            case ColumnType.SHORT:
+            case ColumnType.GEOSHORT:
+                if (put) {
+                    row.putShort(columnIndex, segmentMem.getShort(p));
+                }
+                return p + Short.BYTES;
+            case ColumnType.CHAR:
+                if (put) {
+                    row.putChar(columnIndex, segmentMem.getChar(p));
+                }
+                return p + Character.BYTES;
+            case ColumnType.INT:
+            case ColumnType.GEOINT:
+                if (put) {
+                    row.putInt(columnIndex, segmentMem.getInt(p));
+                }
+                return p + Integer.BYTES;
+            case ColumnType.FLOAT:
+                if (put) {
+                    row.putFloat(columnIndex, segmentMem.getFloat(p));
+                }
+                return p + Float.BYTES;
+            case ColumnType.DOUBLE:
+                if (put) {
+                    row.putDouble(columnIndex, segmentMem.getDouble(p));
+                }
+                return p + Double.BYTES;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.GEOLONG:
+                if (put) {
+                    row.putLong(columnIndex, segmentMem.getLong(p));
+                }
+                return p + Long.BYTES;
+            case ColumnType.LONG256:
+                if (put) {
+                    row.putLong256(
+                            columnIndex,
+                            segmentMem.getLong(p),
+                            segmentMem.getLong(p + Long.BYTES),
+                            segmentMem.getLong(p + Long.BYTES * 2),
+                            segmentMem.getLong(p + Long.BYTES * 3)
+                    );
+                }
+                return p + Long256.BYTES;
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+                final CharSequence value = segmentMem.getStr(p);
+                if (put) {
+                    if (ColumnType.isSymbol(type)) {
+                        row.putSym(columnIndex, value);
+                    } else {
+                        row.putStr(columnIndex, value);
+                    }
+                }
+                return p + Vm.getStorageLength(value);
+            case ColumnType.BINARY:
+                final long len = segmentMem.getBinLen(p);
+                if (put) {
+                    row.putBin(columnIndex, segmentMem.getBin(p));
+                }
+                return p + Long.BYTES + Math.max(len, 0);
+            default:
+                throw CairoException.instance(0).put("unsupported WAL column type [type=").put(ColumnType.nameOf(type)).put(']');
+        }
+    }
+
+    private void quarantineSegment(TableWriter writer, int walId, int segmentId) {
+        final String tableName = writer.getTableName();
+        path.of(root).concat(tableName).concat(WAL_DIR_NAME);
+        final int walDirLen = path.length();
+        try {
+            // offsets held in memory may belong to the failed commit
+            readRecord(writer, walDirLen);
+            path.trimTo(walDirLen).slash().put(walId).slash().put(segmentId).$();
+            if (!mapSegment()) {
+                return;
+            }
+            final long applied;
+            final long committed;
+            try {
+                applied = getAppliedOffset(walId, segmentId, segmentMem.getLong(SEGMENT_OFFSET_ROWS));
+                committed = segmentMem.getLong(SEGMENT_OFFSET_COMMITTED);
+                other.of(path).trimTo(walDirLen).concat(QUARANTINE_DIR_NAME).slash$();
+                if (ff.mkdirs(other, engine.getConfiguration().getMkDirMode()) != 0) {
+                    throw CairoException.instance(ff.errno()).put("could not create WAL quarantine directory [path=").put(other).put(']');
+                }
+                other.trimTo(other.length() - 1).slash().put(walId).put('.').put(segmentId).put('.').put(applied).$();
+                final long fd = TableUtils.openFileRWOrFail(ff, other);
+                try {
+                    if (ff.write(fd, segmentMem.addressOf(0), committed, 0) != committed || ff.fsync(fd) != 0) {
+                        throw CairoException.instance(ff.errno()).put("could not copy WAL segment to quarantine [path=").put(other).put(']');
+                    }
+                } finally {
+                    ff.close(fd);
+                }
+            } finally {
+                segmentMem.close(false);
+            }
+            // rows are skipped only once the copy is safe
+            setAppliedOffset(walId, segmentId, committed);
+            commitRecord(writer, walDirLen);
+            LOG.critical().$("quarantined WAL segment [table=`").utf8(tableName)
+                    .$("`, walId=").$(walId)
+                    .$(", segmentId=").$(segmentId)
+                    .$(", applied=").$(applied)
+                    .$(", committed=").$(committed)
+                    .$(", path=").$(other).$(']').$();
+        } catch (CairoException e) {
+            LOG.error().$("could not quarantine WAL segment [table=`").utf8(tableName)
+                    .$("`, walId=").$(walId)
+                    .$(", segmentId=").$(segmentId)
+                    .$(", errno=").$(e.getErrno())
+                    .$(", error=").$(e.getFlyweightMessage()).$(']').$();
+        }
+    }
+
+    private void readRecord(TableWriter writer, int walDirLen) {
+        walSeq = writer.getWalSeq();
+        appliedOffsets.clear();
+        path.trimTo(walDirLen).concat(APPLIED_FILE_NAME).put('.').put(walSeq & 1).$();
+        if (!ff.exists(path)) {
+            if (ff.exists(path.trimTo(walDirLen).concat(APPLIED_FILE_NAME).put('.').put((walSeq + 1) & 1).$())) {
+                throw CairoException.instance(0).put("WAL apply record is missing [table=").put(writer.getTableName())
+                        .put(", seq=").put(walSeq)
+                        .put(']');
+            }
+            // nothing has been applied to this table yet
+            return;
+        }
+        recordMem.of(ff, path, ff.getPageSize(), ff.length(path), MemoryTag.MMAP_DEFAULT);
+        try {
+            final long seq = recordMem.getLong(0);
+            if (seq != walSeq) {
+                throw CairoException.instance(0).put("WAL apply record does not match table [table=").put(writer.getTableName())
+                        .put(", seq=").put(walSeq)
+                        .put(", recordSeq=").put(seq)
+                        .put(']');
+            }
+            long p = Long.BYTES;
+            final int count = recordMem.getInt(p);
+            p += Integer.BYTES;
+            for (int i = 0; i < count; i++) {
+                appliedOffsets.add((long) recordMem.getInt(p), recordMem.getInt(p + Integer.BYTES));
+                appliedOffsets.add(recordMem.getLong(p + 2 * Integer.BYTES));
+                p += 2 * Integer.BYTES + Long.BYTES;
+            }
+        } finally {
+            recordMem.close(false);
+        }
+    }
+
+    private void removeAppliedOffset(int walId, int segmentId) {
+        for (int i = 0, n = appliedOffsets.size(); i < n; i += 3) {
+            if (appliedOffsets.getQuick(i) == walId && appliedOffsets.getQuick(i + 1) == segmentId) {
+                appliedOffsets.removeIndexBlock(i, 3);
+                return;
+            }
+        }
+    }
+
+    private boolean removeAppliedOffsets(int walId) {
+        boolean removed = false;
+        for (int i = appliedOffsets.size() - 3; i > -1; i -= 3) {
+            if (appliedOffsets.getQuick(i) == walId) {
+                appliedOffsets.removeIndexBlock(i, 3);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private void removeClosedWals(int walDirLen) {
+        for (int i = 0, n = closedWalIds.size(); i < n; i++) {
+            final int walId = closedWalIds.getQuick(i);
+            if (!hasAppliedOffsets(walId) && ff.rmdir(path.trimTo(walDirLen).slash().put(walId).slash$()) != 0) {
+                LOG.error().$("could not remove WAL directory [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+        }
+        closedWalIds.clear();
+    }
+
+    private void setAppliedOffset(int walId, int segmentId, long offset) {
+        for (int i = 0, n = appliedOffsets.size(); i < n; i += 3) {
+            if (appliedOffsets.getQuick(i) == walId && appliedOffsets.getQuick(i + 1) == segmentId) {
+                appliedOffsets.setQuick(i + 2, offset);
+                return;
+            }
+        }
+        appliedOffsets.add((long) walId, segmentId);
+        appliedOffsets.add(offset);
+    }
+}
@@ -0,0 +1,525 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.wal;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCMARW;
+import io.questdb.griffin.model.IntervalUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.Path;
+import org.jetbrains.annotations.NotNull;
+
+import static io.questdb.cairo.TableUtils.WAL_DIR_NAME;
+
+/**
+ * Appends rows to a write-ahead log owned by this writer alone. Any number of writers can be open
+ * for the same table at the same time, none of them takes the table lock. Each writer claims its
+ * own directory under "table/wal/" and writes numbered segment files in it. Segment header holds
+ * committed offset, offset of the first row, segment status and the column names and types the rows
+ * were written against. Rows are stored as length, designated timestamp and then column index and value
+ * pairs for every column that was set. Symbols are logged as strings, they are resolved to keys when
+ * {@link WalApplyJob} replays the rows through {@link TableWriter}.
+ * <p>
+ * Writers obtained from {@link CairoEngine#getWalWriter} are pooled, close() rolls back uncommitted
+ * rows and returns the writer to the pool with its segment still open.
+ */
+public class WalWriter implements TableWriterAPI {
+    public static final long SEGMENT_OFFSET_COMMITTED = 0;
+    public static final long SEGMENT_OFFSET_ROWS = 8;
+    public static final long SEGMENT_OFFSET_STATUS = 16;
+    public static final long SEGMENT_OFFSET_COLUMN_COUNT = 24;
+    public static final long SEGMENT_STATUS_OPEN = 0;
+    // writer moved on to the next segment, committed offset is final
+    public static final long SEGMENT_STATUS_ROLLED = 1;
+    // writer is closed, this is the last segment in the directory
+    public static final long SEGMENT_STATUS_CLOSED = 2;
+    public static final int ROW_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final Log LOG = LogFactory.getLog(WalWriter.class);
+    private static final String LOCK_REASON = "walAddColumn";
+    private final CairoConfiguration configuration;
+    private final CairoEngine engine;
+    private final FilesFacade ff;
+    private final String tableName;
+    private final int timestampIndex;
+    private final GenericRecordMetadata metadata = new GenericRecordMetadata();
+    private final ObjList<String> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final MemoryCMARW segmentMem = Vm.getCMARWInstance();
+    private final Path path = new Path();
+    private final RowImpl row = new RowImpl();
+    private final int mkDirMode;
+    private final int commitMode;
+    private final long extendSegmentSize;
+    private final long rolloverSize;
+    private final int walDirLen;
+    private int walId;
+    private int segmentId = 0;
+    private long committedOffset;
+    private long rowOffset = -1;
+    private long uncommittedRowCount;
+    private long structureVersion;
+    private LifecycleManager lifecycleManager = DefaultLifecycleManager.INSTANCE;
+
+    public WalWriter(
+            CairoConfiguration configuration,
+            CairoEngine engine,
+            String tableName,
+            RecordMetadata metadata,
+            long structureVersion
+    ) {
+        this.configuration = configuration;
+        this.engine = engine;
+        this.ff = configuration.getFilesFacade();
+        this.tableName = tableName;
+        this.structureVersion = structureVersion;
+        this.timestampIndex = metadata.getTimestampIndex();
+        this.mkDirMode = configuration.getMkDirMode();
+        this.commitMode = configuration.getCommitMode();
+        this.extendSegmentSize = configuration.getDataAppendPageSize();
+        this.rolloverSize = configuration.getWalSegmentRolloverSize();
+        copyMetadata(metadata);
+        try {
+            path.of(configuration.getRoot()).concat(tableName).concat(WAL_DIR_NAME).slash$();
+            if (ff.mkdirs(path, mkDirMode) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not create WAL directory [path=").put(path).put(']');
+            }
+            path.trimTo(path.length() - 1);
+            walId = allocateWalId(path.length());
+            walDirLen = path.length();
+            openSegment();
+        } catch (Throwable e) {
+            doClose(false);
+            throw e;
+        }
+        LOG.info().$("opened WAL [table=`").utf8(tableName).$("`, walId=").$(walId).$(']').$();
+    }
+
+    /**
+     * Adds column to the table itself and starts a new segment with the new structure. Rows committed
+     * so far stay in the current segment and are applied against the columns they were written with.
+     * Waits for the table writer when it is busy, e.g. when the apply job holds it.
+     *
+     * @param name column name
+     * @param type column type
+     */
+    @Override
+    public void addColumn(CharSequence name, int type) {
+        commit();
+        try (TableWriter writer = getTableWriter()) {
+            if (writer.getMetadata().getColumnIndexQuiet(name) < 0) {
+                writer.addColumn(name, type);
+            }
+            copyMetadata(writer.getMetadata());
+            structureVersion = writer.getStructureVersion();
+        }
+        closeSegment(SEGMENT_STATUS_ROLLED);
+        segmentId++;
+        openSegment();
+        LOG.info().$("added column to WAL [table=`").utf8(tableName).$("`, walId=").$(walId).$(", column=").utf8(name).$(']').$();
+    }
+
+    @Override
+    public void close() {
+        if (segmentMem.isOpen()) {
+            rollback();
+            if (lifecycleManager.close()) {
+                doClose(true);
+            }
+        } else {
+            doClose(true);
+        }
+    }
+
+    @Override
+    public void commit() {
+        if (rowOffset > -1) {
+            row.cancel();
+        }
+        final long offset = segmentMem.getAppendOffset();
+        if (offset > committedOffset) {
+            // row bytes must reach memory before the offset that makes them visible to apply job
+            Unsafe.getUnsafe().storeFence();
+            segmentMem.putLong(SEGMENT_OFFSET_COMMITTED, offset);
+            if (commitMode != CommitMode.NOSYNC) {
+                segmentMem.sync(commitMode == CommitMode.ASYNC);
+            }
+            committedOffset = offset;
+            uncommittedRowCount = 0;
+            if (offset > rolloverSize) {
+                closeSegment(SEGMENT_STATUS_ROLLED);
+                segmentId++;
+                openSegment();
+            }
+            engine.notifyWalCommit(tableName);
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    @Override
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    public long getUncommittedRowCount() {
+        return uncommittedRowCount;
+    }
+
+    public int getWalId() {
+        return walId;
+    }
+
+    @Override
+    public TableWriter.Row newRow() {
+        return newRow(0L);
+    }
+
+    @Override
+    public TableWriter.Row newRow(long timestamp) {
+        if (timestampIndex > -1 && timestamp < Timestamps.O3_MIN_TS) {
+            throw CairoException.instance(0).put("timestamp before 1970-01-01 is not allowed");
+        }
+        if (rowOffset > -1) {
+            row.cancel();
+        }
+        rowOffset = segmentMem.getAppendOffset();
+        segmentMem.putInt(0);
+        segmentMem.putLong(timestamp);
+        return row;
+    }
+
+    @Override
+    public void rollback() {
+        rowOffset = -1;
+        uncommittedRowCount = 0;
+        segmentMem.jumpTo(committedOffset);
+    }
+
+    public void setLifecycleManager(LifecycleManager lifecycleManager) {
+        this.lifecycleManager = lifecycleManager;
+    }
+
+    private int allocateWalId(int rootLen) {
+        // directory creation is atomic, the first id we manage to create is ours
+        for (int id = 0; ; id++) {
+            path.trimTo(rootLen).slash().put(id).$();
+            if (ff.mkdir(path, mkDirMode) == 0) {
+                return id;
+            }
+            if (!ff.exists(path)) {
+                throw CairoException.instance(ff.errno()).put("could not create WAL directory [path=").put(path).put(']');
+            }
+        }
+    }
+
+    private void closeSegment(long status) {
+        if (segmentMem.isOpen()) {
+            // status is published after committed offset, apply job reads them in reverse order
+            Unsafe.getUnsafe().storeFence();
+            segmentMem.putLong(SEGMENT_OFFSET_STATUS, status);
+            segmentMem.close(true);
+        }
+    }
+
+    private void copyMetadata(RecordMetadata from) {
+        metadata.clear();
+        columnNames.clear();
+        columnTypes.clear();
+        for (int i = 0, n = from.getColumnCount(); i < n; i++) {
+            final String name = Chars.toString(from.getColumnName(i));
+            final int type = from.getColumnType(i);
+            metadata.add(new TableColumnMetadata(
+                    name,
+                    from.getColumnHash(i),
+                    type,
+                    from.isColumnIndexed(i),
+                    from.getIndexValueBlockCapacity(i),
+                    from.isSymbolTableStatic(i),
+                    null
+            ));
+            columnNames.add(name);
+            columnTypes.add(type);
+        }
+        metadata.setTimestampIndex(from.getTimestampIndex());
+    }
+
+    private void doClose(boolean notify) {
+        if (segmentMem.isOpen()) {
+            rollback();
+            closeSegment(SEGMENT_STATUS_CLOSED);
+        }
+        Misc.free(path);
+        if (notify) {
+            // let apply job remove the directory
+            engine.notifyWalCommit(tableName);
+        }
+    }
+
+    private TableWriter getTableWriter() {
+        final MicrosecondClock clock = configuration.getMicrosecondClock();
+        final long deadline = clock.getTicks() + configuration.getWriterAsyncCommandMaxTimeout();
+        while (true) {
+            try {
+                return engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, tableName, LOCK_REASON);
+            } catch (EntryUnavailableException e) {
+                if (clock.getTicks() > deadline) {
+                    throw e;
+                }
+                Os.sleep(1);
+            }
+        }
+    }
+
+    private void openSegment() {
+        path.trimTo(walDirLen).slash().put(segmentId).$();
+        segmentMem.of(ff, path, extendSegmentSize, -1, MemoryTag.MMAP_TABLE_WRITER);
+        segmentMem.putLong(0);
+        segmentMem.putLong(0);
+        segmentMem.putLong(SEGMENT_STATUS_OPEN);
+        segmentMem.putInt(columnNames.size());
+        for (int i = 0, n = columnNames.size(); i < n; i++) {
+            segmentMem.putInt(columnTypes.getQuick(i));
+            segmentMem.putStr(columnNames.getQuick(i));
+        }
+        committedOffset = segmentMem.getAppendOffset();
+        segmentMem.putLong(SEGMENT_OFFSET_ROWS, committedOffset);
+        // non-zero committed offset tells apply job the header is complete
+        Unsafe.getUnsafe().storeFence();
+        segmentMem.putLong(SEGMENT_OFFSET_COMMITTED, committedOffset);
+    }
+
+    private class RowImpl implements TableWriter.Row {
+        @Override
+        public void append() {
+            segmentMem.putInt(rowOffset, (int) (segmentMem.getAppendOffset() - rowOffset));
+            rowOffset = -1;
+            uncommittedRowCount++;
+        }
+
+        @Override
+        public void cancel() {
+            segmentMem.jumpTo(rowOffset);
+            rowOffset = -1;
+        }
+
+        @Override
+        public void putBin(int columnIndex, long address, long len) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putBin(address, len);
+        }
+
+        @Override
+        public void putBin(int columnIndex, BinarySequence sequence) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putBin(sequence);
+        }
+
+        @Override
+        public void putBool(int columnIndex, boolean value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putBool(value);
+        }
+
+        @Override
+        public void putByte(int columnIndex, byte value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putByte(value);
+        }
+
+        @Override
+        public void putChar(int columnIndex, char value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putChar(value);
+        }
+
+        @Override
+        public void putDate(int columnIndex, long value) {
+            putLong(columnIndex, value);
+        }
+
+        @Override
+        public void putDouble(int columnIndex, double value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putDouble(value);
+        }
+
+        @Override
+        public void putFloat(int columnIndex, float value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putFloat(value);
+        }
+
+        @Override
+        public void putGeoHash(int columnIndex, long value) {
+            // logged in the column storage size, same as row copier would put it
+            switch (ColumnType.tagOf(columnTypes.getQuick(columnIndex))) {
+                case ColumnType.GEOBYTE:
+                    putByte(columnIndex, (byte) value);
+                    break;
+                case ColumnType.GEOSHORT:
+                    putShort(columnIndex, (short) value);
+                    break;
+                case ColumnType.GEOINT:
+                    putInt(columnIndex, (int) value);
+                    break;
+                default:
+                    putLong(columnIndex, value);
+                    break;
+            }
+        }
+
+        @Override
+        public void putGeoHashDeg(int columnIndex, double lat, double lon) {
+            final int type = columnTypes.getQuick(columnIndex);
+            putGeoHash(columnIndex, GeoHashes.fromCoordinatesDegUnsafe(lat, lon, ColumnType.getGeoHashBits(type)));
+        }
+
+        @Override
+        public void putGeoStr(int columnIndex, CharSequence hash) {
+            long val = GeoHashes.NULL;
+            if (hash != null) {
+                final int typeBits = ColumnType.getGeoHashBits(columnTypes.getQuick(columnIndex));
+                final int charsRequired = (typeBits - 1) / 5 + 1;
+                if (hash.length() >= charsRequired) {
+                    try {
+                        val = ColumnType.truncateGeoHashBits(
+                                GeoHashes.fromString(hash, 0, charsRequired),
+                                charsRequired * 5,
+                                typeBits
+                        );
+                    } catch (NumericException ignore) {
+                    }
+                }
+            }
+            putGeoHash(columnIndex, val);
+        }
+
+        @Override
+        public void putInt(int columnIndex, int value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putInt(value);
+        }
+
+        @Override
+        public void putLong(int columnIndex, long value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putLong(value);
+        }
+
+        @Override
+        public void putLong256(int columnIndex, long l0, long l1, long l2, long l3) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putLong256(l0, l1, l2, l3);
+        }
+
+        @Override
+        public void putLong256(int columnIndex, Long256 value) {
+            putLong256(columnIndex, value.getLong0(), value.getLong1(), value.getLong2(), value.getLong3());
+        }
+
+        @Override
+        public void putLong256(int columnIndex, CharSequence hexString) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putLong256(hexString);
+        }
+
+        @Override
+        public void putLong256(int columnIndex, @NotNull CharSequence hexString, int start, int end) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putLong256(hexString, start, end);
+        }
+
+        @Override
+        public void putShort(int columnIndex, short value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putShort(value);
+        }
+
+        @Override
+        public void putStr(int columnIndex, CharSequence value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putStr(value);
+        }
+
+        @Override
+        public void putStr(int columnIndex, char value) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putStr(value);
+        }
+
+        @Override
+        public void putStr(int columnIndex, CharSequence value, int pos, int len) {
+            segmentMem.putInt(columnIndex);
+            segmentMem.putStr(value, pos, len);
+        }
+
+        @Override
+        public void putSym(int columnIndex, CharSequence value) {
+            putStr(columnIndex, value);
+        }
+
+        @Override
+        public void putSym(int columnIndex, char value) {
+            putStr(columnIndex, value);
+        }
+
+        @Override
+        public void putSymIndex(int columnIndex, int symIndex) {
+            throw CairoException.instance(0).put("symbol keys cannot be written to WAL [table=").put(tableName).put(']');
+        }
+
+        @Override
+        public void putTimestamp(int columnIndex, long value) {
+            putLong(columnIndex, value);
+        }
+
+        @Override
+        public void putTimestamp(int columnIndex, CharSequence value) {
+            long l;
+            try {
+                l = value != null ? IntervalUtils.parseFloorPartialDate(value) : Numbers.LONG_NaN;
+            } catch (NumericException e) {
+                throw CairoException.instance(0).put("Invalid timestamp: ").put(value);
+            }
+            putTimestamp(columnIndex, l);
+        }
+    }
+}
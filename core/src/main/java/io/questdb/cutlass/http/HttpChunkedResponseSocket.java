@@ -35,6 +35,15 @@ public interface HttpChunkedResponseSocket extends CharSink {
 
     HttpResponseHeader headers();
 
+    /**
+     * Copies as many bytes as response buffer has room for.
+     *
+     * @param lo address of the first byte
+     * @param hi address past the last byte
+     * @return number of bytes copied, the rest has to wait for the buffer to be sent
+     */
+    int putBytes(long lo, long hi);
+
     boolean resetToBookmark();
 
     void sendChunk(boolean done) throws PeerDisconnectedException, PeerIsSlowToReadException;
@@ -538,6 +538,16 @@ public class HttpResponseSink implements Closeable, Mutable {
             return headerImpl;
         }
 
+        @Override
+        public int putBytes(long lo, long hi) {
+            final int len = (int) Math.min(hi - lo, buffer.getWriteNAvailable());
+            if (len > 0) {
+                Vect.memcpy(buffer.getWriteAddress(len), lo, len);
+                buffer.onWrite(len);
+            }
+            return len;
+        }
+
         @Override
         public boolean resetToBookmark() {
             buffer._wptr = bookmark;
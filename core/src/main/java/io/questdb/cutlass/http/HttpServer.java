@@ -28,10 +28,16 @@ import io.questdb.Metrics;
 import io.questdb.WorkerPoolAwareConfiguration;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.ColumnIndexerJob;
+import io.questdb.cairo.ColumnSyncJob;
 import io.questdb.cutlass.http.processors.*;
+import io.questdb.cutlass.text.TextImportJob;
 import io.questdb.griffin.FunctionFactoryCache;
+import io.questdb.griffin.engine.groupby.PageFrameGroupByJob;
 import io.questdb.griffin.engine.groupby.vect.GroupByJob;
+import io.questdb.griffin.engine.join.HashJoinBuildJob;
 import io.questdb.griffin.engine.table.LatestByAllIndexedJob;
+import io.questdb.griffin.engine.table.LatestByScanJob;
+import io.questdb.griffin.engine.table.PageFrameFilterJob;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.mp.EagerThreadSetup;
@@ -182,8 +188,14 @@ public class HttpServer implements Closeable {
 
         // jobs that help parallel execution of queries
         workerPool.assign(new ColumnIndexerJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new ColumnSyncJob(cairoEngine.getMessageBus()));
         workerPool.assign(new GroupByJob(cairoEngine.getMessageBus()));
         workerPool.assign(new LatestByAllIndexedJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new PageFrameFilterJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new PageFrameGroupByJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new HashJoinBuildJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new LatestByScanJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new TextImportJob(cairoEngine.getMessageBus()));
     }
 
     @Nullable
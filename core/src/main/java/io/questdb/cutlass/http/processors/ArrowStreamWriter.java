@@ -0,0 +1,952 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.SymbolMapReader;
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.std.*;
+import io.questdb.std.str.AbstractCharSink;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.DirectCharSequence;
+
+import java.io.Closeable;
+
+/**
+ * Encodes query results as Apache Arrow IPC stream: schema message, record batches and
+ * end-of-stream marker. Message metadata is flatbuffer, which is written front to back here,
+ * parent tables ahead of their children. Every message is exposed as a list of memory segments
+ * caller copies out, see {@link #getSegmentLo()}, and the next message must not be started
+ * until all of them are consumed.
+ * <p>
+ * Batches built from page frames reference fixed size column data in place, values QuestDB
+ * uses for null are already ignored by Arrow readers once validity bitmap marks them. Types
+ * without Arrow equivalent of their storage are converted value by value, the same way
+ * as when batch is built from records.
+ */
+public class ArrowStreamWriter implements Closeable, Mutable {
+    private static final short METADATA_VERSION_V5 = 4;
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_RECORD_BATCH = 3;
+    private static final byte TYPE_NULL = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_FLOATING_POINT = 3;
+    private static final byte TYPE_BINARY = 4;
+    private static final byte TYPE_UTF8 = 5;
+    private static final byte TYPE_BOOL = 6;
+    private static final byte TYPE_TIMESTAMP = 10;
+    private static final short PRECISION_SINGLE = 1;
+    private static final short PRECISION_DOUBLE = 2;
+    private static final short TIME_UNIT_MILLISECOND = 1;
+    private static final short TIME_UNIT_MICROSECOND = 2;
+    // vtable is vtable size, table size and offsets of fields within table in field id order, 0 is absent field
+    // version, header_type, header, bodyLength
+    private static final short[] MESSAGE_VTABLE = {12, 19, 16, 18, 4, 8};
+    // endianness, fields
+    private static final short[] SCHEMA_VTABLE = {8, 8, 0, 4};
+    // name, nullable, type_type, type, dictionary, children
+    private static final short[] FIELD_VTABLE = {16, 18, 4, 16, 17, 8, 0, 12};
+    // bitWidth, is_signed
+    private static final short[] INT_VTABLE = {8, 9, 4, 8};
+    // precision
+    private static final short[] FLOATING_POINT_VTABLE = {6, 6, 4};
+    // unit, timezone
+    private static final short[] TIMESTAMP_VTABLE = {8, 10, 8, 4};
+    // Utf8, Binary, Bool and Null have no fields
+    private static final short[] EMPTY_VTABLE = {4, 4};
+    // length, nodes, buffers
+    private static final short[] RECORD_BATCH_VTABLE = {10, 20, 8, 4, 16};
+    // var size column data of a batch is kept well under 2GB reach of 32-bit offsets
+    private static final long MAX_BATCH_DATA_SIZE = 256 * 1024 * 1024;
+    private final ObjList<ArrowColumn> columns = new ObjList<>();
+    private final MemoryCARW meta;
+    // address and size of each body buffer of record batch
+    private final LongList buffers = new LongList();
+    // address and size of each segment of current message
+    private final LongList segments = new LongList();
+    private final Utf8Sink utf8Sink = new Utf8Sink();
+    private final DirectCharSequence charSequence = new DirectCharSequence();
+    private final long pageSize;
+    private final int maxBatchRowCount;
+    private long zeroes;
+    private RecordMetadata metadata;
+    private int columnCount;
+    private long rowCount;
+    private int segmentIndex;
+    private long segmentOffset;
+
+    public ArrowStreamWriter(long pageSize, int maxBatchRowCount) {
+        this.pageSize = pageSize;
+        this.maxBatchRowCount = maxBatchRowCount;
+        this.meta = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_HTTP_CONN);
+        this.zeroes = Unsafe.calloc(Long.BYTES, MemoryTag.NATIVE_HTTP_CONN);
+    }
+
+    /**
+     * Releases memory of the last batch, writer can be reused for another stream.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            columns.getQuick(i).close();
+        }
+        meta.close();
+        segments.clear();
+        buffers.clear();
+        segmentIndex = 0;
+        segmentOffset = 0;
+        rowCount = 0;
+        metadata = null;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (zeroes != 0) {
+            Unsafe.free(zeroes, Long.BYTES, MemoryTag.NATIVE_HTTP_CONN);
+            zeroes = 0;
+        }
+    }
+
+    /**
+     * Marks bytes of current segment as sent.
+     *
+     * @param bytes number of bytes caller has copied from {@link #getSegmentLo()}
+     */
+    public void consume(long bytes) {
+        segmentOffset += bytes;
+        if (segmentOffset == segments.getQuick(segmentIndex + 1)) {
+            segmentIndex += 2;
+            segmentOffset = 0;
+        }
+    }
+
+    public int getMaxBatchRowCount() {
+        return maxBatchRowCount;
+    }
+
+    /**
+     * @return number of rows appended to the batch, which is not yet sealed by {@link #putRecordBatch()}
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return address past the last byte of current segment
+     */
+    public long getSegmentHi() {
+        return segments.getQuick(segmentIndex) + segments.getQuick(segmentIndex + 1);
+    }
+
+    /**
+     * @return address of the first byte of current segment, which is yet to be sent
+     */
+    public long getSegmentLo() {
+        return segments.getQuick(segmentIndex) + segmentOffset;
+    }
+
+    /**
+     * @return true when batch has to be sealed before more records are appended
+     */
+    public boolean isBatchFull() {
+        if (rowCount >= maxBatchRowCount) {
+            return true;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (columns.getQuick(i).data.getAppendOffset() >= MAX_BATCH_DATA_SIZE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true when all segments of current message have been consumed
+     */
+    public boolean isDrained() {
+        return segmentIndex >= segments.size();
+    }
+
+    public void of(RecordMetadata metadata) {
+        this.metadata = metadata;
+        this.columnCount = metadata.getColumnCount();
+        for (int i = columns.size(); i < columnCount; i++) {
+            columns.add(new ArrowColumn(pageSize));
+        }
+        for (int i = 0; i < columnCount; i++) {
+            columns.getQuick(i).of(metadata.getColumnType(i));
+        }
+        rowCount = 0;
+        segments.clear();
+        segmentIndex = 0;
+        segmentOffset = 0;
+    }
+
+    public void putEndOfStream() {
+        beginSegments();
+        meta.putInt(-1);
+        meta.putInt(0);
+        addSegment(meta.getAddress(), meta.getAppendOffset());
+    }
+
+    /**
+     * Builds record batch of page frame rows. Frame must stay valid until the batch is consumed.
+     *
+     * @param frame  page frame of the cursor
+     * @param cursor cursor frame comes from, it resolves symbol keys
+     * @param rowLo  first row of the batch, relative to the start of the frame
+     * @param rowHi  row past the last row of the batch, relative to the start of the frame
+     */
+    public void putFrameBatch(PageFrame frame, PageFrameCursor cursor, long rowLo, long rowHi) {
+        resetColumns();
+        final long batchRowCount = rowHi - rowLo;
+        for (int i = 0; i < columnCount; i++) {
+            final ArrowColumn column = columns.getQuick(i);
+            final long address = frame.getPageAddress(i);
+            if (address == 0) {
+                // column top, column was added after these rows were written
+                for (long r = 0; r < batchRowCount; r++) {
+                    column.putNull(r);
+                }
+                continue;
+            }
+            switch (column.tag) {
+                case ColumnType.BOOLEAN:
+                    for (long r = 0; r < batchRowCount; r++) {
+                        column.putBit(r, Unsafe.getUnsafe().getByte(address + rowLo + r) != 0);
+                    }
+                    break;
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                case ColumnType.GEOBYTE:
+                case ColumnType.GEOSHORT:
+                case ColumnType.GEOINT:
+                case ColumnType.GEOLONG:
+                    column.ofFrameData(address + (rowLo << column.sizeBits), batchRowCount);
+                    break;
+                case ColumnType.CHAR:
+                    for (long r = 0; r < batchRowCount; r++) {
+                        column.putChar(r, Unsafe.getUnsafe().getChar(address + ((rowLo + r) << 1)), utf8Sink);
+                    }
+                    break;
+                case ColumnType.SYMBOL:
+                    final SymbolMapReader symbolMapReader = cursor.getSymbolMapReader(i);
+                    for (long r = 0; r < batchRowCount; r++) {
+                        column.putStr(r, symbolMapReader.valueOf(Unsafe.getUnsafe().getInt(address + ((rowLo + r) << 2))), utf8Sink);
+                    }
+                    break;
+                case ColumnType.LONG256:
+                    for (long r = 0; r < batchRowCount; r++) {
+                        final long p = address + ((rowLo + r) << 5);
+                        column.putLong256(
+                                r,
+                                Unsafe.getUnsafe().getLong(p),
+                                Unsafe.getUnsafe().getLong(p + 8),
+                                Unsafe.getUnsafe().getLong(p + 16),
+                                Unsafe.getUnsafe().getLong(p + 24),
+                                utf8Sink
+                        );
+                    }
+                    break;
+                case ColumnType.STRING:
+                case ColumnType.BINARY:
+                    // offsets of the frame are relative to the start of the column file
+                    final long index = frame.getIndexPageAddress(i);
+                    final long base = address - Unsafe.getUnsafe().getLong(index);
+                    for (long r = 0; r < batchRowCount; r++) {
+                        final long p = base + Unsafe.getUnsafe().getLong(index + ((rowLo + r) << 3));
+                        if (column.tag == ColumnType.STRING) {
+                            final int len = Unsafe.getUnsafe().getInt(p);
+                            column.putStr(r, len < 0 ? null : charSequence.of(p + 4, p + 4 + ((long) len << 1)), utf8Sink);
+                        } else {
+                            column.putBin(r, p + 8, Unsafe.getUnsafe().getLong(p));
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        this.rowCount = batchRowCount;
+        putRecordBatch();
+    }
+
+    /**
+     * Appends record to the batch. Batch, which has been sealed, is discarded by the first record of the next one.
+     *
+     * @param record record of the cursor, which metadata writer was set up with
+     */
+    public void putRecord(Record record) {
+        if (rowCount == 0) {
+            resetColumns();
+        }
+        final long r = rowCount;
+        for (int i = 0; i < columnCount; i++) {
+            final ArrowColumn column = columns.getQuick(i);
+            switch (column.tag) {
+                case ColumnType.BOOLEAN:
+                    column.putBit(r, record.getBool(i));
+                    break;
+                case ColumnType.BYTE:
+                    column.data.putByte(record.getByte(i));
+                    break;
+                case ColumnType.SHORT:
+                    column.data.putShort(record.getShort(i));
+                    break;
+                case ColumnType.CHAR:
+                    column.putChar(r, record.getChar(i), utf8Sink);
+                    break;
+                case ColumnType.INT:
+                    final int intValue = record.getInt(i);
+                    column.putValidity(r, intValue != Numbers.INT_NaN);
+                    column.data.putInt(intValue);
+                    break;
+                case ColumnType.LONG:
+                    putLong(column, r, record.getLong(i));
+                    break;
+                case ColumnType.DATE:
+                    putLong(column, r, record.getDate(i));
+                    break;
+                case ColumnType.TIMESTAMP:
+                    putLong(column, r, record.getTimestamp(i));
+                    break;
+                case ColumnType.FLOAT:
+                    final float floatValue = record.getFloat(i);
+                    column.putValidity(r, floatValue == floatValue);
+                    column.data.putFloat(floatValue);
+                    break;
+                case ColumnType.DOUBLE:
+                    final double doubleValue = record.getDouble(i);
+                    column.putValidity(r, doubleValue == doubleValue);
+                    column.data.putDouble(doubleValue);
+                    break;
+                case ColumnType.STRING:
+                    column.putStr(r, record.getStr(i), utf8Sink);
+                    break;
+                case ColumnType.SYMBOL:
+                    column.putStr(r, record.getSym(i), utf8Sink);
+                    break;
+                case ColumnType.BINARY:
+                    column.putBin(r, record.getBin(i));
+                    break;
+                case ColumnType.LONG256:
+                    final Long256 long256 = record.getLong256A(i);
+                    column.putLong256(r, long256.getLong0(), long256.getLong1(), long256.getLong2(), long256.getLong3(), utf8Sink);
+                    break;
+                case ColumnType.GEOBYTE:
+                    final byte geoByte = record.getGeoByte(i);
+                    column.putValidity(r, geoByte != GeoHashes.BYTE_NULL);
+                    column.data.putByte(geoByte);
+                    break;
+                case ColumnType.GEOSHORT:
+                    final short geoShort = record.getGeoShort(i);
+                    column.putValidity(r, geoShort != GeoHashes.SHORT_NULL);
+                    column.data.putShort(geoShort);
+                    break;
+                case ColumnType.GEOINT:
+                    final int geoInt = record.getGeoInt(i);
+                    column.putValidity(r, geoInt != GeoHashes.INT_NULL);
+                    column.data.putInt(geoInt);
+                    break;
+                case ColumnType.GEOLONG:
+                    final long geoLong = record.getGeoLong(i);
+                    column.putValidity(r, geoLong != GeoHashes.NULL);
+                    column.data.putLong(geoLong);
+                    break;
+                default:
+                    break;
+            }
+        }
+        rowCount++;
+    }
+
+    /**
+     * Seals appended records into record batch message.
+     */
+    public void putRecordBatch() {
+        buffers.clear();
+        for (int i = 0; i < columnCount; i++) {
+            columns.getQuick(i).addBuffers(rowCount, buffers);
+        }
+        long bodyLength = 0;
+        for (int i = 1, n = buffers.size(); i < n; i += 2) {
+            bodyLength += pad(buffers.getQuick(i));
+        }
+
+        final long header = beginMessage(HEADER_RECORD_BATCH, bodyLength);
+        final long batch = beginTable(RECORD_BATCH_VTABLE, 8);
+        putOffset(header, batch);
+        meta.putLong(batch + 8, rowCount);
+
+        // FieldNode structs
+        alignStructVector();
+        putOffset(batch + 4, meta.getAppendOffset());
+        meta.putInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            meta.putLong(rowCount);
+            meta.putLong(columns.getQuick(i).getNullCount(rowCount));
+        }
+
+        // Buffer structs
+        alignStructVector();
+        putOffset(batch + 16, meta.getAppendOffset());
+        meta.putInt(buffers.size() / 2);
+        long offset = 0;
+        for (int i = 1, n = buffers.size(); i < n; i += 2) {
+            final long size = buffers.getQuick(i);
+            meta.putLong(offset);
+            meta.putLong(size);
+            offset += pad(size);
+        }
+        endMessage();
+
+        for (int i = 0, n = buffers.size(); i < n; i += 2) {
+            final long size = buffers.getQuick(i + 1);
+            addSegment(buffers.getQuick(i), size);
+            addSegment(zeroes, pad(size) - size);
+        }
+        rowCount = 0;
+    }
+
+    public void putSchema() {
+        final long header = beginMessage(HEADER_SCHEMA, 0);
+        final long schema = beginTable(SCHEMA_VTABLE, 4);
+        putOffset(header, schema);
+
+        // vector of Field tables
+        alignTo(4);
+        final long fields = meta.getAppendOffset();
+        putOffset(schema + 4, fields);
+        meta.putInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            meta.putInt(0);
+        }
+
+        for (int i = 0; i < columnCount; i++) {
+            final ArrowColumn column = columns.getQuick(i);
+            final long field = beginTable(FIELD_VTABLE, 4);
+            putOffset(fields + 4 + 4L * i, field);
+            meta.putBool(field + 16, column.isNullable());
+            meta.putByte(field + 17, column.arrowType);
+            putString(field + 4, metadata.getColumnName(i));
+            putType(field + 8, column);
+            // children must be present even when type has none
+            alignTo(4);
+            putOffset(field + 12, meta.getAppendOffset());
+            meta.putInt(0);
+        }
+        endMessage();
+    }
+
+    private static long pad(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static void putLong(ArrowColumn column, long row, long value) {
+        column.putValidity(row, value != Numbers.LONG_NaN);
+        column.data.putLong(value);
+    }
+
+    private void addSegment(long address, long size) {
+        if (size > 0) {
+            segments.add(address);
+            segments.add(size);
+        }
+    }
+
+    private void alignStructVector() {
+        // structs of record batch are 8 bytes aligned, length of the vector precedes them
+        while (((meta.getAppendOffset() + Integer.BYTES) & 7) != 0) {
+            meta.putByte((byte) 0);
+        }
+    }
+
+    private void alignTo(int alignment) {
+        // flatbuffer starts at 8 bytes aligned offset, alignment is the same within and outside of it
+        while ((meta.getAppendOffset() & (alignment - 1)) != 0) {
+            meta.putByte((byte) 0);
+        }
+    }
+
+    /**
+     * Starts message with continuation marker, metadata length placeholder and Message table.
+     *
+     * @return offset of Message.header field
+     */
+    private long beginMessage(byte headerType, long bodyLength) {
+        beginSegments();
+        meta.putInt(-1);
+        meta.putInt(0);
+        final long root = meta.getAppendOffset();
+        meta.putInt(0);
+        final long message = beginTable(MESSAGE_VTABLE, 8);
+        putOffset(root, message);
+        meta.putShort(message + 16, METADATA_VERSION_V5);
+        meta.putByte(message + 18, headerType);
+        meta.putLong(message + 8, bodyLength);
+        return message + 4;
+    }
+
+    private void beginSegments() {
+        meta.truncate();
+        segments.clear();
+        segmentIndex = 0;
+        segmentOffset = 0;
+    }
+
+    /**
+     * Writes vtable followed by zeroed table, which refers to the vtable.
+     *
+     * @return offset of the table
+     */
+    private long beginTable(short[] vtable, int alignment) {
+        alignTo(2);
+        final long vtableOffset = meta.getAppendOffset();
+        for (int i = 0, n = vtable.length; i < n; i++) {
+            meta.putShort(vtable[i]);
+        }
+        alignTo(alignment);
+        final long table = meta.getAppendOffset();
+        meta.putInt((int) (table - vtableOffset));
+        for (int i = Integer.BYTES, n = vtable[1]; i < n; i++) {
+            meta.putByte((byte) 0);
+        }
+        return table;
+    }
+
+    private void endMessage() {
+        alignTo(8);
+        meta.putInt(Integer.BYTES, (int) (meta.getAppendOffset() - 2 * Integer.BYTES));
+        addSegment(meta.getAddress(), meta.getAppendOffset());
+    }
+
+    private void putOffset(long field, long target) {
+        meta.putInt(field, (int) (target - field));
+    }
+
+    private void putString(long field, CharSequence value) {
+        alignTo(4);
+        final long string = meta.getAppendOffset();
+        putOffset(field, string);
+        meta.putInt(0);
+        utf8Sink.of(meta).encodeUtf8(value);
+        meta.putInt(string, (int) (meta.getAppendOffset() - string - Integer.BYTES));
+        meta.putByte((byte) 0);
+    }
+
+    private void putType(long field, ArrowColumn column) {
+        final long type;
+        switch (column.arrowType) {
+            case TYPE_INT:
+                type = beginTable(INT_VTABLE, 4);
+                meta.putInt(type + 4, 8 << column.sizeBits);
+                meta.putBool(type + 8, true);
+                break;
+            case TYPE_FLOATING_POINT:
+                type = beginTable(FLOATING_POINT_VTABLE, 4);
+                meta.putShort(type + 4, column.tag == ColumnType.FLOAT ? PRECISION_SINGLE : PRECISION_DOUBLE);
+                break;
+            case TYPE_TIMESTAMP:
+                type = beginTable(TIMESTAMP_VTABLE, 4);
+                meta.putShort(type + 8, column.tag == ColumnType.DATE ? TIME_UNIT_MILLISECOND : TIME_UNIT_MICROSECOND);
+                putString(type + 4, "UTC");
+                break;
+            default:
+                type = beginTable(EMPTY_VTABLE, 4);
+                break;
+        }
+        putOffset(field, type);
+    }
+
+    private void resetColumns() {
+        for (int i = 0; i < columnCount; i++) {
+            columns.getQuick(i).reset();
+        }
+    }
+
+    private static class ArrowColumn implements Closeable {
+        private final MemoryCARW validity;
+        private final MemoryCARW offsets;
+        private final MemoryCARW data;
+        private short tag;
+        private byte arrowType;
+        private int sizeBits;
+        private long nullCount;
+        // fixed size data of page frame, which batch refers to in place
+        private long frameData;
+        private long frameDataSize;
+
+        private ArrowColumn(long pageSize) {
+            this.validity = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_HTTP_CONN);
+            this.offsets = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_HTTP_CONN);
+            this.data = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_HTTP_CONN);
+        }
+
+        @Override
+        public void close() {
+            validity.close();
+            offsets.close();
+            data.close();
+            frameData = 0;
+            frameDataSize = 0;
+        }
+
+        private void addBuffers(long rowCount, LongList buffers) {
+            switch (arrowType) {
+                case TYPE_NULL:
+                    break;
+                case TYPE_UTF8:
+                case TYPE_BINARY:
+                    addValidity(rowCount, buffers);
+                    buffers.add(offsets.getAddress());
+                    buffers.add(offsets.getAppendOffset());
+                    buffers.add(data.getAddress());
+                    buffers.add(data.getAppendOffset());
+                    break;
+                default:
+                    addValidity(rowCount, buffers);
+                    if (frameData != 0) {
+                        buffers.add(frameData);
+                        buffers.add(frameDataSize);
+                    } else {
+                        buffers.add(data.getAddress());
+                        buffers.add(data.getAppendOffset());
+                    }
+                    break;
+            }
+        }
+
+        private void addValidity(long rowCount, LongList buffers) {
+            // validity bitmap may be omitted when there are no nulls
+            buffers.add(validity.getAddress());
+            buffers.add(nullCount > 0 ? (rowCount + 7) >>> 3 : 0);
+        }
+
+        private long getNullCount(long rowCount) {
+            return arrowType == TYPE_NULL ? rowCount : nullCount;
+        }
+
+        private boolean isNullable() {
+            switch (tag) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
+        private void of(int columnType) {
+            this.tag = ColumnType.tagOf(columnType);
+            switch (tag) {
+                case ColumnType.BOOLEAN:
+                    arrowType = TYPE_BOOL;
+                    break;
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.GEOBYTE:
+                case ColumnType.GEOSHORT:
+                case ColumnType.GEOINT:
+                case ColumnType.GEOLONG:
+                    arrowType = TYPE_INT;
+                    break;
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                    arrowType = TYPE_FLOATING_POINT;
+                    break;
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                    arrowType = TYPE_TIMESTAMP;
+                    break;
+                case ColumnType.CHAR:
+                case ColumnType.STRING:
+                case ColumnType.SYMBOL:
+                case ColumnType.LONG256:
+                    arrowType = TYPE_UTF8;
+                    break;
+                case ColumnType.BINARY:
+                    arrowType = TYPE_BINARY;
+                    break;
+                default:
+                    arrowType = TYPE_NULL;
+                    break;
+            }
+            this.sizeBits = arrowType == TYPE_INT || arrowType == TYPE_FLOATING_POINT || arrowType == TYPE_TIMESTAMP
+                    ? ColumnType.pow2SizeOf(columnType)
+                    : 0;
+        }
+
+        private void ofFrameData(long address, long rowCount) {
+            frameData = address;
+            frameDataSize = rowCount << sizeBits;
+            if (!isNullable()) {
+                return;
+            }
+            final long bitmapSize = (rowCount + 7) >>> 3;
+            final long bitmap = validity.appendAddressFor(bitmapSize);
+            Vect.memset(bitmap, bitmapSize, 0);
+            long valid = 0;
+            switch (tag) {
+                case ColumnType.INT:
+                    for (long r = 0; r < rowCount; r++) {
+                        if (Unsafe.getUnsafe().getInt(address + (r << 2)) != Numbers.INT_NaN) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                    for (long r = 0; r < rowCount; r++) {
+                        if (Unsafe.getUnsafe().getLong(address + (r << 3)) != Numbers.LONG_NaN) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+                case ColumnType.FLOAT:
+                    for (long r = 0; r < rowCount; r++) {
+                        final float value = Unsafe.getUnsafe().getFloat(address + (r << 2));
+                        if (value == value) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+                case ColumnType.DOUBLE:
+                    for (long r = 0; r < rowCount; r++) {
+                        final double value = Unsafe.getUnsafe().getDouble(address + (r << 3));
+                        if (value == value) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+                case ColumnType.GEOBYTE:
+                    for (long r = 0; r < rowCount; r++) {
+                        if (Unsafe.getUnsafe().getByte(address + r) != GeoHashes.BYTE_NULL) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+                case ColumnType.GEOSHORT:
+                    for (long r = 0; r < rowCount; r++) {
+                        if (Unsafe.getUnsafe().getShort(address + (r << 1)) != GeoHashes.SHORT_NULL) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+                case ColumnType.GEOINT:
+                    for (long r = 0; r < rowCount; r++) {
+                        if (Unsafe.getUnsafe().getInt(address + (r << 2)) != GeoHashes.INT_NULL) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+                default:
+                    for (long r = 0; r < rowCount; r++) {
+                        if (Unsafe.getUnsafe().getLong(address + (r << 3)) != GeoHashes.NULL) {
+                            setBit(bitmap, r);
+                            valid++;
+                        }
+                    }
+                    break;
+            }
+            nullCount = rowCount - valid;
+        }
+
+        private static void setBit(long bitmap, long row) {
+            final long p = bitmap + (row >>> 3);
+            Unsafe.getUnsafe().putByte(p, (byte) (Unsafe.getUnsafe().getByte(p) | (1 << (row & 7))));
+        }
+
+        private void putBin(long row, BinarySequence value) {
+            if (value != null) {
+                final long len = value.length();
+                value.copyTo(data.appendAddressFor(len), 0, len);
+            }
+            putVarValidity(row, value != null);
+        }
+
+        private void putBin(long row, long address, long len) {
+            if (len > -1) {
+                Vect.memcpy(data.appendAddressFor(len), address, len);
+            }
+            putVarValidity(row, len > -1);
+        }
+
+        private void putBit(long row, boolean value) {
+            if ((row & 7) == 0) {
+                data.putByte((byte) 0);
+            }
+            if (value) {
+                setBit(data.getAddress(), row);
+            }
+        }
+
+        private void putChar(long row, char value, Utf8Sink utf8Sink) {
+            if (value != 0) {
+                utf8Sink.of(data).putUtf8(value);
+            }
+            putVarValidity(row, value != 0);
+        }
+
+        private void putLong256(long row, long l0, long l1, long l2, long l3, Utf8Sink utf8Sink) {
+            // appends nothing for null
+            Numbers.appendLong256(l0, l1, l2, l3, utf8Sink.of(data));
+            putVarValidity(row, l0 != Numbers.LONG_NaN || l1 != Numbers.LONG_NaN || l2 != Numbers.LONG_NaN || l3 != Numbers.LONG_NaN);
+        }
+
+        private void putNull(long row) {
+            switch (arrowType) {
+                case TYPE_NULL:
+                    break;
+                case TYPE_BOOL:
+                    putBit(row, false);
+                    break;
+                case TYPE_UTF8:
+                case TYPE_BINARY:
+                    putVarValidity(row, false);
+                    break;
+                default:
+                    // masked value is the same null QuestDB stores, so that batch does not depend on the way it is built
+                    switch (tag) {
+                        case ColumnType.BYTE:
+                            // byte and short have no null, they read as 0 the same as any other missing value does
+                            data.putByte((byte) 0);
+                            return;
+                        case ColumnType.SHORT:
+                            data.putShort((short) 0);
+                            return;
+                        case ColumnType.INT:
+                            data.putInt(Numbers.INT_NaN);
+                            break;
+                        case ColumnType.FLOAT:
+                            data.putFloat(Float.NaN);
+                            break;
+                        case ColumnType.DOUBLE:
+                            data.putDouble(Double.NaN);
+                            break;
+                        case ColumnType.GEOBYTE:
+                            data.putByte(GeoHashes.BYTE_NULL);
+                            break;
+                        case ColumnType.GEOSHORT:
+                            data.putShort(GeoHashes.SHORT_NULL);
+                            break;
+                        case ColumnType.GEOINT:
+                            data.putInt(GeoHashes.INT_NULL);
+                            break;
+                        case ColumnType.GEOLONG:
+                            data.putLong(GeoHashes.NULL);
+                            break;
+                        default:
+                            // long, date and timestamp
+                            data.putLong(Numbers.LONG_NaN);
+                            break;
+                    }
+                    putValidity(row, false);
+                    break;
+            }
+        }
+
+        private void putStr(long row, CharSequence value, Utf8Sink utf8Sink) {
+            if (value != null) {
+                utf8Sink.of(data).encodeUtf8(value);
+            }
+            putVarValidity(row, value != null);
+        }
+
+        private void putValidity(long row, boolean valid) {
+            if ((row & 7) == 0) {
+                validity.putByte((byte) 0);
+            }
+            if (valid) {
+                setBit(validity.getAddress(), row);
+            } else {
+                nullCount++;
+            }
+        }
+
+        private void putVarValidity(long row, boolean valid) {
+            putValidity(row, valid);
+            offsets.putInt((int) data.getAppendOffset());
+        }
+
+        private void reset() {
+            validity.truncate();
+            offsets.truncate();
+            data.truncate();
+            nullCount = 0;
+            frameData = 0;
+            frameDataSize = 0;
+            if (arrowType == TYPE_UTF8 || arrowType == TYPE_BINARY) {
+                offsets.putInt(0);
+            }
+        }
+    }
+
+    private static class Utf8Sink extends AbstractCharSink {
+        private MemoryCARW mem;
+
+        @Override
+        public CharSink put(CharSequence cs) {
+            for (int i = 0, n = cs.length(); i < n; i++) {
+                mem.putByte((byte) cs.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public CharSink put(char c) {
+            mem.putByte((byte) c);
+            return this;
+        }
+
+        private Utf8Sink of(MemoryCARW mem) {
+            this.mem = mem;
+            return this;
+        }
+    }
+}
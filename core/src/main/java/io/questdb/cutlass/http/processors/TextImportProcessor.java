@@ -88,6 +88,10 @@ public class TextImportProcessor implements HttpRequestProcessor, HttpMultipartC
             throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
         if (hi > lo) {
             try {
+                if (transientState.spoolFd != -1) {
+                    transientState.spool(lo, hi);
+                    return;
+                }
                 transientState.lo = lo;
                 transientState.hi = hi;
                 transientState.textLoader.parse(lo, hi, transientContext.getCairoSecurityContext());
@@ -134,15 +138,25 @@ public class TextImportProcessor implements HttpRequestProcessor, HttpMultipartC
             }
 
             transientState.analysed = false;
+            final boolean overwrite = Chars.equalsNc("true", rh.getUrlParam("overwrite"));
+            final int atomicity = getAtomicity(rh.getUrlParam("atomicity"));
             transientState.textLoader.configureDestination(
                     name,
-                    Chars.equalsNc("true", rh.getUrlParam("overwrite")),
+                    overwrite,
                     Chars.equalsNc("true", rh.getUrlParam("durable")),
-                    getAtomicity(rh.getUrlParam("atomicity")),
+                    atomicity,
                     partitionBy,
                     timestampIndexCol
             );
 
+            if (isParallelImportSupported(rh, overwrite, atomicity, partitionBy)) {
+                try {
+                    transientState.openSpool(name, partitionBy, timestampIndexCol, transientContext.getFd());
+                } catch (CairoException e) {
+                    sendErrorAndThrowDisconnect(e.getFlyweightMessage());
+                }
+            }
+
             CharSequence commitLagChars = rh.getUrlParam("commitLag");
             if (commitLagChars != null) {
                 try {
@@ -193,6 +207,10 @@ public class TextImportProcessor implements HttpRequestProcessor, HttpMultipartC
     public void onPartEnd() throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
         try {
             LOG.debug().$("part end").$();
+            if (transientState.spoolFd != -1) {
+                importSpool();
+                return;
+            }
             transientState.textLoader.wrapUp();
             if (transientState.messagePart == MESSAGE_DATA) {
                 sendResponse(transientContext);
@@ -486,10 +504,53 @@ public class TextImportProcessor implements HttpRequestProcessor, HttpMultipartC
         state.clear();
     }
 
+    private void importSpool() throws TextException, PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
+        final TextImportProcessorState state = transientState;
+        try {
+            if (state.spoolLen > 0 && !state.importSpool(transientContext.getCairoSecurityContext(), state.forceHeader)) {
+                // table is not eligible, e.g. it exists and is not empty, data is loaded serially
+                final FilesFacade ff = engine.getConfiguration().getFilesFacade();
+                final long address = ff.mmap(state.spoolFd, state.spoolLen, 0, Files.MAP_RO, MemoryTag.MMAP_DEFAULT);
+                if (address == -1) {
+                    throw CairoException.instance(ff.errno()).put("could not mmap spool file [size=").put(state.spoolLen).put(']');
+                }
+                try {
+                    state.textLoader.parse(address, address + state.spoolLen, transientContext.getCairoSecurityContext());
+                    state.textLoader.wrapUp();
+                } finally {
+                    ff.munmap(address, state.spoolLen, MemoryTag.MMAP_DEFAULT);
+                }
+            }
+        } finally {
+            state.closeSpool();
+        }
+        sendResponse(transientContext);
+    }
+
     private boolean isJson(HttpConnectionContext transientContext) {
         return Chars.equalsNc("json", transientContext.getRequestHeader().getUrlParam("fmt"));
     }
 
+    /**
+     * Data part is imported by {@link io.questdb.cutlass.text.ParallelCsvFileImporter} when request asks
+     * for the semantics the importer provides: rows with bad values are skipped, existing table is kept
+     * and table attributes are not altered. Schema part and explicit delimiter are not supported by
+     * the importer either.
+     */
+    private boolean isParallelImportSupported(HttpRequestHeader rh, boolean overwrite, int atomicity, int partitionBy) {
+        final CairoConfiguration configuration = engine.getConfiguration();
+        return configuration.isSqlParallelCopyEnabled()
+                && configuration.getInputRoot() != null
+                && PartitionBy.isPartitioned(partitionBy)
+                && transientState.messagePart != MESSAGE_SCHEMA
+                && !overwrite
+                && atomicity == Atomicity.SKIP_ROW
+                && rh.getUrlParam("delimiter") == null
+                && rh.getUrlParam("commitLag") == null
+                && rh.getUrlParam("maxUncommittedRows") == null
+                && !Chars.equalsNc("true", rh.getUrlParam("skipLev"));
+    }
+
     private void resumeError(TextImportProcessorState state, HttpChunkedResponseSocket socket) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
         if (state.responseState == RESPONSE_ERROR) {
             socket.bookmark();
@@ -25,13 +25,23 @@
 package io.questdb.cutlass.http.processors;
 
 import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.CairoSecurityContext;
+import io.questdb.cutlass.text.ParallelCsvFileImporter;
+import io.questdb.cutlass.text.TextException;
 import io.questdb.cutlass.text.TextLoader;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.FilesFacade;
 import io.questdb.std.Misc;
 import io.questdb.std.Mutable;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
 
 import java.io.Closeable;
 
 class TextImportProcessorState implements Mutable, Closeable {
+    private static final Log LOG = LogFactory.getLog(TextImportProcessorState.class);
     public static final int STATE_OK = 0;
     //    public static final int STATE_INVALID_FORMAT = 1;
     public static final int STATE_DATA_ERROR = 2;
@@ -48,8 +58,21 @@ class TextImportProcessorState implements Mutable, Closeable {
     int state;
     boolean json = false;
     CharSequence errorMessage;
+    // data part is spooled to a file under the input root and imported by ParallelCsvFileImporter
+    final StringSink spoolTableName = new StringSink();
+    final StringSink spoolTimestampCol = new StringSink();
+    int spoolPartitionBy;
+    long spoolFd = -1;
+    long spoolLen;
+    boolean parallelImported = false;
+    private final CairoEngine engine;
+    private final FilesFacade ff;
+    private final Path spoolPath = new Path();
+    private ParallelCsvFileImporter parallelImporter;
 
     TextImportProcessorState(CairoEngine engine) {
+        this.engine = engine;
+        this.ff = engine.getConfiguration().getFilesFacade();
         this.textLoader = new TextLoader(engine);
     }
 
@@ -62,19 +85,88 @@ class TextImportProcessorState implements Mutable, Closeable {
         state = STATE_OK;
         textLoader.clear();
         errorMessage = null;
+        parallelImported = false;
+        closeSpool();
     }
 
     @Override
     public void close() {
         clear();
         textLoader = Misc.free(textLoader);
+        parallelImporter = Misc.free(parallelImporter);
+        spoolPath.close();
     }
 
     public void snapshotStateAndCloseWriter() {
         if (completeState == null) {
             completeState = new TextLoaderCompletedState();
         }
+        if (parallelImported) {
+            // importer has released the writer, state is copied at the end of the import
+            return;
+        }
         completeState.copyState(textLoader);
         textLoader.closeWriter();
     }
+
+    void closeSpool() {
+        if (spoolFd != -1) {
+            ff.close(spoolFd);
+            spoolFd = -1;
+            if (!ff.remove(spoolPath)) {
+                LOG.error().$("could not remove spool file [path=").$(spoolPath).$(", errno=").$(ff.errno()).I$();
+            }
+        }
+    }
+
+    /**
+     * Imports the spooled data part in parallel.
+     *
+     * @return false when table cannot be imported in parallel, spooled data is then to be loaded by text loader
+     */
+    boolean importSpool(CairoSecurityContext securityContext, boolean forceHeader) throws TextException {
+        if (parallelImporter == null) {
+            parallelImporter = new ParallelCsvFileImporter(engine);
+        }
+        if (parallelImporter.importFile(
+                securityContext,
+                spoolTableName,
+                spoolFd,
+                spoolLen,
+                forceHeader,
+                spoolPartitionBy,
+                spoolTimestampCol
+        )) {
+            if (completeState == null) {
+                completeState = new TextLoaderCompletedState();
+            }
+            completeState.copyState(parallelImporter, spoolTableName, forceHeader);
+            parallelImported = true;
+            return true;
+        }
+        return false;
+    }
+
+    void openSpool(CharSequence tableName, int partitionBy, CharSequence timestampCol, long connectionFd) {
+        spoolTableName.clear();
+        spoolTableName.put(tableName);
+        spoolTimestampCol.clear();
+        spoolTimestampCol.put(timestampCol);
+        spoolPartitionBy = partitionBy;
+        spoolLen = 0;
+        // connection descriptor keeps names of concurrent requests apart
+        spoolPath.of(engine.getConfiguration().getInputRoot()).concat(".imp.").put(connectionFd).$();
+        spoolFd = ff.openCleanRW(spoolPath, 0);
+        if (spoolFd == -1) {
+            throw CairoException.instance(ff.errno()).put("could not open spool file [path=").put(spoolPath).put(']');
+        }
+    }
+
+    void spool(long lo, long hi) {
+        final int len = (int) (hi - lo);
+        if (ff.append(spoolFd, lo, len) != len) {
+            throw CairoException.instance(ff.errno()).put("could not write spool file [path=").put(spoolPath).put(']');
+        }
+        spoolLen += len;
+    }
 }
@@ -22,17 +22,28 @@
  *
  ******************************************************************************/
 
+
 package io.questdb.cutlass.http.processors;
 
 import io.questdb.cairo.GenericRecordMetadata;
 import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cutlass.text.ParallelCsvFileImporter;
 import io.questdb.cutlass.text.TextLoader;
 import io.questdb.std.LongList;
+import io.questdb.std.str.StringSink;
 
 public class TextLoaderCompletedState {
+    private final LongList columnErrorCounts = new LongList();
+    private final StringSink tableName = new StringSink();
+    private final StringSink timestampCol = new StringSink();
     private long writtenLineCount;
+    private long parsedLineCount;
+    private long errorLineCount;
     private RecordMetadata metadata;
-    private TextLoader textLoader;
+    private int partitionBy;
+    private int warnings;
+    private boolean forceHeaders;
+    private boolean timestampColSet;
 
     public void copyState(TextLoader textLoader) {
         // Some values are come from TableWriter and has to be copied
@@ -41,16 +52,33 @@ public class TextLoaderCompletedState {
         this.metadata = textLoader.getMetadata() != null
                 ? GenericRecordMetadata.copyOf(textLoader.getMetadata())
                 : null;
-        // Some values are safe to get from TextLoader
-        this.textLoader = textLoader;
+        this.parsedLineCount = textLoader.getParsedLineCount();
+        this.errorLineCount = textLoader.getErrorLineCount();
+        this.partitionBy = textLoader.getPartitionBy();
+        this.warnings = textLoader.getWarnings();
+        this.forceHeaders = textLoader.isForceHeaders();
+        copyColumnErrorCounts(textLoader.getColumnErrorCounts());
+        copyNames(textLoader.getTableName(), textLoader.getTimestampCol());
+    }
+
+    public void copyState(ParallelCsvFileImporter importer, CharSequence tableName, boolean forceHeaders) {
+        this.writtenLineCount = importer.getWrittenLineCount();
+        this.metadata = importer.getMetadata();
+        this.parsedLineCount = importer.getParsedLineCount();
+        this.errorLineCount = importer.getErrorLineCount();
+        this.partitionBy = importer.getPartitionBy();
+        this.warnings = importer.getWarnings();
+        this.forceHeaders = forceHeaders;
+        copyColumnErrorCounts(importer.getColumnErrorCounts());
+        copyNames(tableName, importer.getTimestampCol());
     }
 
     public LongList getColumnErrorCounts() {
-        return textLoader.getColumnErrorCounts();
+        return columnErrorCounts;
     }
 
     public long getErrorLineCount() {
-        return textLoader.getErrorLineCount();
+        return errorLineCount;
     }
 
     public RecordMetadata getMetadata() {
@@ -58,19 +86,19 @@ public class TextLoaderCompletedState {
     }
 
     public long getParsedLineCount() {
-        return textLoader.getParsedLineCount();
+        return parsedLineCount;
     }
 
     public int getPartitionBy() {
-        return textLoader.getPartitionBy();
+        return partitionBy;
     }
 
     public CharSequence getTableName() {
-        return textLoader.getTableName();
+        return tableName;
     }
 
     public CharSequence getTimestampCol() {
-        return textLoader.getTimestampCol();
+        return timestampColSet ? timestampCol : null;
     }
 
     public long getWrittenLineCount() {
@@ -78,10 +106,25 @@ public class TextLoaderCompletedState {
     }
 
     public boolean isForceHeaders() {
-        return textLoader.isForceHeaders();
+        return forceHeaders;
     }
 
     public int getWarnings() {
-        return textLoader.getWarnings();
+        return warnings;
+    }
+
+    private void copyColumnErrorCounts(LongList counts) {
+        columnErrorCounts.clear();
+        columnErrorCounts.add(counts);
+    }
+
+    private void copyNames(CharSequence tableName, CharSequence timestampCol) {
+        this.tableName.clear();
+        this.tableName.put(tableName);
+        this.timestampCol.clear();
+        this.timestampColSet = timestampCol != null;
+        if (timestampColSet) {
+            this.timestampCol.put(timestampCol);
+        }
     }
 }
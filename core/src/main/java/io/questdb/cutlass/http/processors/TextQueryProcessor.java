@@ -29,6 +29,7 @@ import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.CairoError;
 import io.questdb.cairo.CairoException;
 import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.sql.PageFrame;
 import io.questdb.cairo.sql.ReaderOutOfDateException;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cutlass.http.*;
@@ -59,6 +60,8 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
     // by the same thread that executes the dispatcher.
     private static final LocalValue<TextQueryProcessorState> LV = new LocalValue<>();
     private static final Log LOG = LogFactory.getLog(TextQueryProcessor.class);
+    private static final CharSequence CONTENT_TYPE_ARROW = "application/vnd.apache.arrow.stream";
+    private static final CharSequence CONTENT_TYPE_JSON = "application/json; charset=utf-8";
     private final SqlCompiler compiler;
     private final JsonQueryProcessorConfiguration configuration;
     private final int floatScale;
@@ -133,7 +136,11 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
                     boolean runQuery = true;
                     do {
                         try {
-                            state.cursor = state.recordCursorFactory.getCursor(sqlExecutionContext);
+                            if (state.arrow && state.recordCursorFactory.supportPageFrameCursor()) {
+                                state.pageFrameCursor = state.recordCursorFactory.getPageFrameCursor(sqlExecutionContext);
+                            } else {
+                                state.cursor = state.recordCursorFactory.getCursor(sqlExecutionContext);
+                            }
                             runQuery = false;
                         } catch (ReaderOutOfDateException e) {
                             info(state).$(e.getFlyweightMessage()).$();
@@ -189,7 +196,7 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
             HttpConnectionContext context
     ) throws PeerDisconnectedException, PeerIsSlowToReadException {
         TextQueryProcessorState state = LV.get(context);
-        if (state == null || state.cursor == null) {
+        if (state == null || (state.cursor == null && state.pageFrameCursor == null)) {
             return;
         }
 
@@ -197,6 +204,11 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
         sqlExecutionContext.with(context.getCairoSecurityContext(), null, state.rnd, context.getFd(), circuitBreaker.of(context.getFd()));
         LOG.debug().$("resume [fd=").$(context.getFd()).$(']').$();
 
+        if (state.arrow) {
+            resumeSendArrow(context, state);
+            return;
+        }
+
         final HttpChunkedResponseSocket socket = context.getChunkedResponseSocket();
         final int columnCount = state.metadata.getColumnCount();
 
@@ -302,27 +314,142 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
         }
     }
 
+    private static boolean putArrowFrameBatch(TextQueryProcessorState state, ArrowStreamWriter writer) {
+        while (state.count < state.stop) {
+            if (state.pageFrame == null) {
+                state.pageFrame = state.pageFrameCursor.next();
+                if (state.pageFrame == null) {
+                    return false;
+                }
+                state.frameRowLo = state.pageFrame.getPartitionLo();
+            }
+
+            final PageFrame frame = state.pageFrame;
+            final long frameHi = frame.getPartitionHi();
+            long lo = state.frameRowLo;
+            if (state.count < state.skip) {
+                final long skipped = Math.min(state.skip - state.count, frameHi - lo);
+                lo += skipped;
+                state.count += skipped;
+            }
+            final long hi = Math.min(frameHi, lo + Math.min(writer.getMaxBatchRowCount(), state.stop - state.count));
+            if (hi < frameHi) {
+                state.frameRowLo = hi;
+            } else {
+                // frame stays valid until the batch is sent, the next one is fetched after that
+                state.pageFrame = null;
+            }
+
+            if (hi > lo) {
+                writer.putFrameBatch(frame, state.pageFrameCursor, lo - frame.getPartitionLo(), hi - frame.getPartitionLo());
+                state.count += hi - lo;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean putArrowRecordBatch(TextQueryProcessorState state, ArrowStreamWriter writer) {
+        final Record record = state.cursor.getRecord();
+        while (!writer.isBatchFull() && state.count < state.stop && state.cursor.hasNext()) {
+            if (++state.count > state.skip) {
+                writer.putRecord(record);
+            }
+        }
+        if (writer.getRowCount() > 0) {
+            writer.putRecordBatch();
+            return true;
+        }
+        return false;
+    }
+
     private static void putStringOrNull(CharSink r, CharSequence str) {
         if (str != null) {
             r.encodeUtf8AndQuote(str);
         }
     }
 
+    private static void sendArrow(
+            HttpChunkedResponseSocket socket,
+            ArrowStreamWriter writer
+    ) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        while (!writer.isDrained()) {
+            final long lo = writer.getSegmentLo();
+            final long hi = writer.getSegmentHi();
+            final int n = socket.putBytes(lo, hi);
+            writer.consume(n);
+            if (lo + n < hi) {
+                // response buffer is full
+                socket.sendChunk(false);
+            }
+        }
+    }
+
     private static void readyForNextRequest(HttpConnectionContext context) {
         LOG.info().$("all sent [fd=").$(context.getFd()).$(", lastRequestBytesSent=").$(context.getLastRequestBytesSent()).$(", nCompletedRequests=").$(context.getNCompletedRequests() + 1)
                 .$(", totalBytesSent=").$(context.getTotalBytesSent()).$(']').$();
     }
 
+    private void resumeSendArrow(
+            HttpConnectionContext context,
+            TextQueryProcessorState state
+    ) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        final HttpChunkedResponseSocket socket = context.getChunkedResponseSocket();
+        final ArrowStreamWriter writer = state.getArrowWriter();
+
+        OUT:
+        while (true) {
+            switch (state.queryState) {
+                case JsonQueryProcessorState.QUERY_PREFIX:
+                    writer.of(state.metadata);
+                    writer.putSchema();
+                    state.queryState = JsonQueryProcessorState.QUERY_METADATA;
+                    // fall through
+                case JsonQueryProcessorState.QUERY_METADATA:
+                    sendArrow(socket, writer);
+                    state.queryState = JsonQueryProcessorState.QUERY_RECORD_START;
+                    // fall through
+                case JsonQueryProcessorState.QUERY_RECORD_START:
+                    if (state.pageFrameCursor != null ? putArrowFrameBatch(state, writer) : putArrowRecordBatch(state, writer)) {
+                        state.queryState = JsonQueryProcessorState.QUERY_RECORD;
+                    } else {
+                        writer.putEndOfStream();
+                        state.queryState = JsonQueryProcessorState.QUERY_SUFFIX;
+                        break;
+                    }
+                    // fall through
+                case JsonQueryProcessorState.QUERY_RECORD:
+                    sendArrow(socket, writer);
+                    state.queryState = JsonQueryProcessorState.QUERY_RECORD_START;
+                    break;
+                case JsonQueryProcessorState.QUERY_SUFFIX:
+                    sendArrow(socket, writer);
+                    sendDone(socket, state);
+                    break OUT;
+                default:
+                    break OUT;
+            }
+        }
+        readyForNextRequest(context);
+    }
+
     private LogRecord error(TextQueryProcessorState state) {
         return LOG.error().$('[').$(state.getFd()).$("] ");
     }
 
     protected void header(HttpChunkedResponseSocket socket, TextQueryProcessorState state) throws PeerDisconnectedException, PeerIsSlowToReadException {
-        socket.status(200, "text/csv; charset=utf-8");
+        final CharSequence extension;
+        if (state.arrow) {
+            socket.status(200, CONTENT_TYPE_ARROW);
+            extension = ".arrow";
+        } else {
+            socket.status(200, "text/csv; charset=utf-8");
+            extension = ".csv";
+        }
         if (state.fileName != null && state.fileName.length() > 0) {
-            socket.headers().put("Content-Disposition: attachment; filename=\"").put(state.fileName).put(".csv\"").put(Misc.EOL);
+            socket.headers().put("Content-Disposition: attachment; filename=\"").put(state.fileName).put(extension).put('"').put(Misc.EOL);
         } else {
-            socket.headers().put("Content-Disposition: attachment; filename=\"questdb-query-").put(clock.getTicks()).put(".csv\"").put(Misc.EOL);
+            socket.headers().put("Content-Disposition: attachment; filename=\"questdb-query-").put(clock.getTicks()).put(extension).put('"').put(Misc.EOL);
         }
 
         socket.headers().setKeepAlive(configuration.getKeepAliveHeader());
@@ -353,6 +480,9 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
             HttpRequestHeader request,
             TextQueryProcessorState state
     ) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        // errors are reported as JSON either way, Arrow clients need to tell them apart by status
+        state.arrow = Chars.equalsNc("arrow", request.getUrlParam("fmt"));
+
         // Query text.
         final DirectByteCharSequence query = request.getUrlParam("query");
         if (query == null || query.length() == 0) {
@@ -507,7 +637,13 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
             CharSequence message,
             TextQueryProcessorState state
     ) throws PeerDisconnectedException, PeerIsSlowToReadException {
-        header(socket, state);
+        if (state.arrow) {
+            socket.status(400, CONTENT_TYPE_JSON);
+            socket.headers().setKeepAlive(configuration.getKeepAliveHeader());
+            socket.sendHeader();
+        } else {
+            header(socket, state);
+        }
         JsonQueryProcessorState.prepareExceptionJson(socket, position, message, state.query);
     }
 
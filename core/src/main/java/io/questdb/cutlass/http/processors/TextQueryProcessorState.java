@@ -24,6 +24,8 @@
 
 package io.questdb.cutlass.http.processors;
 
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.PageFrameCursor;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.cairo.sql.RecordCursorFactory;
@@ -37,6 +39,8 @@ import io.questdb.std.str.StringSink;
 import java.io.Closeable;
 
 public class TextQueryProcessorState implements Mutable, Closeable {
+    private static final long ARROW_PAGE_SIZE = 64 * 1024;
+    private static final int ARROW_BATCH_ROW_COUNT = 64 * 1024;
     final StringSink query = new StringSink();
     private final HttpConnectionContext httpConnectionContext;
     boolean countRows = false;
@@ -53,6 +57,12 @@ public class TextQueryProcessorState implements Mutable, Closeable {
     int columnIndex;
     private boolean queryCacheable = false;
     String fileName;
+    boolean arrow;
+    // plain table scans stream Arrow batches straight off page frames
+    PageFrameCursor pageFrameCursor;
+    PageFrame pageFrame;
+    long frameRowLo;
+    private ArrowStreamWriter arrowWriter;
 
     public TextQueryProcessorState(HttpConnectionContext httpConnectionContext) {
         this.httpConnectionContext = httpConnectionContext;
@@ -63,6 +73,12 @@ public class TextQueryProcessorState implements Mutable, Closeable {
         metadata = null;
         cursor = Misc.free(cursor);
         record = null;
+        pageFrameCursor = Misc.free(pageFrameCursor);
+        pageFrame = null;
+        if (arrowWriter != null) {
+            arrowWriter.clear();
+        }
+        arrow = false;
         if (null != recordCursorFactory) {
             if (queryCacheable) {
                 QueryCache.getInstance().push(query, recordCursorFactory);
@@ -81,9 +97,18 @@ public class TextQueryProcessorState implements Mutable, Closeable {
     @Override
     public void close() {
         cursor = Misc.free(cursor);
+        pageFrameCursor = Misc.free(pageFrameCursor);
+        arrowWriter = Misc.free(arrowWriter);
         recordCursorFactory = Misc.free(recordCursorFactory);
     }
 
+    ArrowStreamWriter getArrowWriter() {
+        if (arrowWriter == null) {
+            arrowWriter = new ArrowStreamWriter(ARROW_PAGE_SIZE, ARROW_BATCH_ROW_COUNT);
+        }
+        return arrowWriter;
+    }
+
     public long getFd() {
         return httpConnectionContext.getFd();
     }
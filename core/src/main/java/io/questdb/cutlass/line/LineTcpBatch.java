@@ -0,0 +1,330 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.std.IntList;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.AbstractCharSink;
+import io.questdb.std.str.CharSink;
+
+import java.io.Closeable;
+
+/**
+ * Column-batched binary variant of line protocol. A batch carries rows of a single table as typed
+ * column vectors, which lets the server append values without parsing text or inferring types.
+ * <p>
+ * Batch connections are negotiated on the regular ILP TCP port: the first four bytes of the
+ * connection are {@link #MAGIC}, which cannot start a text line. After that the connection carries
+ * frames, all numbers are little-endian:
+ * <pre>
+ * int    frame length, excluding this field
+ * short  table name length, utf8 table name
+ * int    row count
+ * short  column count
+ * byte   1 when designated timestamps are sent, 0 to use server time
+ * column count times: short name length, utf8 name, byte column type (ColumnType tag)
+ * long[row count] designated timestamps in micros, when sent
+ * column count times: column vector
+ * </pre>
+ * Vectors of fixed size types are row count values of the type size. SYMBOL and STRING vectors are
+ * row count of int length followed by utf8 bytes, length of -1 is null.
+ * <p>
+ * Arrays passed to the batch are referenced rather than copied, they must not change until
+ * the batch is sent.
+ */
+public class LineTcpBatch implements Closeable {
+    // "\0ILB" on the wire, zero byte is not a valid start of a text line
+    public static final int MAGIC = 0x424C4900;
+    public static final int HEADER_SIZE = Integer.BYTES;
+    private final ObjList<CharSequence> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final ObjList<Object> columnValues = new ObjList<>();
+    private final Utf8Sink utf8Sink = new Utf8Sink();
+    private final MemoryCARW mem;
+    private CharSequence tableName;
+    private int rowCount;
+    private long[] timestamps;
+
+    public LineTcpBatch() {
+        this(64 * 1024);
+    }
+
+    public LineTcpBatch(long pageSize) {
+        mem = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_DEFAULT);
+    }
+
+    public static boolean isSupportedType(int columnType) {
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+            case ColumnType.SYMBOL:
+            case ColumnType.STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.free(mem);
+    }
+
+    public LineTcpBatch column(CharSequence name, boolean[] values) {
+        return addColumn(name, ColumnType.BOOLEAN, values, values.length);
+    }
+
+    public LineTcpBatch column(CharSequence name, byte[] values) {
+        return addColumn(name, ColumnType.BYTE, values, values.length);
+    }
+
+    public LineTcpBatch column(CharSequence name, short[] values) {
+        return addColumn(name, ColumnType.SHORT, values, values.length);
+    }
+
+    public LineTcpBatch column(CharSequence name, int[] values) {
+        return addColumn(name, ColumnType.INT, values, values.length);
+    }
+
+    public LineTcpBatch column(CharSequence name, long[] values) {
+        return addColumn(name, ColumnType.LONG, values, values.length);
+    }
+
+    public LineTcpBatch column(CharSequence name, float[] values) {
+        return addColumn(name, ColumnType.FLOAT, values, values.length);
+    }
+
+    public LineTcpBatch column(CharSequence name, double[] values) {
+        return addColumn(name, ColumnType.DOUBLE, values, values.length);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public LineTcpBatch of(CharSequence tableName, int rowCount) {
+        this.tableName = tableName;
+        this.rowCount = rowCount;
+        this.timestamps = null;
+        columnNames.clear();
+        columnTypes.clear();
+        columnValues.clear();
+        return this;
+    }
+
+    public LineTcpBatch stringColumn(CharSequence name, CharSequence[] values) {
+        return addColumn(name, ColumnType.STRING, values, values.length);
+    }
+
+    public LineTcpBatch symbolColumn(CharSequence name, CharSequence[] values) {
+        return addColumn(name, ColumnType.SYMBOL, values, values.length);
+    }
+
+    public LineTcpBatch timestampColumn(CharSequence name, long[] values) {
+        return addColumn(name, ColumnType.TIMESTAMP, values, values.length);
+    }
+
+    /**
+     * Designated timestamps of the rows in micros. Server time is used when timestamps are not set.
+     *
+     * @param values timestamp for each row
+     * @return this batch
+     */
+    public LineTcpBatch timestamps(long[] values) {
+        checkLength(values.length);
+        this.timestamps = values;
+        return this;
+    }
+
+    private LineTcpBatch addColumn(CharSequence name, int type, Object values, int length) {
+        if (tableName == null) {
+            throw CairoException.instance(0).put("table name expected");
+        }
+        checkLength(length);
+        columnNames.add(name);
+        columnTypes.add(type);
+        columnValues.add(values);
+        return this;
+    }
+
+    private void checkLength(int length) {
+        if (length < rowCount) {
+            throw CairoException.instance(0).put("not enough values [expected=").put(rowCount).put(", actual=").put(length).put(']');
+        }
+    }
+
+    private void putName(CharSequence name) {
+        final long offset = mem.getAppendOffset();
+        mem.putShort((short) 0);
+        utf8Sink.encodeUtf8(name);
+        final long len = mem.getAppendOffset() - offset - Short.BYTES;
+        if (len > Short.MAX_VALUE) {
+            throw CairoException.instance(0).put("name is too long [name=").put(name).put(']');
+        }
+        mem.putShort(offset, (short) len);
+    }
+
+    private void putUtf8Values(CharSequence[] values) {
+        for (int r = 0; r < rowCount; r++) {
+            final CharSequence value = values[r];
+            if (value == null) {
+                mem.putInt(-1);
+            } else {
+                final long offset = mem.getAppendOffset();
+                mem.putInt(0);
+                utf8Sink.encodeUtf8(value);
+                mem.putInt(offset, (int) (mem.getAppendOffset() - offset - Integer.BYTES));
+            }
+        }
+    }
+
+    private void putVector(int type, Object values) {
+        switch (type) {
+            case ColumnType.BOOLEAN: {
+                final boolean[] v = (boolean[]) values;
+                for (int r = 0; r < rowCount; r++) {
+                    mem.putBool(v[r]);
+                }
+                break;
+            }
+            case ColumnType.BYTE: {
+                final byte[] v = (byte[]) values;
+                for (int r = 0; r < rowCount; r++) {
+                    mem.putByte(v[r]);
+                }
+                break;
+            }
+            case ColumnType.SHORT: {
+                final short[] v = (short[]) values;
+                for (int r = 0; r < rowCount; r++) {
+                    mem.putShort(v[r]);
+                }
+                break;
+            }
+            case ColumnType.INT: {
+                final int[] v = (int[]) values;
+                for (int r = 0; r < rowCount; r++) {
+                    mem.putInt(v[r]);
+                }
+                break;
+            }
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP: {
+                final long[] v = (long[]) values;
+                for (int r = 0; r < rowCount; r++) {
+                    mem.putLong(v[r]);
+                }
+                break;
+            }
+            case ColumnType.FLOAT: {
+                final float[] v = (float[]) values;
+                for (int r = 0; r < rowCount; r++) {
+                    mem.putFloat(v[r]);
+                }
+                break;
+            }
+            case ColumnType.DOUBLE: {
+                final double[] v = (double[]) values;
+                for (int r = 0; r < rowCount; r++) {
+                    mem.putDouble(v[r]);
+                }
+                break;
+            }
+            default:
+                putUtf8Values((CharSequence[]) values);
+                break;
+        }
+    }
+
+    /**
+     * Encodes the batch into a frame.
+     *
+     * @return frame size in bytes, the frame starts at {@link #getFrameAddress()}
+     */
+    long encode() {
+        if (tableName == null) {
+            throw CairoException.instance(0).put("table name expected");
+        }
+        mem.jumpTo(0);
+        mem.putInt(0);
+        putName(tableName);
+        mem.putInt(rowCount);
+        final int columnCount = columnNames.size();
+        mem.putShort((short) columnCount);
+        mem.putBool(timestamps != null);
+        for (int i = 0; i < columnCount; i++) {
+            putName(columnNames.getQuick(i));
+            mem.putByte((byte) columnTypes.getQuick(i));
+        }
+        if (timestamps != null) {
+            for (int r = 0; r < rowCount; r++) {
+                mem.putLong(timestamps[r]);
+            }
+        }
+        for (int i = 0; i < columnCount; i++) {
+            putVector(columnTypes.getQuick(i), columnValues.getQuick(i));
+        }
+        final long size = mem.getAppendOffset();
+        if (size - HEADER_SIZE > Integer.MAX_VALUE) {
+            throw CairoException.instance(0).put("batch is too large [size=").put(size).put(']');
+        }
+        mem.putInt(0, (int) (size - HEADER_SIZE));
+        return size;
+    }
+
+    long getFrameAddress() {
+        return mem.getAddress();
+    }
+
+    private class Utf8Sink extends AbstractCharSink {
+        @Override
+        public CharSink put(char c) {
+            mem.putByte((byte) c);
+            return this;
+        }
+
+        @Override
+        public CharSink put(CharSequence cs) {
+            for (int i = 0, n = cs.length(); i < n; i++) {
+                put(cs.charAt(i));
+            }
+            return this;
+        }
+    }
+}
@@ -24,15 +24,47 @@
 
 package io.questdb.cutlass.line;
 
+import io.questdb.cairo.CairoException;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.network.NetworkError;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Unsafe;
 
 public class LineTcpSender extends AbstractLineSender {
     private static final Log LOG = LogFactory.getLog(LineTcpSender.class);
+    private final long magicBuf;
+    private boolean textSent;
+    private boolean batchSent;
 
     public LineTcpSender(int sendToIPv4Address, int sendToPort, int bufferCapacity) {
         super(0, sendToIPv4Address, sendToPort, bufferCapacity, 0, LOG);
+        magicBuf = Unsafe.malloc(Integer.BYTES, MemoryTag.NATIVE_DEFAULT);
+        Unsafe.getUnsafe().putInt(magicBuf, LineTcpBatch.MAGIC);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        Unsafe.free(magicBuf, Integer.BYTES, MemoryTag.NATIVE_DEFAULT);
+    }
+
+    /**
+     * Sends rows of the batch in binary column-batched format. The connection switches to batch protocol
+     * on the first batch, text lines cannot be sent on the same connection before or after that.
+     *
+     * @param batch rows of a single table
+     */
+    public void send(LineTcpBatch batch) {
+        if (textSent) {
+            throw CairoException.instance(0).put("cannot send batch on text protocol connection");
+        }
+        final long size = batch.encode();
+        if (!batchSent) {
+            sendBatch0(magicBuf, Integer.BYTES);
+            batchSent = true;
+        }
+        sendBatch0(batch.getFrameAddress(), size);
     }
 
     @Override
@@ -50,11 +82,26 @@ public class LineTcpSender extends AbstractLineSender {
 
     @Override
     protected void sendToSocket(long fd, long lo, long sockaddr, int len) throws NetworkError {
+        if (batchSent) {
+            throw CairoException.instance(0).put("cannot send text lines on batch protocol connection");
+        }
+        textSent = true;
         if (nf.send(fd, lo, len) != len) {
             throw NetworkError.instance(nf.errno()).put("send error");
         }
     }
 
+    private void sendBatch0(long lo, long len) {
+        while (len > 0) {
+            final int n = nf.send(fd, lo, (int) Math.min(len, Integer.MAX_VALUE));
+            if (n < 0) {
+                throw NetworkError.instance(nf.errno()).put("send error");
+            }
+            lo += n;
+            len -= n;
+        }
+    }
+
     @Override
     public void flush() {
         sendAll();
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.datetime.microtime.Timestamps;
+
+/**
+ * Sizes commit lag and commit cadence of a single ILP table from what the writer observes.
+ * <p>
+ * Two signals are tracked between commits: O3 depth, e.g. how far behind the table max timestamp
+ * the oldest out-of-order row of a commit was, and row arrival rate. Lag is sized to cover the
+ * O3 depth, so that late rows are merged in memory rather than rewriting committed partitions.
+ * What remains of the visibility SLA after lag is used as commit interval and the row threshold
+ * is the number of rows expected to arrive within that interval. Worst case a row stays invisible
+ * for lag plus commit interval, which is kept within the SLA.
+ * <p>
+ * Instances are not thread-safe, they are owned by the writer thread of the table.
+ */
+final class CommitLagController {
+    private static final Log LOG = LogFactory.getLog(CommitLagController.class);
+    // weight of a new sample when depth or rate decrease, increases are taken immediately
+    private static final double DECAY = 0.25;
+    // lag headroom over observed O3 depth
+    private static final double LAG_HEADROOM = 1.5;
+    static final long MIN_COMMIT_INTERVAL_MILLIS = 100;
+    private final long visibilitySlaMillis;
+    private final long maxLagMicros;
+    private final int maxUncommittedRowsLimit;
+    private final CharSequence tableName;
+    private final LineTcpMetrics metrics;
+    private double o3Depth;
+    private double rowsPerMilli;
+    private long lagMicros;
+    private long commitIntervalMillis;
+    private long maxUncommittedRows;
+
+    CommitLagController(CharSequence tableName, long visibilitySlaMillis, long initialLagMicros, int maxUncommittedRows, LineTcpMetrics metrics) {
+        this.tableName = tableName;
+        this.visibilitySlaMillis = visibilitySlaMillis;
+        // lag cannot take more than half of SLA, the other half is left for commit cadence
+        this.maxLagMicros = visibilitySlaMillis * Timestamps.MILLI_MICROS / 2;
+        this.maxUncommittedRowsLimit = maxUncommittedRows;
+        this.metrics = metrics;
+        this.lagMicros = Math.min(initialLagMicros, maxLagMicros);
+        this.o3Depth = lagMicros;
+        this.commitIntervalMillis = Math.max(visibilitySlaMillis - lagMicros / Timestamps.MILLI_MICROS, MIN_COMMIT_INTERVAL_MILLIS);
+        this.maxUncommittedRows = maxUncommittedRows;
+    }
+
+    /**
+     * Stops publishing metrics of the table, called when ILP releases the table.
+     */
+    void close() {
+        metrics.remove(tableName);
+    }
+
+    long getCommitIntervalMillis() {
+        return commitIntervalMillis;
+    }
+
+    long getLagMicros() {
+        return lagMicros;
+    }
+
+    long getMaxUncommittedRows() {
+        return maxUncommittedRows;
+    }
+
+    /**
+     * Feeds the controller with the outcome of a commit.
+     *
+     * @param rowCount      number of rows appended since previous commit
+     * @param elapsedMillis time since previous commit
+     * @param o3DepthMicros O3 depth of the commit, 0 when all rows were in order
+     */
+    void onCommit(long rowCount, long elapsedMillis, long o3DepthMicros) {
+        o3Depth = smooth(o3Depth, o3DepthMicros);
+        rowsPerMilli = smooth(rowsPerMilli, (double) rowCount / Math.max(elapsedMillis, 1));
+
+        lagMicros = Math.min((long) (o3Depth * LAG_HEADROOM), maxLagMicros);
+        commitIntervalMillis = Math.max(visibilitySlaMillis - lagMicros / Timestamps.MILLI_MICROS, MIN_COMMIT_INTERVAL_MILLIS);
+        maxUncommittedRows = Math.max(1, Math.min((long) (rowsPerMilli * commitIntervalMillis), maxUncommittedRowsLimit));
+
+        metrics.update(tableName, o3DepthMicros, lagMicros, commitIntervalMillis, maxUncommittedRows);
+        LOG.debug().$("adaptive commit lag [table=").$(tableName)
+                .$(", o3Depth=").$(o3DepthMicros)
+                .$(", rowsPerMilli=").$(rowsPerMilli)
+                .$(", lag=").$(lagMicros)
+                .$(", commitInterval=").$(commitIntervalMillis)
+                .$(", maxUncommittedRows=").$(maxUncommittedRows)
+                .I$();
+    }
+
+    private static double smooth(double current, double sample) {
+        return sample > current ? sample : current + (sample - current) * DECAY;
+    }
+}
@@ -122,6 +122,16 @@ public class DefaultLineTcpReceiverConfiguration implements LineTcpReceiverConfi
         return 100;
     }
 
+    @Override
+    public long getCommitVisibilitySla() {
+        return 10_000;
+    }
+
+    @Override
+    public boolean isCommitLagAdaptive() {
+        return false;
+    }
+
     @Override
     public String getAuthDbPath() {
         return null;
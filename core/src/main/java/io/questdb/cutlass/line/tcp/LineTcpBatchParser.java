@@ -0,0 +1,218 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cutlass.line.LineTcpBatch;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.ObjList;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.DirectByteCharSequence;
+
+/**
+ * Reads and validates frames of {@link LineTcpBatch} protocol. All addresses handed out by the
+ * parser point into the frame, which must stay in place while the parser is used.
+ */
+class LineTcpBatchParser {
+    private final DirectByteCharSequence tableName = new DirectByteCharSequence();
+    private final ObjList<DirectByteCharSequence> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final LongList columnAddresses = new LongList();
+    // writer thread state, table column index and type each batch column is appended to
+    private final IntList writerColumnIndexes = new IntList();
+    private final IntList writerColumnTypes = new IntList();
+    private int columnCount;
+    private int rowCount;
+    private long timestampsAddress;
+    private String error;
+
+    static int getTypeSize(int columnType) {
+        switch (columnType) {
+            case ColumnType.SYMBOL:
+            case ColumnType.STRING:
+                return -1;
+            default:
+                return ColumnType.sizeOf(columnType);
+        }
+    }
+
+    long getColumnAddress(int index) {
+        return columnAddresses.getQuick(index);
+    }
+
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    DirectByteCharSequence getColumnName(int index) {
+        return columnNames.getQuick(index);
+    }
+
+    int getColumnType(int index) {
+        return columnTypes.getQuick(index);
+    }
+
+    String getError() {
+        return error;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    int getWriterColumnIndex(int index) {
+        return writerColumnIndexes.getQuick(index);
+    }
+
+    int getWriterColumnType(int index) {
+        return writerColumnTypes.getQuick(index);
+    }
+
+    DirectByteCharSequence getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return address of designated timestamp vector or 0 when rows are to be stamped with server time
+     */
+    long getTimestampsAddress() {
+        return timestampsAddress;
+    }
+
+    /**
+     * Parses frame body, e.g. the bytes after frame length.
+     *
+     * @param lo start of frame body
+     * @param hi end of frame body
+     * @return false when frame is malformed, see {@link #getError()}
+     */
+    boolean of(long lo, long hi) {
+        columnCount = 0;
+        long p = lo;
+        if (p + Short.BYTES > hi) {
+            return fail("truncated table name");
+        }
+        final int tableNameLen = Unsafe.getUnsafe().getShort(p);
+        p += Short.BYTES;
+        if (tableNameLen <= 0 || p + tableNameLen > hi) {
+            return fail("invalid table name");
+        }
+        tableName.of(p, p + tableNameLen);
+        p += tableNameLen;
+
+        if (p + Integer.BYTES + Short.BYTES + Byte.BYTES > hi) {
+            return fail("truncated header");
+        }
+        rowCount = Unsafe.getUnsafe().getInt(p);
+        p += Integer.BYTES;
+        final int columnCount = Unsafe.getUnsafe().getShort(p);
+        p += Short.BYTES;
+        final boolean hasTimestamps = Unsafe.getUnsafe().getByte(p) != 0;
+        p += Byte.BYTES;
+        if (rowCount < 0 || columnCount < 0) {
+            return fail("invalid row or column count");
+        }
+
+        columnTypes.clear();
+        columnAddresses.clear();
+        for (int i = 0; i < columnCount; i++) {
+            if (p + Short.BYTES > hi) {
+                return fail("truncated column header");
+            }
+            final int nameLen = Unsafe.getUnsafe().getShort(p);
+            p += Short.BYTES;
+            if (nameLen <= 0 || p + nameLen + Byte.BYTES > hi) {
+                return fail("invalid column name");
+            }
+            if (columnNames.size() == i) {
+                columnNames.add(new DirectByteCharSequence());
+            }
+            columnNames.getQuick(i).of(p, p + nameLen);
+            p += nameLen;
+            final int type = Unsafe.getUnsafe().getByte(p);
+            p += Byte.BYTES;
+            if (!LineTcpBatch.isSupportedType(type)) {
+                return fail("unsupported column type");
+            }
+            columnTypes.add(type);
+        }
+
+        if (hasTimestamps) {
+            timestampsAddress = p;
+            p += (long) rowCount * Long.BYTES;
+            if (p > hi) {
+                return fail("truncated timestamps");
+            }
+        } else {
+            timestampsAddress = 0;
+        }
+
+        for (int i = 0; i < columnCount; i++) {
+            columnAddresses.add(p);
+            final int size = getTypeSize(columnTypes.getQuick(i));
+            if (size > 0) {
+                p += (long) rowCount * size;
+            } else {
+                for (int r = 0; r < rowCount; r++) {
+                    if (p + Integer.BYTES > hi) {
+                        return fail("truncated column vector");
+                    }
+                    final int len = Unsafe.getUnsafe().getInt(p);
+                    p += Integer.BYTES;
+                    if (len > 0) {
+                        p += len;
+                    } else if (len < -1) {
+                        return fail("invalid value length");
+                    }
+                }
+            }
+            if (p > hi) {
+                return fail("truncated column vector");
+            }
+        }
+
+        if (p != hi) {
+            return fail("unexpected bytes after last column");
+        }
+        this.columnCount = columnCount;
+        this.error = null;
+        return true;
+    }
+
+    void setColumnAddress(int index, long address) {
+        columnAddresses.setQuick(index, address);
+    }
+
+    void setWriterColumn(int index, int columnIndex, int columnType) {
+        writerColumnIndexes.extendAndSet(index, columnIndex);
+        writerColumnTypes.extendAndSet(index, columnType);
+    }
+
+    private boolean fail(String error) {
+        this.error = error;
+        return false;
+    }
+}
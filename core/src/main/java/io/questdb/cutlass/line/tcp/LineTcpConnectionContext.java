@@ -25,6 +25,7 @@
 package io.questdb.cutlass.line.tcp;
 
 import io.questdb.cairo.CairoException;
+import io.questdb.cutlass.line.LineTcpBatch;
 import io.questdb.cutlass.line.tcp.LineTcpParser.ParseResult;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
@@ -47,6 +48,7 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     private final MillisecondClock milliClock;
     private final DirectByteCharSequence byteCharSequence = new DirectByteCharSequence();
     private final LineTcpParser parser = new LineTcpParser();
+    private final LineTcpBatchParser batchParser = new LineTcpBatchParser();
     private final FloatingDirectCharSink floatingDirectCharSink = new FloatingDirectCharSink();
     protected long fd;
     protected IODispatcher<LineTcpConnectionContext> dispatcher;
@@ -57,6 +59,8 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     protected long recvBufStartOfMeasurement;
     private long lastQueueFullLogMillis = 0;
     private boolean goodMeasurement;
+    private boolean protocolNegotiated;
+    private boolean batchProtocol;
 
     LineTcpConnectionContext(LineTcpReceiverConfiguration configuration, LineTcpMeasurementScheduler scheduler) {
         nf = configuration.getNetworkFacade();
@@ -71,6 +75,8 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     public void clear() {
         recvBufPos = recvBufStart;
         peerDisconnected = false;
+        protocolNegotiated = false;
+        batchProtocol = false;
         resetParser();
     }
 
@@ -164,7 +170,83 @@ class LineTcpConnectionContext implements IOContext, Mutable {
         return this;
     }
 
+    /**
+     * Decides between text and batch protocol from the first bytes of the connection.
+     *
+     * @return false when more bytes are needed
+     */
+    private boolean negotiateProtocol() {
+        final long len = recvBufPos - recvBufStartOfMeasurement;
+        if (len > 0 && Unsafe.getUnsafe().getByte(recvBufStartOfMeasurement) != 0) {
+            protocolNegotiated = true;
+            return true;
+        }
+        if (len < Integer.BYTES) {
+            return false;
+        }
+        if (Unsafe.getUnsafe().getInt(recvBufStartOfMeasurement) == LineTcpBatch.MAGIC) {
+            LOG.info().$('[').$(fd).$("] batch protocol").$();
+            batchProtocol = true;
+            recvBufStartOfMeasurement += Integer.BYTES;
+        }
+        // anything else is left to text parser to reject
+        protocolNegotiated = true;
+        return true;
+    }
+
+    private IOContextResult parseBatches(NetworkIOJob netIoJob) {
+        while (true) {
+            if (recvBufPos - recvBufStartOfMeasurement >= LineTcpBatch.HEADER_SIZE) {
+                final int frameSize = Unsafe.getUnsafe().getInt(recvBufStartOfMeasurement);
+                if (frameSize < 0 || frameSize > recvBufEnd - recvBufStart - LineTcpBatch.HEADER_SIZE) {
+                    LOG.error().$('[').$(fd).$("] batch does not fit receive buffer [frameSize=").$(frameSize)
+                            .$(", line.tcp.msg.buffer.size=").$(recvBufEnd - recvBufStart)
+                            .I$();
+                    return IOContextResult.NEEDS_DISCONNECT;
+                }
+                final long frameHi = recvBufStartOfMeasurement + LineTcpBatch.HEADER_SIZE + frameSize;
+                if (frameHi <= recvBufPos) {
+                    if (!batchParser.of(recvBufStartOfMeasurement + LineTcpBatch.HEADER_SIZE, frameHi)) {
+                        LOG.error().$('[').$(fd).$("] could not parse batch [error=").$(batchParser.getError()).I$();
+                        return IOContextResult.NEEDS_DISCONNECT;
+                    }
+                    try {
+                        if (scheduler.scheduleBatchEvent(netIoJob, batchParser, recvBufStartOfMeasurement, frameHi)) {
+                            if (checkQueueFullLogHysteresis()) {
+                                LOG.debug().$('[').$(fd).$("] queue full").$();
+                            }
+                            return IOContextResult.QUEUE_FULL;
+                        }
+                    } catch (Throwable ex) {
+                        LOG.error().$('[').$(fd).$("] could not process batch [table=").$(batchParser.getTableName()).$(", ex=").$(ex).I$();
+                        return IOContextResult.NEEDS_DISCONNECT;
+                    }
+                    recvBufStartOfMeasurement = frameHi;
+                    if (recvBufStartOfMeasurement == recvBufPos) {
+                        recvBufPos = recvBufStartOfMeasurement = recvBufStart;
+                    }
+                    continue;
+                }
+            }
+
+            if (recvBufPos == recvBufEnd) {
+                compactBuffer(recvBufStartOfMeasurement);
+            }
+            if (!read()) {
+                return peerDisconnected ? IOContextResult.NEEDS_DISCONNECT : IOContextResult.NEEDS_READ;
+            }
+        }
+    }
+
     protected final IOContextResult parseMeasurements(NetworkIOJob netIoJob) {
+        while (!protocolNegotiated && !negotiateProtocol()) {
+            if (!read()) {
+                return peerDisconnected ? IOContextResult.NEEDS_DISCONNECT : IOContextResult.NEEDS_READ;
+            }
+        }
+        if (batchProtocol) {
+            return parseBatches(netIoJob);
+        }
         while (true) {
             try {
                 ParseResult rc = goodMeasurement ? parser.parseMeasurement(recvBufPos) : parser.skipMeasurement(recvBufPos);
@@ -25,8 +25,10 @@
 package io.questdb.cutlass.line.tcp;
 
 import io.questdb.cairo.*;
+import io.questdb.cairo.sql.RecordMetadata;
 import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.cutlass.line.LineProtoTimestampAdapter;
+import io.questdb.cutlass.line.LineTcpBatch;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.std.*;
@@ -51,6 +53,9 @@ class LineTcpMeasurementEvent implements Closeable {
     private int reshuffleTargetWorkerId;
     private volatile boolean reshuffleComplete;
     private boolean commitOnWriterClose;
+    // copy of batch protocol frame, 0 when the event carries a single measurement
+    private long batchFrameAddress;
+    private long batchFrameSize;
 
     LineTcpMeasurementEvent(
             long bufLo,
@@ -69,6 +74,7 @@ class LineTcpMeasurementEvent implements Closeable {
         // this is concurrent writer release
         tableUpdateDetails = Misc.free(tableUpdateDetails);
         bufLo = 0;
+        freeBatchFrame();
     }
 
     public int getReshuffleSrcWorkerId() {
@@ -87,6 +93,10 @@ class LineTcpMeasurementEvent implements Closeable {
         return writerWorkerId;
     }
 
+    public boolean isBatch() {
+        return batchFrameAddress != 0;
+    }
+
     public boolean isReshuffleComplete() {
         return reshuffleComplete;
     }
@@ -102,7 +112,7 @@ class LineTcpMeasurementEvent implements Closeable {
     void append(StringSink charSink, FloatingDirectCharSink floatingCharSink) {
         TableWriter.Row row = null;
         try {
-            TableWriter writer = tableUpdateDetails.getWriter();
+            TableWriterAPI writer = tableUpdateDetails.getWriter();
             long bufPos = bufLo;
             long timestamp = Unsafe.getUnsafe().getLong(bufPos);
             bufPos += Long.BYTES;
@@ -161,8 +171,7 @@ class LineTcpMeasurementEvent implements Closeable {
                         bufPos += Integer.BYTES;
                         long hi = bufPos + 2L * len;
                         floatingCharSink.asCharSequence(bufPos, hi);
-                        int symIndex = writer.getSymbolIndex(colIndex, floatingCharSink);
-                        row.putSymIndex(colIndex, symIndex);
+                        row.putSym(colIndex, floatingCharSink);
                         bufPos = hi;
                         break;
                     }
@@ -422,6 +431,142 @@ class LineTcpMeasurementEvent implements Closeable {
         }
     }
 
+    void appendBatch(LineTcpBatchParser parser, StringSink charSink) {
+        TableWriter.Row row = null;
+        try {
+            final TableWriterAPI writer = tableUpdateDetails.getWriter();
+            final RecordMetadata metadata = writer.getMetadata();
+            // frame has been validated by network IO thread
+            parser.of(batchFrameAddress + LineTcpBatch.HEADER_SIZE, batchFrameAddress + batchFrameSize);
+            final int columnCount = parser.getColumnCount();
+            for (int i = 0; i < columnCount; i++) {
+                final DirectByteCharSequence name = parser.getColumnName(i);
+                charSink.clear();
+                if (!Chars.utf8Decode(name.getLo(), name.getHi(), charSink)) {
+                    throw CairoException.instance(0).put("invalid UTF8 in column name");
+                }
+                final int type = parser.getColumnType(i);
+                int colIndex = metadata.getColumnIndexQuiet(charSink);
+                if (colIndex < 0) {
+                    if (!TableUtils.isValidInfluxColumnName(charSink)) {
+                        throw CairoException.instance(0)
+                                .put("invalid column name [table=").put(writer.getTableName())
+                                .put(", columnName=").put(charSink)
+                                .put(']');
+                    }
+                    writer.addColumn(charSink, type);
+                    colIndex = metadata.getColumnIndexQuiet(charSink);
+                } else if (colIndex == metadata.getTimestampIndex()) {
+                    throw CairoException.instance(0)
+                            .put("designated timestamp has to be sent as timestamp vector [columnName=").put(charSink)
+                            .put(']');
+                }
+                final int colType = ColumnType.tagOf(metadata.getColumnType(colIndex));
+                if (!isBatchCastSupported(type, colType)) {
+                    throw CairoException.instance(0)
+                            .put("cast error for line protocol batch column [columnName=").put(charSink)
+                            .put(", type=").put(ColumnType.nameOf(type))
+                            .put(", columnType=").put(ColumnType.nameOf(colType))
+                            .put(']');
+                }
+                parser.setWriterColumn(i, colIndex, colType);
+            }
+
+            final long timestampsAddress = parser.getTimestampsAddress();
+            for (int r = 0, n = parser.getRowCount(); r < n; r++) {
+                long timestamp = timestampsAddress != 0 ? Unsafe.getUnsafe().getLong(timestampsAddress + (long) r * Long.BYTES) : Numbers.LONG_NaN;
+                if (timestamp == Numbers.LONG_NaN) {
+                    timestamp = clock.getTicks();
+                }
+                row = writer.newRow(timestamp);
+                for (int i = 0; i < columnCount; i++) {
+                    final int colIndex = parser.getWriterColumnIndex(i);
+                    final int colType = parser.getWriterColumnType(i);
+                    final long address = parser.getColumnAddress(i);
+                    switch (parser.getColumnType(i)) {
+                        case ColumnType.BOOLEAN:
+                            row.putBool(colIndex, Unsafe.getUnsafe().getByte(address + r) != 0);
+                            break;
+                        case ColumnType.BYTE:
+                            putIntegral(row, colIndex, colType, Unsafe.getUnsafe().getByte(address + r));
+                            break;
+                        case ColumnType.SHORT:
+                            putIntegral(row, colIndex, colType, Unsafe.getUnsafe().getShort(address + (long) r * Short.BYTES));
+                            break;
+                        case ColumnType.INT: {
+                            final int v = Unsafe.getUnsafe().getInt(address + (long) r * Integer.BYTES);
+                            // INT null is widened to LONG null only, LONG_NaN cast back to int is 0
+                            putIntegral(row, colIndex, colType, v == Numbers.INT_NaN && colType != ColumnType.INT ? Numbers.LONG_NaN : v);
+                            break;
+                        }
+                        case ColumnType.LONG:
+                        case ColumnType.DATE:
+                        case ColumnType.TIMESTAMP:
+                            putIntegral(row, colIndex, colType, Unsafe.getUnsafe().getLong(address + (long) r * Long.BYTES));
+                            break;
+                        case ColumnType.FLOAT: {
+                            final float v = Unsafe.getUnsafe().getFloat(address + (long) r * Float.BYTES);
+                            if (colType == ColumnType.FLOAT) {
+                                row.putFloat(colIndex, v);
+                            } else {
+                                row.putDouble(colIndex, v);
+                            }
+                            break;
+                        }
+                        case ColumnType.DOUBLE:
+                            row.putDouble(colIndex, Unsafe.getUnsafe().getDouble(address + (long) r * Double.BYTES));
+                            break;
+                        default: {
+                            // SYMBOL and STRING vectors are read sequentially
+                            final int len = Unsafe.getUnsafe().getInt(address);
+                            final long lo = address + Integer.BYTES;
+                            if (len > -1) {
+                                charSink.clear();
+                                if (!Chars.utf8Decode(lo, lo + len, charSink)) {
+                                    throw CairoException.instance(0).put("invalid UTF8 in value for ").put(metadata.getColumnName(colIndex));
+                                }
+                                if (colType == ColumnType.SYMBOL) {
+                                    row.putSym(colIndex, charSink);
+                                } else {
+                                    row.putStr(colIndex, charSink);
+                                }
+                                parser.setColumnAddress(i, lo + len);
+                            } else {
+                                parser.setColumnAddress(i, lo);
+                            }
+                            break;
+                        }
+                    }
+                }
+                row.append();
+                row = null;
+                tableUpdateDetails.handleRowAppended();
+            }
+        } catch (CairoException ex) {
+            LOG.error()
+                    .$("could not write line protocol batch [tableName=").$(tableUpdateDetails.getTableNameUtf16())
+                    .$(", ex=").$(ex.getFlyweightMessage())
+                    .$(", errno=").$(ex.getErrno())
+                    .I$();
+            if (row != null) {
+                row.cancel();
+            }
+        } finally {
+            freeBatchFrame();
+        }
+    }
+
+    void createBatchEvent(TableUpdateDetails tableUpdateDetails, long frameLo, long frameHi) {
+        writerWorkerId = LineTcpMeasurementEventType.ALL_WRITERS_INCOMPLETE_EVENT;
+        this.tableUpdateDetails = tableUpdateDetails;
+        tableUpdateDetails.updateLastMeasurementMillis();
+        final long size = frameHi - frameLo;
+        batchFrameAddress = Unsafe.malloc(size, MemoryTag.NATIVE_DEFAULT);
+        batchFrameSize = size;
+        Vect.memcpy(batchFrameAddress, frameLo, size);
+        writerWorkerId = tableUpdateDetails.getWriterThreadId();
+    }
+
     void createMeasurementEvent(
             TableUpdateDetails tableUpdateDetails,
             LineTcpParser parser,
@@ -630,6 +775,56 @@ class LineTcpMeasurementEvent implements Closeable {
         writerWorkerId = tableUpdateDetails.getWriterThreadId();
     }
 
+    private static boolean isBatchCastSupported(int type, int columnType) {
+        switch (type) {
+            case ColumnType.BYTE:
+                return columnType == ColumnType.BYTE || columnType == ColumnType.SHORT
+                        || columnType == ColumnType.INT || columnType == ColumnType.LONG;
+            case ColumnType.SHORT:
+                return columnType == ColumnType.SHORT || columnType == ColumnType.INT || columnType == ColumnType.LONG;
+            case ColumnType.INT:
+                return columnType == ColumnType.INT || columnType == ColumnType.LONG;
+            case ColumnType.FLOAT:
+                return columnType == ColumnType.FLOAT || columnType == ColumnType.DOUBLE;
+            case ColumnType.SYMBOL:
+            case ColumnType.STRING:
+                return columnType == ColumnType.SYMBOL || columnType == ColumnType.STRING;
+            default:
+                return type == columnType;
+        }
+    }
+
+    private static void putIntegral(TableWriter.Row row, int colIndex, int columnType, long value) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+                row.putByte(colIndex, (byte) value);
+                break;
+            case ColumnType.SHORT:
+                row.putShort(colIndex, (short) value);
+                break;
+            case ColumnType.INT:
+                row.putInt(colIndex, (int) value);
+                break;
+            case ColumnType.DATE:
+                row.putDate(colIndex, value);
+                break;
+            case ColumnType.TIMESTAMP:
+                row.putTimestamp(colIndex, value);
+                break;
+            default:
+                row.putLong(colIndex, value);
+                break;
+        }
+    }
+
+    private void freeBatchFrame() {
+        if (batchFrameAddress != 0) {
+            Unsafe.free(batchFrameAddress, batchFrameSize, MemoryTag.NATIVE_DEFAULT);
+            batchFrameAddress = 0;
+            batchFrameSize = 0;
+        }
+    }
+
     void createReshuffleEvent(int fromThreadId, int toThreadId, TableUpdateDetails tableUpdateDetails) {
         writerWorkerId = LineTcpMeasurementEventType.ALL_WRITERS_RESHUFFLE;
         reshuffleSrcWorkerId = fromThreadId;
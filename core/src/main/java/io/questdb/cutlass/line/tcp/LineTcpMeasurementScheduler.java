@@ -64,6 +64,7 @@ class LineTcpMeasurementScheduler implements Closeable {
     private final Path path = new Path();
     private final MemoryMARW ddlMem = Vm.getMARWInstance();
     private final LineTcpReceiverConfiguration configuration;
+    private final LineTcpMetrics metrics;
     private Sequence pubSeq;
     private int loadCheckCycles = 0;
     private int reshuffleCount = 0;
@@ -74,9 +75,11 @@ class LineTcpMeasurementScheduler implements Closeable {
             CairoEngine engine,
             WorkerPool ioWorkerPool,
             IODispatcher<LineTcpConnectionContext> dispatcher,
-            WorkerPool writerWorkerPool
+            WorkerPool writerWorkerPool,
+            LineTcpMetrics metrics
     ) {
         this.engine = engine;
+        this.metrics = metrics;
         this.securityContext = lineConfiguration.getCairoSecurityContext();
         CairoConfiguration cairoConfiguration = engine.getConfiguration();
         this.configuration = lineConfiguration;
@@ -113,6 +116,10 @@ class LineTcpMeasurementScheduler implements Closeable {
 
         pubSeq = new MPSequence(queueSize);
 
+        // adaptive commit lag picks commit interval per table, maintenance has to run often enough to honour it
+        final long maintenanceInterval = lineConfiguration.isCommitLagAdaptive()
+                ? Math.min(lineConfiguration.getMaintenanceInterval(), CommitLagController.MIN_COMMIT_INTERVAL_MILLIS)
+                : lineConfiguration.getMaintenanceInterval();
         int nWriterThreads = writerWorkerPool.getWorkerCount();
         if (nWriterThreads > 1) {
             FanOut fanOut = new FanOut();
@@ -124,7 +131,7 @@ class LineTcpMeasurementScheduler implements Closeable {
                         queue,
                         subSeq,
                         milliClock,
-                        configuration.getMaintenanceInterval(),
+                        maintenanceInterval,
                         this
                 );
                 writerWorkerPool.assign(i, (Job) lineTcpWriterJob);
@@ -139,7 +146,7 @@ class LineTcpMeasurementScheduler implements Closeable {
                     queue,
                     subSeq,
                     milliClock,
-                    configuration.getMaintenanceInterval(),
+                    maintenanceInterval,
                     this
             );
             writerWorkerPool.assign(0, (Job) lineTcpWriterJob);
@@ -278,7 +285,15 @@ class LineTcpMeasurementScheduler implements Closeable {
     }
 
     private TableUpdateDetails getTableUpdateDetailsFromSharedArea(@NotNull NetworkIOJob netIoJob, @NotNull LineTcpParser parser) {
-        final DirectByteCharSequence tableNameUtf8 = parser.getMeasurementName();
+        return getTableUpdateDetailsFromSharedArea(netIoJob, parser.getMeasurementName(), parser, null);
+    }
+
+    private TableUpdateDetails getTableUpdateDetailsFromSharedArea(
+            @NotNull NetworkIOJob netIoJob,
+            DirectByteCharSequence tableNameUtf8,
+            LineTcpParser parser,
+            LineTcpBatchParser batchParser
+    ) {
         final StringSink tableNameUtf16 = tableNameSinks[netIoJob.getWorkerId()];
         tableNameUtf16.clear();
         Chars.utf8Decode(tableNameUtf8.getLo(), tableNameUtf8.getHi(), tableNameUtf16);
@@ -293,7 +308,9 @@ class LineTcpMeasurementScheduler implements Closeable {
                 int status = engine.getStatus(securityContext, path, tableNameUtf16, 0, tableNameUtf16.length());
                 if (status != TableUtils.TABLE_EXISTS) {
                     // validate that parser entities do not contain NULLs
-                    TableStructureAdapter tsa = tableStructureAdapter.of(tableNameUtf16, parser);
+                    TableStructureAdapter tsa = parser != null
+                            ? tableStructureAdapter.of(tableNameUtf16, parser)
+                            : tableStructureAdapter.of(tableNameUtf16, batchParser);
                     for (int i = 0, n = tsa.getColumnCount(); i < n; i++) {
                         if (tsa.getColumnType(i) == LineTcpParser.ENTITY_TYPE_NULL) {
                             throw CairoException.instance(0).put("unknown column type [columnName=").put(tsa.getColumnName(i)).put(']');
@@ -479,6 +496,55 @@ class LineTcpMeasurementScheduler implements Closeable {
         return true;
     }
 
+    /**
+     * Hands a frame of batch protocol over to the writer thread of the table. The frame is copied
+     * out of receive buffer, the writer thread frees the copy once rows are appended.
+     *
+     * @return true when queue is full or table writer is busy and the frame has to be retried
+     */
+    boolean scheduleBatchEvent(NetworkIOJob netIoJob, LineTcpBatchParser batchParser, long frameLo, long frameHi) {
+        final DirectByteCharSequence tableNameUtf8 = batchParser.getTableName();
+        TableUpdateDetails tableUpdateDetails;
+        try {
+            tableUpdateDetails = netIoJob.getLocalTableDetails(tableNameUtf8);
+            if (tableUpdateDetails == null) {
+                tableUpdateDetails = getTableUpdateDetailsFromSharedArea(netIoJob, tableNameUtf8, null, batchParser);
+            }
+        } catch (EntryUnavailableException ex) {
+            // Table writer is locked
+            LOG.info().$("could not get table writer [tableName=").$(tableNameUtf8).$(", ex=`").$(ex.getFlyweightMessage()).$("`]").$();
+            return true;
+        } catch (CairoException ex) {
+            // Table could not be created
+            LOG.info()
+                    .$("could not create table [tableName=").$(tableNameUtf8)
+                    .$(", ex=`").$(ex.getFlyweightMessage())
+                    .$("`, errno=").$(ex.getErrno())
+                    .I$();
+            return false;
+        }
+
+        long seq = getNextPublisherEventSequence();
+        if (seq > -1) {
+            try {
+                queue.get(seq).createBatchEvent(tableUpdateDetails, frameLo, frameHi);
+            } finally {
+                pubSeq.done(seq);
+            }
+            if (tableUpdateDetails.incrementEventsProcessedSinceReshuffle() > processedEventCountBeforeReshuffle) {
+                if (tableUpdateDetailsLock.writeLock().tryLock()) {
+                    try {
+                        reshuffleTablesAcrossWriterThreads();
+                    } finally {
+                        tableUpdateDetailsLock.writeLock().unlock();
+                    }
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
     @NotNull
     private TableUpdateDetails unsafeAssignTableToWriterThread(int tudKeyIndex, CharSequence tableNameUtf16) {
         unsafeCalcThreadLoad();
@@ -497,10 +563,11 @@ class LineTcpMeasurementScheduler implements Closeable {
                 engine,
                 // get writer here to avoid constructing
                 // object instance and potentially leaking memory if
-                // writer allocation fails
-                engine.getWriter(securityContext, tableNameUtf16, "tcpIlp"),
+                // writer allocation fails, with WAL enabled rows go to a pooled WAL writer
+                engine.getTableWriterAPI(securityContext, tableNameUtf16, "tcpIlp"),
                 threadId,
-                netIoJobs
+                netIoJobs,
+                metrics
         );
         tableUpdateDetailsUtf16.putAt(tudKeyIndex, tableUpdateDetails.getTableNameUtf16(), tableUpdateDetails);
         LOG.info().$("assigned ").$(tableNameUtf16).$(" to thread ").$(threadId).$();
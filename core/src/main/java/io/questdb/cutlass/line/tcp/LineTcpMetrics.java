@@ -0,0 +1,77 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.metrics.GaugeWithOneLabel;
+import io.questdb.metrics.MetricsRegistry;
+
+/**
+ * Adaptive commit lag settings ILP has chosen. Tables are tuned independently,
+ * values are labelled with the table name for as long as the table is open for ingestion.
+ */
+public class LineTcpMetrics {
+    private static final CharSequence TABLE_LABEL = "table";
+    private final GaugeWithOneLabel o3DepthMicros;
+    private final GaugeWithOneLabel commitLagMicros;
+    private final GaugeWithOneLabel commitIntervalMillis;
+    private final GaugeWithOneLabel maxUncommittedRows;
+
+    public LineTcpMetrics(MetricsRegistry metricsRegistry) {
+        o3DepthMicros = metricsRegistry.newGauge("line_tcp_o3_depth_micros", TABLE_LABEL);
+        commitLagMicros = metricsRegistry.newGauge("line_tcp_commit_lag_micros", TABLE_LABEL);
+        commitIntervalMillis = metricsRegistry.newGauge("line_tcp_commit_interval_millis", TABLE_LABEL);
+        maxUncommittedRows = metricsRegistry.newGauge("line_tcp_max_uncommitted_rows", TABLE_LABEL);
+    }
+
+    public long getCommitIntervalMillis(CharSequence tableName) {
+        return commitIntervalMillis.getValue(tableName);
+    }
+
+    public long getCommitLagMicros(CharSequence tableName) {
+        return commitLagMicros.getValue(tableName);
+    }
+
+    public long getMaxUncommittedRows(CharSequence tableName) {
+        return maxUncommittedRows.getValue(tableName);
+    }
+
+    public long getO3DepthMicros(CharSequence tableName) {
+        return o3DepthMicros.getValue(tableName);
+    }
+
+    void remove(CharSequence tableName) {
+        o3DepthMicros.remove(tableName);
+        commitLagMicros.remove(tableName);
+        commitIntervalMillis.remove(tableName);
+        maxUncommittedRows.remove(tableName);
+    }
+
+    void update(CharSequence tableName, long o3DepthMicros, long commitLagMicros, long commitIntervalMillis, long maxUncommittedRows) {
+        this.o3DepthMicros.setValue(tableName, o3DepthMicros);
+        this.commitLagMicros.setValue(tableName, commitLagMicros);
+        this.commitIntervalMillis.setValue(tableName, commitIntervalMillis);
+        this.maxUncommittedRows.setValue(tableName, maxUncommittedRows);
+    }
+}
@@ -38,6 +38,14 @@ public interface LineTcpReceiverConfiguration {
 
     CairoSecurityContext getCairoSecurityContext();
 
+    /**
+     * Visibility SLA for adaptive commit lag. Rows are committed no later than this many
+     * milliseconds after they are received.
+     *
+     * @return SLA in milliseconds
+     */
+    long getCommitVisibilitySla();
+
     int getConnectionPoolInitialCapacity();
 
     int getDefaultPartitionBy();
@@ -76,6 +84,14 @@ public interface LineTcpReceiverConfiguration {
 
     WorkerPoolAwareConfiguration getWriterWorkerPoolConfiguration();
 
+    /**
+     * When enabled commit lag, commit interval and max uncommitted rows are sized per table from
+     * observed O3 depth and arrival rate rather than taken from table metadata.
+     *
+     * @return true when adaptive commit lag is enabled
+     */
+    boolean isCommitLagAdaptive();
+
     boolean isEnabled();
 
     int getAggressiveReadRetryCount();
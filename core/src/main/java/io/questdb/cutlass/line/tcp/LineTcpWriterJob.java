@@ -46,6 +46,7 @@ class LineTcpWriterJob implements Job, Closeable {
     private final Path path = new Path();
     private final StringSink charSink = new StringSink();
     private final FloatingDirectCharSink floatingCharSink = new FloatingDirectCharSink();
+    private final LineTcpBatchParser batchParser = new LineTcpBatchParser();
     private final ObjList<TableUpdateDetails> assignedTables = new ObjList<>();
     private final MillisecondClock millisecondClock;
     private final long maintenanceInterval;
@@ -140,7 +141,11 @@ class LineTcpWriterJob implements Job, Closeable {
                                     .$(", threadId=").$(workerId)
                                     .I$();
                         }
-                        event.append(charSink, floatingCharSink);
+                        if (event.isBatch()) {
+                            event.appendBatch(batchParser, charSink);
+                        } else {
+                            event.append(charSink, floatingCharSink);
+                        }
                         eventProcessed = true;
                     } catch (Throwable ex) {
                         LOG.error()
@@ -26,13 +26,18 @@ package io.questdb.cutlass.line.tcp;
 
 import io.questdb.cairo.*;
 import io.questdb.std.Chars;
+import io.questdb.std.IntList;
 import io.questdb.std.LowerCaseCharSequenceHashSet;
 import io.questdb.std.ObjList;
+import io.questdb.std.str.DirectByteCharSequence;
+import io.questdb.std.str.StringSink;
 
 class TableStructureAdapter implements TableStructure {
     private static final String DEFAULT_TIMESTAMP_FIELD = "timestamp";
     private final LowerCaseCharSequenceHashSet entityNames = new LowerCaseCharSequenceHashSet();
-    private final ObjList<LineTcpParser.ProtoEntity> entities = new ObjList<>();
+    private final ObjList<CharSequence> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final StringSink nameSink = new StringSink();
     private final CairoConfiguration cairoConfiguration;
     private final int defaultPartitionBy;
     private CharSequence tableName;
@@ -45,7 +50,7 @@ class TableStructureAdapter implements TableStructure {
 
     @Override
     public int getColumnCount() {
-        final int size = entities.size();
+        final int size = columnNames.size();
         return timestampIndex == -1 ? size + 1 : size;
     }
 
@@ -55,7 +60,7 @@ class TableStructureAdapter implements TableStructure {
         if (columnIndex == getTimestampIndex()) {
             return DEFAULT_TIMESTAMP_FIELD;
         }
-        CharSequence colName = entities.get(columnIndex).getName().toString();
+        CharSequence colName = columnNames.get(columnIndex).toString();
         if (TableUtils.isValidColumnName(colName)) {
             return colName;
         }
@@ -67,7 +72,7 @@ class TableStructureAdapter implements TableStructure {
         if (columnIndex == getTimestampIndex()) {
             return ColumnType.TIMESTAMP;
         }
-        return DefaultColumnTypes.DEFAULT_COLUMN_TYPES[entities.get(columnIndex).getType()];
+        return columnTypes.get(columnIndex);
     }
 
     @Override
@@ -112,7 +117,7 @@ class TableStructureAdapter implements TableStructure {
 
     @Override
     public int getTimestampIndex() {
-        return timestampIndex == -1 ? entities.size() : timestampIndex;
+        return timestampIndex == -1 ? columnNames.size() : timestampIndex;
     }
 
     @Override
@@ -126,19 +131,44 @@ class TableStructureAdapter implements TableStructure {
     }
 
     TableStructureAdapter of(CharSequence tableName, LineTcpParser parser) {
-        this.tableName = tableName;
-        entityNames.clear();
-        entities.clear();
+        clear(tableName);
         for (int i = 0; i < parser.getEntityCount(); i++) {
             final LineTcpParser.ProtoEntity entity = parser.getEntity(i);
             final CharSequence name = entity.getName();
             if (entityNames.add(name)) {
                 if (Chars.equals(name, DEFAULT_TIMESTAMP_FIELD)) {
-                    timestampIndex = entities.size();
+                    timestampIndex = columnNames.size();
                 }
-                entities.add(entity);
+                columnNames.add(name);
+                columnTypes.add(DefaultColumnTypes.DEFAULT_COLUMN_TYPES[entity.getType()]);
+            }
+        }
+        return this;
+    }
+
+    TableStructureAdapter of(CharSequence tableName, LineTcpBatchParser parser) {
+        clear(tableName);
+        // designated timestamp of a batch is sent separately from columns
+        for (int i = 0, n = parser.getColumnCount(); i < n; i++) {
+            final DirectByteCharSequence name = parser.getColumnName(i);
+            nameSink.clear();
+            if (!Chars.utf8Decode(name.getLo(), name.getHi(), nameSink)) {
+                throw CairoException.instance(0).put("invalid UTF8 in column name");
+            }
+            final String colName = nameSink.toString();
+            if (entityNames.add(colName)) {
+                columnNames.add(colName);
+                columnTypes.add(parser.getColumnType(i));
             }
         }
         return this;
     }
+
+    private void clear(CharSequence tableName) {
+        this.tableName = tableName;
+        this.timestampIndex = -1;
+        entityNames.clear();
+        columnNames.clear();
+        columnTypes.clear();
+    }
 }
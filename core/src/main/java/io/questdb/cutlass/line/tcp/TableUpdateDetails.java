@@ -45,11 +45,17 @@ public class TableUpdateDetails implements Closeable {
     private final CairoEngine engine;
     private final MillisecondClock millisecondClock;
     private final long writerTickRowsCountMod;
+    private final int commitMode;
+    // null when commit lag is taken from table metadata or when rows go to WAL
+    private final CommitLagController commitLagController;
+    // rows are appended to WAL, which has no commit lag, symbol keys or ticks
+    private final boolean wal;
+    private final int walMaxUncommittedRows;
     private int writerThreadId;
     // Number of rows processed since the last reshuffle, this is an estimate because it is incremented by
     // multiple threads without synchronisation
     private int eventsProcessedSinceReshuffle = 0;
-    private TableWriter writer;
+    private TableWriterAPI writer;
     private boolean assignedToJob = false;
     private long lastMeasurementMillis = Long.MAX_VALUE;
     private long lastCommitMillis;
@@ -58,9 +64,10 @@ public class TableUpdateDetails implements Closeable {
     TableUpdateDetails(
             LineTcpReceiverConfiguration configuration,
             CairoEngine engine,
-            TableWriter writer,
+            TableWriterAPI writer,
             int writerThreadId,
-            NetworkIOJob[] netIoJobs
+            NetworkIOJob[] netIoJobs,
+            LineTcpMetrics metrics
     ) {
         this.writerThreadId = writerThreadId;
         this.engine = engine;
@@ -73,10 +80,25 @@ public class TableUpdateDetails implements Closeable {
         CairoConfiguration cairoConfiguration = engine.getConfiguration();
         this.millisecondClock = cairoConfiguration.getMillisecondClock();
         this.writerTickRowsCountMod = cairoConfiguration.getWriterTickRowsCountMod();
+        this.commitMode = cairoConfiguration.getCommitMode();
         this.lastCommitMillis = millisecondClock.getTicks();
         this.writer = writer;
         this.timestampIndex = writer.getMetadata().getTimestampIndex();
         this.tableNameUtf16 = writer.getTableName();
+        this.wal = !(writer instanceof TableWriter);
+        this.walMaxUncommittedRows = cairoConfiguration.getMaxUncommittedRows();
+        if (configuration.isCommitLagAdaptive() && !wal) {
+            final TableWriterMetadata metadata = ((TableWriter) writer).getMetadata();
+            this.commitLagController = new CommitLagController(
+                    tableNameUtf16,
+                    configuration.getCommitVisibilitySla(),
+                    metadata.getCommitLag(),
+                    metadata.getMaxUncommittedRows(),
+                    metrics
+            );
+        } else {
+            this.commitLagController = null;
+        }
     }
 
     public void addReference(int workerId) {
@@ -90,8 +112,8 @@ public class TableUpdateDetails implements Closeable {
     }
 
     public void tick() {
-        if (writer != null) {
-            writer.tick(false);
+        if (writer != null && !wal) {
+            ((TableWriter) writer).tick(false);
         }
     }
 
@@ -123,6 +145,9 @@ public class TableUpdateDetails implements Closeable {
                     writer = Misc.free(writer);
                 }
             }
+            if (commitLagController != null) {
+                commitLagController.close();
+            }
             writerThreadId = Integer.MIN_VALUE;
         }
     }
@@ -178,14 +203,15 @@ public class TableUpdateDetails implements Closeable {
     }
 
     int getSymbolIndex(ThreadLocalDetails localDetails, int colIndex, CharSequence symValue) {
-        if (colIndex >= 0) {
+        // WAL logs symbols as strings, keys are resolved when WAL is applied
+        if (colIndex >= 0 && !wal) {
             return localDetails.getSymbolIndex(colIndex, symValue);
         }
         return SymbolTable.VALUE_NOT_FOUND;
     }
 
     ThreadLocalDetails getThreadLocalDetails(int workerId) {
-        lastMeasurementMillis = millisecondClock.getTicks();
+        updateLastMeasurementMillis();
         return localDetailsArray[workerId];
     }
 
@@ -193,39 +219,68 @@ public class TableUpdateDetails implements Closeable {
         return timestampIndex;
     }
 
-    TableWriter getWriter() {
+    TableWriterAPI getWriter() {
         return writer;
     }
 
     void handleRowAppended() {
-        if (checkMaxAndCommitLag(writer)) {
-            lastCommitMillis = millisecondClock.getTicks();
+        if (wal) {
+            if (writer.getUncommittedRowCount() >= walMaxUncommittedRows) {
+                writer.commit();
+            }
+        } else {
+            checkMaxAndCommitLag((TableWriter) writer);
         }
     }
 
-    private boolean checkMaxAndCommitLag(TableWriter writer) {
+    void updateLastMeasurementMillis() {
+        lastMeasurementMillis = millisecondClock.getTicks();
+    }
+
+    private void checkMaxAndCommitLag(TableWriter writer) {
         final long rowsSinceCommit = writer.getUncommittedRowCount();
-        if (rowsSinceCommit < writer.getMetadata().getMaxUncommittedRows()) {
+        final long maxUncommittedRows = commitLagController != null
+                ? commitLagController.getMaxUncommittedRows()
+                : writer.getMetadata().getMaxUncommittedRows();
+        if (rowsSinceCommit < maxUncommittedRows) {
             if ((rowsSinceCommit & writerTickRowsCountMod) == 0) {
                 // Tick without commit. Some tick commands may force writer to commit though.
                 writer.tick(false);
             }
-            return false;
+            return;
         }
-        writer.commitWithLag(engine.getConfiguration().getCommitMode());
+        commitWithLag(writer, rowsSinceCommit);
         // Tick after commit.
         writer.tick(false);
-        return true;
+    }
+
+    private void commitWithLag(TableWriter writer, long rowsSinceCommit) {
+        final long ticks = millisecondClock.getTicks();
+        if (commitLagController != null) {
+            writer.commitWithLag(commitMode, commitLagController.getLagMicros());
+            commitLagController.onCommit(rowsSinceCommit, ticks - lastCommitMillis, writer.getO3Depth());
+        } else {
+            writer.commitWithLag(commitMode);
+        }
+        lastCommitMillis = ticks;
     }
 
     void handleWriterThreadMaintenance(long ticks, long maintenanceInterval) {
-        if (ticks - lastCommitMillis < maintenanceInterval) {
+        final long commitInterval = commitLagController != null ? commitLagController.getCommitIntervalMillis() : maintenanceInterval;
+        if (ticks - lastCommitMillis < commitInterval) {
             return;
         }
         if (null != writer) {
             LOG.debug().$("maintenance commit [table=").$(writer.getTableName()).I$();
             try {
-                writer.commit();
+                final long rowsSinceCommit = writer.getUncommittedRowCount();
+                if (commitLagController != null && rowsSinceCommit > 0) {
+                    // keep the lag while rows are arriving, rows held back are committed
+                    // in full once the table goes quiet
+                    commitWithLag((TableWriter) writer, rowsSinceCommit);
+                } else {
+                    writer.commit();
+                }
             } catch (Throwable e) {
                 LOG.error().$("could not commit [table=").$(writer.getTableName()).I$();
                 writer = Misc.free(writer);
@@ -187,6 +187,11 @@ public class DefaultPGWireConfiguration implements PGWireConfiguration {
         return false;
     }
 
+    @Override
+    public boolean isBinaryResultFormatPreferred() {
+        return false;
+    }
+
     @Override
     public boolean isEnabled() {
         return true;
@@ -30,10 +30,12 @@ import io.questdb.cairo.pool.WriterSource;
 import io.questdb.cairo.security.AllowAllCairoSecurityContext;
 import io.questdb.cairo.sql.*;
 import io.questdb.cairo.sql.Record;
+import io.questdb.cutlass.text.TextException;
 import io.questdb.cutlass.text.TextLoader;
 import io.questdb.cutlass.text.types.TypeManager;
 import io.questdb.griffin.*;
 import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.griffin.model.CopyModel;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.mp.SCSequence;
@@ -105,6 +107,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private final int maxBlobSizeOnQuery;
     private final NetworkFacade nf;
     private final boolean dumpNetworkTraffic;
+    private final boolean binaryResultFormatPreferred;
     private final int idleSendCountBeforeGivingUp;
     private final int idleRecvCountBeforeGivingUp;
     private final String serverVersion;
@@ -112,12 +115,14 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private final SqlExecutionContextImpl sqlExecutionContext;
     private final Path path = new Path();
     private final IntList bindVariableTypes = new IntList();
+    // bind variable types as declared by Parse message, these are not updated by Bind or Describe
+    private final IntList parameterTypes = new IntList();
     private final IntList selectColumnTypes = new IntList();
     private final WeakObjectPool<NamedStatementWrapper> namedStatementWrapperPool;
     private final WeakObjectPool<Portal> namedPortalPool;
     private final WeakAutoClosableObjectPool<TypesAndInsert> typesAndInsertPool;
     private final DateLocale locale;
-    private final CharSequenceObjHashMap<TableWriter> pendingWriters;
+    private final CharSequenceObjHashMap<TableWriterAPI> pendingWriters;
     private final DirectCharSink utf8Sink;
     private final TypeManager typeManager;
     private final AssociativeCache<TypesAndInsert> typesAndInsertCache;
@@ -139,11 +144,17 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private RecordCursorFactory currentFactory = null;
     // these references are held by context only for a period of processing single request
     // in PF world this request can span multiple messages, but still, only for one request
-    // the rationale is to be able to return "selectAndTypes" instance to thread-local
-    // cache, which is "typesAndSelectCache". We typically do this after query results are
+    // the rationale is to be able to return factory of "selectAndTypes" instance to engine-wide
+    // query factory cache. We typically do this after query results are
     // served to client or query errored out due to network issues
     private TypesAndSelect typesAndSelect = null;
     private TypesAndInsert typesAndInsert = null;
+    // cached insert, which is repeatedly executed in a pipeline outside of explicit transaction,
+    // rows are appended to the writer it holds and committed together on sync
+    private InsertStatement batchInsert;
+    private InsertMethod batchInsertMethod;
+    // batched insert failed, the rest of the pipeline is skipped until sync
+    private boolean batchInsertFailed;
     private long fd;
     private CharSequence queryText;
     private CharSequence queryTag;
@@ -158,16 +169,21 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private int transactionState = NO_TRANSACTION;
     private final PGResumeProcessor resumeQueryCompleteRef = this::resumeQueryComplete;
     private NamedStatementWrapper wrapper;
-    private AssociativeCache<TypesAndSelect> typesAndSelectCache;
     private WeakAutoClosableObjectPool<TypesAndSelect> typesAndSelectPool;
     // this is a reference to types either from the context or named statement, where it is provided
     private IntList activeBindVariableTypes;
+    // declared types of the query being compiled, either from the context or named statement
+    private IntList activeParameterTypes = parameterTypes;
     private boolean sendParameterDescription;
     private PGResumeProcessor resumeProcessor;
     private long maxRows;
     private final PGResumeProcessor resumeCursorExecuteRef = this::resumeCursorExecute;
     private final PGResumeProcessor resumeCursorQueryRef = this::resumeCursorQuery;
     private final SCSequence tempSequence = new SCSequence();
+    private PGCopyInProcessor copyIn;
+    private boolean copyInActive;
+    // bytes of CopyData message that did not fit receive buffer and are yet to arrive
+    private long copyDataRemaining;
 
     public PGConnectionContext(CairoEngine engine, PGWireConfiguration configuration, SqlExecutionContextImpl sqlExecutionContext) {
         this.engine = engine;
@@ -187,6 +203,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         );
         this.maxBlobSizeOnQuery = configuration.getMaxBlobSizeOnQuery();
         this.dumpNetworkTraffic = configuration.getDumpNetworkTraffic();
+        this.binaryResultFormatPreferred = configuration.isBinaryResultFormatPreferred();
         this.idleSendCountBeforeGivingUp = configuration.getIdleSendCountBeforeGivingUp();
         this.idleRecvCountBeforeGivingUp = configuration.getIdleRecvCountBeforeGivingUp();
         this.serverVersion = configuration.getServerVersion();
@@ -277,6 +294,8 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         typeManager.clear();
         clearWriters();
         clearRecvBuffer();
+        rollbackBatchInsert();
+        batchInsertFailed = false;
         typesAndInsertCache.clear();
         namedStatementMap.clear();
         namedPortalMap.clear();
@@ -286,6 +305,11 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         resumeProcessor = null;
         completed = true;
         clearCursorAndFactory();
+        if (copyIn != null) {
+            copyIn.clear();
+        }
+        copyInActive = false;
+        copyDataRemaining = 0;
     }
 
     public void clearWriters() {
@@ -303,10 +327,10 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         sqlExecutionContext.with(AllowAllCairoSecurityContext.INSTANCE, null, null, -1, null);
         Unsafe.free(sendBuffer, sendBufferSize, MemoryTag.NATIVE_PGW_CONN);
         Unsafe.free(recvBuffer, recvBufferSize, MemoryTag.NATIVE_PGW_CONN);
-        Misc.free(typesAndSelectCache);
         Misc.free(path);
         Misc.free(utf8Sink);
         Misc.free(circuitBreaker);
+        copyIn = Misc.free(copyIn);
     }
 
     @Override
@@ -325,22 +349,20 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     }
 
     @Override
-    public TableWriter getWriter(CairoSecurityContext context, CharSequence name, CharSequence lockReason) {
+    public TableWriterAPI getTableWriterAPI(CairoSecurityContext context, CharSequence name, CharSequence lockReason) {
         final int index = pendingWriters.keyIndex(name);
         if (index < 0) {
             return pendingWriters.valueAt(index);
         }
-        return engine.getWriter(context, name, lockReason);
+        return engine.getTableWriterAPI(context, name, lockReason);
     }
 
     public void handleClientOperation(
             @Transient SqlCompiler compiler,
-            @Transient AssociativeCache<TypesAndSelect> selectAndTypesCache,
             @Transient WeakAutoClosableObjectPool<TypesAndSelect> selectAndTypesPool,
             int operation
     ) throws PeerDisconnectedException, PeerIsSlowToReadException, PeerIsSlowToWriteException, BadProtocolException {
 
-        this.typesAndSelectCache = selectAndTypesCache;
         this.typesAndSelectPool = selectAndTypesPool;
 
         try {
@@ -472,6 +494,35 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         bindVariableService.setTimestamp(index, getLongUnsafe(address) + Numbers.JULIAN_EPOCH_OFFSET_USEC);
     }
 
+    private static int getColumnFlags(int columnType) {
+        if (ColumnType.isGeoHash(columnType)) {
+            final int bits = ColumnType.getGeoHashBits(columnType);
+            if (bits > 0 && bits % 5 == 0) {
+                // It's 5 bit per char. If it's integer number of chars value to be serialized as chars
+                return -bits / 5;
+            }
+            return bits;
+        }
+        return 0;
+    }
+
+    private static boolean isFixedSizeBinaryType(int columnType) {
+        // boolean is left out, some drivers expect it to be 't' or 'f' regardless of format code
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private static int getIntUnsafe(long address) {
         return Numbers.bswap(Unsafe.getUnsafe().getInt(address));
     }
@@ -556,6 +607,11 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         responseAsciiSink.put(record.getBool(columnIndex) ? 't' : 'f');
     }
 
+    private void appendBooleanColumnBin(Record record, int columnIndex) {
+        responseAsciiSink.putNetworkInt(Byte.BYTES);
+        responseAsciiSink.put(record.getBool(columnIndex) ? (byte) 1 : (byte) 0);
+    }
+
     private void appendByteColumn(Record record, int columnIndex) {
         long a = responseAsciiSink.skip();
         responseAsciiSink.put((int) record.getByte(columnIndex));
@@ -724,6 +780,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     appendIntCol(record, i);
                     break;
                 case ColumnType.NULL:
+                case BINARY_TYPE_NULL:
                 case ColumnType.STRING:
                 case BINARY_TYPE_STRING:
                     appendStrColumn(record, i);
@@ -772,9 +829,11 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     appendDateColumn(record, i);
                     break;
                 case ColumnType.BOOLEAN:
-                case BINARY_TYPE_BOOLEAN:
                     appendBooleanColumn(record, i);
                     break;
+                case BINARY_TYPE_BOOLEAN:
+                    appendBooleanColumnBin(record, i);
+                    break;
                 case ColumnType.BYTE:
                     appendByteColumn(record, i);
                     break;
@@ -791,15 +850,20 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     appendLong256Column(record, i);
                     break;
                 case ColumnType.GEOBYTE:
+                case BINARY_TYPE_GEOBYTE:
+                    // geohashes are sent as varchar, binary varchar is the same as text
                     putGeoHashStringByteValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 case ColumnType.GEOSHORT:
+                case BINARY_TYPE_GEOSHORT:
                     putGeoHashStringShortValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 case ColumnType.GEOINT:
+                case BINARY_TYPE_GEOINT:
                     putGeoHashStringIntValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 case ColumnType.GEOLONG:
+                case BINARY_TYPE_GEOLONG:
                     putGeoHashStringLongValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 default:
@@ -975,19 +1039,9 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         activeSelectColumnTypes.setPos(2 * columnCount);
 
         for (int i = 0; i < columnCount; i++) {
-            int columnType = m.getColumnType(i);
-            int flags = 0;
-            if (ColumnType.isGeoHash(columnType)) {
-                final int bits = ColumnType.getGeoHashBits(columnType);
-                if (bits > 0 && bits % 5 == 0) {
-                    // It's 5 bit per char. If it's integer number of chars value to be serialized as chars
-                    flags = -bits / 5;
-                } else {
-                    flags = bits;
-                }
-            }
+            final int columnType = m.getColumnType(i);
             activeSelectColumnTypes.setQuick(2 * i, columnType);
-            activeSelectColumnTypes.setQuick(2 * i + 1, flags);
+            activeSelectColumnTypes.setQuick(2 * i + 1, getColumnFlags(columnType));
         }
     }
 
@@ -1000,7 +1054,13 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         // we do not want to overwrite cache entries and potentially
         // leak memory
         if (typesAndSelect != null) {
-            typesAndSelectCache.put(queryText, typesAndSelect);
+            engine.getQueryFactoryCache().push(
+                    queryText,
+                    typesAndSelect.popFactory(),
+                    typesAndSelect.getParameterTypes(),
+                    typesAndSelect.getTypes()
+            );
+            typesAndSelect.close();
             // clear selectAndTypes so that context doesn't accidentally
             // free the factory when context finishes abnormally
             this.typesAndSelect = null;
@@ -1012,6 +1072,18 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         recvBufferReadOffset = 0;
     }
 
+    private void commitBatchInsert() {
+        if (batchInsert != null) {
+            try {
+                batchInsertMethod.commit();
+            } finally {
+                Misc.free(batchInsertMethod);
+                batchInsertMethod = null;
+                batchInsert = null;
+            }
+        }
+    }
+
     private boolean compileQuery(@Transient SqlCompiler compiler)
             throws SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
         if (queryText != null && queryText.length() > 0) {
@@ -1029,15 +1101,21 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 return false;
             }
 
-            typesAndSelect = typesAndSelectCache.poll(queryText);
-
-            if (typesAndSelect != null) {
+            // factory cache is shared by all connections, check factory out
+            // so that it is not used by another connection concurrently,
+            // factory must have been compiled for the same declared parameter types
+            bindVariableService.clear();
+            typesAndSelect = typesAndSelectPool.pop();
+            final RecordCursorFactory factory = engine.getQueryFactoryCache().poll(queryText, activeParameterTypes, typesAndSelect.getTypes());
+            if (factory != null) {
                 // cache hit, define bind variables
-                bindVariableService.clear();
+                typesAndSelect.of(factory, activeParameterTypes);
                 typesAndSelect.defineBindVariables(bindVariableService);
                 queryTag = TAG_SELECT;
                 return false;
             }
+            typesAndSelect.close();
+            typesAndSelect = null;
 
             // not cached - compile to see what it is
             final CompiledQuery cc = compiler.compile(queryText, sqlExecutionContext);
@@ -1046,7 +1124,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             switch (cc.getType()) {
                 case CompiledQuery.SELECT:
                     typesAndSelect = typesAndSelectPool.pop();
-                    typesAndSelect.of(cc.getRecordCursorFactory(), bindVariableService);
+                    typesAndSelect.of(cc.getRecordCursorFactory(), bindVariableService, activeParameterTypes);
                     queryTag = TAG_SELECT;
                     LOG.debug().$("cache select [sql=").$(queryText).$(", thread=").$(Thread.currentThread().getId()).$(']').$();
                     break;
@@ -1056,6 +1134,8 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     typesAndInsert.of(cc.getInsertStatement(), bindVariableService);
                     if (bindVariableService.getIndexedVariableCount() > 0) {
                         LOG.debug().$("cache insert [sql=").$(queryText).$(", thread=").$(Thread.currentThread().getId()).$(']').$();
+                        // cache may evict batched insert
+                        commitBatchInsert();
                         // we can add insert to cache right away because it is local to the connection
                         typesAndInsertCache.put(queryText, typesAndInsert);
                     }
@@ -1063,7 +1143,10 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 case CompiledQuery.COPY_LOCAL:
                     // uncached
                     queryTag = TAG_COPY;
-                    sendCopyInResponse(compiler.getEngine(), cc.getTextLoader());
+                    break;
+                case CompiledQuery.COPY_REMOTE:
+                    queryTag = TAG_COPY;
+                    sendCopyInResponse(cc.getTextLoader(), cc.getCopyFormat());
                     break;
                 case CompiledQuery.SET:
                     configureContextForSet();
@@ -1147,6 +1230,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         if (index > -1) {
             wrapper = namedStatementWrapperPool.pop();
             wrapper.queryText = Chars.toString(queryText);
+            wrapper.parameterTypes.addAll(parameterTypes);
             namedStatementMap.putAt(index, Chars.toString(statementName), wrapper);
             this.activeBindVariableTypes = wrapper.bindVariableTypes;
             this.activeSelectColumnTypes = wrapper.selectColumnTypes;
@@ -1227,8 +1311,31 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void executeBatchInsert() throws SqlException {
+        if (batchInsertFailed) {
+            prepareCommandComplete(true);
+            return;
+        }
+        final InsertStatement insert = typesAndInsert.getInsert();
+        if (insert != batchInsert) {
+            commitBatchInsert();
+        }
+        try {
+            // writer stays with the method until sync, re-creating method only binds new row values
+            batchInsertMethod = insert.createMethod(sqlExecutionContext, this);
+            batchInsert = insert;
+            rowCount = batchInsertMethod.execute();
+        } catch (Throwable e) {
+            // implicit transaction is rolled back as a whole
+            rollbackBatchInsert();
+            batchInsertFailed = true;
+            throw e;
+        }
+        prepareCommandComplete(true);
+    }
+
     private void executeInsert() throws SqlException {
-        final TableWriter w;
+        final TableWriterAPI w;
         try {
             switch (transactionState) {
                 case IN_TRANSACTION:
@@ -1274,7 +1381,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             case COMMIT_TRANSACTION:
                 try {
                     for (int i = 0, n = pendingWriters.size(); i < n; i++) {
-                        final TableWriter m = pendingWriters.valueQuick(i);
+                        final TableWriterAPI m = pendingWriters.valueQuick(i);
                         m.commit();
                         Misc.free(m);
                     }
@@ -1286,7 +1393,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             case ROLLING_BACK_TRANSACTION:
                 try {
                     for (int i = 0, n = pendingWriters.size(); i < n; i++) {
-                        final TableWriter m = pendingWriters.valueQuick(i);
+                        final TableWriterAPI m = pendingWriters.valueQuick(i);
                         m.rollback();
                         Misc.free(m);
                     }
@@ -1339,6 +1446,15 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             return;
         }
 
+        if (copyDataRemaining > 0) {
+            // tail of CopyData message, which did not fit receive buffer
+            final int n = (int) Math.min(len, copyDataRemaining);
+            recvBufferReadOffset += n;
+            copyDataRemaining -= n;
+            processCopyData(address, address + n);
+            return;
+        }
+
         // this is a type-prefixed message
         // we will wait until we receive the entire header
 
@@ -1360,6 +1476,13 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
 
         // msgLen does not take into account type byte
         if (msgLen > len - 1) {
+            if (type == 'd' && len > PREFIXED_MESSAGE_HEADER_LEN) {
+                // copy data is streamed, there is no need to wait for the entire message
+                recvBufferReadOffset += len;
+                copyDataRemaining = msgLen + 1 - len;
+                processCopyData(address + PREFIXED_MESSAGE_HEADER_LEN, address + len);
+                return;
+            }
             // When this happens we need to shift our receive buffer left
             // to fit this message. Outer function will do that if we
             // just exit.
@@ -1403,12 +1526,20 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 processExec(msgLo, msgLimit, compiler);
                 break;
             case 'S': // sync
+                if (copyInActive) {
+                    // sync and flush are ignored in copy-in mode
+                    break;
+                }
                 processSyncActions();
+                batchInsertFailed = false;
+                commitBatchInsert();
                 prepareReadyForQuery();
                 prepareForNewQuery();
                 // fall thru
             case 'H': // flush
-                sendAndReset();
+                if (!copyInActive) {
+                    sendAndReset();
+                }
                 break;
             case 'D': // describe
                 processDescribe(msgLo, msgLimit, compiler);
@@ -1416,9 +1547,14 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             case 'Q':
                 processQuery(msgLo, msgLimit, compiler);
                 break;
-            case 'd':
-                System.out.println("data " + msgLen);
-                // msgLen includes 4 bytes of self
+            case 'd': // copy data
+                processCopyData(msgLo, msgLimit);
+                break;
+            case 'c': // copy done
+                processCopyDone();
+                break;
+            case 'f': // copy fail
+                processCopyFail(msgLo, msgLimit);
                 break;
             default:
                 LOG.error().$("unknown message [type=").$(type).$(']').$();
@@ -1592,6 +1728,15 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void preferBinaryResultFormat() {
+        for (int i = 0, n = activeSelectColumnTypes.size() / 2; i < n; i++) {
+            final int columnType = activeSelectColumnTypes.getQuick(2 * i);
+            if (isFixedSizeBinaryType(columnType)) {
+                activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType((short) 1, columnType));
+            }
+        }
+    }
+
     private void prepareRowDescription() {
         final RecordMetadata metadata = typesAndSelect.getFactory().getMetadata();
         ResponseAsciiSink sink = responseAsciiSink;
@@ -1601,7 +1746,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         sink.putNetworkShort((short) n);
         for (int i = 0; i < n; i++) {
             final int typeFlag = activeSelectColumnTypes.getQuick(2 * i);
-            final int columnType = toColumnType(ColumnType.isNull(typeFlag) ? ColumnType.STRING : typeFlag);
+            final int columnType = ColumnType.isNull(toColumnType(typeFlag)) ? ColumnType.STRING : toColumnType(typeFlag);
             sink.encodeUtf8Z(metadata.getColumnName(i));
             sink.putIntDirect(0); //tableOid ?
             sink.putNetworkShort((short) (i + 1)); //column number, starting from 1
@@ -1701,15 +1846,17 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                         for (int i = 0; i < columnCount; i++) {
                             lo += Short.BYTES;
                             final short code = getShortUnsafe(lo);
-                            activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType(code, m.getColumnType(i)));
-                            activeSelectColumnTypes.setQuick(2 * i + 1, 0);
+                            final int columnType = m.getColumnType(i);
+                            activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType(code, columnType));
+                            activeSelectColumnTypes.setQuick(2 * i + 1, getColumnFlags(columnType));
                         }
                     } else if (columnFormatCodeCount == 1) {
                         lo += Short.BYTES;
                         final short code = getShortUnsafe(lo);
                         for (int i = 0; i < columnCount; i++) {
-                            activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType(code, m.getColumnType(i)));
-                            activeSelectColumnTypes.setQuick(2 * i + 1, 0);
+                            final int columnType = m.getColumnType(i);
+                            activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType(code, columnType));
+                            activeSelectColumnTypes.setQuick(2 * i + 1, getColumnFlags(columnType));
                         }
                     } else {
                         LOG.error()
@@ -1825,12 +1972,19 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private void processExecute(int maxRows, SqlCompiler compiler) throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
         if (typesAndSelect != null) {
             LOG.debug().$("executing query").$();
+            commitBatchInsert();
             setupFactoryAndCursor(compiler);
             sendCursor(maxRows, resumeCursorExecuteRef, resumeCommandCompleteRef);
         } else if (typesAndInsert != null) {
             LOG.debug().$("executing insert").$();
-            executeInsert();
+            if (transactionState == NO_TRANSACTION && bindVariableService.getIndexedVariableCount() > 0) {
+                executeBatchInsert();
+            } else {
+                commitBatchInsert();
+                executeInsert();
+            }
         } else { //this must be a OK/SET/COMMIT/ROLLBACK or empty query
+            commitBatchInsert();
             executeTag();
             prepareCommandComplete(false);
         }
@@ -1929,24 +2083,15 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         final CharSequence statementName = getStatementName(lo, hi);
 
         //query text
-        lo = hi + 1;
-        hi = getStringLength(lo, msgLimit, "bad query text length");
-
-        parseQueryText(lo, hi, compiler);
+        final long queryLo = hi + 1;
+        final long queryHi = getStringLength(queryLo, msgLimit, "bad query text length");
 
         //parameter type count
-        lo = hi + 1;
+        lo = queryHi + 1;
         this.parsePhaseBindVariableCount = getShort(lo, msgLimit, "could not read parameter type count");
 
-        if (statementName != null) {
-            LOG.info().$("prepare [name=").$(statementName).$(']').$();
-            configurePreparedStatement(statementName);
-        } else {
-            this.activeBindVariableTypes = bindVariableTypes;
-            this.activeSelectColumnTypes = selectColumnTypes;
-        }
-
         //process parameter types
+        parameterTypes.clear();
         if (this.parsePhaseBindVariableCount > 0) {
             if (lo + Short.BYTES + this.parsePhaseBindVariableCount * 4L > msgLimit) {
                 LOG.error()
@@ -1958,7 +2103,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             }
 
             LOG.debug().$("params [count=").$(this.parsePhaseBindVariableCount).$(']').$();
-            setupBindVariables(lo + Short.BYTES, activeBindVariableTypes, this.parsePhaseBindVariableCount);
+            setupBindVariables(lo + Short.BYTES, parameterTypes, this.parsePhaseBindVariableCount);
         } else if (this.parsePhaseBindVariableCount < 0) {
             LOG.error()
                     .$("invalid parameter count [parameterCount=").$(this.parsePhaseBindVariableCount)
@@ -1967,6 +2112,23 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             throw BadProtocolException.INSTANCE;
         }
 
+        // declared types are known before the query is compiled, cached factory is looked up with them
+        activeParameterTypes = parameterTypes;
+        parseQueryText(queryLo, queryHi, compiler);
+
+        if (statementName != null) {
+            LOG.info().$("prepare [name=").$(statementName).$(']').$();
+            configurePreparedStatement(statementName);
+        } else {
+            this.activeBindVariableTypes = bindVariableTypes;
+            this.activeSelectColumnTypes = selectColumnTypes;
+        }
+
+        if (this.parsePhaseBindVariableCount > 0) {
+            activeBindVariableTypes.clear();
+            activeBindVariableTypes.addAll(parameterTypes);
+        }
+
         if (typesAndSelect != null) {
             buildSelectColumnTypes();
         }
@@ -1974,18 +2136,76 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         syncActions.add(SYNC_PARSE);
     }
 
+    private void processCopyData(long lo, long hi) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        // data that follows failed copy is dropped
+        if (copyInActive) {
+            try {
+                copyIn.onData(lo, hi);
+            } catch (TextException e) {
+                reportCopyInError(e.getFlyweightMessage(), 0);
+            } catch (CairoException e) {
+                reportCopyInError(e.getFlyweightMessage(), e.getErrno());
+            }
+        }
+    }
+
+    private void processCopyDone() throws PeerDisconnectedException, PeerIsSlowToReadException {
+        if (copyInActive) {
+            try {
+                rowCount = copyIn.done();
+            } catch (TextException e) {
+                reportCopyInError(e.getFlyweightMessage(), 0);
+                return;
+            } catch (CairoException e) {
+                reportCopyInError(e.getFlyweightMessage(), e.getErrno());
+                return;
+            }
+            copyInActive = false;
+            prepareCommandComplete(true);
+            sendReadyForNewQuery();
+        }
+    }
+
+    private void processCopyFail(long lo, long hi) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        if (copyInActive) {
+            copyIn.clear();
+            copyInActive = false;
+            final CharacterStoreEntry e = characterStore.newEntry();
+            e.put("COPY from stdin failed: ");
+            // message is null terminated
+            if (!Chars.utf8Decode(lo, hi - 1, e)) {
+                e.put("invalid UTF8 bytes in error message");
+            }
+            prepareError(-1, characterStore.toImmutable(), 0);
+            sendReadyForNewQuery();
+        }
+    }
+
     private void processQuery(long lo, long limit, @Transient SqlCompiler compiler)
             throws BadProtocolException, SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
         // simple query, typically a script, which we don't yet support
         prepareForNewQuery();
+        commitBatchInsert();
+        // simple query does not declare parameter types
+        parameterTypes.clear();
+        activeParameterTypes = parameterTypes;
         parseQueryText(lo, limit - 1, compiler);
 
+        if (copyInActive) {
+            // client is to send data, query completes when it is done
+            return;
+        }
+
         if (typesAndSelect != null) {
             activeSelectColumnTypes = selectColumnTypes;
             buildSelectColumnTypes();
             assert queryText != null;
             queryTag = TAG_SELECT;
             setupFactoryAndCursor(compiler);
+            if (binaryResultFormatPreferred) {
+                // simple query client cannot ask for result format, it learns the one we use from RowDescription
+                preferBinaryResultFormat();
+            }
             prepareRowDescription();
             sendCursor(0, resumeCursorQueryRef, resumeQueryCompleteRef);
         } else if (typesAndInsert != null) {
@@ -2090,6 +2310,29 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         return n;
     }
 
+    private void rollbackBatchInsert() {
+        if (batchInsertMethod != null) {
+            final TableWriterAPI w = batchInsertMethod.popWriter();
+            batchInsertMethod = null;
+            batchInsert = null;
+            if (w != null) {
+                try {
+                    w.rollback();
+                } finally {
+                    Misc.free(w);
+                }
+            }
+        }
+    }
+
+    private void reportCopyInError(CharSequence flyweightMessage, long errno) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        // receive buffer is left alone, the rest of copy data has to be dropped message by message
+        prepareError(-1, flyweightMessage, errno);
+        copyIn.clear();
+        copyInActive = false;
+        sendReadyForNewQuery();
+    }
+
     private void reportError(int position, CharSequence flyweightMessage, long errno)
             throws PeerDisconnectedException, PeerIsSlowToReadException {
         prepareError(position, flyweightMessage, errno);
@@ -2132,29 +2375,26 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         responseAsciiSink.reset();
     }
 
-    private void sendCopyInResponse(CairoEngine engine, TextLoader textLoader) throws PeerDisconnectedException, PeerIsSlowToReadException {
-        if (
-                TableUtils.TABLE_EXISTS == engine.getStatus(
-                        sqlExecutionContext.getCairoSecurityContext(),
-                        path,
-                        textLoader.getTableName()
-                )) {
-            responseAsciiSink.put(MESSAGE_TYPE_COPY_IN_RESPONSE);
-            long addr = responseAsciiSink.skip();
-            responseAsciiSink.put((byte) 0); // TEXT (1=BINARY, which we do not support yet)
-            try (TableWriter writer = engine.getWriter(sqlExecutionContext.getCairoSecurityContext(), textLoader.getTableName(), WRITER_LOCK_REASON)) {
-                RecordMetadata metadata = writer.getMetadata();
-                responseAsciiSink.putNetworkShort((short) metadata.getColumnCount());
-                for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
-                    responseAsciiSink.putNetworkShort((short) PGOids.getTypeOid(metadata.getColumnType(i)));
-                }
-            }
-            responseAsciiSink.putLen(addr);
-        } else {
-            final SqlException e = SqlException.$(0, "table '").put(textLoader.getTableName()).put("' does not exist");
-            prepareError(e.getPosition(), e.getFlyweightMessage(), 0);
-            prepareReadyForQuery();
+    private void sendCopyInResponse(TextLoader textLoader, int format) throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
+        if (TableUtils.TABLE_EXISTS != engine.getStatus(sqlExecutionContext.getCairoSecurityContext(), path, textLoader.getTableName())) {
+            throw SqlException.$(0, "table '").put(textLoader.getTableName()).put("' does not exist");
         }
+        if (copyIn == null) {
+            copyIn = new PGCopyInProcessor(engine);
+        }
+        copyIn.of(sqlExecutionContext.getCairoSecurityContext(), textLoader, format);
+        copyInActive = true;
+
+        final byte formatCode = (byte) (format == CopyModel.FORMAT_BINARY ? 1 : 0);
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_IN_RESPONSE);
+        long addr = responseAsciiSink.skip();
+        responseAsciiSink.put(formatCode);
+        final int columnCount = copyIn.getColumnCount();
+        responseAsciiSink.putNetworkShort((short) columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            responseAsciiSink.putNetworkShort(formatCode);
+        }
+        responseAsciiSink.putLen(addr);
         sendAndReset();
     }
 
@@ -2233,6 +2473,8 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 } catch (ReaderOutOfDateException e) {
                     LOG.info().$(e.getFlyweightMessage()).$();
                     currentFactory = Misc.free(currentFactory);
+                    // other cached factories of this query are just as stale
+                    engine.getQueryFactoryCache().invalidate(queryText);
                     compileQuery(compiler);
                     buildSelectColumnTypes();
                 } catch (Throwable e) {
@@ -2250,6 +2492,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         queryText = wrapper.queryText;
         LOG.debug().$("wrapper query [q=`").$(wrapper.queryText).$("`]").$();
         this.activeBindVariableTypes = wrapper.bindVariableTypes;
+        this.activeParameterTypes = wrapper.parameterTypes;
         this.parsePhaseBindVariableCount = wrapper.bindVariableTypes.size();
         this.activeSelectColumnTypes = wrapper.selectColumnTypes;
         if (compileQuery(compiler) && typesAndSelect != null) {
@@ -2302,6 +2545,8 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     public static class NamedStatementWrapper implements Mutable {
 
         public final IntList bindVariableTypes = new IntList();
+        // types declared by Parse message, named statement is recompiled and looked up in cache with these
+        public final IntList parameterTypes = new IntList();
         public final IntList selectColumnTypes = new IntList();
         public CharSequence queryText = null;
 
@@ -2309,6 +2554,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         public void clear() {
             queryText = null;
             bindVariableTypes.clear();
+            parameterTypes.clear();
             selectColumnTypes.clear();
         }
     }
@@ -0,0 +1,435 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.pgwire;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cutlass.text.Atomicity;
+import io.questdb.cutlass.text.TextException;
+import io.questdb.cutlass.text.TextLoader;
+import io.questdb.griffin.model.CopyModel;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+/**
+ * Loads data client sends with COPY ... FROM STDIN. Text data is handed over to {@link TextLoader}
+ * as it arrives, PostgreSQL text format is de-escaped by {@link PGCopyTextDecoder} on the way. Binary data is decoded tuple by tuple straight into {@link TableWriter} rows,
+ * tuples split between CopyData messages are reassembled in native buffer. Data is committed
+ * once, when client is done sending it, unless writer has to make room for out-of-order rows.
+ */
+public class PGCopyInProcessor implements Closeable, Mutable {
+    private static final Log LOG = LogFactory.getLog(PGCopyInProcessor.class);
+    private static final String WRITER_LOCK_REASON = "pgCopy";
+    // "PGCOPY\n\377\r\n\0"
+    private static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    // signature, flags and header extension length
+    private static final int BINARY_HEADER_SIZE = BINARY_SIGNATURE.length + 2 * Integer.BYTES;
+    private static final int BINARY_FLAG_OIDS = 1 << 16;
+    private final CairoEngine engine;
+    private final StringSink utf8Sink = new StringSink();
+    private final LongList fieldAddresses = new LongList();
+    private final IntList fieldLengths = new IntList();
+    private final PGCopyTextDecoder textDecoder = new PGCopyTextDecoder();
+    private TextLoader textLoader;
+    private CairoSecurityContext securityContext;
+    private TableWriter writer;
+    private boolean binary;
+    private boolean pgText;
+    private boolean binaryHeaderRead;
+    private boolean binaryTrailerRead;
+    private int columnCount;
+    private int maxUncommittedRows;
+    private long buf;
+    private long bufCapacity;
+    private long bufSize;
+    private long rowCount;
+
+    public PGCopyInProcessor(CairoEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public void clear() {
+        // uncommitted rows are rolled back when writer is returned to the pool
+        writer = Misc.free(writer);
+        if (textLoader != null) {
+            textLoader.clear();
+        }
+        textDecoder.clear();
+        securityContext = null;
+        binaryHeaderRead = false;
+        binaryTrailerRead = false;
+        bufSize = 0;
+        rowCount = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        textLoader = Misc.free(textLoader);
+        textDecoder.close();
+        if (buf != 0) {
+            Unsafe.free(buf, bufCapacity, MemoryTag.NATIVE_DEFAULT);
+            buf = 0;
+            bufCapacity = 0;
+        }
+    }
+
+    /**
+     * Commits loaded data.
+     *
+     * @return number of rows loaded
+     */
+    public long done() throws TextException {
+        try {
+            if (binary) {
+                if (!binaryTrailerRead && (bufSize > 0 || !binaryHeaderRead)) {
+                    throw CairoException.instance(0).put("incomplete binary copy data");
+                }
+                writer.commit();
+                return rowCount;
+            }
+            if (pgText) {
+                textDecoder.flush();
+                parseDecodedText();
+            }
+            textLoader.wrapUp();
+            return textLoader.getWrittenLineCount();
+        } finally {
+            clear();
+        }
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Prepares for loading data into table text loader of the compiler is configured for. Text loader
+     * belongs to the compiler and can be reused by the time client sends data, hence the configuration
+     * is copied.
+     */
+    public void of(CairoSecurityContext securityContext, TextLoader compilerTextLoader, int format) {
+        clear();
+        this.securityContext = securityContext;
+        this.binary = format == CopyModel.FORMAT_BINARY;
+        this.pgText = format == CopyModel.FORMAT_TEXT;
+        final String tableName = Chars.toString(compilerTextLoader.getTableName());
+        if (binary) {
+            writer = engine.getWriter(securityContext, tableName, WRITER_LOCK_REASON);
+            final RecordMetadata metadata = writer.getMetadata();
+            columnCount = metadata.getColumnCount();
+            maxUncommittedRows = writer.getMetadata().getMaxUncommittedRows();
+            fieldAddresses.setPos(columnCount);
+            fieldLengths.setPos(columnCount);
+        } else {
+            try (TableReader reader = engine.getReader(securityContext, tableName)) {
+                columnCount = reader.getMetadata().getColumnCount();
+            }
+            if (textLoader == null) {
+                textLoader = new TextLoader(engine);
+            }
+            textLoader.clear();
+            textLoader.setState(TextLoader.ANALYZE_STRUCTURE);
+            textLoader.configureDestination(
+                    tableName,
+                    false,
+                    false,
+                    Atomicity.SKIP_ROW,
+                    compilerTextLoader.getPartitionBy(),
+                    Chars.toString(compilerTextLoader.getTimestampCol())
+            );
+            textLoader.setForceHeaders(compilerTextLoader.isForceHeaders());
+            textLoader.setSkipRowsWithExtraValues(false);
+            if (compilerTextLoader.getColumnDelimiter() > 0) {
+                textLoader.configureColumnDelimiter(compilerTextLoader.getColumnDelimiter());
+            }
+            if (pgText) {
+                textDecoder.of(compilerTextLoader.getColumnDelimiter() > 0 ? compilerTextLoader.getColumnDelimiter() : (byte) '\t');
+            }
+        }
+        LOG.info().$("copy in [table=").$(tableName).$(", format=").$(format).I$();
+    }
+
+    public void onData(long lo, long hi) throws TextException {
+        if (!binary) {
+            if (pgText) {
+                textDecoder.decode(lo, hi);
+                parseDecodedText();
+            } else {
+                textLoader.parse(lo, hi, securityContext);
+            }
+            return;
+        }
+
+        if (bufSize == 0) {
+            // avoid copying, only the incomplete tuple at the end is kept
+            final long p = parseBinary(lo, hi);
+            if (p < hi) {
+                appendToBuffer(p, hi);
+            }
+        } else {
+            appendToBuffer(lo, hi);
+            final long p = parseBinary(buf, buf + bufSize);
+            bufSize = buf + bufSize - p;
+            if (bufSize > 0 && p > buf) {
+                Vect.memmove(buf, p, bufSize);
+            }
+        }
+    }
+
+    private static int getInt(long address) {
+        return Numbers.bswap(Unsafe.getUnsafe().getInt(address));
+    }
+
+    private static long getInteger(long address, int len, int columnIndex) {
+        switch (len) {
+            case Byte.BYTES:
+                return Unsafe.getUnsafe().getByte(address);
+            case Short.BYTES:
+                return Numbers.bswap(Unsafe.getUnsafe().getShort(address));
+            case Integer.BYTES:
+                return getInt(address);
+            case Long.BYTES:
+                return PGConnectionContext.getLongUnsafe(address);
+            default:
+                throw invalidLength(columnIndex, len);
+        }
+    }
+
+    private static CairoException invalidLength(int columnIndex, int len) {
+        return CairoException.instance(0).put("invalid binary value length [column=").put(columnIndex).put(", length=").put(len).put(']');
+    }
+
+    // PostgreSQL timestamps are microseconds and dates are days since 2000-01-01
+    private static long getTimestamp(long address, int len, int columnIndex) {
+        switch (len) {
+            case Long.BYTES:
+                return PGConnectionContext.getLongUnsafe(address) + Numbers.JULIAN_EPOCH_OFFSET_USEC;
+            case Integer.BYTES:
+                return getInt(address) * Timestamps.DAY_MICROS + Numbers.JULIAN_EPOCH_OFFSET_USEC;
+            default:
+                throw invalidLength(columnIndex, len);
+        }
+    }
+
+    private void appendRow() {
+        final RecordMetadata metadata = writer.getMetadata();
+        final int timestampIndex = metadata.getTimestampIndex();
+        final TableWriter.Row row;
+        if (timestampIndex > -1) {
+            final int len = fieldLengths.getQuick(timestampIndex);
+            if (len == -1) {
+                throw CairoException.instance(0).put("designated timestamp cannot be null [column=").put(timestampIndex).put(']');
+            }
+            row = writer.newRow(getTimestamp(fieldAddresses.getQuick(timestampIndex), len, timestampIndex));
+        } else {
+            row = writer.newRow();
+        }
+
+        try {
+            for (int i = 0; i < columnCount; i++) {
+                final int len = fieldLengths.getQuick(i);
+                // nulls are left for writer to fill in
+                if (i != timestampIndex && len != -1) {
+                    putValue(row, i, metadata.getColumnType(i), fieldAddresses.getQuick(i), len);
+                }
+            }
+            row.append();
+        } catch (Throwable e) {
+            row.cancel();
+            throw e;
+        }
+        rowCount++;
+
+        if (writer.getO3RowCount() >= maxUncommittedRows) {
+            writer.commitWithLag();
+        }
+    }
+
+    private void appendToBuffer(long lo, long hi) {
+        final long len = hi - lo;
+        if (bufSize + len > bufCapacity) {
+            final long capacity = Numbers.ceilPow2(bufSize + len);
+            buf = Unsafe.realloc(buf, bufCapacity, capacity, MemoryTag.NATIVE_DEFAULT);
+            bufCapacity = capacity;
+        }
+        Vect.memcpy(buf + bufSize, lo, len);
+        bufSize += len;
+    }
+
+    private CharSequence decodeUtf8(long address, int len, int columnIndex) {
+        utf8Sink.clear();
+        if (Chars.utf8Decode(address, address + len, utf8Sink)) {
+            return utf8Sink;
+        }
+        throw CairoException.instance(0).put("invalid UTF8 bytes [column=").put(columnIndex).put(']');
+    }
+
+    /**
+     * @return address of the first byte that is not parsed yet
+     */
+    private long parseBinary(long lo, long hi) {
+        long p = lo;
+        if (!binaryHeaderRead) {
+            if (hi - p < BINARY_HEADER_SIZE) {
+                return p;
+            }
+            for (int i = 0, n = BINARY_SIGNATURE.length; i < n; i++) {
+                if (Unsafe.getUnsafe().getByte(p + i) != BINARY_SIGNATURE[i]) {
+                    throw CairoException.instance(0).put("invalid binary copy signature");
+                }
+            }
+            if ((getInt(p + BINARY_SIGNATURE.length) & BINARY_FLAG_OIDS) != 0) {
+                throw CairoException.instance(0).put("binary copy with OIDs is not supported");
+            }
+            final int extensionLength = getInt(p + BINARY_SIGNATURE.length + Integer.BYTES);
+            if (hi - p < BINARY_HEADER_SIZE + (long) extensionLength) {
+                return p;
+            }
+            p += BINARY_HEADER_SIZE + extensionLength;
+            binaryHeaderRead = true;
+        }
+
+        while (p + Short.BYTES <= hi) {
+            if (binaryTrailerRead) {
+                throw CairoException.instance(0).put("unexpected data after binary copy trailer");
+            }
+            final short fieldCount = Numbers.bswap(Unsafe.getUnsafe().getShort(p));
+            if (fieldCount == -1) {
+                binaryTrailerRead = true;
+                p += Short.BYTES;
+                continue;
+            }
+            if (fieldCount != columnCount) {
+                throw CairoException.instance(0).put("column count mismatch [expected=").put(columnCount).put(", actual=").put(fieldCount).put(']');
+            }
+
+            long q = p + Short.BYTES;
+            for (int i = 0; i < fieldCount; i++) {
+                if (q + Integer.BYTES > hi) {
+                    return p;
+                }
+                final int len = getInt(q);
+                q += Integer.BYTES;
+                fieldAddresses.setQuick(i, q);
+                fieldLengths.setQuick(i, len);
+                if (len > 0) {
+                    q += len;
+                    if (q > hi) {
+                        return p;
+                    }
+                }
+            }
+            appendRow();
+            p = q;
+        }
+        return p;
+    }
+
+    private void parseDecodedText() throws TextException {
+        final long lo = textDecoder.getOutLo();
+        final long hi = textDecoder.getOutHi();
+        if (hi > lo) {
+            textLoader.parse(lo, hi, securityContext);
+        }
+    }
+
+    private void putValue(TableWriter.Row row, int columnIndex, int columnType, long address, int len) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+                if (len != Byte.BYTES) {
+                    throw invalidLength(columnIndex, len);
+                }
+                row.putBool(columnIndex, Unsafe.getUnsafe().getByte(address) != 0);
+                break;
+            case ColumnType.BYTE:
+                row.putByte(columnIndex, (byte) getInteger(address, len, columnIndex));
+                break;
+            case ColumnType.SHORT:
+                row.putShort(columnIndex, (short) getInteger(address, len, columnIndex));
+                break;
+            case ColumnType.INT:
+                row.putInt(columnIndex, (int) getInteger(address, len, columnIndex));
+                break;
+            case ColumnType.LONG:
+                row.putLong(columnIndex, getInteger(address, len, columnIndex));
+                break;
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                final double value;
+                if (len == Float.BYTES) {
+                    value = Float.intBitsToFloat(getInt(address));
+                } else if (len == Double.BYTES) {
+                    value = Double.longBitsToDouble(PGConnectionContext.getLongUnsafe(address));
+                } else {
+                    throw invalidLength(columnIndex, len);
+                }
+                if (ColumnType.isDouble(columnType)) {
+                    row.putDouble(columnIndex, value);
+                } else {
+                    row.putFloat(columnIndex, (float) value);
+                }
+                break;
+            case ColumnType.DATE:
+                row.putDate(columnIndex, getTimestamp(address, len, columnIndex) / 1000);
+                break;
+            case ColumnType.TIMESTAMP:
+                row.putTimestamp(columnIndex, getTimestamp(address, len, columnIndex));
+                break;
+            case ColumnType.CHAR:
+                final CharSequence c = decodeUtf8(address, len, columnIndex);
+                if (c.length() > 0) {
+                    row.putChar(columnIndex, c.charAt(0));
+                }
+                break;
+            case ColumnType.STRING:
+                row.putStr(columnIndex, decodeUtf8(address, len, columnIndex));
+                break;
+            case ColumnType.SYMBOL:
+                row.putSym(columnIndex, decodeUtf8(address, len, columnIndex));
+                break;
+            case ColumnType.LONG256:
+                row.putLong256(columnIndex, decodeUtf8(address, len, columnIndex));
+                break;
+            case ColumnType.GEOBYTE:
+            case ColumnType.GEOSHORT:
+            case ColumnType.GEOINT:
+            case ColumnType.GEOLONG:
+                row.putGeoStr(columnIndex, decodeUtf8(address, len, columnIndex));
+                break;
+            case ColumnType.BINARY:
+                row.putBin(columnIndex, address, len);
+                break;
+            default:
+                throw CairoException.instance(0).put("unsupported column type [column=").put(columnIndex).put(", type=").put(ColumnType.nameOf(columnType)).put(']');
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.pgwire;
+
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Mutable;
+import io.questdb.std.Numbers;
+import io.questdb.std.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Rewrites PostgreSQL text COPY data as delimited text {@link io.questdb.cutlass.text.TextLoader} understands.
+ * Backslash escapes are decoded per field, fields that end up containing delimiter, quote or line end are
+ * quoted and "\N" becomes an empty field, which loader treats as null. Escape sequences and fields can be
+ * split between CopyData messages, incomplete field is kept until the rest of it arrives.
+ */
+class PGCopyTextDecoder implements Closeable, Mutable {
+    private static final int ESC_NONE = 0;
+    private static final int ESC_BACKSLASH = 1;
+    private static final int ESC_OCTAL = 2;
+    private static final int ESC_HEX = 3;
+    private byte delimiter;
+    private int escState;
+    private int escValue;
+    private int escDigits;
+    private boolean lineStart;
+    private boolean nullField;
+    private boolean quoteField;
+    private boolean endOfData;
+    private long field;
+    private long fieldCapacity;
+    private long fieldSize;
+    private long out;
+    private long outCapacity;
+    private long outSize;
+
+    @Override
+    public void clear() {
+        escState = ESC_NONE;
+        lineStart = true;
+        nullField = false;
+        quoteField = false;
+        endOfData = false;
+        fieldSize = 0;
+        outSize = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (field != 0) {
+            Unsafe.free(field, fieldCapacity, MemoryTag.NATIVE_DEFAULT);
+            field = 0;
+            fieldCapacity = 0;
+        }
+        if (out != 0) {
+            Unsafe.free(out, outCapacity, MemoryTag.NATIVE_DEFAULT);
+            out = 0;
+            outCapacity = 0;
+        }
+    }
+
+    /**
+     * Decodes data up to and including the last complete field. Decoded text is available
+     * between {@link #getOutLo()} and {@link #getOutHi()} until the next call.
+     */
+    public void decode(long lo, long hi) {
+        outSize = 0;
+        long p = lo;
+        while (p < hi && !endOfData) {
+            if (onByte(Unsafe.getUnsafe().getByte(p))) {
+                p++;
+            }
+        }
+    }
+
+    /**
+     * Completes the last field when data does not end with line end.
+     */
+    public void flush() {
+        outSize = 0;
+        if (endOfData) {
+            return;
+        }
+        switch (escState) {
+            case ESC_BACKSLASH:
+                putField((byte) '\\');
+                break;
+            case ESC_OCTAL:
+                putField((byte) escValue);
+                break;
+            case ESC_HEX:
+                putField(escDigits > 0 ? (byte) escValue : (byte) 'x');
+                break;
+            default:
+                break;
+        }
+        escState = ESC_NONE;
+        if (fieldSize > 0 || nullField) {
+            endField();
+        }
+    }
+
+    public long getOutHi() {
+        return out + outSize;
+    }
+
+    public long getOutLo() {
+        return out;
+    }
+
+    public void of(byte delimiter) {
+        clear();
+        this.delimiter = delimiter;
+    }
+
+    private static int hexDigit(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private void endField() {
+        if (!nullField) {
+            if (quoteField) {
+                putOut((byte) '"');
+                for (long i = 0; i < fieldSize; i++) {
+                    final byte b = Unsafe.getUnsafe().getByte(field + i);
+                    putOut(b);
+                    if (b == '"') {
+                        putOut(b);
+                    }
+                }
+                putOut((byte) '"');
+            } else {
+                for (long i = 0; i < fieldSize; i++) {
+                    putOut(Unsafe.getUnsafe().getByte(field + i));
+                }
+            }
+        }
+        fieldSize = 0;
+        nullField = false;
+        quoteField = false;
+    }
+
+    /**
+     * @return false when byte has to be processed again after escape sequence is complete
+     */
+    private boolean onByte(byte b) {
+        switch (escState) {
+            case ESC_BACKSLASH:
+                escState = ESC_NONE;
+                switch (b) {
+                    case 'b':
+                        putField((byte) '\b');
+                        break;
+                    case 'f':
+                        putField((byte) '\f');
+                        break;
+                    case 'n':
+                        putField((byte) '\n');
+                        break;
+                    case 'r':
+                        putField((byte) '\r');
+                        break;
+                    case 't':
+                        putField((byte) '\t');
+                        break;
+                    case 'v':
+                        putField((byte) 11);
+                        break;
+                    case 'x':
+                        escState = ESC_HEX;
+                        escValue = 0;
+                        escDigits = 0;
+                        break;
+                    case 'N':
+                        if (fieldSize == 0 && !nullField) {
+                            nullField = true;
+                        } else {
+                            putField(b);
+                        }
+                        break;
+                    case '.':
+                        // end-of-data marker
+                        if (lineStart && fieldSize == 0 && !nullField) {
+                            endOfData = true;
+                        } else {
+                            putField(b);
+                        }
+                        break;
+                    default:
+                        if (b >= '0' && b <= '7') {
+                            escState = ESC_OCTAL;
+                            escValue = b - '0';
+                            escDigits = 1;
+                        } else {
+                            putField(b);
+                        }
+                        break;
+                }
+                return true;
+            case ESC_OCTAL:
+                if (b >= '0' && b <= '7') {
+                    escValue = (escValue << 3) + b - '0';
+                    if (++escDigits == 3) {
+                        escState = ESC_NONE;
+                        putField((byte) escValue);
+                    }
+                    return true;
+                }
+                escState = ESC_NONE;
+                putField((byte) escValue);
+                return false;
+            case ESC_HEX:
+                final int d = hexDigit(b);
+                if (d > -1) {
+                    escValue = (escValue << 4) + d;
+                    if (++escDigits == 2) {
+                        escState = ESC_NONE;
+                        putField((byte) escValue);
+                    }
+                    return true;
+                }
+                escState = ESC_NONE;
+                putField(escDigits > 0 ? (byte) escValue : (byte) 'x');
+                return false;
+            default:
+                if (b == '\\') {
+                    escState = ESC_BACKSLASH;
+                } else if (b == delimiter) {
+                    endField();
+                    putOut(b);
+                    lineStart = false;
+                } else if (b == '\n' || b == '\r') {
+                    endField();
+                    putOut(b);
+                    lineStart = true;
+                } else {
+                    putField(b);
+                }
+                return true;
+        }
+    }
+
+    private void putField(byte b) {
+        if (nullField) {
+            // "\N" followed by more data is literal N
+            nullField = false;
+            putField((byte) 'N');
+        }
+        if (fieldSize == fieldCapacity) {
+            final long capacity = Math.max(64, Numbers.ceilPow2(fieldSize + 1));
+            field = Unsafe.realloc(field, fieldCapacity, capacity, MemoryTag.NATIVE_DEFAULT);
+            fieldCapacity = capacity;
+        }
+        Unsafe.getUnsafe().putByte(field + fieldSize++, b);
+        quoteField |= b == delimiter || b == '"' || b == '\n' || b == '\r';
+        lineStart = false;
+    }
+
+    private void putOut(byte b) {
+        if (outSize == outCapacity) {
+            final long capacity = Math.max(1024, Numbers.ceilPow2(outSize + 1));
+            out = Unsafe.realloc(out, outCapacity, capacity, MemoryTag.NATIVE_DEFAULT);
+            outCapacity = capacity;
+        }
+        Unsafe.getUnsafe().putByte(out + outSize++, b);
+    }
+}
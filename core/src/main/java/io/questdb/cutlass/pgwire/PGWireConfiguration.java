@@ -88,4 +88,14 @@ public interface PGWireConfiguration extends WorkerPoolAwareConfiguration {
     }
 
     SqlExecutionCircuitBreakerConfiguration getCircuitBreakerConfiguration();
+
+    /**
+     * When true, numeric, date and timestamp columns of simple query results are sent in binary
+     * format. This saves formatting values as text, but requires client to decode rows according
+     * to format codes of RowDescription message. Extended query clients choose result format
+     * in Bind message regardless of this setting.
+     *
+     * @return true when binary result format is preferred over text
+     */
+    boolean isBinaryResultFormatPreferred();
 }
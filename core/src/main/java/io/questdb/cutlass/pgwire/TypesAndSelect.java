@@ -26,10 +26,13 @@ package io.questdb.cutlass.pgwire;
 
 import io.questdb.cairo.sql.BindVariableService;
 import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.std.IntList;
 import io.questdb.std.Misc;
 import io.questdb.std.WeakAutoClosableObjectPool;
 
 public class TypesAndSelect extends AbstractTypeContainer<TypesAndSelect> {
+    // types client declared when the query was parsed, factory is cached under them
+    private final IntList parameterTypes = new IntList();
     private RecordCursorFactory factory;
 
     public TypesAndSelect(WeakAutoClosableObjectPool<TypesAndSelect> parentPool) {
@@ -39,6 +42,7 @@ public class TypesAndSelect extends AbstractTypeContainer<TypesAndSelect> {
     @Override
     public void close() {
         super.close();
+        parameterTypes.clear();
         factory = Misc.free(factory);
     }
 
@@ -46,8 +50,30 @@ public class TypesAndSelect extends AbstractTypeContainer<TypesAndSelect> {
         return factory;
     }
 
-    public void of(RecordCursorFactory factory, BindVariableService bindVariableService) {
+    public IntList getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public void of(RecordCursorFactory factory, BindVariableService bindVariableService, IntList parameterTypes) {
         this.factory = factory;
         copyTypesFrom(bindVariableService);
+        this.parameterTypes.addAll(parameterTypes);
+    }
+
+    /**
+     * Wraps factory checked out of query factory cache, which has also populated the types.
+     *
+     * @param factory        cached factory
+     * @param parameterTypes types client declared, factory was looked up with
+     */
+    public void of(RecordCursorFactory factory, IntList parameterTypes) {
+        this.factory = factory;
+        this.parameterTypes.addAll(parameterTypes);
+    }
+
+    public RecordCursorFactory popFactory() {
+        final RecordCursorFactory factory = this.factory;
+        this.factory = null;
+        return factory;
     }
 }
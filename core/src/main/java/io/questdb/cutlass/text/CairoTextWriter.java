@@ -145,6 +145,18 @@ public class CairoTextWriter implements Closeable, Mutable {
         return warnings;
     }
 
+    TimestampAdapter getTimestampAdapter() {
+        return timestampAdapter;
+    }
+
+    int getTimestampIndex() {
+        return timestampIndex;
+    }
+
+    TableWriter getWriter() {
+        return writer;
+    }
+
     public long getWrittenLineCount() {
         return writer == null ? 0 : writer.size() - _size;
     }
@@ -0,0 +1,592 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.text;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.pool.WriterPool;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.cutlass.text.types.TypeAdapter;
+import io.questdb.cutlass.text.types.TypeManager;
+import io.questdb.griffin.SqlExecutionCircuitBreaker;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.RingQueue;
+import io.questdb.std.*;
+import io.questdb.std.str.DirectCharSink;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.tasks.TextImportTask;
+
+import java.io.Closeable;
+
+/**
+ * Imports large text files into partitioned tables without sending rows through O3. File is split
+ * into chunks at line boundaries, chunks are scanned in parallel and rows are bucketed by partition
+ * of the designated timestamp. Every partition is then sorted and written, in parallel, into a
+ * temporary table with the structure of the target table. Symbol values of temporary tables are merged
+ * into symbol tables of the target table, keys in imported partitions are rewritten accordingly, and
+ * finished partitions are attached to the target table.
+ * <p>
+ * Import runs only when the target table is partitioned and empty. Otherwise {@link #importFile} returns
+ * false and the file is to be loaded by {@link TextLoader}.
+ */
+public class ParallelCsvFileImporter implements Closeable, Mutable {
+    private static final Log LOG = LogFactory.getLog(ParallelCsvFileImporter.class);
+    private final CairoEngine engine;
+    private final CairoConfiguration configuration;
+    private final FilesFacade ff;
+    private final MessageBus messageBus;
+    private final ObjList<TextImportEntry> entries = new ObjList<>();
+    private final LongList chunkBoundaries = new LongList();
+    private final LongList partitions = new LongList();
+    // symbol counts of the target table before symbol tables of temporary tables are merged
+    private final IntList symbolCounts = new IntList();
+    // outcome of the last successful import, reported to HTTP clients
+    private final LongList columnErrorCounts = new LongList();
+    private final StringSink timestampColumnSink = new StringSink();
+    private RecordMetadata metadata;
+    private long parsedLineCount;
+    private long errorLineCount;
+    private long writtenLineCount;
+    private int partitionBy;
+    private int warnings;
+    private final DirectCharSink utf8Sink;
+    private final TextLexer lexer;
+    private final TextDelimiterScanner delimiterScanner;
+    private final CairoTextWriter textWriter;
+    private final ObjList<CharSequence> schemaNames = new ObjList<>();
+    private final ObjList<TypeAdapter> schemaTypes = new ObjList<>();
+    private final MemoryMARW ddlMem = Vm.getMARWInstance();
+    private final TableStructureAdapter tableStructureAdapter;
+    private final Path path = new Path();
+    private final Path otherPath = new Path();
+    private final Path textWriterPath = new Path();
+    private final StringSink tableNameSink = new StringSink();
+    private final long minChunkSize;
+    private final int maxChunkCount;
+    private final int headSize;
+    private final int textAnalysisMaxLines;
+    private int chunkCount;
+    private int sequence;
+
+    public ParallelCsvFileImporter(CairoEngine engine) {
+        this.engine = engine;
+        this.configuration = engine.getConfiguration();
+        this.ff = configuration.getFilesFacade();
+        this.messageBus = engine.getMessageBus();
+        final TextConfiguration textConfiguration = configuration.getTextConfiguration();
+        this.utf8Sink = new DirectCharSink(textConfiguration.getUtf8SinkSize());
+        final TypeManager typeManager = new TypeManager(textConfiguration, utf8Sink);
+        this.lexer = new TextLexer(textConfiguration, typeManager);
+        this.delimiterScanner = new TextDelimiterScanner(textConfiguration);
+        this.textWriter = new CairoTextWriter(engine, textWriterPath, typeManager);
+        this.minChunkSize = configuration.getSqlCopyMinChunkSize();
+        this.maxChunkCount = configuration.getSqlCopyQueueCapacity();
+        this.headSize = configuration.getSqlCopyBufferSize();
+        this.textAnalysisMaxLines = textConfiguration.getTextAnalysisMaxLines();
+        this.tableStructureAdapter = new TableStructureAdapter(configuration);
+    }
+
+    @Override
+    public void clear() {
+        textWriter.clear();
+        lexer.clear();
+        for (int i = 0; i < chunkCount; i++) {
+            entries.getQuick(i).clear();
+        }
+        chunkBoundaries.clear();
+        partitions.clear();
+        chunkCount = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.freeObjList(entries);
+        entries.clear();
+        textWriter.close();
+        lexer.close();
+        delimiterScanner.close();
+        utf8Sink.close();
+        ddlMem.close();
+        path.close();
+        otherPath.close();
+        textWriterPath.close();
+    }
+
+    public LongList getColumnErrorCounts() {
+        return columnErrorCounts;
+    }
+
+    /**
+     * @return number of lines skipped because their timestamp could not be parsed
+     */
+    public long getErrorLineCount() {
+        return errorLineCount;
+    }
+
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    public long getParsedLineCount() {
+        return parsedLineCount;
+    }
+
+    public int getPartitionBy() {
+        return partitionBy;
+    }
+
+    public CharSequence getTimestampCol() {
+        return timestampColumnSink;
+    }
+
+    public int getWarnings() {
+        return warnings;
+    }
+
+    public long getWrittenLineCount() {
+        return writtenLineCount;
+    }
+
+    /**
+     * Imports file into the table in parallel, the work is shared between this thread and
+     * {@link TextImportJob} instances of the worker pool.
+     *
+     * @param securityContext security context
+     * @param tableName       name of the target table, table is created when it does not exist
+     * @param fd              descriptor of the file, open for reading
+     * @param fileLen         length of the file
+     * @param forceHeader     true when the first line of the file is known to be the header
+     * @param partitionBy     partitioning of the table when it is created
+     * @param timestampColumn designated timestamp of the table when it is created
+     * @return false when file is too small or table cannot be imported in parallel, no rows are imported then
+     * @throws TextException when structure of the file cannot be determined
+     */
+    public boolean importFile(
+            CairoSecurityContext securityContext,
+            CharSequence tableName,
+            long fd,
+            long fileLen,
+            boolean forceHeader,
+            int partitionBy,
+            CharSequence timestampColumn
+    ) throws TextException {
+        if (fileLen < minChunkSize || fileLen >= TextImportEntry.MAX_FILE_SIZE) {
+            return false;
+        }
+
+        if (engine.getStatus(securityContext, path, tableName) == TableUtils.TABLE_DOES_NOT_EXIST
+                && (!PartitionBy.isPartitioned(partitionBy) || timestampColumn == null)) {
+            return false;
+        }
+
+        final long fileAddress = ff.mmap(fd, fileLen, 0, Files.MAP_RO, MemoryTag.MMAP_DEFAULT);
+        if (fileAddress == -1) {
+            throw CairoException.instance(ff.errno()).put("could not mmap file [fd=").put(fd).put(", size=").put(fileLen).put(']');
+        }
+
+        final long startTime = configuration.getMicrosecondClock().getTicks();
+        try {
+            final long headLen = Math.min(fileLen, headSize);
+            final byte columnDelimiter = delimiterScanner.scan(fileAddress, fileAddress + headLen);
+            lexer.of(columnDelimiter);
+            lexer.setTableName(tableName);
+            lexer.analyseStructure(fileAddress, fileAddress + headLen, textAnalysisMaxLines, forceHeader, schemaNames, schemaTypes);
+            textWriter.of(tableName, false, false, Atomicity.SKIP_ROW, partitionBy, timestampColumn);
+            textWriter.prepareTable(securityContext, lexer.getColumnNames(), lexer.getColumnTypes());
+
+            final TableWriter writer = textWriter.getWriter();
+            if (!PartitionBy.isPartitioned(writer.getPartitionBy())
+                    || textWriter.getTimestampAdapter() == null
+                    || writer.size() > 0) {
+                LOG.info().$("table cannot be imported in parallel [table=").$(tableName)
+                        .$(", partitionBy=").$(PartitionBy.toString(writer.getPartitionBy()))
+                        .$(", size=").$(writer.size())
+                        .I$();
+                return false;
+            }
+
+            chunkCount = (int) Math.max(1, Math.min(maxChunkCount, fileLen / minChunkSize));
+            prepareEntries(securityContext, tableName, writer, fileAddress, headLen, columnDelimiter, forceHeader);
+
+            findChunkBoundaries(fileLen);
+            final long indexedLineCount = indexChunks();
+            importPartitions();
+            saveSymbolCounts(writer);
+            try {
+                writtenLineCount = mapSymbols(writer);
+                if (symbolCounts.size() > 0) {
+                    dispatch(TextImportEntry.PHASE_SYMBOL_REMAP);
+                }
+            } catch (Throwable e) {
+                // nothing is attached yet, merged symbol values are not to be committed by the next user of the writer
+                rollbackSymbols(writer);
+                throw e;
+            }
+            attachPartitions(tableName, writer);
+
+            this.parsedLineCount = indexedLineCount;
+            this.metadata = GenericRecordMetadata.copyOf(writer.getMetadata());
+            this.partitionBy = writer.getPartitionBy();
+            this.warnings = textWriter.getWarnings();
+            timestampColumnSink.clear();
+            timestampColumnSink.put(textWriter.getTimestampCol());
+
+            LOG.info()
+                    .$("imported [table=").$(tableName)
+                    .$(", chunks=").$(chunkCount)
+                    .$(", partitions=").$(partitions.size())
+                    .$(", indexed=").$(indexedLineCount)
+                    .$(", written=").$(writtenLineCount)
+                    .$(", time=").$((configuration.getMicrosecondClock().getTicks() - startTime) / 1000).$("ms")
+                    .I$();
+            return true;
+        } finally {
+            removeTemporaryTables(securityContext);
+            clear();
+            ff.munmap(fileAddress, fileLen, MemoryTag.MMAP_DEFAULT);
+        }
+    }
+
+    private void attachPartitions(CharSequence tableName, TableWriter writer) {
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            final long partition = partitions.getQuick(i);
+            final TextImportEntry entry = entries.getQuick(i % chunkCount);
+            path.of(configuration.getRoot()).concat(entry.getTableName());
+            TableUtils.setPathForPartition(path, writer.getPartitionBy(), partition, false);
+            path.$();
+            otherPath.of(configuration.getRoot()).concat(tableName);
+            TableUtils.setPathForPartition(otherPath, writer.getPartitionBy(), partition, false);
+            otherPath.put(TableUtils.DETACHED_DIR_MARKER).$();
+            if (!ff.rename(path, otherPath)) {
+                throw CairoException.instance(ff.errno()).put("could not move partition [from=").put(path).put(", to=").put(otherPath).put(']');
+            }
+            final int status = writer.attachPartition(partition, true);
+            if (status != StatusCode.OK) {
+                throw CairoException.instance(0).put("could not attach partition [table=").put(tableName)
+                        .put(", partition=").put(otherPath)
+                        .put(", status=").put(status)
+                        .put(']');
+            }
+        }
+    }
+
+    private void dispatch(int phase) {
+        final RingQueue<TextImportTask> queue = messageBus.getTextImportQueue();
+        final MPSequence pubSeq = messageBus.getTextImportPubSeq();
+
+        for (int i = 0; i < chunkCount; i++) {
+            final TextImportEntry entry = entries.getQuick(i);
+            entry.of(sequence++, phase);
+            long seq;
+            do {
+                seq = pubSeq.next();
+            } while (seq == -2);
+
+            if (seq > -1) {
+                queue.get(seq).entry = entry;
+                pubSeq.done(seq);
+            }
+            // when queue is full the entry is left for this thread
+        }
+
+        AbstractParallelEntry.runAll(entries, chunkCount, SqlExecutionCircuitBreaker.NOOP_CIRCUIT_BREAKER);
+    }
+
+    private void findChunkBoundaries(long fileLen) {
+        for (int i = 0; i < chunkCount; i++) {
+            entries.getQuick(i).setChunk(fileLen * i / chunkCount, fileLen * (i + 1) / chunkCount);
+        }
+        dispatch(TextImportEntry.PHASE_BOUNDARY_CHECK);
+
+        // chunk starts on the first line end which is not quoted, quote parity
+        // is the number of quotes in all preceding chunks
+        chunkBoundaries.clear();
+        chunkBoundaries.add(0);
+        long quoteCount = entries.getQuick(0).getQuoteCount();
+        for (int i = 1; i < chunkCount; i++) {
+            final TextImportEntry entry = entries.getQuick(i);
+            final long lineEnd = entry.getFirstLineEnd((quoteCount & 1) == 1);
+            chunkBoundaries.add(lineEnd == -1 ? -1 : lineEnd + 1);
+            quoteCount += entry.getQuoteCount();
+        }
+        chunkBoundaries.add(fileLen);
+
+        // chunk without line end is merged into the preceding chunk
+        for (int i = chunkCount - 1; i > 0; i--) {
+            if (chunkBoundaries.getQuick(i) == -1) {
+                chunkBoundaries.setQuick(i, chunkBoundaries.getQuick(i + 1));
+            }
+        }
+
+        for (int i = 0; i < chunkCount; i++) {
+            entries.getQuick(i).setChunk(chunkBoundaries.getQuick(i), chunkBoundaries.getQuick(i + 1));
+        }
+    }
+
+    private void importPartitions() {
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            // partitions are sorted, every entry appends its partitions in ascending order
+            entries.getQuick(i % chunkCount).getAssignedPartitions().add(partitions.getQuick(i));
+        }
+        dispatch(TextImportEntry.PHASE_PARTITION_IMPORT);
+    }
+
+    private long indexChunks() {
+        dispatch(TextImportEntry.PHASE_INDEXING);
+
+        long indexedLineCount = 0;
+        errorLineCount = 0;
+        partitions.clear();
+        for (int i = 0; i < chunkCount; i++) {
+            final TextImportEntry entry = entries.getQuick(i);
+            partitions.add(entry.getPartitions());
+            indexedLineCount += entry.getIndexedLineCount();
+            errorLineCount += entry.getErrorLineCount();
+        }
+        partitions.sort();
+
+        int n = 0;
+        for (int i = 0, k = partitions.size(); i < k; i++) {
+            final long partition = partitions.getQuick(i);
+            if (n == 0 || partitions.getQuick(n - 1) != partition) {
+                partitions.setQuick(n++, partition);
+            }
+        }
+        partitions.setPos(n);
+
+        if (errorLineCount > 0) {
+            LOG.info().$("skipped lines without valid timestamp [count=").$(errorLineCount).I$();
+        }
+        return indexedLineCount;
+    }
+
+    /**
+     * Merges symbol tables of temporary tables into the target table and closes writers of temporary
+     * tables, partitions of which are then free to be rewritten and moved.
+     *
+     * @return number of lines written to all temporary tables
+     */
+    private long mapSymbols(TableWriter writer) {
+        long lineCount = 0;
+        columnErrorCounts.seed(writer.getMetadata().getColumnCount(), 0);
+        for (int i = 0; i < chunkCount; i++) {
+            final TextImportEntry entry = entries.getQuick(i);
+            lineCount += entry.getWrittenLineCount();
+            final LongList entryErrorCounts = entry.getColumnErrorCounts();
+            for (int j = 0, n = entryErrorCounts.size(); j < n; j++) {
+                columnErrorCounts.setQuick(j, columnErrorCounts.getQuick(j) + entryErrorCounts.getQuick(j));
+            }
+            entry.mapSymbols(writer);
+            entry.closeWriter();
+            // writer is returned to the pool rather than closed, close it now, so that it does not
+            // truncate files of its last partition later, after they have been rewritten and attached
+            final CharSequence tableName = entry.getTableName();
+            if (engine.lockWriter(tableName, "textImport") == WriterPool.OWNERSHIP_REASON_NONE) {
+                engine.unlockWriter(tableName);
+            } else {
+                throw CairoException.instance(0).put("could not release temporary table writer [table=").put(tableName).put(']');
+            }
+        }
+        return lineCount;
+    }
+
+    private void prepareEntries(
+            CairoSecurityContext securityContext,
+            CharSequence tableName,
+            TableWriter writer,
+            long fileAddress,
+            long headLen,
+            byte columnDelimiter,
+            boolean forceHeader
+    ) throws TextException {
+        for (int i = 0; i < chunkCount; i++) {
+            tableNameSink.clear();
+            TextImportEntry.tableNameOf(tableNameSink, tableName, i);
+            if (engine.getStatus(securityContext, path, tableNameSink) != TableUtils.TABLE_DOES_NOT_EXIST) {
+                // left behind by import that did not finish
+                engine.remove(securityContext, path, tableNameSink);
+            }
+            engine.createTable(securityContext, ddlMem, path, tableStructureAdapter.of(tableNameSink, writer));
+        }
+
+        for (int i = entries.size(); i < chunkCount; i++) {
+            entries.add(new TextImportEntry(engine));
+        }
+
+        for (int i = 0; i < chunkCount; i++) {
+            entries.getQuick(i).prepare(
+                    securityContext,
+                    tableName,
+                    i,
+                    chunkCount,
+                    fileAddress,
+                    headLen,
+                    columnDelimiter,
+                    forceHeader,
+                    writer.getMetadata(),
+                    writer.getPartitionBy()
+            );
+        }
+    }
+
+    private void removeTemporaryTables(CairoSecurityContext securityContext) {
+        for (int i = 0; i < chunkCount; i++) {
+            final TextImportEntry entry = entries.getQuick(i);
+            entry.closeWriter();
+            final CharSequence tableName = entry.getTableName();
+            if (tableName != null) {
+                try {
+                    engine.remove(securityContext, path, tableName);
+                } catch (CairoException e) {
+                    LOG.error().$("could not remove temporary table [table=").$(tableName)
+                            .$(", errno=").$(e.getErrno())
+                            .$(", error=").$(e.getFlyweightMessage())
+                            .I$();
+                }
+            }
+        }
+    }
+
+    private void rollbackSymbols(TableWriter writer) {
+        final TableWriterMetadata metadata = writer.getMetadata();
+        for (int i = 0, j = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (ColumnType.isSymbol(metadata.getColumnType(i))) {
+                writer.getSymbolMapWriter(i).rollback(symbolCounts.getQuick(j++));
+            }
+        }
+    }
+
+    private void saveSymbolCounts(TableWriter writer) {
+        symbolCounts.clear();
+        final TableWriterMetadata metadata = writer.getMetadata();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (ColumnType.isSymbol(metadata.getColumnType(i))) {
+                symbolCounts.add(writer.getSymbolMapWriter(i).getSymbolCount());
+            }
+        }
+    }
+
+    private static class TableStructureAdapter implements TableStructure {
+        private final int symbolCapacity;
+        private final boolean symbolCacheFlag;
+        private CharSequence tableName;
+        private TableWriter writer;
+        private TableWriterMetadata metadata;
+
+        TableStructureAdapter(CairoConfiguration configuration) {
+            this.symbolCapacity = configuration.getDefaultSymbolCapacity();
+            this.symbolCacheFlag = configuration.getDefaultSymbolCacheFlag();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return metadata.getColumnCount();
+        }
+
+        @Override
+        public CharSequence getColumnName(int columnIndex) {
+            return metadata.getColumnName(columnIndex);
+        }
+
+        @Override
+        public int getColumnType(int columnIndex) {
+            return metadata.getColumnType(columnIndex);
+        }
+
+        @Override
+        public long getColumnHash(int columnIndex) {
+            return metadata.getColumnHash(columnIndex);
+        }
+
+        @Override
+        public int getIndexBlockCapacity(int columnIndex) {
+            return metadata.getIndexValueBlockCapacity(columnIndex);
+        }
+
+        @Override
+        public boolean isIndexed(int columnIndex) {
+            return metadata.isColumnIndexed(columnIndex);
+        }
+
+        @Override
+        public boolean isSequential(int columnIndex) {
+            return false;
+        }
+
+        @Override
+        public boolean isDedupKey(int columnIndex) {
+            return writer.isDedupKey(columnIndex);
+        }
+
+        @Override
+        public int getPartitionBy() {
+            return writer.getPartitionBy();
+        }
+
+        @Override
+        public boolean getSymbolCacheFlag(int columnIndex) {
+            return symbolCacheFlag;
+        }
+
+        @Override
+        public int getSymbolCapacity(int columnIndex) {
+            return symbolCapacity;
+        }
+
+        @Override
+        public CharSequence getTableName() {
+            return tableName;
+        }
+
+        @Override
+        public int getTimestampIndex() {
+            return metadata.getTimestampIndex();
+        }
+
+        @Override
+        public int getMaxUncommittedRows() {
+            return metadata.getMaxUncommittedRows();
+        }
+
+        @Override
+        public long getCommitLag() {
+            return metadata.getCommitLag();
+        }
+
+        TableStructureAdapter of(CharSequence tableName, TableWriter writer) {
+            this.tableName = tableName;
+            this.writer = writer;
+            this.metadata = writer.getMetadata();
+            return this;
+        }
+    }
+}
@@ -0,0 +1,640 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.text;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cutlass.text.types.TimestampAdapter;
+import io.questdb.cutlass.text.types.TypeAdapter;
+import io.questdb.cutlass.text.types.TypeManager;
+import io.questdb.log.Log;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.DirectByteCharSequence;
+import io.questdb.std.str.DirectCharSink;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+/**
+ * Chunk of the file imported by {@link ParallelCsvFileImporter}. Entry owns lexer, type adapters and
+ * writer of its own temporary table, so that every phase of the import can be executed by any worker,
+ * via {@link TextImportJob}, or by the thread running the import.
+ * <p>
+ * Phases are:
+ * <ul>
+ * <li>boundary check - counts quotes in the chunk and finds first line end for either quote parity,
+ * importer uses that to move chunk boundaries to the start of a line</li>
+ * <li>indexing - scans lines of the chunk, parses designated timestamp and buckets (timestamp, line)
+ * pairs by partition into index files of the temporary table</li>
+ * <li>partition import - merges and sorts index of each assigned partition and appends lines in
+ * timestamp order to the temporary table</li>
+ * <li>symbol remap - rewrites keys of symbol columns in imported partitions to keys of the target table,
+ * see {@link #mapSymbols(TableWriter)}, and rebuilds indexes of symbol columns; partitions are then
+ * attached to the target table</li>
+ * </ul>
+ */
+public class TextImportEntry extends AbstractParallelEntry implements Closeable {
+    static final int PHASE_BOUNDARY_CHECK = 0;
+    static final int PHASE_INDEXING = 1;
+    static final int PHASE_PARTITION_IMPORT = 2;
+    static final int PHASE_SYMBOL_REMAP = 3;
+    // offset of the line in the file and line length are packed into single long of the index
+    static final int LINE_LENGTH_BITS = 24;
+    static final long MAX_FILE_SIZE = 1L << (Long.SIZE - 1 - LINE_LENGTH_BITS);
+    private static final long LINE_LENGTH_MASK = (1L << LINE_LENGTH_BITS) - 1;
+    private static final Log LOG = LogFactory.getLog(TextImportEntry.class);
+    private static final String INDEX_FILE_SUFFIX = ".idx";
+    private static final String TABLE_NAME_SUFFIX = ".import.";
+    // number of (timestamp, line) pairs buffered per partition before they are appended to index file
+    private static final int INDEX_FLUSH_THRESHOLD = 64 * 1024;
+    private final CairoConfiguration configuration;
+    private final FilesFacade ff;
+    private final DirectCharSink utf8Sink;
+    private final TypeManager typeManager;
+    private final TextLexer lexer;
+    private final CairoTextWriter textWriter;
+    private final Path path = new Path();
+    private final Path textWriterPath = new Path();
+    private final ObjList<CharSequence> schemaNames = new ObjList<>();
+    private final ObjList<TypeAdapter> schemaTypes = new ObjList<>();
+    private final LongObjHashMap<DirectLongList> buckets = new LongObjHashMap<>();
+    private final ObjList<DirectLongList> bucketPool = new ObjList<>();
+    // partitions found in the chunk while indexing
+    private final LongList partitions = new LongList();
+    // partitions this entry imports into its temporary table and number of rows written to each of them
+    private final LongList assignedPartitions = new LongList();
+    private final LongList partitionRowCounts = new LongList();
+    // symbol columns of the table and, for every one of them, target table key of each local symbol key
+    private final IntList symbolColumnIndexes = new IntList();
+    private final ObjList<IntList> symbolKeyMaps = new ObjList<>();
+    private final SymbolMapReaderImpl symbolMapReader = new SymbolMapReaderImpl();
+    private final BitmapIndexWriter indexWriter = new BitmapIndexWriter();
+    private final DirectLongList partitionIndex = new DirectLongList(INDEX_FLUSH_THRESHOLD);
+    private final DirectByteCharSequence timestampValue = new DirectByteCharSequence();
+    private final StringSink tableNameSink = new StringSink();
+    private final int textAnalysisMaxLines;
+    private RecordMetadata metadata;
+    private CharSequence targetTableName;
+    private CharSequence tableName;
+    private int index;
+    private int chunkCount;
+    private int phase;
+    private long fileAddress;
+    private long chunkLo;
+    private long chunkHi;
+    private byte columnDelimiter;
+    private boolean header;
+    private int timestampIndex;
+    private TimestampAdapter timestampAdapter;
+    private PartitionBy.PartitionFloorMethod partitionFloorMethod;
+    private int partitionBy;
+    private long quoteCount;
+    private long firstLineEndEven;
+    private long firstLineEndOdd;
+    private long indexedLineCount;
+    private long errorLineCount;
+
+    public TextImportEntry(CairoEngine engine) {
+        this.configuration = engine.getConfiguration();
+        this.ff = configuration.getFilesFacade();
+        final TextConfiguration textConfiguration = configuration.getTextConfiguration();
+        this.utf8Sink = new DirectCharSink(textConfiguration.getUtf8SinkSize());
+        this.typeManager = new TypeManager(textConfiguration, utf8Sink);
+        this.lexer = new TextLexer(textConfiguration, typeManager);
+        this.textWriter = new CairoTextWriter(engine, textWriterPath, typeManager);
+        this.textAnalysisMaxLines = textConfiguration.getTextAnalysisMaxLines();
+    }
+
+    static void tableNameOf(CharSink sink, CharSequence tableName, int index) {
+        sink.put(tableName).put(TABLE_NAME_SUFFIX).put(index);
+    }
+
+    @Override
+    public void close() {
+        clear();
+        textWriter.close();
+        lexer.close();
+        utf8Sink.close();
+        path.close();
+        textWriterPath.close();
+        partitionIndex.close();
+        symbolMapReader.close();
+        indexWriter.close();
+        Misc.freeObjList(bucketPool);
+        bucketPool.clear();
+        buckets.clear();
+    }
+
+    void clear() {
+        textWriter.clear();
+        lexer.clear();
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            bucketPool.add(buckets.get(partitions.getQuick(i)));
+        }
+        buckets.clear();
+        partitions.clear();
+        assignedPartitions.clear();
+        partitionRowCounts.clear();
+        symbolColumnIndexes.clear();
+        partitionIndex.clear();
+        typeManager.clear();
+        indexedLineCount = 0;
+        errorLineCount = 0;
+        timestampAdapter = null;
+        metadata = null;
+        targetTableName = null;
+        tableName = null;
+    }
+
+    void closeWriter() {
+        textWriter.closeWriter();
+    }
+
+    LongList getAssignedPartitions() {
+        return assignedPartitions;
+    }
+
+    LongList getColumnErrorCounts() {
+        return textWriter.getColumnErrorCounts();
+    }
+
+    long getErrorLineCount() {
+        return errorLineCount;
+    }
+
+    long getFirstLineEnd(boolean inQuote) {
+        return inQuote ? firstLineEndOdd : firstLineEndEven;
+    }
+
+    long getIndexedLineCount() {
+        return indexedLineCount;
+    }
+
+    LongList getPartitions() {
+        return partitions;
+    }
+
+    long getQuoteCount() {
+        return quoteCount;
+    }
+
+    CharSequence getTableName() {
+        return tableName;
+    }
+
+    long getWrittenLineCount() {
+        return textWriter.getWrittenLineCount();
+    }
+
+    /**
+     * Adds symbol values of the temporary table to symbol tables of the target table and records the
+     * target key of every local key, keys are rewritten in {@link #PHASE_SYMBOL_REMAP}. Runs on the thread
+     * of the importer, symbol tables of the target table are not thread-safe. Writer of the temporary
+     * table must still be open.
+     *
+     * @param targetWriter writer of the target table
+     */
+    void mapSymbols(TableWriter targetWriter) {
+        final TableWriter writer = textWriter.getWriter();
+        symbolColumnIndexes.clear();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (!ColumnType.isSymbol(metadata.getColumnType(i))) {
+                continue;
+            }
+            final int symbolIndex = symbolColumnIndexes.size();
+            symbolColumnIndexes.add(i);
+            if (symbolKeyMaps.size() == symbolIndex) {
+                symbolKeyMaps.add(new IntList());
+            }
+            final IntList keyMap = symbolKeyMaps.getQuick(symbolIndex);
+            keyMap.clear();
+            if (assignedPartitions.size() == 0) {
+                continue;
+            }
+
+            final SymbolMapWriter targetSymbols = targetWriter.getSymbolMapWriter(i);
+            final int symbolCount = writer.getSymbolMapWriter(i).getSymbolCount();
+            path.of(configuration.getRoot()).concat(tableName);
+            try {
+                symbolMapReader.of(configuration, path, metadata.getColumnName(i), symbolCount);
+                for (int key = 0; key < symbolCount; key++) {
+                    keyMap.add(targetSymbols.put(symbolMapReader.valueOf(key)));
+                }
+                if (symbolMapReader.containsNullValue()) {
+                    targetSymbols.put(null);
+                }
+            } finally {
+                symbolMapReader.close();
+            }
+        }
+    }
+
+    void of(int sequence, int phase) {
+        this.phase = phase;
+        of(sequence);
+    }
+
+    /**
+     * Analyses structure of the head of the file, exactly as the importer did, and opens writer of
+     * the temporary table. Column types are overridden with types of the temporary table, which
+     * mirrors the target table. Runs on the thread of the importer.
+     */
+    void prepare(
+            CairoSecurityContext securityContext,
+            CharSequence targetTableName,
+            int index,
+            int chunkCount,
+            long fileAddress,
+            long headLen,
+            byte columnDelimiter,
+            boolean forceHeader,
+            RecordMetadata metadata,
+            int partitionBy
+    ) throws TextException {
+        this.metadata = metadata;
+        this.targetTableName = targetTableName;
+        this.index = index;
+        this.chunkCount = chunkCount;
+        this.fileAddress = fileAddress;
+        this.columnDelimiter = columnDelimiter;
+        this.partitionBy = partitionBy;
+        this.partitionFloorMethod = PartitionBy.getPartitionFloorMethod(partitionBy);
+        tableNameSink.clear();
+        tableNameOf(tableNameSink, targetTableName, index);
+        this.tableName = tableNameSink;
+
+        lexer.of(columnDelimiter);
+        lexer.setTableName(tableName);
+        lexer.analyseStructure(fileAddress, fileAddress + headLen, textAnalysisMaxLines, forceHeader, schemaNames, schemaTypes);
+        // designated timestamp of the temporary table is the timestamp column of the import
+        textWriter.of(tableName, false, false, Atomicity.SKIP_ROW, partitionBy, null);
+        textWriter.prepareTable(securityContext, lexer.getColumnNames(), lexer.getColumnTypes());
+        timestampIndex = textWriter.getTimestampIndex();
+        timestampAdapter = textWriter.getTimestampAdapter();
+        if (timestampAdapter == null) {
+            throw TextException.$("timestamp column cannot be parsed [table=").put(tableName).put(']');
+        }
+        // chunks other than the first one never start with the header
+        header = index == 0 && lexer.isHeaderDetected();
+    }
+
+    void setChunk(long lo, long hi) {
+        this.chunkLo = lo;
+        this.chunkHi = hi;
+    }
+
+    @Override
+    protected void execute(int workerId) {
+        switch (phase) {
+            case PHASE_BOUNDARY_CHECK:
+                checkBoundary();
+                break;
+            case PHASE_INDEXING:
+                indexChunk();
+                break;
+            case PHASE_PARTITION_IMPORT:
+                importPartitions();
+                break;
+            default:
+                remapSymbols();
+                break;
+        }
+    }
+
+    @Override
+    protected CairoException putFailure(CairoException e) {
+        return e.put("text import failed [chunk=").put(index);
+    }
+
+    private void checkBoundary() {
+        long quotes = 0;
+        long lineEndEven = -1;
+        long lineEndOdd = -1;
+        long p = chunkLo;
+        while (p < chunkHi) {
+            if (p + Long.BYTES <= chunkHi) {
+                final long word = Unsafe.getUnsafe().getLong(fileAddress + p);
+                final long quoteMask = TextUtil.matchBytes(word, TextUtil.QUOTE_WORD);
+                if (lineEndEven != -1 && lineEndOdd != -1) {
+                    // both line ends are known, only quotes are counted
+                    quotes += Long.bitCount(quoteMask);
+                    p += Long.BYTES;
+                    continue;
+                }
+                if ((quoteMask | TextUtil.matchBytes(word, TextUtil.LF_WORD) | TextUtil.matchBytes(word, TextUtil.CR_WORD)) == 0) {
+                    p += Long.BYTES;
+                    continue;
+                }
+            }
+            final byte c = Unsafe.getUnsafe().getByte(fileAddress + p++);
+            if (c == '"') {
+                quotes++;
+            } else if (c == '\n' || c == '\r') {
+                if ((quotes & 1) == 0) {
+                    if (lineEndEven == -1) {
+                        lineEndEven = p - 1;
+                    }
+                } else if (lineEndOdd == -1) {
+                    lineEndOdd = p - 1;
+                }
+            }
+        }
+        this.quoteCount = quotes;
+        this.firstLineEndEven = lineEndEven;
+        this.firstLineEndOdd = lineEndOdd;
+    }
+
+    private void flushBucket(long partition, DirectLongList bucket) {
+        final long size = bucket.size() * Long.BYTES;
+        if (size == 0) {
+            return;
+        }
+        setIndexPath(index, partition);
+        final long fd = ff.openAppend(path);
+        if (fd == -1) {
+            throw CairoException.instance(ff.errno()).put("could not open index file [path=").put(path).put(']');
+        }
+        try {
+            if (ff.append(fd, bucket.getAddress(), (int) size) != size) {
+                throw CairoException.instance(ff.errno()).put("could not write index file [path=").put(path).put(']');
+            }
+        } finally {
+            ff.close(fd);
+        }
+        bucket.clear();
+    }
+
+    private void importPartition(long partition) {
+        long size = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            setIndexPath(i, partition);
+            if (ff.exists(path)) {
+                size += ff.length(path);
+            }
+        }
+
+        final long count = size / Long.BYTES;
+        partitionIndex.clear();
+        if (partitionIndex.getCapacity() < count) {
+            partitionIndex.extend(count);
+        }
+
+        long offset = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            setIndexPath(i, partition);
+            if (!ff.exists(path)) {
+                continue;
+            }
+            final long fd = TableUtils.openRO(ff, path, LOG);
+            try {
+                final long len = ff.length(fd);
+                if (ff.read(fd, partitionIndex.getAddress() + offset, len, 0) != len) {
+                    throw CairoException.instance(ff.errno()).put("could not read index file [path=").put(path).put(']');
+                }
+                offset += len;
+            } finally {
+                ff.close(fd);
+            }
+        }
+        partitionIndex.setPos(count);
+        Vect.sortLongIndexAscInPlace(partitionIndex.getAddress(), count / 2);
+
+        final long writtenLineCount = textWriter.getWrittenLineCount();
+        final TextLexer.Listener listener = textWriter.getTextListener();
+        lexer.restart(false);
+        for (long i = 1; i < count; i += 2) {
+            final long line = partitionIndex.get(i);
+            final long lo = fileAddress + (line >>> LINE_LENGTH_BITS);
+            final long hi = lo + (line & LINE_LENGTH_MASK);
+            lexer.parse(lo, hi, Integer.MAX_VALUE, listener);
+            final byte last = Unsafe.getUnsafe().getByte(hi - 1);
+            if (last != '\n' && last != '\r') {
+                // last line of the file
+                lexer.parseLast();
+            }
+        }
+        textWriter.commit();
+        partitionRowCounts.add(textWriter.getWrittenLineCount() - writtenLineCount);
+        LOG.info()
+                .$("imported partition [table=").$(tableName)
+                .$(", partition=").$ts(partition)
+                .$(", rows=").$(count / 2)
+                .I$();
+    }
+
+    private void importPartitions() {
+        for (int i = 0, n = assignedPartitions.size(); i < n; i++) {
+            importPartition(assignedPartitions.getQuick(i));
+        }
+    }
+
+    private void indexChunk() {
+        final long address = fileAddress;
+        final int timestampIndex = this.timestampIndex;
+        final byte delimiter = this.columnDelimiter;
+        boolean inQuote = false;
+        int fieldIndex = 0;
+        long lineLo = chunkLo;
+        long fieldLo = chunkLo;
+        long timestampLo = -1;
+        long timestampHi = -1;
+
+        final long delimiterWord = TextUtil.broadcast(delimiter);
+        for (long p = chunkLo; p < chunkHi; p++) {
+            p = TextUtil.skipPlainBytes(address + p, address + chunkHi, delimiterWord, inQuote) - address;
+            if (p == chunkHi) {
+                break;
+            }
+            final byte c = Unsafe.getUnsafe().getByte(address + p);
+            if (c == '"') {
+                inQuote = !inQuote;
+            } else if (inQuote) {
+                continue;
+            }
+
+            if (c == delimiter) {
+                if (fieldIndex++ == timestampIndex) {
+                    timestampLo = fieldLo;
+                    timestampHi = p;
+                }
+                fieldLo = p + 1;
+            } else if (c == '\n' || c == '\r') {
+                if (fieldIndex == timestampIndex) {
+                    timestampLo = fieldLo;
+                    timestampHi = p;
+                }
+                onLine(lineLo, p + 1, timestampLo, timestampHi);
+                fieldIndex = 0;
+                lineLo = fieldLo = p + 1;
+                timestampLo = timestampHi = -1;
+            }
+        }
+
+        if (lineLo < chunkHi) {
+            // last line of the file is not terminated
+            if (fieldIndex == timestampIndex) {
+                timestampLo = fieldLo;
+                timestampHi = chunkHi;
+            }
+            onLine(lineLo, chunkHi, timestampLo, timestampHi);
+        }
+
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            final long partition = partitions.getQuick(i);
+            flushBucket(partition, buckets.get(partition));
+        }
+    }
+
+    private DirectLongList nextBucket() {
+        final int n = bucketPool.size();
+        if (n > 0) {
+            final DirectLongList bucket = bucketPool.getQuick(n - 1);
+            bucketPool.setPos(n - 1);
+            bucket.clear();
+            return bucket;
+        }
+        return new DirectLongList(INDEX_FLUSH_THRESHOLD);
+    }
+
+    private void onLine(long lo, long hi, long timestampLo, long timestampHi) {
+        if (hi - lo == 1) {
+            final byte c = Unsafe.getUnsafe().getByte(fileAddress + lo);
+            if (c == '\n' || c == '\r') {
+                // empty line, or the second half of CRLF
+                return;
+            }
+        }
+
+        if (header) {
+            header = false;
+            return;
+        }
+
+        if (timestampLo == -1 || hi - lo > LINE_LENGTH_MASK) {
+            errorLineCount++;
+            return;
+        }
+
+        if (timestampHi - timestampLo > 1
+                && Unsafe.getUnsafe().getByte(fileAddress + timestampLo) == '"'
+                && Unsafe.getUnsafe().getByte(fileAddress + timestampHi - 1) == '"') {
+            timestampLo++;
+            timestampHi--;
+        }
+
+        final long timestamp;
+        try {
+            timestamp = timestampAdapter.getTimestamp(timestampValue.of(fileAddress + timestampLo, fileAddress + timestampHi));
+        } catch (Exception e) {
+            errorLineCount++;
+            return;
+        }
+
+        final long partition = partitionFloorMethod.floor(timestamp);
+        final int keyIndex = buckets.keyIndex(partition);
+        final DirectLongList bucket;
+        if (keyIndex < 0) {
+            bucket = buckets.valueAt(keyIndex);
+        } else {
+            bucket = nextBucket();
+            buckets.putAt(keyIndex, partition, bucket);
+            partitions.add(partition);
+        }
+        bucket.add(timestamp);
+        bucket.add((lo << LINE_LENGTH_BITS) | (hi - lo));
+        indexedLineCount++;
+
+        if (bucket.size() >= 2 * INDEX_FLUSH_THRESHOLD) {
+            flushBucket(partition, bucket);
+        }
+    }
+
+    private void remapSymbolColumn(int plen, long rowCount, int columnIndex, IntList keyMap) {
+        final CharSequence columnName = metadata.getColumnName(columnIndex);
+        final long size = rowCount * Integer.BYTES;
+        final long fd = TableUtils.openRW(ff, TableUtils.dFile(path.trimTo(plen), columnName), LOG);
+        final long address = TableUtils.mapRWOrClose(ff, fd, size, MemoryTag.MMAP_DEFAULT);
+        try {
+            for (long p = address, hi = address + size; p < hi; p += Integer.BYTES) {
+                final int key = Unsafe.getUnsafe().getInt(p);
+                if (key != SymbolTable.VALUE_IS_NULL) {
+                    Unsafe.getUnsafe().putInt(p, keyMap.getQuick(key));
+                }
+            }
+
+            if (metadata.isColumnIndexed(columnIndex)) {
+                // index of the temporary table is keyed by local keys, it is built again
+                final long keyFd = TableUtils.openRW(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName), LOG);
+                final long valueFd;
+                try {
+                    valueFd = TableUtils.openRW(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName), LOG);
+                } catch (Throwable e) {
+                    ff.close(keyFd);
+                    throw e;
+                }
+                try {
+                    indexWriter.of(configuration, keyFd, valueFd, true, metadata.getIndexValueBlockCapacity(columnIndex));
+                    for (long r = 0; r < rowCount; r++) {
+                        indexWriter.add(TableUtils.toIndexKey(Unsafe.getUnsafe().getInt(address + r * Integer.BYTES)), r);
+                    }
+                    indexWriter.setMaxValue(rowCount - 1);
+                } finally {
+                    indexWriter.close();
+                }
+            }
+        } finally {
+            ff.munmap(address, size, MemoryTag.MMAP_DEFAULT);
+            ff.close(fd);
+            path.trimTo(plen);
+        }
+    }
+
+    private void remapSymbols() {
+        for (int i = 0, n = assignedPartitions.size(); i < n; i++) {
+            final long rowCount = partitionRowCounts.getQuick(i);
+            if (rowCount == 0) {
+                continue;
+            }
+            path.of(configuration.getRoot()).concat(tableName);
+            TableUtils.setPathForPartition(path, partitionBy, assignedPartitions.getQuick(i), false);
+            final int plen = path.length();
+            for (int j = 0, k = symbolColumnIndexes.size(); j < k; j++) {
+                remapSymbolColumn(plen, rowCount, symbolColumnIndexes.getQuick(j), symbolKeyMaps.getQuick(j));
+            }
+        }
+    }
+
+    private void setIndexPath(int chunkIndex, long partition) {
+        path.of(configuration.getRoot()).slash();
+        tableNameOf(path, targetTableName, chunkIndex);
+        TableUtils.setPathForPartition(path, partitionBy, partition, false);
+        path.put(INDEX_FILE_SUFFIX).$();
+    }
+}
@@ -58,6 +58,7 @@ public class TextLexer implements Closeable, Mutable {
     private boolean useLineRollBuf = false;
     private boolean rollBufferUnusable = false;
     private byte columnDelimiter;
+    private long delimiterWord;
     private boolean inQuote;
     private boolean delayedOutQuote;
     private long fieldLo;
@@ -124,6 +125,7 @@ public class TextLexer implements Closeable, Mutable {
     public void of(byte columnDelimiter) {
         clear();
         this.columnDelimiter = columnDelimiter;
+        this.delimiterWord = TextUtil.broadcast(columnDelimiter);
     }
 
     public void parse(long lo, long hi, int lineCountLimit, Listener textLexerListener) {
@@ -314,6 +316,17 @@ public class TextLexer implements Closeable, Mutable {
 
         try {
             while (ptr < hi) {
+                if (!eol && !useLineRollBuf && !rollBufferUnusable && !delayedOutQuote) {
+                    // mid-line bytes other than delimiter, quote and line end only advance the field,
+                    // skip them eight at a time; inside quotes only the quote matters
+                    final long next = TextUtil.skipPlainBytes(ptr, hi, delimiterWord, inQuote);
+                    this.fieldHi += next - ptr;
+                    ptr = next;
+                    if (ptr == hi) {
+                        break;
+                    }
+                }
+
                 final byte c = Unsafe.getUnsafe().getByte(ptr++);
 
                 if (rollBufferUnusable) {
@@ -29,6 +29,60 @@ import io.questdb.std.Unsafe;
 import io.questdb.std.str.CharSink;
 
 public class TextUtil {
+    static final long CR_WORD = broadcast((byte) '\r');
+    static final long LF_WORD = broadcast((byte) '\n');
+    static final long QUOTE_WORD = broadcast((byte) '"');
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * Copies byte into every byte of long word, the word is then used as pattern for {@link #matchBytes(long, long)}.
+     */
+    public static long broadcast(byte b) {
+        return (b & 0xffL) * 0x0101010101010101L;
+    }
+
+    /**
+     * Compares all eight bytes of the word with the pattern at once. Result has high bit set in every
+     * byte that is equal to the pattern byte, all other bits are zero. Matches are exact, bytes do not
+     * carry into each other.
+     *
+     * @param word    eight bytes of the input
+     * @param pattern pattern created by {@link #broadcast(byte)}
+     * @return mask of matching bytes or 0 when there are none
+     */
+    public static long matchBytes(long word, long pattern) {
+        final long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    /**
+     * Skips bytes that cannot change state of CSV parser. Outside of quotes these are all bytes except
+     * column delimiter, quote and line ends. Inside quotes only quote is significant. Input is scanned
+     * eight bytes at a time, scan stops when fewer than eight bytes are left.
+     *
+     * @param lo            address of the first byte
+     * @param hi            address of the byte after the last
+     * @param delimiterWord column delimiter pattern created by {@link #broadcast(byte)}
+     * @param inQuote       true when scan starts inside quoted field
+     * @return address of the first significant byte or of the unscanned tail
+     */
+    public static long skipPlainBytes(long lo, long hi, long delimiterWord, boolean inQuote) {
+        long p = lo;
+        while (p + Long.BYTES <= hi) {
+            final long word = Unsafe.getUnsafe().getLong(p);
+            long mask = matchBytes(word, QUOTE_WORD);
+            if (!inQuote) {
+                mask |= matchBytes(word, delimiterWord) | matchBytes(word, LF_WORD) | matchBytes(word, CR_WORD);
+            }
+            if (mask != 0) {
+                // words are little-endian, the lowest set bit belongs to the first byte
+                return p + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+            p += Long.BYTES;
+        }
+        return p;
+    }
+
     public static void utf8Decode(long lo, long hi, CharSink sink) throws Utf8Exception {
         long p = lo;
         while (p < hi) {
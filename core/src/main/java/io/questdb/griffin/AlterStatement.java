@@ -46,6 +46,8 @@ public class AlterStatement implements Mutable {
     public final static short RENAME_COLUMN = 10;
     public final static short SET_PARAM_MAX_UNCOMMITTED_ROWS = 11;
     public final static short SET_PARAM_COMMIT_LAG = 12;
+    public final static short COMPRESS_PARTITION = 13;
+    public final static short DECOMPRESS_PARTITION = 14;
 
     private final static Log LOG = LogFactory.getLog(AlterStatement.class);
 
@@ -82,6 +84,12 @@ public class AlterStatement implements Mutable {
                 case ATTACH_PARTITION:
                     applyAttachPartition(tableWriter);
                     break;
+                case COMPRESS_PARTITION:
+                    applyCompressPartition(tableWriter, true);
+                    break;
+                case DECOMPRESS_PARTITION:
+                    applyCompressPartition(tableWriter, false);
+                    break;
                 case ADD_INDEX:
                     applyAddIndex(tableWriter);
                     break;
@@ -273,6 +281,12 @@ public class AlterStatement implements Mutable {
                                 tableWriter.getPartitionBy(),
                                 partitionTimestamp)
                                 .put("', partition already attached to the table");
+                    case StatusCode.PARTITION_COMPRESSED:
+                        throw putPartitionName(
+                                SqlException.$(tableNamePosition, "failed to attach partition '"),
+                                tableWriter.getPartitionBy(),
+                                partitionTimestamp)
+                                .put("', compressed partitions cannot be attached");
                     default:
                         throw putPartitionName(
                                 SqlException.$(tableNamePosition, "attach partition  '"),
@@ -292,6 +306,21 @@ public class AlterStatement implements Mutable {
         }
     }
 
+    private void applyCompressPartition(TableWriter tableWriter, boolean compress) throws SqlException {
+        for (int i = 0, n = longList.size(); i < n; i++) {
+            long partitionTimestamp = longList.getQuick(i);
+            final boolean done = compress
+                    ? tableWriter.compressPartition(partitionTimestamp)
+                    : tableWriter.decompressPartition(partitionTimestamp);
+            if (!done) {
+                throw putPartitionName(
+                        SqlException.$(tableNamePosition, compress ? "could not compress partition '" : "could not decompress partition '"),
+                        tableWriter.getPartitionBy(),
+                        partitionTimestamp).put('\'');
+            }
+        }
+    }
+
     private void applyDropColumn(TableWriter writer) throws SqlException {
         for (int i = 0, n = charSequenceList.size(); i < n; i++) {
             CharSequence columnName = charSequenceList.getStrA(i);
@@ -103,6 +103,14 @@ public class AlterStatementBuilder {
         return this;
     }
 
+    public AlterStatementBuilder ofCompressPartition(int tableNamePosition, String tableName, int tableId, boolean compress) {
+        this.command = compress ? COMPRESS_PARTITION : DECOMPRESS_PARTITION;
+        this.tableNamePosition = tableNamePosition;
+        this.tableName = tableName;
+        this.tableId = tableId;
+        return this;
+    }
+
     public AlterStatementBuilder ofDropColumn(CharSequence columnName) {
         assert columnName != null && columnName.length() > 0;
         this.objCharList.add(columnName);
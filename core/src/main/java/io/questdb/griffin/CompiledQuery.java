@@ -52,6 +52,11 @@ public interface CompiledQuery {
 
     TextLoader getTextLoader();
 
+    /**
+     * @return format of COPY_REMOTE data, one of CopyModel.FORMAT_* constants
+     */
+    int getCopyFormat();
+
     AlterStatement getAlterStatement();
 
     short getType();
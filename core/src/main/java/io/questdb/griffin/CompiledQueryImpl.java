@@ -50,6 +50,7 @@ public class CompiledQueryImpl implements CompiledQuery {
     private RecordCursorFactory recordCursorFactory;
     private InsertStatement insertStatement;
     private TextLoader textLoader;
+    private int copyFormat;
     private AlterStatement alterStatement;
     private short type;
     private SqlExecutionContext sqlExecutionContext;
@@ -73,6 +74,11 @@ public class CompiledQueryImpl implements CompiledQuery {
         return textLoader;
     }
 
+    @Override
+    public int getCopyFormat() {
+        return copyFormat;
+    }
+
     @Override
     public AlterStatement getAlterStatement() {
         return alterStatement;
@@ -164,8 +170,9 @@ public class CompiledQueryImpl implements CompiledQuery {
         return of(COPY_LOCAL);
     }
 
-    CompiledQuery ofCopyRemote(TextLoader textLoader) {
+    CompiledQuery ofCopyRemote(TextLoader textLoader, int format) {
         this.textLoader = textLoader;
+        this.copyFormat = format;
         return of(COPY_REMOTE);
     }
 
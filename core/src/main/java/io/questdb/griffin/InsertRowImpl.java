@@ -28,6 +28,7 @@ package io.questdb.griffin;
 import io.questdb.cairo.CairoException;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.TableWriter;
+import io.questdb.cairo.TableWriterAPI;
 import io.questdb.cairo.sql.Function;
 import io.questdb.cairo.sql.VirtualRecord;
 import io.questdb.griffin.model.IntervalUtils;
@@ -59,12 +60,12 @@ public class InsertRowImpl {
         }
     }
 
-    private TableWriter.Row getRowWithTimestamp(TableWriter tableWriter) {
+    private TableWriter.Row getRowWithTimestamp(TableWriterAPI tableWriter) {
         long timestamp = timestampFunction.getTimestamp(null);
         return tableWriter.newRow(timestamp);
     }
 
-    private TableWriter.Row getRowWithStringTimestamp(TableWriter tableWriter) {
+    private TableWriter.Row getRowWithStringTimestamp(TableWriterAPI tableWriter) {
         CharSequence tsStr = timestampFunction.getStr(null);
         try {
             long timestamp = IntervalUtils.parseFloorPartialDate(tsStr);
@@ -74,7 +75,7 @@ public class InsertRowImpl {
         }
     }
 
-    private TableWriter.Row getRowWithoutTimestamp(TableWriter tableWriter) {
+    private TableWriter.Row getRowWithoutTimestamp(TableWriterAPI tableWriter) {
         return tableWriter.newRow();
     }
 
@@ -86,7 +87,7 @@ public class InsertRowImpl {
         }
     }
 
-    public void append(TableWriter writer) {
+    public void append(TableWriterAPI writer) {
         final TableWriter.Row row = rowFactory.getRow(writer);
         copier.copy(virtualRecord, row);
         row.append();
@@ -94,6 +95,6 @@ public class InsertRowImpl {
 
     @FunctionalInterface
     private interface RowFactory {
-        TableWriter.Row getRow(TableWriter tableWriter);
+        TableWriter.Row getRow(TableWriterAPI tableWriter);
     }
 }
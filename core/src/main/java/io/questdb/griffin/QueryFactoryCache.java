@@ -0,0 +1,330 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.CharSequenceObjHashMap;
+import io.questdb.std.Chars;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.Mutable;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+/**
+ * Engine-wide cache of compiled select factories, shared by connections on all worker threads.
+ * Factory is checked out for exclusive use by {@link #poll(CharSequence, IntList, IntList)}
+ * and checked back in by {@link #push(CharSequence, RecordCursorFactory, IntList, IntList)} once its cursor is closed,
+ * the same SQL can have several factories checked out at the same time.
+ * <p>
+ * Key is SQL text with whitespace outside of quotes and line comments collapsed. Parameter types client declared,
+ * e.g. in PostgreSQL Parse message, are part of the lookup, factory is only handed out for the same declared types.
+ * Types of bind variables factory was compiled with are kept next to it for the caller to define variables.
+ * Least recently used SQL is evicted when number of idle factories exceeds capacity.
+ */
+public class QueryFactoryCache implements Closeable, Mutable {
+    private static final Log LOG = LogFactory.getLog(QueryFactoryCache.class);
+    private final int capacity;
+    private final CharSequenceObjHashMap<Entry> entries = new CharSequenceObjHashMap<>();
+    private final StringSink keySink = new StringSink();
+    private final ObjList<IntList> typesPool = new ObjList<>();
+    // most recently used entry
+    private Entry head;
+    private Entry tail;
+    private int size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private boolean closed;
+
+    public QueryFactoryCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    static void normalize(CharSequence sql, StringSink sink) {
+        sink.clear();
+        char quote = 0;
+        boolean space = false;
+        boolean comment = false;
+        for (int i = 0, n = sql.length(); i < n; i++) {
+            final char c = sql.charAt(i);
+            if (comment) {
+                // line comment is kept as is, including the line end that terminates it
+                sink.put(c);
+                if (c == '\n') {
+                    comment = false;
+                    // line end already separates the comment from what follows
+                    space = false;
+                    while (i + 1 < n && Character.isWhitespace(sql.charAt(i + 1))) {
+                        i++;
+                    }
+                }
+                continue;
+            }
+            if (quote == 0) {
+                if (Character.isWhitespace(c)) {
+                    space = true;
+                    continue;
+                }
+                if (space && sink.length() > 0) {
+                    sink.put(' ');
+                }
+                space = false;
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                    comment = true;
+                }
+            } else if (c == quote) {
+                quote = 0;
+            }
+            sink.put(c);
+        }
+        // statement terminator does not change the query
+        if (quote == 0 && !comment) {
+            int len = sink.length();
+            while (len > 0 && sink.charAt(len - 1) == ';') {
+                len--;
+            }
+            if (len > 0 && sink.charAt(len - 1) == ' ') {
+                len--;
+            }
+            sink.clear(len);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            Misc.freeObjList(entries.valueQuick(i).factories);
+        }
+        entries.clear();
+        head = tail = null;
+        size = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Drops idle factories of the SQL, e.g. when one of them turned out to be compiled against outdated table structure.
+     *
+     * @param sql query text
+     */
+    public synchronized void invalidate(CharSequence sql) {
+        normalize(sql, keySink);
+        final int index = entries.keyIndex(keySink);
+        if (index < 0) {
+            final Entry entry = entries.valueAt(index);
+            LOG.info().$("invalidated [sql=").utf8(keySink).$(", count=").$(entry.factories.size()).I$();
+            size -= entry.factories.size();
+            Misc.freeObjList(entry.factories);
+            remove(entry);
+        }
+    }
+
+    /**
+     * Checks out idle factory compiled for the SQL.
+     *
+     * @param sql               query text
+     * @param parameterTypes    parameter types declared by the client, empty when none were declared
+     * @param bindVariableTypes receives types of all bind variables factory was compiled with
+     * @return factory, which is owned by the caller until it is pushed back, or null when there is none
+     */
+    public synchronized RecordCursorFactory poll(CharSequence sql, IntList parameterTypes, IntList bindVariableTypes) {
+        if (capacity > 0) {
+            normalize(sql, keySink);
+            final Entry entry = entries.get(keySink);
+            if (entry != null) {
+                // most recently returned factory is least likely to have gone cold
+                for (int i = entry.factories.size() - 1; i > -1; i--) {
+                    if (parameterTypes.equals(entry.parameterTypes.getQuick(i))) {
+                        final RecordCursorFactory factory = entry.factories.getQuick(i);
+                        final IntList types = entry.types.getQuick(i);
+                        entry.factories.remove(i);
+                        entry.types.remove(i);
+                        typesPool.add(entry.parameterTypes.getQuick(i));
+                        entry.parameterTypes.remove(i);
+                        bindVariableTypes.clear();
+                        bindVariableTypes.addAll(types);
+                        typesPool.add(types);
+                        size--;
+                        if (entry.factories.size() == 0) {
+                            remove(entry);
+                        } else {
+                            moveToHead(entry);
+                        }
+                        hitCount++;
+                        return factory;
+                    }
+                }
+            }
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Checks factory in. Factory is freed when the cache is disabled or closed.
+     *
+     * @param sql               query text factory was compiled from
+     * @param factory           factory, its cursor must have been closed
+     * @param parameterTypes    parameter types declared by the client factory was compiled for
+     * @param bindVariableTypes types of bind variables factory was compiled with
+     */
+    public void push(CharSequence sql, RecordCursorFactory factory, IntList parameterTypes, IntList bindVariableTypes) {
+        if (factory == null) {
+            return;
+        }
+        RecordCursorFactory evicted = null;
+        synchronized (this) {
+            if (capacity > 0 && !closed) {
+                normalize(sql, keySink);
+                final int index = entries.keyIndex(keySink);
+                Entry entry;
+                if (index > -1) {
+                    entry = new Entry(Chars.toString(keySink));
+                    entries.putAt(index, entry.key, entry);
+                } else {
+                    entry = entries.valueAt(index);
+                }
+                entry.factories.add(factory);
+                entry.types.add(copyOf(bindVariableTypes));
+                entry.parameterTypes.add(copyOf(parameterTypes));
+                moveToHead(entry);
+                factory = null;
+                if (++size > capacity) {
+                    // evict the oldest factory of least recently used SQL
+                    final Entry lru = tail;
+                    evicted = lru.factories.getQuick(0);
+                    lru.factories.remove(0);
+                    typesPool.add(lru.types.getQuick(0));
+                    lru.types.remove(0);
+                    typesPool.add(lru.parameterTypes.getQuick(0));
+                    lru.parameterTypes.remove(0);
+                    if (lru.factories.size() == 0) {
+                        remove(lru);
+                    }
+                    size--;
+                    evictionCount++;
+                }
+            }
+        }
+        // factories are freed outside the lock, closing them may take a while
+        Misc.free(factory);
+        Misc.free(evicted);
+    }
+
+    private IntList copyOf(IntList source) {
+        final IntList types;
+        final int poolSize = typesPool.size();
+        if (poolSize > 0) {
+            types = typesPool.getQuick(poolSize - 1);
+            typesPool.remove(poolSize - 1);
+            types.clear();
+        } else {
+            types = new IntList();
+        }
+        types.addAll(source);
+        return types;
+    }
+
+    private void moveToHead(Entry entry) {
+        if (entry == head) {
+            return;
+        }
+        unlink(entry);
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        head = entry;
+        if (tail == null) {
+            tail = entry;
+        }
+    }
+
+    private void remove(Entry entry) {
+        unlink(entry);
+        entries.remove(entry.key);
+        for (int i = 0, n = entry.types.size(); i < n; i++) {
+            typesPool.add(entry.types.getQuick(i));
+            typesPool.add(entry.parameterTypes.getQuick(i));
+        }
+        entry.types.clear();
+        entry.parameterTypes.clear();
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else if (head == entry) {
+            head = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else if (tail == entry) {
+            tail = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final ObjList<RecordCursorFactory> factories = new ObjList<>();
+        private final ObjList<IntList> types = new ObjList<>();
+        private final ObjList<IntList> parameterTypes = new ObjList<>();
+        private Entry prev;
+        private Entry next;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+    }
+}
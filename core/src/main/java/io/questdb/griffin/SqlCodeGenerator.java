@@ -42,6 +42,8 @@ import io.questdb.griffin.engine.groupby.*;
 import io.questdb.griffin.engine.groupby.vect.GroupByRecordCursorFactory;
 import io.questdb.griffin.engine.groupby.vect.*;
 import io.questdb.griffin.engine.join.*;
+import io.questdb.griffin.engine.orderby.LimitedSizeSortedLightRecordCursorFactory;
+import io.questdb.griffin.engine.orderby.RadixSortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.RecordComparatorCompiler;
 import io.questdb.griffin.engine.orderby.SortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.SortedRecordCursorFactory;
@@ -49,6 +51,7 @@ import io.questdb.griffin.engine.table.*;
 import io.questdb.griffin.engine.union.*;
 import io.questdb.griffin.model.*;
 import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -83,6 +86,7 @@ public class SqlCodeGenerator implements Mutable {
     private final ListColumnFilter listColumnFilterB = new ListColumnFilter();
     private final CairoConfiguration configuration;
     private final RecordComparatorCompiler recordComparatorCompiler;
+    private final CompiledFilterCompiler compiledFilterCompiler;
     private final IntHashSet intHashSet = new IntHashSet();
     private final ArrayColumnTypes keyTypes = new ArrayColumnTypes();
     private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
@@ -98,9 +102,12 @@ public class SqlCodeGenerator implements Mutable {
     private final ObjList<VectorAggregateFunctionConstructor> tempVecConstructors = new ObjList<>();
     private final IntList tempVecConstructorArgIndexes = new IntList();
     private final IntList tempKeyKinds = new IntList();
+    private final IntList tempSortKeyTypes = new IntList();
     private final ObjObjHashMap<IntList, ObjList<AnalyticFunction>> grouppedAnalytic = new ObjObjHashMap<>();
     private final IntList recordFunctionPositions = new IntList();
     private final IntList groupByFunctionPositions = new IntList();
+    private final IntList workerFunctionPositions = new IntList();
+    private final ArrayColumnTypes workerValueTypes = new ArrayColumnTypes();
     private boolean fullFatJoins = false;
     private final LongList prefixes = new LongList();
 
@@ -122,6 +129,7 @@ public class SqlCodeGenerator implements Mutable {
         this.configuration = configuration;
         this.functionParser = functionParser;
         this.recordComparatorCompiler = new RecordComparatorCompiler(asm);
+        this.compiledFilterCompiler = new CompiledFilterCompiler(functionParser);
     }
 
     @Override
@@ -177,6 +185,43 @@ public class SqlCodeGenerator implements Mutable {
         return model.getOrderByDirectionAdvice().getQuick(index);
     }
 
+    private static int zoneMapFlipOp(int op) {
+        switch (op) {
+            case ZoneMapFwdDataFrameCursor.OP_LT:
+                return ZoneMapFwdDataFrameCursor.OP_GT;
+            case ZoneMapFwdDataFrameCursor.OP_LE:
+                return ZoneMapFwdDataFrameCursor.OP_GE;
+            case ZoneMapFwdDataFrameCursor.OP_GT:
+                return ZoneMapFwdDataFrameCursor.OP_LT;
+            case ZoneMapFwdDataFrameCursor.OP_GE:
+                return ZoneMapFwdDataFrameCursor.OP_LE;
+            default:
+                return op;
+        }
+    }
+
+    private static int zoneMapOp(CharSequence token) {
+        if (Chars.equals(token, '=')) {
+            return ZoneMapFwdDataFrameCursor.OP_EQ;
+        }
+        if (Chars.equals(token, "!=") || Chars.equals(token, "<>")) {
+            return ZoneMapFwdDataFrameCursor.OP_NE;
+        }
+        if (Chars.equals(token, '<')) {
+            return ZoneMapFwdDataFrameCursor.OP_LT;
+        }
+        if (Chars.equals(token, "<=")) {
+            return ZoneMapFwdDataFrameCursor.OP_LE;
+        }
+        if (Chars.equals(token, '>')) {
+            return ZoneMapFwdDataFrameCursor.OP_GT;
+        }
+        if (Chars.equals(token, ">=")) {
+            return ZoneMapFwdDataFrameCursor.OP_GE;
+        }
+        return -1;
+    }
+
     private static boolean allGroupsFirstLastWithSingleSymbolFilter(QueryModel model, RecordMetadata metadata) {
         final ObjList<QueryColumn> columns = model.getColumns();
         for (int i = 0, n = columns.size(); i < n; i++) {
@@ -487,7 +532,8 @@ public class SqlCodeGenerator implements Mutable {
             RecordMetadata metadata,
             RecordCursorFactory master,
             RecordCursorFactory slave,
-            int joinType
+            int joinType,
+            SqlExecutionContext executionContext
     ) {
         /*
          * JoinContext provides the following information:
@@ -522,6 +568,22 @@ public class SqlCodeGenerator implements Mutable {
 
         if (slave.recordCursorSupportsRandomAccess() && !fullFatJoins) {
             if (joinType == JOIN_INNER) {
+                if (configuration.isSqlParallelHashJoinEnabled()
+                        && executionContext.getWorkerCount() > 1
+                        && slave.supportPageFrameCursor()) {
+                    return new AsyncHashJoinLightRecordCursorFactory(
+                            configuration,
+                            metadata,
+                            master,
+                            slave,
+                            keyTypes,
+                            valueTypes,
+                            masterKeySink,
+                            slaveKeySink,
+                            masterMetadata.getColumnCount(),
+                            executionContext.getWorkerCount()
+                    );
+                }
                 return new HashJoinLightRecordCursorFactory(
                         configuration,
                         metadata,
@@ -701,7 +763,44 @@ public class SqlCodeGenerator implements Mutable {
                 f.close();
             }
         }
-        return new FilteredRecordCursorFactory(factory, f);
+
+        if (!factory.supportPageFrameCursor()) {
+            return new FilteredRecordCursorFactory(factory, f);
+        }
+
+        final RecordMetadata metadata = factory.getMetadata();
+        final boolean parallel = configuration.isSqlParallelFilterEnabled()
+                && executionContext.getWorkerCount() > 1
+                && isParallelExecutionSupported(filter, metadata);
+        Function ownerFilter = f;
+        final ObjList<Function> workerFilters = new ObjList<>();
+        try {
+            if (configuration.isSqlCompiledFilterEnabled()) {
+                final CompiledFilter compiledFilter = compiledFilterCompiler.compile(filter, metadata, executionContext);
+                if (compiledFilter != null) {
+                    Misc.free(f);
+                    ownerFilter = compiledFilter;
+                }
+            }
+
+            if (parallel) {
+                final int workerCount = executionContext.getWorkerCount();
+                for (int i = 0; i < workerCount; i++) {
+                    workerFilters.add(
+                            ownerFilter instanceof CompiledFilter
+                                    ? compiledFilterCompiler.compile(filter, metadata, executionContext)
+                                    : compileFilter(filter, metadata, executionContext)
+                    );
+                }
+            } else if (!(ownerFilter instanceof CompiledFilter)) {
+                return new FilteredRecordCursorFactory(factory, ownerFilter);
+            }
+        } catch (Throwable e) {
+            Misc.free(ownerFilter);
+            Misc.freeObjList(workerFilters);
+            throw e;
+        }
+        return new AsyncFilteredRecordCursorFactory(configuration, factory, ownerFilter, workerFilters);
     }
 
     private RecordCursorFactory generateFunctionQuery(QueryModel model) throws SqlException {
@@ -889,7 +988,8 @@ public class SqlCodeGenerator implements Mutable {
                                         createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
                                         master,
                                         slave,
-                                        joinType
+                                        joinType,
+                                        executionContext
                                 );
                                 masterAlias = null;
                                 break;
@@ -934,6 +1034,47 @@ public class SqlCodeGenerator implements Mutable {
         }
     }
 
+    private RecordCursorFactory generateLatestByAll(
+            RecordMetadata metadata,
+            DataFrameCursorFactory dataFrameCursorFactory,
+            Function filter,
+            IntList columnIndexes,
+            SqlExecutionContext executionContext
+    ) {
+        final RecordSink recordSink = RecordSinkFactory.getInstance(asm, metadata, listColumnFilterA, false);
+        final int workerCount = executionContext.getWorkerCount();
+        // filters are not thread-safe, filtered scan remains serial
+        if (filter == null && workerCount > 1 && configuration.isSqlParallelLatestByEnabled() && isParallelLatestBySupported()) {
+            int symbolColumnIndex = -1;
+            if (listColumnFilterA.getColumnCount() == 1) {
+                final int index = listColumnFilterA.getColumnIndexFactored(0);
+                if (ColumnType.isSymbol(metadata.getColumnType(index))) {
+                    symbolColumnIndex = index;
+                }
+            }
+            return new LatestByAllParallelRecordCursorFactory(
+                    metadata,
+                    configuration,
+                    dataFrameCursorFactory,
+                    recordSink,
+                    asm,
+                    keyTypes,
+                    columnIndexes,
+                    symbolColumnIndex,
+                    workerCount
+            );
+        }
+        return new LatestByAllFilteredRecordCursorFactory(
+                metadata,
+                configuration,
+                dataFrameCursorFactory,
+                recordSink,
+                keyTypes,
+                filter,
+                columnIndexes
+        );
+    }
+
     @NotNull
     private RecordCursorFactory generateLatestByQuery(
             QueryModel model,
@@ -965,15 +1106,7 @@ public class SqlCodeGenerator implements Mutable {
 
         // if there are > 1 columns in the latest by statement we cannot use indexes
         if (latestBy.size() > 1 || !ColumnType.isSymbol(metadata.getColumnType(latestByIndex))) {
-            return new LatestByAllFilteredRecordCursorFactory(
-                    metadata,
-                    configuration,
-                    dataFrameCursorFactory,
-                    RecordSinkFactory.getInstance(asm, metadata, listColumnFilterA, false),
-                    keyTypes,
-                    filter,
-                    columnIndexes
-            );
+            return generateLatestByAll(metadata, dataFrameCursorFactory, filter, columnIndexes, executionContext);
         }
 
         if (intrinsicModel.keyColumn != null) {
@@ -1126,15 +1259,7 @@ public class SqlCodeGenerator implements Mutable {
                     prefixes
             );
         } else {
-            return new LatestByAllFilteredRecordCursorFactory(
-                    metadata,
-                    configuration,
-                    dataFrameCursorFactory,
-                    RecordSinkFactory.getInstance(asm, metadata, listColumnFilterA, false),
-                    keyTypes,
-                    filter,
-                    columnIndexes
-            );
+            return generateLatestByAll(metadata, dataFrameCursorFactory, filter, columnIndexes, executionContext);
         }
     }
 
@@ -1186,7 +1311,11 @@ public class SqlCodeGenerator implements Mutable {
         return generateSubQuery(model, executionContext);
     }
 
-    private RecordCursorFactory generateOrderBy(RecordCursorFactory recordCursorFactory, QueryModel model) throws SqlException {
+    private RecordCursorFactory generateOrderBy(
+            RecordCursorFactory recordCursorFactory,
+            QueryModel model,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
         if (recordCursorFactory.followedOrderByAdvice()) {
             return recordCursorFactory;
         }
@@ -1251,6 +1380,25 @@ public class SqlCodeGenerator implements Mutable {
                 orderedMetadata = GenericRecordMetadata.copyOfSansTimestamp(metadata);
 
                 if (recordCursorFactory.recordCursorSupportsRandomAccess()) {
+                    final long limit = getOrderByLimit(model, executionContext);
+                    if (limit > -1) {
+                        return new LimitedSizeSortedLightRecordCursorFactory(
+                                configuration,
+                                orderedMetadata,
+                                recordCursorFactory,
+                                recordComparatorCompiler.compile(metadata, listColumnFilterA),
+                                limit
+                        );
+                    }
+                    if (isRadixSortSupported(metadata, listColumnFilterA)) {
+                        return new RadixSortedLightRecordCursorFactory(
+                                configuration,
+                                orderedMetadata,
+                                recordCursorFactory,
+                                listColumnFilterA,
+                                tempSortKeyTypes
+                        );
+                    }
                     return new SortedLightRecordCursorFactory(
                             configuration,
                             orderedMetadata,
@@ -1306,7 +1454,8 @@ public class SqlCodeGenerator implements Mutable {
                                 model,
                                 executionContext
                         ),
-                        model
+                        model,
+                        executionContext
                 ),
                 model,
                 executionContext
@@ -1314,6 +1463,43 @@ public class SqlCodeGenerator implements Mutable {
     }
 
     @NotNull
+    private ObjList<ObjList<GroupByFunction>> generateWorkerGroupByFunctions(
+            QueryModel model,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext,
+            int functionCount,
+            boolean timestampValue
+    ) throws SqlException {
+        final int workerCount = executionContext.getWorkerCount();
+        final ObjList<ObjList<GroupByFunction>> workerFunctions = new ObjList<>(workerCount);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                final ObjList<GroupByFunction> functions = new ObjList<>(functionCount);
+                workerFunctions.add(functions);
+                // copies lay out map values exactly as the owner functions do
+                workerValueTypes.clear();
+                if (timestampValue) {
+                    workerValueTypes.add(ColumnType.TIMESTAMP);
+                }
+                GroupByUtils.prepareGroupByFunctions(
+                        model,
+                        metadata,
+                        functionParser,
+                        executionContext,
+                        functions,
+                        workerFunctionPositions,
+                        workerValueTypes
+                );
+            }
+            return workerFunctions;
+        } catch (Throwable e) {
+            for (int i = 0, n = workerFunctions.size(); i < n; i++) {
+                Misc.freeObjList(workerFunctions.getQuick(i));
+            }
+            throw e;
+        }
+    }
+
     private RecordCursorFactory generateSampleBy(
             QueryModel model,
             SqlExecutionContext executionContext,
@@ -1517,6 +1703,48 @@ public class SqlCodeGenerator implements Mutable {
                         );
                     }
 
+                    if (configuration.isSqlParallelGroupByEnabled()
+                            && executionContext.getWorkerCount() > 1
+                            && timestampSampler.isFixedWidth()
+                            && timezoneNameFunc.isConstant()
+                            && offsetFunc.isConstant()
+                            && factory.supportPageFrameCursor()
+                            && isParallelGroupBySupported(model, groupByFunctions, metadata)) {
+                        // buckets can be computed for each row in isolation only when time zone offset
+                        // does not change, time zones with DST rules are left to the serial cursor
+                        final CharSequence timezoneValue = timezoneNameFunc.getStr(null);
+                        final long tzOffset = timezoneValue != null ? Timestamps.parseOffset(timezoneValue) : 0;
+                        final CharSequence offsetValue = offsetFunc.getStr(null);
+                        final long fixedOffset = offsetValue != null ? Timestamps.parseOffset(offsetValue) : 0;
+                        if (tzOffset != Long.MIN_VALUE && fixedOffset != Long.MIN_VALUE) {
+                            final ObjList<ObjList<GroupByFunction>> workerFunctions;
+                            try {
+                                workerFunctions = generateWorkerGroupByFunctions(model, metadata, executionContext, groupByFunctions.size(), true);
+                            } catch (Throwable e) {
+                                Misc.freeObjList(recordFunctions);
+                                throw e;
+                            }
+                            Misc.free(timezoneNameFunc);
+                            Misc.free(offsetFunc);
+                            return new AsyncSampleByRecordCursorFactory(
+                                    configuration,
+                                    factory,
+                                    listColumnFilterA,
+                                    asm,
+                                    keyTypes,
+                                    valueTypes,
+                                    groupByMetadata,
+                                    groupByFunctions,
+                                    recordFunctions,
+                                    workerFunctions,
+                                    timestampSampler,
+                                    timestampIndex,
+                                    Numbers.decodeLowInt(tzOffset) * Timestamps.MINUTE_MICROS,
+                                    offsetValue != null ? Numbers.decodeLowInt(fixedOffset) * Timestamps.MINUTE_MICROS : Long.MIN_VALUE
+                            );
+                        }
+                    }
+
                     return new SampleByFillNoneRecordCursorFactory(
                             configuration,
                             factory,
@@ -2142,12 +2370,19 @@ public class SqlCodeGenerator implements Mutable {
                     );
                 }
 
-                if (tempKeyIndexesInBase.size() == 1) {
+                final int keyCount = tempKeyIndexesInBase.size();
+                if (keyCount == 1 || keyCount == 2 && isSymbolPair(arrayColumnTypes)) {
+                    if (keyCount == 2) {
+                        // symbol pair is aggregated as single INT key, see SymbolPairKey
+                        arrayColumnTypes.clear();
+                        arrayColumnTypes.add(ColumnType.INT);
+                    }
+
                     for (int i = 0, n = tempVaf.size(); i < n; i++) {
                         tempVaf.getQuick(i).pushValueTypes(arrayColumnTypes);
                     }
 
-                    GroupByUtils.validateGroupByColumns(model, 1);
+                    GroupByUtils.validateGroupByColumns(model, keyCount);
 
                     return new GroupByRecordCursorFactory(
                             configuration,
@@ -2156,8 +2391,8 @@ public class SqlCodeGenerator implements Mutable {
                             arrayColumnTypes,
                             executionContext.getWorkerCount(),
                             tempVaf,
-                            tempKeyIndexesInBase.getQuick(0),
-                            tempKeyIndex.getQuick(0),
+                            tempKeyIndexesInBase,
+                            tempKeyIndex,
                             tempSymbolSkewIndexes
                     );
                 }
@@ -2219,6 +2454,32 @@ public class SqlCodeGenerator implements Mutable {
                 );
             }
 
+            if (configuration.isSqlParallelGroupByEnabled()
+                    && executionContext.getWorkerCount() > 1
+                    && factory.supportPageFrameCursor()
+                    && isParallelGroupBySupported(model, groupByFunctions, metadata)) {
+                final ObjList<ObjList<GroupByFunction>> workerFunctions;
+                try {
+                    workerFunctions = generateWorkerGroupByFunctions(model, metadata, executionContext, groupByFunctions.size(), false);
+                } catch (Throwable e) {
+                    Misc.freeObjList(recordFunctions);
+                    throw e;
+                }
+
+                return new AsyncGroupByRecordCursorFactory(
+                        configuration,
+                        factory,
+                        listColumnFilterA,
+                        asm,
+                        keyTypes,
+                        valueTypes,
+                        groupByMetadata,
+                        groupByFunctions,
+                        recordFunctions,
+                        workerFunctions
+                );
+            }
+
             return new io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory(
                     configuration,
                     factory,
@@ -2428,7 +2689,8 @@ public class SqlCodeGenerator implements Mutable {
 //                            framingSupported = false;
 //                        }
                         columnIndexes.add(columnIndex);
-                        columnSizes.add((Numbers.msb(typeSize)));
+                        // variable length columns are framed as a data and index page pair
+                        columnSizes.add(typeSize > 0 ? Numbers.msb(typeSize) : -1);
 
                         myMeta.add(new TableColumnMetadata(
                                 Chars.toString(topDownColumns.getQuick(i).getName()),
@@ -2468,6 +2730,7 @@ public class SqlCodeGenerator implements Mutable {
             }
 
             listColumnFilterA.clear();
+            keyTypes.clear();
             final int latestByColumnCount = latestBy.size();
 
             if (latestByColumnCount > 0) {
@@ -2805,6 +3068,10 @@ public class SqlCodeGenerator implements Mutable {
                     }
                 }
 
+                if (intrinsicModel.filter != null && configuration.isZoneMapEnabled()) {
+                    dfcFactory = generateZoneMapFilter(dfcFactory, intrinsicModel.filter, reader.getMetadata(), myMeta, executionContext);
+                }
+
                 model.setWhereClause(intrinsicModel.filter);
                 return new DataFrameRecordCursorFactory(
                         myMeta,
@@ -2849,18 +3116,103 @@ public class SqlCodeGenerator implements Mutable {
                 );
             }
 
-            return new LatestByAllFilteredRecordCursorFactory(
+            return generateLatestByAll(
                     myMeta,
-                    configuration,
                     new FullBwdDataFrameCursorFactory(engine, tableName, model.getTableId(), model.getTableVersion()),
-                    RecordSinkFactory.getInstance(asm, myMeta, listColumnFilterA, false),
-                    keyTypes,
                     null,
-                    columnIndexes
+                    columnIndexes,
+                    executionContext
             );
         }
     }
 
+    private DataFrameCursorFactory generateZoneMapFilter(
+            DataFrameCursorFactory dfcFactory,
+            ExpressionNode filter,
+            TableReaderMetadata readerMeta,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        ZoneMapFwdDataFrameCursorFactory zoneMapFactory = null;
+        try {
+            zoneMapFactory = generateZoneMapPredicates(zoneMapFactory, dfcFactory, filter, readerMeta, metadata, executionContext);
+        } catch (Throwable e) {
+            if (zoneMapFactory != null) {
+                // do not let zone map factory close data frame cursor factory, caller owns it
+                zoneMapFactory.freePredicates();
+            }
+            throw e;
+        }
+        return zoneMapFactory != null ? zoneMapFactory : dfcFactory;
+    }
+
+    // collects "column op constant" conjuncts of the filter, anything else is left to the filter alone
+    private ZoneMapFwdDataFrameCursorFactory generateZoneMapPredicates(
+            ZoneMapFwdDataFrameCursorFactory zoneMapFactory,
+            DataFrameCursorFactory dfcFactory,
+            ExpressionNode node,
+            TableReaderMetadata readerMeta,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        if (node.type != ExpressionNode.OPERATION || node.paramCount != 2) {
+            return zoneMapFactory;
+        }
+
+        if (isAndKeyword(node.token)) {
+            zoneMapFactory = generateZoneMapPredicates(zoneMapFactory, dfcFactory, node.lhs, readerMeta, metadata, executionContext);
+            return generateZoneMapPredicates(zoneMapFactory, dfcFactory, node.rhs, readerMeta, metadata, executionContext);
+        }
+
+        int op = zoneMapOp(node.token);
+        if (op == -1) {
+            return zoneMapFactory;
+        }
+
+        final ExpressionNode column;
+        final ExpressionNode value;
+        if (node.lhs.type == LITERAL) {
+            column = node.lhs;
+            value = node.rhs;
+        } else if (node.rhs.type == LITERAL) {
+            column = node.rhs;
+            value = node.lhs;
+            op = zoneMapFlipOp(op);
+        } else {
+            return zoneMapFactory;
+        }
+
+        final boolean negativeConstant = value.type == ExpressionNode.OPERATION
+                && value.paramCount == 1
+                && Chars.equals(value.token, '-')
+                && value.rhs.type == ExpressionNode.CONSTANT;
+        if (value.type != ExpressionNode.CONSTANT && value.type != ExpressionNode.BIND_VARIABLE && !negativeConstant) {
+            return zoneMapFactory;
+        }
+
+        final int columnIndex = readerMeta.getColumnIndexQuiet(column.token);
+        if (columnIndex == -1 || !ZoneMapReader.isSupported(readerMeta.getColumnType(columnIndex))) {
+            return zoneMapFactory;
+        }
+
+        final Function function = functionParser.parseFunction(value, metadata, executionContext);
+        switch (ColumnType.tagOf(function.getType())) {
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                if (zoneMapFactory == null) {
+                    zoneMapFactory = new ZoneMapFwdDataFrameCursorFactory(dfcFactory);
+                }
+                zoneMapFactory.addPredicate(columnIndex, op, function);
+                break;
+            default:
+                Misc.free(function);
+                break;
+        }
+        return zoneMapFactory;
+    }
+
     private RecordCursorFactory generateUnionAllFactory(
             QueryModel model,
             RecordCursorFactory masterFactory,
@@ -2913,6 +3265,41 @@ public class SqlCodeGenerator implements Mutable {
         return unionFactory;
     }
 
+    private long getConstantLimit(ExpressionNode node, SqlExecutionContext executionContext) throws SqlException {
+        final Function func = functionParser.parseFunction(node, EmptyRecordMetadata.INSTANCE, executionContext);
+        try {
+            if (func.isConstant() && !limitTypes.excludes(func.getType())) {
+                return func.getLong(null);
+            }
+            return Numbers.LONG_NaN;
+        } finally {
+            Misc.free(func);
+        }
+    }
+
+    /**
+     * @return number of leading rows of the sorted cursor LIMIT clause can reach or -1 when
+     * limit is not constant or counts rows from the end of the cursor
+     */
+    private long getOrderByLimit(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
+        final ExpressionNode limitLo = model.getLimitLo();
+        final ExpressionNode limitHi = model.getLimitHi();
+        if (limitLo == null && limitHi == null) {
+            return -1;
+        }
+
+        final long lo = limitLo != null ? getConstantLimit(limitLo, executionContext) : 0;
+        if (lo < 0) {
+            return -1;
+        }
+        if (limitHi == null) {
+            return lo;
+        }
+
+        final long hi = getConstantLimit(limitHi, executionContext);
+        return hi >= lo ? hi : -1;
+    }
+
     private int getTimestampIndex(QueryModel model, RecordCursorFactory factory) throws SqlException {
         final RecordMetadata metadata = factory.getMetadata();
         try {
@@ -2938,6 +3325,85 @@ public class SqlCodeGenerator implements Mutable {
         return metadata.getTimestampIndex();
     }
 
+    private boolean isRadixSortSupported(RecordMetadata metadata, IntList sortColumnIndexes) {
+        tempSortKeyTypes.clear();
+        for (int i = 0, n = sortColumnIndexes.size(); i < n; i++) {
+            // column index sign indicates direction, index is 1-based
+            final int columnType = metadata.getColumnType(Math.abs(sortColumnIndexes.getQuick(i)) - 1);
+            if (!RadixSortedLightRecordCursorFactory.isSupported(columnType)) {
+                return false;
+            }
+            tempSortKeyTypes.add(columnType);
+        }
+        return true;
+    }
+
+    // Function copies are evaluated by workers concurrently, we only allow expressions that
+    // do not share mutable state between copies. Symbol tables cache values and random
+    // functions share generator, hence they are kept on the calling thread.
+    private boolean isParallelExecutionSupported(ExpressionNode node, RecordMetadata metadata) {
+        if (node == null) {
+            return true;
+        }
+        switch (node.type) {
+            case LITERAL:
+                final int columnIndex = metadata.getColumnIndexQuiet(node.token);
+                return columnIndex > -1 && !ColumnType.isSymbol(metadata.getColumnType(columnIndex));
+            case ExpressionNode.CONSTANT:
+            case ExpressionNode.BIND_VARIABLE:
+                return true;
+            case ExpressionNode.OPERATION:
+            case FUNCTION:
+                if (Chars.startsWith(node.token, "rnd_")) {
+                    return false;
+                }
+                for (int i = 0, n = node.args.size(); i < n; i++) {
+                    if (!isParallelExecutionSupported(node.args.getQuick(i), metadata)) {
+                        return false;
+                    }
+                }
+                return isParallelExecutionSupported(node.lhs, metadata) && isParallelExecutionSupported(node.rhs, metadata);
+            default:
+                return false;
+        }
+    }
+
+    private boolean isParallelGroupBySupported(QueryModel model, ObjList<GroupByFunction> groupByFunctions, RecordMetadata metadata) {
+        for (int i = 0, n = groupByFunctions.size(); i < n; i++) {
+            if (!groupByFunctions.getQuick(i).isParallelizable()) {
+                return false;
+            }
+        }
+        final ObjList<QueryColumn> columns = model.getColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final ExpressionNode node = columns.getQuick(i).getAst();
+            // keys are copied to the map by record sink, symbol keys are copied as int values
+            if (node.type != LITERAL && !isParallelExecutionSupported(node, metadata)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isParallelLatestBySupported() {
+        for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+            switch (ColumnType.tagOf(keyTypes.getColumnType(i))) {
+                case ColumnType.STRING:
+                case ColumnType.LONG256:
+                    // column memory hands out shared views for these values,
+                    // workers cannot read them concurrently
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSymbolPair(ColumnTypes keyTypes) {
+        return ColumnType.isSymbol(keyTypes.getColumnType(0)) && ColumnType.isSymbol(keyTypes.getColumnType(1));
+    }
+
     private boolean isSingleColumnFunction(ExpressionNode ast, CharSequence name) {
         return ast.type == FUNCTION && ast.paramCount == 1 && Chars.equals(ast.token, name) && ast.rhs.type == LITERAL;
     }
@@ -33,6 +33,7 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryMARW;
 import io.questdb.cutlass.text.Atomicity;
+import io.questdb.cutlass.text.ParallelCsvFileImporter;
 import io.questdb.cutlass.text.TextException;
 import io.questdb.cutlass.text.TextLoader;
 import io.questdb.griffin.engine.functions.cast.CastCharToStrFunctionFactory;
@@ -93,6 +94,7 @@ public class SqlCompiler implements Closeable {
     private final ExecutableMethod insertAsSelectMethod = this::insertAsSelect;
     private final ExecutableMethod createTableMethod = this::createTable;
     private final TextLoader textLoader;
+    private final ParallelCsvFileImporter parallelImporter;
     private final FilesFacade ff;
     private final TimestampValueRecord partitionFunctionRec = new TimestampValueRecord();
 
@@ -185,6 +187,7 @@ public class SqlCompiler implements Closeable {
                 postOrderTreeTraversalAlgo
         );
         this.textLoader = new TextLoader(engine);
+        this.parallelImporter = new ParallelCsvFileImporter(engine);
     }
 
     // Creates data type converter.
@@ -890,6 +893,7 @@ public class SqlCompiler implements Closeable {
         Misc.free(path);
         Misc.free(renamePath);
         Misc.free(textLoader);
+        Misc.free(parallelImporter);
     }
 
     @NotNull
@@ -1024,6 +1028,14 @@ public class SqlCompiler implements Closeable {
                     } else {
                         throw SqlException.$(lexer.lastTokenPosition(), "'partition' expected");
                     }
+                } else if (SqlKeywords.isCompressKeyword(tok) || SqlKeywords.isDecompressKeyword(tok)) {
+                    final int action = SqlKeywords.isCompressKeyword(tok) ? PartitionAction.COMPRESS : PartitionAction.DECOMPRESS;
+                    tok = expectToken(lexer, "'partition'");
+                    if (SqlKeywords.isPartitionKeyword(tok)) {
+                        return alterTableDropOrAttachPartition(reader, action, executionContext);
+                    } else {
+                        throw SqlException.$(lexer.lastTokenPosition(), "'partition' expected");
+                    }
                 } else if (SqlKeywords.isRenameKeyword(tok)) {
                     tok = expectToken(lexer, "'column'");
                     if (SqlKeywords.isColumnKeyword(tok)) {
@@ -1434,15 +1446,14 @@ public class SqlCompiler implements Closeable {
             throw SqlException.$(pos, "table is not partitioned");
         }
 
-        String tableName = reader.getTableName();
         final CharSequence tok = expectToken(lexer, "'list' or 'where'");
         if (SqlKeywords.isListKeyword(tok)) {
             return alterTableDropOrAttachPartitionByList(reader, pos, action);
         } else if (SqlKeywords.isWhereKeyword(tok)) {
-            if (action != PartitionAction.DROP) {
-                throw SqlException.$(pos, "WHERE clause can only be used with DROP PARTITION command");
+            if (action == PartitionAction.ATTACH) {
+                throw SqlException.$(pos, "WHERE clause cannot be used with ATTACH PARTITION command");
             }
-            AlterStatementBuilder alterPartitionStatement = alterQueryBuilder.ofDropPartition(pos, tableName, reader.getMetadata().getId());
+            AlterStatementBuilder alterPartitionStatement = ofPartitionAction(reader, pos, action);
             ExpressionNode expr = parser.expr(lexer, (QueryModel) null);
             String designatedTimestampColumnName = null;
             int tsIndex = readerMetadata.getTimestampIndex();
@@ -1487,14 +1498,7 @@ public class SqlCompiler implements Closeable {
     }
 
     private CompiledQuery alterTableDropOrAttachPartitionByList(TableReader reader, int pos, int action) throws SqlException {
-        String tableName = reader.getTableName();
-        AlterStatementBuilder partitions;
-        if (action == PartitionAction.DROP) {
-            partitions = alterQueryBuilder.ofDropPartition(pos, tableName, reader.getMetadata().getId());
-        } else {
-            partitions = alterQueryBuilder.ofAttachPartition(pos, tableName, reader.getMetadata().getId());
-        }
-        assert action == PartitionAction.DROP || action == PartitionAction.ATTACH;
+        AlterStatementBuilder partitions = ofPartitionAction(reader, pos, action);
         int semicolonPos = -1;
         do {
             CharSequence tok = maybeExpectToken(lexer, "partition name", semicolonPos < 0);
@@ -1533,6 +1537,20 @@ public class SqlCompiler implements Closeable {
         return compiledQuery.ofAlter(alterQueryBuilder.build());
     }
 
+    private AlterStatementBuilder ofPartitionAction(TableReader reader, int pos, int action) {
+        final String tableName = reader.getTableName();
+        final int tableId = reader.getMetadata().getId();
+        switch (action) {
+            case PartitionAction.DROP:
+                return alterQueryBuilder.ofDropPartition(pos, tableName, tableId);
+            case PartitionAction.ATTACH:
+                return alterQueryBuilder.ofAttachPartition(pos, tableName, tableId);
+            default:
+                assert action == PartitionAction.COMPRESS || action == PartitionAction.DECOMPRESS;
+                return alterQueryBuilder.ofCompressPartition(pos, tableName, tableId, action == PartitionAction.COMPRESS);
+        }
+    }
+
     private CompiledQuery alterTableRenameColumn(int tableNamePosition, String tableName, TableReaderMetadata metadata) throws SqlException {
         AlterStatementBuilder renameColumnStatement = alterQueryBuilder.ofRenameColumn(tableNamePosition, tableName, metadata.getId());
         int hadSemicolonPos = -1;
@@ -1773,6 +1791,17 @@ public class SqlCompiler implements Closeable {
                 }
                 try {
                     long fileLen = ff.length(fd);
+                    if (configuration.isSqlParallelCopyEnabled() && parallelImporter.importFile(
+                            executionContext.getCairoSecurityContext(),
+                            GenericLexer.unquote(model.getTableName().token),
+                            fd,
+                            fileLen,
+                            model.isHeader(),
+                            getCopyPartitionBy(model),
+                            getCopyTimestampColumnName(model)
+                    )) {
+                        return;
+                    }
                     long n = ff.read(fd, buf, len, 0);
                     if (n > 0) {
                         textLoader.setForceHeaders(model.isHeader());
@@ -1954,7 +1983,7 @@ public class SqlCompiler implements Closeable {
     private CompiledQuery executeCopy(SqlExecutionContext executionContext, CopyModel executionModel) throws SqlException {
         setupTextLoaderFromModel(executionModel);
         if (Chars.equalsLowerCaseAscii(executionModel.getFileName().token, "stdin")) {
-            return compiledQuery.ofCopyRemote(textLoader);
+            return compiledQuery.ofCopyRemote(textLoader, executionModel.getFormat());
         }
         copyTable(executionContext, executionModel);
         return compiledQuery.ofCopyLocal();
@@ -2293,7 +2322,28 @@ public class SqlCompiler implements Closeable {
         // todo: configure the following
         //   - what happens when data row errors out, max errors may be?
         //   - we should be able to skip X rows from top, dodgy headers etc.
-        textLoader.configureDestination(model.getTableName().token, false, false, Atomicity.SKIP_ROW, PartitionBy.NONE, null);
+        textLoader.configureDestination(
+                model.getTableName().token,
+                false,
+                false,
+                Atomicity.SKIP_ROW,
+                getCopyPartitionBy(model),
+                getCopyTimestampColumnName(model)
+        );
+        textLoader.setForceHeaders(model.isHeader());
+        if (model.getDelimiter() > 0) {
+            textLoader.configureColumnDelimiter(model.getDelimiter());
+        }
+    }
+
+    private static int getCopyPartitionBy(CopyModel model) {
+        final ExpressionNode partitionBy = model.getPartitionBy();
+        return partitionBy != null ? PartitionBy.fromString(partitionBy.token) : PartitionBy.NONE;
+    }
+
+    private static CharSequence getCopyTimestampColumnName(CopyModel model) {
+        final ExpressionNode timestamp = model.getTimestampColumnName();
+        return timestamp != null ? Chars.toString(GenericLexer.unquote(timestamp.token)) : null;
     }
 
     private CompiledQuery sqlShow(SqlExecutionContext executionContext) throws SqlException {
@@ -2564,6 +2614,16 @@ public class SqlCompiler implements Closeable {
         if (PartitionBy.isPartitioned(model.getPartitionBy()) && model.getTimestampIndex() == -1 && metadata.getTimestampIndex() == -1) {
             throw SqlException.position(0).put("timestamp is not defined");
         }
+
+        for (int i = 0, n = model.getColumnCount(); i < n; i++) {
+            if (model.isDedupKey(i)) {
+                final int castIndex = typeCast.keyIndex(i);
+                final int type = castIndex < 0 ? typeCast.valueAt(castIndex) : metadata.getColumnType(i);
+                if (ColumnType.isVariableLength(type)) {
+                    throw SqlException.position(0).put("dedup key column must be of fixed size type [column=").put(model.getColumnName(i)).put(']');
+                }
+            }
+        }
     }
 
     @FunctionalInterface
@@ -2602,6 +2662,8 @@ public class SqlCompiler implements Closeable {
     public final static class PartitionAction {
         public static final int DROP = 1;
         public static final int ATTACH = 2;
+        public static final int COMPRESS = 3;
+        public static final int DECOMPRESS = 4;
     }
 
     private static class TableStructureAdapter implements TableStructure {
@@ -2644,6 +2706,11 @@ public class SqlCompiler implements Closeable {
             return model.isSequential(columnIndex);
         }
 
+        @Override
+        public boolean isDedupKey(int columnIndex) {
+            return model.isDedupKey(columnIndex);
+        }
+
         @Override
         public int getPartitionBy() {
             return model.getPartitionBy();
@@ -446,9 +446,7 @@ public final class SqlParser {
     }
 
     private ExecutionModel parseCopy(GenericLexer lexer) throws SqlException {
-        if (configuration.getInputRoot() == null) {
-            throw SqlException.$(lexer.lastTokenPosition(), "COPY is disabled ['cairo.sql.copy.root' is not set?]");
-        }
+        final int copyPosition = lexer.lastTokenPosition();
         ExpressionNode tableName = expectExpr(lexer);
         CharSequence tok = tok(lexer, "'from' or 'to'");
 
@@ -457,21 +455,77 @@ public final class SqlParser {
             if (fileName.token.length() < 3 && Chars.startsWith(fileName.token, '\'')) {
                 throw SqlException.$(fileName.position, "file name expected");
             }
+            // data sent by client does not need local input root
+            if (configuration.getInputRoot() == null && !Chars.equalsLowerCaseAscii(fileName.token, "stdin")) {
+                throw SqlException.$(copyPosition, "COPY is disabled ['cairo.sql.copy.root' is not set?]");
+            }
             CopyModel model = copyModelPool.next();
             model.setTableName(tableName);
             model.setFileName(fileName);
 
             tok = optTok(lexer);
+            boolean options = false;
             if (tok != null && isWithKeyword(tok)) {
                 tok = tok(lexer, "copy option");
+                options = true;
+            }
+            // PostgreSQL style option list, e.g. WITH (FORMAT binary)
+            boolean braced = false;
+            if (tok != null && Chars.equals(tok, '(')) {
+                tok = tok(lexer, "copy option");
+                options = true;
+                braced = true;
+            }
+            if (tok != null && Chars.equalsLowerCaseAscii(tok, "binary")) {
+                options = true;
+            }
+            if (options) {
                 while (tok != null) {
                     if (isHeaderKeyword(tok)) {
                         model.setHeader(isTrueKeyword(tok(lexer, "'true' or 'false'")));
                         tok = optTok(lexer);
+                    } else if (isPartitionKeyword(tok)) {
+                        final ExpressionNode partitionBy = parseCreateTablePartition(lexer, tok);
+                        if (PartitionBy.fromString(partitionBy.token) == -1) {
+                            throw SqlException.$(partitionBy.position, "'NONE', 'HOUR', 'DAY', 'MONTH' or 'YEAR' expected");
+                        }
+                        model.setPartitionBy(partitionBy);
+                        tok = optTok(lexer);
+                    } else if (isTimestampKeyword(tok)) {
+                        model.setTimestampColumnName(expectLiteral(lexer));
+                        tok = optTok(lexer);
+                    } else if (Chars.equalsLowerCaseAscii(tok, "format")) {
+                        tok = tok(lexer, "'text', 'csv' or 'binary'");
+                        if (Chars.equalsLowerCaseAscii(tok, "text")) {
+                            model.setFormat(CopyModel.FORMAT_TEXT);
+                            model.setDelimiter((byte) '\t');
+                        } else if (Chars.equalsLowerCaseAscii(tok, "csv")) {
+                            model.setFormat(CopyModel.FORMAT_CSV);
+                            model.setDelimiter((byte) ',');
+                        } else if (Chars.equalsLowerCaseAscii(tok, "binary")) {
+                            model.setFormat(CopyModel.FORMAT_BINARY);
+                        } else {
+                            throw SqlException.$(lexer.lastTokenPosition(), "'text', 'csv' or 'binary' expected");
+                        }
+                        tok = optTok(lexer);
+                    } else if (Chars.equalsLowerCaseAscii(tok, "binary")) {
+                        model.setFormat(CopyModel.FORMAT_BINARY);
+                        tok = optTok(lexer);
+                    } else if (braced && Chars.equals(tok, ',')) {
+                        tok = tok(lexer, "copy option");
+                    } else if (braced && Chars.equals(tok, ')')) {
+                        braced = false;
+                        tok = optTok(lexer);
                     } else {
                         throw SqlException.$(lexer.lastTokenPosition(), "unexpected option");
                     }
                 }
+                if (braced) {
+                    throw SqlException.$(lexer.getPosition(), "')' expected");
+                }
+            }
+            if (model.isBinary() && !Chars.equalsLowerCaseAscii(fileName.token, "stdin")) {
+                throw SqlException.$(fileName.position, "binary format is only supported for 'stdin'");
             }
             return model;
         }
@@ -540,6 +594,10 @@ public final class SqlParser {
             }
             model.setPartitionBy(partitionBy);
             tok = optTok(lexer);
+            if (tok != null && isDedupKeyword(tok)) {
+                parseCreateTableDedupKeys(lexer, model);
+                tok = optTok(lexer);
+            }
             if (tok != null && isWithKeyword(tok)) {
                 ExpressionNode expr;
                 while ((expr = expr(lexer, (QueryModel) null)) != null) {
@@ -591,6 +649,39 @@ public final class SqlParser {
         expectTok(lexer, ')');
     }
 
+    private void parseCreateTableDedupKeys(GenericLexer lexer, CreateTableModel model) throws SqlException {
+        final int dedupPosition = lexer.lastTokenPosition();
+        if (model.getTimestamp() == null) {
+            throw SqlException.$(dedupPosition, "dedup requires designated timestamp");
+        }
+        if (!PartitionBy.isPartitioned(model.getPartitionBy())) {
+            // rows of non-partitioned table are appended, they never go through O3 merge that deduplicates them
+            throw SqlException.$(dedupPosition, "dedup requires partitioned table");
+        }
+        expectTok(lexer, "upsert");
+        expectTok(lexer, "keys");
+        expectTok(lexer, '(');
+        CharSequence tok;
+        do {
+            tok = tok(lexer, "column name");
+            final int columnIndex = getCreateTableColumnIndex(model, tok, lexer.lastTokenPosition());
+            final int columnType = model.getColumnType(columnIndex);
+            if (columnType != -1 && ColumnType.isVariableLength(columnType)) {
+                throw SqlException.$(lexer.lastTokenPosition(), "dedup key column must be of fixed size type");
+            }
+            model.setDedupKey(columnIndex);
+            tok = tok(lexer, "',' or ')'");
+        } while (Chars.equals(tok, ','));
+
+        if (!Chars.equals(tok, ')')) {
+            throw errUnexpected(lexer, tok);
+        }
+
+        if (!model.isDedupKey(model.getTimestampIndex())) {
+            throw SqlException.$(dedupPosition, "dedup keys must include designated timestamp");
+        }
+    }
+
     private void parseCreateTableCastDef(GenericLexer lexer, CreateTableModel model) throws SqlException {
         if (model.getQueryModel() == null) {
             throw SqlException.$(lexer.lastTokenPosition(), "cast is only supported in 'create table as ...' context");
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.griffin.SqlExecutionCircuitBreaker;
+import io.questdb.mp.SOCountDownLatch;
+import io.questdb.std.AbstractLockable;
+import io.questdb.std.ObjList;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Unit of work, which is published to the worker pool and can also be executed by the thread that
+ * owns it. Whoever locks the entry first does the work, the other party skips it. Failure of the
+ * work is captured and rethrown on the owner thread by {@link #throwIfFailed()}.
+ */
+public abstract class AbstractParallelEntry extends AbstractLockable {
+    public static final int OWNER_WORKER_ID = -1;
+    private final SOCountDownLatch doneLatch = new SOCountDownLatch();
+    // CairoException instances are thread-local, worker copies the message
+    // rather than handing over the instance it is going to reuse
+    private final StringSink errorMessage = new StringSink();
+    private int errorErrno;
+    private boolean cairoError;
+    private Throwable error;
+
+    public static void awaitAll(ObjList<? extends AbstractParallelEntry> entries, int entryCount) {
+        for (int i = 0; i < entryCount; i++) {
+            entries.getQuick(i).await();
+        }
+    }
+
+    /**
+     * Executes published entries on the calling thread and rethrows the first failure. Workers pick
+     * entries from the front of the queue, this thread works from the back so that both sides meet in
+     * the middle with little contention on entry locks. No worker is executing any of the entries once
+     * the method returns, entries this thread did not get to due to an error are cancelled.
+     *
+     * @param entries        entries, which have been published
+     * @param entryCount     number of entries at the start of the list to run
+     * @param circuitBreaker tested before each entry
+     */
+    public static void runAll(
+            ObjList<? extends AbstractParallelEntry> entries,
+            int entryCount,
+            SqlExecutionCircuitBreaker circuitBreaker
+    ) {
+        int i = entryCount - 1;
+        try {
+            for (; i > -1; i--) {
+                circuitBreaker.test();
+                entries.getQuick(i).runOwned();
+            }
+        } catch (Throwable e) {
+            for (; i > -1; i--) {
+                entries.getQuick(i).cancel();
+            }
+            awaitAll(entries, entryCount);
+            throw e;
+        }
+
+        awaitAll(entries, entryCount);
+        for (int j = 0; j < entryCount; j++) {
+            entries.getQuick(j).throwIfFailed();
+        }
+    }
+
+    public void await() {
+        doneLatch.await();
+    }
+
+    /**
+     * Releases entry that is no longer required. Entry is either locked and discarded
+     * or, when worker is already executing it, awaited.
+     */
+    public void cancel() {
+        if (tryLock()) {
+            doneLatch.countDown();
+        } else {
+            doneLatch.await();
+        }
+    }
+
+    /**
+     * Executes entry unless the other party has locked it first.
+     *
+     * @param workerId id of the worker, which picked up the entry
+     * @return true when entry was executed by this call
+     */
+    public boolean run(int workerId) {
+        // worker ids of a foreign pool can exceed the number of worker resources
+        // entry was given, such entries are left for the owner thread to pick up
+        if (isWorkerSupported(workerId) && tryLock()) {
+            try {
+                execute(workerId);
+            } catch (CairoException e) {
+                errorErrno = e.getErrno();
+                errorMessage.put(e.getFlyweightMessage());
+                cairoError = true;
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                doneLatch.countDown();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public boolean runOwned() {
+        return run(OWNER_WORKER_ID);
+    }
+
+    public void throwIfFailed() {
+        if (cairoError) {
+            cairoError = false;
+            throw CairoException.instance(errorErrno).put(errorMessage);
+        }
+        if (error != null) {
+            final Throwable e = error;
+            error = null;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw putFailure(CairoException.instance(0)).put(", error=").put(e.getMessage()).put(']');
+        }
+    }
+
+    /**
+     * Does the work of the entry.
+     *
+     * @param workerId id of the worker or {@link #OWNER_WORKER_ID} when executed by the owner thread
+     */
+    protected abstract void execute(int workerId);
+
+    protected boolean isWorkerSupported(int workerId) {
+        return true;
+    }
+
+    @Override
+    protected void of(int sequence) {
+        this.error = null;
+        this.cairoError = false;
+        this.errorMessage.clear();
+        this.doneLatch.setCount(1);
+        // entry can be reachable from queue slots that were published earlier and
+        // were never consumed, make sure state is visible before entry is unlocked
+        Unsafe.getUnsafe().storeFence();
+        super.of(sequence);
+    }
+
+    /**
+     * Describes entry in the message of unexpected failure, e.g. "filter failed [frameIndex=1".
+     */
+    protected abstract CairoException putFailure(CairoException e);
+}
@@ -24,6 +24,8 @@
 
 package io.questdb.griffin.engine;
 
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
 import io.questdb.std.MemoryPages;
 import io.questdb.std.Misc;
 import io.questdb.std.Mutable;
@@ -40,14 +42,18 @@ public abstract class AbstractRedBlackTree implements Mutable, Closeable {
     private static final int O_COLOUR = 24;
     private static final int O_REF = 25;
 
-    private static final byte RED = 1;
-    private static final byte BLACK = 0;
+    protected static final byte RED = 1;
+    protected static final byte BLACK = 0;
     protected final MemoryPages mem;
     protected long root = -1;
 
     public AbstractRedBlackTree(long keyPageSize, int keyMaxPages) {
+        this(keyPageSize, keyMaxPages, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    public AbstractRedBlackTree(long keyPageSize, int keyMaxPages, FilesFacade ff, CharSequence spillRoot, long spillMemoryBudget) {
         assert keyPageSize >= getBlockSize();
-        this.mem = new MemoryPages(keyPageSize, keyMaxPages);
+        this.mem = new MemoryPages(keyPageSize, keyMaxPages, ff, spillRoot, spillMemoryBudget);
     }
 
     @Override
@@ -192,6 +198,112 @@ public abstract class AbstractRedBlackTree implements Mutable, Closeable {
         setParent(root, -1);
     }
 
+    /**
+     * Removes node from the tree. Node with two children takes over reference of its
+     * successor and the successor's block is unlinked instead.
+     *
+     * @param p address of the node to remove
+     * @return address of the block that is no longer part of the tree
+     */
+    protected long remove(long p) {
+        if (leftOf(p) != -1 && rightOf(p) != -1) {
+            final long s = successor(p);
+            setRef(p, refOf(s));
+            p = s;
+        }
+
+        // p has at most one child at this point
+        final long replacement = leftOf(p) != -1 ? leftOf(p) : rightOf(p);
+        if (replacement != -1) {
+            final long pp = parentOf(p);
+            setParent(replacement, pp);
+            if (pp == -1) {
+                root = replacement;
+            } else if (p == leftOf(pp)) {
+                setLeft(pp, replacement);
+            } else {
+                setRight(pp, replacement);
+            }
+            if (colorOf(p) == BLACK) {
+                fixAfterRemove(replacement);
+            }
+        } else if (parentOf(p) == -1) {
+            root = -1;
+        } else {
+            // childless node stands in for the missing child while tree is re-balanced
+            if (colorOf(p) == BLACK) {
+                fixAfterRemove(p);
+            }
+            final long pp = parentOf(p);
+            if (pp != -1) {
+                if (p == leftOf(pp)) {
+                    setLeft(pp, -1);
+                } else if (p == rightOf(pp)) {
+                    setRight(pp, -1);
+                }
+            }
+        }
+        return p;
+    }
+
+    private void fixAfterRemove(long x) {
+        while (x != root && colorOf(x) == BLACK) {
+            final long px = parentOf(x);
+            if (x == leftOf(px)) {
+                long sibling = rightOf(px);
+                if (colorOf(sibling) == RED) {
+                    setColor(sibling, BLACK);
+                    setColor(px, RED);
+                    rotateLeft(px);
+                    sibling = rightOf(parentOf(x));
+                }
+
+                if (colorOf(leftOf(sibling)) == BLACK && colorOf(rightOf(sibling)) == BLACK) {
+                    setColor(sibling, RED);
+                    x = parentOf(x);
+                } else {
+                    if (colorOf(rightOf(sibling)) == BLACK) {
+                        setColor(leftOf(sibling), BLACK);
+                        setColor(sibling, RED);
+                        rotateRight(sibling);
+                        sibling = rightOf(parentOf(x));
+                    }
+                    setColor(sibling, colorOf(parentOf(x)));
+                    setColor(parentOf(x), BLACK);
+                    setColor(rightOf(sibling), BLACK);
+                    rotateLeft(parentOf(x));
+                    x = root;
+                }
+            } else {
+                long sibling = leftOf(px);
+                if (colorOf(sibling) == RED) {
+                    setColor(sibling, BLACK);
+                    setColor(px, RED);
+                    rotateRight(px);
+                    sibling = leftOf(parentOf(x));
+                }
+
+                if (colorOf(rightOf(sibling)) == BLACK && colorOf(leftOf(sibling)) == BLACK) {
+                    setColor(sibling, RED);
+                    x = parentOf(x);
+                } else {
+                    if (colorOf(leftOf(sibling)) == BLACK) {
+                        setColor(rightOf(sibling), BLACK);
+                        setColor(sibling, RED);
+                        rotateLeft(sibling);
+                        sibling = leftOf(parentOf(x));
+                    }
+                    setColor(sibling, colorOf(parentOf(x)));
+                    setColor(parentOf(x), BLACK);
+                    setColor(leftOf(sibling), BLACK);
+                    rotateRight(parentOf(x));
+                    x = root;
+                }
+            }
+        }
+        setColor(x, BLACK);
+    }
+
     private void rotateLeft(long p) {
         if (p != -1) {
             final long r = rightOf(p);
@@ -49,10 +49,27 @@ public interface GroupByFunction extends Function {
 
     void computeNext(MapValue mapValue, Record record);
 
+    /**
+     * @return true when partial aggregates computed by copies of this function over disjoint
+     * sets of rows can be combined via {@link #merge(MapValue, MapValue)} regardless of the
+     * order rows were visited in
+     */
+    default boolean isParallelizable() {
+        return false;
+    }
+
     default boolean isScalar() {
         return true;
     }
 
+    /**
+     * Folds partial aggregate held in srcValue into destValue. Both values are laid out by
+     * this function, srcValue is computed by a copy of this function over a different set of rows.
+     */
+    default void merge(MapValue destValue, MapValue srcValue) {
+        throw new UnsupportedOperationException();
+    }
+
     void pushValueTypes(ArrayColumnTypes columnTypes);
 
     default void setByte(MapValue mapValue, byte value) {
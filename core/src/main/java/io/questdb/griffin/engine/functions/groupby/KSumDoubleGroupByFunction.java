@@ -70,6 +70,22 @@ public class KSumDoubleGroupByFunction extends DoubleFunction implements GroupBy
         }
     }
 
+    @Override
+    public boolean isParallelizable() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        // both partial sums carry their own compensation, fold them into a single Kahan step
+        double sum = destValue.getDouble(valueIndex);
+        double y = srcValue.getDouble(valueIndex) - (destValue.getDouble(valueIndex + 1) + srcValue.getDouble(valueIndex + 1));
+        double t = sum + y;
+        destValue.putDouble(valueIndex, t);
+        destValue.putDouble(valueIndex + 1, t - sum - y);
+        destValue.addLong(valueIndex + 2, srcValue.getLong(valueIndex + 2));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.*;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionCircuitBreaker;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.table.PageAddressCache;
+import io.questdb.griffin.engine.table.PageAddressCacheRecord;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.RingQueue;
+import io.questdb.std.BytecodeAssembler;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Transient;
+import io.questdb.tasks.PageFrameGroupByTask;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keyed GROUP BY over table page frames. Frames are published on the page frame group by queue
+ * and are aggregated by {@link PageFrameGroupByJob} workers into per-worker maps, each worker uses
+ * its own copy of the group by functions. Frames that were not picked up are aggregated by the thread
+ * that opens the cursor. Partial maps are then merged into the owner map via
+ * {@link GroupByFunction#merge(MapValue, MapValue)}.
+ */
+public class AsyncGroupByRecordCursorFactory implements RecordCursorFactory, SymbolTableSource {
+    private final RecordCursorFactory base;
+    private final RecordMetadata metadata;
+    private final Map dataMap;
+    private final RecordSink mapSink;
+    // copies keys of worker maps into the owner map
+    private final RecordSink mergeSink;
+    private final ArrayColumnTypes valueTypes;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final ObjList<Function> recordFunctions;
+    private final ObjList<Map> workerMaps;
+    private final ObjList<ObjList<GroupByFunction>> workerFunctions;
+    private final ObjList<PageAddressCacheRecord> workerRecords;
+    private final ObjList<PageFrameGroupByEntry> entries = new ObjList<>();
+    private final PageAddressCache pageAddressCache = new PageAddressCache();
+    private final PageAddressCacheRecord ownerRecord = new PageAddressCacheRecord();
+    private final AsyncGroupByRecordCursor cursor;
+    private final int maxFrameRows;
+    private PageFrameCursor frameCursor;
+    private int sequence;
+
+    public AsyncGroupByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            RecordMetadata groupByMetadata,
+            ObjList<GroupByFunction> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            ObjList<ObjList<GroupByFunction>> workerFunctions
+    ) {
+        this.workerMaps = new ObjList<>(workerFunctions.size());
+        try {
+            this.base = base;
+            this.metadata = groupByMetadata;
+            this.groupByFunctions = groupByFunctions;
+            this.recordFunctions = recordFunctions;
+            this.workerFunctions = workerFunctions;
+            this.maxFrameRows = configuration.getSqlPageFrameMaxRows();
+            this.valueTypes = new ArrayColumnTypes();
+            final int valueCount = valueTypes.getColumnCount();
+            for (int i = 0; i < valueCount; i++) {
+                this.valueTypes.add(valueTypes.getColumnType(i));
+            }
+            this.mapSink = RecordSinkFactory.getInstance(asm, base.getMetadata(), listColumnFilter, false);
+
+            // map records expose values first and keys after them
+            final ArrayColumnTypes mapColumnTypes = new ArrayColumnTypes();
+            for (int i = 0; i < valueCount; i++) {
+                mapColumnTypes.add(valueTypes.getColumnType(i));
+            }
+            final ListColumnFilter mergeColumnFilter = new ListColumnFilter();
+            for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+                mapColumnTypes.add(keyTypes.getColumnType(i));
+                mergeColumnFilter.add(valueCount + i + 1);
+            }
+            this.mergeSink = RecordSinkFactory.getInstance(asm, mapColumnTypes, mergeColumnFilter, false);
+
+            this.dataMap = MapFactory.createMap(configuration, keyTypes, valueTypes);
+            final int workerCount = workerFunctions.size();
+            this.workerRecords = new ObjList<>(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                // worker maps start small, same as per-worker maps of vectorized group by,
+                // and grow to the size of their share of keys
+                workerMaps.add(
+                        new FastMap(
+                                configuration.getSqlMapPageSize(),
+                                keyTypes,
+                                valueTypes,
+                                configuration.getGroupByMapCapacity(),
+                                configuration.getSqlFastMapLoadFactor(),
+                                configuration.getSqlMapMaxResizes(),
+                                configuration.getFilesFacade(),
+                                configuration.getSqlSpillRoot(),
+                                configuration.getSqlSpillMemoryBudget()
+                        )
+                );
+                workerRecords.add(new PageAddressCacheRecord());
+            }
+            this.cursor = new AsyncGroupByRecordCursor(recordFunctions);
+        } catch (Throwable e) {
+            Misc.freeObjList(recordFunctions);
+            freeWorkerFunctions(workerFunctions);
+            Misc.freeObjList(workerMaps);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(recordFunctions);
+        freeWorkerFunctions(workerFunctions);
+        Misc.free(dataMap);
+        Misc.freeObjList(workerMaps);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        dataMap.clear();
+        for (int i = 0, n = workerMaps.size(); i < n; i++) {
+            workerMaps.getQuick(i).clear();
+        }
+        frameCursor = base.getPageFrameCursor(executionContext);
+        try {
+            // capture addresses of all frames upfront, workers never observe the cache while it grows
+            pageAddressCache.of(base.getMetadata().getColumnCount());
+            PageFrame frame;
+            while ((frame = frameCursor.next()) != null) {
+                final long frameRows = frame.getPartitionHi() - frame.getPartitionLo();
+                for (long lo = 0; lo < frameRows; lo += maxFrameRows) {
+                    pageAddressCache.add(frame, lo, Math.min(lo + maxFrameRows, frameRows));
+                }
+            }
+
+            ownerRecord.of(pageAddressCache, this);
+            for (int i = 0, n = workerRecords.size(); i < n; i++) {
+                // worker functions are never given symbol columns, see SqlCodeGenerator,
+                // symbol keys are copied to the map as int values
+                workerRecords.getQuick(i).of(pageAddressCache, null);
+            }
+
+            Function.init(recordFunctions, this, executionContext);
+            for (int i = 0, n = workerFunctions.size(); i < n; i++) {
+                Function.init(workerFunctions.getQuick(i), this, executionContext);
+            }
+
+            aggregate(executionContext);
+            merge(executionContext.getCircuitBreaker());
+
+            cursor.of(frameCursor, dataMap.getCursor());
+            frameCursor = null;
+            return cursor;
+        } catch (Throwable e) {
+            frameCursor = Misc.free(frameCursor);
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return frameCursor.getSymbolMapReader(columnIndex);
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    private static void freeWorkerFunctions(ObjList<ObjList<GroupByFunction>> workerFunctions) {
+        for (int i = 0, n = workerFunctions.size(); i < n; i++) {
+            Misc.freeObjList(workerFunctions.getQuick(i));
+        }
+    }
+
+    private void aggregate(SqlExecutionContext executionContext) {
+        final int frameCount = pageAddressCache.getFrameCount();
+        for (int i = entries.size(); i < frameCount; i++) {
+            entries.add(new PageFrameGroupByEntry(workerMaps, workerFunctions, workerRecords, dataMap, groupByFunctions, ownerRecord, mapSink));
+        }
+
+        final MessageBus bus = executionContext.getMessageBus();
+        final RingQueue<PageFrameGroupByTask> queue = bus.getPageFrameGroupByQueue();
+        final MPSequence pubSeq = bus.getPageFrameGroupByPubSeq();
+        final boolean dispatch = workerMaps.size() > 0;
+
+        for (int i = 0; i < frameCount; i++) {
+            final PageFrameGroupByEntry entry = entries.getQuick(i);
+            entry.of(sequence++, i, pageAddressCache.getFrameSize(i));
+            if (dispatch) {
+                long seq;
+                do {
+                    seq = pubSeq.next();
+                } while (seq == -2);
+
+                if (seq > -1) {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+                // when queue is full the entry is left for this thread to aggregate
+            }
+        }
+
+        AbstractParallelEntry.runAll(entries, frameCount, executionContext.getCircuitBreaker());
+    }
+
+    private void merge(SqlExecutionCircuitBreaker circuitBreaker) {
+        final int n = groupByFunctions.size();
+        for (int i = 0, k = workerMaps.size(); i < k; i++) {
+            final Map srcMap = workerMaps.getQuick(i);
+            if (srcMap.size() == 0) {
+                continue;
+            }
+            final RecordCursor srcCursor = srcMap.getCursor();
+            final MapRecord srcRecord = srcMap.getRecord();
+            while (srcCursor.hasNext()) {
+                circuitBreaker.test();
+                final MapKey key = dataMap.withKey();
+                mergeSink.copy(srcRecord, key);
+                final MapValue destValue = key.createValue();
+                final MapValue srcValue = srcRecord.getValue();
+                if (destValue.isNew()) {
+                    GroupByUtils.copyValue(valueTypes, srcValue, destValue);
+                } else {
+                    GroupByUtils.mergeFunctions(groupByFunctions, n, destValue, srcValue);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.*;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionCircuitBreaker;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.functions.columns.TimestampColumn;
+import io.questdb.griffin.engine.table.PageAddressCache;
+import io.questdb.griffin.engine.table.PageAddressCacheRecord;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.RingQueue;
+import io.questdb.std.BytecodeAssembler;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Transient;
+import io.questdb.tasks.PageFrameGroupByTask;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keyed SAMPLE BY with FILL(NONE) over table page frames. Page frames are published on the page frame
+ * group by queue in windows, each frame is aggregated into the map of its {@link PageFrameSampleByEntry}
+ * by {@link PageFrameGroupByJob} workers or by the thread that opens the cursor. Entry maps are then merged
+ * in frame order into the result map, which is keyed by the sample by keys and the time bucket.
+ * <p>
+ * Rows are assigned to buckets independently of each other, which requires fixed width sampler and time zone
+ * without daylight savings, see SqlCodeGenerator. Data that starts before sampler start does not round
+ * to bucket starts and is aggregated on the owner thread the same way serial SAMPLE BY does it.
+ */
+public class AsyncSampleByRecordCursorFactory implements RecordCursorFactory, SymbolTableSource {
+    private final CairoConfiguration configuration;
+    private final RecordCursorFactory base;
+    private final RecordMetadata metadata;
+    private final Map dataMap;
+    private final RecordSink mapSink;
+    // copies keys and bucket of entry maps into the result map
+    private final RecordSink mergeSink;
+    private final ArrayColumnTypes keyTypes;
+    private final ArrayColumnTypes valueTypes;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final ObjList<Function> recordFunctions;
+    private final ObjList<ObjList<GroupByFunction>> workerFunctions;
+    private final ObjList<PageAddressCacheRecord> workerRecords;
+    private final ObjList<PageFrameSampleByEntry> entries = new ObjList<>();
+    private final PageAddressCache pageAddressCache = new PageAddressCache();
+    private final PageAddressCacheRecord ownerRecord = new PageAddressCacheRecord();
+    private final AsyncGroupByRecordCursor cursor;
+    private final TimestampSampler timestampSampler;
+    private final int timestampIndex;
+    private final long tzOffset;
+    private final long fixedOffset;
+    private final int maxFrameRows;
+    private final int windowSize;
+    private PageFrameCursor frameCursor;
+    private int sequence;
+
+    public AsyncSampleByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            RecordMetadata groupByMetadata,
+            ObjList<GroupByFunction> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            ObjList<ObjList<GroupByFunction>> workerFunctions,
+            TimestampSampler timestampSampler,
+            int timestampIndex,
+            long tzOffset,
+            long fixedOffset
+    ) {
+        try {
+            this.configuration = configuration;
+            this.base = base;
+            this.metadata = groupByMetadata;
+            this.groupByFunctions = groupByFunctions;
+            this.recordFunctions = recordFunctions;
+            this.workerFunctions = workerFunctions;
+            this.timestampSampler = timestampSampler;
+            this.timestampIndex = timestampIndex;
+            this.tzOffset = tzOffset;
+            this.fixedOffset = fixedOffset;
+            this.maxFrameRows = configuration.getSqlPageFrameMaxRows();
+            // each worker has a frame to aggregate and another one queued up
+            this.windowSize = Math.max(1, 2 * workerFunctions.size());
+
+            final int valueCount = valueTypes.getColumnCount();
+            this.valueTypes = new ArrayColumnTypes();
+            for (int i = 0; i < valueCount; i++) {
+                this.valueTypes.add(valueTypes.getColumnType(i));
+            }
+            // bucket is the last key, record functions address keys by their
+            // offset from the first key and don't see it
+            this.keyTypes = new ArrayColumnTypes();
+            final int keyCount = keyTypes.getColumnCount();
+            for (int i = 0; i < keyCount; i++) {
+                this.keyTypes.add(keyTypes.getColumnType(i));
+            }
+            this.keyTypes.add(ColumnType.TIMESTAMP);
+
+            this.mapSink = RecordSinkFactory.getInstance(asm, base.getMetadata(), listColumnFilter, false);
+
+            // map records expose values first and keys after them
+            final ArrayColumnTypes mapColumnTypes = new ArrayColumnTypes();
+            for (int i = 0; i < valueCount; i++) {
+                mapColumnTypes.add(valueTypes.getColumnType(i));
+            }
+            final ListColumnFilter mergeColumnFilter = new ListColumnFilter();
+            for (int i = 0; i <= keyCount; i++) {
+                mapColumnTypes.add(this.keyTypes.getColumnType(i));
+                mergeColumnFilter.add(valueCount + i + 1);
+            }
+            this.mergeSink = RecordSinkFactory.getInstance(asm, mapColumnTypes, mergeColumnFilter, false);
+
+            // result map must iterate in insertion order, which is the order buckets are produced in
+            this.dataMap = new FastMap(
+                    configuration.getSqlMapPageSize(),
+                    this.keyTypes,
+                    valueTypes,
+                    configuration.getSqlMapKeyCapacity(),
+                    configuration.getSqlFastMapLoadFactor(),
+                    configuration.getSqlMapMaxResizes()
+            );
+
+            final int workerCount = workerFunctions.size();
+            this.workerRecords = new ObjList<>(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                workerRecords.add(new PageAddressCacheRecord());
+            }
+
+            // first value is the bucket timestamp, cursor serves it in place of the timestamp column
+            for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+                if (recordFunctions.getQuick(i) == null) {
+                    recordFunctions.setQuick(i, TimestampColumn.newInstance(0));
+                }
+            }
+            this.cursor = new AsyncGroupByRecordCursor(recordFunctions);
+        } catch (Throwable e) {
+            Misc.freeObjList(recordFunctions);
+            freeWorkerFunctions(workerFunctions);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(recordFunctions);
+        freeWorkerFunctions(workerFunctions);
+        Misc.free(dataMap);
+        Misc.freeObjList(entries);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        dataMap.clear();
+        frameCursor = base.getPageFrameCursor(executionContext);
+        try {
+            // capture addresses of all frames upfront, workers never observe the cache while it grows
+            pageAddressCache.of(base.getMetadata().getColumnCount());
+            PageFrame frame;
+            while ((frame = frameCursor.next()) != null) {
+                final long frameRows = frame.getPartitionHi() - frame.getPartitionLo();
+                for (long lo = 0; lo < frameRows; lo += maxFrameRows) {
+                    pageAddressCache.add(frame, lo, Math.min(lo + maxFrameRows, frameRows));
+                }
+            }
+
+            if (pageAddressCache.getFrameCount() > 0) {
+                ownerRecord.of(pageAddressCache, this);
+                for (int i = 0, n = workerRecords.size(); i < n; i++) {
+                    // worker functions are never given symbol columns, see SqlCodeGenerator,
+                    // symbol keys are copied to the map as int values
+                    workerRecords.getQuick(i).of(pageAddressCache, null);
+                }
+
+                Function.init(recordFunctions, this, executionContext);
+                for (int i = 0, n = workerFunctions.size(); i < n; i++) {
+                    Function.init(workerFunctions.getQuick(i), this, executionContext);
+                }
+
+                ownerRecord.setFrameIndex(0);
+                ownerRecord.setRowIndex(0);
+                final long timestamp = ownerRecord.getTimestamp(timestampIndex);
+                // same sampler alignment as AbstractNoRecordSampleByCursor
+                final long start;
+                if (tzOffset == 0 && fixedOffset == Long.MIN_VALUE) {
+                    start = timestamp;
+                } else {
+                    start = fixedOffset != Long.MIN_VALUE ? fixedOffset : 0L;
+                }
+                timestampSampler.setStart(start);
+
+                if (timestamp + tzOffset < start) {
+                    aggregateSerially(executionContext.getCircuitBreaker());
+                } else {
+                    aggregate(executionContext);
+                }
+            }
+
+            cursor.of(frameCursor, dataMap.getCursor());
+            frameCursor = null;
+            return cursor;
+        } catch (Throwable e) {
+            frameCursor = Misc.free(frameCursor);
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return frameCursor.getSymbolMapReader(columnIndex);
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    private static void freeWorkerFunctions(ObjList<ObjList<GroupByFunction>> workerFunctions) {
+        for (int i = 0, n = workerFunctions.size(); i < n; i++) {
+            Misc.freeObjList(workerFunctions.getQuick(i));
+        }
+    }
+
+    private void aggregate(SqlExecutionContext executionContext) {
+        final int frameCount = pageAddressCache.getFrameCount();
+        final int entryCount = Math.min(frameCount, windowSize);
+        for (int i = entries.size(); i < entryCount; i++) {
+            entries.add(
+                    new PageFrameSampleByEntry(
+                            new FastMap(
+                                    configuration.getSqlMapPageSize(),
+                                    keyTypes,
+                                    valueTypes,
+                                    configuration.getGroupByMapCapacity(),
+                                    configuration.getSqlFastMapLoadFactor(),
+                                    configuration.getSqlMapMaxResizes()
+                            ),
+                            workerFunctions,
+                            workerRecords,
+                            groupByFunctions,
+                            ownerRecord,
+                            mapSink,
+                            timestampSampler,
+                            timestampIndex
+                    )
+            );
+        }
+
+        final MessageBus bus = executionContext.getMessageBus();
+        final RingQueue<PageFrameGroupByTask> queue = bus.getPageFrameGroupByQueue();
+        final MPSequence pubSeq = bus.getPageFrameGroupByPubSeq();
+        final SqlExecutionCircuitBreaker circuitBreaker = executionContext.getCircuitBreaker();
+        final boolean dispatch = workerFunctions.size() > 0;
+
+        // entry maps hold partial buckets of their frames, windows keep the number of maps bounded
+        for (int lo = 0; lo < frameCount; lo += entryCount) {
+            final int n = Math.min(entryCount, frameCount - lo);
+            for (int i = 0; i < n; i++) {
+                final PageFrameSampleByEntry entry = entries.getQuick(i);
+                entry.of(sequence++, lo + i, pageAddressCache.getFrameSize(lo + i), tzOffset);
+                if (dispatch) {
+                    long seq;
+                    do {
+                        seq = pubSeq.next();
+                    } while (seq == -2);
+
+                    if (seq > -1) {
+                        queue.get(seq).entry = entry;
+                        pubSeq.done(seq);
+                    }
+                    // when queue is full the entry is left for this thread to aggregate
+                }
+            }
+
+            AbstractParallelEntry.runAll(entries, n, circuitBreaker);
+            for (int j = 0; j < n; j++) {
+                merge(entries.getQuick(j).getMap(), circuitBreaker);
+            }
+        }
+    }
+
+    private void aggregateSerially(SqlExecutionCircuitBreaker circuitBreaker) {
+        final int n = groupByFunctions.size();
+        long bucket = Long.MIN_VALUE;
+        long next = Long.MIN_VALUE;
+        for (int i = 0, frameCount = pageAddressCache.getFrameCount(); i < frameCount; i++) {
+            ownerRecord.setFrameIndex(i);
+            for (long r = 0, frameRowCount = pageAddressCache.getFrameSize(i); r < frameRowCount; r++) {
+                ownerRecord.setRowIndex(r);
+                final long timestamp = ownerRecord.getTimestamp(timestampIndex) + tzOffset;
+                if (timestamp >= next) {
+                    circuitBreaker.test();
+                    bucket = timestampSampler.round(timestamp);
+                    next = timestampSampler.nextTimestamp(bucket);
+                }
+                final MapKey key = dataMap.withKey();
+                mapSink.copy(ownerRecord, key);
+                key.putTimestamp(bucket);
+                final MapValue value = key.createValue();
+                if (value.isNew()) {
+                    value.putTimestamp(0, bucket - tzOffset);
+                    GroupByUtils.updateNew(groupByFunctions, n, value, ownerRecord);
+                } else {
+                    GroupByUtils.updateExisting(groupByFunctions, n, value, ownerRecord);
+                }
+            }
+        }
+    }
+
+    private void merge(Map srcMap, SqlExecutionCircuitBreaker circuitBreaker) {
+        final int n = groupByFunctions.size();
+        final RecordCursor srcCursor = srcMap.getCursor();
+        final MapRecord srcRecord = srcMap.getRecord();
+        while (srcCursor.hasNext()) {
+            circuitBreaker.test();
+            final MapKey key = dataMap.withKey();
+            mergeSink.copy(srcRecord, key);
+            final MapValue destValue = key.createValue();
+            final MapValue srcValue = srcRecord.getValue();
+            if (destValue.isNew()) {
+                GroupByUtils.copyValue(valueTypes, srcValue, destValue);
+            } else {
+                GroupByUtils.mergeFunctions(groupByFunctions, n, destValue, srcValue);
+            }
+        }
+    }
+}
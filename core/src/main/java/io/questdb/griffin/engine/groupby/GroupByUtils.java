@@ -350,6 +350,49 @@ public class GroupByUtils {
         }
     }
 
+    static void copyValue(ColumnTypes valueTypes, MapValue srcValue, MapValue destValue) {
+        for (int i = 0, n = valueTypes.getColumnCount(); i < n; i++) {
+            switch (ColumnType.tagOf(valueTypes.getColumnType(i))) {
+                case ColumnType.BOOLEAN:
+                    destValue.putBool(i, srcValue.getBool(i));
+                    break;
+                case ColumnType.BYTE:
+                    destValue.putByte(i, srcValue.getByte(i));
+                    break;
+                case ColumnType.SHORT:
+                    destValue.putShort(i, srcValue.getShort(i));
+                    break;
+                case ColumnType.CHAR:
+                    destValue.putChar(i, srcValue.getChar(i));
+                    break;
+                case ColumnType.INT:
+                    destValue.putInt(i, srcValue.getInt(i));
+                    break;
+                case ColumnType.FLOAT:
+                    destValue.putFloat(i, srcValue.getFloat(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    destValue.putDouble(i, srcValue.getDouble(i));
+                    break;
+                case ColumnType.DATE:
+                    destValue.putDate(i, srcValue.getDate(i));
+                    break;
+                case ColumnType.TIMESTAMP:
+                    destValue.putTimestamp(i, srcValue.getTimestamp(i));
+                    break;
+                default:
+                    destValue.putLong(i, srcValue.getLong(i));
+                    break;
+            }
+        }
+    }
+
+    static void mergeFunctions(ObjList<GroupByFunction> groupByFunctions, int n, MapValue destValue, MapValue srcValue) {
+        for (int i = 0; i < n; i++) {
+            groupByFunctions.getQuick(i).merge(destValue, srcValue);
+        }
+    }
+
     static void updateFunctions(ObjList<GroupByFunction> groupByFunctions, int n, MapValue value, Record record) {
         if (value.isNew()) {
             updateNew(groupByFunctions, n, value, record);
@@ -32,6 +32,11 @@ class MicroTimestampSampler implements TimestampSampler {
         this.bucket = bucket;
     }
 
+    @Override
+    public boolean isFixedWidth() {
+        return true;
+    }
+
     @Override
     public long nextTimestamp(long timestamp) {
         return timestamp + bucket;
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.table.PageAddressCacheRecord;
+import io.questdb.std.ObjList;
+
+/**
+ * Aggregates single page frame into the map of the thread that executes the entry. Entry can be
+ * executed either by a worker, via {@link PageFrameGroupByJob}, or by the thread that owns the
+ * cursor.
+ */
+public class PageFrameGroupByEntry extends AbstractParallelEntry {
+    private final ObjList<Map> workerMaps;
+    private final ObjList<ObjList<GroupByFunction>> workerFunctions;
+    private final ObjList<PageAddressCacheRecord> workerRecords;
+    private final Map ownerMap;
+    private final ObjList<GroupByFunction> ownerFunctions;
+    private final PageAddressCacheRecord ownerRecord;
+    protected final RecordSink mapSink;
+    private int frameIndex;
+    private long frameRowCount;
+
+    public PageFrameGroupByEntry(
+            ObjList<Map> workerMaps,
+            ObjList<ObjList<GroupByFunction>> workerFunctions,
+            ObjList<PageAddressCacheRecord> workerRecords,
+            Map ownerMap,
+            ObjList<GroupByFunction> ownerFunctions,
+            PageAddressCacheRecord ownerRecord,
+            RecordSink mapSink
+    ) {
+        this.workerMaps = workerMaps;
+        this.workerFunctions = workerFunctions;
+        this.workerRecords = workerRecords;
+        this.ownerMap = ownerMap;
+        this.ownerFunctions = ownerFunctions;
+        this.ownerRecord = ownerRecord;
+        this.mapSink = mapSink;
+    }
+
+    protected void aggregateRecord(Map map, ObjList<GroupByFunction> functions, int n, Record record) {
+        final MapKey key = map.withKey();
+        mapSink.copy(record, key);
+        GroupByUtils.updateFunctions(functions, n, key.createValue(), record);
+    }
+
+    @Override
+    protected void execute(int workerId) {
+        if (workerId == OWNER_WORKER_ID) {
+            aggregate(getWorkerMap(workerId), ownerFunctions, ownerRecord);
+        } else {
+            aggregate(getWorkerMap(workerId), workerFunctions.getQuick(workerId), workerRecords.getQuick(workerId));
+        }
+    }
+
+    protected Map getWorkerMap(int workerId) {
+        return workerId == OWNER_WORKER_ID ? ownerMap : workerMaps.getQuick(workerId);
+    }
+
+    @Override
+    protected boolean isWorkerSupported(int workerId) {
+        return workerId < workerFunctions.size();
+    }
+
+    @Override
+    protected CairoException putFailure(CairoException e) {
+        return e.put("page frame group by failed [frameIndex=").put(frameIndex);
+    }
+
+    void of(int sequence, int frameIndex, long frameRowCount) {
+        this.frameIndex = frameIndex;
+        this.frameRowCount = frameRowCount;
+        of(sequence);
+    }
+
+    private void aggregate(Map map, ObjList<GroupByFunction> functions, PageAddressCacheRecord record) {
+        final int n = functions.size();
+        record.setFrameIndex(frameIndex);
+        for (long r = 0; r < frameRowCount; r++) {
+            record.setRowIndex(r);
+            aggregateRecord(map, functions, n, record);
+        }
+    }
+}
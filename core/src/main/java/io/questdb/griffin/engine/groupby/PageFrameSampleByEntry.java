@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.table.PageAddressCacheRecord;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+
+import java.io.Closeable;
+
+/**
+ * Aggregates single page frame of SAMPLE BY into the map owned by the entry. Map is keyed by
+ * the sample by keys followed by the start of the time bucket, first map value is the bucket
+ * timestamp in UTC. Frames are merged by the cursor owner in frame order, which keeps the
+ * buckets and the keys within each bucket in the order serial SAMPLE BY would produce them.
+ */
+public class PageFrameSampleByEntry extends PageFrameGroupByEntry implements Closeable {
+    private final Map map;
+    private final TimestampSampler timestampSampler;
+    private final int timestampIndex;
+    private long tzOffset;
+
+    public PageFrameSampleByEntry(
+            Map map,
+            ObjList<ObjList<GroupByFunction>> workerFunctions,
+            ObjList<PageAddressCacheRecord> workerRecords,
+            ObjList<GroupByFunction> ownerFunctions,
+            PageAddressCacheRecord ownerRecord,
+            RecordSink mapSink,
+            TimestampSampler timestampSampler,
+            int timestampIndex
+    ) {
+        super(null, workerFunctions, workerRecords, null, ownerFunctions, ownerRecord, mapSink);
+        this.map = map;
+        this.timestampSampler = timestampSampler;
+        this.timestampIndex = timestampIndex;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(map);
+    }
+
+    public Map getMap() {
+        return map;
+    }
+
+    @Override
+    protected void aggregateRecord(Map map, ObjList<GroupByFunction> functions, int n, Record record) {
+        // sampler is read-only once its start is set, workers share it
+        final long bucket = timestampSampler.round(record.getTimestamp(timestampIndex) + tzOffset);
+        final MapKey key = map.withKey();
+        mapSink.copy(record, key);
+        key.putTimestamp(bucket);
+        final MapValue value = key.createValue();
+        if (value.isNew()) {
+            value.putTimestamp(0, bucket - tzOffset);
+            GroupByUtils.updateNew(functions, n, value, record);
+        } else {
+            GroupByUtils.updateExisting(functions, n, value, record);
+        }
+    }
+
+    @Override
+    protected Map getWorkerMap(int workerId) {
+        return map;
+    }
+
+    void of(int sequence, int frameIndex, long frameRowCount, long tzOffset) {
+        this.map.clear();
+        this.tzOffset = tzOffset;
+        of(sequence, frameIndex, frameRowCount);
+    }
+}
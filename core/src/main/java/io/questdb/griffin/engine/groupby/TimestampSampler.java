@@ -30,6 +30,15 @@ public interface TimestampSampler {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * @return true when {@link #round(long)} maps every timestamp at or after sampler start to the
+     * beginning of the bucket the timestamp falls into, so that rows can be assigned to buckets
+     * independently of one another
+     */
+    default boolean isFixedWidth() {
+        return false;
+    }
+
     long nextTimestamp(long timestamp);
 
     long previousTimestamp(long timestamp);
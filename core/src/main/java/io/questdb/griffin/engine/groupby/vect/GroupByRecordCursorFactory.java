@@ -26,6 +26,7 @@ package io.questdb.griffin.engine.groupby.vect;
 
 import io.questdb.MessageBus;
 import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.SymbolMapReader;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.ColumnTypes;
 import io.questdb.cairo.sql.*;
@@ -55,7 +56,15 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
     private final long[] pRosti;
     private final int keyColumnIndex;
+    // second key column when keys are pair of symbols, -1 otherwise
+    private final int keyColumnIndex2;
+    private final SymbolPairKey symbolPairKey;
+    private final int maxFrameRows;
+    private final int workerCount;
     private final RostiRecordCursor cursor;
+    private int queuedCount;
+    private int ownCount;
+    private int total;
 
     public GroupByRecordCursorFactory(
             CairoConfiguration configuration,
@@ -64,15 +73,15 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
             @Transient ColumnTypes columnTypes,
             int workerCount,
             @Transient ObjList<VectorAggregateFunction> vafList,
-            int keyColumnIndexInBase,
-            int keyColumnIndexInThisCursor,
+            @Transient IntList keyColumnIndexesInBase,
+            @Transient IntList keyColumnIndexesInThisCursor,
             @Transient IntList symbolTableSkewIndex
     ) {
 
         this.entryPool = new ObjectPool<>(VectorAggregateEntry::new, configuration.getGroupByPoolCapacity());
         this.activeEntries = new ObjList<>(configuration.getGroupByPoolCapacity());
         // columnTypes and functions must align in the following way:
-        // columnTypes[0] is the type of key, for now single key is supported
+        // columnTypes[0] is the type of key, pair of symbol keys is stored as single INT key
         // functions.size = columnTypes.size - 1, functions do not have instance for key, only for values
         // functions[0].type == columnTypes[1]
         // ...
@@ -115,38 +124,43 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         final long pRosti = this.pRosti[0];
         final long columnOffsets = Rosti.getValueOffsets(pRosti);
 
-        // skew logic assumes single key, for multiple keys skew would be different
-
+        // keys are in between aggregates, all key columns read the key slot,
+        // aggregates are read from their value offsets
+        final int keyCount = keyColumnIndexesInThisCursor.size();
         final IntList columnSkewIndex = new IntList();
-        // key is in the middle, shift aggregates before the key one position left
-        addOffsets(columnSkewIndex, vafList, 0, keyColumnIndexInThisCursor, columnOffsets);
-
-        // this is offset of the key column
-        columnSkewIndex.add(0);
-
-        // add remaining aggregate columns as is
-        addOffsets(columnSkewIndex, vafList, keyColumnIndexInThisCursor, vafCount, columnOffsets);
+        for (int i = 0, vafIndex = 0, n = vafCount + keyCount; i < n; i++) {
+            if (keyColumnIndexesInThisCursor.indexOf(i, 0, keyCount) > -1) {
+                columnSkewIndex.add(0);
+            } else {
+                columnSkewIndex.add(Unsafe.getUnsafe().getInt(columnOffsets + vafList.getQuick(vafIndex++).getValueOffset() * 4L));
+            }
+        }
 
         this.vafList.addAll(vafList);
-        this.keyColumnIndex = keyColumnIndexInBase;
+        this.keyColumnIndex = keyColumnIndexesInBase.getQuick(0);
+        this.maxFrameRows = configuration.getSqlPageFrameMaxRows();
+        this.workerCount = workerCount;
+
+        final IntList keyParts;
+        if (keyCount > 1) {
+            this.keyColumnIndex2 = keyColumnIndexesInBase.getQuick(1);
+            this.symbolPairKey = new SymbolPairKey();
+            keyParts = new IntList(vafCount + keyCount);
+            keyParts.setAll(vafCount + keyCount, -1);
+            keyParts.setQuick(keyColumnIndexesInThisCursor.getQuick(0), 0);
+            keyParts.setQuick(keyColumnIndexesInThisCursor.getQuick(1), 1);
+        } else {
+            this.keyColumnIndex2 = -1;
+            this.symbolPairKey = null;
+            keyParts = null;
+        }
+
         if (symbolTableSkewIndex.size() > 0) {
             final IntList symbolSkew = new IntList(symbolTableSkewIndex.size());
             symbolSkew.addAll(symbolTableSkewIndex);
-            this.cursor = new RostiRecordCursor(pRosti, columnSkewIndex, symbolSkew);
+            this.cursor = new RostiRecordCursor(pRosti, columnSkewIndex, symbolSkew, keyParts, symbolPairKey);
         } else {
-            this.cursor = new RostiRecordCursor(pRosti, columnSkewIndex, null);
-        }
-    }
-
-    private static void addOffsets(
-            IntList columnSkewIndex,
-            @Transient ObjList<VectorAggregateFunction> vafList,
-            int start,
-            int end,
-            long columnOffsets
-    ) {
-        for (int i = start; i < end; i++) {
-            columnSkewIndex.add(Unsafe.getUnsafe().getInt(columnOffsets + vafList.getQuick(i).getValueOffset() * 4L));
+            this.cursor = new RostiRecordCursor(pRosti, columnSkewIndex, null, keyParts, symbolPairKey);
         }
     }
 
@@ -156,6 +170,7 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         for (int i = 0, n = pRosti.length; i < n; i++) {
             Rosti.free(pRosti[i]);
         }
+        Misc.free(symbolPairKey);
     }
 
     @Override
@@ -181,10 +196,10 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
         this.entryPool.clear();
         this.activeEntries.clear();
-        int queuedCount = 0;
-        int ownCount = 0;
+        queuedCount = 0;
+        ownCount = 0;
+        total = 0;
         int reclaimed = 0;
-        int total = 0;
 
         doneLatch.reset();
 
@@ -197,50 +212,32 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
             workerId = 0;
         }
 
-        PageFrame frame;
-        while ((frame = cursor.next()) != null) {
-            final long keyAddress = frame.getPageAddress(keyColumnIndex);
-            for (int i = 0; i < vafCount; i++) {
-                final VectorAggregateFunction vaf = vafList.getQuick(i);
-                // when column index = -1 we assume that vector function does not have value
-                // argument, and it can only derive count via memory size
-                final int columnIndex = vaf.getColumnIndex();
-                // for functions like `count()`, that do not have arguments we are required to provide
-                // count of rows in table in a form of "pageSize >> shr". Since `vaf` doesn't provide column
-                // this code used column 0. Assumption here that column 0 is fixed size.
-                // This assumption only holds because our aggressive algorithm for "top down columns", e.g.
-                // the algorithm that forces page frame to provide only columns required by the select. At the time
-                // of writing this code there is no way to return variable length column out of non-keyed aggregation
-                // query. This might change if we introduce something like `first(string)`. When this happens we will
-                // need to rethink our way of computing size for the count. This would be either type checking column
-                // 0 and working out size differently or finding any fixed-size column and using that.
-                final long valueAddress = columnIndex > -1 ? frame.getPageAddress(columnIndex) : 0;
-                final int pageColIndex = columnIndex > -1 ? columnIndex : 0;
-                final int columnSizeShr = frame.getColumnShiftBits(pageColIndex);
-                final long valueAddressSize = frame.getPageSize(pageColIndex);
-
-                long seq = pubSeq.next();
-                if (seq < 0) {
-                    if (keyAddress == 0) {
-                        vaf.aggregate(valueAddress, valueAddressSize, columnSizeShr, workerId);
-                    } else {
-                        vaf.aggregate(pRosti[workerId], keyAddress, valueAddress, valueAddressSize, columnSizeShr, workerId);
-                    }
-                    ownCount++;
-                } else {
-                    if (keyAddress != 0 || valueAddress != 0) {
-                        final VectorAggregateEntry entry = entryPool.next();
-                        if (keyAddress == 0) {
-                            entry.of(queuedCount++, vaf, null, 0, valueAddress, valueAddressSize, columnSizeShr, doneLatch);
-                        } else {
-                            entry.of(queuedCount++, vaf, pRosti, keyAddress, valueAddress, valueAddressSize, columnSizeShr, doneLatch);
-                        }
-                        activeEntries.add(entry);
-                        queue.get(seq).entry = entry;
-                        pubSeq.done(seq);
-                    }
+        if (symbolPairKey != null) {
+            reclaimed = aggregateSymbolPairs(cursor, queue, pubSeq, workerId);
+        } else {
+            PageFrame frame;
+            while ((frame = cursor.next()) != null) {
+                final long keyAddress = frame.getPageAddress(keyColumnIndex);
+                for (int i = 0; i < vafCount; i++) {
+                    final VectorAggregateFunction vaf = vafList.getQuick(i);
+                    // when column index = -1 we assume that vector function does not have value
+                    // argument, and it can only derive count via memory size
+                    final int columnIndex = vaf.getColumnIndex();
+                    // for functions like `count()`, that do not have arguments we are required to provide
+                    // count of rows in table in a form of "pageSize >> shr". Since `vaf` doesn't provide column
+                    // this code used column 0. Assumption here that column 0 is fixed size.
+                    // This assumption only holds because our aggressive algorithm for "top down columns", e.g.
+                    // the algorithm that forces page frame to provide only columns required by the select. At the time
+                    // of writing this code there is no way to return variable length column out of non-keyed aggregation
+                    // query. This might change if we introduce something like `first(string)`. When this happens we will
+                    // need to rethink our way of computing size for the count. This would be either type checking column
+                    // 0 and working out size differently or finding any fixed-size column and using that.
+                    final long valueAddress = columnIndex > -1 ? frame.getPageAddress(columnIndex) : 0;
+                    final int pageColIndex = columnIndex > -1 ? columnIndex : 0;
+                    final int columnSizeShr = frame.getColumnShiftBits(pageColIndex);
+                    final long valueAddressSize = frame.getPageSize(pageColIndex);
+                    dispatch(queue, pubSeq, workerId, vaf, keyAddress, valueAddress, valueAddressSize, columnSizeShr);
                 }
-                total++;
             }
         }
 
@@ -250,7 +247,9 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         // To deal with that we need to have our own checklist.
 
         // start at the back to reduce chance of clashing
-        reclaimed = GroupByNotKeyedVectorRecordCursorFactory.getRunWhatsLeft(queuedCount, reclaimed, workerId, activeEntries, doneLatch, LOG);
+        if (symbolPairKey == null) {
+            reclaimed = GroupByNotKeyedVectorRecordCursorFactory.getRunWhatsLeft(queuedCount, reclaimed, workerId, activeEntries, doneLatch, LOG);
+        }
         long pRosti0 = pRosti[0];
 
         if (pRosti.length > 1) {
@@ -274,6 +273,89 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         return this.cursor.of(cursor);
     }
 
+    private int aggregateSymbolPairs(
+            PageFrameCursor cursor,
+            RingQueue<VectorAggregateTask> queue,
+            Sequence pubSeq,
+            int workerId
+    ) {
+        // pair keys are computed on this thread, chunk by chunk, while published chunks are
+        // aggregated by the pool. Key buffer holds a few chunks, when it fills up we wait
+        // for the published chunks to be done and start over
+        final SymbolMapReader symbolTable1 = cursor.getSymbolMapReader(keyColumnIndex);
+        final SymbolMapReader symbolTable2 = cursor.getSymbolMapReader(keyColumnIndex2);
+        symbolPairKey.of(symbolTable1.getSymbolCount(), symbolTable2.getSymbolCount(), (long) maxFrameRows * Math.max(2, workerCount));
+        int reclaimed = 0;
+        try {
+            final int vafCount = vafList.size();
+            PageFrame frame;
+            while ((frame = cursor.next()) != null) {
+                final long frameRowCount = frame.getPartitionHi() - frame.getPartitionLo();
+                final long keyAddress1 = frame.getPageAddress(keyColumnIndex);
+                final long keyAddress2 = frame.getPageAddress(keyColumnIndex2);
+                for (long lo = 0; lo < frameRowCount; lo += maxFrameRows) {
+                    final long rowCount = Math.min(maxFrameRows, frameRowCount - lo);
+                    if (symbolPairKey.remaining() < rowCount) {
+                        reclaimed = GroupByNotKeyedVectorRecordCursorFactory.getRunWhatsLeft(queuedCount, reclaimed, workerId, activeEntries, doneLatch, LOG);
+                        symbolPairKey.reset();
+                    }
+                    final long keyAddress = symbolPairKey.encode(keyAddress1, keyAddress2, lo, rowCount);
+                    for (int i = 0; i < vafCount; i++) {
+                        final VectorAggregateFunction vaf = vafList.getQuick(i);
+                        final int columnIndex = vaf.getColumnIndex();
+                        final int pageColIndex = columnIndex > -1 ? columnIndex : 0;
+                        final int columnSizeShr = frame.getColumnShiftBits(pageColIndex);
+                        final long pageAddress = columnIndex > -1 ? frame.getPageAddress(columnIndex) : 0;
+                        final long valueAddress = pageAddress != 0 ? pageAddress + (lo << columnSizeShr) : 0;
+                        dispatch(queue, pubSeq, workerId, vaf, keyAddress, valueAddress, rowCount << columnSizeShr, columnSizeShr);
+                    }
+                }
+            }
+            return GroupByNotKeyedVectorRecordCursorFactory.getRunWhatsLeft(queuedCount, reclaimed, workerId, activeEntries, doneLatch, LOG);
+        } catch (Throwable e) {
+            // published chunks reference key buffer, wait for them before buffer is released
+            GroupByNotKeyedVectorRecordCursorFactory.getRunWhatsLeft(queuedCount, reclaimed, workerId, activeEntries, doneLatch, LOG);
+            throw e;
+        } finally {
+            // key buffer is not needed once keys are in the maps, cursor decodes keys via symbolPairKey
+            symbolPairKey.close();
+        }
+    }
+
+    private void dispatch(
+            RingQueue<VectorAggregateTask> queue,
+            Sequence pubSeq,
+            int workerId,
+            VectorAggregateFunction vaf,
+            long keyAddress,
+            long valueAddress,
+            long valueAddressSize,
+            int columnSizeShr
+    ) {
+        long seq = pubSeq.next();
+        if (seq < 0) {
+            if (keyAddress == 0) {
+                vaf.aggregate(valueAddress, valueAddressSize, columnSizeShr, workerId);
+            } else {
+                vaf.aggregate(pRosti[workerId], keyAddress, valueAddress, valueAddressSize, columnSizeShr, workerId);
+            }
+            ownCount++;
+        } else {
+            if (keyAddress != 0 || valueAddress != 0) {
+                final VectorAggregateEntry entry = entryPool.next();
+                if (keyAddress == 0) {
+                    entry.of(queuedCount++, vaf, null, 0, valueAddress, valueAddressSize, columnSizeShr, doneLatch);
+                } else {
+                    entry.of(queuedCount++, vaf, pRosti, keyAddress, valueAddress, valueAddressSize, columnSizeShr, doneLatch);
+                }
+                activeEntries.add(entry);
+                queue.get(seq).entry = entry;
+                pubSeq.done(seq);
+            }
+        }
+        total++;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -289,6 +371,9 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         private final long pRosti;
         private final IntList symbolTableSkewIndex;
         private final IntList columnSkewIndex;
+        // for pair of symbol keys, which part of the pair each column is, -1 for aggregates
+        private final IntList keyParts;
+        private final SymbolPairKey symbolPairKey;
         private RostiRecord recordB;
         private long ctrlStart;
         private long ctrl;
@@ -298,11 +383,19 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         private long count;
         private PageFrameCursor parent;
 
-        public RostiRecordCursor(long pRosti, IntList columnSkewIndex, IntList symbolTableSkewIndex) {
+        public RostiRecordCursor(
+                long pRosti,
+                IntList columnSkewIndex,
+                IntList symbolTableSkewIndex,
+                IntList keyParts,
+                SymbolPairKey symbolPairKey
+        ) {
             this.pRosti = pRosti;
             this.record = new RostiRecord();
             this.symbolTableSkewIndex = symbolTableSkewIndex;
             this.columnSkewIndex = columnSkewIndex;
+            this.keyParts = keyParts;
+            this.symbolPairKey = symbolPairKey;
         }
 
         public RostiRecordCursor of(PageFrameCursor parent) {
@@ -423,7 +516,14 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
             @Override
             public int getInt(int col) {
-                return Unsafe.getUnsafe().getInt(getValueOffset(col));
+                final int value = Unsafe.getUnsafe().getInt(getValueOffset(col));
+                if (keyParts != null) {
+                    final int part = keyParts.getQuick(col);
+                    if (part > -1) {
+                        return symbolPairKey.decode(value, part);
+                    }
+                }
+                return value;
             }
 
             @Override
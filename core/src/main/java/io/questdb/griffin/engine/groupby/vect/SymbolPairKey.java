@@ -0,0 +1,128 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.groupby.vect;
+
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Combines keys of two symbol columns into single INT key, which Rosti kernels aggregate
+ * the same way they aggregate single symbol column. Symbol ids are shifted by one to make
+ * room for NULL, and packed as <code>id1 * (symbolCount2 + 1) + id2</code>. When symbol
+ * counts are too large for the product to fit INT, pairs are numbered in the order of their
+ * first appearance instead.
+ * <p>
+ * Keys are written into native buffer, which is allocated for the duration of aggregation only.
+ */
+class SymbolPairKey implements Closeable {
+    private final LongIntHashMap dictionary = new LongIntHashMap();
+    private final LongList dictionaryKeys = new LongList();
+    private long pKeys;
+    private long capacity;
+    private long size;
+    private int stride;
+    private boolean packed;
+
+    @Override
+    public void close() {
+        if (pKeys != 0) {
+            Unsafe.free(pKeys, capacity * Integer.BYTES, MemoryTag.NATIVE_DEFAULT);
+            pKeys = 0;
+            capacity = 0;
+        }
+        size = 0;
+    }
+
+    int decode(int key, int part) {
+        final int e;
+        if (packed) {
+            e = part == 0 ? key / stride : key % stride;
+        } else {
+            final long pair = dictionaryKeys.getQuick(key);
+            e = part == 0 ? (int) (pair >>> 32) : (int) pair;
+        }
+        return e == 0 ? SymbolTable.VALUE_IS_NULL : e - 1;
+    }
+
+    /**
+     * Encodes rows [rowLo, rowLo + rowCount) of the two symbol columns. Column address of 0
+     * stands for column top, rows of such column are NULL.
+     *
+     * @return address of the encoded keys
+     */
+    long encode(long pSymbols1, long pSymbols2, long rowLo, long rowCount) {
+        assert size + rowCount <= capacity;
+        final long pDest = pKeys + size * Integer.BYTES;
+        if (packed) {
+            for (long r = 0; r < rowCount; r++) {
+                final int e1 = pSymbols1 != 0 ? encodeId(Unsafe.getUnsafe().getInt(pSymbols1 + ((rowLo + r) << 2))) : 0;
+                final int e2 = pSymbols2 != 0 ? encodeId(Unsafe.getUnsafe().getInt(pSymbols2 + ((rowLo + r) << 2))) : 0;
+                Unsafe.getUnsafe().putInt(pDest + (r << 2), e1 * stride + e2);
+            }
+        } else {
+            for (long r = 0; r < rowCount; r++) {
+                final int e1 = pSymbols1 != 0 ? encodeId(Unsafe.getUnsafe().getInt(pSymbols1 + ((rowLo + r) << 2))) : 0;
+                final int e2 = pSymbols2 != 0 ? encodeId(Unsafe.getUnsafe().getInt(pSymbols2 + ((rowLo + r) << 2))) : 0;
+                final long pair = ((long) e1 << 32) | e2;
+                final int index = dictionary.keyIndex(pair);
+                final int key;
+                if (index < 0) {
+                    key = dictionary.valueAt(index);
+                } else {
+                    key = dictionaryKeys.size();
+                    dictionary.putAt(index, pair, key);
+                    dictionaryKeys.add(pair);
+                }
+                Unsafe.getUnsafe().putInt(pDest + (r << 2), key);
+            }
+        }
+        size += rowCount;
+        return pDest;
+    }
+
+    void of(int symbolCount1, int symbolCount2, long capacity) {
+        this.stride = symbolCount2 + 1;
+        this.packed = (long) (symbolCount1 + 1) * stride <= Integer.MAX_VALUE;
+        this.dictionary.clear();
+        this.dictionaryKeys.clear();
+        close();
+        this.pKeys = Unsafe.malloc(capacity * Integer.BYTES, MemoryTag.NATIVE_DEFAULT);
+        this.capacity = capacity;
+    }
+
+    long remaining() {
+        return capacity - size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    private static int encodeId(int id) {
+        return id == SymbolTable.VALUE_IS_NULL ? 0 : id + 1;
+    }
+}
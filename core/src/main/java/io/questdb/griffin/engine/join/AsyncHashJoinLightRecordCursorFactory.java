@@ -0,0 +1,275 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.AbstractRecordCursorFactory;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.FastMap;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.griffin.engine.table.PageAddressCache;
+import io.questdb.griffin.engine.table.PageAddressCacheRecord;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.RingQueue;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Transient;
+import io.questdb.tasks.HashJoinBuildTask;
+
+/**
+ * Inner hash join that builds its hash table on the shared worker pool. Slave rows are split into
+ * partitions by key hash, every partition has its own map and row id chain and is built by
+ * {@link HashJoinBuildEntry}. Partitions that were not picked up by workers are built by the thread
+ * that opens the cursor. Master rows are then streamed on the calling thread, each master key
+ * is looked up in the partition its hash belongs to, so rows come out in the same order
+ * as they do from {@link HashJoinLightRecordCursorFactory}.
+ */
+public class AsyncHashJoinLightRecordCursorFactory extends AbstractRecordCursorFactory implements SymbolTableSource {
+    private final RecordCursorFactory masterFactory;
+    private final RecordCursorFactory slaveFactory;
+    private final RecordSink masterKeySink;
+    private final ObjList<FastMap> partitionMaps;
+    private final ObjList<LongChain> partitionChains;
+    private final ObjList<HashJoinBuildEntry> entries;
+    private final PageAddressCache pageAddressCache = new PageAddressCache();
+    private final PageAddressCacheRecord slaveRecord = new PageAddressCacheRecord();
+    private final HashJoinRecordCursor cursor;
+    private final int maxFrameRows;
+    private PageFrameCursor frameCursor;
+    private int sequence;
+
+    public AsyncHashJoinLightRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordMetadata metadata,
+            RecordCursorFactory masterFactory,
+            RecordCursorFactory slaveFactory,
+            @Transient ColumnTypes joinColumnTypes,
+            @Transient ColumnTypes valueTypes, // this expected to be just LONG, we store chain references in map
+            RecordSink masterKeySink,
+            RecordSink slaveKeySink,
+            int columnSplit,
+            int partitionCount
+    ) {
+        super(metadata);
+        this.partitionMaps = new ObjList<>(partitionCount);
+        this.partitionChains = new ObjList<>(partitionCount);
+        this.entries = new ObjList<>(partitionCount);
+        try {
+            this.masterFactory = masterFactory;
+            this.slaveFactory = slaveFactory;
+            this.masterKeySink = masterKeySink;
+            this.maxFrameRows = configuration.getSqlPageFrameMaxRows();
+            // each partition receives its share of keys, there is no point in
+            // giving every partition map capacity of the whole join
+            final int keyCapacity = Math.max(configuration.getSqlMapKeyCapacity() / partitionCount, 16);
+            for (int i = 0; i < partitionCount; i++) {
+                final FastMap map = new FastMap(
+                        configuration.getSqlMapPageSize(),
+                        joinColumnTypes,
+                        valueTypes,
+                        keyCapacity,
+                        configuration.getSqlFastMapLoadFactor(),
+                        configuration.getSqlMapMaxResizes()
+                );
+                partitionMaps.add(map);
+                final LongChain chain = new LongChain(
+                        configuration.getSqlHashJoinLightValuePageSize(),
+                        configuration.getSqlHashJoinLightValueMaxPages()
+                );
+                partitionChains.add(chain);
+                entries.add(new HashJoinBuildEntry(map, chain, slaveKeySink, slaveFactory.getMetadata(), entries, i, partitionCount));
+            }
+            this.cursor = new HashJoinRecordCursor(columnSplit);
+        } catch (Throwable e) {
+            Misc.freeObjList(partitionMaps);
+            Misc.freeObjList(partitionChains);
+            Misc.freeObjList(entries);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        frameCursor = Misc.free(frameCursor);
+        Misc.freeObjList(partitionMaps);
+        Misc.freeObjList(partitionChains);
+        Misc.freeObjList(entries);
+        ((JoinRecordMetadata) getMetadata()).close();
+        masterFactory.close();
+        slaveFactory.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        frameCursor = Misc.free(frameCursor);
+        frameCursor = slaveFactory.getPageFrameCursor(executionContext);
+        try {
+            // capture addresses of all frames upfront, workers never observe the cache while it grows
+            pageAddressCache.of(slaveFactory.getMetadata().getColumnCount());
+            PageFrame frame;
+            while ((frame = frameCursor.next()) != null) {
+                final long frameRows = frame.getPartitionHi() - frame.getPartitionLo();
+                for (long lo = 0; lo < frameRows; lo += maxFrameRows) {
+                    pageAddressCache.add(frame, lo, Math.min(lo + maxFrameRows, frameRows));
+                }
+            }
+            slaveRecord.of(pageAddressCache, this);
+            build(executionContext);
+            cursor.of(masterFactory.getCursor(executionContext));
+            return cursor;
+        } catch (Throwable e) {
+            frameCursor = Misc.free(frameCursor);
+            throw e;
+        }
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return frameCursor.getSymbolMapReader(columnIndex);
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    private void build(SqlExecutionContext executionContext) {
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            partitionMaps.getQuick(i).clear();
+            partitionChains.getQuick(i).clear();
+        }
+        dispatch(HashJoinBuildEntry.PHASE_SCATTER, executionContext);
+        dispatch(HashJoinBuildEntry.PHASE_BUILD, executionContext);
+    }
+
+    private void dispatch(int phase, SqlExecutionContext executionContext) {
+        final MessageBus bus = executionContext.getMessageBus();
+        final RingQueue<HashJoinBuildTask> queue = bus.getHashJoinBuildQueue();
+        final MPSequence pubSeq = bus.getHashJoinBuildPubSeq();
+
+        final int partitionCount = entries.size();
+        for (int i = 0; i < partitionCount; i++) {
+            final HashJoinBuildEntry entry = entries.getQuick(i);
+            entry.of(sequence++, phase, pageAddressCache, frameCursor);
+            long seq;
+            do {
+                seq = pubSeq.next();
+            } while (seq == -2);
+
+            if (seq > -1) {
+                queue.get(seq).entry = entry;
+                pubSeq.done(seq);
+            }
+            // when queue is full the entry is left for this thread to run
+        }
+        AbstractParallelEntry.runAll(entries, partitionCount, executionContext.getCircuitBreaker());
+    }
+
+    private class HashJoinRecordCursor implements NoRandomAccessRecordCursor {
+        private final JoinRecord record;
+        private final int columnSplit;
+        private RecordCursor masterCursor;
+        private Record masterRecord;
+        private LongChain.TreeCursor slaveChainCursor;
+
+        public HashJoinRecordCursor(int columnSplit) {
+            this.record = new JoinRecord(columnSplit);
+            this.columnSplit = columnSplit;
+        }
+
+        @Override
+        public void close() {
+            masterCursor = Misc.free(masterCursor);
+            frameCursor = Misc.free(frameCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            if (columnIndex < columnSplit) {
+                return masterCursor.getSymbolTable(columnIndex);
+            }
+            return frameCursor.getSymbolMapReader(columnIndex - columnSplit);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (slaveChainCursor != null && slaveChainCursor.hasNext()) {
+                slaveRecord.setRowId(slaveChainCursor.next());
+                return true;
+            }
+
+            final int partitionCount = partitionMaps.size();
+            while (masterCursor.hasNext()) {
+                FastMap.Key key = partitionMaps.getQuick(0).withKey();
+                key.put(masterRecord, masterKeySink);
+                final int partition = HashJoinBuildEntry.partitionOf(key.hash(), partitionCount);
+                if (partition != 0) {
+                    key = partitionMaps.getQuick(partition).withKey();
+                    key.put(masterRecord, masterKeySink);
+                }
+                final MapValue value = key.findValue();
+                if (value != null) {
+                    slaveChainCursor = partitionChains.getQuick(partition).getCursor(value.getLong(0));
+                    // we know cursor has values
+                    // advance to get first value
+                    slaveChainCursor.hasNext();
+                    slaveRecord.setRowId(slaveChainCursor.next());
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return -1;
+        }
+
+        @Override
+        public void toTop() {
+            masterCursor.toTop();
+            slaveChainCursor = null;
+        }
+
+        void of(RecordCursor masterCursor) {
+            this.masterCursor = masterCursor;
+            this.masterRecord = masterCursor.getRecord();
+            record.of(masterRecord, slaveRecord);
+            slaveChainCursor = null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.SymbolMapReader;
+import io.questdb.cairo.map.FastMap;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.griffin.engine.table.PageAddressCache;
+import io.questdb.griffin.engine.table.PageAddressCacheRecord;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.DirectCharSequence;
+
+import java.io.Closeable;
+
+/**
+ * Builds single partition of the parallel hash join in two phases. While scattering, entry hashes
+ * keys of its share of slave page frames and sorts row ids into one list per partition. While
+ * building, entry inserts row ids every entry has scattered into its partition into the partition
+ * map and chain. Each phase reads every slave row once across all entries. Entries can be executed
+ * by any worker, via {@link HashJoinBuildJob}, or by the thread that owns the cursor.
+ */
+public class HashJoinBuildEntry extends AbstractParallelEntry implements Closeable, SymbolTableSource {
+    static final int PHASE_SCATTER = 0;
+    static final int PHASE_BUILD = 1;
+    private static final int ROW_LIST_CAPACITY = 1024;
+    private final FastMap map;
+    private final LongChain chain;
+    private final RecordSink keySink;
+    private final PageAddressCacheRecord record = new PageAddressCacheRecord();
+    // symbol readers of the frame cursor are not thread-safe, each entry reads
+    // symbol values through its own views
+    private final ObjList<SymbolTableView> symbolTables = new ObjList<>();
+    // row ids this entry has scattered, one list per partition
+    private final ObjList<DirectLongList> partitionRows = new ObjList<>();
+    private final ObjList<HashJoinBuildEntry> entries;
+    private final int partitionIndex;
+    private final int partitionCount;
+    private PageAddressCache pageAddressCache;
+    private int phase;
+
+    public HashJoinBuildEntry(
+            FastMap map,
+            LongChain chain,
+            RecordSink keySink,
+            RecordMetadata slaveMetadata,
+            ObjList<HashJoinBuildEntry> entries,
+            int partitionIndex,
+            int partitionCount
+    ) {
+        this.map = map;
+        this.chain = chain;
+        this.keySink = keySink;
+        this.entries = entries;
+        this.partitionIndex = partitionIndex;
+        this.partitionCount = partitionCount;
+        for (int i = 0, n = slaveMetadata.getColumnCount(); i < n; i++) {
+            symbolTables.extendAndSet(i, ColumnType.isSymbol(slaveMetadata.getColumnType(i)) ? new SymbolTableView() : null);
+        }
+        try {
+            for (int i = 0; i < partitionCount; i++) {
+                partitionRows.add(new DirectLongList(ROW_LIST_CAPACITY));
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps key hash to partition. Partition is taken from the high bits of the scrambled hash,
+     * low bits remain spread evenly across slots of the partition map.
+     *
+     * @param hash           key hash as computed by {@link FastMap.Key#hash()}
+     * @param partitionCount number of partitions
+     * @return partition index between 0 and partitionCount - 1
+     */
+    public static int partitionOf(int hash, int partitionCount) {
+        return (int) ((((hash * 0x9E3779B9L) & 0xFFFFFFFFL) * partitionCount) >>> 32);
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(partitionRows);
+        partitionRows.clear();
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return symbolTables.getQuick(columnIndex);
+    }
+
+    @Override
+    protected void execute(int workerId) {
+        if (phase == PHASE_SCATTER) {
+            scatter();
+        } else {
+            build();
+        }
+    }
+
+    @Override
+    protected CairoException putFailure(CairoException e) {
+        return e.put("hash join build failed [partitionIndex=").put(partitionIndex).put(", phase=").put(phase);
+    }
+
+    void of(int sequence, int phase, PageAddressCache pageAddressCache, PageFrameCursor frameCursor) {
+        this.phase = phase;
+        this.pageAddressCache = pageAddressCache;
+        if (phase == PHASE_SCATTER) {
+            for (int i = 0, n = symbolTables.size(); i < n; i++) {
+                final SymbolTableView view = symbolTables.getQuick(i);
+                if (view != null) {
+                    view.of(frameCursor.getSymbolMapReader(i));
+                }
+            }
+            record.of(pageAddressCache, this);
+        }
+        of(sequence);
+    }
+
+    private void build() {
+        // entries scatter frames in frame order, rows of each key are chained in the order of the table
+        for (int i = 0; i < partitionCount; i++) {
+            final DirectLongList rows = entries.getQuick(i).partitionRows.getQuick(partitionIndex);
+            for (long j = 0, n = rows.size(); j < n; j++) {
+                final long rowId = rows.get(j);
+                record.setRowId(rowId);
+                final FastMap.Key key = map.withKey();
+                key.put(record, keySink);
+                final MapValue value = key.createValue();
+                if (value.isNew()) {
+                    final long offset = chain.put(rowId, -1);
+                    value.putLong(0, offset);
+                    value.putLong(1, offset);
+                } else {
+                    value.putLong(1, chain.put(rowId, value.getLong(1)));
+                }
+            }
+        }
+    }
+
+    private void scatter() {
+        for (int i = 0; i < partitionCount; i++) {
+            partitionRows.getQuick(i).clear();
+        }
+        final int frameCount = pageAddressCache.getFrameCount();
+        final int frameLo = (int) ((long) frameCount * partitionIndex / partitionCount);
+        final int frameHi = (int) ((long) frameCount * (partitionIndex + 1) / partitionCount);
+        for (int f = frameLo; f < frameHi; f++) {
+            record.setFrameIndex(f);
+            for (long r = 0, n = pageAddressCache.getFrameSize(f); r < n; r++) {
+                record.setRowIndex(r);
+                // key is only hashed, map of this entry is not modified
+                final FastMap.Key key = map.withKey();
+                key.put(record, keySink);
+                partitionRows.getQuick(partitionOf(key.hash(), partitionCount)).add(record.getRowId());
+            }
+        }
+    }
+
+    /**
+     * Reads symbol values directly from symbol map memory. Unlike the reader itself,
+     * view does not share mutable state with other threads.
+     */
+    private static class SymbolTableView implements SymbolTable {
+        private final DirectCharSequence csA = new DirectCharSequence();
+        private final DirectCharSequence csB = new DirectCharSequence();
+        private SymbolMapReader reader;
+
+        @Override
+        public CharSequence valueBOf(int key) {
+            return valueOf(key, csB);
+        }
+
+        @Override
+        public CharSequence valueOf(int key) {
+            return valueOf(key, csA);
+        }
+
+        void of(SymbolMapReader reader) {
+            this.reader = reader;
+        }
+
+        private CharSequence valueOf(int key, DirectCharSequence cs) {
+            if (key > -1 && key < reader.getSymbolCount()) {
+                final long address = reader.symbolCharsAddressOf(key);
+                final long lo = address + Integer.BYTES;
+                return cs.of(lo, lo + ((long) Unsafe.getUnsafe().getInt(address) << 1));
+            }
+            return null;
+        }
+    }
+}
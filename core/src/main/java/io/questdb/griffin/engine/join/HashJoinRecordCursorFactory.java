@@ -63,7 +63,15 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
         this.masterFactory = masterFactory;
         this.slaveFactory = slaveFactory;
         joinKeyMap = MapFactory.createMap(configuration, joinColumnTypes, valueTypes);
-        slaveChain = new RecordChain(slaveFactory.getMetadata(), slaveChainSink, configuration.getSqlHashJoinValuePageSize(), configuration.getSqlHashJoinValueMaxPages());
+        slaveChain = new RecordChain(
+                slaveFactory.getMetadata(),
+                slaveChainSink,
+                configuration.getSqlHashJoinValuePageSize(),
+                configuration.getSqlHashJoinValueMaxPages(),
+                configuration.getFilesFacade(),
+                configuration.getSqlSpillRoot(),
+                configuration.getSqlSpillMemoryBudget()
+        );
         this.masterSink = masterSink;
         this.slaveKeySink = slaveKeySink;
         this.cursor = new HashJoinRecordCursor(columnSplit, joinKeyMap, slaveChain);
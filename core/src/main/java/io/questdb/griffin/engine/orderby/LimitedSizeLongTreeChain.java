@@ -0,0 +1,131 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.griffin.engine.RecordComparator;
+
+/**
+ * Tree chain that retains at most <code>limit</code> row ids, those that come first in sort order.
+ * Once the chain is full, row that sorts before the last retained row evicts it, other rows are
+ * discarded after single comparison. Memory held by evicted rows is reused, which keeps footprint
+ * of the chain proportional to the limit rather than to the number of rows sorted.
+ * <p>
+ * Rows that compare equal are kept in the same order as {@link LongTreeChain} keeps them.
+ */
+public class LimitedSizeLongTreeChain extends LongTreeChain {
+    private final long limit;
+    private long count;
+    private long freeBlock = -1;
+    private long freeValueOffset = -1;
+
+    public LimitedSizeLongTreeChain(long keyPageSize, int keyMaxPages, long valuePageSize, int valueMaxPages, long limit) {
+        super(keyPageSize, keyMaxPages, valuePageSize, valueMaxPages);
+        this.limit = limit;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        count = 0;
+        freeBlock = -1;
+        freeValueOffset = -1;
+    }
+
+    @Override
+    public void put(
+            Record leftRecord,
+            RecordCursor sourceCursor,
+            Record rightRecord,
+            RecordComparator comparator
+    ) {
+        if (count < limit) {
+            super.put(leftRecord, sourceCursor, rightRecord, comparator);
+            count++;
+            return;
+        }
+
+        if (limit == 0) {
+            return;
+        }
+
+        // last row in sort order is at the tail of the rightmost node chain,
+        // all values in the chain compare equal
+        long max = root;
+        long r;
+        while ((r = rightOf(max)) != -1) {
+            max = r;
+        }
+
+        final long head = refOf(max);
+        comparator.setLeft(leftRecord);
+        sourceCursor.recordAt(rightRecord, valueChain.getLong(head));
+        if (comparator.compare(rightRecord) > 0) {
+            return;
+        }
+
+        long prev = -1;
+        long tail = head;
+        long next;
+        while ((next = valueChain.getLong(tail + 8)) != -1) {
+            prev = tail;
+            tail = next;
+        }
+
+        freeValueOffset = tail;
+        if (prev == -1) {
+            freeBlock = remove(max);
+        } else {
+            valueChain.putLong(prev + 8, -1L);
+        }
+        super.put(leftRecord, sourceCursor, rightRecord, comparator);
+    }
+
+    @Override
+    protected long allocateBlock() {
+        if (freeBlock == -1) {
+            return super.allocateBlock();
+        }
+        final long p = freeBlock;
+        freeBlock = -1;
+        setLeft(p, -1);
+        setRight(p, -1);
+        setColor(p, BLACK);
+        return p;
+    }
+
+    @Override
+    protected long appendValue(long value, long prevValueOffset) {
+        if (freeValueOffset == -1) {
+            return super.appendValue(value, prevValueOffset);
+        }
+        final long offset = freeValueOffset;
+        freeValueOffset = -1;
+        valueChain.putLong(offset, value);
+        valueChain.putLong(offset + 8, prevValueOffset);
+        return offset;
+    }
+}
@@ -30,16 +30,30 @@ import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryARW;
 import io.questdb.griffin.engine.AbstractRedBlackTree;
 import io.questdb.griffin.engine.RecordComparator;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
 import io.questdb.std.MemoryTag;
 import io.questdb.std.Misc;
 
 public class LongTreeChain extends AbstractRedBlackTree {
     private final TreeCursor cursor = new TreeCursor();
-    private final MemoryARW valueChain;
+    protected final MemoryARW valueChain;
 
     public LongTreeChain(long keyPageSize, int keyMaxPages, long valuePageSize, int valueMaxPages) {
-        super(keyPageSize, keyMaxPages);
-        this.valueChain = Vm.getARWInstance(valuePageSize, valueMaxPages, MemoryTag.NATIVE_TREE_CHAIN);
+        this(keyPageSize, keyMaxPages, valuePageSize, valueMaxPages, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    public LongTreeChain(
+            long keyPageSize,
+            int keyMaxPages,
+            long valuePageSize,
+            int valueMaxPages,
+            FilesFacade ff,
+            CharSequence spillRoot,
+            long spillMemoryBudget
+    ) {
+        super(keyPageSize, keyMaxPages, ff, spillRoot, spillMemoryBudget);
+        this.valueChain = Vm.getSpillARWInstance(ff, spillRoot, spillMemoryBudget, valuePageSize, valueMaxPages, MemoryTag.NATIVE_TREE_CHAIN);
     }
 
     @Override
@@ -54,7 +68,7 @@ public class LongTreeChain extends AbstractRedBlackTree {
         Misc.free(valueChain);
     }
 
-    private long appendValue(long value, long prevValueOffset) {
+    protected long appendValue(long value, long prevValueOffset) {
         final long offset = valueChain.getAppendOffset();
         valueChain.putLong128(value, prevValueOffset);
         return offset;
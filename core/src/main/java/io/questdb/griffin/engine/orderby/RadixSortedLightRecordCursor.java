@@ -0,0 +1,279 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.sql.DelegatingRecordCursor;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.griffin.SqlExecutionCircuitBreaker;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.LimitOverflowException;
+import io.questdb.std.*;
+
+/**
+ * Sorts row ids of the base cursor by fixed-width key columns. Each key value is encoded into
+ * a 64-bit value, which compares as unsigned in the same order as the record comparator orders
+ * column values. (key, row id) pairs are then sorted by native LSD radix sort. Composite keys
+ * are sorted one column at a time starting from the last column, sort is stable and each pass
+ * preserves order established by previous passes.
+ * <p>
+ * Rows with equal keys are returned in reverse order of the base cursor, same as
+ * {@link LongTreeChain} returns them.
+ */
+class RadixSortedLightRecordCursor implements DelegatingRecordCursor {
+    private final IntList keyColumnIndexes;
+    private final IntList keyColumnTypes;
+    private final IntList keyDirections;
+    private final DirectLongList pairs;
+    private final DirectLongList pairsCopy;
+    // only used for composite keys, pairs carry ordinal of the row instead of row id
+    private final ObjList<DirectLongList> keys = new ObjList<>();
+    private final DirectLongList rowIds;
+    private final int maxPages;
+    private final long maxRows;
+    private RecordCursor base;
+    private Record baseRecord;
+    private long rowCount;
+    private long index;
+
+    public RadixSortedLightRecordCursor(
+            long initialCapacity,
+            long pageSize,
+            int maxPages,
+            @Transient IntList keyColumnIndexes,
+            @Transient IntList keyColumnTypes
+    ) {
+        final int keyCount = keyColumnIndexes.size();
+        // pairs and their sort copy take 32 bytes per row, composite keys also keep
+        // every key column and row id
+        final long rowSize = keyCount > 1 ? 4 * Long.BYTES + (keyCount + 1) * Long.BYTES : 4 * Long.BYTES;
+        this.maxPages = maxPages;
+        this.maxRows = pageSize * maxPages / rowSize;
+        this.keyColumnIndexes = new IntList(keyCount);
+        this.keyColumnTypes = new IntList(keyCount);
+        this.keyDirections = new IntList(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            // column index sign indicates direction, index is 1-based
+            final int index = keyColumnIndexes.getQuick(i);
+            this.keyColumnIndexes.add(Math.abs(index) - 1);
+            this.keyColumnTypes.add(keyColumnTypes.getQuick(i));
+            this.keyDirections.add(index < 0 ? -1 : 1);
+        }
+        this.pairs = new DirectLongList(initialCapacity * 2);
+        this.pairsCopy = new DirectLongList(initialCapacity * 2);
+        if (keyCount > 1) {
+            for (int i = 0; i < keyCount; i++) {
+                this.keys.add(new DirectLongList(initialCapacity));
+            }
+            this.rowIds = new DirectLongList(initialCapacity);
+        } else {
+            this.rowIds = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (base != null) {
+            base.close();
+            base = null;
+        }
+    }
+
+    @Override
+    public Record getRecord() {
+        return baseRecord;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < rowCount) {
+            final long payload = pairs.get(2 * index + 1);
+            base.recordAt(baseRecord, rowIds == null ? payload : rowIds.get(payload));
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Record getRecordB() {
+        return base.getRecordB();
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        base.recordAt(record, atRowId);
+    }
+
+    @Override
+    public long size() {
+        return base.size();
+    }
+
+    @Override
+    public void toTop() {
+        index = 0;
+    }
+
+    @Override
+    public void of(RecordCursor base, SqlExecutionContext executionContext) {
+        this.base = base;
+        this.baseRecord = base.getRecord();
+        final SqlExecutionCircuitBreaker circuitBreaker = executionContext.getCircuitBreaker();
+
+        pairs.clear();
+        if (rowIds == null) {
+            while (base.hasNext()) {
+                circuitBreaker.test();
+                checkRowCount(pairs.size() / 2);
+                pairs.add(encode(baseRecord, 0));
+                pairs.add(baseRecord.getRowId());
+            }
+            rowCount = pairs.size() / 2;
+            reverse();
+            sort();
+        } else {
+            rowIds.clear();
+            final int keyCount = keys.size();
+            for (int i = 0; i < keyCount; i++) {
+                keys.getQuick(i).clear();
+            }
+            while (base.hasNext()) {
+                circuitBreaker.test();
+                checkRowCount(rowIds.size());
+                for (int i = 0; i < keyCount; i++) {
+                    keys.getQuick(i).add(encode(baseRecord, i));
+                }
+                rowIds.add(baseRecord.getRowId());
+            }
+            rowCount = rowIds.size();
+
+            // ordinals go in reverse, stable passes keep rows with equal keys in that order
+            final DirectLongList lastKeys = keys.getQuick(keyCount - 1);
+            for (long i = rowCount - 1; i > -1; i--) {
+                pairs.add(lastKeys.get(i));
+                pairs.add(i);
+            }
+            sort();
+            for (int k = keyCount - 2; k > -1; k--) {
+                circuitBreaker.test();
+                final DirectLongList columnKeys = keys.getQuick(k);
+                for (long i = 0; i < rowCount; i++) {
+                    pairs.set(2 * i, columnKeys.get(pairs.get(2 * i + 1)));
+                }
+                sort();
+            }
+        }
+        toTop();
+    }
+
+    void free() {
+        Misc.free(pairs);
+        Misc.free(pairsCopy);
+        Misc.free(rowIds);
+        Misc.freeObjList(keys);
+    }
+
+    private static long encodeDouble(double value) {
+        if (value != value) {
+            // NaN sorts first, no other value encodes to 0
+            return 0;
+        }
+        // -0.0 and 0.0 are equal
+        final long bits = Double.doubleToRawLongBits(value == 0 ? 0.0 : value);
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+    private void checkRowCount(long rowCount) {
+        if (rowCount >= maxRows) {
+            throw LimitOverflowException.instance().put("Maximum number of pages (").put(maxPages).put(") breached in sort buffer");
+        }
+    }
+
+    private long encode(Record record, int keyIndex) {
+        final int columnIndex = keyColumnIndexes.getQuick(keyIndex);
+        final long value;
+        switch (ColumnType.tagOf(keyColumnTypes.getQuick(keyIndex))) {
+            case ColumnType.BOOLEAN:
+                value = record.getBool(columnIndex) ? 1 : 0;
+                break;
+            case ColumnType.BYTE:
+                value = record.getByte(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.SHORT:
+                value = record.getShort(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.CHAR:
+                value = record.getChar(columnIndex);
+                break;
+            case ColumnType.INT:
+                value = record.getInt(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.LONG:
+                value = record.getLong(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.DATE:
+                value = record.getDate(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.TIMESTAMP:
+                value = record.getTimestamp(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.FLOAT:
+                value = encodeDouble(record.getFloat(columnIndex));
+                break;
+            default:
+                value = encodeDouble(record.getDouble(columnIndex));
+                break;
+        }
+        return keyDirections.getQuick(keyIndex) < 0 ? ~value : value;
+    }
+
+    private void reverse() {
+        for (long lo = 0, hi = rowCount - 1; lo < hi; lo++, hi--) {
+            final long key = pairs.get(2 * lo);
+            final long payload = pairs.get(2 * lo + 1);
+            pairs.set(2 * lo, pairs.get(2 * hi));
+            pairs.set(2 * lo + 1, pairs.get(2 * hi + 1));
+            pairs.set(2 * hi, key);
+            pairs.set(2 * hi + 1, payload);
+        }
+    }
+
+    private void sort() {
+        if (rowCount > 1) {
+            if (pairsCopy.getCapacity() < rowCount * 2) {
+                pairsCopy.extend(rowCount * 2);
+            }
+            Vect.radixSortLongIndexAscInPlace(pairs.getAddress(), rowCount, pairsCopy.getAddress());
+        }
+    }
+}
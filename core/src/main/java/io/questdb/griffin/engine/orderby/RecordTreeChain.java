@@ -31,6 +31,8 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.griffin.engine.RecordComparator;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
 import io.questdb.std.MemoryPages;
 import io.questdb.std.Misc;
 import io.questdb.std.Mutable;
@@ -64,10 +66,25 @@ public class RecordTreeChain implements Closeable, Mutable {
             int keyMaxPages,
             long valuePageSize,
             int valueMaxPages
+    ) {
+        this(columnTypes, recordSink, comparator, keyPageSize, keyMaxPages, valuePageSize, valueMaxPages, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    public RecordTreeChain(
+            ColumnTypes columnTypes,
+            RecordSink recordSink,
+            RecordComparator comparator,
+            long keyPageSize,
+            int keyMaxPages,
+            long valuePageSize,
+            int valueMaxPages,
+            FilesFacade ff,
+            CharSequence spillRoot,
+            long spillMemoryBudget
     ) {
         this.comparator = comparator;
-        this.mem = new MemoryPages(keyPageSize, keyMaxPages);
-        this.recordChain = new RecordChain(columnTypes, recordSink, valuePageSize, valueMaxPages);
+        this.mem = new MemoryPages(keyPageSize, keyMaxPages, ff, spillRoot, spillMemoryBudget);
+        this.recordChain = new RecordChain(columnTypes, recordSink, valuePageSize, valueMaxPages, ff, spillRoot, spillMemoryBudget);
         this.recordChainRecord = this.recordChain.getRecordB();
     }
 
@@ -50,7 +50,10 @@ public class SortedLightRecordCursorFactory extends AbstractRecordCursorFactory
                 configuration.getSqlSortKeyMaxPages(),
                 configuration
                         .getSqlSortLightValuePageSize(),
-                configuration.getSqlSortLightValueMaxPages());
+                configuration.getSqlSortLightValueMaxPages(),
+                configuration.getFilesFacade(),
+                configuration.getSqlSpillRoot(),
+                configuration.getSqlSpillMemoryBudget());
         this.base = base;
         this.cursor = new SortedLightRecordCursor(chain, comparator);
     }
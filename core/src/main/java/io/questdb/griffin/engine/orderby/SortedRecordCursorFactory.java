@@ -56,7 +56,10 @@ public class SortedRecordCursorFactory extends AbstractRecordCursorFactory {
                 configuration.getSqlSortKeyPageSize(),
                 configuration.getSqlSortKeyMaxPages(),
                 configuration.getSqlSortValuePageSize(),
-                configuration.getSqlSortValueMaxPages()
+                configuration.getSqlSortValueMaxPages(),
+                configuration.getFilesFacade(),
+                configuration.getSqlSpillRoot(),
+                configuration.getSqlSpillMemoryBudget()
         );
         this.base = base;
         this.cursor = new SortedRecordCursor(chain);
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.tasks.PageFrameFilterTask;
+
+class AsyncFilteredRecordCursor implements RecordCursor {
+    private final Function filter;
+    private final ObjList<Function> workerFilters;
+    private final ObjList<PageAddressCacheRecord> workerRecords;
+    private final ObjList<PageFrameFilterEntry> entries;
+    private final PageAddressCache pageAddressCache = new PageAddressCache();
+    private final PageAddressCacheRecord record = new PageAddressCacheRecord();
+    private final PageAddressCacheRecord filterRecord = new PageAddressCacheRecord();
+    private final int columnCount;
+    private final int maxFrameRows;
+    private final int windowSize;
+    private final long rowsCapacity;
+    private PageAddressCacheRecord recordB;
+    private PageFrameCursor frameCursor;
+    private RingQueue<PageFrameFilterTask> queue;
+    private Sequence pubSeq;
+    private int frameCount;
+    // frames below this index have been handed over to entries
+    private int dispatchedFrameCount;
+    // index of the frame to be returned next
+    private int nextFrameIndex;
+    private DirectLongList rows;
+    private long rowCount;
+    private long rowIndex;
+    private int sequence;
+
+    public AsyncFilteredRecordCursor(
+            Function filter,
+            ObjList<Function> workerFilters,
+            ObjList<PageAddressCacheRecord> workerRecords,
+            ObjList<PageFrameFilterEntry> entries,
+            int columnCount,
+            int windowSize,
+            int maxFrameRows
+    ) {
+        this.columnCount = columnCount;
+        this.filter = filter;
+        this.workerFilters = workerFilters;
+        this.workerRecords = workerRecords;
+        this.entries = entries;
+        this.windowSize = windowSize;
+        this.maxFrameRows = maxFrameRows;
+        this.rowsCapacity = Math.min(maxFrameRows, 1024);
+    }
+
+    @Override
+    public void close() {
+        if (frameCursor != null) {
+            cancelPendingEntries();
+            frameCursor = Misc.free(frameCursor);
+        }
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return frameCursor.getSymbolMapReader(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (rowIndex < rowCount) {
+                record.setRowIndex(rows.get(rowIndex++));
+                return true;
+            }
+            if (nextFrameIndex < frameCount) {
+                nextFrame();
+            } else {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public Record getRecordB() {
+        if (recordB != null) {
+            return recordB;
+        }
+        recordB = new PageAddressCacheRecord();
+        recordB.of(pageAddressCache, this);
+        return recordB;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        ((PageAddressCacheRecord) record).setRowId(atRowId);
+    }
+
+    @Override
+    public void toTop() {
+        cancelPendingEntries();
+        filter.toTop();
+        for (int i = 0, n = workerFilters.size(); i < n; i++) {
+            workerFilters.getQuick(i).toTop();
+        }
+        resetState();
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    void of(PageFrameCursor frameCursor, SqlExecutionContext executionContext) throws SqlException {
+        this.frameCursor = frameCursor;
+        final MessageBus bus = executionContext.getMessageBus();
+        this.queue = bus.getPageFrameFilterQueue();
+        this.pubSeq = bus.getPageFrameFilterPubSeq();
+
+        // capture addresses of all frames upfront, workers never observe the cache while it grows
+        pageAddressCache.of(columnCount);
+        PageFrame frame;
+        while ((frame = frameCursor.next()) != null) {
+            final long frameRows = frame.getPartitionHi() - frame.getPartitionLo();
+            for (long lo = 0; lo < frameRows; lo += maxFrameRows) {
+                pageAddressCache.add(frame, lo, Math.min(lo + maxFrameRows, frameRows));
+            }
+        }
+        this.frameCount = pageAddressCache.getFrameCount();
+
+        record.of(pageAddressCache, this);
+        filterRecord.of(pageAddressCache, this);
+        if (recordB != null) {
+            recordB.of(pageAddressCache, this);
+        }
+        for (int i = 0, n = workerRecords.size(); i < n; i++) {
+            // worker filters are never given symbol columns, see SqlCodeGenerator
+            workerRecords.getQuick(i).of(pageAddressCache, null);
+        }
+
+        filter.init(this, executionContext);
+        for (int i = 0, n = workerFilters.size(); i < n; i++) {
+            workerFilters.getQuick(i).init(this, executionContext);
+        }
+
+        final int entryCount = Math.min(windowSize, frameCount);
+        for (int i = entries.size(); i < entryCount; i++) {
+            entries.add(new PageFrameFilterEntry(workerFilters, workerRecords, filter, filterRecord, rowsCapacity));
+        }
+        resetState();
+    }
+
+    private void cancelPendingEntries() {
+        for (int i = nextFrameIndex; i < dispatchedFrameCount; i++) {
+            entries.getQuick(i % windowSize).cancel();
+        }
+        dispatchedFrameCount = nextFrameIndex;
+    }
+
+    private void dispatch(int frameLimit) {
+        while (dispatchedFrameCount < frameLimit) {
+            final PageFrameFilterEntry entry = entries.getQuick(dispatchedFrameCount % windowSize);
+            entry.of(sequence++, dispatchedFrameCount, pageAddressCache.getFrameSize(dispatchedFrameCount));
+
+            // without worker filters all frames are filtered by this thread
+            if (workerFilters.size() > 0) {
+                long seq;
+                do {
+                    seq = pubSeq.next();
+                } while (seq == -2);
+
+                if (seq > -1) {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+                // when queue is full the entry is left for this thread to filter
+            }
+            dispatchedFrameCount++;
+        }
+    }
+
+    private void nextFrame() {
+        // frame that we are leaving has been fully read, its entry can be reused
+        dispatch(Math.min(frameCount, nextFrameIndex + windowSize));
+
+        final PageFrameFilterEntry entry = entries.getQuick(nextFrameIndex % windowSize);
+        if (!entry.runOwned()) {
+            entry.await();
+        }
+        nextFrameIndex++;
+        entry.throwIfFailed();
+
+        rows = entry.getRows();
+        rowCount = rows.size();
+        rowIndex = 0;
+        record.setFrameIndex(entry.getFrameIndex());
+    }
+
+    private void resetState() {
+        dispatchedFrameCount = 0;
+        nextFrameIndex = 0;
+        rows = null;
+        rowCount = 0;
+        rowIndex = 0;
+    }
+}
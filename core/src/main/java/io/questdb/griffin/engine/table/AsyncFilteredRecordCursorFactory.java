@@ -0,0 +1,111 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Transient;
+
+/**
+ * Filters table page frames in parallel. Frames are published on the page frame filter queue
+ * and are picked up by {@link PageFrameFilterJob} workers, each worker evaluates its own copy
+ * of the filter. Frames that were not picked up are filtered by the thread that reads the cursor.
+ * Rows are returned in the same order as they are returned by the base factory.
+ */
+public class AsyncFilteredRecordCursorFactory implements RecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final AsyncFilteredRecordCursor cursor;
+    private final Function filter;
+    private final ObjList<Function> workerFilters;
+    private final ObjList<PageFrameFilterEntry> entries = new ObjList<>();
+
+    public AsyncFilteredRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            Function filter,
+            @Transient ObjList<Function> workerFilters
+    ) {
+        assert !(base instanceof AsyncFilteredRecordCursorFactory);
+        this.base = base;
+        this.filter = filter;
+        this.workerFilters = new ObjList<>(workerFilters);
+        final int workerCount = workerFilters.size();
+        final ObjList<PageAddressCacheRecord> workerRecords = new ObjList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workerRecords.add(new PageAddressCacheRecord());
+        }
+        // keep a frame ahead for every worker so that workers do not idle while owner thread reads rows
+        final int windowSize = Math.max(1, Math.min(configuration.getPageFrameFilterQueueCapacity(), workerCount * 2));
+        this.cursor = new AsyncFilteredRecordCursor(
+                filter,
+                this.workerFilters,
+                workerRecords,
+                entries,
+                base.getMetadata().getColumnCount(),
+                windowSize,
+                configuration.getSqlPageFrameMaxRows()
+        );
+    }
+
+    @Override
+    public void close() {
+        Misc.free(cursor);
+        Misc.freeObjList(entries);
+        Misc.free(base);
+        Misc.free(filter);
+        Misc.freeObjList(workerFilters);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        final PageFrameCursor frameCursor = base.getPageFrameCursor(executionContext);
+        try {
+            cursor.of(frameCursor, executionContext);
+            return cursor;
+        } catch (Throwable e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return base.getMetadata();
+    }
+
+    @Override
+    public boolean followedOrderByAdvice() {
+        return base.followedOrderByAdvice();
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+}
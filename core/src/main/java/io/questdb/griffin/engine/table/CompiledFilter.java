@@ -0,0 +1,550 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.functions.BooleanFunction;
+import io.questdb.std.*;
+
+/**
+ * Filter compiled into a compact stack based IR, see {@link CompiledFilterCompiler}. Page frames
+ * are filtered in batches of rows, each IR instruction is applied to the whole batch in a tight loop
+ * over column memory. This replaces per-row virtual calls through the function tree with one pass
+ * per instruction, the loops are simple enough to be vectorised by the JIT.
+ * <p>
+ * Instance holds evaluation buffers, it must not be shared between threads.
+ */
+public class CompiledFilter extends BooleanFunction {
+    // loads, operand is column index
+    static final int LOAD_I8 = 1;
+    static final int LOAD_I16 = 2;
+    static final int LOAD_I32 = 3;
+    static final int LOAD_I64 = 4;
+    static final int LOAD_F32 = 5;
+    static final int LOAD_F64 = 6;
+    static final int LOAD_BOOL = 7;
+    // constant, operand is constant index
+    static final int CONST_I32 = 8;
+    static final int CONST_I64 = 9;
+    static final int CONST_TIMESTAMP = 10;
+    static final int CONST_F64 = 11;
+    // integer arithmetic
+    static final int ADD_I32 = 12;
+    static final int SUB_I32 = 13;
+    static final int MUL_I32 = 14;
+    static final int ADD_I64 = 15;
+    static final int SUB_I64 = 16;
+    static final int MUL_I64 = 17;
+    // floating point arithmetic
+    static final int ADD_F64 = 18;
+    static final int SUB_F64 = 19;
+    static final int MUL_F64 = 20;
+    static final int DIV_F64 = 21;
+    // integer comparison and logic
+    static final int EQ_I = 22;
+    static final int NE_I = 23;
+    static final int LT_I32 = 24;
+    static final int LE_I32 = 25;
+    static final int GT_I32 = 26;
+    static final int GE_I32 = 27;
+    static final int LT_I64 = 28;
+    static final int LE_I64 = 29;
+    static final int GT_I64 = 30;
+    static final int GE_I64 = 31;
+    static final int AND = 32;
+    static final int OR = 33;
+    // floating point comparison
+    static final int EQ_F64 = 34;
+    static final int NE_F64 = 35;
+    static final int LT_F64 = 36;
+    static final int LE_F64 = 37;
+    static final int GT_F64 = 38;
+    static final int GE_F64 = 39;
+    static final int NOT = 40;
+
+    private static final int BATCH_SIZE = 256;
+    private static final double EQ_EPSILON = 0.0000000001;
+
+    private final int[] code;
+    private final ObjList<Function> constants;
+    private final long[] constantLongs;
+    private final double[] constantDoubles;
+    private final long[][] longStack;
+    private final double[][] doubleStack;
+    private final long[] scalarLongs;
+    private final double[] scalarDoubles;
+
+    CompiledFilter(IntList code, ObjList<Function> constants, int stackDepth) {
+        this.code = new int[code.size()];
+        for (int i = 0, n = code.size(); i < n; i++) {
+            this.code[i] = code.getQuick(i);
+        }
+        this.constants = new ObjList<>(constants);
+        this.constantLongs = new long[constants.size()];
+        this.constantDoubles = new double[constants.size()];
+        this.longStack = new long[stackDepth][BATCH_SIZE];
+        this.doubleStack = new double[stackDepth][BATCH_SIZE];
+        this.scalarLongs = new long[stackDepth];
+        this.scalarDoubles = new double[stackDepth];
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(constants);
+    }
+
+    /**
+     * Filters rows of the page frame and appends indexes of matching rows to the list.
+     *
+     * @param cache      page addresses of the frame
+     * @param frameIndex frame to filter
+     * @param rowCount   number of rows in the frame
+     * @param rows       list of matching row indexes, relative to the frame start
+     */
+    public void filter(PageAddressCache cache, int frameIndex, long rowCount, DirectLongList rows) {
+        for (long lo = 0; lo < rowCount; lo += BATCH_SIZE) {
+            final int size = (int) Math.min(BATCH_SIZE, rowCount - lo);
+            execute(cache, frameIndex, lo, size);
+            final long[] result = longStack[0];
+            for (int i = 0; i < size; i++) {
+                if (result[i] != 0) {
+                    rows.add(lo + i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean getBool(Record rec) {
+        final long[] l = scalarLongs;
+        final double[] d = scalarDoubles;
+        int sp = 0;
+        for (int pc = 0, n = code.length; pc < n; pc++) {
+            final int op = code[pc];
+            switch (op) {
+                case LOAD_I8:
+                    l[sp++] = rec.getByte(code[++pc]);
+                    break;
+                case LOAD_I16:
+                    l[sp++] = rec.getShort(code[++pc]);
+                    break;
+                case LOAD_I32:
+                    l[sp++] = rec.getInt(code[++pc]);
+                    break;
+                case LOAD_I64:
+                    l[sp++] = rec.getLong(code[++pc]);
+                    break;
+                case LOAD_F32:
+                    d[sp++] = rec.getFloat(code[++pc]);
+                    break;
+                case LOAD_F64:
+                    d[sp++] = rec.getDouble(code[++pc]);
+                    break;
+                case LOAD_BOOL:
+                    l[sp++] = rec.getBool(code[++pc]) ? 1 : 0;
+                    break;
+                case CONST_I32:
+                case CONST_I64:
+                case CONST_TIMESTAMP:
+                    l[sp++] = constantLongs[code[++pc]];
+                    break;
+                case CONST_F64:
+                    d[sp++] = constantDoubles[code[++pc]];
+                    break;
+                case NOT:
+                    l[sp - 1] = l[sp - 1] == 0 ? 1 : 0;
+                    break;
+                default:
+                    sp--;
+                    if (op < ADD_F64) {
+                        l[sp - 1] = arithmetic(op, l[sp - 1], l[sp]);
+                    } else if (op < EQ_I) {
+                        d[sp - 1] = arithmetic(op, d[sp - 1], d[sp]);
+                    } else if (op < EQ_F64) {
+                        l[sp - 1] = compare(op, l[sp - 1], l[sp]) ? 1 : 0;
+                    } else {
+                        l[sp - 1] = compare(op, d[sp - 1], d[sp]) ? 1 : 0;
+                    }
+                    break;
+            }
+        }
+        return l[0] != 0;
+    }
+
+    @Override
+    public void init(SymbolTableSource symbolTableSource, SqlExecutionContext executionContext) throws SqlException {
+        Function.init(constants, symbolTableSource, executionContext);
+        // bind variable values can change between executions, constants are read once per cursor
+        for (int pc = 0, n = code.length; pc < n; pc++) {
+            final int op = code[pc];
+            switch (op) {
+                case CONST_I32:
+                    constantLongs[code[pc + 1]] = constants.getQuick(code[pc + 1]).getInt(null);
+                    pc++;
+                    break;
+                case CONST_I64:
+                    constantLongs[code[pc + 1]] = constants.getQuick(code[pc + 1]).getLong(null);
+                    pc++;
+                    break;
+                case CONST_TIMESTAMP:
+                    constantLongs[code[pc + 1]] = constants.getQuick(code[pc + 1]).getTimestamp(null);
+                    pc++;
+                    break;
+                case CONST_F64:
+                    constantDoubles[code[pc + 1]] = constants.getQuick(code[pc + 1]).getDouble(null);
+                    pc++;
+                    break;
+                default:
+                    if (op <= LOAD_BOOL) {
+                        pc++;
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static long arithmetic(int op, long l, long r) {
+        switch (op) {
+            case ADD_I32:
+                return l == Numbers.INT_NaN || r == Numbers.INT_NaN ? Numbers.INT_NaN : (int) (l + r);
+            case SUB_I32:
+                return l == Numbers.INT_NaN || r == Numbers.INT_NaN ? Numbers.INT_NaN : (int) (l - r);
+            case MUL_I32:
+                return (int) (l * r);
+            case ADD_I64:
+                return l == Numbers.LONG_NaN || r == Numbers.LONG_NaN ? Numbers.LONG_NaN : l + r;
+            case SUB_I64:
+                return l == Numbers.LONG_NaN || r == Numbers.LONG_NaN ? Numbers.LONG_NaN : l - r;
+            default:
+                assert op == MUL_I64;
+                return l * r;
+        }
+    }
+
+    private static double arithmetic(int op, double l, double r) {
+        switch (op) {
+            case ADD_F64:
+                return l + r;
+            case SUB_F64:
+                return l - r;
+            case MUL_F64:
+                return l * r;
+            default:
+                assert op == DIV_F64;
+                return l / r;
+        }
+    }
+
+    private static boolean compare(int op, long l, long r) {
+        switch (op) {
+            case EQ_I:
+                return l == r;
+            case NE_I:
+                return l != r;
+            case AND:
+                return l != 0 && r != 0;
+            case OR:
+                return l != 0 || r != 0;
+            case LT_I32:
+                return l != Numbers.INT_NaN && r != Numbers.INT_NaN && l < r;
+            case LE_I32:
+                return l != Numbers.INT_NaN && r != Numbers.INT_NaN && l <= r;
+            case GT_I32:
+                return l != Numbers.INT_NaN && r != Numbers.INT_NaN && l > r;
+            case GE_I32:
+                return l != Numbers.INT_NaN && r != Numbers.INT_NaN && l >= r;
+            case LT_I64:
+                return l != Numbers.LONG_NaN && r != Numbers.LONG_NaN && l < r;
+            case LE_I64:
+                return l != Numbers.LONG_NaN && r != Numbers.LONG_NaN && l <= r;
+            case GT_I64:
+                return l != Numbers.LONG_NaN && r != Numbers.LONG_NaN && l > r;
+            default:
+                assert op == GE_I64;
+                return l != Numbers.LONG_NaN && r != Numbers.LONG_NaN && l >= r;
+        }
+    }
+
+    private static boolean compare(int op, double l, double r) {
+        switch (op) {
+            case EQ_F64:
+                return eq(l, r);
+            case NE_F64:
+                return !eq(l, r);
+            case LT_F64:
+                return l < r;
+            case LE_F64:
+                return l <= r;
+            case GT_F64:
+                return l > r;
+            default:
+                assert op == GE_F64;
+                return l >= r;
+        }
+    }
+
+    // same as equality of doubles in SQL, NaN equals NaN
+    private static boolean eq(double l, double r) {
+        return l != l && r != r || Math.abs(l - r) < EQ_EPSILON;
+    }
+
+    private void execute(PageAddressCache cache, int frameIndex, long rowLo, int size) {
+        int sp = 0;
+        for (int pc = 0, n = code.length; pc < n; pc++) {
+            final int op = code[pc];
+            switch (op) {
+                case LOAD_I8:
+                case LOAD_I16:
+                case LOAD_I32:
+                case LOAD_I64:
+                case LOAD_BOOL:
+                    load(op, cache.getPageAddress(frameIndex, code[++pc]), rowLo, size, longStack[sp++]);
+                    break;
+                case LOAD_F32:
+                case LOAD_F64:
+                    load(op, cache.getPageAddress(frameIndex, code[++pc]), rowLo, size, doubleStack[sp++]);
+                    break;
+                case CONST_I32:
+                case CONST_I64:
+                case CONST_TIMESTAMP:
+                    fill(longStack[sp++], size, constantLongs[code[++pc]]);
+                    break;
+                case CONST_F64:
+                    fill(doubleStack[sp++], size, constantDoubles[code[++pc]]);
+                    break;
+                case NOT:
+                    not(longStack[sp - 1], size);
+                    break;
+                default:
+                    sp--;
+                    executeBinary(op, sp - 1, size);
+                    break;
+            }
+        }
+        assert sp == 1;
+    }
+
+    private void executeBinary(int op, int target, int size) {
+        final long[] la = longStack[target];
+        final long[] lb = longStack[target + 1];
+        final double[] da = doubleStack[target];
+        final double[] db = doubleStack[target + 1];
+        switch (op) {
+            case ADD_I32:
+                for (int i = 0; i < size; i++) {
+                    final long l = la[i];
+                    final long r = lb[i];
+                    la[i] = l == Numbers.INT_NaN || r == Numbers.INT_NaN ? Numbers.INT_NaN : (int) (l + r);
+                }
+                break;
+            case SUB_I32:
+                for (int i = 0; i < size; i++) {
+                    final long l = la[i];
+                    final long r = lb[i];
+                    la[i] = l == Numbers.INT_NaN || r == Numbers.INT_NaN ? Numbers.INT_NaN : (int) (l - r);
+                }
+                break;
+            case MUL_I32:
+                for (int i = 0; i < size; i++) {
+                    la[i] = (int) (la[i] * lb[i]);
+                }
+                break;
+            case ADD_I64:
+                for (int i = 0; i < size; i++) {
+                    final long l = la[i];
+                    final long r = lb[i];
+                    la[i] = l == Numbers.LONG_NaN || r == Numbers.LONG_NaN ? Numbers.LONG_NaN : l + r;
+                }
+                break;
+            case SUB_I64:
+                for (int i = 0; i < size; i++) {
+                    final long l = la[i];
+                    final long r = lb[i];
+                    la[i] = l == Numbers.LONG_NaN || r == Numbers.LONG_NaN ? Numbers.LONG_NaN : l - r;
+                }
+                break;
+            case MUL_I64:
+                for (int i = 0; i < size; i++) {
+                    la[i] *= lb[i];
+                }
+                break;
+            case ADD_F64:
+                for (int i = 0; i < size; i++) {
+                    da[i] += db[i];
+                }
+                break;
+            case SUB_F64:
+                for (int i = 0; i < size; i++) {
+                    da[i] -= db[i];
+                }
+                break;
+            case MUL_F64:
+                for (int i = 0; i < size; i++) {
+                    da[i] *= db[i];
+                }
+                break;
+            case DIV_F64:
+                for (int i = 0; i < size; i++) {
+                    da[i] /= db[i];
+                }
+                break;
+            case EQ_I:
+                for (int i = 0; i < size; i++) {
+                    la[i] = la[i] == lb[i] ? 1 : 0;
+                }
+                break;
+            case NE_I:
+                for (int i = 0; i < size; i++) {
+                    la[i] = la[i] != lb[i] ? 1 : 0;
+                }
+                break;
+            case AND:
+                for (int i = 0; i < size; i++) {
+                    la[i] &= lb[i];
+                }
+                break;
+            case OR:
+                for (int i = 0; i < size; i++) {
+                    la[i] |= lb[i];
+                }
+                break;
+            case EQ_F64:
+                for (int i = 0; i < size; i++) {
+                    la[i] = eq(da[i], db[i]) ? 1 : 0;
+                }
+                break;
+            case NE_F64:
+                for (int i = 0; i < size; i++) {
+                    la[i] = eq(da[i], db[i]) ? 0 : 1;
+                }
+                break;
+            case LT_F64:
+                for (int i = 0; i < size; i++) {
+                    la[i] = da[i] < db[i] ? 1 : 0;
+                }
+                break;
+            case LE_F64:
+                for (int i = 0; i < size; i++) {
+                    la[i] = da[i] <= db[i] ? 1 : 0;
+                }
+                break;
+            case GT_F64:
+                for (int i = 0; i < size; i++) {
+                    la[i] = da[i] > db[i] ? 1 : 0;
+                }
+                break;
+            case GE_F64:
+                for (int i = 0; i < size; i++) {
+                    la[i] = da[i] >= db[i] ? 1 : 0;
+                }
+                break;
+            default:
+                // remaining integer comparisons are null aware
+                for (int i = 0; i < size; i++) {
+                    la[i] = compare(op, la[i], lb[i]) ? 1 : 0;
+                }
+                break;
+        }
+    }
+
+    private static void fill(long[] values, int size, long value) {
+        for (int i = 0; i < size; i++) {
+            values[i] = value;
+        }
+    }
+
+    private static void fill(double[] values, int size, double value) {
+        for (int i = 0; i < size; i++) {
+            values[i] = value;
+        }
+    }
+
+    private static void load(int op, long address, long rowLo, int size, long[] values) {
+        if (address == 0) {
+            // column top, values are nulls
+            fill(values, size, op == LOAD_I32 ? Numbers.INT_NaN : op == LOAD_I64 ? Numbers.LONG_NaN : 0);
+            return;
+        }
+        switch (op) {
+            case LOAD_I8:
+                for (int i = 0; i < size; i++) {
+                    values[i] = Unsafe.getUnsafe().getByte(address + rowLo + i);
+                }
+                break;
+            case LOAD_BOOL:
+                for (int i = 0; i < size; i++) {
+                    values[i] = Unsafe.getUnsafe().getByte(address + rowLo + i) == 1 ? 1 : 0;
+                }
+                break;
+            case LOAD_I16:
+                address += rowLo << 1;
+                for (int i = 0; i < size; i++) {
+                    values[i] = Unsafe.getUnsafe().getShort(address + ((long) i << 1));
+                }
+                break;
+            case LOAD_I32:
+                address += rowLo << 2;
+                for (int i = 0; i < size; i++) {
+                    values[i] = Unsafe.getUnsafe().getInt(address + ((long) i << 2));
+                }
+                break;
+            default:
+                assert op == LOAD_I64;
+                address += rowLo << 3;
+                for (int i = 0; i < size; i++) {
+                    values[i] = Unsafe.getUnsafe().getLong(address + ((long) i << 3));
+                }
+                break;
+        }
+    }
+
+    private static void load(int op, long address, long rowLo, int size, double[] values) {
+        if (address == 0) {
+            fill(values, size, Double.NaN);
+            return;
+        }
+        if (op == LOAD_F32) {
+            address += rowLo << 2;
+            for (int i = 0; i < size; i++) {
+                values[i] = Unsafe.getUnsafe().getFloat(address + ((long) i << 2));
+            }
+        } else {
+            address += rowLo << 3;
+            for (int i = 0; i < size; i++) {
+                values[i] = Unsafe.getUnsafe().getDouble(address + ((long) i << 3));
+            }
+        }
+    }
+
+    private static void not(long[] values, int size) {
+        for (int i = 0; i < size; i++) {
+            values[i] ^= 1;
+        }
+    }
+}
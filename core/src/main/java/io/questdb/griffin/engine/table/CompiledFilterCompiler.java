@@ -0,0 +1,427 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.FunctionParser;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlKeywords;
+import io.questdb.griffin.model.ExpressionNode;
+import io.questdb.std.Chars;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Translates filter expression into {@link CompiledFilter} IR. Only expressions over fixed width
+ * numeric and boolean columns, constants and bind variables are eligible. Operand types are
+ * resolved the same way function parser resolves them, expressions that would require implicit
+ * cast of a column are rejected so that compiled filter produces exactly the same result as
+ * the function tree.
+ */
+public class CompiledFilterCompiler {
+    // value types
+    private static final int T_SMALL = 1;
+    private static final int T_INT = 2;
+    private static final int T_LONG = 3;
+    private static final int T_TIMESTAMP = 4;
+    private static final int T_FLOAT = 5;
+    private static final int T_DOUBLE = 6;
+    private static final int T_BOOL = 7;
+    private static final int C_INT = 8;
+    private static final int C_LONG = 9;
+    private static final int C_DOUBLE = 10;
+    // operand kinds
+    private static final int K_I32 = 1;
+    private static final int K_I64 = 2;
+    private static final int K_TIMESTAMP = 3;
+    private static final int K_F64 = 4;
+
+    private final FunctionParser functionParser;
+    private final ObjList<ExpressionNode> nodes = new ObjList<>();
+    private final IntList nodeKinds = new IntList();
+    private final ObjList<Function> nodeConstants = new ObjList<>();
+    private final IntList code = new IntList();
+    private final ObjList<Function> constants = new ObjList<>();
+    private RecordMetadata metadata;
+    private SqlExecutionContext executionContext;
+    private int depth;
+    private int maxDepth;
+
+    public CompiledFilterCompiler(FunctionParser functionParser) {
+        this.functionParser = functionParser;
+    }
+
+    /**
+     * @return compiled filter or null when expression cannot be compiled
+     */
+    @Nullable
+    public CompiledFilter compile(
+            ExpressionNode filter,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        this.metadata = metadata;
+        this.executionContext = executionContext;
+        try {
+            if (analyse(filter) != T_BOOL) {
+                Misc.freeObjList(nodeConstants);
+                return null;
+            }
+            depth = 0;
+            maxDepth = 0;
+            emit(filter, 0);
+            return new CompiledFilter(code, constants, maxDepth);
+        } catch (Throwable e) {
+            Misc.freeObjList(nodeConstants);
+            throw e;
+        } finally {
+            nodes.clear();
+            nodeKinds.clear();
+            nodeConstants.clear();
+            code.clear();
+            constants.clear();
+            this.metadata = null;
+            this.executionContext = null;
+        }
+    }
+
+    private static int arithmeticKind(int l, int r) {
+        if (isOneOf(l, T_INT, C_INT) && isOneOf(r, T_INT, C_INT)) {
+            return K_I32;
+        }
+        if (isOneOf(l, T_LONG, C_LONG, C_INT) && isOneOf(r, T_LONG, C_LONG, C_INT)) {
+            return K_I64;
+        }
+        if (isOneOf(l, T_DOUBLE, C_DOUBLE, C_INT, C_LONG) && isOneOf(r, T_DOUBLE, C_DOUBLE, C_INT, C_LONG)) {
+            return K_F64;
+        }
+        return -1;
+    }
+
+    private static int comparisonKind(int l, int r) {
+        if (isOneOf(l, T_SMALL, T_INT, C_INT) && isOneOf(r, T_SMALL, T_INT, C_INT)) {
+            return K_I32;
+        }
+        if (isOneOf(l, T_LONG, C_LONG, C_INT) && isOneOf(r, T_LONG, C_LONG, C_INT)) {
+            return K_I64;
+        }
+        if (isOneOf(l, T_TIMESTAMP, C_LONG, C_INT) && isOneOf(r, T_TIMESTAMP, C_LONG, C_INT)) {
+            return K_TIMESTAMP;
+        }
+        if (isOneOf(l, T_FLOAT, T_DOUBLE, C_DOUBLE, C_INT, C_LONG) && isOneOf(r, T_FLOAT, T_DOUBLE, C_DOUBLE, C_INT, C_LONG)) {
+            return K_F64;
+        }
+        return -1;
+    }
+
+    private static boolean isArithmetic(CharSequence token) {
+        return Chars.equals(token, '+') || Chars.equals(token, '-') || Chars.equals(token, '*') || Chars.equals(token, '/');
+    }
+
+    private static boolean isComparison(CharSequence token) {
+        return Chars.equals(token, '=')
+                || Chars.equals(token, "!=")
+                || Chars.equals(token, "<>")
+                || Chars.equals(token, '<')
+                || Chars.equals(token, "<=")
+                || Chars.equals(token, '>')
+                || Chars.equals(token, ">=");
+    }
+
+    private static boolean isNegativeConstant(ExpressionNode node) {
+        return node.paramCount == 1 && Chars.equals(node.token, '-') && node.rhs.type == ExpressionNode.CONSTANT;
+    }
+
+    private static boolean isOneOf(int type, int a, int b) {
+        return type == a || type == b;
+    }
+
+    private static boolean isOneOf(int type, int a, int b, int c) {
+        return type == a || type == b || type == c;
+    }
+
+    private static boolean isOneOf(int type, int a, int b, int c, int d) {
+        return type == a || type == b || type == c || type == d;
+    }
+
+    private static boolean isOneOf(int type, int a, int b, int c, int d, int e) {
+        return type == a || type == b || type == c || type == d || type == e;
+    }
+
+    private static int kindToType(int kind) {
+        switch (kind) {
+            case K_I32:
+                return T_INT;
+            case K_I64:
+                return T_LONG;
+            default:
+                return T_DOUBLE;
+        }
+    }
+
+    private int analyse(ExpressionNode node) throws SqlException {
+        switch (node.type) {
+            case ExpressionNode.LITERAL:
+                return analyseColumn(node);
+            case ExpressionNode.CONSTANT:
+            case ExpressionNode.BIND_VARIABLE:
+                return analyseConstant(node);
+            case ExpressionNode.OPERATION:
+                if (node.paramCount == 1 && SqlKeywords.isNotKeyword(node.token)) {
+                    return analyse(node.rhs) == T_BOOL ? T_BOOL : -1;
+                }
+                if (isNegativeConstant(node)) {
+                    return analyseConstant(node);
+                }
+                if (node.paramCount != 2) {
+                    return -1;
+                }
+                final int l = analyse(node.lhs);
+                if (l == -1) {
+                    return -1;
+                }
+                final int r = analyse(node.rhs);
+                if (r == -1) {
+                    return -1;
+                }
+                if (SqlKeywords.isAndKeyword(node.token) || SqlKeywords.isOrKeyword(node.token)) {
+                    return l == T_BOOL && r == T_BOOL ? T_BOOL : -1;
+                }
+                if (isComparison(node.token)) {
+                    final int kind = comparisonKind(l, r);
+                    if (kind == -1) {
+                        return -1;
+                    }
+                    addNode(node, kind, null);
+                    return T_BOOL;
+                }
+                if (isArithmetic(node.token)) {
+                    // narrow types have arithmetic functions of their own, those are not compiled
+                    final int kind = arithmeticKind(l, r);
+                    if (kind == -1 || (Chars.equals(node.token, '/') && kind != K_F64)) {
+                        return -1;
+                    }
+                    addNode(node, kind, null);
+                    return kindToType(kind);
+                }
+                return -1;
+            default:
+                return -1;
+        }
+    }
+
+    private int analyseColumn(ExpressionNode node) {
+        final int columnIndex = metadata.getColumnIndexQuiet(node.token);
+        if (columnIndex == -1) {
+            return -1;
+        }
+        switch (ColumnType.tagOf(metadata.getColumnType(columnIndex))) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+                return T_SMALL;
+            case ColumnType.INT:
+                return T_INT;
+            case ColumnType.LONG:
+                return T_LONG;
+            case ColumnType.TIMESTAMP:
+                return T_TIMESTAMP;
+            case ColumnType.FLOAT:
+                return T_FLOAT;
+            case ColumnType.DOUBLE:
+                return T_DOUBLE;
+            case ColumnType.BOOLEAN:
+                return T_BOOL;
+            default:
+                return -1;
+        }
+    }
+
+    private int analyseConstant(ExpressionNode node) throws SqlException {
+        final Function function = functionParser.parseFunction(node, metadata, executionContext);
+        addNode(node, 0, function);
+        switch (ColumnType.tagOf(function.getType())) {
+            case ColumnType.INT:
+                return C_INT;
+            case ColumnType.LONG:
+                return C_LONG;
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return C_DOUBLE;
+            default:
+                return -1;
+        }
+    }
+
+    private void addNode(ExpressionNode node, int kind, Function constant) {
+        nodes.add(node);
+        nodeKinds.add(kind);
+        nodeConstants.add(constant);
+    }
+
+    private void emit(ExpressionNode node, int kind) {
+        switch (node.type) {
+            case ExpressionNode.LITERAL:
+                emitColumn(metadata.getColumnIndexQuiet(node.token));
+                break;
+            case ExpressionNode.CONSTANT:
+            case ExpressionNode.BIND_VARIABLE:
+                emitConstant(node, kind);
+                break;
+            default:
+                if (isNegativeConstant(node)) {
+                    emitConstant(node, kind);
+                    break;
+                }
+                if (node.paramCount == 1) {
+                    // not
+                    emit(node.rhs, 0);
+                    code.add(CompiledFilter.NOT);
+                    break;
+                }
+                if (SqlKeywords.isAndKeyword(node.token)) {
+                    emitBinary(node.lhs, node.rhs, 0, CompiledFilter.AND);
+                } else if (SqlKeywords.isOrKeyword(node.token)) {
+                    emitBinary(node.lhs, node.rhs, 0, CompiledFilter.OR);
+                } else {
+                    final int operandKind = nodeKinds.getQuick(indexOf(node));
+                    emitBinary(node.lhs, node.rhs, operandKind, opcode(node.token, operandKind));
+                }
+                break;
+        }
+    }
+
+    private void emitBinary(ExpressionNode lhs, ExpressionNode rhs, int kind, int opcode) {
+        emit(lhs, kind);
+        emit(rhs, kind);
+        code.add(opcode);
+        depth--;
+    }
+
+    private void emitColumn(int columnIndex) {
+        switch (ColumnType.tagOf(metadata.getColumnType(columnIndex))) {
+            case ColumnType.BYTE:
+                code.add(CompiledFilter.LOAD_I8);
+                break;
+            case ColumnType.SHORT:
+                code.add(CompiledFilter.LOAD_I16);
+                break;
+            case ColumnType.INT:
+                code.add(CompiledFilter.LOAD_I32);
+                break;
+            case ColumnType.FLOAT:
+                code.add(CompiledFilter.LOAD_F32);
+                break;
+            case ColumnType.DOUBLE:
+                code.add(CompiledFilter.LOAD_F64);
+                break;
+            case ColumnType.BOOLEAN:
+                code.add(CompiledFilter.LOAD_BOOL);
+                break;
+            default:
+                // long and timestamp
+                code.add(CompiledFilter.LOAD_I64);
+                break;
+        }
+        code.add(columnIndex);
+        push();
+    }
+
+    private void emitConstant(ExpressionNode node, int kind) {
+        final int index = indexOf(node);
+        switch (kind) {
+            case K_I32:
+                code.add(CompiledFilter.CONST_I32);
+                break;
+            case K_I64:
+                code.add(CompiledFilter.CONST_I64);
+                break;
+            case K_TIMESTAMP:
+                code.add(CompiledFilter.CONST_TIMESTAMP);
+                break;
+            default:
+                code.add(CompiledFilter.CONST_F64);
+                break;
+        }
+        code.add(constants.size());
+        constants.add(nodeConstants.getQuick(index));
+        // ownership is passed to the filter
+        nodeConstants.setQuick(index, null);
+        push();
+    }
+
+    private int indexOf(ExpressionNode node) {
+        for (int i = 0, n = nodes.size(); i < n; i++) {
+            if (nodes.getQuick(i) == node) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("node has not been analysed");
+    }
+
+    private static int opcode(CharSequence token, int kind) {
+        final boolean f64 = kind == K_F64;
+        final boolean i32 = kind == K_I32;
+        if (Chars.equals(token, '+')) {
+            return f64 ? CompiledFilter.ADD_F64 : i32 ? CompiledFilter.ADD_I32 : CompiledFilter.ADD_I64;
+        }
+        if (Chars.equals(token, '-')) {
+            return f64 ? CompiledFilter.SUB_F64 : i32 ? CompiledFilter.SUB_I32 : CompiledFilter.SUB_I64;
+        }
+        if (Chars.equals(token, '*')) {
+            return f64 ? CompiledFilter.MUL_F64 : i32 ? CompiledFilter.MUL_I32 : CompiledFilter.MUL_I64;
+        }
+        if (Chars.equals(token, '/')) {
+            return CompiledFilter.DIV_F64;
+        }
+        if (Chars.equals(token, '=')) {
+            return f64 ? CompiledFilter.EQ_F64 : CompiledFilter.EQ_I;
+        }
+        if (Chars.equals(token, "!=") || Chars.equals(token, "<>")) {
+            return f64 ? CompiledFilter.NE_F64 : CompiledFilter.NE_I;
+        }
+        if (Chars.equals(token, '<')) {
+            return f64 ? CompiledFilter.LT_F64 : i32 ? CompiledFilter.LT_I32 : CompiledFilter.LT_I64;
+        }
+        if (Chars.equals(token, "<=")) {
+            return f64 ? CompiledFilter.LE_F64 : i32 ? CompiledFilter.LE_I32 : CompiledFilter.LE_I64;
+        }
+        if (Chars.equals(token, '>')) {
+            return f64 ? CompiledFilter.GT_F64 : i32 ? CompiledFilter.GT_I32 : CompiledFilter.GT_I64;
+        }
+        assert Chars.equals(token, ">=");
+        return f64 ? CompiledFilter.GE_F64 : i32 ? CompiledFilter.GE_I32 : CompiledFilter.GE_I64;
+    }
+
+    private void push() {
+        if (++depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+}
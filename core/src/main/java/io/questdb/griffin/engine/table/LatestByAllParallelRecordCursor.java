@@ -0,0 +1,287 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.SymbolMapReader;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableReaderSelectedColumnRecord;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapRecord;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.griffin.SqlExecutionCircuitBreaker;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.RingQueue;
+import io.questdb.std.*;
+import io.questdb.tasks.LatestByScanTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-indexed LATEST BY that splits partitions into chunks of rows and scans them on the shared
+ * worker pool, see {@link LatestByScanJob}. Every worker records the latest row id of each key in
+ * its own map, maps are then merged into the owner map keeping the greatest row id.
+ * <p>
+ * When LATEST BY is on a single symbol column, chunks are not scanned anymore once every
+ * symbol key, including null, has been seen in a newer chunk.
+ */
+class LatestByAllParallelRecordCursor extends AbstractDescendingRecordListCursor {
+    private final Map ownerMap;
+    private final ObjList<Map> workerMaps;
+    private final ObjList<TableReaderSelectedColumnRecord> workerRecords;
+    private final RecordSink recordSink;
+    // copies keys of worker maps into the owner map
+    private final RecordSink mergeSink;
+    private final ObjList<LatestByScanEntry> entries = new ObjList<>();
+    // partition index, row lo and row hi of every chunk, newest chunk first
+    private final LongList chunks = new LongList();
+    private final int symbolColumnIndex;
+    private final int maxChunkRows;
+    private final AtomicInteger foundKeyCount = new AtomicInteger();
+    // greatest index of the chunk where one of the keys was seen first
+    private final AtomicInteger foundChunkIndex = new AtomicInteger();
+    private long[] foundKeys = new long[0];
+    private int foundKeyTarget;
+    private int sequence;
+
+    public LatestByAllParallelRecordCursor(
+            Map ownerMap,
+            ObjList<Map> workerMaps,
+            DirectLongList rows,
+            RecordSink recordSink,
+            RecordSink mergeSink,
+            @NotNull IntList columnIndexes,
+            int symbolColumnIndex,
+            int maxChunkRows
+    ) {
+        super(rows, columnIndexes);
+        this.ownerMap = ownerMap;
+        this.workerMaps = workerMaps;
+        this.recordSink = recordSink;
+        this.mergeSink = mergeSink;
+        this.symbolColumnIndex = symbolColumnIndex;
+        this.maxChunkRows = maxChunkRows;
+        final int workerCount = workerMaps.size();
+        this.workerRecords = new ObjList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workerRecords.add(new TableReaderSelectedColumnRecord(columnIndexes));
+        }
+    }
+
+    int getWorkerCount() {
+        return workerMaps.size();
+    }
+
+    Map getWorkerMap(int workerId) {
+        return workerId == AbstractParallelEntry.OWNER_WORKER_ID ? ownerMap : workerMaps.getQuick(workerId);
+    }
+
+    TableReaderSelectedColumnRecord getWorkerRecord(int workerId) {
+        return workerId == AbstractParallelEntry.OWNER_WORKER_ID ? recordA : workerRecords.getQuick(workerId);
+    }
+
+    /**
+     * Chunk is redundant when every symbol key has already been seen in one of the newer chunks.
+     */
+    boolean isChunkRedundant(int chunkIndex) {
+        return foundKeyTarget > 0 && foundKeyCount.get() >= foundKeyTarget && chunkIndex > foundChunkIndex.get();
+    }
+
+    void onKeyFound(TableReaderSelectedColumnRecord record, int chunkIndex) {
+        if (foundKeyTarget > 0) {
+            final int symbolKey = record.getInt(symbolColumnIndex);
+            final int slot = symbolKey == SymbolTable.VALUE_IS_NULL ? 0 : symbolKey + 1;
+            if (slot > -1 && slot < foundKeyTarget && Unsafe.cas(foundKeys, slot, 0L, 1L)) {
+                int current;
+                while ((current = foundChunkIndex.get()) < chunkIndex && !foundChunkIndex.compareAndSet(current, chunkIndex)) {
+                    // retry
+                }
+                foundKeyCount.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    protected void buildTreeMap(SqlExecutionContext executionContext) {
+        try {
+            final TableReader reader = dataFrameCursor.getTableReader();
+            ownerMap.clear();
+            recordA.of(reader);
+            for (int i = 0, n = workerMaps.size(); i < n; i++) {
+                workerMaps.getQuick(i).clear();
+                workerRecords.getQuick(i).of(reader);
+            }
+
+            // partitions are opened by the frame cursor, workers never open them
+            chunks.clear();
+            DataFrame frame;
+            while ((frame = dataFrameCursor.next()) != null) {
+                final int partitionIndex = frame.getPartitionIndex();
+                final long rowLo = frame.getRowLo();
+                for (long hi = frame.getRowHi(); hi > rowLo; hi -= maxChunkRows) {
+                    chunks.add(partitionIndex);
+                    chunks.add(Math.max(rowLo, hi - maxChunkRows));
+                    chunks.add(hi);
+                }
+            }
+
+            prepareFoundKeys(reader);
+            scan(executionContext);
+            merge(executionContext.getCircuitBreaker());
+
+            final RecordCursor mapCursor = ownerMap.getCursor();
+            final MapRecord mapRecord = ownerMap.getRecord();
+            while (mapCursor.hasNext()) {
+                rows.add(mapRecord.getValue().getLong(0));
+            }
+            // rows are read from the end, serial cursor lists them newest first
+            rows.sortAsUnsigned();
+            for (long lo = 0, hi = rows.size() - 1; lo < hi; lo++, hi--) {
+                final long tmp = rows.get(lo);
+                rows.set(lo, rows.get(hi));
+                rows.set(hi, tmp);
+            }
+        } finally {
+            ownerMap.clear();
+            for (int i = 0, n = workerMaps.size(); i < n; i++) {
+                workerMaps.getQuick(i).clear();
+            }
+        }
+    }
+
+    private void merge(SqlExecutionCircuitBreaker circuitBreaker) {
+        for (int i = 0, k = workerMaps.size(); i < k; i++) {
+            final Map srcMap = workerMaps.getQuick(i);
+            if (srcMap.size() == 0) {
+                continue;
+            }
+            final RecordCursor srcCursor = srcMap.getCursor();
+            final MapRecord srcRecord = srcMap.getRecord();
+            while (srcCursor.hasNext()) {
+                circuitBreaker.test();
+                final MapKey key = ownerMap.withKey();
+                mergeSink.copy(srcRecord, key);
+                final MapValue destValue = key.createValue();
+                final long rowId = srcRecord.getValue().getLong(0);
+                if (destValue.isNew() || destValue.getLong(0) < rowId) {
+                    destValue.putLong(0, rowId);
+                }
+            }
+        }
+    }
+
+    private void prepareFoundKeys(TableReader reader) {
+        foundKeyCount.set(0);
+        foundChunkIndex.set(0);
+        foundKeyTarget = 0;
+        if (symbolColumnIndex == -1) {
+            return;
+        }
+
+        final int columnIndex = columnIndexes.getQuick(symbolColumnIndex);
+        final SymbolMapReader symbolMapReader = reader.getSymbolMapReader(columnIndex);
+        // rows above column top read as null symbol, they are not reflected by symbol map
+        boolean nullPossible = symbolMapReader.containsNullValue();
+        for (int i = 0, n = chunks.size(); i < n && !nullPossible; i += 3) {
+            final int partitionIndex = (int) chunks.getQuick(i);
+            nullPossible = reader.getColumnTop(reader.getColumnBase(partitionIndex), columnIndex) > chunks.getQuick(i + 1);
+        }
+
+        // slot 0 is reserved for null, symbol keys are shifted by one
+        final int slotCount = symbolMapReader.getSymbolCount() + 1;
+        if (foundKeys.length < slotCount) {
+            foundKeys = new long[slotCount];
+        } else {
+            Arrays.fill(foundKeys, 0, slotCount, 0);
+        }
+        if (!nullPossible) {
+            foundKeys[0] = 1;
+        }
+        foundKeyCount.set(nullPossible ? 0 : 1);
+        foundKeyTarget = slotCount;
+    }
+
+    private void scan(SqlExecutionContext executionContext) {
+        final int chunkCount = chunks.size() / 3;
+        for (int i = entries.size(); i < chunkCount; i++) {
+            entries.add(new LatestByScanEntry(this, recordSink));
+        }
+
+        final MessageBus bus = executionContext.getMessageBus();
+        final RingQueue<LatestByScanTask> queue = bus.getLatestByScanQueue();
+        final MPSequence pubSeq = bus.getLatestByScanPubSeq();
+        final boolean dispatch = workerMaps.size() > 0;
+
+        for (int i = 0; i < chunkCount; i++) {
+            final LatestByScanEntry entry = entries.getQuick(i);
+            final int p = i * 3;
+            entry.of(sequence++, i, (int) chunks.getQuick(p), chunks.getQuick(p + 1), chunks.getQuick(p + 2));
+            if (dispatch) {
+                long seq;
+                do {
+                    seq = pubSeq.next();
+                } while (seq == -2);
+
+                if (seq > -1) {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+                // when queue is full the entry is left for this thread to scan
+            }
+        }
+
+        // unlike group by, this thread also works from the front, newer chunks
+        // find keys first and let older chunks be skipped sooner
+        final SqlExecutionCircuitBreaker circuitBreaker = executionContext.getCircuitBreaker();
+        int i = 0;
+        try {
+            for (; i < chunkCount; i++) {
+                circuitBreaker.test();
+                entries.getQuick(i).runOwned();
+            }
+        } catch (Throwable e) {
+            // workers must not be writing to maps of this cursor once we leave
+            for (; i < chunkCount; i++) {
+                entries.getQuick(i).cancel();
+            }
+            AbstractParallelEntry.awaitAll(entries, chunkCount);
+            throw e;
+        }
+
+        AbstractParallelEntry.awaitAll(entries, chunkCount);
+        for (int j = 0; j < chunkCount; j++) {
+            entries.getQuick(j).throwIfFailed();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.FastMap;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.sql.DataFrameCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.std.BytecodeAssembler;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Transient;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Unfiltered LATEST BY over non-indexed columns, scanned on the shared worker pool.
+ * See {@link LatestByAllParallelRecordCursor}.
+ */
+public class LatestByAllParallelRecordCursorFactory extends AbstractTreeSetRecordCursorFactory {
+    private final Map ownerMap;
+    private final ObjList<Map> workerMaps;
+
+    public LatestByAllParallelRecordCursorFactory(
+            @NotNull RecordMetadata metadata,
+            @NotNull CairoConfiguration configuration,
+            @NotNull DataFrameCursorFactory dataFrameCursorFactory,
+            @NotNull RecordSink recordSink,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull ColumnTypes keyTypes,
+            @NotNull IntList columnIndexes,
+            int symbolColumnIndex,
+            int workerCount
+    ) {
+        super(metadata, dataFrameCursorFactory, configuration);
+        final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+        valueTypes.add(ColumnType.LONG);
+
+        // map records expose values first and keys after them
+        final ArrayColumnTypes mapColumnTypes = new ArrayColumnTypes();
+        mapColumnTypes.add(ColumnType.LONG);
+        final ListColumnFilter mergeColumnFilter = new ListColumnFilter();
+        for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+            mapColumnTypes.add(keyTypes.getColumnType(i));
+            mergeColumnFilter.add(i + 2);
+        }
+        final RecordSink mergeSink = RecordSinkFactory.getInstance(asm, mapColumnTypes, mergeColumnFilter, false);
+
+        this.workerMaps = new ObjList<>(workerCount);
+        try {
+            this.ownerMap = createMap(configuration, keyTypes, valueTypes);
+            for (int i = 0; i < workerCount; i++) {
+                workerMaps.add(createMap(configuration, keyTypes, valueTypes));
+            }
+        } catch (Throwable e) {
+            Misc.freeObjList(workerMaps);
+            rows.close();
+            throw e;
+        }
+        this.cursor = new LatestByAllParallelRecordCursor(
+                ownerMap,
+                workerMaps,
+                rows,
+                recordSink,
+                mergeSink,
+                columnIndexes,
+                symbolColumnIndex,
+                configuration.getSqlPageFrameMaxRows()
+        );
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        Misc.free(ownerMap);
+        Misc.freeObjList(workerMaps);
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    private static FastMap createMap(CairoConfiguration configuration, ColumnTypes keyTypes, ColumnTypes valueTypes) {
+        return new FastMap(
+                configuration.getSqlMapPageSize(),
+                keyTypes,
+                valueTypes,
+                configuration.getSqlMapKeyCapacity(),
+                configuration.getSqlFastMapLoadFactor(),
+                configuration.getSqlMapMaxResizes()
+        );
+    }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.TableReaderSelectedColumnRecord;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.std.Rows;
+
+/**
+ * Scans single chunk of a partition from the newest row to the oldest and records the latest
+ * row id of every key in the map of the thread that executes the entry. Entry can be executed
+ * either by a worker, via {@link LatestByScanJob}, or by the thread that owns the cursor.
+ */
+public class LatestByScanEntry extends AbstractParallelEntry {
+    private final LatestByAllParallelRecordCursor cursor;
+    private final RecordSink recordSink;
+    private int chunkIndex;
+    private int partitionIndex;
+    private long rowLo;
+    private long rowHi;
+
+    LatestByScanEntry(LatestByAllParallelRecordCursor cursor, RecordSink recordSink) {
+        this.cursor = cursor;
+        this.recordSink = recordSink;
+    }
+
+    @Override
+    protected void execute(int workerId) {
+        if (cursor.isChunkRedundant(chunkIndex)) {
+            return;
+        }
+        final Map map = cursor.getWorkerMap(workerId);
+        final TableReaderSelectedColumnRecord record = cursor.getWorkerRecord(workerId);
+        record.jumpTo(partitionIndex, rowHi - 1);
+        for (long row = rowHi - 1; row >= rowLo; row--) {
+            record.setRecordIndex(row);
+            final MapKey key = map.withKey();
+            key.put(record, recordSink);
+            final MapValue value = key.createValue();
+            final long rowId = Rows.toRowID(partitionIndex, row);
+            if (value.isNew()) {
+                value.putLong(0, rowId);
+                cursor.onKeyFound(record, chunkIndex);
+            } else if (value.getLong(0) < rowId) {
+                // map may already hold key from an older chunk this thread scanned earlier
+                value.putLong(0, rowId);
+            }
+        }
+    }
+
+    @Override
+    protected boolean isWorkerSupported(int workerId) {
+        // worker ids of a foreign pool can exceed the number of maps we allocated
+        return workerId < cursor.getWorkerCount();
+    }
+
+    @Override
+    protected CairoException putFailure(CairoException e) {
+        return e.put("latest by scan failed [partitionIndex=").put(partitionIndex);
+    }
+
+    void of(int sequence, int chunkIndex, int partitionIndex, long rowLo, long rowHi) {
+        this.chunkIndex = chunkIndex;
+        this.partitionIndex = partitionIndex;
+        this.rowLo = rowLo;
+        this.rowHi = rowHi;
+        of(sequence);
+    }
+}
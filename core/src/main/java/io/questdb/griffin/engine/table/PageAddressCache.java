@@ -0,0 +1,110 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.std.LongList;
+import io.questdb.std.Mutable;
+import io.questdb.std.Unsafe;
+
+/**
+ * Keeps column page addresses of every frame returned by a page frame cursor. Addresses
+ * remain valid for as long as the cursor's table reader is open, which allows records
+ * to be positioned on any previously seen frame without re-reading the cursor.
+ * <p>
+ * Frames can be added in parts, in which case each part is addressed as a frame of its own.
+ */
+public class PageAddressCache implements Mutable {
+    private final LongList pageAddresses = new LongList();
+    private final LongList indexPageAddresses = new LongList();
+    private final LongList frameSizes = new LongList();
+    private int columnCount;
+
+    public void add(PageFrame frame) {
+        add(frame, 0, frame.getPartitionHi() - frame.getPartitionLo());
+    }
+
+    /**
+     * Adds rows [rowLo, rowHi) of the page frame, row numbers are relative to the start of the frame.
+     *
+     * @param frame page frame
+     * @param rowLo first row, inclusive
+     * @param rowHi last row, exclusive
+     */
+    public void add(PageFrame frame, long rowLo, long rowHi) {
+        for (int i = 0; i < columnCount; i++) {
+            final long pageAddress = frame.getPageAddress(i);
+            if (pageAddress == 0) {
+                // column top
+                pageAddresses.add(0);
+                indexPageAddresses.add(0);
+                continue;
+            }
+            final int shr = frame.getColumnShiftBits(i);
+            if (shr > -1) {
+                pageAddresses.add(pageAddress + (rowLo << shr));
+                indexPageAddresses.add(0);
+            } else {
+                final long indexPageAddress = frame.getIndexPageAddress(i);
+                final long offset = Unsafe.getUnsafe().getLong(indexPageAddress + (rowLo << 3)) - Unsafe.getUnsafe().getLong(indexPageAddress);
+                pageAddresses.add(pageAddress + offset);
+                indexPageAddresses.add(indexPageAddress + (rowLo << 3));
+            }
+        }
+        frameSizes.add(rowHi - rowLo);
+    }
+
+    @Override
+    public void clear() {
+        pageAddresses.clear();
+        indexPageAddresses.clear();
+        frameSizes.clear();
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getFrameCount() {
+        return frameSizes.size();
+    }
+
+    public long getFrameSize(int frameIndex) {
+        return frameSizes.getQuick(frameIndex);
+    }
+
+    public long getIndexPageAddress(int frameIndex, int columnIndex) {
+        return indexPageAddresses.getQuick(frameIndex * columnCount + columnIndex);
+    }
+
+    public long getPageAddress(int frameIndex, int columnIndex) {
+        return pageAddresses.getQuick(frameIndex * columnCount + columnIndex);
+    }
+
+    public void of(int columnCount) {
+        this.columnCount = columnCount;
+        clear();
+    }
+}
@@ -0,0 +1,305 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.std.*;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.DirectCharSequence;
+
+/**
+ * Record that reads column values directly from page addresses held in {@link PageAddressCache}.
+ * Instances do not share mutable state, so each thread can filter its own page frame using
+ * a dedicated instance. Row id is composed of frame index and row index within the frame.
+ */
+public class PageAddressCacheRecord implements Record {
+    private final DirectCharSequence csviewA = new DirectCharSequence();
+    private final DirectCharSequence csviewB = new DirectCharSequence();
+    private final DirectBinarySequence bsview = new DirectBinarySequence();
+    private final Long256Impl long256A = new Long256Impl();
+    private final Long256Impl long256B = new Long256Impl();
+    private PageAddressCache pageAddressCache;
+    private SymbolTableSource symbolTableSource;
+    private int frameIndex;
+    private long rowIndex;
+
+    @Override
+    public BinarySequence getBin(int columnIndex) {
+        final long address = getVarAddress(columnIndex);
+        if (address == 0) {
+            return null;
+        }
+        final long len = Unsafe.getUnsafe().getLong(address);
+        if (len > -1) {
+            return bsview.of(address + Long.BYTES, len);
+        }
+        return null;
+    }
+
+    @Override
+    public long getBinLen(int columnIndex) {
+        final long address = getVarAddress(columnIndex);
+        if (address == 0) {
+            return TableUtils.NULL_LEN;
+        }
+        return Unsafe.getUnsafe().getLong(address);
+    }
+
+    @Override
+    public boolean getBool(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        return address != 0 && Unsafe.getUnsafe().getByte(address + rowIndex) == 1;
+    }
+
+    @Override
+    public byte getByte(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return 0;
+        }
+        return Unsafe.getUnsafe().getByte(address + rowIndex);
+    }
+
+    @Override
+    public char getChar(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return 0;
+        }
+        return Unsafe.getUnsafe().getChar(address + (rowIndex << 1));
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return Double.NaN;
+        }
+        return Unsafe.getUnsafe().getDouble(address + (rowIndex << 3));
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return Float.NaN;
+        }
+        return Unsafe.getUnsafe().getFloat(address + (rowIndex << 2));
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return Numbers.INT_NaN;
+        }
+        return Unsafe.getUnsafe().getInt(address + (rowIndex << 2));
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return Numbers.LONG_NaN;
+        }
+        return Unsafe.getUnsafe().getLong(address + (rowIndex << 3));
+    }
+
+    @Override
+    public void getLong256(int columnIndex, CharSink sink) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address != 0) {
+            final long p = address + (rowIndex << 5);
+            Numbers.appendLong256(
+                    Unsafe.getUnsafe().getLong(p),
+                    Unsafe.getUnsafe().getLong(p + Long.BYTES),
+                    Unsafe.getUnsafe().getLong(p + Long.BYTES * 2),
+                    Unsafe.getUnsafe().getLong(p + Long.BYTES * 3),
+                    sink
+            );
+        }
+    }
+
+    @Override
+    public Long256 getLong256A(int columnIndex) {
+        return getLong256(columnIndex, long256A);
+    }
+
+    @Override
+    public Long256 getLong256B(int columnIndex) {
+        return getLong256(columnIndex, long256B);
+    }
+
+    @Override
+    public long getRowId() {
+        return Rows.toRowID(frameIndex, rowIndex);
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return 0;
+        }
+        return Unsafe.getUnsafe().getShort(address + (rowIndex << 1));
+    }
+
+    @Override
+    public CharSequence getStr(int columnIndex) {
+        return getStr(columnIndex, csviewA);
+    }
+
+    @Override
+    public CharSequence getStrB(int columnIndex) {
+        return getStr(columnIndex, csviewB);
+    }
+
+    @Override
+    public int getStrLen(int columnIndex) {
+        final long address = getVarAddress(columnIndex);
+        if (address == 0) {
+            return TableUtils.NULL_LEN;
+        }
+        return Unsafe.getUnsafe().getInt(address);
+    }
+
+    @Override
+    public CharSequence getSym(int columnIndex) {
+        return symbolTableSource.getSymbolTable(columnIndex).valueOf(getInt(columnIndex));
+    }
+
+    @Override
+    public CharSequence getSymB(int columnIndex) {
+        return symbolTableSource.getSymbolTable(columnIndex).valueBOf(getInt(columnIndex));
+    }
+
+    @Override
+    public byte getGeoByte(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return GeoHashes.BYTE_NULL;
+        }
+        return Unsafe.getUnsafe().getByte(address + rowIndex);
+    }
+
+    @Override
+    public short getGeoShort(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return GeoHashes.SHORT_NULL;
+        }
+        return Unsafe.getUnsafe().getShort(address + (rowIndex << 1));
+    }
+
+    @Override
+    public int getGeoInt(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return GeoHashes.INT_NULL;
+        }
+        return Unsafe.getUnsafe().getInt(address + (rowIndex << 2));
+    }
+
+    @Override
+    public long getGeoLong(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return GeoHashes.NULL;
+        }
+        return Unsafe.getUnsafe().getLong(address + (rowIndex << 3));
+    }
+
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    public PageAddressCache getPageAddressCache() {
+        return pageAddressCache;
+    }
+
+    public void of(PageAddressCache pageAddressCache, SymbolTableSource symbolTableSource) {
+        this.pageAddressCache = pageAddressCache;
+        this.symbolTableSource = symbolTableSource;
+        this.frameIndex = 0;
+        this.rowIndex = 0;
+    }
+
+    public void setFrameIndex(int frameIndex) {
+        this.frameIndex = frameIndex;
+    }
+
+    public void setRowIndex(long rowIndex) {
+        this.rowIndex = rowIndex;
+    }
+
+    public void setRowId(long rowId) {
+        this.frameIndex = Rows.toPartitionIndex(rowId);
+        this.rowIndex = Rows.toLocalRowID(rowId);
+    }
+
+    private Long256 getLong256(int columnIndex, Long256Impl long256) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return Long256Impl.NULL_LONG256;
+        }
+        final long p = address + (rowIndex << 5);
+        long256.setAll(
+                Unsafe.getUnsafe().getLong(p),
+                Unsafe.getUnsafe().getLong(p + Long.BYTES),
+                Unsafe.getUnsafe().getLong(p + Long.BYTES * 2),
+                Unsafe.getUnsafe().getLong(p + Long.BYTES * 3)
+        );
+        return long256;
+    }
+
+    private CharSequence getStr(int columnIndex, DirectCharSequence view) {
+        final long address = getVarAddress(columnIndex);
+        if (address == 0) {
+            return null;
+        }
+        final int len = Unsafe.getUnsafe().getInt(address);
+        if (len != TableUtils.NULL_LEN) {
+            final long lo = address + Vm.STRING_LENGTH_BYTES;
+            return view.of(lo, lo + ((long) len << 1));
+        }
+        return null;
+    }
+
+    // var-length page address points at the first value of the frame, whereas index page holds
+    // absolute offsets of values in the column file, hence the offset of the first value is subtracted
+    private long getVarAddress(int columnIndex) {
+        final long address = pageAddressCache.getPageAddress(frameIndex, columnIndex);
+        if (address == 0) {
+            return 0;
+        }
+        final long indexAddress = pageAddressCache.getIndexPageAddress(frameIndex, columnIndex);
+        final long offset = Unsafe.getUnsafe().getLong(indexAddress + (rowIndex << 3)) - Unsafe.getUnsafe().getLong(indexAddress);
+        return address + offset;
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.sql.Function;
+import io.questdb.griffin.engine.AbstractParallelEntry;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+
+import java.io.Closeable;
+
+/**
+ * Filters single page frame into a list of matching row indexes. Entry can be executed either
+ * by a worker, via {@link PageFrameFilterJob}, or by the thread that owns the cursor.
+ */
+public class PageFrameFilterEntry extends AbstractParallelEntry implements Closeable {
+    private final DirectLongList rows;
+    private final ObjList<Function> workerFilters;
+    private final ObjList<PageAddressCacheRecord> workerRecords;
+    private final Function ownerFilter;
+    private final PageAddressCacheRecord ownerRecord;
+    private int frameIndex;
+    private long frameRowCount;
+
+    public PageFrameFilterEntry(
+            ObjList<Function> workerFilters,
+            ObjList<PageAddressCacheRecord> workerRecords,
+            Function ownerFilter,
+            PageAddressCacheRecord ownerRecord,
+            long rowsCapacity
+    ) {
+        this.workerFilters = workerFilters;
+        this.workerRecords = workerRecords;
+        this.ownerFilter = ownerFilter;
+        this.ownerRecord = ownerRecord;
+        this.rows = new DirectLongList(rowsCapacity);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(rows);
+    }
+
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    public DirectLongList getRows() {
+        return rows;
+    }
+
+    @Override
+    protected void execute(int workerId) {
+        if (workerId == OWNER_WORKER_ID) {
+            filter(ownerFilter, ownerRecord);
+        } else {
+            filter(workerFilters.getQuick(workerId), workerRecords.getQuick(workerId));
+        }
+    }
+
+    @Override
+    protected boolean isWorkerSupported(int workerId) {
+        return workerId < workerFilters.size();
+    }
+
+    @Override
+    protected CairoException putFailure(CairoException e) {
+        return e.put("page frame filter failed [frameIndex=").put(frameIndex);
+    }
+
+    void of(int sequence, int frameIndex, long frameRowCount) {
+        this.frameIndex = frameIndex;
+        this.frameRowCount = frameRowCount;
+        this.rows.clear();
+        of(sequence);
+    }
+
+    private void filter(Function filter, PageAddressCacheRecord record) {
+        if (filter instanceof CompiledFilter) {
+            ((CompiledFilter) filter).filter(record.getPageAddressCache(), frameIndex, frameRowCount, rows);
+        } else {
+            record.setFrameIndex(frameIndex);
+            for (long r = 0; r < frameRowCount; r++) {
+                record.setRowIndex(r);
+                if (filter.getBool(record)) {
+                    rows.add(r);
+                }
+            }
+        }
+    }
+}
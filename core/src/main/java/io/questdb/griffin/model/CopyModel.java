@@ -31,12 +31,36 @@ import io.questdb.std.str.CharSink;
 
 public class CopyModel implements ExecutionModel, Mutable, Sinkable {
     public static final ObjectFactory<CopyModel> FACTORY = CopyModel::new;
+    // delimited text, delimiter and quoting are detected by text loader
+    public static final int FORMAT_CSV = 0;
+    // PostgreSQL text format, backslash escapes and \N nulls
+    public static final int FORMAT_TEXT = 1;
+    public static final int FORMAT_BINARY = 2;
     private ExpressionNode tableName;
     private ExpressionNode fileName;
     private boolean header;
+    private ExpressionNode partitionBy;
+    private ExpressionNode timestampColumnName;
+    private byte delimiter = -1;
+    private int format = FORMAT_CSV;
 
     @Override
     public void clear() {
+        tableName = null;
+        fileName = null;
+        header = false;
+        partitionBy = null;
+        timestampColumnName = null;
+        delimiter = -1;
+        format = FORMAT_CSV;
+    }
+
+    public byte getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(byte delimiter) {
+        this.delimiter = delimiter;
     }
 
     public ExpressionNode getFileName() {
@@ -52,6 +76,14 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         return ExecutionModel.COPY;
     }
 
+    public ExpressionNode getPartitionBy() {
+        return partitionBy;
+    }
+
+    public void setPartitionBy(ExpressionNode partitionBy) {
+        this.partitionBy = partitionBy;
+    }
+
     public ExpressionNode getTableName() {
         return tableName;
     }
@@ -60,6 +92,26 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         this.tableName = tableName;
     }
 
+    public ExpressionNode getTimestampColumnName() {
+        return timestampColumnName;
+    }
+
+    public void setTimestampColumnName(ExpressionNode timestampColumnName) {
+        this.timestampColumnName = timestampColumnName;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    public void setFormat(int format) {
+        this.format = format;
+    }
+
+    public boolean isBinary() {
+        return format == FORMAT_BINARY;
+    }
+
     public boolean isHeader() {
         return header;
     }
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.metrics;
+
+import io.questdb.std.Chars;
+import io.questdb.std.ConcurrentHashMap;
+import io.questdb.std.str.CharSink;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+class GaugeWithOneLabelImpl implements GaugeWithOneLabel {
+    private final CharSequence name;
+    private final CharSequence labelName0;
+    // label values, e.g. table names, are not known upfront, they are added on first update
+    private final ConcurrentHashMap<AtomicLong> values = new ConcurrentHashMap<>();
+
+    GaugeWithOneLabelImpl(CharSequence name, CharSequence labelName0) {
+        this.name = name;
+        this.labelName0 = labelName0;
+    }
+
+    @Override
+    public long getValue(CharSequence labelValue0) {
+        final AtomicLong value = values.get(labelValue0);
+        return value != null ? value.get() : 0;
+    }
+
+    @Override
+    public void remove(CharSequence labelValue0) {
+        values.remove(labelValue0);
+    }
+
+    @Override
+    public void scrapeIntoPrometheus(CharSink sink) {
+        sink.put(PrometheusFormatUtils.TYPE_PREFIX);
+        sink.put(name);
+        sink.put(" gauge\n");
+        for (Map.Entry<CharSequence, AtomicLong> e : values.entrySet()) {
+            sink.put(PrometheusFormatUtils.METRIC_NAME_PREFIX);
+            sink.put(name);
+            sink.put('{');
+            PrometheusFormatUtils.appendLabel(sink, labelName0, e.getKey());
+            sink.put('}');
+            PrometheusFormatUtils.appendSampleLineSuffix(sink, e.getValue().get());
+        }
+        PrometheusFormatUtils.appendNewLine(sink);
+    }
+
+    @Override
+    public void setValue(CharSequence labelValue0, long value) {
+        AtomicLong holder = values.get(labelValue0);
+        if (holder == null) {
+            holder = new AtomicLong();
+            final AtomicLong existing = values.putIfAbsent(Chars.toString(labelValue0), holder);
+            if (existing != null) {
+                holder = existing;
+            }
+        }
+        holder.set(value);
+    }
+}
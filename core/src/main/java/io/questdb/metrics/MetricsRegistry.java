@@ -38,5 +38,7 @@ public interface MetricsRegistry extends Scrapable {
 
     Gauge newGauge(int memoryTag);
 
+    GaugeWithOneLabel newGauge(CharSequence name, CharSequence labelName0);
+
     Gauge newVirtualGauge(CharSequence name, VirtualGauge.StatProvider provider);
 }
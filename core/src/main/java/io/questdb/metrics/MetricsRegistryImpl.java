@@ -67,6 +67,13 @@ public class MetricsRegistryImpl implements MetricsRegistry {
         return gauge;
     }
 
+    @Override
+    public GaugeWithOneLabel newGauge(CharSequence name, CharSequence labelName0) {
+        GaugeWithOneLabel gauge = new GaugeWithOneLabelImpl(name, labelName0);
+        metrics.add(gauge);
+        return gauge;
+    }
+
     @Override
     public Gauge newVirtualGauge(CharSequence _name, VirtualGauge.StatProvider provider) {
         VirtualGauge gauge = new VirtualGauge(_name, provider);
@@ -26,7 +26,7 @@ package io.questdb.metrics;
 
 import io.questdb.std.str.CharSink;
 
-class NullGauge implements Gauge {
+class NullGauge implements Gauge, GaugeWithOneLabel {
     public static final NullGauge INSTANCE = new NullGauge();
 
     private NullGauge() {
@@ -40,7 +40,20 @@ class NullGauge implements Gauge {
     public void dec() {
     }
 
+    @Override
+    public long getValue(CharSequence labelValue0) {
+        return 0;
+    }
+
+    @Override
+    public void remove(CharSequence labelValue0) {
+    }
+
     @Override
     public void scrapeIntoPrometheus(CharSink sink) {
     }
+
+    @Override
+    public void setValue(CharSequence labelValue0, long value) {
+    }
 }
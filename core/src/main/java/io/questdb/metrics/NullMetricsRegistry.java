@@ -55,6 +55,11 @@ public class NullMetricsRegistry implements MetricsRegistry {
         return NullGauge.INSTANCE;
     }
 
+    @Override
+    public GaugeWithOneLabel newGauge(CharSequence name, CharSequence labelName0) {
+        return NullGauge.INSTANCE;
+    }
+
     @Override
     public Gauge newVirtualGauge(CharSequence name, VirtualGauge.StatProvider provider) {
         return NullGauge.INSTANCE;
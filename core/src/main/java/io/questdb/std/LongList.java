@@ -267,7 +267,10 @@ public class LongList implements Mutable, LongVec {
 
     @Override
     public LongVec newInstance() {
-        return new LongList(size());
+        // merge sort writes into the copy by index
+        final LongList copy = new LongList(size());
+        copy.setPos(size());
+        return copy;
     }
 
     /**
@@ -24,12 +24,19 @@
 
 package io.questdb.std;
 
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.vm.SpillAllocator;
 import io.questdb.griffin.engine.LimitOverflowException;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
+import io.questdb.std.str.Path;
 
 import java.io.Closeable;
 
+/**
+ * Fixed size pages on the native heap. With a spill root, pages beyond the memory budget are
+ * mapped from a temporary file, which is removed when pages are closed.
+ */
 public class MemoryPages implements Closeable, Mutable {
 
     private static final Log LOG = LogFactory.getLog(MemoryPages.class);
@@ -41,12 +48,28 @@ public class MemoryPages implements Closeable, Mutable {
     private long cachePageHi;
     private long cachePageLo;
     private final int maxPages;
+    private final FilesFacade ff;
+    private final CharSequence spillRoot;
+    private final long ramPages;
+    private final long spillPageSize;
+    private Path path;
+    private long spillFd = -1;
 
     public MemoryPages(long pageSize, int maxPages) {
+        this(pageSize, maxPages, FilesFacadeImpl.INSTANCE, null, 0);
+    }
+
+    public MemoryPages(long pageSize, int maxPages, FilesFacade ff, CharSequence spillRoot, long spillMemoryBudget) {
         this.pageSize = Numbers.ceilPow2(pageSize);
         this.bits = Numbers.msb(this.pageSize);
         this.mask = this.pageSize - 1;
-        this.maxPages = maxPages;
+        // spilled pages are bounded by the disk
+        this.maxPages = spillRoot == null ? maxPages : Integer.MAX_VALUE;
+        this.ff = ff;
+        this.spillRoot = spillRoot;
+        this.ramPages = spillRoot == null ? Long.MAX_VALUE : Math.max(1, spillMemoryBudget >>> bits);
+        // mmap offsets have to be aligned to OS page
+        this.spillPageSize = Math.max(this.pageSize, ff.getPageSize());
         allocate0(0);
     }
 
@@ -76,10 +99,26 @@ public class MemoryPages implements Closeable, Mutable {
         for (int i = 0; i < pages.size(); i++) {
             long address = pages.getQuick(i);
             if (address != 0) {
-                Unsafe.free(address, pageSize, MemoryTag.NATIVE_TREE_CHAIN);
+                if (i < ramPages) {
+                    Unsafe.free(address, pageSize, MemoryTag.NATIVE_TREE_CHAIN);
+                } else {
+                    ff.munmap(address, spillPageSize, MemoryTag.MMAP_DEFAULT);
+                }
             }
         }
         pages.clear();
+        if (spillFd != -1) {
+            ff.close(spillFd);
+            spillFd = -1;
+            if (!ff.remove(path)) {
+                LOG.error().$("could not remove spill file [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+        }
+        path = Misc.free(path);
+    }
+
+    public boolean isSpilled() {
+        return spillFd != -1;
     }
 
     public long size() {
@@ -96,11 +135,27 @@ public class MemoryPages implements Closeable, Mutable {
         }
 
         if (index >= pages.size()) {
-            pages.extendAndSet((int) index, Unsafe.malloc(pageSize, MemoryTag.NATIVE_TREE_CHAIN));
-            LOG.debug().$("new page [size=").$(pageSize).$(']').$();
+            if (index < ramPages) {
+                pages.extendAndSet((int) index, Unsafe.malloc(pageSize, MemoryTag.NATIVE_TREE_CHAIN));
+                LOG.debug().$("new page [size=").$(pageSize).$(']').$();
+            } else {
+                pages.extendAndSet((int) index, mapSpillPage(index));
+            }
         }
 
         cachePageLo = index << bits;
         cachePageHi = cachePageLo + pageSize;
     }
-}
\ No newline at end of file
+
+    private long mapSpillPage(long index) {
+        if (spillFd == -1) {
+            if (path == null) {
+                path = new Path();
+            }
+            SpillAllocator.nextSpillFile(path, spillRoot);
+            spillFd = TableUtils.openRW(ff, path, LOG);
+            LOG.info().$("spilling to disk [path=").$(path).$(", budget=").$(ramPages * pageSize).$(']').$();
+        }
+        return TableUtils.mapRW(ff, spillFd, spillPageSize, (index - ramPages) * spillPageSize, MemoryTag.MMAP_DEFAULT);
+    }
+}
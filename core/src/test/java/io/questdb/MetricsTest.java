@@ -134,6 +134,13 @@ public class MetricsTest {
             return gauge;
         }
 
+        @Override
+        public GaugeWithOneLabel newGauge(CharSequence name, CharSequence labelName0) {
+            addMetricName(name);
+            addLabelNames(name, Collections.singletonList(labelName0));
+            return delegate.newGauge(name, labelName0);
+        }
+
         @Override
         public Gauge newVirtualGauge(CharSequence name, VirtualGauge.StatProvider provider) {
             addMetricName(name);
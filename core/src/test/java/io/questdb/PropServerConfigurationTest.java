@@ -134,7 +134,17 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(64, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getCircuitBreakerConfiguration().getBufferSize());
 
         Assert.assertEquals(CommitMode.NOSYNC, configuration.getCairoConfiguration().getCommitMode());
+        Assert.assertFalse(configuration.getCairoConfiguration().isGroupCommitEnabled());
+        Assert.assertEquals(256, configuration.getCairoConfiguration().getGroupCommitQueueCapacity());
+        Assert.assertEquals(0, configuration.getCairoConfiguration().getGroupCommitWindowUs());
+        Assert.assertTrue(configuration.getCairoConfiguration().isParallelColumnSyncEnabled());
+        Assert.assertEquals(32, configuration.getCairoConfiguration().getParallelColumnSyncThreshold());
+        Assert.assertEquals(64, configuration.getCairoConfiguration().getColumnSyncQueueCapacity());
         Assert.assertEquals(2097152, configuration.getCairoConfiguration().getSqlCopyBufferSize());
+        Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelCopyEnabled());
+        Assert.assertEquals(64 * 1024 * 1024, configuration.getCairoConfiguration().getSqlCopyMinChunkSize());
+        Assert.assertEquals(64 * 1024 * 1024, configuration.getCairoConfiguration().getDecompressedPageCacheSize());
+        Assert.assertEquals(32, configuration.getCairoConfiguration().getSqlCopyQueueCapacity());
         Assert.assertEquals(32, configuration.getCairoConfiguration().getCopyPoolCapacity());
         Assert.assertEquals(5, configuration.getCairoConfiguration().getCreateAsSelectRetryCount());
         Assert.assertEquals("fast", configuration.getCairoConfiguration().getDefaultMapType());
@@ -157,6 +167,7 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(4096, configuration.getCairoConfiguration().getSqlColumnPoolCapacity());
         Assert.assertEquals(0.7, configuration.getCairoConfiguration().getSqlCompactMapLoadFactor(), 0.000001);
         Assert.assertEquals(8192, configuration.getCairoConfiguration().getSqlExpressionPoolCapacity());
+        Assert.assertEquals(256, configuration.getCairoConfiguration().getSqlFactoryCacheCapacity());
         Assert.assertEquals(0.5, configuration.getCairoConfiguration().getSqlFastMapLoadFactor(), 0.0000001);
         Assert.assertEquals(64, configuration.getCairoConfiguration().getSqlJoinContextPoolCapacity());
         Assert.assertEquals(2048, configuration.getCairoConfiguration().getSqlLexerPoolCapacity());
@@ -176,8 +187,24 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(Integer.MAX_VALUE, configuration.getCairoConfiguration().getSqlHashJoinLightValueMaxPages());
         Assert.assertEquals(16 * 1024 * 1024, configuration.getCairoConfiguration().getSqlSortValuePageSize());
         Assert.assertEquals(Integer.MAX_VALUE, configuration.getCairoConfiguration().getSqlSortValueMaxPages());
+        Assert.assertNull(configuration.getCairoConfiguration().getSqlSpillRoot());
+        Assert.assertEquals(256 * 1024 * 1024, configuration.getCairoConfiguration().getSqlSpillMemoryBudget());
         Assert.assertEquals(10000, configuration.getCairoConfiguration().getWorkStealTimeoutNanos());
         Assert.assertTrue(configuration.getCairoConfiguration().isParallelIndexingEnabled());
+        Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelFilterEnabled());
+        Assert.assertTrue(configuration.getCairoConfiguration().isSqlCompiledFilterEnabled());
+        Assert.assertEquals(64, configuration.getCairoConfiguration().getPageFrameFilterQueueCapacity());
+        Assert.assertEquals(1_000_000, configuration.getCairoConfiguration().getSqlPageFrameMaxRows());
+        Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelGroupByEnabled());
+        Assert.assertEquals(64, configuration.getCairoConfiguration().getPageFrameGroupByQueueCapacity());
+        Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelHashJoinEnabled());
+        Assert.assertEquals(64, configuration.getCairoConfiguration().getHashJoinBuildQueueCapacity());
+        Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelLatestByEnabled());
+        Assert.assertEquals(64, configuration.getCairoConfiguration().getLatestByScanQueueCapacity());
+        Assert.assertFalse(configuration.getCairoConfiguration().isWalEnabled());
+        Assert.assertEquals(16 * 1024 * 1024, configuration.getCairoConfiguration().getWalSegmentRolloverSize());
+        Assert.assertTrue(configuration.getCairoConfiguration().isZoneMapEnabled());
+        Assert.assertEquals(64 * 1024, configuration.getCairoConfiguration().getZoneMapBlockRowCount());
         Assert.assertEquals(16 * 1024, configuration.getCairoConfiguration().getSqlJoinMetadataPageSize());
         Assert.assertEquals(Integer.MAX_VALUE, configuration.getCairoConfiguration().getSqlJoinMetadataMaxResizes());
         Assert.assertEquals(64, configuration.getCairoConfiguration().getAnalyticColumnPoolCapacity());
@@ -250,6 +277,8 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(10_000_000, configuration.getLineTcpReceiverConfiguration().getNUpdatesPerLoadRebalance());
         Assert.assertEquals(1.9, configuration.getLineTcpReceiverConfiguration().getMaxLoadRatio(), 0.001);
         Assert.assertEquals(30_000, configuration.getLineTcpReceiverConfiguration().getMaintenanceInterval());
+        Assert.assertFalse(configuration.getLineTcpReceiverConfiguration().isCommitLagAdaptive());
+        Assert.assertEquals(10_000, configuration.getLineTcpReceiverConfiguration().getCommitVisibilitySla());
         Assert.assertEquals(PartitionBy.DAY, configuration.getLineTcpReceiverConfiguration().getDefaultPartitionBy());
         Assert.assertEquals(0, configuration.getLineTcpReceiverConfiguration().getAggressiveReadRetryCount());
         Assert.assertEquals(10_000, configuration.getLineTcpReceiverConfiguration().getWriterIdleTimeout());
@@ -486,6 +515,10 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(2_000, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getConnectionCheckFrequency());
             Assert.assertEquals(4, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getFloatScale());
             Assert.assertEquals(4194304, configuration.getCairoConfiguration().getSqlCopyBufferSize());
+            Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelCopyEnabled());
+            Assert.assertEquals(16 * 1024 * 1024, configuration.getCairoConfiguration().getSqlCopyMinChunkSize());
+            Assert.assertEquals(8 * 1024 * 1024, configuration.getCairoConfiguration().getDecompressedPageCacheSize());
+            Assert.assertEquals(16, configuration.getCairoConfiguration().getSqlCopyQueueCapacity());
             Assert.assertEquals(64, configuration.getCairoConfiguration().getCopyPoolCapacity());
             Assert.assertSame(FilesFacadeImpl.INSTANCE, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getFilesFacade());
             Assert.assertEquals("Keep-Alive: timeout=10, max=50000" + Misc.EOL, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getKeepAliveHeader());
@@ -493,6 +526,12 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(3, configuration.getCairoConfiguration().getFloatToStrCastScale());
 
             Assert.assertEquals(CommitMode.ASYNC, configuration.getCairoConfiguration().getCommitMode());
+            Assert.assertTrue(configuration.getCairoConfiguration().isGroupCommitEnabled());
+            Assert.assertEquals(128, configuration.getCairoConfiguration().getGroupCommitQueueCapacity());
+            Assert.assertEquals(50, configuration.getCairoConfiguration().getGroupCommitWindowUs());
+            Assert.assertFalse(configuration.getCairoConfiguration().isParallelColumnSyncEnabled());
+            Assert.assertEquals(16, configuration.getCairoConfiguration().getParallelColumnSyncThreshold());
+            Assert.assertEquals(32, configuration.getCairoConfiguration().getColumnSyncQueueCapacity());
             Assert.assertEquals(12, configuration.getCairoConfiguration().getCreateAsSelectRetryCount());
             Assert.assertEquals("compact", configuration.getCairoConfiguration().getDefaultMapType());
             Assert.assertTrue(configuration.getCairoConfiguration().getDefaultSymbolCacheFlag());
@@ -512,6 +551,7 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(2048, configuration.getCairoConfiguration().getSqlColumnPoolCapacity());
             Assert.assertEquals(0.8, configuration.getCairoConfiguration().getSqlCompactMapLoadFactor(), 0.000001);
             Assert.assertEquals(1024, configuration.getCairoConfiguration().getSqlExpressionPoolCapacity());
+            Assert.assertEquals(32, configuration.getCairoConfiguration().getSqlFactoryCacheCapacity());
             Assert.assertEquals(0.3, configuration.getCairoConfiguration().getSqlFastMapLoadFactor(), 0.0000001);
             Assert.assertEquals(32, configuration.getCairoConfiguration().getSqlJoinContextPoolCapacity());
             Assert.assertEquals(1024, configuration.getCairoConfiguration().getSqlLexerPoolCapacity());
@@ -531,8 +571,24 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(1025, configuration.getCairoConfiguration().getSqlHashJoinLightValueMaxPages());
             Assert.assertEquals(4 * 1024 * 1024, configuration.getCairoConfiguration().getSqlSortValuePageSize());
             Assert.assertEquals(1028, configuration.getCairoConfiguration().getSqlSortValueMaxPages());
+            Assert.assertEquals("/tmp/spill", configuration.getCairoConfiguration().getSqlSpillRoot());
+            Assert.assertEquals(64 * 1024 * 1024, configuration.getCairoConfiguration().getSqlSpillMemoryBudget());
             Assert.assertEquals(1000000, configuration.getCairoConfiguration().getWorkStealTimeoutNanos());
             Assert.assertFalse(configuration.getCairoConfiguration().isParallelIndexingEnabled());
+            Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelFilterEnabled());
+            Assert.assertFalse(configuration.getCairoConfiguration().isSqlCompiledFilterEnabled());
+            Assert.assertEquals(32, configuration.getCairoConfiguration().getPageFrameFilterQueueCapacity());
+            Assert.assertEquals(250_000, configuration.getCairoConfiguration().getSqlPageFrameMaxRows());
+            Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelGroupByEnabled());
+            Assert.assertEquals(16, configuration.getCairoConfiguration().getPageFrameGroupByQueueCapacity());
+            Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelHashJoinEnabled());
+            Assert.assertEquals(32, configuration.getCairoConfiguration().getHashJoinBuildQueueCapacity());
+            Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelLatestByEnabled());
+            Assert.assertEquals(16, configuration.getCairoConfiguration().getLatestByScanQueueCapacity());
+            Assert.assertTrue(configuration.getCairoConfiguration().isWalEnabled());
+            Assert.assertEquals(1024 * 1024, configuration.getCairoConfiguration().getWalSegmentRolloverSize());
+            Assert.assertFalse(configuration.getCairoConfiguration().isZoneMapEnabled());
+            Assert.assertEquals(1000, configuration.getCairoConfiguration().getZoneMapBlockRowCount());
             Assert.assertEquals(8 * 1024, configuration.getCairoConfiguration().getSqlJoinMetadataPageSize());
             Assert.assertEquals(10_000, configuration.getCairoConfiguration().getSqlJoinMetadataMaxResizes());
             Assert.assertEquals(16, configuration.getCairoConfiguration().getBindVariablePoolSize());
@@ -596,6 +652,8 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(100_000, configuration.getLineTcpReceiverConfiguration().getNUpdatesPerLoadRebalance());
             Assert.assertEquals(1.5, configuration.getLineTcpReceiverConfiguration().getMaxLoadRatio(), 0.001);
             Assert.assertEquals(1000, configuration.getLineTcpReceiverConfiguration().getMaintenanceInterval());
+            Assert.assertTrue(configuration.getLineTcpReceiverConfiguration().isCommitLagAdaptive());
+            Assert.assertEquals(5000, configuration.getLineTcpReceiverConfiguration().getCommitVisibilitySla());
             Assert.assertEquals(PartitionBy.MONTH, configuration.getLineTcpReceiverConfiguration().getDefaultPartitionBy());
             Assert.assertEquals(10_000, configuration.getLineTcpReceiverConfiguration().getAggressiveReadRetryCount());
             Assert.assertEquals(5_000, configuration.getLineTcpReceiverConfiguration().getWriterIdleTimeout());
@@ -615,6 +673,7 @@ public class PropServerConfigurationTest {
 
             // Pg wire
             Assert.assertEquals(9, configuration.getPGWireConfiguration().getBinParamCountCapacity());
+            Assert.assertTrue(configuration.getPGWireConfiguration().isBinaryResultFormatPreferred());
         }
     }
 
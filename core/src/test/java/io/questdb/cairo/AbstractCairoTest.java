@@ -68,6 +68,10 @@ public class AbstractCairoTest {
     protected static int sampleByIndexSearchPageSize;
     protected static int binaryEncodingMaxLength = -1;
     protected static CharSequence defaultMapType;
+    protected static boolean compiledFilterEnabled = true;
+    protected static long zoneMapBlockRowCount = -1;
+    protected static long decompressedPageCacheSize = -1;
+    protected static boolean walEnabled = false;
 
     @Rule
     public TestName testName = new TestName();
@@ -139,6 +143,26 @@ public class AbstractCairoTest {
                 return defaultMapType;
             }
 
+            @Override
+            public boolean isSqlCompiledFilterEnabled() {
+                return compiledFilterEnabled;
+            }
+
+            @Override
+            public long getDecompressedPageCacheSize() {
+                return decompressedPageCacheSize > 0 ? decompressedPageCacheSize : super.getDecompressedPageCacheSize();
+            }
+
+            @Override
+            public boolean isWalEnabled() {
+                return walEnabled;
+            }
+
+            @Override
+            public long getZoneMapBlockRowCount() {
+                return zoneMapBlockRowCount > 0 ? zoneMapBlockRowCount : super.getZoneMapBlockRowCount();
+            }
+
             public long getWriterAsyncCommandBusyWaitTimeout() {
                 return writerAsyncCommandBusyWaitTimeout < 0 ? super.getWriterAsyncCommandBusyWaitTimeout() : writerAsyncCommandBusyWaitTimeout;
             }
@@ -177,6 +201,10 @@ public class AbstractCairoTest {
         currentMicros = -1;
         sampleByIndexSearchPageSize = -1;
         defaultMapType = null;
+        compiledFilterEnabled = true;
+        zoneMapBlockRowCount = -1;
+        decompressedPageCacheSize = -1;
+        walEnabled = false;
         writerAsyncCommandBusyWaitTimeout = -1;
         writerAsyncCommandMaxTimeout = -1;
     }
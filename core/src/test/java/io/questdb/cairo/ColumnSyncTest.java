@@ -0,0 +1,222 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ColumnSyncTest {
+    private final static Log LOG = LogFactory.getLog(ColumnSyncTest.class);
+    private static final int COLUMN_COUNT = 16;
+    private static final int COMMIT_COUNT = 20;
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testAsyncCommitSyncsAllColumns() throws Exception {
+        assertSameSyncs(CommitMode.ASYNC, false);
+    }
+
+    @Test
+    public void testGroupCommitSyncsAllColumns() throws Exception {
+        assertSameSyncs(CommitMode.SYNC, true);
+    }
+
+    @Test
+    public void testSyncCommitSyncsAllColumns() throws Exception {
+        assertSameSyncs(CommitMode.SYNC, false);
+    }
+
+    private static void assertSameSyncs(int commitMode, boolean groupCommitEnabled) throws Exception {
+        final SyncCountingFacade parallelFacade = new SyncCountingFacade();
+        assertMemoryLeak(parallelFacade, commitMode, groupCommitEnabled, true, 4, ColumnSyncTest::appendAndCommit);
+
+        final SyncCountingFacade serialFacade = new SyncCountingFacade();
+        assertMemoryLeak(serialFacade, commitMode, groupCommitEnabled, false, 0, ColumnSyncTest::appendAndCommit);
+
+        Assert.assertTrue(serialFacade.syncCount.get() > COMMIT_COUNT * COLUMN_COUNT);
+        Assert.assertEquals(serialFacade.syncCount.get(), parallelFacade.syncCount.get());
+        Assert.assertEquals(1, serialFacade.threads.size());
+    }
+
+    private static void appendAndCommit(CairoEngine engine, CairoConfiguration configuration) {
+        try (TableModel model = new TableModel(configuration, "x", PartitionBy.DAY)) {
+            for (int i = 0; i < COLUMN_COUNT; i++) {
+                model.col("c" + i, i % 2 == 0 ? ColumnType.LONG : ColumnType.STRING);
+            }
+            model.timestamp();
+            CairoTestUtils.create(model);
+        }
+
+        try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+            long ts = 0;
+            for (int i = 0; i < COMMIT_COUNT; i++) {
+                for (int j = 0; j < 10; j++) {
+                    TableWriter.Row row = writer.newRow(ts);
+                    for (int k = 0; k < COLUMN_COUNT; k++) {
+                        if (k % 2 == 0) {
+                            row.putLong(k, ts);
+                        } else {
+                            row.putStr(k, "abc");
+                        }
+                    }
+                    row.append();
+                    ts += 1_000_000;
+                }
+                writer.commit();
+            }
+        }
+
+        try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+            Assert.assertEquals(COMMIT_COUNT * 10, reader.size());
+        }
+    }
+
+    private static void assertMemoryLeak(
+            FilesFacade ff,
+            int commitMode,
+            boolean groupCommitEnabled,
+            boolean parallelSyncEnabled,
+            int workerCount,
+            GroupCommitTest.GroupCommitRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getCommitMode() {
+                    return commitMode;
+                }
+
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public int getParallelColumnSyncThreshold() {
+                    return 4;
+                }
+
+                @Override
+                public boolean isGroupCommitEnabled() {
+                    return groupCommitEnabled;
+                }
+
+                @Override
+                public boolean isParallelColumnSyncEnabled() {
+                    return parallelSyncEnabled;
+                }
+            };
+
+            try (CairoEngine engine = new CairoEngine(configuration)) {
+                if (workerCount > 0) {
+                    final int[] affinity = new int[workerCount];
+                    for (int i = 0; i < workerCount; i++) {
+                        affinity[i] = -1;
+                    }
+                    final WorkerPool pool = new WorkerPool(
+                            new WorkerPoolAwareConfiguration() {
+                                @Override
+                                public int[] getWorkerAffinity() {
+                                    return affinity;
+                                }
+
+                                @Override
+                                public int getWorkerCount() {
+                                    return workerCount;
+                                }
+
+                                @Override
+                                public boolean haltOnError() {
+                                    return false;
+                                }
+
+                                @Override
+                                public boolean isEnabled() {
+                                    return true;
+                                }
+                            }
+                    );
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new ColumnSyncJob(engine.getMessageBus()));
+                    pool.start(LOG);
+                    try {
+                        runnable.run(engine, configuration);
+                    } finally {
+                        pool.halt();
+                    }
+                } else {
+                    runnable.run(engine, configuration);
+                }
+            }
+        });
+    }
+
+    private static class SyncCountingFacade extends FilesFacadeImpl {
+        final AtomicInteger syncCount = new AtomicInteger();
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public int msync(long addr, long len, boolean async) {
+            syncCount.incrementAndGet();
+            threads.add(Thread.currentThread());
+            return super.msync(addr, len, async);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupCommitTest {
+    private final static Log LOG = LogFactory.getLog(GroupCommitTest.class);
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testConcurrentWritersWithFlusher() throws Exception {
+        final int writerCount = 4;
+        final int commitCount = 50;
+        final SyncTrackingFacade ff = new SyncTrackingFacade();
+        assertMemoryLeak(ff, true, 4, (engine, configuration) -> {
+            for (int i = 0; i < writerCount; i++) {
+                createTable(configuration, "x" + i);
+            }
+
+            final CyclicBarrier barrier = new CyclicBarrier(writerCount);
+            final AtomicInteger errors = new AtomicInteger();
+            final Thread[] threads = new Thread[writerCount];
+            for (int i = 0; i < writerCount; i++) {
+                final String tableName = "x" + i;
+                threads[i] = new Thread(() -> {
+                    try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, tableName, "test")) {
+                        barrier.await();
+                        appendAndCommit(writer, commitCount);
+                    } catch (Throwable e) {
+                        LOG.error().$(e).$();
+                        errors.incrementAndGet();
+                    }
+                });
+                threads[i].start();
+            }
+            for (int i = 0; i < writerCount; i++) {
+                threads[i].join();
+            }
+            Assert.assertEquals(0, errors.get());
+
+            for (int i = 0; i < writerCount; i++) {
+                try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x" + i)) {
+                    Assert.assertEquals(commitCount * 10, reader.size());
+                }
+            }
+            Assert.assertTrue(ff.txnSyncCount.get() >= writerCount * commitCount);
+        });
+    }
+
+    @Test
+    public void testSameSyncsAsWithoutGroupCommit() throws Exception {
+        final SyncTrackingFacade groupFacade = new SyncTrackingFacade();
+        assertMemoryLeak(groupFacade, true, 0, (engine, configuration) -> {
+            createTable(configuration, "x");
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                appendAndCommit(writer, 20);
+            }
+        });
+
+        final SyncTrackingFacade plainFacade = new SyncTrackingFacade();
+        assertMemoryLeak(plainFacade, false, 0, (engine, configuration) -> {
+            createTable(configuration, "x");
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                appendAndCommit(writer, 20);
+            }
+        });
+
+        Assert.assertTrue(groupFacade.txnSyncCount.get() >= 20);
+        Assert.assertEquals(plainFacade.syncCount.get(), groupFacade.syncCount.get());
+        Assert.assertEquals(plainFacade.txnSyncCount.get(), groupFacade.txnSyncCount.get());
+        Assert.assertEquals(0, groupFacade.txnSyncWithoutColumnSyncCount.get());
+    }
+
+    @Test
+    public void testSyncFailureWithFlusher() throws Exception {
+        assertSyncFailure(2);
+    }
+
+    @Test
+    public void testSyncFailureWithoutJob() throws Exception {
+        assertSyncFailure(0);
+    }
+
+    @Test
+    public void testWriterFlushesWithoutJob() throws Exception {
+        // there is no worker pool, writer must flush its own entry
+        final SyncTrackingFacade ff = new SyncTrackingFacade();
+        assertMemoryLeak(ff, true, 0, (engine, configuration) -> {
+            createTable(configuration, "x");
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                appendAndCommit(writer, 10);
+                Assert.assertEquals(100, writer.size());
+            }
+            Assert.assertTrue(ff.txnSyncCount.get() >= 10);
+            Assert.assertEquals(0, ff.txnSyncWithoutColumnSyncCount.get());
+        });
+    }
+
+    private static void appendAndCommit(TableWriter writer, int commitCount) {
+        long ts = 0;
+        for (int i = 0; i < commitCount; i++) {
+            for (int j = 0; j < 10; j++) {
+                TableWriter.Row row = writer.newRow(ts++);
+                row.putInt(0, j);
+                row.putStr(1, "abc");
+                row.append();
+            }
+            writer.commit();
+        }
+    }
+
+    private static void assertSyncFailure(int workerCount) throws Exception {
+        final AtomicBoolean failSync = new AtomicBoolean();
+        final FilesFacade ff = new FilesFacadeImpl() {
+            @Override
+            public int msync(long addr, long len, boolean async) {
+                if (failSync.get()) {
+                    throw CairoException.instance(5).put("msync failed");
+                }
+                return super.msync(addr, len, async);
+            }
+        };
+        assertMemoryLeak(ff, true, workerCount, (engine, configuration) -> {
+            createTable(configuration, "x");
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                appendAndCommit(writer, 1);
+                failSync.set(true);
+                try {
+                    TableWriter.Row row = writer.newRow(100);
+                    row.putInt(0, 1);
+                    row.append();
+                    // used to wait for its entry forever
+                    writer.commit();
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertEquals(5, e.getErrno());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "msync failed");
+                }
+                failSync.set(false);
+                try {
+                    writer.commit();
+                    Assert.fail();
+                } catch (CairoError e) {
+                    TestUtils.assertContains(e.getMessage(), "distressed");
+                }
+            }
+        });
+    }
+
+    private static void assertMemoryLeak(
+            FilesFacade ff,
+            boolean groupCommitEnabled,
+            int workerCount,
+            GroupCommitRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getCommitMode() {
+                    return CommitMode.SYNC;
+                }
+
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public boolean isGroupCommitEnabled() {
+                    return groupCommitEnabled;
+                }
+            };
+
+            try (CairoEngine engine = new CairoEngine(configuration)) {
+                if (workerCount > 0) {
+                    final int[] affinity = new int[workerCount];
+                    for (int i = 0; i < workerCount; i++) {
+                        affinity[i] = -1;
+                    }
+                    final WorkerPool pool = new WorkerPool(
+                            new WorkerPoolAwareConfiguration() {
+                                @Override
+                                public int[] getWorkerAffinity() {
+                                    return affinity;
+                                }
+
+                                @Override
+                                public int getWorkerCount() {
+                                    return workerCount;
+                                }
+
+                                @Override
+                                public boolean haltOnError() {
+                                    return false;
+                                }
+
+                                @Override
+                                public boolean isEnabled() {
+                                    return true;
+                                }
+                            }
+                    );
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new GroupCommitJob(engine.getMessageBus()));
+                    pool.start(LOG);
+                    try {
+                        runnable.run(engine, configuration);
+                    } finally {
+                        pool.halt();
+                    }
+                } else {
+                    runnable.run(engine, configuration);
+                }
+            }
+        });
+    }
+
+    private static void createTable(CairoConfiguration configuration, String tableName) {
+        try (TableModel model = new TableModel(configuration, tableName, PartitionBy.NONE)
+                .col("i", ColumnType.INT)
+                .col("s", ColumnType.STRING)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+
+    @FunctionalInterface
+    interface GroupCommitRunnable {
+        void run(CairoEngine engine, CairoConfiguration configuration) throws Exception;
+    }
+
+    // recognises syncs of _txn files by the address of their mapping
+    private static class SyncTrackingFacade extends FilesFacadeImpl {
+        final AtomicInteger syncCount = new AtomicInteger();
+        final AtomicInteger txnSyncCount = new AtomicInteger();
+        final AtomicInteger txnSyncWithoutColumnSyncCount = new AtomicInteger();
+        private final LongHashSet txnFds = new LongHashSet();
+        private final LongHashSet txnAddresses = new LongHashSet();
+        // meaningful for single writer only
+        private int columnSyncsSinceTxnSync;
+
+        @Override
+        public synchronized boolean close(long fd) {
+            txnFds.remove(fd);
+            return super.close(fd);
+        }
+
+        @Override
+        public synchronized void munmap(long address, long size, int memoryTag) {
+            txnAddresses.remove(address);
+            super.munmap(address, size, memoryTag);
+        }
+
+        @Override
+        public synchronized long mmap(long fd, long len, long offset, int flags, int memoryTag) {
+            final long address = super.mmap(fd, len, offset, flags, memoryTag);
+            if (txnFds.contains(fd)) {
+                txnAddresses.add(address);
+            }
+            return address;
+        }
+
+        @Override
+        public synchronized long mremap(long fd, long addr, long previousSize, long newSize, long offset, int mode, int memoryTag) {
+            final long address = super.mremap(fd, addr, previousSize, newSize, offset, mode, memoryTag);
+            if (txnFds.contains(fd)) {
+                txnAddresses.add(address);
+            }
+            return address;
+        }
+
+        @Override
+        public int msync(long addr, long len, boolean async) {
+            syncCount.incrementAndGet();
+            synchronized (this) {
+                if (txnAddresses.contains(addr)) {
+                    txnSyncCount.incrementAndGet();
+                    if (columnSyncsSinceTxnSync == 0) {
+                        txnSyncWithoutColumnSyncCount.incrementAndGet();
+                    }
+                    columnSyncsSinceTxnSync = 0;
+                } else {
+                    columnSyncsSinceTxnSync++;
+                }
+            }
+            return super.msync(addr, len, async);
+        }
+
+        @Override
+        public synchronized long openRW(LPSZ name) {
+            final long fd = super.openRW(name);
+            if (Chars.endsWith(name, TableUtils.TXN_FILE_NAME)) {
+                txnFds.add(fd);
+            }
+            return fd;
+        }
+    }
+}
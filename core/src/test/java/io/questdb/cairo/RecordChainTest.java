@@ -26,6 +26,7 @@ package io.questdb.cairo;
 
 import io.questdb.cairo.sql.*;
 import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.engine.LimitOverflowException;
 import io.questdb.griffin.engine.functions.IntFunction;
 import io.questdb.griffin.engine.functions.LongFunction;
 import io.questdb.std.*;
@@ -33,6 +34,9 @@ import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.Objects;
+
 public class RecordChainTest extends AbstractCairoTest {
     public static final long SIZE_4M = 4 * 1024 * 1024L;
     private static final BytecodeAssembler asm = new BytecodeAssembler();
@@ -180,6 +184,41 @@ public class RecordChainTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testSpillToDisk() throws Exception {
+        final File spillRoot = temp.newFolder("spill");
+        TestUtils.assertMemoryLeak(() -> {
+            final int N = 10000;
+            CairoTestUtils.createTestTable(N, new Rnd(), new TestRecord.ArrayBinarySequence());
+            try (TableReader reader = new TableReader(configuration, "x")) {
+                entityColumnFilter.of(reader.getMetadata().getColumnCount());
+                RecordSink recordSink = RecordSinkFactory.getInstance(asm, reader.getMetadata(), entityColumnFilter, false);
+
+                // page limit is not what triggers the spill, 256KB budget is not enough to keep the whole table in RAM
+                try (RecordChain chain = new RecordChain(reader.getMetadata(), recordSink, 64 * 1024, Integer.MAX_VALUE, FilesFacadeImpl.INSTANCE, spillRoot.getAbsolutePath(), 256 * 1024)) {
+                    populateChain(chain, reader);
+                    Assert.assertEquals(1, Objects.requireNonNull(spillRoot.list()).length);
+                    assertChain(chain, N, reader);
+
+                    chain.clear();
+                    Assert.assertEquals(0, Objects.requireNonNull(spillRoot.list()).length);
+
+                    populateChain(chain, reader);
+                    assertChain(chain, N, reader);
+                }
+                Assert.assertEquals(0, Objects.requireNonNull(spillRoot.list()).length);
+
+                // without spill root chain fails once it runs out of pages
+                try (RecordChain chain = new RecordChain(reader.getMetadata(), recordSink, 64 * 1024, 4, FilesFacadeImpl.INSTANCE, null, 256 * 1024)) {
+                    populateChain(chain, reader);
+                    Assert.fail();
+                } catch (LimitOverflowException e) {
+                    TestUtils.assertContains(e.getFlyweightMessage(), "Maximum number of pages (4) breached");
+                }
+            }
+        });
+    }
+
     @Test
     public void testWriteAndRead() throws Exception {
         TestUtils.assertMemoryLeak(
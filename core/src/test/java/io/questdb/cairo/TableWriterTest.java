@@ -1787,6 +1787,48 @@ public class TableWriterTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testO3Depth() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(configuration, "weather", PartitionBy.DAY)
+                    .col("windspeed", ColumnType.DOUBLE)
+                    .timestamp()) {
+                CairoTestUtils.create(model);
+            }
+
+            try (TableWriter writer = new TableWriter(configuration, "weather")) {
+                final long ts = IntervalUtils.parseFloorPartialDate("2021-01-31");
+                TableWriter.Row r = writer.newRow(ts);
+                r.putDouble(0, 1.0);
+                r.append();
+                r = writer.newRow(ts + 10_000);
+                r.putDouble(0, 1.0);
+                r.append();
+                writer.commit();
+                Assert.assertEquals(0, writer.getO3Depth());
+
+                r = writer.newRow(ts + 20_000);
+                r.putDouble(0, 1.0);
+                r.append();
+                r = writer.newRow(ts + 15_000);
+                r.putDouble(0, 1.0);
+                r.append();
+                r = writer.newRow(ts + 30_000);
+                r.putDouble(0, 1.0);
+                r.append();
+                r = writer.newRow(ts + 5_000);
+                r.putDouble(0, 1.0);
+                r.append();
+                writer.commit();
+                Assert.assertEquals(25_000, writer.getO3Depth());
+                Assert.assertEquals(6, writer.size());
+
+                writer.commit();
+                Assert.assertEquals(0, writer.getO3Depth());
+            }
+        });
+    }
+
     @Test
     public void testO3AfterRowCancel() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -33,6 +33,9 @@ import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.Objects;
+
 public class FastMapTest extends AbstractCairoTest {
 
     @Test
@@ -607,6 +610,35 @@ public class FastMapTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testSpillToDisk() throws Exception {
+        final File spillRoot = temp.newFolder("spill");
+        TestUtils.assertMemoryLeak(() -> {
+            final int N = 100_000;
+            // keys outgrow 256KB budget long before they run out of resizes
+            try (FastMap map = new FastMap(64 * 1024, new SingleColumnType(ColumnType.LONG), new SingleColumnType(ColumnType.LONG), 128, 0.5, Integer.MAX_VALUE, FilesFacadeImpl.INSTANCE, spillRoot.getAbsolutePath(), 256 * 1024)) {
+                for (int i = 0; i < N; i++) {
+                    MapKey key = map.withKey();
+                    key.putLong(i);
+                    MapValue value = key.createValue();
+                    Assert.assertTrue(value.isNew());
+                    value.putLong(0, i * 2L);
+                }
+                Assert.assertEquals(1, Objects.requireNonNull(spillRoot.list()).length);
+                Assert.assertEquals(N, map.size());
+
+                for (int i = 0; i < N; i++) {
+                    MapKey key = map.withKey();
+                    key.putLong(i);
+                    MapValue value = key.findValue();
+                    Assert.assertNotNull(value);
+                    Assert.assertEquals(i * 2L, value.getLong(0));
+                }
+            }
+            Assert.assertEquals(0, Objects.requireNonNull(spillRoot.list()).length);
+        });
+    }
+
     @Test
     public void testUnsupportedKeyValueBinary() throws Exception {
         testUnsupportedValueType();
@@ -0,0 +1,541 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.wal;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.TableWriter;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.InsertMethod;
+import io.questdb.cairo.sql.InsertStatement;
+import io.questdb.griffin.SqlCompiler;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.Files;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.Os;
+import io.questdb.std.Zip;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WalWriterTest {
+    private static final Log LOG = LogFactory.getLog(WalWriterTest.class);
+    private static final StringSink sink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        // logger and zip hold native memory until JVM stops, create them before leak checks
+        LOG.info().$("begin").$();
+        Zip.init();
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testAddColumn() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY", context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRows(writer, 0, 2, 1);
+                writer.addColumn("s", ColumnType.SYMBOL);
+                Assert.assertEquals(0, writer.getUncommittedRowCount());
+                final int columnIndex = writer.getMetadata().getColumnIndexQuiet("s");
+                Assert.assertEquals(2, columnIndex);
+                TableWriter.Row row = writer.newRow(2 * Timestamps.HOUR_MICROS);
+                row.putLong(0, 2);
+                row.putSym(columnIndex, "abc");
+                row.append();
+                Assert.assertEquals(1, writer.getUncommittedRowCount());
+                writer.commit();
+            }
+            Assert.assertTrue(job.run(0));
+            TestUtils.assertSql(
+                    compiler,
+                    context,
+                    "x",
+                    sink,
+                    "v\tts\ts\n" +
+                            "0\t1970-01-01T00:00:00.000000Z\t\n" +
+                            "1\t1970-01-01T01:00:00.000000Z\t\n" +
+                            "2\t1970-01-01T02:00:00.000000Z\tabc\n"
+            );
+            assertWalDirRemoved(engine, job, "x");
+        });
+    }
+
+    @Test
+    public void testAllTypes() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (" +
+                    "b boolean, bt byte, sh short, ch char, i int, l long, f float, d double, dt date, t timestamp," +
+                    "s string, sym symbol, l256 long256, g1 geohash(1c), g2 geohash(2c), g4 geohash(5c), g8 geohash(10c)," +
+                    "ts timestamp) timestamp(ts) partition by DAY", context);
+            final String insert = "insert into x values (" +
+                    "true, 7, 1024, 'q', 42, 9000000000, 1.5, 2.25, to_date('2022-01-01', 'yyyy-MM-dd'), '2022-01-02T00:00:00.000001Z'," +
+                    "'hello', 'sym1', 0x01, #u, #u3, #u33q4, #u33q4u33q4, '2022-02-01T00:00:00.000000Z')";
+            executeInsert(compiler, context, insert);
+            executeInsert(compiler, context, "insert into x (sym, ts) values ('sym2', '2022-01-15T00:00:00.000000Z')");
+
+            TestUtils.assertSql(compiler, context, "select count() from x", sink, "count\n0\n");
+            Assert.assertTrue(job.run(0));
+            Assert.assertFalse(job.run(0));
+
+            TestUtils.assertSql(
+                    compiler,
+                    context,
+                    "x",
+                    sink,
+                    "b\tbt\tsh\tch\ti\tl\tf\td\tdt\tt\ts\tsym\tl256\tg1\tg2\tg4\tg8\tts\n" +
+                            "false\t0\t0\t\tNaN\tNaN\tNaN\tNaN\t\t\t\tsym2\t\t\t\t\t\t2022-01-15T00:00:00.000000Z\n" +
+                            "true\t7\t1024\tq\t42\t9000000000\t1.5000\t2.25\t2022-01-01T00:00:00.000Z\t2022-01-02T00:00:00.000001Z\thello\tsym1\t0x01\tu\tu3\tu33q4\tu33q4u33q4\t2022-02-01T00:00:00.000000Z\n"
+            );
+            assertWalDirRemoved(engine, job, "x");
+        });
+    }
+
+    @Test
+    public void testApplyAfterRestart() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root);
+            try (
+                    CairoEngine engine = new CairoEngine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine);
+                    SqlExecutionContext context = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                compiler.compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY", context);
+                try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                    appendRows(writer, 0, 10, 1);
+                    writer.commit();
+                    appendRows(writer, 10, 5, 1);
+                }
+            }
+
+            try (
+                    CairoEngine engine = new CairoEngine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine);
+                    SqlExecutionContext context = new SqlExecutionContextImpl(engine, 1);
+                    WalApplyJob job = new WalApplyJob(engine)
+            ) {
+                Assert.assertTrue(job.run(0));
+                TestUtils.assertSql(compiler, context, "select count(), sum(v) from x", sink, "count\tsum\n10\t45\n");
+                assertWalDirRemoved(engine, job, "x");
+            }
+        });
+    }
+
+    @Test
+    public void testColumnsChangedAfterWalOpened() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (a int, b string, ts timestamp) timestamp(ts) partition by DAY", context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                compiler.compile("alter table x drop column b", context).execute(null).await();
+                compiler.compile("alter table x add column c long", context).execute(null).await();
+                for (int i = 0; i < 3; i++) {
+                    TableWriter.Row row = writer.newRow(i * Timestamps.HOUR_MICROS);
+                    row.putInt(0, i);
+                    row.putStr(1, "b" + i);
+                    row.append();
+                }
+                writer.commit();
+            }
+            Assert.assertTrue(job.run(0));
+            TestUtils.assertSql(
+                    compiler,
+                    context,
+                    "x",
+                    sink,
+                    "a\tts\tc\n" +
+                            "0\t1970-01-01T00:00:00.000000Z\tNaN\n" +
+                            "1\t1970-01-01T01:00:00.000000Z\tNaN\n" +
+                            "2\t1970-01-01T02:00:00.000000Z\tNaN\n"
+            );
+        });
+    }
+
+    @Test
+    public void testColumnTypeChangedAfterWalOpened() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (a int, ts timestamp) timestamp(ts) partition by DAY", context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                compiler.compile("alter table x drop column a", context).execute(null).await();
+                compiler.compile("alter table x add column a string", context).execute(null).await();
+                TableWriter.Row row = writer.newRow(0);
+                row.putInt(0, 42);
+                row.append();
+                writer.commit();
+            }
+            for (int i = 0; i < WalApplyJob.MAX_APPLY_ATTEMPTS; i++) {
+                job.run(0);
+            }
+            // int values are not stored as NULL strings
+            TestUtils.assertSql(compiler, context, "select count() from x", sink, "count\n0\n");
+            final String[] files = quarantineDir(engine, "x").list();
+            Assert.assertNotNull(files);
+            Assert.assertEquals(1, files.length);
+            assertWalDirRemoved(engine, job, "x");
+        });
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (w int, v long, sym symbol, ts timestamp) timestamp(ts) partition by HOUR", context);
+            final int writerCount = 4;
+            final int rowCount = 2_000;
+            final CyclicBarrier barrier = new CyclicBarrier(writerCount + 1);
+            final AtomicInteger errors = new AtomicInteger();
+            final Thread[] threads = new Thread[writerCount];
+            for (int t = 0; t < writerCount; t++) {
+                final int w = t;
+                threads[t] = new Thread(() -> {
+                    try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                        barrier.await();
+                        for (int i = 0; i < rowCount; i++) {
+                            // writers interleave their timestamps and each goes backwards in time halfway through
+                            final long ts = ((i + rowCount / 2) % rowCount) * writerCount + w;
+                            TableWriter.Row row = writer.newRow(ts * 1_000_000L);
+                            row.putInt(0, w);
+                            row.putLong(1, i);
+                            row.putSym(2, "s" + (i % 10));
+                            row.append();
+                            if (i % 100 == 99) {
+                                writer.commit();
+                            }
+                        }
+                        // uncommitted rows must not be applied
+                        appendRows(writer, 0, 10, 0);
+                        writer.rollback();
+                        appendRows(writer, 0, 10, 0);
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    }
+                });
+                threads[t].start();
+            }
+
+            barrier.await();
+            // apply while writers are still busy
+            while (threads[0].isAlive()) {
+                job.run(0);
+                Os.sleep(1);
+            }
+            for (int t = 0; t < writerCount; t++) {
+                threads[t].join();
+            }
+            Assert.assertEquals(0, errors.get());
+            //noinspection StatementWithEmptyBody
+            while (job.run(0)) {
+            }
+            job.run(0);
+
+            TestUtils.assertSql(
+                    compiler,
+                    context,
+                    "select count(), min(ts), max(ts), sum(v) from x",
+                    sink,
+                    "count\tmin\tmax\tsum\n" +
+                            "8000\t1970-01-01T00:00:00.000000Z\t1970-01-01T02:13:19.000000Z\t7996000\n"
+            );
+            TestUtils.assertSql(
+                    compiler,
+                    context,
+                    "select w, count(), count_distinct(cast(ts as string)) from x order by w",
+                    sink,
+                    "w\tcount\tcount_distinct\n0\t2000\t2000\n1\t2000\t2000\n2\t2000\t2000\n3\t2000\t2000\n"
+            );
+            assertWalDirRemoved(engine, job, "x");
+        });
+    }
+
+    @Test
+    public void testNoDuplicatesAfterRestart() throws Exception {
+        final AtomicBoolean failRemove = new AtomicBoolean();
+        final FilesFacade ff = new FilesFacadeImpl() {
+            @Override
+            public boolean remove(LPSZ name) {
+                // applied segments outlive the commit, as if the process stopped right after it
+                return !failRemove.get() && super.remove(name);
+            }
+
+            @Override
+            public boolean rename(LPSZ from, LPSZ to) {
+                return !failRemove.get() && super.rename(from, to);
+            }
+        };
+        assertWal(ff, (engine, compiler, context, job) -> {
+            compiler.compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY", context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRows(writer, 0, 500, 1);
+                writer.commit();
+                appendRows(writer, 500, 10, 1);
+                writer.commit();
+            }
+            engine.releaseAllWalWriters();
+            failRemove.set(true);
+            Assert.assertTrue(job.run(0));
+            failRemove.set(false);
+
+            try (WalApplyJob restarted = new WalApplyJob(engine)) {
+                Assert.assertFalse(restarted.run(0));
+                TestUtils.assertSql(compiler, context, "select count(), sum(v) from x", sink, "count\tsum\n510\t129795\n");
+                assertWalDirRemoved(engine, restarted, "x");
+            }
+            TestUtils.assertSql(compiler, context, "select count(), sum(v) from x", sink, "count\tsum\n510\t129795\n");
+        });
+    }
+
+    @Test
+    public void testQuarantineSegment() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY", context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRows(writer, 0, 2, 24);
+                writer.commit();
+            }
+            Assert.assertTrue(job.run(0));
+            compiler.compile("alter table x compress partition list '1970-01-01'", context).execute(null).await();
+
+            final int badWalId;
+            try (
+                    WalWriter bad = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    WalWriter good = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")
+            ) {
+                badWalId = bad.getWalId();
+                // out of order row into the compressed partition fails on every commit
+                appendRows(bad, 10, 1, 1);
+                bad.commit();
+                TableWriter.Row row = good.newRow(2 * Timestamps.DAY_MICROS);
+                row.putLong(0, 20);
+                row.append();
+                good.commit();
+            }
+
+            for (int i = 0; i < WalApplyJob.MAX_APPLY_ATTEMPTS; i++) {
+                job.run(0);
+                TestUtils.assertSql(compiler, context, "select v from x where v = 10", sink, "v\n");
+            }
+            // the good row is no longer held back by the bad one
+            job.run(0);
+            TestUtils.assertSql(compiler, context, "select v from x", sink, "v\n0\n1\n20\n");
+
+            final String[] files = quarantineDir(engine, "x").list();
+            Assert.assertNotNull(files);
+            Assert.assertEquals(1, files.length);
+            // walId.segmentId.appliedOffset
+            Assert.assertTrue(files[0].startsWith(badWalId + ".0."));
+            assertWalDirRemoved(engine, job, "x");
+        });
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY", context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRows(writer, 0, 3, 1);
+                writer.commit();
+                appendRows(writer, 3, 3, 1);
+                writer.rollback();
+                TableWriter.Row row = writer.newRow(Timestamps.HOUR_MICROS);
+                row.putLong(0, 100);
+                row.cancel();
+                appendRows(writer, 6, 2, 1);
+                writer.commit();
+                Assert.assertTrue(job.run(0));
+                TestUtils.assertSql(compiler, context, "select v from x", sink, "v\n0\n1\n2\n6\n7\n");
+                Assert.assertFalse(job.run(0));
+            }
+            Assert.assertFalse(job.run(0));
+            assertWalDirRemoved(engine, job, "x");
+        });
+    }
+
+    @Test
+    public void testTimestampValidation() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY", context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                try {
+                    writer.newRow(-1);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getFlyweightMessage(), "timestamp before 1970-01-01 is not allowed");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testWriterPool() throws Exception {
+        assertWal((engine, compiler, context, job) -> {
+            compiler.compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY", context);
+            final int walId;
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                walId = writer.getWalId();
+                appendRows(writer, 0, 2, 1);
+                writer.commit();
+                // rolled back when returned to pool
+                appendRows(writer, 2, 2, 1);
+            }
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                Assert.assertEquals(walId, writer.getWalId());
+                Assert.assertEquals(0, writer.getUncommittedRowCount());
+                try (WalWriter other = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                    Assert.assertNotEquals(walId, other.getWalId());
+                }
+                appendRows(writer, 4, 1, 1);
+                writer.commit();
+            }
+            Assert.assertTrue(job.run(0));
+            TestUtils.assertSql(compiler, context, "select v from x", sink, "v\n0\n1\n4\n");
+
+            // writers opened against old structure are not reused
+            compiler.compile("alter table x add column s string", context).execute(null).await();
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                Assert.assertEquals(3, writer.getMetadata().getColumnCount());
+                TableWriter.Row row = writer.newRow(5 * Timestamps.HOUR_MICROS);
+                row.putLong(0, 5);
+                row.putStr(2, "five");
+                row.append();
+                writer.commit();
+            }
+            job.run(0);
+            TestUtils.assertSql(compiler, context, "select v, s from x where s = 'five'", sink, "v\ts\n5\tfive\n");
+            assertWalDirRemoved(engine, job, "x");
+        });
+    }
+
+    private static void appendRows(WalWriter writer, int lo, int count, long step) {
+        for (int i = lo; i < lo + count; i++) {
+            TableWriter.Row row = writer.newRow(i * step * Timestamps.HOUR_MICROS);
+            row.putLong(0, i);
+            row.append();
+        }
+    }
+
+    private static void assertWal(WalRunnable runnable) throws Exception {
+        assertWal(FilesFacadeImpl.INSTANCE, runnable);
+    }
+
+    private static void assertWal(FilesFacade ff, WalRunnable runnable) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public long getWalSegmentRolloverSize() {
+                    // roll segments often
+                    return 4096;
+                }
+
+                @Override
+                public boolean isWalEnabled() {
+                    return true;
+                }
+            };
+            try (
+                    CairoEngine engine = new CairoEngine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine);
+                    SqlExecutionContext context = new SqlExecutionContextImpl(engine, 1);
+                    WalApplyJob job = new WalApplyJob(engine)
+            ) {
+                runnable.run(engine, compiler, context, job);
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            }
+        });
+    }
+
+    private static void assertWalDirRemoved(CairoEngine engine, WalApplyJob job, CharSequence tableName) {
+        // idle writers keep their WAL open until released
+        engine.releaseAllWalWriters();
+        job.run(0);
+        try (Path path = new Path()) {
+            path.of(engine.getConfiguration().getRoot()).concat(tableName).concat(TableUtils.WAL_DIR_NAME);
+            final int len = path.length();
+            for (int i = 0; i < 8; i++) {
+                Assert.assertFalse(Files.exists(path.trimTo(len).slash().put(i).$()));
+            }
+        }
+    }
+
+    private static void executeInsert(SqlCompiler compiler, SqlExecutionContext context, String insertSql) throws SqlException {
+        final InsertStatement insert = compiler.compile(insertSql, context).getInsertStatement();
+        try (InsertMethod method = insert.createMethod(context)) {
+            method.execute();
+            method.commit();
+        }
+    }
+
+    private static File quarantineDir(CairoEngine engine, String tableName) {
+        return new File(
+                new File(new File(engine.getConfiguration().getRoot().toString(), tableName), TableUtils.WAL_DIR_NAME),
+                WalApplyJob.QUARANTINE_DIR_NAME
+        );
+    }
+
+    @FunctionalInterface
+    interface WalRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context, WalApplyJob job) throws Exception;
+    }
+}
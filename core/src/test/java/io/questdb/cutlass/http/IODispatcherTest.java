@@ -6152,6 +6152,83 @@ public class IODispatcherTest {
         });
     }
 
+    @Test
+    public void testTextQueryArrow() throws Exception {
+        testJsonQuery0(2, engine -> {
+            final SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl(engine, 1);
+            try (SqlCompiler compiler = new SqlCompiler(engine)) {
+                compiler.compile("create table x as (select cast(x as int) i, timestamp_sequence(0, 1000000) ts from long_sequence(2)) timestamp(ts)", executionContext);
+            }
+            sendAndReceive(
+                    NetworkFacadeImpl.INSTANCE,
+                    "GET /exp?query=x&fmt=arrow HTTP/1.1\r\n" +
+                            "Host: localhost:9000\r\n" +
+                            "Accept: */*\r\n" +
+                            "\r\n",
+                    binaryResponse(
+                            "HTTP/1.1 200 OK\r\n" +
+                                    "Server: questDB/1.0\r\n" +
+                                    "Date: Thu, 1 Jan 1970 00:00:00 GMT\r\n" +
+                                    "Transfer-Encoding: chunked\r\n" +
+                                    "Content-Type: application/vnd.apache.arrow.stream\r\n" +
+                                    "Content-Disposition: attachment; filename=\"questdb-query-0.arrow\"\r\n" +
+                                    "Keep-Alive: timeout=5, max=10000\r\n" +
+                                    "\r\n" +
+                                    "01b0\r\n",
+                            // schema
+                            "ffffffffd0000000100000000c00130010001200040008000c00000018000000" +
+                            "0000000000000000040001000800080000000400080000000400000002000000" +
+                            "180000005800000010001200040010001100080000000c001000000010000000" +
+                            "1c0000002400000001020000010000006900080009000400080000000a000000" +
+                            "20000000010000000000000010001200040010001100080000000c0010000000" +
+                            "100000001c0000002c000000010a0000020000007473000008000a0008000400" +
+                            "080000000800000002000000030000005554430000000000" +
+                            // record batch
+                            "ffffffffb0000000100000000c00130010001200040008000c0000001c000000" +
+                            "1800000000000000040003000a00140008000400100000000c00000010000000" +
+                            "02000000000000002c0000000200000002000000000000000000000000000000" +
+                            "0200000000000000000000000000000000000000040000000000000000000000" +
+                            "0000000000000000000000000000000008000000000000000800000000000000" +
+                            "000000000000000008000000000000001000000000000000" +
+                            // record batch body
+                            "0100000002000000000000000000000040420f0000000000" +
+                            // end of stream
+                            "ffffffff00000000",
+                            "\r\n" +
+                                    "00\r\n" +
+                                    "\r\n"
+                    ),
+                    1,
+                    0,
+                    false
+            );
+        }, false);
+    }
+
+    @Test
+    public void testTextQueryArrowError() throws Exception {
+        // error is not an Arrow stream, client tells it apart by status
+        testJsonQuery(
+                0,
+                "GET /exp?query=select+z+from+long_sequence(2)&fmt=arrow HTTP/1.1\r\n" +
+                        "Host: localhost:9000\r\n" +
+                        "Accept: */*\r\n" +
+                        "\r\n",
+                "HTTP/1.1 400 Bad request\r\n" +
+                        "Server: questDB/1.0\r\n" +
+                        "Date: Thu, 1 Jan 1970 00:00:00 GMT\r\n" +
+                        "Transfer-Encoding: chunked\r\n" +
+                        "Content-Type: application/json; charset=utf-8\r\n" +
+                        "Keep-Alive: timeout=5, max=10000\r\n" +
+                        "\r\n" +
+                        "53\r\n" +
+                        "{\"query\":\"select z from long_sequence(2)\",\"error\":\"Invalid column: z\",\"position\":7}\r\n" +
+                        "00\r\n" +
+                        "\r\n",
+                1
+        );
+    }
+
     @Test
     public void testTextQueryCreateTable() throws Exception {
         testJsonQuery(
@@ -6491,6 +6568,22 @@ public class IODispatcherTest {
         }
     }
 
+    private static ByteArrayResponse binaryResponse(String head, String hex, String tail) {
+        final int size = head.length() + hex.length() / 2 + tail.length();
+        final byte[] bytes = new byte[size];
+        int p = 0;
+        for (int i = 0, n = head.length(); i < n; i++) {
+            bytes[p++] = (byte) head.charAt(i);
+        }
+        for (int i = 0, n = hex.length(); i < n; i += 2) {
+            bytes[p++] = (byte) Integer.parseInt(hex.substring(i, i + 2), 16);
+        }
+        for (int i = 0, n = tail.length(); i < n; i++) {
+            bytes[p++] = (byte) tail.charAt(i);
+        }
+        return new ByteArrayResponse(bytes, size);
+    }
+
     private static void sendRequest(String request, long fd, long buffer) {
         final int requestLen = request.length();
         Chars.asciiStrCpy(request, requestLen, buffer);
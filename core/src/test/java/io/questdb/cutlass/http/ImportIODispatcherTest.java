@@ -38,11 +38,14 @@ import io.questdb.log.LogFactory;
 import io.questdb.mp.SOCountDownLatch;
 import io.questdb.std.Chars;
 import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -557,6 +560,111 @@ public class ImportIODispatcherTest {
         testImportMisDetectsTimestampColumn(new HttpServerConfigurationBuilder().withNetwork(getSendDelayNetworkFacade(50)), 10);
     }
 
+    @Test
+    public void testImportParallel() throws Exception {
+        final String inputRoot = temp.newFolder("imports").getAbsolutePath();
+        final CairoConfiguration configuration = new DefaultCairoConfiguration(temp.getRoot().getAbsolutePath()) {
+            @Override
+            public CharSequence getInputRoot() {
+                return inputRoot;
+            }
+
+            @Override
+            public long getSqlCopyMinChunkSize() {
+                return 1024;
+            }
+        };
+        new HttpQueryTestBuilder()
+                .withTempFolder(temp)
+                .withWorkerCount(2)
+                .withHttpServerConfigBuilder(new HttpServerConfigurationBuilder())
+                .withTelemetry(false)
+                .run(configuration, engine -> {
+                    setupSql(engine);
+                    compiler.compile("create table x (id int, ts timestamp, sym symbol index, val double) timestamp(ts) partition by DAY", sqlExecutionContext);
+                    final AtomicBoolean temporaryTableUsed = new AtomicBoolean();
+                    engine.setPoolListener((factoryType, thread, name, event, segment, position) -> {
+                        if (name != null && Chars.contains(name, ".import.")) {
+                            temporaryTableUsed.set(true);
+                        }
+                    });
+
+                    // timestamps are out of order, every day gets rows from all over the file
+                    final StringBuilder csv = new StringBuilder("id,ts,sym,val\r\n");
+                    for (int i = 0; i < 2000; i++) {
+                        csv.append(i).append(",2022-01-0").append(1 + i % 9).append("T00:00:00.000000Z,s").append(i % 7).append(',').append(i).append(".5\r\n");
+                    }
+                    final String request = PostHeader.replace("name=trips", "name=x&partitionBy=DAY&timestamp=ts&atomicity=skipRow&fmt=json") +
+                            "--------------------------27d997ca93d2689d\r\n" +
+                            "Content-Disposition: form-data; name=\"data\"; filename=\"x.csv\"\r\n" +
+                            "Content-Type: application/octet-stream\r\n" +
+                            "\r\n" +
+                            csv +
+                            RequestFooter;
+                    final String json = "{\"status\":\"OK\"," +
+                            "\"location\":\"x\"," +
+                            "\"rowsRejected\":0," +
+                            "\"rowsImported\":2000," +
+                            "\"header\":false," +
+                            "\"columns\":[" +
+                            "{\"name\":\"id\",\"type\":\"INT\",\"size\":4,\"errors\":0}," +
+                            "{\"name\":\"ts\",\"type\":\"TIMESTAMP\",\"size\":8,\"errors\":0}," +
+                            "{\"name\":\"sym\",\"type\":\"SYMBOL\",\"size\":4,\"errors\":0}," +
+                            "{\"name\":\"val\",\"type\":\"DOUBLE\",\"size\":8,\"errors\":0}" +
+                            "]}";
+                    new SendAndReceiveRequestBuilder().execute(
+                            request,
+                            "HTTP/1.1 200 OK\r\n" +
+                                    "Server: questDB/1.0\r\n" +
+                                    "Date: Thu, 1 Jan 1970 00:00:00 GMT\r\n" +
+                                    "Transfer-Encoding: chunked\r\n" +
+                                    "Content-Type: application/json; charset=utf-8\r\n" +
+                                    "\r\n" +
+                                    String.format("%04x", json.length()) + "\r\n" +
+                                    json + "\r\n" +
+                                    "00\r\n" +
+                                    "\r\n"
+                    );
+                    Assert.assertTrue(temporaryTableUsed.get());
+
+                    final StringSink sink = new StringSink();
+                    TestUtils.assertSql(
+                            compiler,
+                            sqlExecutionContext,
+                            "select sym, count(), min(ts), max(ts), sum(id) from x order by sym",
+                            sink,
+                            "sym\tcount\tmin\tmax\tsum\n" +
+                                    "s0\t286\t2022-01-01T00:00:00.000000Z\t2022-01-09T00:00:00.000000Z\t285285\n" +
+                                    "s1\t286\t2022-01-01T00:00:00.000000Z\t2022-01-09T00:00:00.000000Z\t285571\n" +
+                                    "s2\t286\t2022-01-01T00:00:00.000000Z\t2022-01-09T00:00:00.000000Z\t285857\n" +
+                                    "s3\t286\t2022-01-01T00:00:00.000000Z\t2022-01-09T00:00:00.000000Z\t286143\n" +
+                                    "s4\t286\t2022-01-01T00:00:00.000000Z\t2022-01-09T00:00:00.000000Z\t286429\n" +
+                                    "s5\t285\t2022-01-01T00:00:00.000000Z\t2022-01-09T00:00:00.000000Z\t284715\n" +
+                                    "s6\t285\t2022-01-01T00:00:00.000000Z\t2022-01-09T00:00:00.000000Z\t285000\n"
+                    );
+                    // index of the symbol column is rebuilt after keys are merged
+                    TestUtils.assertSql(
+                            compiler,
+                            sqlExecutionContext,
+                            "select count() from x where sym = 's3' and ts in '2022-01-05'",
+                            sink,
+                            "count\n" +
+                                    "32\n"
+                    );
+                    TestUtils.assertSql(
+                            compiler,
+                            sqlExecutionContext,
+                            "select count() from x where ts in '2022-01-05'",
+                            sink,
+                            "count\n" +
+                                    "222\n"
+                    );
+                    // spooled request body is removed
+                    Assert.assertArrayEquals(new String[0], new File(inputRoot).list());
+                    compiler.close();
+                });
+    }
+
     @Test
     public void testImportSymbolIndexedFromSchema() throws Exception {
         new HttpQueryTestBuilder()
@@ -0,0 +1,822 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.griffin.SqlException;
+import io.questdb.std.LongList;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArrowStreamWriterTest extends AbstractGriffinTest {
+
+    @Test
+    public void testEmptyStream() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    ArrowStreamWriter writer = new ArrowStreamWriter(1024, 16);
+                    RecordCursorFactory factory = compiler.compile("select x, cast(x as string) s from long_sequence(1)", sqlExecutionContext).getRecordCursorFactory()
+            ) {
+                final StringSink sink = new StringSink();
+                writer.of(factory.getMetadata());
+                writer.putSchema();
+                drain(writer, sink);
+                writer.putEndOfStream();
+                drain(writer, sink);
+
+                final String stream = sink.toString();
+                // continuation marker, 8-aligned metadata, end-of-stream marker
+                Assert.assertTrue(stream.startsWith("ffffffff"));
+                Assert.assertTrue(stream.endsWith("ffffffff00000000"));
+                Assert.assertEquals(0, (stream.length() / 2) % 8);
+                Assert.assertEquals(0, writer.getRowCount());
+            }
+        });
+    }
+
+    @Test
+    public void testFrameBatchesMatchRecordBatches() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(
+                    "create table x as (" +
+                            "select" +
+                            " rnd_boolean() a," +
+                            " rnd_byte(2,50) b," +
+                            " rnd_short(10,1024) c," +
+                            " rnd_int(0, 1000, 2) d," +
+                            " rnd_long(0, 1000, 2) e," +
+                            " rnd_float(2) f," +
+                            " rnd_double(2) g," +
+                            " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) h," +
+                            " rnd_char() i," +
+                            " rnd_str('ABC', 'CDE', null, 'XYZ') j," +
+                            " rnd_symbol('msft','ibm', 'googl', null) k," +
+                            " rnd_bin(2, 10, 2) l," +
+                            " rnd_long256() m," +
+                            " rnd_geohash(20) n," +
+                            " timestamp_sequence(0, 3600000000) ts" +
+                            " from long_sequence(100)" +
+                            ") timestamp (ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            // column added later reads as nulls (false for boolean) from older partitions
+            compile("alter table x add column o boolean", sqlExecutionContext);
+            compile("alter table x add column p string", sqlExecutionContext);
+            executeInsert("insert into x(d, o, p, ts) values (1, true, 'hello', '1970-01-06T00:00:00.000000Z')");
+
+            try (
+                    ArrowStreamWriter frameWriter = new ArrowStreamWriter(1024, 16);
+                    ArrowStreamWriter recordWriter = new ArrowStreamWriter(1024, 16);
+                    RecordCursorFactory factory = compiler.compile("x", sqlExecutionContext).getRecordCursorFactory()
+            ) {
+                Assert.assertTrue(factory.supportPageFrameCursor());
+
+                // frame path, each frame split into batches of at most 16 rows
+                final StringSink frameSink = new StringSink();
+                final LongList batchSizes = new LongList();
+                frameWriter.of(factory.getMetadata());
+                frameWriter.putSchema();
+                drain(frameWriter, frameSink);
+                try (PageFrameCursor cursor = factory.getPageFrameCursor(sqlExecutionContext)) {
+                    PageFrame frame;
+                    while ((frame = cursor.next()) != null) {
+                        final long frameRowCount = frame.getPartitionHi() - frame.getPartitionLo();
+                        for (long lo = 0; lo < frameRowCount; lo += frameWriter.getMaxBatchRowCount()) {
+                            final long hi = Math.min(frameRowCount, lo + frameWriter.getMaxBatchRowCount());
+                            frameWriter.putFrameBatch(frame, cursor, lo, hi);
+                            batchSizes.add(hi - lo);
+                            drain(frameWriter, frameSink);
+                        }
+                    }
+                }
+                frameWriter.putEndOfStream();
+                drain(frameWriter, frameSink);
+
+                // record path cut at the same row boundaries
+                final StringSink recordSink = new StringSink();
+                recordWriter.of(factory.getMetadata());
+                recordWriter.putSchema();
+                drain(recordWriter, recordSink);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    final Record record = cursor.getRecord();
+                    for (int i = 0, n = batchSizes.size(); i < n; i++) {
+                        for (long j = 0, m = batchSizes.getQuick(i); j < m; j++) {
+                            Assert.assertTrue(cursor.hasNext());
+                            recordWriter.putRecord(record);
+                        }
+                        recordWriter.putRecordBatch();
+                        drain(recordWriter, recordSink);
+                    }
+                    Assert.assertFalse(cursor.hasNext());
+                }
+                recordWriter.putEndOfStream();
+                drain(recordWriter, recordSink);
+
+                Assert.assertTrue(batchSizes.size() > 1);
+                Assert.assertEquals(recordSink.toString(), frameSink.toString());
+            }
+        });
+    }
+
+    @Test
+    public void testPartialConsume() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    ArrowStreamWriter writer = new ArrowStreamWriter(1024, 16);
+                    RecordCursorFactory factory = compiler.compile("select x from long_sequence(3)", sqlExecutionContext).getRecordCursorFactory()
+            ) {
+                final StringSink whole = new StringSink();
+                final StringSink pieces = new StringSink();
+                writeStream(writer, factory, whole, Long.MAX_VALUE);
+                // small socket buffer takes the stream 3 bytes at a time
+                writeStream(writer, factory, pieces, 3);
+                Assert.assertEquals(whole.toString(), pieces.toString());
+            }
+        });
+    }
+
+    @Test
+    public void testTypeBinary() throws Exception {
+        assertStream(
+                "binary",
+                "rnd_bin(3, 3, 0)",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1800000001040000010000007600040004000000060000000000000000000000" +
+                // column top
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "080000000000000010000000000000000000000000000000" +
+                // column top body
+                "00000000000000000000000000000000" +
+                // value and null
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "2000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "0c0000000000000018000000000000000300000000000000" +
+                // value and null body
+                "010000000000000000000000030000000300000000000000ee411d0000000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeBoolean() throws Exception {
+        assertStream(
+                "boolean",
+                "true",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1800000000060000010000007600040004000000060000000000000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "0800000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000000000000000000" +
+                "0000000002000000000000000000000000000000000000000000000000000000" +
+                "0100000000000000" +
+                // column top body
+                "0000000000000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "0800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000000000000000000" +
+                "0000000002000000000000000000000000000000000000000000000000000000" +
+                "0100000000000000" +
+                // value and null body
+                "0100000000000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeByte() throws Exception {
+        assertStream(
+                "byte",
+                "cast(7 as byte)",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000000020000010000007600080009000400080000000a00000008000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "0800000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000000000000000000" +
+                "0000000002000000000000000000000000000000000000000000000000000000" +
+                "0100000000000000" +
+                // column top body
+                "0000000000000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "0800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000000000000000000" +
+                "0000000002000000000000000000000000000000000000000000000000000000" +
+                "0200000000000000" +
+                // value and null body
+                "0700000000000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeChar() throws Exception {
+        assertStream(
+                "char",
+                "'Ж'",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1800000001050000010000007600040004000000060000000000000000000000" +
+                // column top
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "080000000000000010000000000000000000000000000000" +
+                // column top body
+                "00000000000000000000000000000000" +
+                // value and null
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "2000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "0c0000000000000018000000000000000200000000000000" +
+                // value and null body
+                "010000000000000000000000020000000200000000000000d096000000000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeDate() throws Exception {
+        assertStream(
+                "date",
+                "cast(86400000 as date)",
+                // schema
+                "ffffffff88000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2c000000010a000001000000760008000a000800040000000a00000008000000" +
+                "01000000030000005554430000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // column top body
+                "00000000000000000000000000000080" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "1000000000000000" +
+                // value and null body
+                "0100000000000000005c2605000000000000000000000080" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeDouble() throws Exception {
+        assertStream(
+                "double",
+                "-2.25",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1c00000001030000010000007600060006000400060000000200000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // column top body
+                "0000000000000000000000000000f87f" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "1000000000000000" +
+                // value and null body
+                "010000000000000000000000000002c0000000000000f87f" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeFloat() throws Exception {
+        assertStream(
+                "float",
+                "cast(1.5 as float)",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1c00000001030000010000007600060006000400060000000100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0400000000000000" +
+                // column top body
+                "00000000000000000000c07f00000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // value and null body
+                "01000000000000000000c03f0000c07f" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeGeoByte() throws Exception {
+        assertStream(
+                "geohash(1c)",
+                "#u",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000001020000010000007600080009000400080000000a00000008000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0100000000000000" +
+                // column top body
+                "0000000000000000ff00000000000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0200000000000000" +
+                // value and null body
+                "01000000000000001aff000000000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeGeoInt() throws Exception {
+        assertStream(
+                "geohash(4c)",
+                "#u33d",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000001020000010000007600080009000400080000000a00000020000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0400000000000000" +
+                // column top body
+                "0000000000000000ffffffff00000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // value and null body
+                "01000000000000006c0c0d00ffffffff" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeGeoLong() throws Exception {
+        assertStream(
+                "geohash(8c)",
+                "#u33d8b12",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000001020000010000007600080009000400080000000a00000040000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // column top body
+                "0000000000000000ffffffffffffffff" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "1000000000000000" +
+                // value and null body
+                "01000000000000002228c4c6d0000000ffffffffffffffff" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeGeoShort() throws Exception {
+        assertStream(
+                "geohash(2c)",
+                "#u3",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000001020000010000007600080009000400080000000a00000010000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0200000000000000" +
+                // column top body
+                "0000000000000000ffff000000000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0400000000000000" +
+                // value and null body
+                "01000000000000004303ffff00000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeInt() throws Exception {
+        assertStream(
+                "int",
+                "-5",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000001020000010000007600080009000400080000000a00000020000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0400000000000000" +
+                // column top body
+                "00000000000000000000008000000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // value and null body
+                "0100000000000000fbffffff00000080" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeLong() throws Exception {
+        assertStream(
+                "long",
+                "1234567890123L",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000001020000010000007600080009000400080000000a00000040000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // column top body
+                "00000000000000000000000000000080" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "1000000000000000" +
+                // value and null body
+                "0100000000000000cb04fb711f0100000000000000000080" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeLong256() throws Exception {
+        assertStream(
+                "long256",
+                "cast('0x0102' as long256)",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1800000001050000010000007600040004000000060000000000000000000000" +
+                // column top
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "080000000000000010000000000000000000000000000000" +
+                // column top body
+                "00000000000000000000000000000000" +
+                // value and null
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "2000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "0c0000000000000018000000000000000600000000000000" +
+                // value and null body
+                "0100000000000000000000000600000006000000000000003078303130320000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeShort() throws Exception {
+        assertStream(
+                "short",
+                "cast(-300 as short)",
+                // schema
+                "ffffffff80000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2400000000020000010000007600080009000400080000000a00000010000000" +
+                "0100000000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "0800000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000000000000000000" +
+                "0000000002000000000000000000000000000000000000000000000000000000" +
+                "0200000000000000" +
+                // column top body
+                "0000000000000000" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "0800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000000000000000000" +
+                "0000000002000000000000000000000000000000000000000000000000000000" +
+                "0400000000000000" +
+                // value and null body
+                "d4fe000000000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeString() throws Exception {
+        assertStream(
+                "string",
+                "'héllo'",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1800000001050000010000007600040004000000060000000000000000000000" +
+                // column top
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "080000000000000010000000000000000000000000000000" +
+                // column top body
+                "00000000000000000000000000000000" +
+                // value and null
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "2000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "0c0000000000000018000000000000000600000000000000" +
+                // value and null body
+                "01000000000000000000000006000000060000000000000068c3a96c6c6f0000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeSymbol() throws Exception {
+        assertStream(
+                "symbol",
+                "'abc'",
+                // schema
+                "ffffffff78000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c00100000001000000018000000" +
+                "1800000001050000010000007600040004000000060000000000000000000000" +
+                // column top
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "080000000000000010000000000000000000000000000000" +
+                // column top body
+                "00000000000000000000000000000000" +
+                // value and null
+                "ffffffff90000000100000000c00130010001200040008000c0000001c000000" +
+                "2000000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000003000000000000000000000001000000000000000800000000000000" +
+                "0c0000000000000018000000000000000300000000000000" +
+                // value and null body
+                "0100000000000000000000000300000003000000000000006162630000000000" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    @Test
+    public void testTypeTimestamp() throws Exception {
+        assertStream(
+                "timestamp",
+                "cast(86400000001 as timestamp)",
+                // schema
+                "ffffffff88000000100000000c00130010001200040008000c00000018000000" +
+                "0000000000000000040001000800080000000400080000000400000001000000" +
+                "1400000010001200040010001100080000000c0010000000100000001c000000" +
+                "2c000000010a000001000000760008000a000800040000000a00000008000000" +
+                "02000000030000005554430000000000" +
+                // column top
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1000000000000000040003000a00140008000400100000000c00000010000000" +
+                "01000000000000001c0000000100000001000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "0800000000000000" +
+                // column top body
+                "00000000000000000000000000000080" +
+                // value and null
+                "ffffffff80000000100000000c00130010001200040008000c0000001c000000" +
+                "1800000000000000040003000a00140008000400100000000c00000010000000" +
+                "02000000000000001c0000000100000002000000000000000100000000000000" +
+                "0000000002000000000000000000000001000000000000000800000000000000" +
+                "1000000000000000" +
+                // value and null body
+                "01000000000000000160d71d140000000000000000000080" +
+                // end of stream
+                "ffffffff00000000"
+        );
+    }
+
+    private static void drain(ArrowStreamWriter writer, StringSink sink) {
+        drain(writer, sink, Long.MAX_VALUE);
+    }
+
+    private static void drain(ArrowStreamWriter writer, StringSink sink, long maxBytes) {
+        while (!writer.isDrained()) {
+            final long lo = writer.getSegmentLo();
+            final long hi = Math.min(writer.getSegmentHi(), lo + Math.min(maxBytes, writer.getSegmentHi() - lo));
+            for (long p = lo; p < hi; p++) {
+                final int b = Unsafe.getUnsafe().getByte(p) & 0xff;
+                sink.put(Character.forDigit(b >> 4, 16)).put(Character.forDigit(b & 0xf, 16));
+            }
+            writer.consume(hi - lo);
+        }
+    }
+
+    private void assertStream(String type, String value, String expected) throws Exception {
+        assertMemoryLeak(() -> {
+            // column is added after the first partition, which leaves column top there
+            compile("create table x as (select cast(0 as timestamp) ts from long_sequence(1)) timestamp(ts) partition by DAY", sqlExecutionContext);
+            compile("alter table x add column v " + type, sqlExecutionContext);
+            compile("insert into x(v, ts) select " + value + ", cast(86400000000 as timestamp) from long_sequence(1)", sqlExecutionContext);
+            compile("insert into x(v, ts) select cast(null as " + type + "), cast(86400000001 as timestamp) from long_sequence(1)", sqlExecutionContext);
+            try (
+                    ArrowStreamWriter writer = new ArrowStreamWriter(1024, 16);
+                    RecordCursorFactory factory = compiler.compile("select v from x", sqlExecutionContext).getRecordCursorFactory()
+            ) {
+                Assert.assertTrue(factory.supportPageFrameCursor());
+
+                // batch per partition
+                final StringSink sink = new StringSink();
+                writer.of(factory.getMetadata());
+                writer.putSchema();
+                drain(writer, sink);
+                try (PageFrameCursor cursor = factory.getPageFrameCursor(sqlExecutionContext)) {
+                    PageFrame frame;
+                    while ((frame = cursor.next()) != null) {
+                        writer.putFrameBatch(frame, cursor, 0, frame.getPartitionHi() - frame.getPartitionLo());
+                        drain(writer, sink);
+                    }
+                }
+                writer.putEndOfStream();
+                drain(writer, sink);
+                TestUtils.assertEquals(expected, sink);
+
+                // records cut at partition boundary produce the same stream
+                sink.clear();
+                writer.clear();
+                writer.of(factory.getMetadata());
+                writer.putSchema();
+                drain(writer, sink);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    final Record record = cursor.getRecord();
+                    Assert.assertTrue(cursor.hasNext());
+                    writer.putRecord(record);
+                    writer.putRecordBatch();
+                    drain(writer, sink);
+                    while (cursor.hasNext()) {
+                        writer.putRecord(record);
+                    }
+                    writer.putRecordBatch();
+                    drain(writer, sink);
+                }
+                writer.putEndOfStream();
+                drain(writer, sink);
+                TestUtils.assertEquals(expected, sink);
+            }
+        });
+    }
+
+    private void writeStream(ArrowStreamWriter writer, RecordCursorFactory factory, StringSink sink, long maxBytes) throws SqlException {
+        writer.of(factory.getMetadata());
+        writer.putSchema();
+        drain(writer, sink, maxBytes);
+        try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+            final Record record = cursor.getRecord();
+            while (cursor.hasNext()) {
+                writer.putRecord(record);
+            }
+        }
+        writer.putRecordBatch();
+        drain(writer, sink, maxBytes);
+        writer.putEndOfStream();
+        drain(writer, sink, maxBytes);
+        writer.clear();
+    }
+}
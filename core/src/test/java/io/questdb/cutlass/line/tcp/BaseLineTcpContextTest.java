@@ -24,6 +24,7 @@
 
 package io.questdb.cutlass.line.tcp;
 
+import io.questdb.Metrics;
 import io.questdb.cairo.AbstractCairoTest;
 import io.questdb.cairo.TableReader;
 import io.questdb.log.Log;
@@ -253,7 +254,8 @@ abstract class BaseLineTcpContextTest extends AbstractCairoTest {
                 engine,
                 createWorkerPool(1, true),
                 null,
-                workerPool = createWorkerPool(nWriterThreads, false)) {
+                workerPool = createWorkerPool(nWriterThreads, false),
+                Metrics.disabled().lineTcp()) {
 
             @Override
             protected NetworkIOJob createNetworkIOJob(IODispatcher<LineTcpConnectionContext> dispatcher, int workerId) {
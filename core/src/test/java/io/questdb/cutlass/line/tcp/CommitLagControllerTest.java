@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.metrics.MetricsRegistryImpl;
+import io.questdb.std.Chars;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommitLagControllerTest {
+    private final MetricsRegistryImpl metricsRegistry = new MetricsRegistryImpl();
+    private final LineTcpMetrics metrics = new LineTcpMetrics(metricsRegistry);
+
+    @Test
+    public void testInOrderFeedShrinksLag() {
+        CommitLagController controller = new CommitLagController("x", 10_000, 2_000_000, 500_000, metrics);
+        Assert.assertEquals(2_000_000, controller.getLagMicros());
+        Assert.assertEquals(8_000, controller.getCommitIntervalMillis());
+        Assert.assertEquals(500_000, controller.getMaxUncommittedRows());
+
+        for (int i = 0; i < 100; i++) {
+            controller.onCommit(1000, 1000, 0);
+        }
+        Assert.assertEquals(0, controller.getLagMicros());
+        Assert.assertEquals(10_000, controller.getCommitIntervalMillis());
+        // 1 row per millisecond over the commit interval
+        Assert.assertEquals(10_000, controller.getMaxUncommittedRows());
+        Assert.assertEquals(10_000, metrics.getMaxUncommittedRows("x"));
+    }
+
+    @Test
+    public void testLagCappedBySla() {
+        CommitLagController controller = new CommitLagController("x", 10_000, 0, 500_000, metrics);
+        controller.onCommit(1_000_000, 1000, 60_000_000);
+        Assert.assertEquals(5_000_000, controller.getLagMicros());
+        Assert.assertEquals(5_000, controller.getCommitIntervalMillis());
+        // arrival rate would ask for 5M rows, capped by table max uncommitted rows
+        Assert.assertEquals(500_000, controller.getMaxUncommittedRows());
+        Assert.assertEquals(60_000_000, metrics.getO3DepthMicros("x"));
+        Assert.assertEquals(5_000_000, metrics.getCommitLagMicros("x"));
+    }
+
+    @Test
+    public void testMetricsPerTable() {
+        CommitLagController x = new CommitLagController("x", 10_000, 0, 500_000, metrics);
+        CommitLagController y = new CommitLagController("y", 10_000, 0, 500_000, metrics);
+        x.onCommit(100, 100, 1_000_000);
+        y.onCommit(100, 100, 0);
+        // commit of one table does not overwrite values of the other
+        Assert.assertEquals(1_500_000, metrics.getCommitLagMicros("x"));
+        Assert.assertEquals(0, metrics.getCommitLagMicros("y"));
+        Assert.assertEquals(8_500, metrics.getCommitIntervalMillis("x"));
+        Assert.assertEquals(10_000, metrics.getCommitIntervalMillis("y"));
+
+        y.close();
+        final StringSink sink = new StringSink();
+        metricsRegistry.scrapeIntoPrometheus(sink);
+        TestUtils.assertContains(sink, "questdb_line_tcp_commit_lag_micros{table=\"x\"} 1500000\n");
+        Assert.assertFalse(Chars.contains(sink, "table=\"y\""));
+    }
+
+    @Test
+    public void testLagFollowsO3Depth() {
+        CommitLagController controller = new CommitLagController("x", 10_000, 0, 500_000, metrics);
+        controller.onCommit(100, 100, 1_000_000);
+        Assert.assertEquals(1_500_000, controller.getLagMicros());
+        Assert.assertEquals(8_500, controller.getCommitIntervalMillis());
+        Assert.assertEquals(8_500, controller.getMaxUncommittedRows());
+
+        // depth drops, lag decays rather than snapping back
+        controller.onCommit(100, 100, 0);
+        Assert.assertEquals(1_125_000, controller.getLagMicros());
+    }
+}
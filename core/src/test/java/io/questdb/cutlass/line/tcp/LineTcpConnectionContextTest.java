@@ -26,6 +26,7 @@ package io.questdb.cutlass.line.tcp;
 
 import io.questdb.cairo.*;
 import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.wal.WalApplyJob;
 import io.questdb.griffin.SqlCompiler;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
@@ -1643,6 +1644,37 @@ public class LineTcpConnectionContextTest extends BaseLineTcpContextTest {
         });
     }
 
+    @Test
+    public void testWalAddFieldColumn() throws Exception {
+        String table = "walAddField";
+        walEnabled = true;
+        runInContext(() -> {
+            recvBuffer =
+                    table + ",location=us-midwest temperature=82 1465839830100400200\n" +
+                            table + ",location=us-midwest temperature=83 1465839830100500200\n" +
+                            table + ",location=us-eastcoast temperature=81,humidity=23 1465839830101400200\n" +
+                            table + ",location=us-midwest temperature=85 1465839830102300200\n" +
+                            table + ",location=us-westcost temperature=82 1465839830102500200\n";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            closeContext();
+            // rows are in WAL until the apply job runs
+            assertTable("location\ttemperature\ttimestamp\thumidity\n", table);
+            try (WalApplyJob job = new WalApplyJob(engine)) {
+                Assert.assertTrue(job.run(0));
+            }
+            String expected = "location\ttemperature\ttimestamp\thumidity\n" +
+                    "us-midwest\t82.0\t2016-06-13T17:43:50.100400Z\tNaN\n" +
+                    "us-midwest\t83.0\t2016-06-13T17:43:50.100500Z\tNaN\n" +
+                    "us-eastcoast\t81.0\t2016-06-13T17:43:50.101400Z\t23.0\n" +
+                    "us-midwest\t85.0\t2016-06-13T17:43:50.102300Z\tNaN\n" +
+                    "us-westcost\t82.0\t2016-06-13T17:43:50.102500Z\tNaN\n";
+            assertTable(expected, table);
+        });
+    }
+
     private void addTable(String table) {
         try (
                 TableModel model = new TableModel(configuration, table, PartitionBy.NONE)
@@ -33,6 +33,7 @@ import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.cutlass.line.AbstractLineSender;
 import io.questdb.cutlass.line.AuthenticatedLineTcpSender;
+import io.questdb.cutlass.line.LineTcpBatch;
 import io.questdb.cutlass.line.LineTcpSender;
 import io.questdb.griffin.CompiledQuery;
 import io.questdb.griffin.SqlCompiler;
@@ -689,6 +690,108 @@ public class LineTcpReceiverTest extends AbstractLineTcpReceiverTest {
         });
     }
 
+    @Test
+    public void testBatchWithTcpSender() throws Exception {
+        runInContext((receiver) -> {
+            send(receiver, "batch", WAIT_ENGINE_TABLE_RELEASE, () -> {
+                try (
+                        LineTcpSender lineTcpSender = new LineTcpSender(Net.parseIPv4("127.0.0.1"), bindPort, msgBufferSize);
+                        LineTcpBatch batch = new LineTcpBatch()
+                ) {
+                    lineTcpSender.send(
+                            batch.of("batch", 3)
+                                    .timestamps(new long[]{0, Timestamps.SECOND_MICROS, 2 * Timestamps.SECOND_MICROS})
+                                    .symbolColumn("sym", new CharSequence[]{"a", "значение", null})
+                                    .column("l", new long[]{1, 2, 3})
+                                    .column("d", new double[]{1.5, Double.NaN, 3.5})
+                                    .column("b", new boolean[]{true, false, true})
+                                    .stringColumn("s", new CharSequence[]{"x", null, "{\"ключ\": \"число\"}"})
+                    );
+                    lineTcpSender.send(
+                            batch.of("batch", 1)
+                                    .timestamps(new long[]{3 * Timestamps.SECOND_MICROS})
+                                    .column("l", new long[]{4})
+                                    .column("i", new int[]{42})
+                    );
+                }
+            });
+
+            String expected = "sym\tl\td\tb\ts\ttimestamp\ti\n" +
+                    "a\t1\t1.5\ttrue\tx\t1970-01-01T00:00:00.000000Z\tNaN\n" +
+                    "значение\t2\tNaN\tfalse\t\t1970-01-01T00:00:01.000000Z\tNaN\n" +
+                    "\t3\t3.5\ttrue\t{\"ключ\": \"число\"}\t1970-01-01T00:00:02.000000Z\tNaN\n" +
+                    "\t4\tNaN\tfalse\t\t1970-01-01T00:00:03.000000Z\t42\n";
+            assertTable(expected, "batch");
+        });
+    }
+
+    @Test
+    public void testBatchCastError() throws Exception {
+        try (TableModel m = new TableModel(configuration, "batch", PartitionBy.DAY)) {
+            m.col("sym", ColumnType.SYMBOL).col("l", ColumnType.INT).timestamp();
+            CairoTestUtils.createTable(m, ColumnType.VERSION);
+        }
+
+        runInContext((receiver) -> {
+            send(receiver, "batch", WAIT_ENGINE_TABLE_RELEASE, () -> {
+                try (
+                        LineTcpSender lineTcpSender = new LineTcpSender(Net.parseIPv4("127.0.0.1"), bindPort, msgBufferSize);
+                        LineTcpBatch batch = new LineTcpBatch()
+                ) {
+                    // long does not fit int column, the whole batch is rejected
+                    lineTcpSender.send(
+                            batch.of("batch", 1)
+                                    .timestamps(new long[]{0})
+                                    .symbolColumn("sym", new CharSequence[]{"a"})
+                                    .column("l", new long[]{1})
+                    );
+                    lineTcpSender.send(
+                            batch.of("batch", 2)
+                                    .timestamps(new long[]{0, 1})
+                                    .symbolColumn("sym", new CharSequence[]{"b", "c"})
+                                    .column("l", new short[]{2, 3})
+                    );
+                }
+            });
+
+            String expected = "sym\tl\ttimestamp\n" +
+                    "b\t2\t1970-01-01T00:00:00.000000Z\n" +
+                    "c\t3\t1970-01-01T00:00:00.000001Z\n";
+            assertTable(expected, "batch");
+        });
+    }
+
+    @Test
+    public void testBatchIntNull() throws Exception {
+        try (TableModel m = new TableModel(configuration, "batch", PartitionBy.DAY)) {
+            m.col("i", ColumnType.INT).col("l", ColumnType.LONG).timestamp();
+            CairoTestUtils.createTable(m, ColumnType.VERSION);
+        }
+
+        runInContext((receiver) -> {
+            send(receiver, "batch", WAIT_ENGINE_TABLE_RELEASE, () -> {
+                try (
+                        LineTcpSender lineTcpSender = new LineTcpSender(Net.parseIPv4("127.0.0.1"), bindPort, msgBufferSize);
+                        LineTcpBatch batch = new LineTcpBatch()
+                ) {
+                    // int null is null of INT column and of LONG column int vector is widened to
+                    lineTcpSender.send(
+                            batch.of("batch", 3)
+                                    .timestamps(new long[]{0, 1, 2})
+                                    .column("i", new int[]{1, Numbers.INT_NaN, 0})
+                                    .column("l", new int[]{Numbers.INT_NaN, 2, 0})
+                    );
+                }
+            });
+
+            String expected = "i\tl\ttimestamp\n" +
+                    "1\tNaN\t1970-01-01T00:00:00.000000Z\n" +
+                    "NaN\t2\t1970-01-01T00:00:00.000001Z\n" +
+                    "0\t0\t1970-01-01T00:00:00.000002Z\n";
+            assertTable(expected, "batch");
+        });
+    }
+
     @Test
     public void testWithTcpSender() throws Exception {
         runInContext((receiver) -> {
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.pgwire;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.Chars;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class PGCopyTextDecoderTest {
+    private static final Log LOG = LogFactory.getLog(PGCopyTextDecoderTest.class);
+
+    @BeforeClass
+    public static void setUpStatic() {
+        // logger holds native memory until JVM stops, create it before leak checks
+        LOG.info().$("begin").$();
+    }
+
+    @Test
+    public void testDelimiterAndQuoteAreQuoted() throws Exception {
+        // escaped delimiter is literal
+        assertDecoded(
+                "\"a,b\",\"x\"\"y\",\"1\n2\"\n",
+                "a\\,b,x\"y,1\\n2\n",
+                ','
+        );
+    }
+
+    @Test
+    public void testEndOfDataMarker() throws Exception {
+        assertDecoded(
+                "1\ta\n",
+                "1\ta\n\\.\n2\tb\n",
+                '\t'
+        );
+    }
+
+    @Test
+    public void testEscapes() throws Exception {
+        assertDecoded(
+                "1\t\"foo\tbar\"\t\"x\ny\"\n" +
+                        "2\t\t\"q\"\"uote\\\"\n" +
+                        "\tAB,c\tNz\n",
+                "1\tfoo\\tbar\tx\\ny\n" +
+                        "2\t\\N\tq\"uote\\\\\n" +
+                        "\\N\t\\101\\x42,c\t\\Nz\n" +
+                        "\\.\n",
+                '\t'
+        );
+    }
+
+    @Test
+    public void testIncompleteEscapeAtEnd() throws Exception {
+        assertDecoded("a\tB\tx\t\\", "a\t\\102\t\\x\t\\", '\t');
+    }
+
+    @Test
+    public void testNoLineEndAtEnd() throws Exception {
+        assertDecoded("1\ta\n2\t", "1\ta\n2\t\\N", '\t');
+    }
+
+    @Test
+    public void testShortNumericEscapes() throws Exception {
+        // octal and hex escapes end at first byte that is not a digit
+        assertDecoded("\u0001x\tAz\t\u0007\n", "\\1x\t\\x41z\t\\7\n", '\t');
+    }
+
+    private static void assertDecoded(String expected, String input, char delimiter) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            final long buf = Unsafe.malloc(bytes.length, MemoryTag.NATIVE_DEFAULT);
+            try (PGCopyTextDecoder decoder = new PGCopyTextDecoder()) {
+                for (int i = 0; i < bytes.length; i++) {
+                    Unsafe.getUnsafe().putByte(buf + i, bytes[i]);
+                }
+                // whole input at once and byte by byte, escapes split between messages
+                for (int step : new int[]{bytes.length, 1}) {
+                    decoder.of((byte) delimiter);
+                    final StringSink sink = new StringSink();
+                    for (int lo = 0; lo < bytes.length; lo += step) {
+                        decoder.decode(buf + lo, buf + Math.min(lo + step, bytes.length));
+                        Chars.utf8Decode(decoder.getOutLo(), decoder.getOutHi(), sink);
+                    }
+                    decoder.flush();
+                    Chars.utf8Decode(decoder.getOutLo(), decoder.getOutHi(), sink);
+                    TestUtils.assertEquals(expected, sink);
+                }
+            } finally {
+                Unsafe.free(buf, bytes.length, MemoryTag.NATIVE_DEFAULT);
+            }
+        });
+    }
+}
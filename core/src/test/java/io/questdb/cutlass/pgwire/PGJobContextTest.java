@@ -60,8 +60,12 @@ import org.postgresql.core.BaseConnection;
 import org.postgresql.util.PGTimestamp;
 import org.postgresql.util.PSQLException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.sql.*;
 import java.text.SimpleDateFormat;
@@ -160,12 +164,18 @@ public class PGJobContextTest extends AbstractGriffinTest {
 
     @Test
     public void testAllTypesSelectExtended() throws Exception {
-        testAllTypesSelect(false);
+        testAllTypesSelect(false, false);
     }
 
     @Test
     public void testAllTypesSelectSimple() throws Exception {
-        testAllTypesSelect(true);
+        testAllTypesSelect(true, false);
+    }
+
+    @Test
+    public void testAllTypesSelectSimpleBinaryResultFormatPreferred() throws Exception {
+        // values are the same, they just travel in binary format
+        testAllTypesSelect(true, true);
     }
 
     @Test
@@ -236,6 +246,88 @@ public class PGJobContextTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testBatchInsertAutoCommit() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("create table test (id long, val int, ts timestamp) timestamp(ts) partition by DAY");
+                }
+
+                final int batchSize = 1000;
+                try (PreparedStatement batchInsert = connection.prepareStatement("insert into test(id, val, ts) values(?, ?, ?)")) {
+                    // several batches, so that named statement is used too
+                    for (int batch = 0; batch < 10; batch++) {
+                        for (int i = 0; i < batchSize; i++) {
+                            final long id = batch * batchSize + i;
+                            batchInsert.setLong(1, id);
+                            batchInsert.setInt(2, (int) (id % 7));
+                            batchInsert.setString(3, "2022-01-01T00:00:00.000000Z");
+                            batchInsert.addBatch();
+                        }
+                        final int[] counts = batchInsert.executeBatch();
+                        Assert.assertEquals(batchSize, counts.length);
+                        for (int i = 0; i < batchSize; i++) {
+                            Assert.assertEquals(1, counts[i]);
+                        }
+                    }
+                }
+
+                final StringSink sink = new StringSink();
+                try (ResultSet rs = connection.createStatement().executeQuery("select count(), sum(id) from test")) {
+                    assertResultSet("count[BIGINT],sum[BIGINT]\n10000,49995000\n", sink, rs);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testBatchInsertAutoCommitRollbackOnError() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("create table test (id long, ts timestamp) timestamp(ts) partition by DAY");
+                }
+
+                try (PreparedStatement batchInsert = connection.prepareStatement("insert into test(id, ts) values(?, ?)")) {
+                    for (int i = 0; i < 100; i++) {
+                        batchInsert.setLong(1, i);
+                        batchInsert.setString(2, i == 50 ? "not a timestamp" : "2022-01-01T00:00:00.000000Z");
+                        batchInsert.addBatch();
+                    }
+                    try {
+                        batchInsert.executeBatch();
+                        Assert.fail();
+                    } catch (BatchUpdateException e) {
+                        TestUtils.assertContains(e.getMessage(), "Invalid timestamp");
+                    }
+
+                    // rows that came before the failed one in the same pipeline are rolled back
+                    final StringSink sink = new StringSink();
+                    try (ResultSet rs = connection.createStatement().executeQuery("select count() from test")) {
+                        assertResultSet("count[BIGINT]\n0\n", sink, rs);
+                    }
+
+                    batchInsert.setLong(1, 1);
+                    batchInsert.setString(2, "2022-01-01T00:00:00.000000Z");
+                    batchInsert.addBatch();
+                    batchInsert.executeBatch();
+
+                    sink.clear();
+                    try (ResultSet rs = connection.createStatement().executeQuery("select count() from test")) {
+                        assertResultSet("count[BIGINT]\n1\n", sink, rs);
+                    }
+                }
+            }
+        });
+    }
+
     @Test
     public void testBatchInsertWithTransaction() throws Exception {
         assertMemoryLeak(() -> {
@@ -654,26 +746,234 @@ public class PGJobContextTest extends AbstractGriffinTest {
     }
 
     @Test
-    @Ignore
-    public void testCopyIn() throws SQLException {
-        try (
-                final PGWireServer ignored = createPGServer(2);
-                final Connection connection = getConnection(false, true)
-        ) {
-            PreparedStatement stmt = connection.prepareStatement("create table tab (a int, b int)");
-            stmt.execute();
+    public void testCopyIn() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                PreparedStatement stmt = connection.prepareStatement("create table tab (a int, b int)");
+                stmt.execute();
 
-            CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
 
-            CopyIn copyIn = copyManager.copyIn("copy tab from STDIN");
+                CopyIn copyIn = copyManager.copyIn("copy tab from STDIN");
 
-            String text = "a,b\r\n" +
-                    "10,20";
+                String text = "a,b\r\n" +
+                        "10,20\r\n" +
+                        "30,40\r\n";
 
-            byte[] bytes = text.getBytes();
-            copyIn.writeToCopy(bytes, 0, bytes.length);
-            copyIn.endCopy();
-        }
+                byte[] bytes = text.getBytes();
+                // data is split to exercise parser state between CopyData messages
+                copyIn.writeToCopy(bytes, 0, 9);
+                copyIn.writeToCopy(bytes, 9, bytes.length - 9);
+                Assert.assertEquals(2, copyIn.endCopy());
+
+                sink.clear();
+                try (ResultSet rs = connection.prepareStatement("tab").executeQuery()) {
+                    assertResultSet("a[INTEGER],b[INTEGER]\n10,20\n30,40\n", sink, rs);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInBinary() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, s string, d double, ts timestamp) timestamp(ts) partition by DAY").execute();
+
+                final int rowCount = 10_000;
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final DataOutputStream out = new DataOutputStream(bytes);
+                out.write(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0});
+                out.writeInt(0);
+                out.writeInt(0);
+                for (int i = 0; i < rowCount; i++) {
+                    out.writeShort(4);
+                    out.writeInt(4);
+                    out.writeInt(i);
+                    if (i % 3 == 0) {
+                        out.writeInt(-1);
+                    } else {
+                        final byte[] str = ("s" + i).getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(str.length);
+                        out.write(str);
+                    }
+                    out.writeInt(8);
+                    out.writeDouble(i / 2.0);
+                    out.writeInt(8);
+                    // microseconds since 2000-01-01
+                    out.writeLong(i * 60_000_000L);
+                }
+                out.writeShort(-1);
+
+                final byte[] data = bytes.toByteArray();
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyIn copyIn = copyManager.copyIn("copy tab from stdin with (format binary)");
+                // tuples are split across CopyData messages
+                for (int lo = 0; lo < data.length; lo += 1001) {
+                    copyIn.writeToCopy(data, lo, Math.min(1001, data.length - lo));
+                }
+                Assert.assertEquals(rowCount, copyIn.endCopy());
+
+                sink.clear();
+                try (ResultSet rs = connection.prepareStatement("select a, s, d from tab where a in (0, 1, 9999)").executeQuery()) {
+                    assertResultSet(
+                            "a[INTEGER],s[VARCHAR],d[DOUBLE]\n" +
+                                    "0,null,0.0\n" +
+                                    "1,s1,0.5\n" +
+                                    "9999,null,4999.5\n",
+                            sink,
+                            rs
+                    );
+                }
+                sink.clear();
+                try (ResultSet rs = connection.prepareStatement("select count() from tab where ts < '2000-01-01T00:02:00.000000Z'").executeQuery()) {
+                    assertResultSet("count[BIGINT]\n2\n", sink, rs);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInBinaryColumnCountMismatch() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, b int)").execute();
+
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final DataOutputStream out = new DataOutputStream(bytes);
+                out.write(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0});
+                out.writeInt(0);
+                out.writeInt(0);
+                out.writeShort(1);
+                out.writeInt(4);
+                out.writeInt(1);
+                out.writeShort(-1);
+
+                final byte[] data = bytes.toByteArray();
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                try {
+                    copyManager.copyIn("copy tab from stdin (format binary)", new ByteArrayInputStream(data));
+                    Assert.fail();
+                } catch (PSQLException e) {
+                    TestUtils.assertContains(e.getMessage(), "column count mismatch");
+                }
+
+                // connection is usable after failed copy and nothing has been written
+                sink.clear();
+                try (ResultSet rs = connection.prepareStatement("select count() from tab").executeQuery()) {
+                    assertResultSet("count[BIGINT]\n0\n", sink, rs);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInText() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, s string, t string)").execute();
+
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyIn copyIn = copyManager.copyIn("copy tab from stdin with (format text)");
+
+                String text = "1\tfoo\\tbar\tx\\ny\n" +
+                        "2\t\\N\tq\"uote\\\\\n" +
+                        "\\N\t\\101\\x42,c\t\\Nz\n" +
+                        "\\.\n";
+
+                byte[] bytes = text.getBytes();
+                // escape sequences are split between CopyData messages
+                for (int i = 0; i < bytes.length; i++) {
+                    copyIn.writeToCopy(bytes, i, 1);
+                }
+                Assert.assertEquals(3, copyIn.endCopy());
+
+                sink.clear();
+                try (ResultSet rs = connection.prepareStatement("select a, s, t, length(s) ls, length(t) lt from tab").executeQuery()) {
+                    assertResultSet(
+                            "a[INTEGER],s[VARCHAR],t[VARCHAR],ls[INTEGER],lt[INTEGER]\n" +
+                                    "1,foo\tbar,x\ny,7,3\n" +
+                                    "2,null,q\"uote\\,-1,7\n" +
+                                    "null,AB,c,Nz,4,2\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInTableDoesNotExist() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                try {
+                    copyManager.copyIn("copy tab from stdin");
+                    Assert.fail();
+                } catch (PSQLException e) {
+                    TestUtils.assertContains(e.getMessage(), "table 'tab' does not exist");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCompiledQueryIsSharedByConnections() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection1 = getConnection(false, true);
+                    final Connection connection2 = getConnection(false, true)
+            ) {
+                connection1.prepareStatement("create table x as (select x from long_sequence(10))").execute();
+                final long hits = engine.getQueryFactoryCache().getHitCount();
+
+                final String query = "select x from x where x > ?";
+                final StringSink sink = new StringSink();
+                try (PreparedStatement stmt = connection1.prepareStatement(query)) {
+                    stmt.setLong(1, 8);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        assertResultSet("x[BIGINT]\n9\n10\n", sink, rs);
+                    }
+                }
+
+                // the other connection does not compile the query again
+                sink.clear();
+                try (PreparedStatement stmt = connection2.prepareStatement(query)) {
+                    stmt.setLong(1, 9);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        assertResultSet("x[BIGINT]\n10\n", sink, rs);
+                    }
+                }
+                Assert.assertTrue(engine.getQueryFactoryCache().getHitCount() > hits);
+
+                // cached factory is recompiled once table structure changes
+                connection1.prepareStatement("alter table x add column y int").execute();
+                sink.clear();
+                try (PreparedStatement stmt = connection2.prepareStatement(query)) {
+                    stmt.setLong(1, 9);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        assertResultSet("x[BIGINT]\n10\n", sink, rs);
+                    }
+                }
+            }
+        });
     }
 
     @Test
@@ -816,22 +1116,27 @@ public class PGJobContextTest extends AbstractGriffinTest {
 
     @Test
     public void testGeoHashSelectBin() throws Exception {
-        testGeoHashSelect(false, true);
+        testGeoHashSelect(false, true, false);
+    }
+
+    @Test
+    public void testGeoHashSelectBinVarchar() throws Exception {
+        testGeoHashSelect(false, true, true);
     }
 
     @Test
     public void testGeoHashSelectSimpleBin() throws Exception {
-        testGeoHashSelect(true, true);
+        testGeoHashSelect(true, true, false);
     }
 
     @Test
     public void testGeoHashSelectSimpleStr() throws Exception {
-        testGeoHashSelect(true, false);
+        testGeoHashSelect(true, false, false);
     }
 
     @Test
     public void testGeoHashSelectStr() throws Exception {
-        testGeoHashSelect(false, false);
+        testGeoHashSelect(false, false, false);
     }
 
     @Test
@@ -4222,6 +4527,22 @@ nodejs code:
         }
     }
 
+    private Connection getBinaryVarcharConnection() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", "admin");
+        properties.setProperty("password", "quest");
+        properties.setProperty("sslmode", "disable");
+        properties.setProperty("binaryTransfer", "true");
+        // driver does not ask for varchar in binary format by default,
+        // symbols, strings, long256 and geohashes are all sent as varchar
+        properties.setProperty("binaryTransferEnable", "VARCHAR");
+        // use binary format from the first execution of a statement
+        properties.setProperty("prepareThreshold", "-1");
+
+        TimeZone.setDefault(TimeZone.getTimeZone("EDT"));
+        return DriverManager.getConnection("jdbc:postgresql://127.0.0.1:8812/qdb", properties);
+    }
+
     private Connection getConnection(boolean simple, boolean binary) throws SQLException {
         Properties properties = new Properties();
         properties.setProperty("user", "admin");
@@ -4508,10 +4829,31 @@ nodejs code:
         };
     }
 
-    private void testAllTypesSelect(boolean simple) throws Exception {
+    private void testAllTypesSelect(boolean simple, boolean binaryResultFormatPreferred) throws Exception {
         assertMemoryLeak(() -> {
+            final PGWireConfiguration configuration = new DefaultPGWireConfiguration() {
+                @Override
+                public int[] getWorkerAffinity() {
+                    return new int[]{-1};
+                }
+
+                @Override
+                public int getWorkerCount() {
+                    return 1;
+                }
+
+                @Override
+                public Rnd getRandom() {
+                    return new Rnd();
+                }
+
+                @Override
+                public boolean isBinaryResultFormatPreferred() {
+                    return binaryResultFormatPreferred;
+                }
+            };
             try (
-                    final PGWireServer ignored = createPGServer(1);
+                    final PGWireServer ignored = createPGServer(configuration);
                     final Connection connection = getConnection(simple, true)
             ) {
                 CallableStatement stmt = connection.prepareCall(
@@ -4661,11 +5003,11 @@ nodejs code:
         });
     }
 
-    private void testGeoHashSelect(boolean simple, boolean binary) throws Exception {
+    private void testGeoHashSelect(boolean simple, boolean binary, boolean binaryVarchar) throws Exception {
         TestUtils.assertMemoryLeak(() -> {
             try (
                     final PGWireServer ignore = createPGServer(2);
-                    final Connection connection = getConnection(simple, binary)
+                    final Connection connection = binaryVarchar ? getBinaryVarcharConnection() : getConnection(simple, binary)
             ) {
                 Statement statement = connection.createStatement();
                 ResultSet rs = statement.executeQuery(
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.text;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.SqlCompiler;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Files;
+import io.questdb.std.Rnd;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class ParallelCsvFileImporterTest {
+    private final static Log LOG = LogFactory.getLog(ParallelCsvFileImporterTest.class);
+    private static final String FILE_NAME = "trades.csv";
+    private static final long DAY = 24L * 3600 * 1_000_000;
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private static String inputRoot;
+    private static boolean parallelCopyEnabled;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+            inputRoot = temp.newFolder("input").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        TestUtils.createTestPath(root);
+        parallelCopyEnabled = true;
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testImportMatchesSerialCopy() throws Exception {
+        writeCsv(3000, 10, true);
+        executeWithPool(3, 4, (engine, compiler, context) -> {
+            Assert.assertTrue(importFile(engine, context, "x", PartitionBy.DAY, "ts"));
+
+            parallelCopyEnabled = false;
+            compiler.compile("copy y from '" + FILE_NAME + "'", context);
+
+            assertSqlCursors(compiler, context, "select * from y order by ts", "x");
+            assertRowCount(compiler, context, "x", 3000);
+            assertPartitionCount(engine, "x", 10);
+            assertNoTemporaryTables(engine, "x");
+        });
+    }
+
+    @Test
+    public void testImportHourlyPartitions() throws Exception {
+        writeCsv(2000, 5, false);
+        executeWithPool(2, 2, (engine, compiler, context) -> {
+            compiler.compile("copy x from '" + FILE_NAME + "' with partition by HOUR timestamp ts", context);
+
+            parallelCopyEnabled = false;
+            compiler.compile("copy y from '" + FILE_NAME + "'", context);
+
+            assertSqlCursors(compiler, context, "select * from y order by ts", "x");
+            assertNoTemporaryTables(engine, "x");
+        });
+    }
+
+    @Test
+    public void testImportIntoExistingTable() throws Exception {
+        writeCsv(1000, 3, false);
+        executeWithPool(2, 4, (engine, compiler, context) -> {
+            compiler.compile("create table x (id long, ts timestamp, s string, d double) timestamp(ts) partition by DAY", context);
+            Assert.assertTrue(importFile(engine, context, "x", PartitionBy.NONE, null));
+            assertRowCount(compiler, context, "x", 1000);
+            assertPartitionCount(engine, "x", 3);
+
+            // table is not empty anymore
+            Assert.assertFalse(importFile(engine, context, "x", PartitionBy.NONE, null));
+        });
+    }
+
+    @Test
+    public void testImportSymbols() throws Exception {
+        writeCsv(3000, 10, true);
+        executeWithPool(3, 4, (engine, compiler, context) -> {
+            final String ddl = " (id long, ts timestamp, s symbol index, d double) timestamp(ts) partition by DAY";
+            compiler.compile("create table x" + ddl, context);
+            // symbol table of the target table is not empty, keys of temporary tables must be shifted
+            compiler.compile("insert into x values (0, 0, 'first', 0.0)", context);
+            compiler.compile("truncate table x", context);
+            compiler.compile("insert into x values (0, 0, 'first', 0.0)", context);
+            compiler.compile("truncate table x", context);
+            Assert.assertTrue(importFile(engine, context, "x", PartitionBy.NONE, null));
+
+            parallelCopyEnabled = false;
+            compiler.compile("create table y" + ddl, context);
+            compiler.compile("copy y from '" + FILE_NAME + "'", context);
+
+            assertSqlCursors(compiler, context, "select * from y order by ts", "x");
+            // index lookups
+            assertSqlCursors(compiler, context, "select * from y where s = 'quoted, with comma'", "x where s = 'quoted, with comma'");
+            assertSqlCursors(compiler, context, "select * from y where s = null", "x where s = null");
+            assertSqlCursors(compiler, context, "select * from y latest by s order by s", "select * from x latest by s order by s");
+            assertSqlCursors(compiler, context, "select s, count() from y order by s", "select s, count() from x order by s");
+            assertPartitionCount(engine, "x", 10);
+            assertNoTemporaryTables(engine, "x");
+        });
+    }
+
+    @Test
+    public void testUnsupportedTables() throws Exception {
+        writeCsv(1000, 3, false);
+        executeWithPool(2, 4, (engine, compiler, context) -> {
+            // partitioning is unknown
+            Assert.assertFalse(importFile(engine, context, "x", PartitionBy.NONE, null));
+
+            compiler.compile("create table z (id long, ts timestamp, s string, d double) timestamp(ts)", context);
+            Assert.assertFalse(importFile(engine, context, "z", PartitionBy.NONE, null));
+
+            // serial copy is used instead, timestamps are not ordered and need a partitioned table
+            parallelCopyEnabled = false;
+            compiler.compile("create table y (id long, ts timestamp, s symbol, d double) timestamp(ts) partition by DAY", context);
+            compiler.compile("copy y from '" + FILE_NAME + "'", context);
+            assertRowCount(compiler, context, "y", 1000);
+        });
+    }
+
+    private static void assertNoTemporaryTables(CairoEngine engine, CharSequence tableName) {
+        try (Path path = new Path()) {
+            StringSink tempName = new StringSink();
+            for (int i = 0; i < 4; i++) {
+                tempName.clear();
+                TextImportEntry.tableNameOf(tempName, tableName, i);
+                Assert.assertEquals(TableUtils.TABLE_DOES_NOT_EXIST, engine.getStatus(AllowAllCairoSecurityContext.INSTANCE, path, tempName));
+            }
+        }
+    }
+
+    private static void assertPartitionCount(CairoEngine engine, CharSequence tableName, int expected) {
+        try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, tableName)) {
+            Assert.assertEquals(expected, reader.getPartitionCount());
+        }
+    }
+
+    private static void assertRowCount(SqlCompiler compiler, SqlExecutionContext context, CharSequence tableName, long expected) throws Exception {
+        sink.clear();
+        try (
+                RecordCursorFactory factory = compiler.compile("select count() from " + tableName, context).getRecordCursorFactory();
+                RecordCursor cursor = factory.getCursor(context)
+        ) {
+            Assert.assertTrue(cursor.hasNext());
+            Assert.assertEquals(expected, cursor.getRecord().getLong(0));
+        }
+    }
+
+    private static void assertSqlCursors(SqlCompiler compiler, SqlExecutionContext context, CharSequence expected, CharSequence actual) throws Exception {
+        expectedSink.clear();
+        sink.clear();
+        try (RecordCursorFactory factory = compiler.compile(expected, context).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(context)) {
+                TestUtils.printCursor(cursor, factory.getMetadata(), true, expectedSink, TestUtils.printer);
+            }
+        }
+        try (RecordCursorFactory factory = compiler.compile(actual, context).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(context)) {
+                TestUtils.printCursor(cursor, factory.getMetadata(), true, sink, TestUtils.printer);
+            }
+        }
+        TestUtils.assertEquals(expectedSink, sink);
+    }
+
+    private static void executeWithPool(int workerCount, int queueCapacity, ImportRunnable runnable) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public CharSequence getInputRoot() {
+                    return inputRoot;
+                }
+
+                @Override
+                public long getSqlCopyMinChunkSize() {
+                    return 4096;
+                }
+
+                @Override
+                public int getSqlCopyQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public boolean isSqlParallelCopyEnabled() {
+                    return parallelCopyEnabled;
+                }
+            };
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext context = new SqlExecutionContextImpl(engine, workerCount)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new TextImportJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(engine, compiler, context);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    private static boolean importFile(
+            CairoEngine engine,
+            SqlExecutionContext context,
+            CharSequence tableName,
+            int partitionBy,
+            CharSequence timestampColumn
+    ) throws TextException {
+        try (
+                Path path = new Path().of(inputRoot).concat(FILE_NAME).$();
+                ParallelCsvFileImporter importer = new ParallelCsvFileImporter(engine)
+        ) {
+            final long fd = Files.openRO(path);
+            Assert.assertTrue(fd > -1);
+            try {
+                return importer.importFile(
+                        context.getCairoSecurityContext(),
+                        tableName,
+                        fd,
+                        Files.length(fd),
+                        true,
+                        partitionBy,
+                        timestampColumn
+                );
+            } finally {
+                Files.close(fd);
+            }
+        }
+    }
+
+    private static void writeCsv(int rowCount, int dayCount, boolean multiline) throws IOException {
+        // rows are shuffled across days, timestamps are unique to make the order of the result stable
+        final Rnd rnd = new Rnd();
+        final StringSink csv = new StringSink();
+        csv.put("id,ts,s,d\n");
+        for (int i = 0; i < rowCount; i++) {
+            final long ts = (i % dayCount) * DAY + rnd.nextPositiveLong() % (DAY / rowCount) * rowCount + i;
+            csv.put(i).put(',');
+            TimestampFormatUtils.appendDateTimeUSec(csv, ts);
+            csv.put(',');
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    csv.put("\"quoted, with comma\"");
+                    break;
+                case 1:
+                    if (multiline) {
+                        csv.put("\"line\nbreak and \"\"quotes\"\"\"");
+                    } else {
+                        csv.put("\"with \"\"quotes\"\"\"");
+                    }
+                    break;
+                case 2:
+                    break;
+                default:
+                    csv.put(rnd.nextChars(8));
+                    break;
+            }
+            csv.put(',').put(rnd.nextDouble()).put('\n');
+        }
+
+        try (FileOutputStream out = new FileOutputStream(inputRoot + Files.SEPARATOR + FILE_NAME)) {
+            out.write(csv.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @FunctionalInterface
+    interface ImportRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context) throws Exception;
+    }
+}
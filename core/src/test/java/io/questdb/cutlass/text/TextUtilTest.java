@@ -65,6 +65,49 @@ public class TextUtilTest {
         Assert.assertEquals(text.replace("\"\"", "\""), query.toString());
     }
 
+    @Test
+    public void testMatchBytes() {
+        for (int b = 0; b < 256; b++) {
+            final long pattern = TextUtil.broadcast((byte) b);
+            for (int v = 0; v < 256; v++) {
+                for (int pos = 0; pos < Long.BYTES; pos++) {
+                    // neighbours differ from the pattern by one, they must not produce false matches
+                    final long word = (TextUtil.broadcast((byte) (b ^ 1)) & ~(0xffL << (pos * 8))) | ((long) v << (pos * 8));
+                    final long expected = v == b ? 0x80L << (pos * 8) : 0;
+                    Assert.assertEquals(expected, TextUtil.matchBytes(word, pattern));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSkipPlainBytes() {
+        final long delimiterWord = TextUtil.broadcast((byte) ',');
+        assertSkip("abcdefghijklmnop,q", delimiterWord, false, 16);
+        assertSkip("abcdefghij\"klmnop", delimiterWord, false, 10);
+        assertSkip("abc\ndefghijklmnop", delimiterWord, false, 3);
+        assertSkip("abcdefghijk\rlmnop", delimiterWord, false, 11);
+        // tail shorter than eight bytes is left to the caller
+        assertSkip("abcdefghijk", delimiterWord, false, 8);
+        assertSkip("abc", delimiterWord, false, 0);
+        // inside quotes delimiters and line ends are plain bytes
+        assertSkip("ab,\ncd\refghijklmn\"opqrstu", delimiterWord, true, 17);
+        assertSkip("ab,\ncd\refghijklmn\"", delimiterWord, false, 2);
+    }
+
+    private static void assertSkip(String text, long delimiterWord, boolean inQuote, int expected) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final long ptr = Unsafe.malloc(bytes.length, MemoryTag.NATIVE_DEFAULT);
+        try {
+            for (int i = 0; i < bytes.length; i++) {
+                Unsafe.getUnsafe().putByte(ptr + i, bytes[i]);
+            }
+            Assert.assertEquals(expected, TextUtil.skipPlainBytes(ptr, ptr + bytes.length, delimiterWord, inQuote) - ptr);
+        } finally {
+            Unsafe.free(ptr, bytes.length, MemoryTag.NATIVE_DEFAULT);
+        }
+    }
+
     private void copyToSinkWithTextUtil(StringSink query, String text, boolean doubleQuoteParse) throws Utf8Exception {
         byte[] bytes = text.getBytes(Files.UTF_8);
         long ptr = Unsafe.malloc(bytes.length, MemoryTag.NATIVE_DEFAULT);
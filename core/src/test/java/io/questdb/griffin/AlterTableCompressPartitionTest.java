@@ -0,0 +1,258 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.std.Chars;
+import io.questdb.std.Long256;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Unsafe;
+import io.questdb.std.Zip;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class AlterTableCompressPartitionTest extends AbstractGriffinTest {
+
+    static {
+        // gzip header is allocated once on class load, it must not count as a leak
+        Zip.init();
+    }
+
+    @Test
+    public void testAddIndexToCompressedPartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            final String query = "select * from x where sym = 'msft'";
+            final String expected = print(query);
+
+            compile("alter table x compress partition where timestamp < '2018-01-05'", sqlExecutionContext);
+            compile("alter table x alter column sym add index", sqlExecutionContext);
+            TestUtils.assertEquals(expected, print(query));
+        });
+    }
+
+    @Test
+    public void testCompressActivePartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            try {
+                compile("alter table x compress partition list '2018-01-09'", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(23, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "could not compress partition '2018-01-09'");
+            }
+        });
+    }
+
+    @Test
+    public void testCompressAndDecompress() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            final String expected = print("x");
+
+            compile("alter table x compress partition list '2018-01-01', '2018-01-03'", sqlExecutionContext);
+            Assert.assertTrue(isCompressed("2018-01-01"));
+            Assert.assertFalse(isCompressed("2018-01-02"));
+            Assert.assertTrue(isCompressed("2018-01-03"));
+            TestUtils.assertEquals(expected, print("x"));
+
+            // compressing twice is a no-op
+            compile("alter table x compress partition list '2018-01-01'", sqlExecutionContext);
+            TestUtils.assertEquals(expected, print("x"));
+
+            compile("alter table x decompress partition list '2018-01-01'", sqlExecutionContext);
+            Assert.assertFalse(isCompressed("2018-01-01"));
+            Assert.assertTrue(isCompressed("2018-01-03"));
+            TestUtils.assertEquals(expected, print("x"));
+        });
+    }
+
+    @Test
+    public void testCompressExpectPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            try {
+                compile("alter table x compress column", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(23, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "'partition' expected");
+            }
+        });
+    }
+
+    @Test
+    public void testCompressWhere() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            final String expected = print("x");
+            final String expectedAggregate = print("select sum(amt), sum(j), max(k), count() from x");
+
+            compile("alter table x compress partition where timestamp < '2018-01-05'", sqlExecutionContext);
+            Assert.assertTrue(isCompressed("2018-01-01"));
+            Assert.assertTrue(isCompressed("2018-01-04"));
+            Assert.assertFalse(isCompressed("2018-01-05"));
+
+            TestUtils.assertEquals(expected, print("x"));
+            TestUtils.assertEquals(expectedAggregate, print("select sum(amt), sum(j), max(k), count() from x"));
+        });
+    }
+
+    @Test
+    public void testInsertIntoCompressedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            compile("alter table x compress partition list '2018-01-02'", sqlExecutionContext);
+
+            try {
+                executeInsert("insert into x(i, timestamp) values (-1, '2018-01-02T10:00:00.000000Z')");
+                Assert.fail();
+            } catch (CairoException e) {
+                TestUtils.assertContains(e.getFlyweightMessage(), "cannot insert into compressed partition");
+            }
+            assertSql("select count() from x", "count\n1000\n");
+
+            compile("alter table x decompress partition list '2018-01-02'", sqlExecutionContext);
+            executeInsert("insert into x(i, timestamp) values (-1, '2018-01-02T10:00:00.000000Z')");
+            assertSql("select count() from x where i = -1", "count\n1\n");
+        });
+    }
+
+    @Test
+    public void testScanMoreThanPageCache() throws Exception {
+        decompressedPageCacheSize = 1024 * 1024;
+        assertMemoryLeak(() -> {
+            compile(
+                    "create table y as (" +
+                            "select" +
+                            " x," +
+                            " rnd_double() d," +
+                            " rnd_str(8, 16, 2) s," +
+                            " rnd_long256() l," +
+                            " timestamp_sequence(0, 172800) ts" +
+                            " from long_sequence(600000)" +
+                            ") timestamp (ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            final long[] expected = scanY();
+            final String expectedAggregate = print("select sum(x), sum(d), count() from y");
+
+            compile("alter table y compress partition list '1970-01-01'", sqlExecutionContext);
+            final long[] actual = scanY();
+            Assert.assertEquals(expected[0], actual[0]);
+            // column blocks are inflated one at a time and freed once the cache is full,
+            // only the blocks being read stay on top of the cache capacity
+            Assert.assertTrue("decompressed=" + expected[1], expected[1] > 32 * 1024 * 1024);
+            Assert.assertTrue("peak=" + actual[1], actual[1] < 16 * 1024 * 1024);
+            Assert.assertEquals(0, Unsafe.getMemUsedByTag(MemoryTag.NATIVE_DECOMPRESSED_COLUMN));
+
+            // vectorized aggregates read the column as a single page
+            TestUtils.assertEquals(expectedAggregate, print("select sum(x), sum(d), count() from y"));
+            Assert.assertEquals(0, Unsafe.getMemUsedByTag(MemoryTag.NATIVE_DECOMPRESSED_COLUMN));
+        });
+    }
+
+    private void createX() throws SqlException {
+        compile(
+                "create table x as (" +
+                        "select" +
+                        " cast(x as int) i," +
+                        " rnd_symbol('msft','ibm', 'googl') sym," +
+                        " round(rnd_double(0)*100, 3) amt," +
+                        " to_timestamp('2018-01', 'yyyy-MM') + x * 720000000 timestamp," +
+                        " rnd_boolean() b," +
+                        " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                        " rnd_double(2) d," +
+                        " rnd_float(2) e," +
+                        " rnd_short(10,1024) f," +
+                        " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) g," +
+                        " rnd_symbol(4,4,4,2) ik," +
+                        " rnd_long() j," +
+                        " timestamp_sequence(0, 1000000000) k," +
+                        " rnd_byte(2,50) l," +
+                        " rnd_bin(10, 20, 2) m," +
+                        " rnd_str(5,16,2) n," +
+                        " rnd_long256() o," +
+                        " rnd_geohash(30) p" +
+                        " from long_sequence(1000)" +
+                        ") timestamp (timestamp) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+
+    private boolean isCompressed(String partitionName) {
+        final File[] dirs = new File(configuration.getRoot().toString(), "x").listFiles((dir, name) -> name.startsWith(partitionName));
+        Assert.assertNotNull(dirs);
+        // superseded copies of the partition may not be purged yet, the newest one is current
+        File current = null;
+        for (File dir : dirs) {
+            if (current == null || dir.getName().length() > current.getName().length() || dir.getName().compareTo(current.getName()) > 0) {
+                current = dir;
+            }
+        }
+        Assert.assertNotNull(current);
+        return new File(current, TableUtils.COMPRESSED_PARTITION_FILE_NAME).exists();
+    }
+
+    private String print(String query) throws SqlException {
+        final StringSink sink = new StringSink();
+        TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+        return sink.toString();
+    }
+
+    // returns checksum of table y read row by row and peak size of decompressed memory during the scan,
+    // which for uncompressed table is the size of its columns
+    private long[] scanY() {
+        long checksum = 0;
+        long peak = 0;
+        long columnSize = 0;
+        try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "y")) {
+            final RecordCursor cursor = reader.getCursor();
+            final Record record = cursor.getRecord();
+            while (cursor.hasNext()) {
+                final CharSequence s = record.getStr(2);
+                checksum = checksum * 31 + record.getLong(0);
+                checksum = checksum * 31 + Double.doubleToLongBits(record.getDouble(1));
+                checksum = checksum * 31 + (s == null ? -1 : Chars.hashCode(s));
+                final Long256 l = record.getLong256A(3);
+                checksum = checksum * 31 + (l.getLong0() ^ l.getLong1() ^ l.getLong2() ^ l.getLong3());
+                checksum = checksum * 31 + record.getTimestamp(4);
+                columnSize += 8 + 8 + (s == null ? 4 : 4 + 2L * s.length()) + 8 + 32 + 8;
+                peak = Math.max(peak, Unsafe.getMemUsedByTag(MemoryTag.NATIVE_DECOMPRESSED_COLUMN));
+            }
+        }
+        return new long[]{checksum, peak > 0 ? peak : columnSize};
+    }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.table.AsyncFilteredRecordCursorFactory;
+import io.questdb.griffin.engine.table.FilteredRecordCursorFactory;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledFilterTest extends AbstractGriffinTest {
+    private static final StringSink expectedSink = new StringSink();
+
+    @Test
+    public void testBindVariables() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            bindVariableService.clear();
+            bindVariableService.setInt(0, 10);
+            bindVariableService.setDouble(1, 0.5);
+            assertCompiled("x where i > $1 and d < $2");
+
+            try (RecordCursorFactory factory = compiler.compile("x where i > $1 and d < $2", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof AsyncFilteredRecordCursorFactory);
+                // values are picked up by the existing factory
+                bindVariableService.setInt(0, -10);
+                bindVariableService.setDouble(1, 0.1);
+                compiledFilterEnabled = false;
+                TestUtils.printSql(compiler, sqlExecutionContext, "x where i > $1 and d < $2", expectedSink);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            compile("alter table x add column j int", sqlExecutionContext);
+            compile("alter table x add column m long", sqlExecutionContext);
+            compile("alter table x add column e double", sqlExecutionContext);
+            compiler.compile("insert into x select" +
+                    " rnd_byte(), rnd_short(), rnd_int(-100, 100, 5), rnd_long(-100, 100, 5)," +
+                    " cast(rnd_long(0, 1000, 5) as timestamp), rnd_float(5), rnd_double(5), rnd_boolean(), rnd_symbol('A', 'B', null)," +
+                    " timestamp_sequence(400000000000, 1000000000)," +
+                    " rnd_int(-100, 100, 5), rnd_long(-100, 100, 5), rnd_double(5)" +
+                    " from long_sequence(1000)", sqlExecutionContext);
+
+            assertCompiled("x where j > 0");
+            assertCompiled("x where j <> 7 and m < 10");
+            assertCompiled("x where e > 0.5 or m * 2 = 10");
+        });
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertCompiled("x where i > 0");
+            assertCompiled("x where i >= 0 and i != 5");
+            assertCompiled("x where 10 > i or i = 99");
+            assertCompiled("x where i * 2 < 50");
+            assertCompiled("x where i - 5 = 0 or i + 5 <= 20");
+            assertCompiled("x where b < 0 and s > 100");
+            assertCompiled("x where l > 10 or l <= -10");
+            assertCompiled("x where l * 3 + 1 > 50");
+            assertCompiled("x where l - 1 <> 0");
+            assertCompiled("x where l > 5000000000 or l < -5000000000L");
+            assertCompiled("x where d > 0.5");
+            assertCompiled("x where d = 0.5 or d <> 0.75");
+            assertCompiled("x where d * 2 <= 1 and d / 2 > 0.2");
+            assertCompiled("x where d > 10 - 9.5");
+            assertCompiled("x where f > 0.3 and f < d");
+            assertCompiled("x where d + 1 > 1.5");
+            assertCompiled("x where bo");
+            assertCompiled("x where not bo");
+            assertCompiled("x where bo and i > 0 or not (d > 0.1)");
+            assertCompiled("x where t2 > 500");
+            assertCompiled("x where t2 = 100 or t2 <= 10");
+        });
+    }
+
+    @Test
+    public void testNotCompiled() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertNotCompiled("x where sym = 'A'");
+            // implicit casts of columns are left to functions
+            assertNotCompiled("x where i > 1.5");
+            assertNotCompiled("x where i < l");
+            assertNotCompiled("x where s + 1 > 10");
+            assertNotCompiled("x where f + 1 > 10");
+            assertNotCompiled("x where i / 2 > 10");
+            assertNotCompiled("x where t2 > '1970-01-01'");
+            assertNotCompiled("x where abs(i) > 10");
+        });
+    }
+
+    private static void assertCompiled(String query) throws SqlException {
+        compiledFilterEnabled = false;
+        TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+        compiledFilterEnabled = true;
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof AsyncFilteredRecordCursorFactory);
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void assertNotCompiled(String query) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof FilteredRecordCursorFactory);
+        }
+    }
+
+    private static void createTable() throws SqlException {
+        compiler.compile("create table x as (" +
+                "select" +
+                " rnd_byte() b," +
+                " rnd_short() s," +
+                " rnd_int(-100, 100, 5) i," +
+                " rnd_long(-100, 100, 5) l," +
+                " cast(rnd_long(0, 1000, 5) as timestamp) t2," +
+                " rnd_float(5) f," +
+                " rnd_double(5) d," +
+                " rnd_boolean() bo," +
+                " rnd_symbol('A', 'B', null) sym," +
+                " timestamp_sequence(0, 100000000) k" +
+                " from long_sequence(3000)" +
+                ") timestamp(k) partition by DAY", sqlExecutionContext);
+    }
+}
@@ -37,6 +37,16 @@ public class CopyTest extends AbstractGriffinTest {
         AbstractGriffinTest.setUpStatic();
     }
 
+    @Test
+    public void testCopyBinaryFromFile() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from 'a.csv' with (format binary)",
+                null,
+                12,
+                "binary format is only supported for 'stdin'"
+        ));
+    }
+
     @Test
     public void testCopyEmptyFileName() throws Exception {
         assertMemoryLeak(() -> assertFailure(
@@ -67,6 +77,26 @@ public class CopyTest extends AbstractGriffinTest {
         ));
     }
 
+    @Test
+    public void testCopyInvalidPartitionBy() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from 'a.csv' with partition by WEEK",
+                null,
+                38,
+                "'NONE', 'HOUR', 'DAY', 'MONTH' or 'YEAR' expected"
+        ));
+    }
+
+    @Test
+    public void testCopyOptionListNotClosed() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from 'a.csv' (header true",
+                null,
+                32,
+                "')' expected"
+        ));
+    }
+
     @Test
     public void testSimpleCopy() throws Exception {
         assertMemoryLeak(() -> {
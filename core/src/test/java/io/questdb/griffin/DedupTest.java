@@ -0,0 +1,243 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableWriter;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DedupTest extends AbstractGriffinTest {
+
+    @Test
+    public void testCreateTableKeysMustIncludeTimestamp() throws Exception {
+        assertFailure(
+                "create table x (ts timestamp, s symbol, v long) timestamp(ts) partition by DAY dedup upsert keys(s)",
+                null,
+                79,
+                "dedup keys must include designated timestamp"
+        );
+    }
+
+    @Test
+    public void testCreateTableNotPartitioned() throws Exception {
+        assertFailure(
+                "create table x (ts timestamp, s symbol, v long) timestamp(ts) partition by NONE dedup upsert keys(ts, s)",
+                null,
+                80,
+                "dedup requires partitioned table"
+        );
+    }
+
+    @Test
+    public void testCreateTableVarSizeKey() throws Exception {
+        assertFailure(
+                "create table x (ts timestamp, s string, v long) timestamp(ts) partition by DAY dedup upsert keys(ts, s)",
+                null,
+                101,
+                "dedup key column must be of fixed size type"
+        );
+    }
+
+    @Test
+    public void testCreateTableUnknownKey() throws Exception {
+        assertFailure(
+                "create table x (ts timestamp, s symbol, v long) timestamp(ts) partition by DAY dedup upsert keys(ts, z)",
+                null,
+                101,
+                "Invalid column: z"
+        );
+    }
+
+    @Test
+    public void testDuplicatesWithinCommit() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (TableWriter w = getWriter()) {
+                appendRow(w, "2022-02-01T10:00:00.000000Z", "a", 1, "x1");
+                appendRow(w, "2022-02-01T10:00:00.000000Z", "b", 2, "x2");
+                appendRow(w, "2022-02-01T10:00:00.000000Z", "a", 3, "x3");
+                appendRow(w, "2022-02-01T09:00:00.000000Z", "a", 4, "x4");
+                appendRow(w, "2022-02-01T10:00:00.000000Z", "a", 5, "x5");
+                w.commit();
+            }
+
+            assertRows(
+                    "ts\ts\tv\tstr\n" +
+                            "2022-02-01T09:00:00.000000Z\ta\t4\tx4\n" +
+                            "2022-02-01T10:00:00.000000Z\ta\t5\tx5\n" +
+                            "2022-02-01T10:00:00.000000Z\tb\t2\tx2\n"
+            );
+        });
+    }
+
+    @Test
+    public void testInOrderRowsReplacedBySameCommit() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (TableWriter w = getWriter()) {
+                // in-order rows are moved into O3 memory after O3 rows, yet they are older
+                appendRow(w, "2022-02-01T10:00:00.000000Z", "a", 1, "x1");
+                appendRow(w, "2022-02-01T11:00:00.000000Z", "a", 2, "x2");
+                appendRow(w, "2022-02-01T09:00:00.000000Z", "b", 3, "x3");
+                appendRow(w, "2022-02-01T11:00:00.000000Z", "a", 4, "x4");
+                w.commit();
+            }
+
+            assertRows(
+                    "ts\ts\tv\tstr\n" +
+                            "2022-02-01T09:00:00.000000Z\tb\t3\tx3\n" +
+                            "2022-02-01T10:00:00.000000Z\ta\t1\tx1\n" +
+                            "2022-02-01T11:00:00.000000Z\ta\t4\tx4\n"
+            );
+        });
+    }
+
+    @Test
+    public void testLastPartitionUpsert() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            executeInsert("insert into x values ('2022-02-01T10:00:00.000000Z', 'a', 1, 'x1')");
+            executeInsert("insert into x values ('2022-02-01T10:00:00.000000Z', 'a', 2, 'x2')");
+            executeInsert("insert into x values ('2022-02-01T10:00:00.000000Z', 'b', 3, 'x3')");
+            executeInsert("insert into x values ('2022-02-01T10:00:00.000000Z', 'b', 4, 'x4')");
+            executeInsert("insert into x values ('2022-02-01T11:00:00.000000Z', 'a', 5, 'x5')");
+
+            assertRows(
+                    "ts\ts\tv\tstr\n" +
+                            "2022-02-01T10:00:00.000000Z\ta\t2\tx2\n" +
+                            "2022-02-01T10:00:00.000000Z\tb\t4\tx4\n" +
+                            "2022-02-01T11:00:00.000000Z\ta\t5\tx5\n"
+            );
+
+            // writer keeps appending to the rewritten last partition
+            executeInsert("insert into x values ('2022-02-01T12:00:00.000000Z', 'c', 6, 'x6')");
+            assertSql(
+                    "select count() from x where s = 'a'",
+                    "count\n" +
+                            "2\n"
+            );
+            assertSql(
+                    "select count() from x",
+                    "count\n" +
+                            "4\n"
+            );
+        });
+    }
+
+    @Test
+    public void testOlderPartitionUpsert() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (TableWriter w = getWriter()) {
+                appendRow(w, "2022-02-01T10:00:00.000000Z", "a", 1, "x1");
+                appendRow(w, "2022-02-01T10:00:00.000000Z", "b", 2, null);
+                appendRow(w, "2022-02-01T12:00:00.000000Z", "a", 3, "x3");
+                appendRow(w, "2022-02-02T10:00:00.000000Z", "a", 4, "x4");
+                w.commit();
+            }
+
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                try (TableWriter w = getWriter()) {
+                    appendRow(w, "2022-02-01T10:00:00.000000Z", "b", 5, "x5");
+                    appendRow(w, "2022-02-01T11:00:00.000000Z", "b", 6, "x6");
+                    appendRow(w, "2022-02-01T12:00:00.000000Z", "c", 7, "x7");
+                    w.commit();
+                }
+                // reader that has not been reloaded keeps seeing the previous partition version
+                Assert.assertEquals(4, reader.size());
+            }
+
+            assertRows(
+                    "ts\ts\tv\tstr\n" +
+                            "2022-02-01T10:00:00.000000Z\ta\t1\tx1\n" +
+                            "2022-02-01T10:00:00.000000Z\tb\t5\tx5\n" +
+                            "2022-02-01T11:00:00.000000Z\tb\t6\tx6\n" +
+                            "2022-02-01T12:00:00.000000Z\ta\t3\tx3\n" +
+                            "2022-02-01T12:00:00.000000Z\tc\t7\tx7\n" +
+                            "2022-02-02T10:00:00.000000Z\ta\t4\tx4\n"
+            );
+            assertSql(
+                    "select ts, v from x where s = 'b'",
+                    "ts\tv\n" +
+                            "2022-02-01T10:00:00.000000Z\t5\n" +
+                            "2022-02-01T11:00:00.000000Z\t6\n"
+            );
+        });
+    }
+
+    @Test
+    public void testUpsertWithColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            executeInsert("insert into x values ('2022-02-01T10:00:00.000000Z', 'a', 1, 'x1')");
+            executeInsert("insert into x values ('2022-02-01T11:00:00.000000Z', 'b', 2, 'x2')");
+            executeInsert("insert into x values ('2022-02-02T10:00:00.000000Z', 'a', 3, 'x3')");
+            compile("alter table x add column i int");
+            compile("alter table x add column t string");
+            executeInsert("insert into x values ('2022-02-01T12:00:00.000000Z', 'c', 4, 'x4', 40, 't4')");
+            executeInsert("insert into x values ('2022-02-01T11:00:00.000000Z', 'b', 5, 'x5', 50, 't5')");
+            executeInsert("insert into x values ('2022-02-02T10:00:00.000000Z', 'a', 6, 'x6', 60, 't6')");
+
+            assertRows(
+                    "ts\ts\tv\tstr\ti\tt\n" +
+                            "2022-02-01T10:00:00.000000Z\ta\t1\tx1\tNaN\t\n" +
+                            "2022-02-01T11:00:00.000000Z\tb\t5\tx5\t50\tt5\n" +
+                            "2022-02-01T12:00:00.000000Z\tc\t4\tx4\t40\tt4\n" +
+                            "2022-02-02T10:00:00.000000Z\ta\t6\tx6\t60\tt6\n"
+            );
+        });
+    }
+
+    private static void appendRow(TableWriter w, String ts, String s, long v, String str) throws Exception {
+        TableWriter.Row r = w.newRow(TimestampFormatUtils.parseTimestamp(ts));
+        r.putSym(1, s);
+        r.putLong(2, v);
+        r.putStr(3, str);
+        r.append();
+    }
+
+    private static void assertRows(String expected) throws SqlException {
+        assertSql("x order by ts, s", expected);
+    }
+
+    private static void assertSql(String sql, String expected) throws SqlException {
+        TestUtils.assertSql(compiler, sqlExecutionContext, sql, sink, expected);
+    }
+
+    private static void createTable() throws SqlException {
+        compiler.compile(
+                "create table x (ts timestamp, s symbol index, v long, str string) timestamp(ts) partition by DAY dedup upsert keys(ts, s)",
+                sqlExecutionContext
+        );
+    }
+
+    private static TableWriter getWriter() {
+        return engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test");
+    }
+}
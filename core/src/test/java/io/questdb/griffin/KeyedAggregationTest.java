@@ -30,7 +30,9 @@ import io.questdb.cairo.PartitionBy;
 import io.questdb.cairo.TableModel;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.groupby.vect.GroupByRecordCursorFactory;
 import io.questdb.std.Os;
+import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
@@ -1015,6 +1017,62 @@ public class KeyedAggregationTest extends AbstractGriffinTest {
         assertSqlWithTypes(sql, expected);
     }
 
+    @Test
+    public void testSymbolPairAddKeyMidTable() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table tab as (select rnd_symbol('s1','s2','s3', null) s1, rnd_int(0, 100, 0) val from long_sequence(1000000))", sqlExecutionContext);
+            compile("alter table tab add column s2 symbol", sqlExecutionContext);
+            // more rows than key buffer holds, aggregation flushes published chunks half way through
+            compiler.compile("insert into tab select rnd_symbol('s1','s2','s3', null), rnd_int(0, 100, 0), rnd_symbol('a1','a2','a3', null) s2 from long_sequence(1500000)", sqlExecutionContext);
+
+            assertSymbolPairVectorized("select s1, s2, count(), sum(val), max(val) from tab");
+            assertSymbolPairMatchesReference(
+                    "select s1, s2, count(), sum(val), max(val) from tab order by s1, s2",
+                    "select s1, s2, count(), sum(val), max(val) from tab where val > -1 order by s1, s2"
+            );
+            assertSymbolPairMatchesReference(
+                    "select count(), s2, s1 from tab order by s2, s1",
+                    "select count(), s2, s1 from tab where val > -1 order by s2, s1"
+            );
+        });
+    }
+
+    @Test
+    public void testSymbolPairManySymbols() throws Exception {
+        assertMemoryLeak(() -> {
+            // product of symbol counts does not fit INT, pairs are numbered as they are found;
+            // symbol tables keep their size after the first partition is dropped
+            compiler.compile("create table tab as (" +
+                    "select cast(x as symbol) s1, cast(x * 7 as symbol) s2, rnd_double(2) val, timestamp_sequence(0, 1000000) ts" +
+                    " from long_sequence(50000)" +
+                    ") timestamp(ts) partition by DAY", sqlExecutionContext);
+            compiler.compile("insert into tab select" +
+                    " rnd_symbol('1', '2', '3', null), rnd_symbol('7', '14', '21', null), rnd_double(2), timestamp_sequence(86400000000, 1000000)" +
+                    " from long_sequence(10000)", sqlExecutionContext);
+            compile("alter table tab drop partition list '1970-01-01'", sqlExecutionContext);
+
+            assertSymbolPairVectorized("select s1, s2, sum(val) from tab");
+            assertSymbolPairMatchesReference(
+                    "select s1, s2, count(), min(val), sum(val) from tab order by s1, s2",
+                    "select s1, s2, count(), min(val), sum(val) from tab where val > -1 or val = null order by s1, s2"
+            );
+        });
+    }
+
+    private void assertSymbolPairMatchesReference(String query, String referenceQuery) throws SqlException {
+        // reference query is filtered, which makes it aggregate rows via map rather than Rosti
+        final StringSink referenceSink = new StringSink();
+        TestUtils.printSql(compiler, sqlExecutionContext, referenceQuery, referenceSink);
+        TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+        TestUtils.assertEquals(referenceSink, sink);
+    }
+
+    private void assertSymbolPairVectorized(String query) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof GroupByRecordCursorFactory);
+        }
+    }
+
     @Test
     public void testFirstLastAggregationsNotSupported() {
         String[] aggregateFunctions = {"first"};
@@ -32,8 +32,11 @@ import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.griffin.engine.functions.rnd.SharedRandom;
 import io.questdb.griffin.engine.table.LatestByAllIndexedJob;
+import io.questdb.griffin.engine.table.LatestByScanJob;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
+import io.questdb.mp.MCSequence;
+import io.questdb.mp.MPSequence;
 import io.questdb.mp.WorkerPool;
 import io.questdb.std.FilesFacade;
 import io.questdb.std.FilesFacadeImpl;
@@ -48,10 +51,23 @@ import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestName;
 
 import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
 
 public class LatestByParallelTest {
     protected static final StringSink sink = new StringSink();
     private final static Log LOG = LogFactory.getLog(LatestByParallelTest.class);
+    private static final StringSink expectedSink = new StringSink();
+    private static final String SCAN_DDL = "create table x as (" +
+            "select" +
+            " rnd_symbol(15,4,4,1) s," +
+            " rnd_symbol('NYSE','LSE','HKEX') e," +
+            " rnd_double(2)*100 a," +
+            " rnd_int(0, 20, 2) i," +
+            " rnd_long(0, 50, 2) l," +
+            " rnd_str(2,3,2) str," +
+            " timestamp_sequence(0, 100000000) k" +
+            " from long_sequence(5000)" +
+            ") timestamp(k) partition by DAY";
     @ClassRule
     public static TemporaryFolder temp = new TemporaryFolder();
     protected static CharSequence root;
@@ -118,6 +134,49 @@ public class LatestByParallelTest {
         executeVanilla(LatestByParallelTest::testLatestByFiltered);
     }
 
+    @Test
+    public void testLatestByScanColumnTopParallel() throws Exception {
+        executeWithScanPool(4, 8, 100, LatestByParallelTest::testLatestByScanColumnTop);
+    }
+
+    @Test
+    public void testLatestByScanEligibility() throws Exception {
+        executeWithScanPool(4, 8, 100, (engine, compiler, sqlExecutionContext) -> {
+            compiler.compile(SCAN_DDL, sqlExecutionContext);
+            try (SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)) {
+                assertScanFactory(compiler, sqlExecutionContext, "select * from x latest by s", true);
+                assertScanFactory(compiler, sqlExecutionContext, "select * from x latest by e, i", true);
+                assertScanFactory(compiler, sqlExecutionContext, "select * from x latest by l where k > '1970-01-02'", true);
+                assertScanFactory(compiler, vanillaContext, "select * from x latest by s", false);
+                // filters are not thread-safe
+                assertScanFactory(compiler, sqlExecutionContext, "select * from x latest by s where a > 10", false);
+                // string values are read through views shared by all readers of the column
+                assertScanFactory(compiler, sqlExecutionContext, "select * from x latest by str", false);
+            }
+        });
+    }
+
+    @Test
+    public void testLatestByScanMultipleKeysParallel1() throws Exception {
+        executeWithScanPool(4, 8, 100, LatestByParallelTest::testLatestByScanMultipleKeys);
+    }
+
+    @Test
+    public void testLatestByScanMultipleKeysParallel2() throws Exception {
+        executeWithScanPool(8, 4, 1_000_000, LatestByParallelTest::testLatestByScanMultipleKeys);
+    }
+
+    @Test
+    public void testLatestByScanSingleSymbolParallel1() throws Exception {
+        executeWithScanPool(4, 8, 100, LatestByParallelTest::testLatestByScanSingleSymbol);
+    }
+
+    @Test
+    public void testLatestByScanSingleSymbolParallel2() throws Exception {
+        // queue is smaller than the number of workers, owner thread scans chunks that did not fit
+        executeWithScanPool(4, 1, 33, LatestByParallelTest::testLatestByScanSingleSymbol);
+    }
+
     @Test
     public void testLatestByTimestampParallel1() throws Exception {
         executeWithPool(4, 8, LatestByParallelTest::testLatestByTimestamp);
@@ -195,6 +254,56 @@ public class LatestByParallelTest {
         assertQuery(compiler, sqlExecutionContext, expected, ddl, query);
     }
 
+    private static void testLatestByScanColumnTop(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext
+    ) throws SqlException {
+        compiler.compile("create table x as (" +
+                "select" +
+                " rnd_int(0, 1000, 2) i," +
+                " timestamp_sequence(0, 100000000) k" +
+                " from long_sequence(2000)" +
+                ") timestamp(k) partition by DAY", sqlExecutionContext);
+        compiler.compile("alter table x add column s symbol", sqlExecutionContext).execute(null).await();
+        compiler.compile("insert into x select" +
+                " rnd_int(0, 1000, 2)," +
+                " timestamp_sequence(200000000000, 100000000)," +
+                " rnd_symbol('NYSE','LSE','HKEX')" +
+                " from long_sequence(1000)", sqlExecutionContext);
+        // rows above column top are the only source of null key
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by s");
+    }
+
+    private static void testLatestByScanMultipleKeys(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext
+    ) throws SqlException {
+        compiler.compile(SCAN_DDL, sqlExecutionContext);
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by s, e");
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by e, i");
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by l");
+    }
+
+    private static void testLatestByScanSingleSymbol(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext
+    ) throws SqlException {
+        compiler.compile(SCAN_DDL, sqlExecutionContext);
+        // every key is found early, older chunks are skipped
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by e");
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by s");
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by s where k < '1970-01-03'");
+        // key that is present in the oldest partition only
+        compiler.compile("insert into x select" +
+                " 'RARE', 'LSE', 1.0, 1, 1, 'a'," +
+                " timestamp_sequence(1, 1)" +
+                " from long_sequence(1)", sqlExecutionContext);
+        assertScanParallel(engine, compiler, sqlExecutionContext, "select * from x latest by s");
+    }
+
     private static void testLatestByTimestamp(
             CairoEngine engine,
             SqlCompiler compiler,
@@ -241,6 +350,49 @@ public class LatestByParallelTest {
         }
     }
 
+    private static void assertScanFactory(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            String query,
+            boolean parallel
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            // parallel cursor publishes scan entries to the worker pool as soon as it is opened
+            final MPSequence pubSeq = sqlExecutionContext.getMessageBus().getLatestByScanPubSeq();
+            final MCSequence subSeq = sqlExecutionContext.getMessageBus().getLatestByScanSubSeq();
+            // entries of the previous query can still hold queue slots, wait for workers to drain them
+            while (subSeq.current() < pubSeq.current()) {
+                LockSupport.parkNanos(1);
+            }
+            final long published = pubSeq.current();
+            try (RecordCursor ignored = factory.getCursor(sqlExecutionContext)) {
+                Assert.assertEquals(parallel, pubSeq.current() > published);
+            }
+        }
+    }
+
+    private static void assertScanParallel(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            String query
+    ) throws SqlException {
+        try (SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)) {
+            TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        }
+        TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+        TestUtils.assertEquals(expectedSink, sink);
+
+        // the cursor must be re-readable
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                cursor.toTop();
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
     protected static void executeWithPool(
             int workerCount,
             int queueCapacity,
@@ -249,35 +401,7 @@ public class LatestByParallelTest {
         executeVanilla(() -> {
             if (workerCount > 0) {
 
-                int[] affinity = new int[workerCount];
-                for (int i = 0; i < workerCount; i++) {
-                    affinity[i] = -1;
-                }
-
-                WorkerPool pool = new WorkerPool(
-                        new WorkerPoolAwareConfiguration() {
-                            @Override
-                            public int[] getWorkerAffinity() {
-                                return affinity;
-                            }
-
-                            @Override
-                            public int getWorkerCount() {
-                                return workerCount;
-                            }
-
-                            @Override
-                            public boolean haltOnError() {
-                                return false;
-                            }
-
-                            @Override
-                            public boolean isEnabled() {
-                                return true;
-                            }
-                        }
-                );
-
+                final WorkerPool pool = newPool(workerCount);
                 final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
                     @Override
                     public FilesFacade getFilesFacade() {
@@ -304,6 +428,28 @@ public class LatestByParallelTest {
         });
     }
 
+    protected static void executeWithScanPool(
+            int workerCount,
+            int queueCapacity,
+            int pageFrameMaxRows,
+            LatestByRunnable runnable
+    ) throws Exception {
+        executeVanilla(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getLatestByScanQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    return pageFrameMaxRows;
+                }
+            };
+            execute(newPool(workerCount), runnable, configuration);
+        });
+    }
+
     protected static void execute(
             @Nullable WorkerPool pool,
             LatestByRunnable runnable,
@@ -320,6 +466,7 @@ public class LatestByParallelTest {
                     if (pool != null) {
                         pool.assignCleaner(Path.CLEANER);
                         pool.assign(new LatestByAllIndexedJob(engine.getMessageBus()));
+                        pool.assign(new LatestByScanJob(engine.getMessageBus()));
                         pool.start(LOG);
                     }
 
@@ -343,6 +490,37 @@ public class LatestByParallelTest {
         TestUtils.assertMemoryLeak(code);
     }
 
+    private static WorkerPool newPool(int workerCount) {
+        int[] affinity = new int[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            affinity[i] = -1;
+        }
+
+        return new WorkerPool(
+                new WorkerPoolAwareConfiguration() {
+                    @Override
+                    public int[] getWorkerAffinity() {
+                        return affinity;
+                    }
+
+                    @Override
+                    public int getWorkerCount() {
+                        return workerCount;
+                    }
+
+                    @Override
+                    public boolean haltOnError() {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean isEnabled() {
+                        return true;
+                    }
+                }
+        );
+    }
+
     @FunctionalInterface
     interface LatestByRunnable {
         void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws Exception;
@@ -24,6 +24,7 @@
 
 package io.questdb.griffin;
 
+import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Test;
 
@@ -533,6 +534,36 @@ public class LimitTest extends AbstractGriffinTest {
                 "1970-01-01T00:00:00.000004Z\tabc\n", "select * from t1 where id = 'abc' limit -1", null, true, true);
     }
 
+    @Test
+    public void testOrderByLimitMatchesFullSort() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (" +
+                    "select" +
+                    " rnd_int(0, 20, 2) a," +
+                    " rnd_double(2) b," +
+                    " rnd_str(1, 2, 2) s," +
+                    " timestamp_sequence(0, 1000000) ts" +
+                    " from long_sequence(20000)" +
+                    ") timestamp(ts)", sqlExecutionContext);
+
+            // reference queries sort the whole table and apply limit afterwards
+            assertOrderByLimit("x order by a desc limit 10", "(x order by a desc) limit 10");
+            assertOrderByLimit("x order by a, b limit 1", "(x order by a, b) limit 1");
+            assertOrderByLimit("x order by a limit 250", "(x order by a) limit 250");
+            assertOrderByLimit("x order by s desc, ts limit 100, 350", "(x order by s desc, ts) limit 100, 350");
+            assertOrderByLimit("x order by b limit 30000", "(x order by b) limit 30000");
+            assertOrderByLimit("x order by a limit 0", "(x order by a) limit 0");
+            assertOrderByLimit("x order by a limit -5", "(x order by a) limit -5");
+        });
+    }
+
+    private void assertOrderByLimit(String query, String referenceQuery) throws SqlException {
+        final StringSink referenceSink = new StringSink();
+        TestUtils.printSql(compiler, sqlExecutionContext, referenceQuery, referenceSink);
+        TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+        TestUtils.assertEquals(referenceSink, sink);
+    }
+
     private void testLimit(String expected1, String expected2, String query) throws Exception {
         assertMemoryLeak(() -> {
             compiler.compile(
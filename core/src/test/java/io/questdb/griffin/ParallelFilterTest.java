@@ -0,0 +1,305 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.table.AsyncFilteredRecordCursorFactory;
+import io.questdb.griffin.engine.table.PageFrameFilterJob;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelFilterTest {
+    private final static Log LOG = LogFactory.getLog(ParallelFilterTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testColumnTopParallel1() throws Exception {
+        executeWithPool(4, 8, 100, ParallelFilterTest::testColumnTop);
+    }
+
+    @Test
+    public void testColumnTopParallel2() throws Exception {
+        executeWithPool(4, 1, 33, ParallelFilterTest::testColumnTop);
+    }
+
+    @Test
+    public void testFilterParallel1() throws Exception {
+        executeWithPool(4, 8, 100, ParallelFilterTest::testFilter);
+    }
+
+    @Test
+    public void testFilterParallel2() throws Exception {
+        executeWithPool(8, 4, 1_000_000, ParallelFilterTest::testFilter);
+    }
+
+    @Test
+    public void testFilterParallel3() throws Exception {
+        // queue is smaller than the number of workers, owner thread filters frames that did not fit
+        executeWithPool(4, 1, 17, ParallelFilterTest::testFilter);
+    }
+
+    @Test
+    public void testLimitParallel() throws Exception {
+        executeWithPool(4, 8, 50, ParallelFilterTest::testLimit);
+    }
+
+    @Test
+    public void testOrderByParallel() throws Exception {
+        executeWithPool(4, 8, 100, ParallelFilterTest::testOrderBy);
+    }
+
+    @Test
+    public void testParallelFilterEligibility() throws Exception {
+        executeWithPool(4, 8, 100, (engine, compiler, context, vanillaContext) -> {
+            compiler.compile(DDL, context);
+            try (RecordCursorFactory factory = compiler.compile("x where a > 50 and str like '%B%'", context).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof AsyncFilteredRecordCursorFactory);
+            }
+            try (RecordCursorFactory factory = compiler.compile("x where a > 50 and str like '%B%'", vanillaContext).getRecordCursorFactory()) {
+                Assert.assertFalse(factory instanceof AsyncFilteredRecordCursorFactory);
+            }
+            try (RecordCursorFactory factory = compiler.compile("x where s = 'HYRX'", context).getRecordCursorFactory()) {
+                Assert.assertFalse(factory instanceof AsyncFilteredRecordCursorFactory);
+            }
+            try (RecordCursorFactory factory = compiler.compile("x where rnd_int() > 0", context).getRecordCursorFactory()) {
+                Assert.assertFalse(factory instanceof AsyncFilteredRecordCursorFactory);
+            }
+        });
+    }
+
+    private static final String DDL = "create table x as (" +
+            "select" +
+            " rnd_double(2)*100 a," +
+            " rnd_int(0, 1000, 2) i," +
+            " rnd_str(4,8,2) str," +
+            " rnd_symbol(5,4,4,1) s," +
+            " rnd_long256() l256," +
+            " rnd_bin(2,10,2) bin," +
+            " rnd_geohash(20) g," +
+            " rnd_boolean() b," +
+            " timestamp_sequence(0, 1000000000) k" +
+            " from long_sequence(2000)" +
+            ") timestamp(k) partition by DAY";
+
+    private static void testColumnTop(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile("create table x as (" +
+                "select" +
+                " rnd_double(2)*100 a," +
+                " rnd_int(0, 1000, 2) i," +
+                " rnd_str(4,8,2) str," +
+                " timestamp_sequence(0, 1000000000) k" +
+                " from long_sequence(1000)" +
+                ") timestamp(k) partition by DAY", context);
+        compiler.compile("alter table x add column j long", context).execute(null).await();
+        compiler.compile("alter table x add column v string", context).execute(null).await();
+        compiler.compile("alter table x add column l256 long256", context).execute(null).await();
+        compiler.compile("insert into x select" +
+                " rnd_double(2)*100," +
+                " rnd_int(0, 1000, 2)," +
+                " rnd_str(4,8,2)," +
+                " timestamp_sequence(1000000000000, 1000000000)," +
+                " rnd_long(0, 100, 2)," +
+                " rnd_str(3,5,2)," +
+                " rnd_long256()" +
+                " from long_sequence(500)", context);
+        assertParallel(compiler, context, vanillaContext, "x where j = null and i > 300");
+        assertParallel(compiler, context, vanillaContext, "x where j > 50 or v like '%A%'");
+        assertParallel(compiler, context, vanillaContext, "select k, j, v, l256 from x where v = null");
+    }
+
+    private static void testFilter(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(DDL, context);
+        assertParallel(compiler, context, vanillaContext, "x where a > 50 and i < 700");
+        assertParallel(compiler, context, vanillaContext, "x where str like '%B%' or b");
+        assertParallel(compiler, context, vanillaContext, "x where l256 <> null and bin <> null");
+        assertParallel(compiler, context, vanillaContext, "select k, a from x where k > '1970-01-03' and a = null");
+        assertParallel(compiler, context, vanillaContext, "x where i = 1001");
+    }
+
+    private static void testLimit(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(DDL, context);
+        assertParallel(compiler, context, vanillaContext, "x where a > 10 limit 5");
+        assertParallel(compiler, context, vanillaContext, "x where a > 10 limit 300");
+    }
+
+    private static void testOrderBy(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(DDL, context);
+        assertParallel(compiler, context, vanillaContext, "x where a > 30 order by str, k");
+        assertParallel(compiler, context, vanillaContext, "x where i > 500 order by l256 desc, k");
+    }
+
+    private static void assertParallel(
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        TestUtils.printSql(compiler, context, query, sink);
+        TestUtils.assertEquals(expectedSink, sink);
+
+        // the cursor must be re-readable
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(context)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                cursor.toTop();
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            int pageFrameMaxRows,
+            FilterRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getPageFrameFilterQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    return pageFrameMaxRows;
+                }
+            };
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext context = new SqlExecutionContextImpl(engine, workerCount);
+                    final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new PageFrameFilterJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(engine, compiler, context, vanillaContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface FilterRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
@@ -0,0 +1,305 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.AsyncGroupByRecordCursorFactory;
+import io.questdb.griffin.engine.groupby.PageFrameGroupByJob;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelGroupByTest {
+    private final static Log LOG = LogFactory.getLog(ParallelGroupByTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    private static final String DDL = "create table x as (" +
+            "select" +
+            " rnd_symbol(5,4,4,1) s," +
+            " rnd_symbol('NYSE','LSE','HKEX') e," +
+            " rnd_double(2)*100 a," +
+            " rnd_int(0, 1000, 2) i," +
+            " rnd_long(0, 50, 2) l," +
+            " rnd_str(2,3,2) str," +
+            " rnd_char() c," +
+            " timestamp_sequence(0, 100000000) k" +
+            " from long_sequence(5000)" +
+            ") timestamp(k) partition by DAY";
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testColumnTopParallel() throws Exception {
+        executeWithPool(4, 8, 100, ParallelGroupByTest::testColumnTop);
+    }
+
+    @Test
+    public void testMultipleKeysParallel1() throws Exception {
+        executeWithPool(4, 8, 100, ParallelGroupByTest::testMultipleKeys);
+    }
+
+    @Test
+    public void testMultipleKeysParallel2() throws Exception {
+        executeWithPool(8, 4, 1_000_000, ParallelGroupByTest::testMultipleKeys);
+    }
+
+    @Test
+    public void testMultipleKeysParallel3() throws Exception {
+        // queue is smaller than the number of workers, owner thread aggregates frames that did not fit
+        executeWithPool(4, 1, 33, ParallelGroupByTest::testMultipleKeys);
+    }
+
+    @Test
+    public void testParallelGroupByEligibility() throws Exception {
+        executeWithPool(4, 8, 100, (engine, compiler, context, vanillaContext) -> {
+            compiler.compile(DDL, context);
+            assertFactory(compiler, context, "select s, l, count(), sum(a) from x", true);
+            assertFactory(compiler, context, "select str, l, min(k), max(i) from x", true);
+            assertFactory(compiler, context, "select c, avg(a), ksum(a) from x", true);
+            assertFactory(compiler, vanillaContext, "select s, l, count(), sum(a) from x", false);
+            // first() and last() depend on the order rows are visited in
+            assertFactory(compiler, context, "select s, e, first(a) from x", false);
+            // distinct counts cannot be merged
+            assertFactory(compiler, context, "select e, count_distinct(s) from x", false);
+            // random functions share generator between copies
+            assertFactory(compiler, context, "select s, sum(rnd_int()) from x", false);
+            // filtered base does not support page frames
+            assertFactory(compiler, context, "select s, e, count() from x where a > 10", false);
+        });
+    }
+
+    @Test
+    public void testSingleKeyParallel() throws Exception {
+        executeWithPool(4, 8, 100, ParallelGroupByTest::testSingleKey);
+    }
+
+    private static void assertFactory(
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            String query,
+            boolean parallel
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            Assert.assertEquals(parallel, factory instanceof AsyncGroupByRecordCursorFactory);
+        }
+    }
+
+    private static void assertParallel(
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        TestUtils.printSql(compiler, context, query, sink);
+        TestUtils.assertEquals(expectedSink, sink);
+
+        // the cursor must be re-readable
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(context)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                cursor.toTop();
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void testColumnTop(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile("create table x as (" +
+                "select" +
+                " rnd_symbol(5,4,4,1) s," +
+                " rnd_int(0, 1000, 2) i," +
+                " timestamp_sequence(0, 100000000) k" +
+                " from long_sequence(2000)" +
+                ") timestamp(k) partition by DAY", context);
+        compiler.compile("alter table x add column e symbol", context).execute(null).await();
+        compiler.compile("alter table x add column j long", context).execute(null).await();
+        compiler.compile("insert into x select" +
+                " rnd_symbol(5,4,4,1)," +
+                " rnd_int(0, 1000, 2)," +
+                " timestamp_sequence(200000000000, 100000000)," +
+                " rnd_symbol('NYSE','LSE','HKEX')," +
+                " rnd_long(0, 100, 2)" +
+                " from long_sequence(1000)", context);
+        assertParallel(compiler, context, vanillaContext, "select * from (select s, e, count(), sum(j), max(i) from x) order by s, e");
+        assertParallel(compiler, context, vanillaContext, "select * from (select j, count(), min(i) from x) order by j");
+    }
+
+    private static void testMultipleKeys(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(DDL, context);
+        // floating point sums depend on the order of additions
+        assertParallel(
+                compiler,
+                context,
+                vanillaContext,
+                "select s, e, c, sm, mn, mx, round(av, 6) av from (" +
+                        "select s, e, count() c, sum(i) sm, min(a) mn, max(l) mx, avg(a) av from x" +
+                        ") order by s, e"
+        );
+        assertParallel(
+                compiler,
+                context,
+                vanillaContext,
+                "select * from (select str, l, count(), min(k), max(c), sum(l) from x) order by str, l"
+        );
+        assertParallel(
+                compiler,
+                context,
+                vanillaContext,
+                "select s, i, round(ks, 6) ks, round(ns, 6) ns from (select s, i, ksum(a) ks, nsum(a) ns from x) order by s, i"
+        );
+    }
+
+    private static void testSingleKey(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(DDL, context);
+        assertParallel(compiler, context, vanillaContext, "select * from (select str, count(), sum(l) from x) order by str");
+        assertParallel(compiler, context, vanillaContext, "select * from (select l, max(k), min(i), max(i) from x) order by l");
+        assertParallel(compiler, context, vanillaContext, "select * from (select c, count(), sum(i) from x) order by c");
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            int pageFrameMaxRows,
+            GroupByRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getPageFrameGroupByQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    return pageFrameMaxRows;
+                }
+            };
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext context = new SqlExecutionContextImpl(engine, workerCount);
+                    final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new PageFrameGroupByJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(engine, compiler, context, vanillaContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface GroupByRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
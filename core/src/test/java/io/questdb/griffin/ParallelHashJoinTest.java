@@ -0,0 +1,288 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.join.HashJoinBuildJob;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.MCSequence;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+public class ParallelHashJoinTest {
+    private final static Log LOG = LogFactory.getLog(ParallelHashJoinTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    private static final String TRADES_DDL = "create table trades as (" +
+            "select" +
+            " rnd_symbol('AAPL','MSFT','AMZN','GOOG','TSLA','NVDA') sym," +
+            " rnd_int(0, 5, 0) venue," +
+            " rnd_str('a','b','c',null) tag," +
+            " rnd_double() px," +
+            " timestamp_sequence(0, 10000000) ts" +
+            " from long_sequence(3000)" +
+            ") timestamp(ts) partition by HOUR";
+    private static final String QUOTES_DDL = "create table quotes as (" +
+            "select" +
+            " rnd_symbol('MSFT','AMZN','GOOG','TSLA','META',null) sym," +
+            " rnd_int(0, 5, 0) venue," +
+            " rnd_str('a','b','c',null) tag," +
+            " rnd_long(0, 1000, 1) bid," +
+            " timestamp_sequence(0, 1000000) ts" +
+            " from long_sequence(2000)" +
+            ") timestamp(ts) partition by HOUR";
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testColumnTopParallel() throws Exception {
+        executeWithPool(4, 8, 100, ParallelHashJoinTest::testColumnTop);
+    }
+
+    @Test
+    public void testJoinKeysParallel1() throws Exception {
+        executeWithPool(4, 8, 100, ParallelHashJoinTest::testJoinKeys);
+    }
+
+    @Test
+    public void testJoinKeysParallel2() throws Exception {
+        executeWithPool(3, 4, 1_000_000, ParallelHashJoinTest::testJoinKeys);
+    }
+
+    @Test
+    public void testJoinKeysParallel3() throws Exception {
+        // queue is smaller than the number of partitions, owner thread builds partitions that did not fit
+        executeWithPool(4, 1, 33, ParallelHashJoinTest::testJoinKeys);
+    }
+
+    @Test
+    public void testParallelHashJoinEligibility() throws Exception {
+        executeWithPool(4, 8, 100, (engine, compiler, context, vanillaContext) -> {
+            compiler.compile(TRADES_DDL, context);
+            compiler.compile(QUOTES_DDL, context);
+            assertFactory(compiler, context, "select * from trades t join quotes q on (sym)", true);
+            assertFactory(compiler, context, "select * from trades t join quotes q on t.venue = q.venue and t.tag = q.tag", true);
+            assertFactory(compiler, vanillaContext, "select * from trades t join quotes q on (sym)", false);
+            // outer joins keep the serial factory
+            assertFactory(compiler, context, "select * from trades t left join quotes q on (sym)", false);
+            // filtered slave does not support page frames
+            assertFactory(compiler, context, "select * from trades t join (quotes where bid > 10) q on (sym)", false);
+        });
+    }
+
+    private static void assertFactory(
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            String query,
+            boolean parallel
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            Assert.assertEquals(parallel, isParallel(factory, context));
+        }
+    }
+
+    private static void assertParallel(
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        TestUtils.printSql(compiler, context, query, sink);
+        TestUtils.assertEquals(expectedSink, sink);
+
+        // the cursor must be re-readable
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            Assert.assertTrue(isParallel(factory, context));
+            try (RecordCursor cursor = factory.getCursor(context)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                cursor.toTop();
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static boolean isParallel(RecordCursorFactory factory, SqlExecutionContext context) throws SqlException {
+        // parallel join publishes build entries to the worker pool as soon as its cursor is opened
+        final MPSequence pubSeq = context.getMessageBus().getHashJoinBuildPubSeq();
+        final MCSequence subSeq = context.getMessageBus().getHashJoinBuildSubSeq();
+        // entries of the previous query can still hold queue slots, wait for workers to drain them
+        while (subSeq.current() < pubSeq.current()) {
+            LockSupport.parkNanos(1);
+        }
+        final long published = pubSeq.current();
+        try (RecordCursor ignored = factory.getCursor(context)) {
+            return pubSeq.current() > published;
+        }
+    }
+
+    private static void testColumnTop(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(TRADES_DDL, context);
+        compiler.compile("create table quotes as (" +
+                "select" +
+                " rnd_long(0, 1000, 1) bid," +
+                " timestamp_sequence(0, 1000000) ts" +
+                " from long_sequence(1000)" +
+                ") timestamp(ts) partition by HOUR", context);
+        compiler.compile("alter table quotes add column sym symbol", context).execute(null).await();
+        compiler.compile("insert into quotes select" +
+                " rnd_long(0, 1000, 1)," +
+                " timestamp_sequence(1000000000, 1000000)," +
+                " rnd_symbol('MSFT','AMZN','GOOG','TSLA','META',null)" +
+                " from long_sequence(1000)", context);
+        assertParallel(compiler, context, vanillaContext, "select t.sym, t.px, q.bid, q.ts from trades t join quotes q on (sym)");
+    }
+
+    private static void testJoinKeys(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(TRADES_DDL, context);
+        compiler.compile(QUOTES_DDL, context);
+        // symbol key, slave symbols are resolved by workers
+        assertParallel(compiler, context, vanillaContext, "select t.sym, t.px, q.sym, q.bid, q.ts from trades t join quotes q on (sym)");
+        // composite key
+        assertParallel(compiler, context, vanillaContext, "select t.ts, q.ts, q.bid from trades t join quotes q on t.venue = q.venue and t.tag = q.tag");
+        assertParallel(compiler, context, vanillaContext, "select t.ts, q.sym, q.bid from trades t join quotes q on t.sym = q.sym and t.venue = q.venue");
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            int pageFrameMaxRows,
+            JoinRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getHashJoinBuildQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    return pageFrameMaxRows;
+                }
+            };
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext context = new SqlExecutionContextImpl(engine, workerCount);
+                    final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new HashJoinBuildJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(engine, compiler, context, vanillaContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface JoinRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.AsyncSampleByRecordCursorFactory;
+import io.questdb.griffin.engine.groupby.PageFrameGroupByJob;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelSampleByTest {
+    private final static Log LOG = LogFactory.getLog(ParallelSampleByTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    private static final String DDL = "create table x as (" +
+            "select" +
+            " rnd_symbol(5,4,4,1) s," +
+            " rnd_symbol('NYSE','LSE','HKEX') e," +
+            " rnd_double(2)*100 a," +
+            " rnd_int(0, 1000, 2) i," +
+            " rnd_long(0, 50, 2) l," +
+            " timestamp_sequence(0, 100000000) k" +
+            " from long_sequence(5000)" +
+            ") timestamp(k) partition by DAY";
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testAlignToCalendarParallel() throws Exception {
+        executeWithPool(4, 8, 100, ParallelSampleByTest::testAlignToCalendar);
+    }
+
+    @Test
+    public void testBeforeSamplerStartParallel() throws Exception {
+        // offset puts sampler start after the first row, rows are bucketed on the owner thread
+        executeWithPool(4, 8, 100, (engine, compiler, context, vanillaContext) -> {
+            compiler.compile(DDL, context);
+            assertParallel(
+                    compiler,
+                    context,
+                    vanillaContext,
+                    "select k, s, count(), sum(i), max(l) from x sample by 7h align to calendar with offset '05:00'"
+            );
+        });
+    }
+
+    @Test
+    public void testMultipleKeysParallel1() throws Exception {
+        executeWithPool(4, 8, 100, ParallelSampleByTest::testMultipleKeys);
+    }
+
+    @Test
+    public void testMultipleKeysParallel2() throws Exception {
+        executeWithPool(8, 4, 1_000_000, ParallelSampleByTest::testMultipleKeys);
+    }
+
+    @Test
+    public void testMultipleKeysParallel3() throws Exception {
+        // queue is smaller than the number of workers, owner thread aggregates frames that did not fit
+        executeWithPool(4, 1, 33, ParallelSampleByTest::testMultipleKeys);
+    }
+
+    @Test
+    public void testParallelSampleByEligibility() throws Exception {
+        executeWithPool(4, 8, 100, (engine, compiler, context, vanillaContext) -> {
+            compiler.compile(DDL, context);
+            assertFactory(compiler, context, "select k, s, count(), sum(a) from x sample by 1h", true);
+            assertFactory(compiler, context, "select k, s, e, min(i) from x sample by 1d align to calendar", true);
+            assertFactory(compiler, context, "select k, s, max(l) from x sample by 1d align to calendar time zone '+01:00'", true);
+            assertFactory(compiler, vanillaContext, "select k, s, count(), sum(a) from x sample by 1h", false);
+            // time zone rules move bucket boundaries at DST edges
+            assertFactory(compiler, context, "select k, s, count() from x sample by 1d align to calendar time zone 'Europe/London'", false);
+            // calendar month buckets are aligned to the previous bucket rather than rounded
+            assertFactory(compiler, context, "select k, s, count() from x sample by 1M", false);
+            // fills and not keyed sample by remain serial
+            assertFactory(compiler, context, "select k, s, count() from x sample by 1h fill(prev)", false);
+            assertFactory(compiler, context, "select k, count() from x sample by 1h", false);
+            // first() and last() depend on the order rows are visited in
+            assertFactory(compiler, context, "select k, s, first(a) from x sample by 1h", false);
+        });
+    }
+
+    private static void assertFactory(
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            String query,
+            boolean parallel
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            Assert.assertEquals(parallel, factory instanceof AsyncSampleByRecordCursorFactory);
+        }
+    }
+
+    private static void assertParallel(
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        TestUtils.printSql(compiler, context, query, sink);
+        TestUtils.assertEquals(expectedSink, sink);
+
+        // the cursor must be re-readable
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(context)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                cursor.toTop();
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void testAlignToCalendar(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(DDL, context);
+        assertParallel(compiler, context, vanillaContext, "select k, s, count(), sum(i) from x sample by 1d align to calendar");
+        assertParallel(compiler, context, vanillaContext, "select k, e, count(), min(l) from x sample by 3h align to calendar time zone '+01:30'");
+        assertParallel(compiler, context, vanillaContext, "select k, s, max(i) from x sample by 1d align to calendar time zone '-04:00' with offset '00:15'");
+    }
+
+    private static void testMultipleKeys(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext context,
+            SqlExecutionContext vanillaContext
+    ) throws SqlException {
+        compiler.compile(DDL, context);
+        // floating point sums depend on the order of additions
+        assertParallel(
+                compiler,
+                context,
+                vanillaContext,
+                "select k, s, e, c, sm, mn, mx, round(av, 6) av from (" +
+                        "select k, s, e, count() c, sum(i) sm, min(a) mn, max(l) mx, avg(a) av from x sample by 1h" +
+                        ")"
+        );
+        assertParallel(compiler, context, vanillaContext, "select k, l, count(), min(k), sum(l) from x sample by 90m");
+        assertParallel(compiler, context, vanillaContext, "select s, k, count() from x sample by 10s");
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            int pageFrameMaxRows,
+            SampleByRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getPageFrameGroupByQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    return pageFrameMaxRows;
+                }
+            };
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext context = new SqlExecutionContextImpl(engine, workerCount);
+                    final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new PageFrameGroupByJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(engine, compiler, context, vanillaContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface SampleByRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cutlass.pgwire.PGOids;
+import io.questdb.std.IntList;
+import io.questdb.std.str.StringSink;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryFactoryCacheTest extends AbstractGriffinTest {
+
+    @Test
+    public void testBindVariableTypes() throws Exception {
+        assertMemoryLeak(() -> {
+            try (QueryFactoryCache cache = new QueryFactoryCache(4)) {
+                final IntList types = new IntList();
+                final IntList parameterTypes = new IntList();
+                final RecordCursorFactory factory = compile("select x from long_sequence(10) where x > $1");
+                Assert.assertEquals(1, bindVariableService.getIndexedVariableCount());
+                final int type = bindVariableService.getFunction(0).getType();
+                types.add(type);
+                // compiled for parameter client declared as int8
+                parameterTypes.add(PGOids.X_PG_INT8);
+                cache.push("select x from long_sequence(10) where x > $1", factory, parameterTypes, types);
+
+                // client has declared parameter of different type
+                parameterTypes.setQuick(0, PGOids.X_PG_INT4);
+                Assert.assertNull(cache.poll("select x from long_sequence(10) where x > $1", parameterTypes, types));
+
+                // or has not declared it at all
+                parameterTypes.clear();
+                Assert.assertNull(cache.poll("select x from long_sequence(10) where x > $1", parameterTypes, types));
+
+                parameterTypes.add(PGOids.X_PG_INT8);
+                types.clear();
+                final RecordCursorFactory cached = cache.poll("select x from long_sequence(10) where x > $1", parameterTypes, types);
+                Assert.assertSame(factory, cached);
+                Assert.assertEquals(1, types.size());
+                Assert.assertEquals(type, types.getQuick(0));
+                cached.close();
+
+                Assert.assertEquals(1, cache.getHitCount());
+                Assert.assertEquals(2, cache.getMissCount());
+            }
+        });
+    }
+
+    @Test
+    public void testCheckOut() throws Exception {
+        assertMemoryLeak(() -> {
+            try (QueryFactoryCache cache = new QueryFactoryCache(4)) {
+                final IntList types = new IntList();
+                final IntList parameterTypes = new IntList();
+                final RecordCursorFactory f1 = compile("select x from long_sequence(10)");
+                final RecordCursorFactory f2 = compile("select x from long_sequence(10)");
+                cache.push("select x from long_sequence(10)", f1, parameterTypes, types);
+                cache.push("select x from long_sequence(10)", f2, parameterTypes, types);
+                Assert.assertEquals(2, cache.size());
+
+                // each factory is handed out once, whitespace does not matter
+                final RecordCursorFactory c1 = cache.poll("select  x\nfrom long_sequence(10);", parameterTypes, types);
+                final RecordCursorFactory c2 = cache.poll(" select x from long_sequence(10)", parameterTypes, types);
+                Assert.assertNull(cache.poll("select x from long_sequence(10)", parameterTypes, types));
+                Assert.assertNotNull(c1);
+                Assert.assertNotNull(c2);
+                Assert.assertNotSame(c1, c2);
+                Assert.assertEquals(0, cache.size());
+
+                // whitespace within quotes does
+                cache.push("select x from long_sequence(10)", c1, parameterTypes, types);
+                Assert.assertNull(cache.poll("select x from long_sequence(10) where 'a  b' = 'a b'", parameterTypes, types));
+                cache.push("select x from long_sequence(10) where 'a b' = 'a b'", c2, parameterTypes, types);
+                Assert.assertNull(cache.poll("select x from long_sequence(10) where 'a  b' = 'a b'", parameterTypes, types));
+                Assert.assertEquals(2, cache.size());
+                Assert.assertEquals(2, cache.getHitCount());
+                Assert.assertEquals(3, cache.getMissCount());
+            }
+        });
+    }
+
+    @Test
+    public void testClosedCacheFreesFactory() throws Exception {
+        assertMemoryLeak(() -> {
+            final QueryFactoryCache cache = new QueryFactoryCache(4);
+            cache.close();
+            cache.push("select x from long_sequence(10)", compile("select x from long_sequence(10)"), new IntList(), new IntList());
+            Assert.assertEquals(0, cache.size());
+        });
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        assertMemoryLeak(() -> {
+            try (QueryFactoryCache cache = new QueryFactoryCache(0)) {
+                final IntList types = new IntList();
+                final IntList parameterTypes = new IntList();
+                cache.push("select x from long_sequence(10)", compile("select x from long_sequence(10)"), parameterTypes, types);
+                Assert.assertEquals(0, cache.size());
+                Assert.assertNull(cache.poll("select x from long_sequence(10)", parameterTypes, types));
+            }
+        });
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        assertMemoryLeak(() -> {
+            try (QueryFactoryCache cache = new QueryFactoryCache(2)) {
+                final IntList types = new IntList();
+                final IntList parameterTypes = new IntList();
+                cache.push("select 1 x from long_sequence(1)", compile("select 1 x from long_sequence(1)"), parameterTypes, types);
+                cache.push("select 2 x from long_sequence(1)", compile("select 2 x from long_sequence(1)"), parameterTypes, types);
+                // touch first query so that second becomes least recently used
+                final RecordCursorFactory factory = cache.poll("select 1 x from long_sequence(1)", parameterTypes, types);
+                Assert.assertNotNull(factory);
+                cache.push("select 1 x from long_sequence(1)", factory, parameterTypes, types);
+                cache.push("select 3 x from long_sequence(1)", compile("select 3 x from long_sequence(1)"), parameterTypes, types);
+
+                Assert.assertEquals(2, cache.size());
+                Assert.assertEquals(1, cache.getEvictionCount());
+                Assert.assertNull(cache.poll("select 2 x from long_sequence(1)", parameterTypes, types));
+                RecordCursorFactory f = cache.poll("select 1 x from long_sequence(1)", parameterTypes, types);
+                Assert.assertNotNull(f);
+                f.close();
+                f = cache.poll("select 3 x from long_sequence(1)", parameterTypes, types);
+                Assert.assertNotNull(f);
+                f.close();
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        assertMemoryLeak(() -> {
+            try (QueryFactoryCache cache = new QueryFactoryCache(4)) {
+                final IntList types = new IntList();
+                final IntList parameterTypes = new IntList();
+                cache.push("select x from long_sequence(10)", compile("select x from long_sequence(10)"), parameterTypes, types);
+                cache.push("select x from long_sequence(10)", compile("select x from long_sequence(10)"), parameterTypes, types);
+                cache.push("select x from long_sequence(1)", compile("select x from long_sequence(1)"), parameterTypes, types);
+                cache.invalidate("select x from long_sequence(10)");
+                Assert.assertEquals(1, cache.size());
+                Assert.assertNull(cache.poll("select x from long_sequence(10)", parameterTypes, types));
+            }
+        });
+    }
+
+    @Test
+    public void testNormalize() {
+        final StringSink sink = new StringSink();
+        QueryFactoryCache.normalize("  select\t*\n\nfrom  x  ;; ", sink);
+        Assert.assertEquals("select * from x", sink.toString());
+        QueryFactoryCache.normalize("select 'a  ;' from \"my  table\" where s = 'x\n y'", sink);
+        Assert.assertEquals("select 'a  ;' from \"my  table\" where s = 'x\n y'", sink.toString());
+        // line comment is kept as is, the query continues on the next line
+        QueryFactoryCache.normalize("select  x -- it's   x\n   from  x -- x;\n", sink);
+        Assert.assertEquals("select x -- it's   x\nfrom x -- x;\n", sink.toString());
+        // and is not mistaken for a statement terminator when query ends with it
+        QueryFactoryCache.normalize("select x from x --;", sink);
+        Assert.assertEquals("select x from x --;", sink.toString());
+        QueryFactoryCache.normalize("select '--' from x;", sink);
+        Assert.assertEquals("select '--' from x", sink.toString());
+    }
+
+    private RecordCursorFactory compile(String query) throws SqlException {
+        bindVariableService.clear();
+        return compiler.compile(query, sqlExecutionContext).getRecordCursorFactory();
+    }
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.orderby.RadixSortedLightRecordCursorFactory;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RadixSortTest extends AbstractGriffinTest {
+
+    @Test
+    public void testCompositeKeys() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertSortMatchesTree("x order by i, l desc");
+            assertSortMatchesTree("x order by bl desc, sh, d");
+            assertSortMatchesTree("x order by c, by desc, ts desc");
+            assertSortMatchesTree("x order by f desc, dt, i, l");
+        });
+    }
+
+    @Test
+    public void testEmptyTable() throws Exception {
+        assertQuery(
+                "i\tl\n",
+                "x order by l desc, i",
+                "create table x (i int, l long)",
+                null,
+                true,
+                false,
+                true
+        );
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertRadixSort("x order by l", true);
+            assertRadixSort("x order by i desc, d", true);
+            assertRadixSort("x order by i, s", false);
+            assertRadixSort("x order by sym", false);
+        });
+    }
+
+    @Test
+    public void testSingleKey() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertSortMatchesTree("x order by i");
+            assertSortMatchesTree("x order by i desc");
+            assertSortMatchesTree("x order by l");
+            assertSortMatchesTree("x order by d");
+            assertSortMatchesTree("x order by d desc");
+            assertSortMatchesTree("x order by f");
+            assertSortMatchesTree("x order by sh desc");
+            assertSortMatchesTree("x order by by");
+            assertSortMatchesTree("x order by c desc");
+            assertSortMatchesTree("x order by bl");
+            assertSortMatchesTree("x order by dt");
+            assertSortMatchesTree("x order by ts desc");
+        });
+    }
+
+    @Test
+    public void testSingleKeyExpected() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x (i int, ts timestamp)", sqlExecutionContext);
+            executeInsert("insert into x values (2, 0)");
+            executeInsert("insert into x values (null, 1)");
+            executeInsert("insert into x values (2, 2)");
+            executeInsert("insert into x values (null, 3)");
+            executeInsert("insert into x values (-4, 4)");
+            executeInsert("insert into x values (2, 5)");
+
+            // rows with equal keys come in reverse order
+            assertSql(
+                    "x order by i",
+                    "i\tts\n" +
+                            "NaN\t1970-01-01T00:00:00.000003Z\n" +
+                            "NaN\t1970-01-01T00:00:00.000001Z\n" +
+                            "-4\t1970-01-01T00:00:00.000004Z\n" +
+                            "2\t1970-01-01T00:00:00.000005Z\n" +
+                            "2\t1970-01-01T00:00:00.000002Z\n" +
+                            "2\t1970-01-01T00:00:00.000000Z\n"
+            );
+            assertSql(
+                    "x order by i desc",
+                    "i\tts\n" +
+                            "2\t1970-01-01T00:00:00.000005Z\n" +
+                            "2\t1970-01-01T00:00:00.000002Z\n" +
+                            "2\t1970-01-01T00:00:00.000000Z\n" +
+                            "-4\t1970-01-01T00:00:00.000004Z\n" +
+                            "NaN\t1970-01-01T00:00:00.000003Z\n" +
+                            "NaN\t1970-01-01T00:00:00.000001Z\n"
+            );
+        });
+    }
+
+    private void assertRadixSort(String query, boolean expected) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertEquals(expected, factory instanceof RadixSortedLightRecordCursorFactory);
+        }
+    }
+
+    private void assertSortMatchesTree(String query) throws SqlException {
+        // constant limit sorts rows via tree chain and record comparator
+        final StringSink treeSink = new StringSink();
+        TestUtils.printSql(compiler, sqlExecutionContext, query + " limit 100000", treeSink);
+        TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+        TestUtils.assertEquals(treeSink, sink);
+    }
+
+    private void createTable() throws SqlException {
+        compiler.compile("create table x as (" +
+                "select" +
+                " rnd_int(-50, 50, 2) i," +
+                " rnd_long(-1000, 1000, 2) l," +
+                " rnd_double(2) d," +
+                " rnd_float(2) f," +
+                " rnd_short(-10, 10) sh," +
+                " rnd_byte(0, 3) by," +
+                " rnd_char() c," +
+                " rnd_boolean() bl," +
+                " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) dt," +
+                " rnd_str(1, 2, 2) s," +
+                " rnd_symbol(4, 4, 4, 2) sym," +
+                " timestamp_sequence(0, 1000000) ts" +
+                " from long_sequence(5000)" +
+                ") timestamp(ts)", sqlExecutionContext);
+    }
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.std.Chars;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class ZoneMapTest extends AbstractGriffinTest {
+
+    @Test
+    public void testColumnAddedLater() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            compile("alter table x add column z long", sqlExecutionContext);
+            executeInsert("insert into x(i, z, timestamp) values (2000, 42, '2018-01-10T10:00:00.000000Z')");
+            executeInsert("insert into x(i, z, timestamp) values (2001, 43, '2018-01-11T10:00:00.000000Z')");
+            assertSame("z = 42");
+            assertSame("z > 0");
+            assertSame("z != 42");
+        });
+    }
+
+    @Test
+    public void testOutOfOrderInsertUpdatesZoneMap() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            assertSql("select i from x where i > 4000", "i\n");
+            executeInsert("insert into x(i, d, timestamp) values (5000, 1000.5, '2018-01-02T10:00:00.000000Z')");
+            assertSql("select i from x where i > 4000", "i\n5000\n");
+            assertSql("select i from x where d = 1000.5", "i\n5000\n");
+            assertSame("i > 4000 or i < 10");
+        });
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            assertPlanContains("x where i > 950", true);
+            assertPlanContains("x where 950 < i and sym = 'msft'", true);
+            assertPlanContains("x where sym = 'msft'", false);
+            assertPlanContains("x where i > 950 or d > 0.5", false);
+            assertPlanContains("x", false);
+        });
+    }
+
+    @Test
+    public void testPrunedResultsMatchFullScan() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            assertSame("i > 950");
+            assertSame("i = 123");
+            assertSame("123 = i");
+            assertSame("i < 5");
+            assertSame("i <= 5");
+            assertSame("i >= 995");
+            assertSame("i != 500");
+            assertSame("i > -1");
+            assertSame("i > 100 and i < 120 and b");
+            assertSame("i > 100 and sym = 'msft'");
+            assertSame("j > 0");
+            assertSame("j = -1");
+            assertSame("d > 0.9");
+            assertSame("d = 0.5");
+            assertSame("e < 0.1");
+            assertSame("e = 0.5");
+            assertSame("f > 1000");
+            assertSame("l < 3");
+            assertSame("k > 500000000000");
+            assertSame("timestamp > '2018-01-03' and i < 400");
+            assertSame("i > 2000");
+        });
+    }
+
+    @Test
+    public void testZoneMapFiles() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            // partitions writer is done with have zone maps
+            Assert.assertTrue(zoneMapExists("2018-01-01", "i"));
+            Assert.assertTrue(zoneMapExists("2018-01-01", "d"));
+            Assert.assertTrue(zoneMapExists("2018-01-04", "timestamp"));
+            // non-numeric columns do not
+            Assert.assertFalse(zoneMapExists("2018-01-01", "sym"));
+            Assert.assertFalse(zoneMapExists("2018-01-01", "c"));
+            // active partition is not summarised
+            Assert.assertFalse(zoneMapExists("2018-01-09", "i"));
+
+            compile("alter table x drop column d", sqlExecutionContext);
+            Assert.assertFalse(zoneMapExists("2018-01-01", "d"));
+
+            compile("alter table x rename column i to ii", sqlExecutionContext);
+            Assert.assertFalse(zoneMapExists("2018-01-01", "i"));
+            Assert.assertTrue(zoneMapExists("2018-01-01", "ii"));
+            assertSql("select count() from x where ii > 950", "count\n50\n");
+        });
+    }
+
+    private void assertPlanContains(String query, boolean expected) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            sink.clear();
+            factory.toSink(sink);
+            Assert.assertEquals(query, expected, Chars.contains(sink, "ZoneMapFwdDataFrameCursorFactory"));
+        }
+    }
+
+    private void assertSame(String filter) throws SqlException {
+        // comparing filter result to "true" hides it from zone maps
+        TestUtils.assertEquals(print("x where (" + filter + ") = true"), print("x where " + filter));
+    }
+
+    private void createX() throws SqlException {
+        zoneMapBlockRowCount = 16;
+        compile(
+                "create table x as (" +
+                        "select" +
+                        " cast(x as int) i," +
+                        " rnd_symbol('msft','ibm', 'googl') sym," +
+                        " rnd_boolean() b," +
+                        " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                        " rnd_double(2) d," +
+                        " rnd_float(2) e," +
+                        " rnd_short(10,1024) f," +
+                        " rnd_long() j," +
+                        " timestamp_sequence(0, 1000000000) k," +
+                        " rnd_byte(2,50) l," +
+                        " to_timestamp('2018-01', 'yyyy-MM') + x * 720000000 timestamp" +
+                        " from long_sequence(1000)" +
+                        ") timestamp (timestamp) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+
+    private String print(String query) throws SqlException {
+        final StringSink sink = new StringSink();
+        TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+        return sink.toString();
+    }
+
+    private boolean zoneMapExists(String partitionName, String columnName) {
+        final File[] dirs = new File(configuration.getRoot().toString(), "x").listFiles((dir, name) -> name.startsWith(partitionName));
+        Assert.assertNotNull(dirs);
+        Assert.assertEquals(1, dirs.length);
+        return new File(dirs[0], columnName + TableUtils.FILE_SUFFIX_ZM).exists();
+    }
+}
@@ -28,6 +28,8 @@ import io.questdb.cairo.BinarySearch;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class LongListTest {
     @Test
     public void testBinarySearchBlockFuzz() {
@@ -67,6 +69,29 @@ public class LongListTest {
         testBinarySearchFuzz0(1, 0, 1, 1024);
     }
 
+    @Test
+    public void testSortRuns() {
+        // long list made of few sorted runs is sorted by merging the runs
+        final Rnd rnd = new Rnd();
+        for (int runCount = 2; runCount < 20; runCount++) {
+            final LongList list = new LongList();
+            final long[] expected = new long[runCount * 60];
+            for (int i = 0; i < runCount; i++) {
+                long value = rnd.nextInt(1000);
+                for (int j = 0; j < 60; j++) {
+                    value += rnd.nextInt(10);
+                    expected[list.size()] = value;
+                    list.add(value);
+                }
+            }
+            Arrays.sort(expected);
+            list.sort();
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i], list.getQuick(i));
+            }
+        }
+    }
+
     private void testBinarySearchBlockFuzz0(int N, int skipRate, int dupeRate, int dupeCountBound) {
         final Rnd rnd = new Rnd();
         final LongList list = new LongList();
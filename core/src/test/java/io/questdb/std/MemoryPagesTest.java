@@ -0,0 +1,90 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.std;
+
+import io.questdb.griffin.engine.LimitOverflowException;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Objects;
+
+public class MemoryPagesTest {
+    private static final Log LOG = LogFactory.getLog(MemoryPagesTest.class);
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpStatic() {
+        // logger holds native memory until JVM stops, create it before leak checks
+        LOG.info().$("begin").$();
+    }
+
+    @Test
+    public void testSpillToDisk() throws Exception {
+        final File spillRoot = temp.newFolder("spill");
+        TestUtils.assertMemoryLeak(() -> {
+            final int N = 100_000;
+            // 4 pages of 64KB fit the budget, the rest is mapped from the spill file
+            try (MemoryPages pages = new MemoryPages(64 * 1024, 4, FilesFacadeImpl.INSTANCE, spillRoot.getAbsolutePath(), 256 * 1024)) {
+                for (int i = 0; i < N; i++) {
+                    Unsafe.getUnsafe().putLong(pages.allocate(Long.BYTES), i);
+                }
+                Assert.assertTrue(pages.isSpilled());
+                Assert.assertEquals(1, Objects.requireNonNull(spillRoot.list()).length);
+                for (int i = 0; i < N; i++) {
+                    Assert.assertEquals(i, Unsafe.getUnsafe().getLong(pages.addressOf((long) i * Long.BYTES)));
+                }
+
+                // pages are reused after clear
+                pages.clear();
+                for (int i = 0; i < N; i++) {
+                    Unsafe.getUnsafe().putLong(pages.allocate(Long.BYTES), -i);
+                }
+                for (int i = 0; i < N; i++) {
+                    Assert.assertEquals(-i, Unsafe.getUnsafe().getLong(pages.addressOf((long) i * Long.BYTES)));
+                }
+            }
+            Assert.assertEquals(0, Objects.requireNonNull(spillRoot.list()).length);
+
+            // without spill root pages run out
+            try (MemoryPages pages = new MemoryPages(64 * 1024, 4, FilesFacadeImpl.INSTANCE, null, 256 * 1024)) {
+                for (int i = 0; i < N; i++) {
+                    pages.allocate(Long.BYTES);
+                }
+                Assert.fail();
+            } catch (LimitOverflowException e) {
+                TestUtils.assertContains(e.getFlyweightMessage(), "Maximum number of pages (4) breached");
+            }
+        });
+    }
+}